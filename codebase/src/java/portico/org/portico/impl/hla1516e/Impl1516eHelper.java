@@ -432,6 +432,16 @@ public class Impl1516eHelper implements ISpecHelper
 //		this.lrc.reinitialize();
 	}
 
+	/**
+	 * @return True if service invocations are being reported to the MOM. If not, the
+	 *         reportServiceInvocation() methods do nothing, so callers on hot paths can check
+	 *         this first and skip building the parameter array.
+	 */
+	public boolean isReportingServices()
+	{
+		return this.state.isServiceReporting() || this.state.isExceptionReporting();
+	}
+
 	/**
 	 * Reports the result of an RTIambassador service invocation to the federation via the MOM
 	 * 
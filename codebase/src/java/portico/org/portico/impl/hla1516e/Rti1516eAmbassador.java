@@ -638,7 +638,7 @@ public abstract class Rti1516eAmbassador implements RTIambassador
 			ExtendedSuccessResponse success = (ExtendedSuccessResponse)response;
 			
 			// return the "handle"
-			return new HLA1516eHandle( (Integer)success.getResult() );
+			return HLA1516eHandle.valueOf( (Integer)success.getResult() );
 		}
 		else
 		{
@@ -1984,7 +1984,7 @@ public abstract class Rti1516eAmbassador implements RTIambassador
 			// everything went fine!
 			ExtendedSuccessResponse success = (ExtendedSuccessResponse)response;
 			LOCInstance instance = (LOCInstance)success.getResult();
-			return new HLA1516eHandle( instance.getHandle() );
+			return HLA1516eHandle.valueOf( instance.getHandle() );
 		}
 		else
 		{
@@ -2057,7 +2057,7 @@ public abstract class Rti1516eAmbassador implements RTIambassador
 			// everything went fine!
 			ExtendedSuccessResponse success = (ExtendedSuccessResponse)response;
 			LOCInstance instance = (LOCInstance)success.getResult();
-			return new HLA1516eHandle( instance.getHandle() );
+			return HLA1516eHandle.valueOf( instance.getHandle() );
 		}
 		else
 		{
@@ -5067,7 +5067,7 @@ return "";
 		}
 		else
 		{
-			ObjectClassHandle result = new HLA1516eHandle( cls.getHandle() );
+			ObjectClassHandle result = HLA1516eHandle.valueOf( cls.getHandle() );
 			helper.reportServiceInvocation( "getObjectClassHandle", true, result, theName );
 			return result;
 		}
@@ -5117,7 +5117,7 @@ return "";
 		}
 		else
 		{
-			ObjectClassHandle result = new HLA1516eHandle( instance.getDiscoveredClassHandle() );
+			ObjectClassHandle result = HLA1516eHandle.valueOf( instance.getDiscoveredClassHandle() );
 			helper.reportServiceInvocation( "getKnownObjectClassHandle", 
 			                                true, 
 			                                result, 
@@ -5143,7 +5143,7 @@ return "";
 //		}
 //		else
 //		{
-//			return new HLA1516eHandle( instance.getHandle() );
+//			return HLA1516eHandle.valueOf( instance.getHandle() );
 //		}
 	}
 
@@ -5203,7 +5203,7 @@ return "";
 		}
 		else
 		{
-			AttributeHandle result = new HLA1516eHandle( aClass.getHandle() );
+			AttributeHandle result = HLA1516eHandle.valueOf( aClass.getHandle() );
 			helper.reportServiceInvocation( "getAttributeHandle", 
 			                                true, 
 			                                result, 
@@ -5293,7 +5293,7 @@ return "";
 		}
 		else
 		{
-			return new HLA1516eHandle( cls.getHandle() );
+			return HLA1516eHandle.valueOf( cls.getHandle() );
 		}
 	}
 
@@ -5359,7 +5359,7 @@ return "";
 			}
 			else
 			{
-				ParameterHandle result = new HLA1516eHandle( handle );
+				ParameterHandle result = HLA1516eHandle.valueOf( handle );
 				helper.reportServiceInvocation( "getParameterHandle", 
 				                                true, 
 				                                result, 
@@ -5861,7 +5861,7 @@ return "";
 	/////////////////////////////////////////////////////////////////////////////////////////
 	//////////////////////////////// Private Utility Methods ////////////////////////////////
 	/////////////////////////////////////////////////////////////////////////////////////////
-	private ResponseMessage processMessage( PorticoMessage request ) throws NotConnected
+	protected ResponseMessage processMessage( PorticoMessage request ) throws NotConnected
 	{
 		// make sure we're connected
 		this.helper.checkConnected();
@@ -14,7 +14,22 @@
  */
 package org.portico.impl.hla1516e;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.portico.impl.hla1516e.types.HLA1516eAttributeHandleSet;
 import org.portico.impl.hla1516e.types.HLA1516eHandle;
+import org.portico.lrc.compat.JAttributeNotDefined;
+import org.portico.lrc.compat.JFederateNotExecutionMember;
+import org.portico.lrc.compat.JInteractionClassNotDefined;
+import org.portico.lrc.compat.JObjectAlreadyRegistered;
+import org.portico.lrc.compat.JObjectClassNotDefined;
+import org.portico.lrc.compat.JObjectClassNotPublished;
+import org.portico.lrc.compat.JRestoreInProgress;
+import org.portico.lrc.compat.JSaveInProgress;
 import org.portico.lrc.model.ACMetadata;
 import org.portico.lrc.model.ICMetadata;
 import org.portico.lrc.model.OCMetadata;
@@ -27,10 +42,23 @@ import org.portico.lrc.model.datatype.FixedRecordType;
 import org.portico.lrc.model.datatype.IDatatype;
 import org.portico.lrc.model.datatype.SimpleType;
 import org.portico.lrc.model.datatype.VariantRecordType;
+import org.portico2.common.messaging.ErrorResponse;
+import org.portico2.common.messaging.ExtendedSuccessResponse;
+import org.portico2.common.messaging.ResponseMessage;
+import org.portico2.common.services.federation.msg.Batch;
+import org.portico2.common.services.object.msg.DeleteObject;
+import org.portico2.common.services.object.msg.RegisterObject;
+import org.portico2.common.services.pubsub.msg.PublishInteractionClass;
+import org.portico2.common.services.pubsub.msg.PublishObjectClass;
+import org.portico2.common.services.pubsub.msg.SubscribeInteractionClass;
+import org.portico2.common.services.pubsub.msg.SubscribeObjectClass;
+import org.portico2.lrc.services.object.data.LOCInstance;
 
 import hla.rti1516e.AttributeHandle;
+import hla.rti1516e.AttributeHandleSet;
 import hla.rti1516e.InteractionClassHandle;
 import hla.rti1516e.ObjectClassHandle;
+import hla.rti1516e.ObjectInstanceHandle;
 import hla.rti1516e.ParameterHandle;
 import hla.rti1516e.RTIambassador;
 import hla.rti1516e.RtiFactory;
@@ -40,9 +68,16 @@ import hla.rti1516e.exceptions.InteractionParameterNotDefined;
 import hla.rti1516e.exceptions.InvalidAttributeHandle;
 import hla.rti1516e.exceptions.InvalidInteractionClassHandle;
 import hla.rti1516e.exceptions.InvalidObjectClassHandle;
+import hla.rti1516e.exceptions.InteractionClassNotDefined;
 import hla.rti1516e.exceptions.InvalidParameterHandle;
 import hla.rti1516e.exceptions.NotConnected;
+import hla.rti1516e.exceptions.ObjectClassNotDefined;
+import hla.rti1516e.exceptions.ObjectClassNotPublished;
+import hla.rti1516e.exceptions.ObjectInstanceNameInUse;
+import hla.rti1516e.exceptions.ObjectInstanceNameNotReserved;
 import hla.rti1516e.exceptions.RTIinternalError;
+import hla.rti1516e.exceptions.RestoreInProgress;
+import hla.rti1516e.exceptions.SaveInProgress;
 
 /**
  * This interface houses custom extensions to the standard IEEE-1516 (2010) interface
@@ -168,6 +203,299 @@ public class Rti1516eAmbassadorEx extends Rti1516eAmbassador
 			}
 		}
 	}
+
+	///////////////////////////////////////////////////////////////////////////////////////////
+	/////////////////////////////////// Batched Services //////////////////////////////////////
+	///////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * The same as calling {@link #publishObjectClassAttributes(ObjectClassHandle, AttributeHandleSet)}
+	 * for each entry in the given map, except that all the requests go to the RTI together in a
+	 * single round trip. Requests are applied in the map's iteration order. If any of them fails,
+	 * the exception for the first failure is thrown once the whole batch has been processed (the
+	 * requests that succeeded stay in place).
+	 */
+	public void publishObjectClassAttributes( Map<ObjectClassHandle,AttributeHandleSet> classes )
+	    throws AttributeNotDefined,
+	           ObjectClassNotDefined,
+	           SaveInProgress,
+	           RestoreInProgress,
+	           FederateNotExecutionMember,
+	           NotConnected,
+	           RTIinternalError
+	{
+		Batch batch = new Batch();
+		for( ObjectClassHandle theClass : classes.keySet() )
+		{
+			batch.addRequest( new PublishObjectClass(HLA1516eHandle.fromHandle(theClass),
+			                  HLA1516eAttributeHandleSet.toJavaSet(classes.get(theClass))) );
+		}
+
+		Throwable error = firstError( processBatch(batch) );
+		if( error instanceof JObjectClassNotDefined )
+			throw new ObjectClassNotDefined( error );
+		else if( error instanceof JAttributeNotDefined )
+			throw new AttributeNotDefined( error );
+		else if( error != null )
+			throwCommonError( "publishObjectClassAttributes", error );
+	}
+
+	/**
+	 * The same as calling {@link #subscribeObjectClassAttributes(ObjectClassHandle, AttributeHandleSet)}
+	 * for each entry in the given map, except that all the requests go to the RTI together in a
+	 * single round trip. See {@link #publishObjectClassAttributes(Map)} for how errors are handled.
+	 */
+	public void subscribeObjectClassAttributes( Map<ObjectClassHandle,AttributeHandleSet> classes )
+	    throws AttributeNotDefined,
+	           ObjectClassNotDefined,
+	           SaveInProgress,
+	           RestoreInProgress,
+	           FederateNotExecutionMember,
+	           NotConnected,
+	           RTIinternalError
+	{
+		Batch batch = new Batch();
+		for( ObjectClassHandle theClass : classes.keySet() )
+		{
+			batch.addRequest( new SubscribeObjectClass(HLA1516eHandle.fromHandle(theClass),
+			                  HLA1516eAttributeHandleSet.toJavaSet(classes.get(theClass)),
+			                  false) );
+		}
+
+		Throwable error = firstError( processBatch(batch) );
+		if( error instanceof JObjectClassNotDefined )
+			throw new ObjectClassNotDefined( error );
+		else if( error instanceof JAttributeNotDefined )
+			throw new AttributeNotDefined( error );
+		else if( error != null )
+			throwCommonError( "subscribeObjectClassAttributes", error );
+	}
+
+	/**
+	 * The same as calling {@link #publishInteractionClass(InteractionClassHandle)} for each of
+	 * the given classes, except that all the requests go to the RTI together in a single round
+	 * trip. See {@link #publishObjectClassAttributes(Map)} for how errors are handled.
+	 */
+	public void publishInteractionClasses( Collection<InteractionClassHandle> classes )
+	    throws InteractionClassNotDefined,
+	           SaveInProgress,
+	           RestoreInProgress,
+	           FederateNotExecutionMember,
+	           NotConnected,
+	           RTIinternalError
+	{
+		Batch batch = new Batch();
+		for( InteractionClassHandle theClass : classes )
+			batch.addRequest( new PublishInteractionClass(HLA1516eHandle.fromHandle(theClass)) );
+
+		Throwable error = firstError( processBatch(batch) );
+		if( error instanceof JInteractionClassNotDefined )
+			throw new InteractionClassNotDefined( error );
+		else if( error != null )
+			throwCommonError( "publishInteractionClasses", error );
+	}
+
+	/**
+	 * The same as calling {@link #subscribeInteractionClass(InteractionClassHandle)} for each of
+	 * the given classes, except that all the requests go to the RTI together in a single round
+	 * trip. See {@link #publishObjectClassAttributes(Map)} for how errors are handled.
+	 */
+	public void subscribeInteractionClasses( Collection<InteractionClassHandle> classes )
+	    throws InteractionClassNotDefined,
+	           SaveInProgress,
+	           RestoreInProgress,
+	           FederateNotExecutionMember,
+	           NotConnected,
+	           RTIinternalError
+	{
+		Batch batch = new Batch();
+		for( InteractionClassHandle theClass : classes )
+			batch.addRequest( new SubscribeInteractionClass(HLA1516eHandle.fromHandle(theClass)) );
+
+		Throwable error = firstError( processBatch(batch) );
+		if( error instanceof JInteractionClassNotDefined )
+			throw new InteractionClassNotDefined( error );
+		else if( error != null )
+			throwCommonError( "subscribeInteractionClasses", error );
+	}
+
+	/**
+	 * Register the given number of instances of an object class in a single round trip to the
+	 * RTI, letting the RTI name them. The handles are returned in the order they were registered.
+	 * Unlike the other batched services, registration is all or nothing: if any of the instances
+	 * can't be registered, those that were are deleted again before the exception for the first
+	 * failure is thrown.
+	 */
+	public List<ObjectInstanceHandle> registerObjectInstances( ObjectClassHandle theClass,
+	                                                           int count )
+	    throws ObjectClassNotPublished,
+	           ObjectClassNotDefined,
+	           SaveInProgress,
+	           RestoreInProgress,
+	           FederateNotExecutionMember,
+	           NotConnected,
+	           RTIinternalError
+	{
+		int classHandle = HLA1516eHandle.fromHandle( theClass );
+		Batch batch = new Batch();
+		for( int i = 0; i < count; i++ )
+			batch.addRequest( new RegisterObject(classHandle) );
+
+		return toInstanceHandles( processBatch(batch) );
+	}
+
+	/**
+	 * Register one instance of an object class for each of the given names, in a single round
+	 * trip to the RTI. The names must have been reserved already. The handles are returned in
+	 * the same order as the names. See {@link #registerObjectInstances(ObjectClassHandle,int)}
+	 * for how errors are handled.
+	 */
+	public List<ObjectInstanceHandle> registerObjectInstances( ObjectClassHandle theClass,
+	                                                           Collection<String> names )
+	    throws ObjectInstanceNameInUse,
+	           ObjectInstanceNameNotReserved,
+	           ObjectClassNotPublished,
+	           ObjectClassNotDefined,
+	           SaveInProgress,
+	           RestoreInProgress,
+	           FederateNotExecutionMember,
+	           NotConnected,
+	           RTIinternalError
+	{
+		int classHandle = HLA1516eHandle.fromHandle( theClass );
+		Batch batch = new Batch();
+		for( String name : names )
+			batch.addRequest( new RegisterObject(classHandle,name) );
+
+		List<ResponseMessage> responses = processBatch( batch );
+		Throwable error = firstError( responses );
+		if( error instanceof JObjectAlreadyRegistered )
+		{
+			deleteRegistered( responses );
+			throw new ObjectInstanceNameInUse( error );
+		}
+
+		return toInstanceHandles( responses );
+	}
+
+	/**
+	 * Pass the batch to the LRC and return the list of responses for the requests in it, one
+	 * for each request and in the same order. If the batch fails as a whole, its exception is
+	 * thrown from here.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<ResponseMessage> processBatch( Batch batch )
+		throws FederateNotExecutionMember, NotConnected, RTIinternalError
+	{
+		if( batch.size() == 0 )
+			return Collections.emptyList();
+
+		ResponseMessage response = processMessage( batch );
+		if( response.isError() )
+		{
+			Throwable theException = ((ErrorResponse)response).getCause();
+			if( theException instanceof JFederateNotExecutionMember )
+				throw new FederateNotExecutionMember( theException );
+			else
+				throw new RTIinternalError( theException.getMessage(), theException );
+		}
+
+		return (List<ResponseMessage>)((ExtendedSuccessResponse)response).getResult();
+	}
+
+	private List<ObjectInstanceHandle> toInstanceHandles( List<ResponseMessage> responses )
+	    throws ObjectClassNotPublished,
+	           ObjectClassNotDefined,
+	           SaveInProgress,
+	           RestoreInProgress,
+	           FederateNotExecutionMember,
+	           RTIinternalError
+	{
+		Throwable error = firstError( responses );
+		if( error != null )
+			deleteRegistered( responses );
+
+		if( error instanceof JObjectClassNotDefined )
+			throw new ObjectClassNotDefined( error );
+		else if( error instanceof JObjectClassNotPublished )
+			throw new ObjectClassNotPublished( error );
+		else if( error != null )
+			throwCommonError( "registerObjectInstances", error );
+
+		List<ObjectInstanceHandle> handles = new ArrayList<>( responses.size() );
+		for( ResponseMessage response : responses )
+		{
+			LOCInstance instance = (LOCInstance)((ExtendedSuccessResponse)response).getResult();
+			handles.add( new HLA1516eHandle(instance.getHandle()) );
+		}
+
+		return handles;
+	}
+
+	/**
+	 * Part of a batched registration failed. Delete the instances that were registered, so the
+	 * caller isn't left with instances it has no handles for. Any problem here is only logged,
+	 * as the registration failure is the error the caller needs to see.
+	 */
+	private void deleteRegistered( List<ResponseMessage> responses )
+	{
+		Batch batch = new Batch();
+		for( ResponseMessage response : responses )
+		{
+			if( response.isError() == false )
+			{
+				LOCInstance instance = (LOCInstance)((ExtendedSuccessResponse)response).getResult();
+				batch.addRequest( new DeleteObject(instance.getHandle(),new byte[0]) );
+			}
+		}
+
+		try
+		{
+			Throwable error = firstError( processBatch(batch) );
+			if( error != null )
+				getHelper().getLrcLogger().warn( "Could not delete instance after failed registration: "+error.getMessage() );
+		}
+		catch( Exception e )
+		{
+			getHelper().getLrcLogger().warn( "Could not delete instances after failed registration: "+e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * @return The cause of the first error in the given batch responses, or null if they all
+	 *         succeeded
+	 */
+	private Throwable firstError( List<ResponseMessage> responses )
+	{
+		for( ResponseMessage response : responses )
+		{
+			if( response.isError() )
+				return ((ErrorResponse)response).getCause();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Throw the HLA exception for an error that any of the batched services can report. Anything
+	 * not recognized is turned into an {@link RTIinternalError}.
+	 */
+	private void throwCommonError( String method, Throwable theException )
+	    throws SaveInProgress,
+	           RestoreInProgress,
+	           FederateNotExecutionMember,
+	           RTIinternalError
+	{
+		if( theException instanceof JFederateNotExecutionMember )
+			throw new FederateNotExecutionMember( theException );
+		else if( theException instanceof JSaveInProgress )
+			throw new SaveInProgress( theException );
+		else if( theException instanceof JRestoreInProgress )
+			throw new RestoreInProgress( theException );
+		else
+			throw new RTIinternalError( "Exception received from RTI ("+theException.getClass()+
+			                            ") for "+method+"(): "+theException.getMessage(),
+			                            theException );
+	}
 	
 	//----------------------------------------------------------
 	//                     STATIC METHODS
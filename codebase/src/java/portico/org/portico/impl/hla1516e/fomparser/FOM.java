@@ -34,8 +34,9 @@ import org.portico.lrc.model.Sharing;
 import org.portico.lrc.model.Transport;
 import org.portico.lrc.model.datatype.IDatatype;
 import org.portico.lrc.model.datatype.linker.DatatypePlaceholder;
+import org.portico.utils.fom.FedElement;
 import org.portico.utils.fom.FedHelpers;
-import org.w3c.dom.Document;
+import org.portico.utils.fom.FedStreamReader;
 import org.w3c.dom.Element;
 
 /**
@@ -46,7 +47,6 @@ public class FOM
 	//----------------------------------------------------------
 	//                    STATIC VARIABLES
 	//----------------------------------------------------------
-	private static final ParserWrapper PARSER = new ParserWrapper();
 
 	//----------------------------------------------------------
 	//                   INSTANCE VARIABLES
@@ -76,13 +76,22 @@ public class FOM
 	 * concrete representation
 	 */
 	public ObjectModel process( Element element ) throws JErrorReadingFED
+	{
+		return process( FedHelpers.wrap(element) );
+	}
+
+	/**
+	 * Same as {@link #process(Element)}, but works from any {@link FedElement} tree, such as the
+	 * one {@link FedStreamReader} produces.
+	 */
+	public ObjectModel process( FedElement element ) throws JErrorReadingFED
 	{
 		// locate the major elements we are interested in
-		Element datatypesElement = null;
-		Element objectsElement = null;
-		Element interactionsElement = null;
-		Element dimensionsElement = null;
-		for( Element temp : FedHelpers.getChildElements(element) )
+		FedElement datatypesElement = null;
+		FedElement objectsElement = null;
+		FedElement interactionsElement = null;
+		FedElement dimensionsElement = null;
+		for( FedElement temp : element.getChildElements() )
 		{
 			String tagName = temp.getTagName();
 			if( tagName.equals("dataTypes") )
@@ -140,7 +149,7 @@ public class FOM
 	////////////////////////////////////////////////////////////////////////////////////////////
 	///////////////////////////////////// Datatype Methods /////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////////
-	private void extractDatatypes( Element datatypesElement ) throws JErrorReadingFED
+	private void extractDatatypes( FedElement datatypesElement ) throws JErrorReadingFED
 	{
 		Set<IDatatype> fedTypes = null;
 		try
@@ -192,9 +201,9 @@ public class FOM
      * </objects>
 	 * </pre>
 	 */
-	private OCMetadata extractObjects( Element objectsElement ) throws JErrorReadingFED
+	private OCMetadata extractObjects( FedElement objectsElement ) throws JErrorReadingFED
 	{
-		Element objectRootElement = FedHelpers.getFirstChildElement( objectsElement, 
+		FedElement objectRootElement = FedHelpers.getFirstChildElement( objectsElement, 
 		                                                             "objectClass" );
 		if( objectRootElement == null )
 		{
@@ -218,10 +227,10 @@ public class FOM
 		return objectRoot;
 	}
 
-	private void extractObjects( OCMetadata parent, Element parentElement ) throws JErrorReadingFED
+	private void extractObjects( OCMetadata parent, FedElement parentElement ) throws JErrorReadingFED
 	{
-		List<Element> children = FedHelpers.getAllChildElements( parentElement, "objectClass" );
-		for( Element current : children )
+		List<FedElement> children = FedHelpers.getAllChildElements( parentElement, "objectClass" );
+		for( FedElement current : children )
 		{
 			String objectClassName = FedHelpers.getChildValue( current, "name" );
 			
@@ -248,11 +257,11 @@ public class FOM
 	 * from the given "objectClass" element. For each attribute, an {@link ACMetadata} will be
 	 * created and stored inside the provided {@link OCMetadata}.
 	 */
-	private void extractAttributes( OCMetadata clazz, Element element ) throws JErrorReadingFED
+	private void extractAttributes( OCMetadata clazz, FedElement element ) throws JErrorReadingFED
 	{
 		ObjectModel theModel = clazz.getModel();
-		List<Element> attributes = FedHelpers.getAllChildElements( element, "attribute" );
-		for( Element attributeElement : attributes )
+		List<FedElement> attributes = FedHelpers.getAllChildElements( element, "attribute" );
+		for( FedElement attributeElement : attributes )
 		{
 			String attributeName = FedHelpers.getChildValue( attributeElement, "name" );
 			
@@ -310,9 +319,9 @@ public class FOM
      * </interactions>
 	 * </pre>
 	 */
-	private ICMetadata extractInteractions( Element element ) throws JErrorReadingFED
+	private ICMetadata extractInteractions( FedElement element ) throws JErrorReadingFED
 	{
-		Element interactionRootElement = FedHelpers.getFirstChildElement( element, 
+		FedElement interactionRootElement = FedHelpers.getFirstChildElement( element, 
 		                                                                  "interactionClass" );
 		if( interactionRootElement == null )
 		{
@@ -356,12 +365,12 @@ public class FOM
 		return interactionRoot;
 	}
 
-	private void extractInteractions( ICMetadata parent, Element parentElement )
+	private void extractInteractions( ICMetadata parent, FedElement parentElement )
 		throws JErrorReadingFED
 	{
-		List<Element> children = FedHelpers.getAllChildElements( parentElement, 
+		List<FedElement> children = FedHelpers.getAllChildElements( parentElement, 
 		                                                         "interactionClass" );
-		for( Element current : children )
+		for( FedElement current : children )
 		{
 			// create the metadata type
 			String interactionClassName = FedHelpers.getChildValue( current, "name" );
@@ -397,11 +406,11 @@ public class FOM
 	 * "interactionClass" element. For each parameter, a {@link PCMetadata} will be created
 	 * and stored inside the provided {@link ICMetadata}.
 	 */
-	private void extractParameters( ICMetadata clazz, Element element ) throws JErrorReadingFED
+	private void extractParameters( ICMetadata clazz, FedElement element ) throws JErrorReadingFED
 	{
 		ObjectModel theModel = clazz.getModel();
-		List<Element> parameters = FedHelpers.getAllChildElements( element, "parameter" );
-		for( Element parameterElement : parameters )
+		List<FedElement> parameters = FedHelpers.getAllChildElements( element, "parameter" );
+		for( FedElement parameterElement : parameters )
 		{
 			String parameterName = FedHelpers.getChildValue( parameterElement, "name" );
 			
@@ -439,32 +448,36 @@ public class FOM
 	public static ObjectModel parseFOM( URL fed ) throws JCouldNotOpenFED, JErrorReadingFED
 	{
 		////////////////////////////////////////
-		// parse the fed file into a DOM-tree //
+		// read the fed file in               //
 		////////////////////////////////////////
 		if( fed == null )
 			throw new JCouldNotOpenFED( "Can't locate fed file: " + fed );
 
 		// try to open a stream to the given URL
-		Element rootElement = null;
+		InputStream stream = null;
 		try
 		{
-			// open the file
-			InputStream stream = fed.openStream();
-			// parse the thing in
-			Document document = PARSER.parse( stream );
-			document.normalize();
-			rootElement = document.getDocumentElement();
-			// close off the stream
-			stream.close();
+			stream = fed.openStream();
 		}
 		catch( IOException ioex )
 		{
 			throw new JCouldNotOpenFED( "Error opening fed file: "+ioex.getMessage(), ioex );
 		}
+
+		// stream the parts of the document we care about in, skipping everything else
+		FedElement rootElement = null;
+		try
+		{
+			rootElement = FedStreamReader.read( stream );
+		}
 		catch( Exception e )
 		{
 			throw new JErrorReadingFED( "Error reading fed file: " + e.getMessage(), e );
 		}
+		finally
+		{
+			try{ stream.close(); }catch( IOException ioex ){ /* ignore */ }
+		}
 		
 		/////////////////////
 		// process the FOM //
@@ -54,7 +54,7 @@ public class AttributeReleaseRequestCallbackHandler extends LRC1516eCallbackHand
 	public void callback( MessageContext context ) throws FederateInternalError
 	{
 		AttributeAcquire callback = context.getRequest( AttributeAcquire.class, this );
-		ObjectInstanceHandle objectHandle = new HLA1516eHandle( callback.getObjectHandle() );
+		ObjectInstanceHandle objectHandle = HLA1516eHandle.valueOf( callback.getObjectHandle() );
 		Set<Integer> attributes = callback.getAttributes();
 		AttributeHandleSet ahs = new HLA1516eAttributeHandleSet( attributes );
 		byte[] tag = callback.getTag();
@@ -55,7 +55,7 @@ public class AttributesAcquiredCallbackHandler extends LRC1516eCallbackHandler
 	{
 		OwnershipAcquired acquired = context.getRequest( OwnershipAcquired.class, this );
 		vetoUnlessFromUs( acquired );
-		ObjectInstanceHandle objectHandle = new HLA1516eHandle( acquired.getObjectHandle() );
+		ObjectInstanceHandle objectHandle = HLA1516eHandle.valueOf( acquired.getObjectHandle() );
 		Set<Integer> attributes = acquired.getAttributeHandles();
 		AttributeHandleSet handleSet = new HLA1516eAttributeHandleSet( attributes );
 
@@ -55,7 +55,7 @@ public class AttributesUnavailableCallbackHandler extends LRC1516eCallbackHandle
 	{
 		AttributesUnavailable unavailable = context.getRequest( AttributesUnavailable.class, this );
 		vetoUnlessFromUs( unavailable );
-		ObjectInstanceHandle objectHandle = new HLA1516eHandle( unavailable.getObjectHandle() );
+		ObjectInstanceHandle objectHandle = HLA1516eHandle.valueOf( unavailable.getObjectHandle() );
 		Set<Integer> attributes = unavailable.getAttributeHandles();
 		AttributeHandleSet handleSet = new HLA1516eAttributeHandleSet( attributes );
 		
@@ -63,8 +63,8 @@ public class DiscoverObjectCallbackHandler extends LRC1516eCallbackHandler
 		}
 		
 		// do the callback
-		ObjectInstanceHandle oHandle = new HLA1516eHandle( objectHandle );
-		ObjectClassHandle cHandle = new HLA1516eHandle( classHandle );
+		ObjectInstanceHandle oHandle = HLA1516eHandle.valueOf( objectHandle );
+		ObjectClassHandle cHandle = HLA1516eHandle.valueOf( classHandle );
 		fedamb().discoverObjectInstance( oHandle, cHandle, objectName );
 		helper.reportServiceInvocation( "discoverObjectInstance", 
 		                                true, 
@@ -54,7 +54,7 @@ public class ProvideUpdateCallbackHandler extends LRC1516eCallbackHandler
 	public void callback( MessageContext context ) throws FederateInternalError
 	{
 		RequestObjectUpdate request = context.getRequest( RequestObjectUpdate.class, this );
-		ObjectInstanceHandle objectHandle = new HLA1516eHandle( request.getObjectId() );
+		ObjectInstanceHandle objectHandle = HLA1516eHandle.valueOf( request.getObjectId() );
 		Set<Integer> attributes = request.getAttributes();
 		AttributeHandleSet ahs = new HLA1516eAttributeHandleSet( attributes );
 		byte[] tag = request.getTag();
@@ -59,7 +59,7 @@ public class ReceiveInteractionCallbackHandler extends LRC1516eCallbackHandler
 	public void callback( MessageContext context ) throws FederateInternalError
 	{
 		SendInteraction request = context.getRequest( SendInteraction.class, this );
-		InteractionClassHandle classHandle = new HLA1516eHandle( request.getInteractionId() );
+		InteractionClassHandle classHandle = HLA1516eHandle.valueOf( request.getInteractionId() );
 		HashMap<Integer,byte[]> parameters = request.getParameters();
 		byte[] tag = request.getTag();
 
@@ -88,17 +88,20 @@ public class ReceiveInteractionCallbackHandler extends LRC1516eCallbackHandler
 			                             timestamp,                 // time 
 			                             OrderType.TIMESTAMP,       // received order
 			                             supplement );              // supplemental receive info
-			helper.reportServiceInvocation( "receiveInteraction", 
-			                                true, 
-			                                null, 
-			                                classHandle,
-			                                received,
-			                                tag,
-			                                OrderType.TIMESTAMP,
-			                                RELIABLE,
-			                                timestamp,
-			                                OrderType.TIMESTAMP,
-			                                supplement );
+			if( helper.isReportingServices() )
+			{
+				helper.reportServiceInvocation( "receiveInteraction", 
+				                                true, 
+				                                null, 
+				                                classHandle,
+				                                received,
+				                                tag,
+				                                OrderType.TIMESTAMP,
+				                                RELIABLE,
+				                                timestamp,
+				                                OrderType.TIMESTAMP,
+				                                supplement );
+			}
 		}
 		else
 		{
@@ -114,16 +117,19 @@ public class ReceiveInteractionCallbackHandler extends LRC1516eCallbackHandler
 			                             OrderType.RECEIVE, // sent order
 			                             BEST_EFFORT,       // transport
 			                             supplement );      // supplemental receive info
-			helper.reportServiceInvocation( "receiveInteraction", 
-			                                true, 
-			                                null, 
-			                                classHandle,
-			                                received,
-			                                request,
-			                                tag,
-			                                OrderType.RECEIVE,
-			                                BEST_EFFORT,
-			                                supplement );
+			if( helper.isReportingServices() )
+			{
+				helper.reportServiceInvocation( "receiveInteraction", 
+				                                true, 
+				                                null, 
+				                                classHandle,
+				                                received,
+				                                request,
+				                                tag,
+				                                OrderType.RECEIVE,
+				                                BEST_EFFORT,
+				                                supplement );
+			}
 		}
 		
 		context.success();
@@ -16,6 +16,7 @@ package org.portico.impl.hla1516e.handlers2;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.portico.impl.hla1516e.types.HLA1516eAttributeHandleValueMap;
 import org.portico.impl.hla1516e.types.HLA1516eHandle;
@@ -59,12 +60,11 @@ public class ReflectAttributesCallbackHandler extends LRC1516eCallbackHandler
 	public void callback( MessageContext context ) throws FederateInternalError
 	{
 		UpdateAttributes request = context.getRequest( UpdateAttributes.class, this );
-		ObjectInstanceHandle handle = new HLA1516eHandle( request.getObjectId() );
-		HashMap<Integer,byte[]> attributes = getFilteredAttributes( request );
+		ObjectInstanceHandle handle = HLA1516eHandle.valueOf( request.getObjectId() );
 		byte[] tag = request.getTag();
 
 		// convert the attributes into an appropriate form
-		HLA1516eAttributeHandleValueMap reflected = new HLA1516eAttributeHandleValueMap(attributes);
+		HLA1516eAttributeHandleValueMap reflected = getFilteredAttributes( request );
 		SupplementalInfo supplement = null;//new SupplementalInfo( request.getSourceFederate() );
 		
 		
@@ -75,7 +75,7 @@ public class ReflectAttributesCallbackHandler extends LRC1516eCallbackHandler
 			if( logger.isTraceEnabled() )
 			{
 				logger.trace( "CALLBACK reflectAttributeValues(object="+handle+",attributes="+
-				              acMonikerWithSizes(attributes)+
+				              acMonikerWithSizes(reflected.toJavaMap())+
 				              ",time="+timestamp+") (TSO)" );
 			}
 			
@@ -87,24 +87,27 @@ public class ReflectAttributesCallbackHandler extends LRC1516eCallbackHandler
 			                                 timestamp,                 // time
 			                                 OrderType.TIMESTAMP,       // received order
 			                                 supplement );              // supplemental reflect info
-			helper.reportServiceInvocation( "reflectAttributeValues", 
-			                                true, 
-			                                null, 
-			                                handle,
-			                                reflected,
-			                                tag,
-			                                OrderType.TIMESTAMP,
-			                                RELIABLE,
-			                                timestamp,
-			                                OrderType.TIMESTAMP,
-			                                supplement );
+			if( helper.isReportingServices() )
+			{
+				helper.reportServiceInvocation( "reflectAttributeValues", 
+				                                true, 
+				                                null, 
+				                                handle,
+				                                reflected,
+				                                tag,
+				                                OrderType.TIMESTAMP,
+				                                RELIABLE,
+				                                timestamp,
+				                                OrderType.TIMESTAMP,
+				                                supplement );
+			}
 		}
 		else
 		{
 			if( logger.isTraceEnabled() )
 			{
 				logger.trace( "CALLBACK reflectAttributeValues(object="+handle+",attributes="+
-				              acMonikerWithSizes(attributes)+") (RO)" );
+				              acMonikerWithSizes(reflected.toJavaMap())+") (RO)" );
 			}
 			
 			fedamb().reflectAttributeValues( handle,
@@ -113,15 +116,18 @@ public class ReflectAttributesCallbackHandler extends LRC1516eCallbackHandler
 			                                 OrderType.RECEIVE,         // sent order
 			                                 BEST_EFFORT,               // transport
 			                                 supplement );              // supplemental reflect info
-			helper.reportServiceInvocation( "reflectAttributeValues", 
-			                                true, 
-			                                null, 
-			                                handle,
-			                                reflected,
-			                                tag,
-			                                OrderType.RECEIVE,
-			                                BEST_EFFORT,
-			                                supplement );
+			if( helper.isReportingServices() )
+			{
+				helper.reportServiceInvocation( "reflectAttributeValues", 
+				                                true, 
+				                                null, 
+				                                handle,
+				                                reflected,
+				                                tag,
+				                                OrderType.RECEIVE,
+				                                BEST_EFFORT,
+				                                supplement );
+			}
 		}
 		
 		context.success();
@@ -134,15 +140,16 @@ public class ReflectAttributesCallbackHandler extends LRC1516eCallbackHandler
 	 * The set of filtered attributes that should be delivered to the federate are contained in a
 	 * Map<Integer,FilteredAttribute> where FilteredAttribute contains the byte[] value and the
 	 * subscription region that overlapped with the sending region. This information is put into
-	 * the information returned in the callback in HLA 1.3, but isn't in 1516. This method converts
-	 * that map into a Map<Integer,byte[]> we can deliver as part of a 1516 callback.
+	 * the information returned in the callback in HLA 1.3, but isn't in 1516. This method copies
+	 * the values straight into the map we deliver as part of a 1516 callback, keyed on the raw
+	 * handles, so no handle objects are created.
 	 */
-	private HashMap<Integer,byte[]> getFilteredAttributes( UpdateAttributes request )
+	private HLA1516eAttributeHandleValueMap getFilteredAttributes( UpdateAttributes request )
 	{
-		HashMap<Integer,byte[]> filteredSet = new HashMap<Integer,byte[]>();
 		HashMap<Integer,FilteredAttribute> received = request.getFilteredAttributes();
-		for( Integer attribute : received.keySet() )
-			filteredSet.put( attribute, received.get(attribute).value );
+		HLA1516eAttributeHandleValueMap filteredSet = new HLA1516eAttributeHandleValueMap( received.size() );
+		for( Entry<Integer,FilteredAttribute> attribute : received.entrySet() )
+			filteredSet.put( attribute.getKey().intValue(), attribute.getValue().value );
 		
 		return filteredSet;
 	}
@@ -54,7 +54,7 @@ public class RemoveObjectCallbackHandler extends LRC1516eCallbackHandler
 	public void callback( MessageContext context ) throws FederateInternalError
 	{
 		DeleteObject request = context.getRequest( DeleteObject.class, this );
-		ObjectInstanceHandle objectHandle = new HLA1516eHandle( request.getObjectHandle() );
+		ObjectInstanceHandle objectHandle = HLA1516eHandle.valueOf( request.getObjectHandle() );
 		byte[] tag = request.getTag();
 		
 		// generate the supplemental information
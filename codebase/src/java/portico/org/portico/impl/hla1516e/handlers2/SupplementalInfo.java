@@ -58,7 +58,7 @@ public class SupplementalInfo implements FederateAmbassador.SupplementalReceiveI
 	protected SupplementalInfo( int producingFederate )
 	{
 		this();
-		this.producingFederate = new HLA1516eHandle( producingFederate );
+		this.producingFederate = HLA1516eHandle.valueOf( producingFederate );
 	}
 	
 	//----------------------------------------------------------
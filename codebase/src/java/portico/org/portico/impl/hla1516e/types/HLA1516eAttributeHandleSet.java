@@ -45,14 +45,14 @@ public class HLA1516eAttributeHandleSet
 	{
 		super( attributes.size() );
 		for( Integer attribute : attributes )
-			this.add( new HLA1516eHandle(attribute) );
+			this.add( HLA1516eHandle.valueOf(attribute) );
 	}
 	
 	public HLA1516eAttributeHandleSet( int[] attributes )
 	{
 		super( attributes.length );
 		for( int attribute : attributes )
-			add( new HLA1516eHandle(attribute) );
+			add( HLA1516eHandle.valueOf(attribute) );
 	}
 
 	//----------------------------------------------------------
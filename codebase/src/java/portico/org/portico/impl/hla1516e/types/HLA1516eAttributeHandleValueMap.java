@@ -22,8 +22,12 @@ import hla.rti1516e.exceptions.RTIinternalError;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Attribute handle/value map keyed on the raw <code>int</code> handles. See
+ * {@link HLA1516eHandleValueMap} for the details.
+ */
 public class HLA1516eAttributeHandleValueMap
-       extends HashMap<AttributeHandle,byte[]>
+       extends HLA1516eHandleValueMap<AttributeHandle>
        implements AttributeHandleValueMap
 {
 	//----------------------------------------------------------
@@ -49,9 +53,7 @@ public class HLA1516eAttributeHandleValueMap
 
 	public HLA1516eAttributeHandleValueMap( Map<Integer,byte[]> attributes )
 	{
-		this();
-		for( Integer attribute : attributes.keySet() )
-			this.put( new HLA1516eHandle(attribute), attributes.get(attribute) );
+		super( attributes );
 	}
 
 	//----------------------------------------------------------
@@ -63,7 +65,7 @@ public class HLA1516eAttributeHandleValueMap
 	 */
 	public ByteWrapper getValueReference( AttributeHandle key )
 	{
-		byte[] value = super.get( key );
+		byte[] value = get( key );
 		if( value == null )
 			return null;
 		else
@@ -77,7 +79,7 @@ public class HLA1516eAttributeHandleValueMap
 	 */
 	public ByteWrapper getValueReference( AttributeHandle key, ByteWrapper byteWrapper )
 	{
-		byte[] value = super.get( key );
+		byte[] value = get( key );
 		if( value == null )
 			return null;
 		
@@ -92,12 +94,16 @@ public class HLA1516eAttributeHandleValueMap
 	public static HashMap<Integer,byte[]> toJavaMap( AttributeHandleValueMap map )
 		throws RTIinternalError
 	{
+		// our own maps can be read straight out of their tables
+		if( map instanceof HLA1516eAttributeHandleValueMap )
+			return ((HLA1516eAttributeHandleValueMap)map).toJavaMap();
+
 		try
 		{
 			HashMap<Integer,byte[]> realMap = new HashMap<Integer,byte[]>();
-			for( AttributeHandle handle : map.keySet() )
+			for( Map.Entry<AttributeHandle,byte[]> entry : map.entrySet() )
 			{
-				realMap.put( ((HLA1516eHandle)handle).handle, map.get(handle) );
+				realMap.put( ((HLA1516eHandle)entry.getKey()).handle, entry.getValue() );
 			}
 			
 			return realMap;
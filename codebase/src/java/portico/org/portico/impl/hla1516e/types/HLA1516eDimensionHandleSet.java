@@ -44,14 +44,14 @@ public class HLA1516eDimensionHandleSet
 	{
 		super( dimensions.size() );
 		for( Integer dimension : dimensions )
-			this.add( new HLA1516eHandle(dimension) );
+			this.add( HLA1516eHandle.valueOf(dimension) );
 	}
 	
 	public HLA1516eDimensionHandleSet( int[] dimensions )
 	{
 		super( dimensions.length );
 		for( int dimension : dimensions )
-			add( new HLA1516eHandle(dimension) );
+			add( HLA1516eHandle.valueOf(dimension) );
 	}
 
 	//----------------------------------------------------------
@@ -14,7 +14,8 @@
  */
 package org.portico.impl.hla1516e.types;
 
-import org.portico.lrc.model.ObjectModel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import org.portico.utils.bithelpers.BitHelpers;
 
 import hla.rti1516e.AttributeHandle;
@@ -50,6 +51,11 @@ import hla.rti1516e.exceptions.RTIinternalError;
  * assert ahandle.equals(fhandle); // would work, but should it...?   
  * </pre>
  * Ultimately, I don't care. So there.
+ * <p/>
+ * Handles are immutable. Those that the RTI hands out (callbacks, handle factories, the keys
+ * of our handle/value maps) come from {@link #valueOf(int)}, which gives back a shared instance
+ * for all but the very largest handle values. To read a handle from a buffer, use
+ * {@link #decode(Class, byte[], int)}.
  */
 public class HLA1516eHandle implements AttributeHandle,
                                        DimensionHandle,
@@ -67,10 +73,14 @@ public class HLA1516eHandle implements AttributeHandle,
 	//----------------------------------------------------------
 	public static final int EncodedLength = 8;
 
+	/** Handles below this value are interned, see valueOf() */
+	private static final int CACHE_SIZE = 16384;
+	private static final AtomicReferenceArray<HLA1516eHandle> CACHE = new AtomicReferenceArray<>( CACHE_SIZE );
+
 	//----------------------------------------------------------
 	//                   INSTANCE VARIABLES
 	//----------------------------------------------------------
-	protected int handle;
+	protected final int handle;
 
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -115,10 +125,15 @@ public class HLA1516eHandle implements AttributeHandle,
 		wrapper.putInt( this.handle );
 	}
 	
-	public void decode( byte[] buffer, int offset )
+	/**
+	 * Handles are immutable (and most instances are shared, see {@link #valueOf(int)}), so they
+	 * can't be decoded into. Use {@link #decode(Class, byte[], int)} to get a handle from a buffer.
+	 * 
+	 * @throws UnsupportedOperationException Always
+	 */
+	public void decode( byte[] buffer, int offset ) throws UnsupportedOperationException
 	{
-		BitHelpers.readIntBE( buffer, offset );
-		this.handle = BitHelpers.readIntBE( buffer, offset + 4 );
+		throw new UnsupportedOperationException( "Handles are immutable: use HLA1516eHandle.decode(Class,byte[],int)" );
 	}
 
 	public byte[] getBytes()
@@ -142,16 +157,33 @@ public class HLA1516eHandle implements AttributeHandle,
 	 */
 	public static <T> T decode( Class<T> standardType, byte[] buffer, int offset )
 	{
-		HLA1516eHandle handle = new HLA1516eHandle( ObjectModel.INVALID_HANDLE );
-		handle.decode( buffer, offset );
-		return standardType.cast( handle );
+		return standardType.cast( valueOf(BitHelpers.readIntBE(buffer,offset+4)) );
 	}
 
 	public static int decode( byte[] buffer )
 	{
-		HLA1516eHandle handle = new HLA1516eHandle( ObjectModel.INVALID_HANDLE );
-		handle.decode( buffer, 0 );
-		return handle.handle;
+		return BitHelpers.readIntBE( buffer, 4 );
+	}
+
+	/**
+	 * Get a handle instance for the given value. Instances for small handle values (which is
+	 * almost all of them) are created once and then shared, so this doesn't allocate once
+	 * things have warmed up. Handles compare by value, so callers can't tell the difference.
+	 */
+	public static HLA1516eHandle valueOf( int handle )
+	{
+		if( handle < 0 || handle >= CACHE_SIZE )
+			return new HLA1516eHandle( handle );
+
+		HLA1516eHandle cached = CACHE.get( handle );
+		if( cached == null )
+		{
+			cached = new HLA1516eHandle( handle );
+			if( CACHE.compareAndSet(handle,null,cached) == false )
+				cached = CACHE.get( handle );
+		}
+
+		return cached;
 	}
 
 	///////////////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,537 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import hla.rti1516e.encoding.ByteWrapper;
+
+/**
+ * Map from a handle to a <code>byte[]</code> value, keyed on the raw <code>int</code> handle
+ * rather than on handle objects. This is the common implementation behind the
+ * {@link HLA1516eAttributeHandleValueMap} and {@link HLA1516eParameterHandleValueMap}.
+ * <p/>
+ * The keys and values sit in two parallel arrays, using open addressing with linear probing.
+ * Nothing is allocated when an entry is added (other than when the table grows), and nothing is
+ * allocated to look a value up. Keys handed out by {@link #keySet()} are the interned instances
+ * from {@link HLA1516eHandle#valueOf(int)}, so iterating over the keys doesn't allocate handles
+ * either. The RTI fills these maps straight from the <code>int</code> handles in the messages it
+ * receives, and reads them straight back out again when sending (see {@link #toJavaMap()}).
+ * <p/>
+ * Keys must be {@link HLA1516eHandle}s. As with <code>HashMap</code>, this class is not
+ * thread-safe and values are compared by identity. Cloning copies the tables but not the values.
+ *
+ * @param <K> The handle type this map is keyed on
+ */
+public abstract class HLA1516eHandleValueMap<K> extends AbstractMap<K,byte[]>
+                                                implements Cloneable, Serializable
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final long serialVersionUID = 98121116105109L;
+	private static final int MIN_CAPACITY = 8;
+
+	// Slot markers. An empty slot (null) ends a probe, a removed one doesn't. We need a
+	// stand-in for null values so that they aren't mistaken for empty slots.
+	private static final byte[] REMOVED = new byte[0];
+	private static final byte[] NULL_VALUE = new byte[0];
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	// written out as entries, see writeObject()
+	private transient int[] keys;
+	private transient byte[][] values;
+	private transient int mask;
+	private transient int size;
+	private transient int used;      // live entries plus removed markers
+	private transient int modCount;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected HLA1516eHandleValueMap()
+	{
+		this( MIN_CAPACITY );
+	}
+
+	/**
+	 * @param capacity The number of entries the map should be able to hold before it has to grow
+	 */
+	protected HLA1516eHandleValueMap( int capacity )
+	{
+		allocate( tableSizeFor(capacity) );
+	}
+
+	protected HLA1516eHandleValueMap( Map<Integer,byte[]> values )
+	{
+		this( values.size() );
+		for( Map.Entry<Integer,byte[]> entry : values.entrySet() )
+			put( entry.getKey(), entry.getValue() );
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Primitive Access   ////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return The value stored against the given handle, or null if there isn't one
+	 */
+	public byte[] get( int handle )
+	{
+		int slot = find( handle );
+		return slot == -1 ? null : unmask( values[slot] );
+	}
+
+	public boolean containsKey( int handle )
+	{
+		return find( handle ) != -1;
+	}
+
+	/**
+	 * Store the value against the given handle, replacing any value already there.
+	 *
+	 * @return The value previously stored against the handle, or null if there wasn't one
+	 */
+	public byte[] put( int handle, byte[] value )
+	{
+		byte[] stored = value == null ? NULL_VALUE : value;
+		int slot = find( handle );
+		if( slot != -1 )
+		{
+			byte[] previous = values[slot];
+			values[slot] = stored;
+			return unmask( previous );
+		}
+
+		// not there, make sure we have room before we add it
+		if( (used+1)*2 > keys.length )
+			rehash( tableSizeFor(size+1) );
+
+		slot = indexFor( handle );
+		while( values[slot] != null && values[slot] != REMOVED )
+			slot = (slot+1) & mask;
+
+		if( values[slot] == null )
+			++used;
+
+		keys[slot] = handle;
+		values[slot] = stored;
+		++size;
+		++modCount;
+		return null;
+	}
+
+	/**
+	 * @return The value that was stored against the handle, or null if there wasn't one
+	 */
+	public byte[] remove( int handle )
+	{
+		int slot = find( handle );
+		if( slot == -1 )
+			return null;
+
+		return removeSlot( slot );
+	}
+
+	/**
+	 * Returns a {@link ByteWrapper} around the value stored against the given handle, or null
+	 * if there is no value for it.
+	 */
+	public ByteWrapper getValueReference( int handle )
+	{
+		byte[] value = get( handle );
+		return value == null ? null : new ByteWrapper( value );
+	}
+
+	/**
+	 * Update the given {@link ByteWrapper} to wrap the value stored against the given handle
+	 * and return it. If there is no value for the handle, null is returned.
+	 */
+	public ByteWrapper getValueReference( int handle, ByteWrapper byteWrapper )
+	{
+		byte[] value = get( handle );
+		if( value == null )
+			return null;
+
+		byteWrapper.reassign( value, 0, value.length );
+		return byteWrapper;
+	}
+
+	/**
+	 * Copy the contents into a map of raw handles, as used in the messages the LRC sends.
+	 * Reads the tables directly, without going through any handle objects.
+	 */
+	public HashMap<Integer,byte[]> toJavaMap()
+	{
+		HashMap<Integer,byte[]> map = new HashMap<>( (int)(size/0.75f)+1 );
+		for( int i = 0; i < values.length; i++ )
+		{
+			if( isLive(values[i]) )
+				map.put( keys[i], unmask(values[i]) );
+		}
+
+		return map;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Map Methods   /////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public int size()
+	{
+		return this.size;
+	}
+
+	@Override
+	public byte[] get( Object key )
+	{
+		return key instanceof HLA1516eHandle ? get( ((HLA1516eHandle)key).handle ) : null;
+	}
+
+	@Override
+	public boolean containsKey( Object key )
+	{
+		return key instanceof HLA1516eHandle && containsKey( ((HLA1516eHandle)key).handle );
+	}
+
+	@Override
+	public byte[] put( K key, byte[] value )
+	{
+		return put( toHandle(key), value );
+	}
+
+	@Override
+	public byte[] remove( Object key )
+	{
+		return key instanceof HLA1516eHandle ? remove( ((HLA1516eHandle)key).handle ) : null;
+	}
+
+	@Override
+	public void clear()
+	{
+		Arrays.fill( values, null );
+		size = 0;
+		used = 0;
+		++modCount;
+	}
+
+	@Override
+	public Set<K> keySet()
+	{
+		return new AbstractSet<K>()
+		{
+			public Iterator<K> iterator()
+			{
+				return new SlotIterator<K>()
+				{
+					@SuppressWarnings("unchecked")
+					protected K get( int slot ) { return (K)HLA1516eHandle.valueOf( keys[slot] ); }
+				};
+			}
+
+			public int size() { return size; }
+			public boolean contains( Object key ) { return containsKey( key ); }
+			public boolean remove( Object key ) { return HLA1516eHandleValueMap.this.remove(key) != null; }
+			public void clear() { HLA1516eHandleValueMap.this.clear(); }
+		};
+	}
+
+	@Override
+	public Collection<byte[]> values()
+	{
+		return new AbstractCollection<byte[]>()
+		{
+			public Iterator<byte[]> iterator()
+			{
+				return new SlotIterator<byte[]>()
+				{
+					protected byte[] get( int slot ) { return unmask( values[slot] ); }
+				};
+			}
+
+			public int size() { return size; }
+			public void clear() { HLA1516eHandleValueMap.this.clear(); }
+		};
+	}
+
+	@Override
+	public Set<Map.Entry<K,byte[]>> entrySet()
+	{
+		return new AbstractSet<Map.Entry<K,byte[]>>()
+		{
+			public Iterator<Map.Entry<K,byte[]>> iterator()
+			{
+				return new SlotIterator<Map.Entry<K,byte[]>>()
+				{
+					protected Map.Entry<K,byte[]> get( int slot ) { return new Entry( slot ); }
+				};
+			}
+
+			public int size() { return size; }
+			public void clear() { HLA1516eHandleValueMap.this.clear(); }
+		};
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object clone()
+	{
+		try
+		{
+			HLA1516eHandleValueMap<K> clone = (HLA1516eHandleValueMap<K>)super.clone();
+			clone.keys = keys.clone();
+			clone.values = values.clone();
+			clone.modCount = 0;
+			return clone;
+		}
+		catch( CloneNotSupportedException cnse )
+		{
+			throw new InternalError( cnse ); // can't happen, we're Cloneable
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Serialization   ///////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	// The slot markers are compared by identity, so write out the entries, not the tables
+	private void writeObject( ObjectOutputStream oos ) throws IOException
+	{
+		oos.defaultWriteObject();
+		oos.writeInt( size );
+		for( int i = 0; i < values.length; i++ )
+		{
+			if( isLive(values[i]) )
+			{
+				oos.writeInt( keys[i] );
+				oos.writeObject( unmask(values[i]) );
+			}
+		}
+	}
+
+	private void readObject( ObjectInputStream ois ) throws IOException, ClassNotFoundException
+	{
+		ois.defaultReadObject();
+		int count = ois.readInt();
+		allocate( tableSizeFor(count) );
+		this.size = 0;
+		for( int i = 0; i < count; i++ )
+			put( ois.readInt(), (byte[])ois.readObject() );
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Table Management   ////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/** @return The slot holding the given handle, or -1 if it isn't in the map */
+	private int find( int handle )
+	{
+		int slot = indexFor( handle );
+		byte[] value;
+		while( (value = values[slot]) != null )
+		{
+			if( value != REMOVED && keys[slot] == handle )
+				return slot;
+
+			slot = (slot+1) & mask;
+		}
+
+		return -1;
+	}
+
+	private byte[] removeSlot( int slot )
+	{
+		byte[] previous = values[slot];
+		values[slot] = REMOVED; // keys further along the probe may depend on this slot
+		--size;
+		++modCount;
+		return unmask( previous );
+	}
+
+	private int indexFor( int handle )
+	{
+		// handles are mostly small and sequential, spread them out a bit
+		int hash = handle * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	private void allocate( int capacity )
+	{
+		this.keys = new int[capacity];
+		this.values = new byte[capacity][];
+		this.mask = capacity-1;
+		this.used = 0;
+	}
+
+	/** Move everything into a fresh table of the given size, dropping any removed markers */
+	private void rehash( int capacity )
+	{
+		int[] oldKeys = this.keys;
+		byte[][] oldValues = this.values;
+		allocate( capacity );
+		for( int i = 0; i < oldValues.length; i++ )
+		{
+			if( isLive(oldValues[i]) == false )
+				continue;
+
+			int slot = indexFor( oldKeys[i] );
+			while( values[slot] != null )
+				slot = (slot+1) & mask;
+
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+			++used;
+		}
+	}
+
+	private int toHandle( K key )
+	{
+		if( key instanceof HLA1516eHandle )
+			return ((HLA1516eHandle)key).handle;
+		else if( key == null )
+			throw new NullPointerException( "Handle cannot be null" );
+		else
+			throw new IllegalArgumentException( "Expecting HLA1516eHandle, found: "+key.getClass() );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/** @return The table size that keeps the given number of entries at or under half full */
+	private static int tableSizeFor( int entries )
+	{
+		int capacity = MIN_CAPACITY;
+		while( capacity < entries*2 )
+			capacity <<= 1;
+
+		return capacity;
+	}
+
+	private static boolean isLive( byte[] value )
+	{
+		return value != null && value != REMOVED;
+	}
+
+	private static byte[] unmask( byte[] value )
+	{
+		return value == NULL_VALUE ? null : value;
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	////// Private Class: SlotIterator   /////////////////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////
+	/** Walks the live slots of the table. Removing through it just marks the slot removed,
+	    so nothing moves around underneath it. */
+	private abstract class SlotIterator<T> implements Iterator<T>
+	{
+		private int next = advance( 0 );
+		private int current = -1;
+		private int expectedModCount = modCount;
+
+		private int advance( int from )
+		{
+			while( from < values.length && isLive(values[from]) == false )
+				from++;
+
+			return from;
+		}
+
+		public boolean hasNext()
+		{
+			return next < values.length;
+		}
+
+		public T next()
+		{
+			if( modCount != expectedModCount )
+				throw new ConcurrentModificationException();
+			if( next >= values.length )
+				throw new NoSuchElementException();
+
+			current = next;
+			next = advance( next+1 );
+			return get( current );
+		}
+
+		public void remove()
+		{
+			if( current == -1 || isLive(values[current]) == false )
+				throw new IllegalStateException();
+			if( modCount != expectedModCount )
+				throw new ConcurrentModificationException();
+
+			removeSlot( current );
+			expectedModCount = modCount;
+		}
+
+		protected abstract T get( int slot );
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	////// Private Class: Entry   ////////////////////////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////
+	private class Entry implements Map.Entry<K,byte[]>
+	{
+		private final int slot;
+		private Entry( int slot ) { this.slot = slot; }
+
+		@SuppressWarnings("unchecked")
+		public K getKey() { return (K)HLA1516eHandle.valueOf( keys[slot] ); }
+		public byte[] getValue() { return unmask( values[slot] ); }
+		public byte[] setValue( byte[] value )
+		{
+			byte[] previous = values[slot];
+			values[slot] = value == null ? NULL_VALUE : value;
+			return unmask( previous );
+		}
+
+		public boolean equals( Object other )
+		{
+			if( other instanceof Map.Entry == false )
+				return false;
+
+			Map.Entry<?,?> entry = (Map.Entry<?,?>)other;
+			return getKey().equals( entry.getKey() ) && Objects.equals( getValue(), entry.getValue() );
+		}
+
+		public int hashCode()
+		{
+			return keys[slot] ^ Objects.hashCode( getValue() );
+		}
+
+		public String toString()
+		{
+			return keys[slot]+"="+getValue();
+		}
+	}
+}
@@ -22,8 +22,12 @@ import hla.rti1516e.exceptions.RTIinternalError;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Parameter handle/value map keyed on the raw <code>int</code> handles. See
+ * {@link HLA1516eHandleValueMap} for the details.
+ */
 public class HLA1516eParameterHandleValueMap
-       extends HashMap<ParameterHandle,byte[]>
+       extends HLA1516eHandleValueMap<ParameterHandle>
        implements ParameterHandleValueMap
 {
 	//----------------------------------------------------------
@@ -46,12 +50,10 @@ public class HLA1516eParameterHandleValueMap
 	{
 		super( capacity );
 	}
-	
+
 	public HLA1516eParameterHandleValueMap( Map<Integer,byte[]> parameters )
 	{
-		this();
-		for( Integer parameter : parameters.keySet() )
-			this.put( new HLA1516eHandle(parameter), parameters.get(parameter) );
+		super( parameters );
 	}
 
 	//----------------------------------------------------------
@@ -63,7 +65,7 @@ public class HLA1516eParameterHandleValueMap
 	 */
 	public ByteWrapper getValueReference( ParameterHandle key )
 	{
-		byte[] value = super.get( key );
+		byte[] value = get( key );
 		if( value == null )
 			return null;
 		else
@@ -73,11 +75,11 @@ public class HLA1516eParameterHandleValueMap
 	/**
 	 * Finds the mapping for the provided {@link ParameterHandle} and update the
 	 * provided {@link ByteWrapper} with it. The same wrapper is then returned.
-	 * If there is no value for the attribute, null is returned.
+	 * If there is no value for the parameter, null is returned.
 	 */
 	public ByteWrapper getValueReference( ParameterHandle key, ByteWrapper byteWrapper )
 	{
-		byte[] value = super.get( key );
+		byte[] value = get( key );
 		if( value == null )
 			return null;
 		
@@ -92,12 +94,16 @@ public class HLA1516eParameterHandleValueMap
 	public static HashMap<Integer,byte[]> toJavaMap( ParameterHandleValueMap map )
 		throws RTIinternalError
 	{
+		// our own maps can be read straight out of their tables
+		if( map instanceof HLA1516eParameterHandleValueMap )
+			return ((HLA1516eParameterHandleValueMap)map).toJavaMap();
+
 		try
 		{
 			HashMap<Integer,byte[]> realMap = new HashMap<Integer,byte[]>();
-			for( ParameterHandle handle : map.keySet() )
+			for( Map.Entry<ParameterHandle,byte[]> entry : map.entrySet() )
 			{
-				realMap.put( ((HLA1516eHandle)handle).handle, map.get(handle) );
+				realMap.put( ((HLA1516eHandle)entry.getKey()).handle, entry.getValue() );
 			}
 			
 			return realMap;
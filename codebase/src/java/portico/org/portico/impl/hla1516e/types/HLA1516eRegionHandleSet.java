@@ -44,14 +44,14 @@ public class HLA1516eRegionHandleSet
 	{
 		super( regions.size() );
 		for( Integer region : regions )
-			this.add( new HLA1516eHandle(region) );
+			this.add( HLA1516eHandle.valueOf(region) );
 	}
 	
 	public HLA1516eRegionHandleSet( int[] regions )
 	{
 		super( regions.length );
 		for( int region : regions )
-			add( new HLA1516eHandle(region) );
+			add( HLA1516eHandle.valueOf(region) );
 	}
 
 	//----------------------------------------------------------
@@ -93,6 +93,12 @@ public class HLA1516eBoolean extends HLA1516eDataElement implements HLAboolean
 		return this.value.getEncodedLength();
 	}
 
+	@Override
+	protected boolean isFixedLength()
+	{
+		return true;
+	}
+
 	@Override
 	public byte[] toByteArray() throws EncoderException
 	{
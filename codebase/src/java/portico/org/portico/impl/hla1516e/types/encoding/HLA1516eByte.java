@@ -42,7 +42,12 @@ public class HLA1516eByte extends HLA1516eOctet implements HLAbyte
 	//----------------------------------------------------------
 	//                    INSTANCE METHODS
 	//----------------------------------------------------------
-	
+	@Override
+	protected boolean isFixedLength()
+	{
+		return true;
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
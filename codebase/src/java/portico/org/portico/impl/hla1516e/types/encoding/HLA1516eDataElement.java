@@ -86,6 +86,33 @@ public abstract class HLA1516eDataElement implements DataElement
 	 */
 	public abstract void decode( byte[] bytes ) throws DecoderException;
 
+	/**
+	 * Returns true if the encoded length of this element can never change once it has been
+	 * created. Composite types use this to decide whether they can hold on to the length and
+	 * octet boundary they last computed rather than walking all of their children again.
+	 * 
+	 * @return true if the encoded length of this element is fixed
+	 */
+	protected boolean isFixedLength()
+	{
+		return false;
+	}
+
+	/**
+	 * Encodes this element without first checking that the buffer has sufficient space. This
+	 * is called by composite types for each of their children once they have already verified
+	 * the space required for the whole structure, so that nested structures aren't measured
+	 * again at every level. Composite types should override this; leaf types can rely on the
+	 * default, which just calls {@link #encode(ByteWrapper)}.
+	 * 
+	 * @param byteWrapper destination for the encoded element
+	 * @throws EncoderException if the element can not be encoded
+	 */
+	protected void encodeUnchecked( ByteWrapper byteWrapper ) throws EncoderException
+	{
+		encode( byteWrapper );
+	}
+
 	/////////////////////////////////////////////////////////////////////////////////////////
 	//////////////////////////////////// Helper Methods /////////////////////////////////////
 	/////////////////////////////////////////////////////////////////////////////////////////
@@ -120,4 +147,25 @@ public abstract class HLA1516eDataElement implements DataElement
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
+	/**
+	 * Encode the given child element on behalf of a composite type that has already checked
+	 * the space available for its entire encoding.
+	 */
+	protected static void encodeChild( DataElement element, ByteWrapper byteWrapper )
+		throws EncoderException
+	{
+		if( element instanceof HLA1516eDataElement )
+			((HLA1516eDataElement)element).encodeUnchecked( byteWrapper );
+		else
+			element.encode( byteWrapper );
+	}
+
+	/**
+	 * @return true if the given element is one of ours and reports its length as fixed
+	 */
+	protected static boolean isFixedLength( DataElement element )
+	{
+		return element instanceof HLA1516eDataElement &&
+		       ((HLA1516eDataElement)element).isFixedLength();
+	}
 }
@@ -14,6 +14,11 @@
  */
 package org.portico.impl.hla1516e.types.encoding;
 
+import org.portico.impl.hla1516e.types.encoding.codec.CodecFactory;
+import org.portico.impl.hla1516e.types.encoding.codec.DatatypeCodec;
+import org.portico.lrc.compat.JConfigurationException;
+import org.portico.lrc.model.ObjectModel;
+
 import hla.rti1516e.encoding.DataElement;
 import hla.rti1516e.encoding.DataElementFactory;
 import hla.rti1516e.encoding.EncoderFactory;
@@ -286,6 +291,58 @@ public class HLA1516eEncoderFactory implements EncoderFactory
 		return new HLA1516eVariableArray<T>( factory, elements );
 	}
 
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/////////////////////////////// Primitive Array Extensions //////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	// These aren't part of the standard EncoderFactory interface. They create variable arrays
+	// that keep their values in a primitive array and encode/decode them in bulk. The encoding
+	// is identical to a standard variable array of the same element type.
+
+	public HLA1516eFloat64BEArray createHLAfloat64BEArray( double... values )
+	{
+		return new HLA1516eFloat64BEArray( values );
+	}
+
+	public HLA1516eInteger32BEArray createHLAinteger32BEArray( int... values )
+	{
+		return new HLA1516eInteger32BEArray( values );
+	}
+
+	public HLA1516eInteger64BEArray createHLAinteger64BEArray( long... values )
+	{
+		return new HLA1516eInteger64BEArray( values );
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	//////////////////////////////////// Codec Extensions ///////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Get a codec that encodes and decodes the named FOM datatype directly to and from the given
+	 * Java type, rather than through a tree of data elements. Codecs are compiled on first use
+	 * and cached for each object model. See {@link CodecFactory} for the types that can be bound.
+	 * 
+	 * @param model the FOM the datatype is defined in (see <code>Rti1516eAmbassadorEx.getFOM()</code>)
+	 * @param datatype the name of the FOM datatype
+	 * @param type the Java type to bind the datatype to
+	 * @throws JConfigurationException if the datatype is unknown, or can't be bound to the type
+	 */
+	public <T> DatatypeCodec<T> createCodec( ObjectModel model, String datatype, Class<T> type )
+		throws JConfigurationException
+	{
+		return CodecFactory.forModel(model).getCodec( datatype, type );
+	}
+
+	/**
+	 * Get a codec for the named FOM datatype that isn't bound to any particular Java type.
+	 * 
+	 * @see #createCodec(ObjectModel, String, Class)
+	 */
+	public DatatypeCodec<Object> createCodec( ObjectModel model, String datatype )
+		throws JConfigurationException
+	{
+		return CodecFactory.forModel(model).getCodec( datatype );
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
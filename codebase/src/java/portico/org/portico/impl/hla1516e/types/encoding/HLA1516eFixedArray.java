@@ -38,6 +38,11 @@ public class HLA1516eFixedArray<T extends DataElement>
 	//----------------------------------------------------------
 	protected List<T> elements;
 
+	// cached measurements, only held when every element has a fixed length
+	private boolean measured;
+	private int encodedLength;
+	private int octetBoundary;
+
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
 	//----------------------------------------------------------
@@ -101,37 +106,91 @@ public class HLA1516eFixedArray<T extends DataElement>
 	public int getOctetBoundary()
 	{
 		// Return the size of the largest element
-		int maxSize = 1;
-		
-		for( T element : this.elements )
-			maxSize = Math.max( maxSize, element.getEncodedLength() );
+		if( !measured )
+			measure();
 		
-		return maxSize;
+		return this.octetBoundary;
 	}
 
 	@Override
 	public void encode( ByteWrapper byteWrapper ) throws EncoderException
 	{
-		int length = this.size();
 		if( byteWrapper.remaining() < this.getEncodedLength() )
 			throw new EncoderException( "Insufficient space remaining in buffer to encode this value" );
 		
-		// Write the array length
-		byteWrapper.putInt( length );
-		
-		// Write the array contents
-		for( T element : elements )
-			element.encode( byteWrapper );
+		encodeUnchecked( byteWrapper );
+	}
+
+	@Override
+	protected void encodeUnchecked( ByteWrapper byteWrapper ) throws EncoderException
+	{
+		try
+		{
+			// Write the array length
+			byteWrapper.putInt( this.elements.size() );
+			
+			// Write the array contents
+			for( T element : elements )
+				encodeChild( element, byteWrapper );
+		}
+		catch( ArrayIndexOutOfBoundsException aioobe )
+		{
+			throw new EncoderException( aioobe.getMessage(), aioobe );
+		}
 	}
 
 	@Override
 	public int getEncodedLength()
 	{
-		int size = 4;
+		if( !measured )
+			measure();
+		
+		return this.encodedLength;
+	}
+
+	/**
+	 * The size of a fixed array can't change, so if all of its elements have a fixed length
+	 * then so does the array.
+	 */
+	@Override
+	protected boolean isFixedLength()
+	{
+		if( !measured )
+			measure();
+		
+		return measured;
+	}
+
+	/**
+	 * Walk the elements to work out the encoded length and octet boundary of the array. If
+	 * every element has a fixed length the results are kept until {@link #invalidate()} is
+	 * called, otherwise they're only good for the current call.
+	 */
+	private void measure()
+	{
+		int length = 4;
+		int boundary = 1;
+		boolean fixed = true;
 		for( T element : this.elements )
-			size += element.getEncodedLength();
+		{
+			int elementLength = element.getEncodedLength();
+			length += elementLength;
+			boundary = Math.max( boundary, elementLength );
+			fixed &= isFixedLength( element );
+		}
 		
-		return size;
+		this.encodedLength = length;
+		this.octetBoundary = boundary;
+		this.measured = fixed;
+	}
+
+	/**
+	 * Discard any cached length or octet boundary. Subclasses that change the contents of
+	 * {@link #elements} must call this.
+	 */
+	protected void invalidate()
+	{
+		this.measured = false;
 	}
 
 	@Override
@@ -35,6 +35,11 @@ public class HLA1516eFixedRecord extends HLA1516eDataElement implements HLAfixed
 	//----------------------------------------------------------
 	private List<DataElement> elements;
 
+	// cached measurements, only held when every element has a fixed length
+	private boolean measured;
+	private int encodedLength;
+	private int octetBoundary;
+
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
 	//----------------------------------------------------------
@@ -54,7 +59,10 @@ public class HLA1516eFixedRecord extends HLA1516eDataElement implements HLAfixed
 	public void add( DataElement dataElement )
 	{
 		if( dataElement != null )
+		{
 			this.elements.add( dataElement );
+			this.measured = false;
+		}
 	}
 
 	/**
@@ -96,12 +104,10 @@ public class HLA1516eFixedRecord extends HLA1516eDataElement implements HLAfixed
 	public int getOctetBoundary()
 	{
 		// Return the size of the largest element
-		int maxSize = 1;
-		
-		for( DataElement element : this.elements )
-			maxSize = Math.max( maxSize, element.getEncodedLength() );
+		if( !measured )
+			measure();
 		
-		return maxSize;
+		return this.octetBoundary;
 	}
 
 	@Override
@@ -110,19 +116,61 @@ public class HLA1516eFixedRecord extends HLA1516eDataElement implements HLAfixed
 		if( this.elements.size() == 0 )
 			throw new EncoderException( "Cannot encode an empty fixed record!" );
 		
-		for( DataElement element : this.elements )
-			element.encode( byteWrapper );
+		if( byteWrapper.remaining() < this.getEncodedLength() )
+			throw new EncoderException( "Insufficient space remaining in buffer to encode this value" );
+		
+		encodeUnchecked( byteWrapper );
+	}
+
+	@Override
+	protected void encodeUnchecked( ByteWrapper byteWrapper ) throws EncoderException
+	{
+		if( this.elements.size() == 0 )
+			throw new EncoderException( "Cannot encode an empty fixed record!" );
+		
+		try
+		{
+			for( DataElement element : this.elements )
+				encodeChild( element, byteWrapper );
+		}
+		catch( ArrayIndexOutOfBoundsException aioobe )
+		{
+			throw new EncoderException( aioobe.getMessage(), aioobe );
+		}
 	}
 
 	@Override
 	public int getEncodedLength()
 	{
-		int size = 0;
+		if( !measured )
+			measure();
 		
+		return this.encodedLength;
+	}
+
+	/**
+	 * Walk the elements to work out the encoded length and octet boundary of the record. If
+	 * every element has a fixed length the results are kept until the next call to
+	 * {@link #add(DataElement)}, otherwise they're only good for the current call. The record
+	 * itself never reports a fixed length, as fields can still be added after it has been
+	 * placed inside a parent.
+	 */
+	private void measure()
+	{
+		int length = 0;
+		int boundary = 1;
+		boolean fixed = true;
 		for( DataElement element : this.elements )
-			size += element.getEncodedLength();
+		{
+			int elementLength = element.getEncodedLength();
+			length += elementLength;
+			boundary = Math.max( boundary, elementLength );
+			fixed &= isFixedLength( element );
+		}
 		
-		return size;
+		this.encodedLength = length;
+		this.octetBoundary = boundary;
+		this.measured = fixed;
 	}
 
 	@Override
@@ -83,6 +83,12 @@ public class HLA1516eFloat32LE extends HLA1516eDataElement implements HLAfloat32
 		return 4;
 	}
 
+	@Override
+	protected boolean isFixedLength()
+	{
+		return true;
+	}
+
 	@Override
 	public final void encode( ByteWrapper byteWrapper ) throws EncoderException
 	{
@@ -83,6 +83,12 @@ public class HLA1516eFloat64BE extends HLA1516eDataElement implements HLAfloat64
 		return 8;
 	}
 
+	@Override
+	protected boolean isFixedLength()
+	{
+		return true;
+	}
+
 	@Override
 	public final void encode( ByteWrapper byteWrapper ) throws EncoderException
 	{
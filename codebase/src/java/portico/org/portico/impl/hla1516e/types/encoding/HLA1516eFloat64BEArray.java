@@ -0,0 +1,162 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types.encoding;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.portico.utils.bithelpers.BitHelpers;
+
+import hla.rti1516e.encoding.HLAfloat64BE;
+
+/**
+ * Variable array of {@link HLAfloat64BE} values backed by a <code>double[]</code>. Encodes to the
+ * same bytes as an {@link HLA1516eVariableArray} of {@link HLA1516eFloat64BE} elements without
+ * creating an object per element. See {@link HLA1516ePrimitiveArray}.
+ */
+public class HLA1516eFloat64BEArray extends HLA1516ePrimitiveArray<HLAfloat64BE>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final double[] EMPTY = new double[0];
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private double[] values;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public HLA1516eFloat64BEArray()
+	{
+		super();
+		this.values = EMPTY;
+	}
+
+	public HLA1516eFloat64BEArray( double... values )
+	{
+		super();
+		this.values = values.clone();
+		this.size = values.length;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * @param index index of the value to get
+	 * @return the value at the given index
+	 */
+	public double getValue( int index )
+	{
+		checkIndex( index );
+		if( view != null )
+			return BitHelpers.readDoubleBE( view, viewOffset+(index*8) );
+		else
+			return values[index];
+	}
+
+	/**
+	 * @param index index of the value to set
+	 * @param value the new value
+	 */
+	public void setValue( int index, double value )
+	{
+		checkIndex( index );
+		materialize();
+		this.values[index] = value;
+	}
+
+	/**
+	 * Append a value to the end of the array.
+	 * 
+	 * @param value the value to add
+	 */
+	public void addValue( double value )
+	{
+		materialize();
+		ensureCapacity( size+1 );
+		this.values[size++] = value;
+	}
+
+	/**
+	 * @return a copy of the values in this array
+	 */
+	public double[] toArray()
+	{
+		if( view != null )
+		{
+			double[] copy = new double[size];
+			ByteBuffer.wrap(view,viewOffset,size*8).asDoubleBuffer().get( copy );
+			return copy;
+		}
+		else
+		{
+			return Arrays.copyOf( values, size );
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	//////////////////////////////// Primitive Array Methods ////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	protected int getElementLength()
+	{
+		return 8;
+	}
+
+	@Override
+	protected void ensureCapacity( int capacity )
+	{
+		if( values.length < capacity )
+			values = Arrays.copyOf( values, Math.max(capacity,values.length*2) );
+	}
+
+	@Override
+	protected void clear( int from, int to )
+	{
+		Arrays.fill( values, from, to, 0.0 );
+	}
+
+	@Override
+	protected void bulkPut( ByteBuffer buffer )
+	{
+		buffer.asDoubleBuffer().put( values, 0, size );
+	}
+
+	@Override
+	protected void bulkGet( ByteBuffer buffer, int count )
+	{
+		buffer.asDoubleBuffer().get( values, 0, count );
+	}
+
+	@Override
+	protected HLAfloat64BE createElement( int index )
+	{
+		return new HLA1516eFloat64BE( getValue(index) );
+	}
+
+	@Override
+	protected void store( int index, HLAfloat64BE element )
+	{
+		this.values[index] = element.getValue();
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
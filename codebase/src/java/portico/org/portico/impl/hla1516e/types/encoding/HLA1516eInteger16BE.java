@@ -43,6 +43,11 @@ public class HLA1516eInteger16BE extends HLA1516eOctetPairBE implements HLAinteg
 	//----------------------------------------------------------
 	//                    INSTANCE METHODS
 	//----------------------------------------------------------
+	@Override
+	protected boolean isFixedLength()
+	{
+		return true;
+	}
 
 	//----------------------------------------------------------
 	//                     STATIC METHODS
@@ -43,7 +43,12 @@ public class HLA1516eInteger16LE extends HLA1516eOctetPairLE implements HLAinteg
 	//----------------------------------------------------------
 	//                    INSTANCE METHODS
 	//----------------------------------------------------------
-	
+	@Override
+	protected boolean isFixedLength()
+	{
+		return true;
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
@@ -83,6 +83,12 @@ public class HLA1516eInteger32BE extends HLA1516eDataElement implements HLAinteg
 		return 4;
 	}
 
+	@Override
+	protected boolean isFixedLength()
+	{
+		return true;
+	}
+
 	@Override
 	public final void encode( ByteWrapper byteWrapper ) throws EncoderException
 	{
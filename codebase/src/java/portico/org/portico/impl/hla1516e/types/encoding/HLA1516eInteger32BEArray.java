@@ -0,0 +1,162 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types.encoding;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.portico.utils.bithelpers.BitHelpers;
+
+import hla.rti1516e.encoding.HLAinteger32BE;
+
+/**
+ * Variable array of {@link HLAinteger32BE} values backed by a <code>int[]</code>. Encodes to the
+ * same bytes as an {@link HLA1516eVariableArray} of {@link HLA1516eInteger32BE} elements without
+ * creating an object per element. See {@link HLA1516ePrimitiveArray}.
+ */
+public class HLA1516eInteger32BEArray extends HLA1516ePrimitiveArray<HLAinteger32BE>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final int[] EMPTY = new int[0];
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private int[] values;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public HLA1516eInteger32BEArray()
+	{
+		super();
+		this.values = EMPTY;
+	}
+
+	public HLA1516eInteger32BEArray( int... values )
+	{
+		super();
+		this.values = values.clone();
+		this.size = values.length;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * @param index index of the value to get
+	 * @return the value at the given index
+	 */
+	public int getValue( int index )
+	{
+		checkIndex( index );
+		if( view != null )
+			return BitHelpers.readIntBE( view, viewOffset+(index*4) );
+		else
+			return values[index];
+	}
+
+	/**
+	 * @param index index of the value to set
+	 * @param value the new value
+	 */
+	public void setValue( int index, int value )
+	{
+		checkIndex( index );
+		materialize();
+		this.values[index] = value;
+	}
+
+	/**
+	 * Append a value to the end of the array.
+	 * 
+	 * @param value the value to add
+	 */
+	public void addValue( int value )
+	{
+		materialize();
+		ensureCapacity( size+1 );
+		this.values[size++] = value;
+	}
+
+	/**
+	 * @return a copy of the values in this array
+	 */
+	public int[] toArray()
+	{
+		if( view != null )
+		{
+			int[] copy = new int[size];
+			ByteBuffer.wrap(view,viewOffset,size*4).asIntBuffer().get( copy );
+			return copy;
+		}
+		else
+		{
+			return Arrays.copyOf( values, size );
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	//////////////////////////////// Primitive Array Methods ////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	protected int getElementLength()
+	{
+		return 4;
+	}
+
+	@Override
+	protected void ensureCapacity( int capacity )
+	{
+		if( values.length < capacity )
+			values = Arrays.copyOf( values, Math.max(capacity,values.length*2) );
+	}
+
+	@Override
+	protected void clear( int from, int to )
+	{
+		Arrays.fill( values, from, to, 0 );
+	}
+
+	@Override
+	protected void bulkPut( ByteBuffer buffer )
+	{
+		buffer.asIntBuffer().put( values, 0, size );
+	}
+
+	@Override
+	protected void bulkGet( ByteBuffer buffer, int count )
+	{
+		buffer.asIntBuffer().get( values, 0, count );
+	}
+
+	@Override
+	protected HLAinteger32BE createElement( int index )
+	{
+		return new HLA1516eInteger32BE( getValue(index) );
+	}
+
+	@Override
+	protected void store( int index, HLAinteger32BE element )
+	{
+		this.values[index] = element.getValue();
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -83,6 +83,12 @@ public class HLA1516eInteger64BE extends HLA1516eDataElement implements HLAinteg
 		return 8;
 	}
 
+	@Override
+	protected boolean isFixedLength()
+	{
+		return true;
+	}
+
 	@Override
 	public final void encode( ByteWrapper byteWrapper ) throws EncoderException
 	{
@@ -0,0 +1,162 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types.encoding;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.portico.utils.bithelpers.BitHelpers;
+
+import hla.rti1516e.encoding.HLAinteger64BE;
+
+/**
+ * Variable array of {@link HLAinteger64BE} values backed by a <code>long[]</code>. Encodes to the
+ * same bytes as an {@link HLA1516eVariableArray} of {@link HLA1516eInteger64BE} elements without
+ * creating an object per element. See {@link HLA1516ePrimitiveArray}.
+ */
+public class HLA1516eInteger64BEArray extends HLA1516ePrimitiveArray<HLAinteger64BE>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final long[] EMPTY = new long[0];
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private long[] values;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public HLA1516eInteger64BEArray()
+	{
+		super();
+		this.values = EMPTY;
+	}
+
+	public HLA1516eInteger64BEArray( long... values )
+	{
+		super();
+		this.values = values.clone();
+		this.size = values.length;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * @param index index of the value to get
+	 * @return the value at the given index
+	 */
+	public long getValue( int index )
+	{
+		checkIndex( index );
+		if( view != null )
+			return BitHelpers.readLongBE( view, viewOffset+(index*8) );
+		else
+			return values[index];
+	}
+
+	/**
+	 * @param index index of the value to set
+	 * @param value the new value
+	 */
+	public void setValue( int index, long value )
+	{
+		checkIndex( index );
+		materialize();
+		this.values[index] = value;
+	}
+
+	/**
+	 * Append a value to the end of the array.
+	 * 
+	 * @param value the value to add
+	 */
+	public void addValue( long value )
+	{
+		materialize();
+		ensureCapacity( size+1 );
+		this.values[size++] = value;
+	}
+
+	/**
+	 * @return a copy of the values in this array
+	 */
+	public long[] toArray()
+	{
+		if( view != null )
+		{
+			long[] copy = new long[size];
+			ByteBuffer.wrap(view,viewOffset,size*8).asLongBuffer().get( copy );
+			return copy;
+		}
+		else
+		{
+			return Arrays.copyOf( values, size );
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	//////////////////////////////// Primitive Array Methods ////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	protected int getElementLength()
+	{
+		return 8;
+	}
+
+	@Override
+	protected void ensureCapacity( int capacity )
+	{
+		if( values.length < capacity )
+			values = Arrays.copyOf( values, Math.max(capacity,values.length*2) );
+	}
+
+	@Override
+	protected void clear( int from, int to )
+	{
+		Arrays.fill( values, from, to, 0L );
+	}
+
+	@Override
+	protected void bulkPut( ByteBuffer buffer )
+	{
+		buffer.asLongBuffer().put( values, 0, size );
+	}
+
+	@Override
+	protected void bulkGet( ByteBuffer buffer, int count )
+	{
+		buffer.asLongBuffer().get( values, 0, count );
+	}
+
+	@Override
+	protected HLAinteger64BE createElement( int index )
+	{
+		return new HLA1516eInteger64BE( getValue(index) );
+	}
+
+	@Override
+	protected void store( int index, HLAinteger64BE element )
+	{
+		this.values[index] = element.getValue();
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -90,6 +90,12 @@ public class HLA1516eOctet extends HLA1516eDataElement implements HLAoctet
 		return 1;
 	}
 
+	@Override
+	protected boolean isFixedLength()
+	{
+		return true;
+	}
+
 	@Override
 	public byte[] toByteArray() throws EncoderException
 	{
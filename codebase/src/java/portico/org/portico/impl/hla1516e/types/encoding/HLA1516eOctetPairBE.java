@@ -83,6 +83,12 @@ public class HLA1516eOctetPairBE extends HLA1516eDataElement implements HLAoctet
 		return 2;
 	}
 
+	@Override
+	protected boolean isFixedLength()
+	{
+		return true;
+	}
+
 	@Override
 	public final void encode( ByteWrapper byteWrapper ) throws EncoderException
 	{
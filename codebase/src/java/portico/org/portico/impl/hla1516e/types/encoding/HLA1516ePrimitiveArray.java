@@ -0,0 +1,300 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types.encoding;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import hla.rti1516e.encoding.ByteWrapper;
+import hla.rti1516e.encoding.DataElement;
+import hla.rti1516e.encoding.DecoderException;
+import hla.rti1516e.encoding.EncoderException;
+import hla.rti1516e.encoding.HLAvariableArray;
+
+/**
+ * Base for variable arrays of a single fixed-size primitive type that keep their values in a
+ * primitive Java array rather than as one {@link DataElement} per entry. The wire format is the
+ * same as {@link HLA1516eVariableArray} (a 32-bit element count followed by the elements), but
+ * the values are moved in and out in bulk through a typed {@link ByteBuffer} view.
+ * <p/>
+ * As well as the normal copying {@link #decode(ByteWrapper)}, arrays can be decoded in place
+ * with {@link #decodeView(ByteWrapper)}. This validates the count and then reads values straight
+ * out of the wrapper's backing array when asked for them, without copying anything. The first
+ * mutation of a viewed array copies the values out, so the backing array must not be changed
+ * while the view is in use.
+ * <p/>
+ * {@link #get(int)} and {@link #iterator()} hand back new element instances holding a copy of
+ * the value; changing them does not write through to the array. Use the typed accessors on the
+ * subclasses for that.
+ */
+public abstract class HLA1516ePrimitiveArray<T extends DataElement>
+       extends HLA1516eDataElement
+       implements HLAvariableArray<T>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	protected int size;
+	
+	// set when decoded in place, values are read from here until the array is mutated
+	protected byte[] view;
+	protected int viewOffset;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected HLA1516ePrimitiveArray()
+	{
+		this.size = 0;
+		this.view = null;
+		this.viewOffset = 0;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/** @return the encoded size in bytes of a single element */
+	protected abstract int getElementLength();
+
+	/** Make sure the backing primitive array can hold at least <code>capacity</code> values */
+	protected abstract void ensureCapacity( int capacity );
+
+	/** Zero the backing primitive array from <code>from</code> (inclusive) to <code>to</code> (exclusive) */
+	protected abstract void clear( int from, int to );
+
+	/** Write the first <code>size</code> values of the backing array into the buffer */
+	protected abstract void bulkPut( ByteBuffer buffer );
+
+	/** Read <code>count</code> values from the buffer into the start of the backing array */
+	protected abstract void bulkGet( ByteBuffer buffer, int count );
+
+	/** @return a new element holding a copy of the value at the given index */
+	protected abstract T createElement( int index );
+
+	/** Store the value of the given element at the given index of the backing array */
+	protected abstract void store( int index, T element );
+
+	/**
+	 * @return true if this array is currently a view over someone else's buffer
+	 */
+	public boolean isView()
+	{
+		return this.view != null;
+	}
+
+	/**
+	 * If this array is a view over a decode buffer, copy the values out into our own storage
+	 * so that it can be modified. Does nothing if the array already owns its values.
+	 */
+	protected void materialize()
+	{
+		if( this.view == null )
+			return;
+		
+		ensureCapacity( this.size );
+		bulkGet( ByteBuffer.wrap(view,viewOffset,size*getElementLength()), size );
+		this.view = null;
+		this.viewOffset = 0;
+	}
+
+	protected void checkIndex( int index )
+	{
+		if( index < 0 || index >= this.size )
+			throw new IndexOutOfBoundsException( "Index: "+index+", Size: "+size );
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public T get( int index )
+	{
+		checkIndex( index );
+		return createElement( index );
+	}
+
+	public void addElement( T dataElement )
+	{
+		materialize();
+		ensureCapacity( this.size+1 );
+		store( this.size++, dataElement );
+	}
+
+	/**
+	 * Resize the array to the <code>newSize</code>. Any new entries are zero.
+	 * 
+	 * @param newSize the new size
+	 */
+	public void resize( int newSize )
+	{
+		if( newSize < 0 )
+			throw new IllegalArgumentException( "Negative array size: "+newSize );
+		
+		materialize();
+		if( newSize > this.size )
+		{
+			ensureCapacity( newSize );
+			clear( this.size, newSize );
+		}
+		
+		this.size = newSize;
+	}
+
+	public Iterator<T> iterator()
+	{
+		return new Iterator<T>()
+		{
+			private int index = 0;
+			public boolean hasNext() { return index < size; }
+			public T next()
+			{
+				if( index >= size )
+					throw new NoSuchElementException();
+				return createElement( index++ );
+			}
+			public void remove() { throw new UnsupportedOperationException(); }
+		};
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////// DataElement Methods //////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public int getOctetBoundary()
+	{
+		// Same as HLA1516eVariableArray: the size of the largest element, or 1 if empty
+		return this.size == 0 ? 1 : getElementLength();
+	}
+
+	@Override
+	public int getEncodedLength()
+	{
+		return 4 + (this.size * getElementLength());
+	}
+
+	@Override
+	public void encode( ByteWrapper byteWrapper ) throws EncoderException
+	{
+		if( byteWrapper.remaining() < this.getEncodedLength() )
+			throw new EncoderException( "Insufficient space remaining in buffer to encode this value" );
+		
+		encodeUnchecked( byteWrapper );
+	}
+
+	@Override
+	protected void encodeUnchecked( ByteWrapper byteWrapper ) throws EncoderException
+	{
+		try
+		{
+			int length = this.size * getElementLength();
+			byteWrapper.putInt( this.size );
+			byteWrapper.verify( length );
+			
+			if( this.view != null )
+			{
+				// still holding the encoded form, so just copy the bytes across
+				byteWrapper.put( view, viewOffset, length );
+			}
+			else
+			{
+				bulkPut( ByteBuffer.wrap(byteWrapper.array(),byteWrapper.getPos(),length) );
+				byteWrapper.advance( length );
+			}
+		}
+		catch( ArrayIndexOutOfBoundsException aioobe )
+		{
+			throw new EncoderException( aioobe.getMessage(), aioobe );
+		}
+	}
+
+	@Override
+	public byte[] toByteArray() throws EncoderException
+	{
+		ByteWrapper byteWrapper = new ByteWrapper( this.getEncodedLength() );
+		this.encodeUnchecked( byteWrapper );
+		return byteWrapper.array();
+	}
+
+	@Override
+	public void decode( ByteWrapper byteWrapper ) throws DecoderException
+	{
+		int count = readCount( byteWrapper );
+		int length = count * getElementLength();
+		
+		this.view = null;
+		this.viewOffset = 0;
+		ensureCapacity( count );
+		bulkGet( ByteBuffer.wrap(byteWrapper.array(),byteWrapper.getPos(),length), count );
+		this.size = count;
+		byteWrapper.advance( length );
+	}
+
+	/**
+	 * Decode this array in place. The count is read and checked against the space remaining,
+	 * the wrapper is advanced past the elements, and from then on the values are read directly
+	 * out of the wrapper's backing array. Nothing is copied until the array is modified, so the
+	 * backing array must not be reused while this array is still being read.
+	 * 
+	 * @param byteWrapper source for the decoding of this element
+	 * @throws DecoderException if the element can not be decoded
+	 */
+	public void decodeView( ByteWrapper byteWrapper ) throws DecoderException
+	{
+		int count = readCount( byteWrapper );
+		
+		this.view = byteWrapper.array();
+		this.viewOffset = byteWrapper.getPos();
+		this.size = count;
+		byteWrapper.advance( count * getElementLength() );
+	}
+
+	@Override
+	public void decode( byte[] bytes ) throws DecoderException
+	{
+		this.decode( new ByteWrapper(bytes) );
+	}
+
+	/**
+	 * Read the element count and make sure there are enough bytes left for that many elements.
+	 */
+	private int readCount( ByteWrapper byteWrapper ) throws DecoderException
+	{
+		super.verifyNotNull( byteWrapper );
+		super.checkForUnderflow( byteWrapper, 4 );
+		int count = byteWrapper.getInt();
+		if( count < 0 )
+			throw new DecoderException( "Negative element count in decoded array: "+count );
+		
+		// divide rather than multiply so a corrupt count can't overflow the check
+		if( byteWrapper.remaining() / getElementLength() < count )
+		{
+			throw new DecoderException( "Buffer Underflow. Remaining="+byteWrapper.remaining()+
+			                            "b, Expected="+count+" elements of "+
+			                            getElementLength()+"b" );
+		}
+		
+		return count;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
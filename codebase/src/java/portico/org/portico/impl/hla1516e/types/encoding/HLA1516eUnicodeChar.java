@@ -42,6 +42,11 @@ public class HLA1516eUnicodeChar extends HLA1516eInteger16BE implements HLAunico
 	//----------------------------------------------------------
 	//                    INSTANCE METHODS
 	//----------------------------------------------------------
+	@Override
+	protected boolean isFixedLength()
+	{
+		return true;
+	}
 
 	//----------------------------------------------------------
 	//                     STATIC METHODS
@@ -38,6 +38,11 @@ public class HLA1516eVariableArray<T extends DataElement>
 	//----------------------------------------------------------
 	private DataElementFactory<T> factory;
 	private List<T> elements;
+
+	// cached measurements, only held when every element has a fixed length
+	private boolean measured;
+	private int encodedLength;
+	private int octetBoundary;
 	
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -62,6 +67,7 @@ public class HLA1516eVariableArray<T extends DataElement>
 	public void addElement( T dataElement )
 	{
 		this.elements.add( dataElement );
+		this.measured = false;
 	}
 
 	/**
@@ -87,6 +93,8 @@ public class HLA1516eVariableArray<T extends DataElement>
 			while( this.elements.size() > newSize )
 				this.elements.remove( this.elements.size() - 1 );
 		}
+		
+		this.measured = false;
 	}
 
 	public int size()
@@ -111,12 +119,10 @@ public class HLA1516eVariableArray<T extends DataElement>
     public int getOctetBoundary()
     {
 		// Return the size of the largest element
-		int maxSize = 1;
-		
-		for( T element : this.elements )
-			maxSize = Math.max( maxSize, element.getEncodedLength() );
+		if( !measured )
+			measure();
 		
-		return maxSize;
+		return this.octetBoundary;
     }
 
 	@Override
@@ -126,24 +132,59 @@ public class HLA1516eVariableArray<T extends DataElement>
 		if( byteWrapper.remaining() < this.getEncodedLength() )
 			throw new EncoderException( "Insufficient space remaining in buffer to encode this value" );
 		
-		// Write the number of elements encoded
-		byteWrapper.putInt( this.elements.size() );
-		
-		// Write the elements
-		for( T element : this.elements )
-			element.encode( byteWrapper );
+		encodeUnchecked( byteWrapper );
     }
 
+	@Override
+	protected void encodeUnchecked( ByteWrapper byteWrapper ) throws EncoderException
+	{
+		try
+		{
+			// Write the number of elements encoded
+			byteWrapper.putInt( this.elements.size() );
+			
+			// Write the elements
+			for( T element : this.elements )
+				encodeChild( element, byteWrapper );
+		}
+		catch( ArrayIndexOutOfBoundsException aioobe )
+		{
+			throw new EncoderException( aioobe.getMessage(), aioobe );
+		}
+	}
+
 	@Override
     public int getEncodedLength()
     {
-		int length = 4;
+		if( !measured )
+			measure();
 		
+	    return this.encodedLength;
+    }
+
+	/**
+	 * Walk the elements to work out the encoded length and octet boundary of the array. If
+	 * every element has a fixed length the results are kept until the array is next resized,
+	 * added to or decoded into, otherwise they're only good for the current call. The array
+	 * itself never reports a fixed length, as its size can change underneath any parent.
+	 */
+	private void measure()
+	{
+		int length = 4;
+		int boundary = 1;
+		boolean fixed = true;
 		for( T element : this.elements )
-			length += element.getEncodedLength();
+		{
+			int elementLength = element.getEncodedLength();
+			length += elementLength;
+			boundary = Math.max( boundary, elementLength );
+			fixed &= isFixedLength( element );
+		}
 		
-	    return length;
-    }
+		this.encodedLength = length;
+		this.octetBoundary = boundary;
+		this.measured = fixed;
+	}
 
 	@Override
     public byte[] toByteArray()
@@ -168,6 +209,7 @@ public class HLA1516eVariableArray<T extends DataElement>
 		
 		// Clear the underlying collection so that it's ready to receive the new values
 		this.elements.clear();
+		this.measured = false;
 		
 		for( int i = 0 ; i < size ; ++i )
 		{
@@ -0,0 +1,363 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types.encoding.codec;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.portico.lrc.model.datatype.ArrayType;
+
+import hla.rti1516e.encoding.ByteWrapper;
+import hla.rti1516e.encoding.DecoderException;
+import hla.rti1516e.encoding.EncoderException;
+
+/**
+ * Codecs for FOM array types. All of them write the 32-bit element count ahead of the elements,
+ * matching {@link org.portico.impl.hla1516e.types.encoding.HLA1516eFixedArray} and
+ * {@link org.portico.impl.hla1516e.types.encoding.HLA1516eVariableArray}. For arrays with a fixed
+ * cardinality the count is checked on the way in and out.
+ * <p/>
+ * The {@link CodecFactory} picks the most specific implementation it can for an array:
+ * <ul>
+ *   <li>Arrays of <code>HLAASCIIchar</code> or <code>HLAunicodeChar</code> map to {@link String}</li>
+ *   <li>Arrays of any other 8-bit basic type map to <code>byte[]</code></li>
+ *   <li>Arrays of other basic types map to the matching primitive array and are moved in bulk</li>
+ *   <li>Everything else maps to a {@link List}, or a Java array if that is what it was bound to</li>
+ * </ul>
+ */
+public abstract class ArrayCodec<T> extends DatatypeCodec<T>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final Charset ASCII = Charset.forName( "ISO-8859-1" );
+	private static final Charset UNICODE = Charset.forName( "UTF-16" );
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	protected final int cardinality; // -1 for dynamic
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected ArrayCodec( ArrayType type )
+	{
+		super( type );
+		if( type.getDimensions().size() == 1 && !type.isCardinalityDynamic() )
+			this.cardinality = type.getCardinalityLowerBound();
+		else
+			this.cardinality = -1;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	protected void writeCount( int count, ByteWrapper wrapper ) throws EncoderException
+	{
+		if( cardinality >= 0 && count != cardinality )
+		{
+			throw new EncoderException( "Element count for "+datatype.getName()+" differs. Expected ["+
+			                            cardinality+"] Received ["+count+"]" );
+		}
+		
+		wrapper.putInt( count );
+	}
+
+	protected int readCount( ByteWrapper wrapper, int elementSize ) throws DecoderException
+	{
+		int count = wrapper.getInt();
+		if( cardinality >= 0 && count != cardinality )
+		{
+			throw new DecoderException( "Element count in decoded "+datatype.getName()+" differs. Expected ["+
+			                            cardinality+"] Received ["+count+"]" );
+		}
+		
+		checkRemaining( wrapper, count, elementSize );
+		return count;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////// StringCodec //////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * ASCII strings are one byte per character. Unicode strings follow
+	 * {@link org.portico.impl.hla1516e.types.encoding.HLA1516eUnicodeString} and carry the byte
+	 * order mark, which is included in the count.
+	 */
+	static final class StringCodec extends ArrayCodec<String>
+	{
+		private final boolean unicode;
+		StringCodec( ArrayType type, boolean unicode )
+		{
+			super( type );
+			this.unicode = unicode;
+		}
+
+		public int getEncodedLength( String value )
+		{
+			return unicode ? 4 + (value.length()+1)*2 : 4 + value.length();
+		}
+
+		protected void write( String value, ByteWrapper wrapper ) throws EncoderException
+		{
+			if( unicode )
+			{
+				writeCount( value.length()+1, wrapper );
+				wrapper.put( value.getBytes(UNICODE) );
+			}
+			else
+			{
+				writeCount( value.length(), wrapper );
+				wrapper.put( value.getBytes(ASCII) );
+			}
+		}
+
+		protected String read( ByteWrapper wrapper ) throws DecoderException
+		{
+			int elementSize = unicode ? 2 : 1;
+			int count = readCount( wrapper, elementSize );
+			int offset = wrapper.getPos();
+			wrapper.advance( count*elementSize );
+			return new String( wrapper.array(), offset, count*elementSize, unicode ? UNICODE : ASCII );
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////// OpaqueCodec //////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	static final class OpaqueCodec extends ArrayCodec<byte[]>
+	{
+		OpaqueCodec( ArrayType type ) { super( type ); }
+
+		public int getEncodedLength( byte[] value )
+		{
+			return 4 + value.length;
+		}
+
+		protected void write( byte[] value, ByteWrapper wrapper ) throws EncoderException
+		{
+			writeCount( value.length, wrapper );
+			wrapper.put( value );
+		}
+
+		protected byte[] read( ByteWrapper wrapper ) throws DecoderException
+		{
+			byte[] value = new byte[readCount(wrapper,1)];
+			wrapper.get( value );
+			return value;
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////// PrimitiveArrayCodec //////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Moves <code>short[]</code>, <code>int[]</code>, <code>long[]</code>, <code>float[]</code>
+	 * and <code>double[]</code> values through a typed view of the wrapper's backing array.
+	 */
+	static final class PrimitiveArrayCodec extends ArrayCodec<Object>
+	{
+		private final Class<?> primitive;
+		private final int size;
+		private final ByteOrder order;
+
+		PrimitiveArrayCodec( ArrayType type, BasicCodec element )
+		{
+			super( type );
+			this.primitive = element.getPrimitiveType();
+			this.size = element.getSize();
+			this.order = element.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		}
+
+		Class<?> getArrayType()
+		{
+			return Array.newInstance( primitive, 0 ).getClass();
+		}
+
+		public int getEncodedLength( Object value )
+		{
+			return 4 + Array.getLength(value)*size;
+		}
+
+		private ByteBuffer view( ByteWrapper wrapper, int count )
+		{
+			int offset = wrapper.getPos();
+			wrapper.advance( count*size );
+			return ByteBuffer.wrap( wrapper.array(), offset, count*size ).order( order );
+		}
+
+		protected void write( Object value, ByteWrapper wrapper ) throws EncoderException
+		{
+			int count = Array.getLength( value );
+			writeCount( count, wrapper );
+			ByteBuffer buffer = view( wrapper, count );
+			if( primitive == double.class )
+				buffer.asDoubleBuffer().put( (double[])value );
+			else if( primitive == int.class )
+				buffer.asIntBuffer().put( (int[])value );
+			else if( primitive == long.class )
+				buffer.asLongBuffer().put( (long[])value );
+			else if( primitive == float.class )
+				buffer.asFloatBuffer().put( (float[])value );
+			else
+				buffer.asShortBuffer().put( (short[])value );
+		}
+
+		protected Object read( ByteWrapper wrapper ) throws DecoderException
+		{
+			int count = readCount( wrapper, size );
+			ByteBuffer buffer = view( wrapper, count );
+			if( primitive == double.class )
+			{
+				double[] value = new double[count];
+				buffer.asDoubleBuffer().get( value );
+				return value;
+			}
+			else if( primitive == int.class )
+			{
+				int[] value = new int[count];
+				buffer.asIntBuffer().get( value );
+				return value;
+			}
+			else if( primitive == long.class )
+			{
+				long[] value = new long[count];
+				buffer.asLongBuffer().get( value );
+				return value;
+			}
+			else if( primitive == float.class )
+			{
+				float[] value = new float[count];
+				buffer.asFloatBuffer().get( value );
+				return value;
+			}
+			else
+			{
+				short[] value = new short[count];
+				buffer.asShortBuffer().get( value );
+				return value;
+			}
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/////////////////////////////////// ElementArrayCodec ///////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * General arrays, encoding each element with the element codec. Values can be given as a
+	 * {@link List} or any Java array. They decode to an {@link ArrayList}, unless the codec was
+	 * bound to an array type, in which case they decode to an array of that type.
+	 */
+	static final class ElementArrayCodec extends ArrayCodec<Object>
+	{
+		private final DatatypeCodec<Object> element;
+		private final Class<?> componentType; // null to decode to a List
+
+		ElementArrayCodec( ArrayType type, DatatypeCodec<Object> element, Class<?> componentType )
+		{
+			super( type );
+			this.element = element;
+			this.componentType = componentType;
+		}
+
+		public int getEncodedLength( Object value ) throws EncoderException
+		{
+			int fixed = element.getFixedLength();
+			if( value instanceof List )
+			{
+				List<?> list = (List<?>)value;
+				if( fixed >= 0 )
+					return 4 + list.size()*fixed;
+				
+				int length = 4;
+				for( Object item : list )
+					length += element.getEncodedLength( item );
+				return length;
+			}
+			else
+			{
+				int count = Array.getLength( value );
+				if( fixed >= 0 )
+					return 4 + count*fixed;
+				
+				int length = 4;
+				for( int i = 0; i < count; i++ )
+					length += element.getEncodedLength( Array.get(value,i) );
+				return length;
+			}
+		}
+
+		protected void write( Object value, ByteWrapper wrapper ) throws EncoderException
+		{
+			if( value instanceof List )
+			{
+				List<?> list = (List<?>)value;
+				writeCount( list.size(), wrapper );
+				for( Object item : list )
+					element.write( item, wrapper );
+			}
+			else if( value instanceof Object[] )
+			{
+				Object[] array = (Object[])value;
+				writeCount( array.length, wrapper );
+				for( Object item : array )
+					element.write( item, wrapper );
+			}
+			else
+			{
+				int count = Array.getLength( value );
+				writeCount( count, wrapper );
+				for( int i = 0; i < count; i++ )
+					element.write( Array.get(value,i), wrapper );
+			}
+		}
+
+		protected Object read( ByteWrapper wrapper ) throws DecoderException
+		{
+			// every element takes at least one byte, which is enough to reject silly counts
+			int count = readCount( wrapper, Math.max(1,element.getFixedLength()) );
+			if( componentType == null )
+			{
+				List<Object> list = new ArrayList<>( count );
+				for( int i = 0; i < count; i++ )
+					list.add( element.read(wrapper) );
+				return list;
+			}
+			else if( componentType.isPrimitive() )
+			{
+				Object array = Array.newInstance( componentType, count );
+				for( int i = 0; i < count; i++ )
+					Array.set( array, i, element.read(wrapper) );
+				return array;
+			}
+			else
+			{
+				Object[] array = (Object[])Array.newInstance( componentType, count );
+				for( int i = 0; i < count; i++ )
+					array[i] = element.read( wrapper );
+				return array;
+			}
+		}
+	}
+}
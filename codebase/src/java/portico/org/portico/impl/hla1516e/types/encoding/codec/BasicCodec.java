@@ -0,0 +1,393 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types.encoding.codec;
+
+import java.lang.reflect.Field;
+
+import org.portico.lrc.compat.JConfigurationException;
+import org.portico.lrc.model.datatype.BasicType;
+import org.portico.lrc.model.datatype.Endianness;
+import org.portico.lrc.model.datatype.IDatatype;
+import org.portico.utils.bithelpers.BitHelpers;
+
+import hla.rti1516e.encoding.ByteWrapper;
+
+/**
+ * Codecs for the FOM basic types. Values are encoded from any {@link Number} and decode to the
+ * natural boxed type for the size (Byte, Short, Integer, Long, Float or Double).
+ * <p/>
+ * When a basic type is bound to a primitive field of exactly its natural type, the record codec
+ * uses {@link #writeField(Object, Field, ByteWrapper)} and
+ * {@link #readField(Object, Field, ByteWrapper)} to move the value without boxing it.
+ */
+public abstract class BasicCodec extends DatatypeCodec<Number>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	protected final int size;
+	protected final boolean bigEndian;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected BasicCodec( IDatatype datatype, int size, boolean bigEndian )
+	{
+		super( datatype );
+		this.size = size;
+		this.bigEndian = bigEndian;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/** @return the primitive class values of this type naturally decode to */
+	public abstract Class<?> getPrimitiveType();
+
+	// redeclared without the checked exceptions, basic types can only fail on the buffer
+	@Override
+	protected abstract void write( Number value, ByteWrapper wrapper );
+
+	@Override
+	protected abstract Number read( ByteWrapper wrapper );
+
+	/** Encode the primitive field of the given object without boxing it */
+	protected abstract void writeField( Object owner, Field field, ByteWrapper wrapper )
+		throws IllegalAccessException;
+
+	/** Decode into the primitive field of the given object without boxing the value */
+	protected abstract void readField( Object owner, Field field, ByteWrapper wrapper )
+		throws IllegalAccessException;
+
+	/** @return the encoded size in bytes of a single value */
+	public int getSize()
+	{
+		return this.size;
+	}
+
+	public boolean isBigEndian()
+	{
+		return this.bigEndian;
+	}
+
+	@Override
+	public int getFixedLength()
+	{
+		return this.size;
+	}
+
+	@Override
+	public int getEncodedLength( Number value )
+	{
+		return this.size;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/**
+	 * Reserve <code>length</code> bytes at the current position of the wrapper and return the
+	 * offset in its backing array that they start at.
+	 */
+	protected static int claim( ByteWrapper wrapper, int length )
+	{
+		int position = wrapper.getPos();
+		wrapper.advance( length );
+		return position;
+	}
+
+	/**
+	 * Create the codec for the given basic type.
+	 * 
+	 * @throws JConfigurationException if the type has a size we don't know how to handle
+	 */
+	public static BasicCodec forType( BasicType type ) throws JConfigurationException
+	{
+		boolean big = type.getEndianness() != Endianness.LITTLE;
+		boolean floating = type.getName().toLowerCase().contains( "float" );
+		switch( type.getSize() )
+		{
+			case 8:
+				return new Int8Codec( type );
+			case 16:
+				return new Int16Codec( type, big );
+			case 32:
+				return floating ? new Float32Codec( type, big ) : new Int32Codec( type, big );
+			case 64:
+				return floating ? new Float64Codec( type, big ) : new Int64Codec( type, big );
+			default:
+				throw new JConfigurationException( "Can't build a codec for basic type "+type.getName()+
+				                                   " with size "+type.getSize()+" bits" );
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/////////////////////////////////////// Int8Codec ///////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	static final class Int8Codec extends BasicCodec
+	{
+		Int8Codec( IDatatype datatype ) { super( datatype, 1, true ); }
+		public Class<?> getPrimitiveType() { return byte.class; }
+
+		protected void write( Number value, ByteWrapper wrapper )
+		{
+			wrapper.put( value.byteValue() );
+		}
+
+		protected Number read( ByteWrapper wrapper )
+		{
+			return (byte)wrapper.get();
+		}
+
+		protected void writeField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			wrapper.put( field.getByte(owner) );
+		}
+
+		protected void readField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			field.setByte( owner, (byte)wrapper.get() );
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////// Int16Codec ///////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	static final class Int16Codec extends BasicCodec
+	{
+		Int16Codec( IDatatype datatype, boolean big ) { super( datatype, 2, big ); }
+		public Class<?> getPrimitiveType() { return short.class; }
+
+		private void put( short value, ByteWrapper wrapper )
+		{
+			int offset = claim( wrapper, 2 );
+			if( bigEndian )
+				BitHelpers.putShortBE( value, wrapper.array(), offset );
+			else
+				BitHelpers.putShortLE( value, wrapper.array(), offset );
+		}
+
+		private short get( ByteWrapper wrapper )
+		{
+			int offset = claim( wrapper, 2 );
+			return bigEndian ? BitHelpers.readShortBE( wrapper.array(), offset ) :
+			                   BitHelpers.readShortLE( wrapper.array(), offset );
+		}
+
+		protected void write( Number value, ByteWrapper wrapper )
+		{
+			put( value.shortValue(), wrapper );
+		}
+
+		protected Number read( ByteWrapper wrapper )
+		{
+			return get( wrapper );
+		}
+
+		protected void writeField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			put( field.getShort(owner), wrapper );
+		}
+
+		protected void readField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			field.setShort( owner, get(wrapper) );
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////// Int32Codec ///////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	static final class Int32Codec extends BasicCodec
+	{
+		Int32Codec( IDatatype datatype, boolean big ) { super( datatype, 4, big ); }
+		public Class<?> getPrimitiveType() { return int.class; }
+
+		void put( int value, ByteWrapper wrapper )
+		{
+			int offset = claim( wrapper, 4 );
+			if( bigEndian )
+				BitHelpers.putIntBE( value, wrapper.array(), offset );
+			else
+				BitHelpers.putIntLE( value, wrapper.array(), offset );
+		}
+
+		int get( ByteWrapper wrapper )
+		{
+			int offset = claim( wrapper, 4 );
+			return bigEndian ? BitHelpers.readIntBE( wrapper.array(), offset ) :
+			                   BitHelpers.readIntLE( wrapper.array(), offset );
+		}
+
+		protected void write( Number value, ByteWrapper wrapper )
+		{
+			put( value.intValue(), wrapper );
+		}
+
+		protected Number read( ByteWrapper wrapper )
+		{
+			return get( wrapper );
+		}
+
+		protected void writeField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			put( field.getInt(owner), wrapper );
+		}
+
+		protected void readField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			field.setInt( owner, get(wrapper) );
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////// Int64Codec ///////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	static final class Int64Codec extends BasicCodec
+	{
+		Int64Codec( IDatatype datatype, boolean big ) { super( datatype, 8, big ); }
+		public Class<?> getPrimitiveType() { return long.class; }
+
+		private void put( long value, ByteWrapper wrapper )
+		{
+			int offset = claim( wrapper, 8 );
+			if( bigEndian )
+				BitHelpers.putLongBE( value, wrapper.array(), offset );
+			else
+				BitHelpers.putLongLE( value, wrapper.array(), offset );
+		}
+
+		private long get( ByteWrapper wrapper )
+		{
+			int offset = claim( wrapper, 8 );
+			return bigEndian ? BitHelpers.readLongBE( wrapper.array(), offset ) :
+			                   BitHelpers.readLongLE( wrapper.array(), offset );
+		}
+
+		protected void write( Number value, ByteWrapper wrapper )
+		{
+			put( value.longValue(), wrapper );
+		}
+
+		protected Number read( ByteWrapper wrapper )
+		{
+			return get( wrapper );
+		}
+
+		protected void writeField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			put( field.getLong(owner), wrapper );
+		}
+
+		protected void readField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			field.setLong( owner, get(wrapper) );
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	///////////////////////////////////// Float32Codec //////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	static final class Float32Codec extends BasicCodec
+	{
+		Float32Codec( IDatatype datatype, boolean big ) { super( datatype, 4, big ); }
+		public Class<?> getPrimitiveType() { return float.class; }
+
+		private void put( float value, ByteWrapper wrapper )
+		{
+			int offset = claim( wrapper, 4 );
+			if( bigEndian )
+				BitHelpers.putFloatBE( value, wrapper.array(), offset );
+			else
+				BitHelpers.putFloatLE( value, wrapper.array(), offset );
+		}
+
+		private float get( ByteWrapper wrapper )
+		{
+			int offset = claim( wrapper, 4 );
+			return bigEndian ? BitHelpers.readFloatBE( wrapper.array(), offset ) :
+			                   BitHelpers.readFloatLE( wrapper.array(), offset );
+		}
+
+		protected void write( Number value, ByteWrapper wrapper )
+		{
+			put( value.floatValue(), wrapper );
+		}
+
+		protected Number read( ByteWrapper wrapper )
+		{
+			return get( wrapper );
+		}
+
+		protected void writeField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			put( field.getFloat(owner), wrapper );
+		}
+
+		protected void readField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			field.setFloat( owner, get(wrapper) );
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	///////////////////////////////////// Float64Codec //////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	static final class Float64Codec extends BasicCodec
+	{
+		Float64Codec( IDatatype datatype, boolean big ) { super( datatype, 8, big ); }
+		public Class<?> getPrimitiveType() { return double.class; }
+
+		private void put( double value, ByteWrapper wrapper )
+		{
+			int offset = claim( wrapper, 8 );
+			if( bigEndian )
+				BitHelpers.putDoubleBE( value, wrapper.array(), offset );
+			else
+				BitHelpers.putDoubleLE( value, wrapper.array(), offset );
+		}
+
+		private double get( ByteWrapper wrapper )
+		{
+			int offset = claim( wrapper, 8 );
+			return bigEndian ? BitHelpers.readDoubleBE( wrapper.array(), offset ) :
+			                   BitHelpers.readDoubleLE( wrapper.array(), offset );
+		}
+
+		protected void write( Number value, ByteWrapper wrapper )
+		{
+			put( value.doubleValue(), wrapper );
+		}
+
+		protected Number read( ByteWrapper wrapper )
+		{
+			return get( wrapper );
+		}
+
+		protected void writeField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			put( field.getDouble(owner), wrapper );
+		}
+
+		protected void readField( Object owner, Field field, ByteWrapper wrapper ) throws IllegalAccessException
+		{
+			field.setDouble( owner, get(wrapper) );
+		}
+	}
+}
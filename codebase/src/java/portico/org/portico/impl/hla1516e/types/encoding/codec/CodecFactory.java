@@ -0,0 +1,446 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types.encoding.codec;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.portico.impl.hla1516e.types.encoding.codec.ArrayCodec.ElementArrayCodec;
+import org.portico.impl.hla1516e.types.encoding.codec.ArrayCodec.OpaqueCodec;
+import org.portico.impl.hla1516e.types.encoding.codec.ArrayCodec.PrimitiveArrayCodec;
+import org.portico.impl.hla1516e.types.encoding.codec.ArrayCodec.StringCodec;
+import org.portico.lrc.compat.JConfigurationException;
+import org.portico.lrc.model.ObjectModel;
+import org.portico.lrc.model.datatype.Alternative;
+import org.portico.lrc.model.datatype.ArrayType;
+import org.portico.lrc.model.datatype.BasicType;
+import org.portico.lrc.model.datatype.DatatypeClass;
+import org.portico.lrc.model.datatype.EnumeratedType;
+import org.portico.lrc.model.datatype.Enumerator;
+import org.portico.lrc.model.datatype.FixedRecordType;
+import org.portico.lrc.model.datatype.IDatatype;
+import org.portico.lrc.model.datatype.IEnumerator;
+import org.portico.lrc.model.datatype.SimpleType;
+import org.portico.lrc.model.datatype.VariantRecordType;
+
+import hla.rti1516e.encoding.EncoderException;
+
+/**
+ * Compiles FOM datatypes into {@link DatatypeCodec}s and caches the results for each
+ * {@link ObjectModel}.
+ * <p/>
+ * Compilation walks the datatype once and builds a tree of codecs, each specialised for its
+ * part of the datatype and the Java type it is bound to, so that none of the decisions about
+ * how to handle a value (endianness, field lookup, string vs array, boxed vs primitive) are made
+ * again when the codec is used. Codecs can be bound to:
+ * <ul>
+ *   <li>Nothing (<code>Object.class</code>): records become <code>Object[]</code>, arrays of
+ *       basic types become primitive arrays, other arrays become lists</li>
+ *   <li>A Java class for a record, with one field per FOM field</li>
+ *   <li>A primitive array for an array of basic types, moved in bulk</li>
+ *   <li>A Java enum for an enumerated type</li>
+ * </ul>
+ * Fields of a bound class are bound in turn using their declared (generic) type.
+ */
+public class CodecFactory
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final Map<ObjectModel,CodecFactory> FACTORIES = new WeakHashMap<>();
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private WeakReference<ObjectModel> model; // weak so that the cache doesn't pin the model
+	private Map<Key,DatatypeCodec<?>> codecs;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	private CodecFactory( ObjectModel model )
+	{
+		this.model = new WeakReference<ObjectModel>( model );
+		this.codecs = new ConcurrentHashMap<>();
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Get the codec for the named datatype, bound to the given Java type. Codecs are compiled
+	 * the first time they are asked for and cached from then on.
+	 * 
+	 * @throws JConfigurationException if the datatype is unknown, or can't be bound to the type
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> DatatypeCodec<T> getCodec( String datatypeName, Class<T> type )
+		throws JConfigurationException
+	{
+		Key key = new Key( datatypeName, type );
+		DatatypeCodec<?> codec = codecs.get( key );
+		if( codec == null )
+		{
+			ObjectModel fom = model.get();
+			IDatatype datatype = fom == null ? null : fom.getDatatype( datatypeName );
+			if( datatype == null )
+				throw new JConfigurationException( "Unknown datatype ["+datatypeName+"]" );
+			
+			codec = compile( datatype, type );
+			DatatypeCodec<?> existing = codecs.putIfAbsent( key, codec );
+			if( existing != null )
+				codec = existing;
+		}
+		
+		return (DatatypeCodec<T>)codec;
+	}
+
+	/**
+	 * Get the codec for the named datatype without binding it to any particular Java type.
+	 * 
+	 * @see #getCodec(String, Class)
+	 */
+	public DatatypeCodec<Object> getCodec( String datatypeName ) throws JConfigurationException
+	{
+		return getCodec( datatypeName, Object.class );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/**
+	 * @return the codec factory for the given model, creating it if this is the first request
+	 */
+	public static CodecFactory forModel( ObjectModel model )
+	{
+		synchronized( FACTORIES )
+		{
+			CodecFactory factory = FACTORIES.get( model );
+			if( factory == null )
+			{
+				factory = new CodecFactory( model );
+				FACTORIES.put( model, factory );
+			}
+			
+			return factory;
+		}
+	}
+
+	/**
+	 * Compile a codec for the given datatype bound to the given Java type (null or
+	 * <code>Object.class</code> for no particular type). Results are not cached.
+	 * 
+	 * @throws JConfigurationException if the datatype can't be bound to the type
+	 */
+	public static DatatypeCodec<?> compile( IDatatype datatype, Type target )
+		throws JConfigurationException
+	{
+		Class<?> raw = rawClass( target );
+		switch( datatype.getDatatypeClass() )
+		{
+			case BASIC:
+				return BasicCodec.forType( (BasicType)datatype );
+			case SIMPLE:
+				return compile( ((SimpleType)datatype).getRepresentation(), target );
+			case ENUMERATED:
+				return compileEnumerated( (EnumeratedType)datatype, raw );
+			case ARRAY:
+				return compileArray( (ArrayType)datatype, target, raw );
+			case FIXEDRECORD:
+				return compileRecord( (FixedRecordType)datatype, raw );
+			case VARIANTRECORD:
+				return compileVariant( (VariantRecordType)datatype, raw );
+			default:
+				throw new JConfigurationException( "Can't build a codec for "+datatype.getDatatypeClass()+
+				                                   " type "+datatype.getName() );
+		}
+	}
+
+	private static EnumeratedCodec compileEnumerated( EnumeratedType type, Class<?> raw )
+	{
+		IDatatype representation = type.getRepresentation();
+		if( representation instanceof SimpleType )
+			representation = ((SimpleType)representation).getRepresentation();
+		if( representation instanceof BasicType == false )
+		{
+			throw new JConfigurationException( "Enumerated type "+type.getName()+
+			                                   " does not have a basic representation" );
+		}
+		
+		return new EnumeratedCodec( type, BasicCodec.forType((BasicType)representation), raw );
+	}
+
+	private static DatatypeCodec<?> compileArray( ArrayType type, Type target, Class<?> raw )
+	{
+		IDatatype element = type.getDatatype();
+		
+		// strings
+		if( raw == null || raw == String.class )
+		{
+			if( element.getName().equals("HLAASCIIchar") )
+				return new StringCodec( type, false );
+			else if( element.getName().equals("HLAunicodeChar") )
+				return new StringCodec( type, true );
+		}
+		
+		// arrays of basic types go straight to primitive arrays
+		IDatatype basic = element;
+		if( basic instanceof SimpleType )
+			basic = ((SimpleType)basic).getRepresentation();
+		if( basic instanceof BasicType )
+		{
+			BasicCodec elementCodec = BasicCodec.forType( (BasicType)basic );
+			if( elementCodec.getSize() == 1 && (raw == null || raw == byte[].class) )
+				return new OpaqueCodec( type );
+			
+			PrimitiveArrayCodec codec = new PrimitiveArrayCodec( type, elementCodec );
+			if( elementCodec.getSize() > 1 && (raw == null || raw == codec.getArrayType()) )
+				return codec;
+		}
+		
+		// everything else goes element by element
+		Class<?> componentType = null;
+		Type elementTarget = null;
+		if( raw != null && raw.isArray() )
+		{
+			componentType = raw.getComponentType();
+			elementTarget = target instanceof GenericArrayType ?
+			                ((GenericArrayType)target).getGenericComponentType() : componentType;
+		}
+		else if( raw != null && Collection.class.isAssignableFrom(raw) )
+		{
+			if( target instanceof ParameterizedType )
+				elementTarget = ((ParameterizedType)target).getActualTypeArguments()[0];
+		}
+		else if( raw != null )
+		{
+			throw new JConfigurationException( "Can't bind array type "+type.getName()+" to "+raw.getName() );
+		}
+		
+		@SuppressWarnings("unchecked")
+		DatatypeCodec<Object> elementCodec = (DatatypeCodec<Object>)compile( element, elementTarget );
+		return new ElementArrayCodec( type, elementCodec, componentType );
+	}
+
+	private static RecordCodec compileRecord( FixedRecordType type, Class<?> raw )
+	{
+		List<RecordCodec.Slot> slots = new ArrayList<>();
+		if( raw == null || raw == Object[].class )
+		{
+			for( org.portico.lrc.model.datatype.Field field : type.getFields() )
+				slots.add( new RecordCodec.Slot(compile(field.getDatatype(),null),null) );
+			
+			return new RecordCodec( type, null, slots );
+		}
+		
+		for( org.portico.lrc.model.datatype.Field field : type.getFields() )
+		{
+			java.lang.reflect.Field javaField = findField( raw, field.getName() );
+			if( javaField == null )
+			{
+				throw new JConfigurationException( raw.getName()+" has no field for "+type.getName()+
+				                                   "."+field.getName() );
+			}
+			
+			DatatypeCodec<?> codec = compile( field.getDatatype(), javaField.getGenericType() );
+			slots.add( new RecordCodec.Slot(codec,javaField) );
+		}
+		
+		return new RecordCodec( type, findConstructor(raw), slots );
+	}
+
+	private static VariantRecordCodec compileVariant( VariantRecordType type, Class<?> raw )
+	{
+		boolean bound = raw != null && raw != Object[].class;
+		java.lang.reflect.Field discriminantField = null;
+		Class<?> discriminantTarget = null;
+		if( bound )
+		{
+			discriminantField = findField( raw, type.getDiscriminantName() );
+			if( discriminantField == null )
+			{
+				throw new JConfigurationException( raw.getName()+" has no field for discriminant "+
+				                                   type.getName()+"."+type.getDiscriminantName() );
+			}
+			
+			discriminantTarget = discriminantField.getType();
+		}
+		
+		IDatatype discriminantType = type.getDiscriminantDatatype();
+		if( discriminantType instanceof EnumeratedType == false )
+		{
+			throw new JConfigurationException( "Discriminant of "+type.getName()+
+			                                   " is not an enumerated type" );
+		}
+		
+		EnumeratedCodec discriminant = compileEnumerated( (EnumeratedType)discriminantType,
+		                                                  discriminantTarget );
+		VariantRecordCodec codec = new VariantRecordCodec( type,
+		                                                   discriminant,
+		                                                   discriminantField,
+		                                                   bound ? findConstructor(raw) : null );
+		
+		for( Alternative alternative : type.getAlternatives() )
+		{
+			java.lang.reflect.Field field = null;
+			DatatypeCodec<?> alternativeCodec = null;
+			IDatatype datatype = alternative.getDatatype();
+			if( datatype != null && datatype.getDatatypeClass() != DatatypeClass.NA )
+			{
+				if( bound )
+				{
+					field = findField( raw, alternative.getName() );
+					if( field == null )
+					{
+						throw new JConfigurationException( raw.getName()+" has no field for alternative "+
+						                                   type.getName()+"."+alternative.getName() );
+					}
+				}
+				
+				alternativeCodec = compile( datatype, field == null ? null : field.getGenericType() );
+			}
+			
+			for( IEnumerator enumerator : alternative.getEnumerators() )
+			{
+				// resolve by name so that any unlinked enumerator references still work
+				if( enumerator.getName().equals(Enumerator.HLA_OTHER.getName()) )
+				{
+					codec.setOther( alternativeCodec, field );
+					continue;
+				}
+				
+				try
+				{
+					long value = discriminant.toRawValue( enumerator.getName() );
+					codec.addChoice( value, alternativeCodec, field );
+				}
+				catch( EncoderException ee )
+				{
+					throw new JConfigurationException( "Alternative "+alternative.getName()+" of "+
+					                                   type.getName()+" refers to unknown enumerator "+
+					                                   enumerator.getName() );
+				}
+			}
+		}
+		
+		return codec;
+	}
+
+	private static Class<?> rawClass( Type target )
+	{
+		Class<?> raw = null;
+		if( target instanceof Class )
+			raw = (Class<?>)target;
+		else if( target instanceof ParameterizedType )
+			raw = (Class<?>)((ParameterizedType)target).getRawType();
+		else if( target instanceof GenericArrayType )
+			raw = Object[].class;
+		
+		return raw == Object.class ? null : raw;
+	}
+
+	private static Constructor<?> findConstructor( Class<?> type )
+	{
+		try
+		{
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible( true );
+			return constructor;
+		}
+		catch( NoSuchMethodException nsme )
+		{
+			throw new JConfigurationException( type.getName()+" needs a no-argument constructor to be "+
+			                                   "used as a record" );
+		}
+	}
+
+	/**
+	 * Find the Java field that holds the FOM field of the given name. The class and its parents
+	 * are searched for a non-static field whose name matches exactly, then ignoring case, and
+	 * then ignoring case with any leading "HLA" dropped from the FOM name.
+	 * 
+	 * @return the field, made accessible, or null if there isn't one
+	 */
+	static java.lang.reflect.Field findField( Class<?> type, String fomName )
+	{
+		String stripped = fomName.startsWith("HLA") ? fomName.substring(3) : fomName;
+		java.lang.reflect.Field loose = null;
+		for( Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass() )
+		{
+			for( java.lang.reflect.Field field : current.getDeclaredFields() )
+			{
+				if( Modifier.isStatic(field.getModifiers()) )
+					continue;
+				
+				if( field.getName().equals(fomName) )
+				{
+					field.setAccessible( true );
+					return field;
+				}
+				else if( loose == null && (field.getName().equalsIgnoreCase(fomName) ||
+				                           field.getName().equalsIgnoreCase(stripped)) )
+				{
+					loose = field;
+				}
+			}
+		}
+		
+		if( loose != null )
+			loose.setAccessible( true );
+		
+		return loose;
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////// Key //////////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	private static final class Key
+	{
+		private final String datatype;
+		private final Class<?> type;
+		Key( String datatype, Class<?> type )
+		{
+			this.datatype = datatype;
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals( Object other )
+		{
+			if( other instanceof Key == false )
+				return false;
+			
+			Key key = (Key)other;
+			return datatype.equals(key.datatype) && type == key.type;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash( datatype, type );
+		}
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types.encoding.codec;
+
+import org.portico.lrc.model.datatype.IDatatype;
+
+import hla.rti1516e.encoding.ByteWrapper;
+import hla.rti1516e.encoding.DecoderException;
+import hla.rti1516e.encoding.EncoderException;
+
+/**
+ * A codec converts values of a single FOM datatype directly to and from their encoded form,
+ * without building an intermediate tree of {@link hla.rti1516e.encoding.DataElement}s. Codecs are
+ * compiled from the {@link IDatatype} model by the {@link CodecFactory}, with each part of the
+ * datatype turned into a codec specialised for that part (and for the Java type it is bound to).
+ * <p/>
+ * The bytes produced are the same as those produced by the equivalent hand-assembled
+ * <code>HLA1516e*</code> data elements, so the two can be mixed freely.
+ * <p/>
+ * Codecs hold no per-call state and can be shared between threads.
+ */
+public abstract class DatatypeCodec<T>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	protected final IDatatype datatype;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected DatatypeCodec( IDatatype datatype )
+	{
+		this.datatype = datatype;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * @return the number of bytes the given value will take up once encoded
+	 */
+	public abstract int getEncodedLength( T value ) throws EncoderException;
+
+	/**
+	 * Write the value into the wrapper, which is assumed to have enough space left. Composite
+	 * codecs call this directly on their children so that any buffer problems are only caught
+	 * and converted once, at the top level.
+	 */
+	protected abstract void write( T value, ByteWrapper wrapper ) throws EncoderException;
+
+	/**
+	 * Read a value from the wrapper. As with {@link #write(Object, ByteWrapper)} this is what
+	 * composite codecs call on their children.
+	 */
+	protected abstract T read( ByteWrapper wrapper ) throws DecoderException;
+
+	/**
+	 * Encode the given value into the wrapper, advancing its position.
+	 * 
+	 * @throws EncoderException if the value doesn't fit the datatype, or there isn't enough
+	 *                          space left in the wrapper
+	 */
+	public final void encode( T value, ByteWrapper wrapper ) throws EncoderException
+	{
+		try
+		{
+			if( wrapper.remaining() < getEncodedLength(value) )
+				throw new EncoderException( "Insufficient space remaining in buffer to encode "+datatype.getName() );
+			
+			write( value, wrapper );
+		}
+		catch( ArrayIndexOutOfBoundsException | ClassCastException | NullPointerException e )
+		{
+			throw new EncoderException( "Could not encode "+datatype.getName()+": "+e, e );
+		}
+	}
+
+	/**
+	 * Encode the given value into a new byte[] that is exactly the right size.
+	 */
+	public final byte[] toByteArray( T value ) throws EncoderException
+	{
+		try
+		{
+			ByteWrapper wrapper = new ByteWrapper( getEncodedLength(value) );
+			write( value, wrapper );
+			return wrapper.array();
+		}
+		catch( ArrayIndexOutOfBoundsException | ClassCastException | NullPointerException e )
+		{
+			throw new EncoderException( "Could not encode "+datatype.getName()+": "+e, e );
+		}
+	}
+
+	/**
+	 * Decode a value from the wrapper, advancing its position.
+	 * 
+	 * @throws DecoderException if the data is short or doesn't match the datatype
+	 */
+	public final T decode( ByteWrapper wrapper ) throws DecoderException
+	{
+		try
+		{
+			return read( wrapper );
+		}
+		catch( ArrayIndexOutOfBoundsException e )
+		{
+			throw new DecoderException( "Buffer underflow decoding "+datatype.getName()+": "+e, e );
+		}
+	}
+
+	/**
+	 * Decode a value from the start of the given array.
+	 */
+	public final T decode( byte[] bytes ) throws DecoderException
+	{
+		return decode( new ByteWrapper(bytes) );
+	}
+
+	/**
+	 * @return the encoded length of every value of this type if it is always the same, or -1
+	 *         if it depends on the value
+	 */
+	public int getFixedLength()
+	{
+		return -1;
+	}
+
+	/**
+	 * @return the FOM datatype this codec was compiled from
+	 */
+	public IDatatype getDatatype()
+	{
+		return this.datatype;
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName()+"["+datatype.getName()+"]";
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/**
+	 * Make sure there are at least <code>count</code> elements of <code>size</code> bytes left
+	 * in the wrapper, without the multiplication overflowing on a corrupt count.
+	 */
+	protected static void checkRemaining( ByteWrapper wrapper, int count, int size )
+		throws DecoderException
+	{
+		if( count < 0 || (size > 0 && wrapper.remaining()/size < count) )
+		{
+			throw new DecoderException( "Buffer Underflow. Remaining="+wrapper.remaining()+
+			                            "b, Expected="+count+" elements of "+size+"b" );
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types.encoding.codec;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.portico.lrc.compat.JConfigurationException;
+import org.portico.lrc.model.datatype.EnumeratedType;
+import org.portico.lrc.model.datatype.Enumerator;
+import org.portico.lrc.model.datatype.IEnumerator;
+
+import hla.rti1516e.encoding.ByteWrapper;
+import hla.rti1516e.encoding.DecoderException;
+import hla.rti1516e.encoding.EncoderException;
+
+/**
+ * Codec for FOM enumerated types. What a value decodes to depends on the Java type the codec
+ * was compiled for:
+ * <ul>
+ *   <li>A Java <code>enum</code>: the constant with the same name as the enumerator</li>
+ *   <li>A {@link Number} or numeric primitive: the raw enumerator value</li>
+ *   <li>Anything else: the model's {@link Enumerator}</li>
+ * </ul>
+ * When encoding, any of a Java enum constant, {@link IEnumerator}, {@link Number} or enumerator
+ * name is accepted regardless of what the codec was compiled for.
+ */
+public class EnumeratedCodec extends DatatypeCodec<Object>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private BasicCodec representation;
+	private Map<Long,Object> decodeValues;     // raw value -> decoded form
+	private Map<String,Long> namedValues;      // enumerator name -> raw value
+	private long[] ordinalValues;              // java enum ordinal -> raw value, if bound to an enum
+	private boolean numeric;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected EnumeratedCodec( EnumeratedType type, BasicCodec representation, Class<?> target )
+		throws JConfigurationException
+	{
+		super( type );
+		this.representation = representation;
+		this.decodeValues = new HashMap<>();
+		this.namedValues = new HashMap<>();
+		this.numeric = target != null && (Number.class.isAssignableFrom(target) ||
+		                                  (target.isPrimitive() && target != boolean.class));
+
+		for( Enumerator enumerator : type.getEnumerators() )
+		{
+			long value = enumerator.getValue().longValue();
+			namedValues.put( enumerator.getName(), value );
+			if( numeric )
+				decodeValues.put( value, castValue(value) );
+			else if( target == null || !target.isEnum() )
+				decodeValues.put( value, enumerator );
+		}
+		
+		if( target != null && target.isEnum() )
+		{
+			Object[] constants = target.getEnumConstants();
+			this.ordinalValues = new long[constants.length];
+			for( Object constant : constants )
+			{
+				String name = ((Enum<?>)constant).name();
+				Long value = valueOf( name );
+				if( value == null )
+				{
+					throw new JConfigurationException( "Enum constant "+target.getSimpleName()+"."+name+
+					                                   " has no matching enumerator in "+type.getName() );
+				}
+				
+				ordinalValues[((Enum<?>)constant).ordinal()] = value;
+				decodeValues.put( value, constant );
+			}
+		}
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	private Long valueOf( String name )
+	{
+		Long value = namedValues.get( name );
+		if( value != null )
+			return value;
+		
+		for( Map.Entry<String,Long> entry : namedValues.entrySet() )
+		{
+			if( entry.getKey().equalsIgnoreCase(name) )
+				return entry.getValue();
+		}
+		
+		return null;
+	}
+
+	/** Box the raw value as the natural type of the representation */
+	private Number castValue( long value )
+	{
+		switch( representation.getSize() )
+		{
+			case 1:  return (byte)value;
+			case 2:  return (short)value;
+			case 4:  return (int)value;
+			default: return value;
+		}
+	}
+
+	/**
+	 * @return the raw enumerator value for any of the forms accepted by this codec
+	 */
+	long toRawValue( Object value ) throws EncoderException
+	{
+		if( value instanceof Enum && ordinalValues != null )
+			return ordinalValues[((Enum<?>)value).ordinal()];
+		else if( value instanceof IEnumerator )
+			return ((IEnumerator)value).getValue().longValue();
+		else if( value instanceof Number )
+			return ((Number)value).longValue();
+		
+		String name = value instanceof Enum ? ((Enum<?>)value).name() : String.valueOf( value );
+		Long raw = valueOf( name );
+		if( raw == null )
+			throw new EncoderException( "Unknown enumerator ["+name+"] for "+datatype.getName() );
+		
+		return raw;
+	}
+
+	@Override
+	public int getFixedLength()
+	{
+		return representation.getSize();
+	}
+
+	@Override
+	public int getEncodedLength( Object value )
+	{
+		return representation.getSize();
+	}
+
+	@Override
+	protected void write( Object value, ByteWrapper wrapper ) throws EncoderException
+	{
+		writeRawValue( toRawValue(value), wrapper );
+	}
+
+	void writeRawValue( long raw, ByteWrapper wrapper )
+	{
+		representation.write( castValue(raw), wrapper );
+	}
+
+	long readRawValue( ByteWrapper wrapper )
+	{
+		return representation.read( wrapper ).longValue();
+	}
+
+	@Override
+	protected Object read( ByteWrapper wrapper ) throws DecoderException
+	{
+		return fromRawValue( readRawValue(wrapper) );
+	}
+
+	/**
+	 * @return the decoded form of the given raw enumerator value
+	 */
+	Object fromRawValue( long raw ) throws DecoderException
+	{
+		Object value = decodeValues.get( raw );
+		if( value == null && numeric )
+			return castValue( raw );
+		else if( value == null )
+			throw new DecoderException( "Unknown enumerator value ["+raw+"] for "+datatype.getName() );
+		
+		return value;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -0,0 +1,220 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types.encoding.codec;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.List;
+
+import org.portico.lrc.model.datatype.FixedRecordType;
+
+import hla.rti1516e.encoding.ByteWrapper;
+import hla.rti1516e.encoding.DecoderException;
+import hla.rti1516e.encoding.EncoderException;
+
+/**
+ * Codec for FOM fixed record types. If compiled against a Java class, records are moved to and
+ * from instances of that class, one Java field per FOM field (see
+ * {@link CodecFactory#findField(Class, String)} for how they are matched). The class needs a
+ * no-argument constructor. Primitive Java fields whose type matches a basic FOM field exactly
+ * are read and written without boxing.
+ * <p/>
+ * Without a Java class, records are moved to and from an <code>Object[]</code> holding the
+ * field values in FOM order.
+ */
+public class RecordCodec extends DatatypeCodec<Object>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private Slot[] slots;
+	private Constructor<?> constructor; // null when mapping to Object[]
+	private int fixedLength;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected RecordCodec( FixedRecordType type, Constructor<?> constructor, List<Slot> slots )
+	{
+		super( type );
+		this.constructor = constructor;
+		this.slots = slots.toArray( new Slot[slots.size()] );
+		
+		this.fixedLength = 0;
+		for( Slot slot : this.slots )
+		{
+			int length = slot.codec.getFixedLength();
+			if( length < 0 )
+			{
+				this.fixedLength = -1;
+				break;
+			}
+			
+			this.fixedLength += length;
+		}
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@Override
+	public int getFixedLength()
+	{
+		return this.fixedLength;
+	}
+
+	@Override
+	public int getEncodedLength( Object value ) throws EncoderException
+	{
+		if( fixedLength >= 0 )
+			return fixedLength;
+		
+		int length = 0;
+		if( constructor == null )
+		{
+			Object[] values = (Object[])value;
+			for( int i = 0; i < slots.length; i++ )
+				length += slots[i].codec.getEncodedLength( values[i] );
+		}
+		else
+		{
+			for( Slot slot : slots )
+				length += slot.length( value );
+		}
+		
+		return length;
+	}
+
+	@Override
+	protected void write( Object value, ByteWrapper wrapper ) throws EncoderException
+	{
+		if( constructor == null )
+		{
+			Object[] values = (Object[])value;
+			if( values.length != slots.length )
+			{
+				throw new EncoderException( datatype.getName()+" has "+slots.length+" fields, "+
+				                            values.length+" values given" );
+			}
+			
+			for( int i = 0; i < slots.length; i++ )
+				slots[i].codec.write( values[i], wrapper );
+		}
+		else
+		{
+			try
+			{
+				for( Slot slot : slots )
+					slot.write( value, wrapper );
+			}
+			catch( IllegalAccessException iae )
+			{
+				throw new EncoderException( "Could not read field of "+value.getClass().getName(), iae );
+			}
+		}
+	}
+
+	@Override
+	protected Object read( ByteWrapper wrapper ) throws DecoderException
+	{
+		if( constructor == null )
+		{
+			Object[] values = new Object[slots.length];
+			for( int i = 0; i < slots.length; i++ )
+				values[i] = slots[i].codec.read( wrapper );
+			return values;
+		}
+		
+		try
+		{
+			Object value = constructor.newInstance();
+			for( Slot slot : slots )
+				slot.read( value, wrapper );
+			return value;
+		}
+		catch( DecoderException de )
+		{
+			throw de;
+		}
+		catch( Exception e )
+		{
+			throw new DecoderException( "Could not populate "+constructor.getDeclaringClass().getName()+
+			                            ": "+e, e );
+		}
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////// Slot /////////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * One field of the record: the codec for its FOM datatype and, when bound to a Java class,
+	 * the Java field it lives in.
+	 */
+	static final class Slot
+	{
+		final DatatypeCodec<Object> codec;
+		final Field field;
+		final BasicCodec primitive; // set when the field can be moved without boxing
+
+		@SuppressWarnings("unchecked")
+		Slot( DatatypeCodec<?> codec, Field field )
+		{
+			this.codec = (DatatypeCodec<Object>)codec;
+			this.field = field;
+			if( field != null && codec instanceof BasicCodec &&
+			    field.getType() == ((BasicCodec)codec).getPrimitiveType() )
+				this.primitive = (BasicCodec)codec;
+			else
+				this.primitive = null;
+		}
+
+		int length( Object owner ) throws EncoderException
+		{
+			try
+			{
+				int fixed = codec.getFixedLength();
+				return fixed >= 0 ? fixed : codec.getEncodedLength( field.get(owner) );
+			}
+			catch( IllegalAccessException iae )
+			{
+				throw new EncoderException( "Could not read field "+field.getName(), iae );
+			}
+		}
+
+		void write( Object owner, ByteWrapper wrapper ) throws IllegalAccessException, EncoderException
+		{
+			if( primitive != null )
+				primitive.writeField( owner, field, wrapper );
+			else
+				codec.write( field.get(owner), wrapper );
+		}
+
+		void read( Object owner, ByteWrapper wrapper ) throws IllegalAccessException, DecoderException
+		{
+			if( primitive != null )
+				primitive.readField( owner, field, wrapper );
+			else
+				field.set( owner, codec.read(wrapper) );
+		}
+	}
+}
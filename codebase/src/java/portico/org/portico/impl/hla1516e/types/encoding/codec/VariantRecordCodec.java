@@ -0,0 +1,189 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.impl.hla1516e.types.encoding.codec;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.portico.lrc.model.datatype.VariantRecordType;
+
+import hla.rti1516e.encoding.ByteWrapper;
+import hla.rti1516e.encoding.DecoderException;
+import hla.rti1516e.encoding.EncoderException;
+
+/**
+ * Codec for FOM variant record types. The discriminant is written first, followed by the value
+ * of the alternative it selects (with no padding in between, as per
+ * {@link org.portico.impl.hla1516e.types.encoding.HLA1516eVariantRecord}).
+ * <p/>
+ * If compiled against a Java class, the discriminant is held in the field named after the
+ * FOM discriminant, and each alternative in the field named after that alternative. Only the
+ * selected alternative is read or written. Without a Java class, values are an
+ * <code>Object[]</code> of <code>{ discriminant, value }</code>.
+ */
+public class VariantRecordCodec extends DatatypeCodec<Object>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private EnumeratedCodec discriminant;
+	private Field discriminantField;                  // null when mapping to Object[]
+	private Constructor<?> constructor;               // null when mapping to Object[]
+	private Map<Long,Choice> choices;                 // raw discriminant value -> alternative
+	private Choice other;                             // HLAother alternative, if any
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected VariantRecordCodec( VariantRecordType type,
+	                              EnumeratedCodec discriminant,
+	                              Field discriminantField,
+	                              Constructor<?> constructor )
+	{
+		super( type );
+		this.discriminant = discriminant;
+		this.discriminantField = discriminantField;
+		this.constructor = constructor;
+		this.choices = new HashMap<>();
+		this.other = null;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Register the alternative for the given raw discriminant value. The codec is null for
+	 * alternatives with no data, and the field is null when not bound to a Java class.
+	 */
+	@SuppressWarnings("unchecked")
+	void addChoice( long raw, DatatypeCodec<?> codec, Field field )
+	{
+		choices.put( raw, new Choice((DatatypeCodec<Object>)codec,field) );
+	}
+
+	@SuppressWarnings("unchecked")
+	void setOther( DatatypeCodec<?> codec, Field field )
+	{
+		this.other = new Choice( (DatatypeCodec<Object>)codec, field );
+	}
+
+	private Choice choiceFor( long raw )
+	{
+		Choice choice = choices.get( raw );
+		return choice != null ? choice : other;
+	}
+
+	@Override
+	public int getEncodedLength( Object value ) throws EncoderException
+	{
+		long raw = discriminant.toRawValue( getDiscriminant(value) );
+		Choice choice = choiceFor( raw );
+		if( choice == null || choice.codec == null )
+			return discriminant.getFixedLength();
+		else
+			return discriminant.getFixedLength() + choice.codec.getEncodedLength( getValue(value,choice) );
+	}
+
+	@Override
+	protected void write( Object value, ByteWrapper wrapper ) throws EncoderException
+	{
+		long raw = discriminant.toRawValue( getDiscriminant(value) );
+		Choice choice = choiceFor( raw );
+		if( choice == null )
+			throw new EncoderException( "No alternative of "+datatype.getName()+" for discriminant "+raw );
+		
+		discriminant.writeRawValue( raw, wrapper );
+		if( choice.codec != null )
+			choice.codec.write( getValue(value,choice), wrapper );
+	}
+
+	@Override
+	protected Object read( ByteWrapper wrapper ) throws DecoderException
+	{
+		long raw = discriminant.readRawValue( wrapper );
+		Choice choice = choiceFor( raw );
+		if( choice == null )
+			throw new DecoderException( "No alternative of "+datatype.getName()+" for discriminant "+raw );
+		
+		Object discriminantValue = discriminant.fromRawValue( raw );
+		Object alternative = choice.codec == null ? null : choice.codec.read( wrapper );
+		if( constructor == null )
+			return new Object[]{ discriminantValue, alternative };
+		
+		try
+		{
+			Object value = constructor.newInstance();
+			discriminantField.set( value, discriminantValue );
+			if( choice.field != null )
+				choice.field.set( value, alternative );
+			return value;
+		}
+		catch( Exception e )
+		{
+			throw new DecoderException( "Could not populate "+constructor.getDeclaringClass().getName()+
+			                            ": "+e, e );
+		}
+	}
+
+	private Object getDiscriminant( Object value ) throws EncoderException
+	{
+		if( constructor == null )
+			return ((Object[])value)[0];
+		
+		try
+		{
+			return discriminantField.get( value );
+		}
+		catch( IllegalAccessException iae )
+		{
+			throw new EncoderException( "Could not read field "+discriminantField.getName(), iae );
+		}
+	}
+
+	private Object getValue( Object value, Choice choice ) throws EncoderException
+	{
+		if( constructor == null )
+			return ((Object[])value)[1];
+		
+		try
+		{
+			return choice.field.get( value );
+		}
+		catch( IllegalAccessException iae )
+		{
+			throw new EncoderException( "Could not read field "+choice.field.getName(), iae );
+		}
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	private static final class Choice
+	{
+		final DatatypeCodec<Object> codec;
+		final Field field;
+		Choice( DatatypeCodec<Object> codec, Field field )
+		{
+			this.codec = codec;
+			this.field = field;
+		}
+	}
+}
@@ -100,6 +100,15 @@ public class PorticoConstants
 	
 	/** System property for defining if the FOM should be printed on federation startup */
 	public static final String PROPERTY_PRINT_FOM = "portico.fom.print";
+
+	/** System property for turning on the on-disk cache of merged FOMs. When on, creating a
+	    federation from a set of modules that has been seen before skips parsing and merging them.
+	    Default is off */
+	public static final String PROPERTY_FOM_CACHE = "portico.fom.cache";
+
+	/** System property for the directory the FOM cache is kept in. Defaults to a per-user
+	    directory under java.io.tmpdir */
+	public static final String PROPERTY_FOM_CACHE_DIR = "portico.fom.cache.dir";
 	
 	/** System property for defining if the auto-route facility should be enabled in a
 	    kernel, by default it is not. Values should be "true" or "false" */
@@ -447,6 +456,28 @@ public class PorticoConstants
 		return getBooleanProperty( PROPERTY_PRINT_FOM, "disabled" );
 	}
 
+	public static boolean isFomCacheEnabled()
+	{
+		return getBooleanProperty( PROPERTY_FOM_CACHE, "disabled" );
+	}
+
+	/**
+	 * @return The directory the FOM cache should be stored in. See {@link #PROPERTY_FOM_CACHE_DIR}.
+	 */
+	public static File getFomCacheDirectory()
+	{
+		String directory = System.getProperty( PROPERTY_FOM_CACHE_DIR );
+		if( directory == null )
+		{
+			String user = System.getProperty( "user.name", "portico" ).replaceAll( "\\W", "_" );
+			return new File( System.getProperty("java.io.tmpdir"), "portico-fomcache-"+user );
+		}
+		else
+		{
+			return new File( directory );
+		}
+	}
+
 	/////////////////////////////////////////////////////////////////////////////////////////
 	/////////////////////////////// Handle/Name Print Methods ///////////////////////////////
 	/////////////////////////////////////////////////////////////////////////////////////////
@@ -14,10 +14,13 @@
  */
 package org.portico.lrc.model;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.io.Serializable;
 
 import org.portico.lrc.PorticoConstants;
@@ -48,6 +51,10 @@ public class ICMetadata implements Serializable
 	private String                  qualifiedName; // set on first access
 	private String                  vsafeQualifiedName; // version-safe name, set on first access
 
+	// flattened view of declared + inherited parameters, built on first access and dropped
+	// whenever this class or one of its ancestors changes shape
+	private transient volatile Map<Integer,PCMetadata> inheritedByHandle;
+	private transient volatile Map<String,PCMetadata>  inheritedByName;
 	
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -66,7 +73,7 @@ public class ICMetadata implements Serializable
 		this.space       = null;
 		this.parent      = null;
 		this.model       = null;
-		this.children    = new HashSet<ICMetadata>();
+		this.children    = new LinkedHashSet<ICMetadata>();
 		this.parameters  = new HashMap<Integer,PCMetadata>();
 	}
 	
@@ -112,8 +119,82 @@ public class ICMetadata implements Serializable
 		}
 		
 		// remove our link to the model //
+		invalidate();
 		this.model = null;
 	}
+
+	/**
+	 * Drops the cached qualified names and flattened parameter tables of this class and all of
+	 * its descendants, and tells the model that its indexes are stale.
+	 */
+	protected void invalidate()
+	{
+		this.qualifiedName = null;
+		this.vsafeQualifiedName = null;
+		this.inheritedByHandle = null;
+		this.inheritedByName = null;
+		for( ICMetadata child : this.children )
+			child.invalidate();
+
+		if( this.model != null )
+			this.model.invalidateIndex();
+	}
+
+	/**
+	 * Builds (if required) and returns the flattened map of all available parameters for this
+	 * class, keyed by handle. Declared parameters take precedence over inherited ones.
+	 */
+	private Map<Integer,PCMetadata> getInheritedByHandle()
+	{
+		Map<Integer,PCMetadata> flattened = this.inheritedByHandle;
+		if( flattened == null )
+		{
+			flattened = new LinkedHashMap<Integer,PCMetadata>();
+			if( this.parent != null )
+				flattened.putAll( this.parent.getInheritedByHandle() );
+			flattened.putAll( this.parameters );
+			this.inheritedByHandle = flattened;
+		}
+
+		return flattened;
+	}
+
+	/**
+	 * Builds (if required) and returns the flattened map of all available parameters for this
+	 * class, keyed by name. Declared parameters take precedence over inherited ones.
+	 */
+	private Map<String,PCMetadata> getInheritedByName()
+	{
+		Map<String,PCMetadata> flattened = this.inheritedByName;
+		if( flattened == null )
+		{
+			flattened = new HashMap<String,PCMetadata>();
+			if( this.parent != null )
+				flattened.putAll( this.parent.getInheritedByName() );
+			for( PCMetadata parameter : this.parameters.values() )
+				flattened.put( parameter.getName(), parameter );
+			this.inheritedByName = flattened;
+		}
+
+		return flattened;
+	}
+
+	/**
+	 * Return true if this type is, or is a child type of, the given class.
+	 */
+	public boolean isAssignableTo( ICMetadata other )
+	{
+		ICMetadata current = this;
+		while( current != null )
+		{
+			if( current == other )
+				return true;
+			else
+				current = current.parent;
+		}
+
+		return false;
+	}
 	
 	////////////////////////////////////////////////////////////
 	///////////////////// Parameter Methods ////////////////////
@@ -141,6 +222,7 @@ public class ICMetadata implements Serializable
 		this.parameters.put( parameter.getHandle(), parameter );
 		// assign the container property
 		parameter.setContainer( this );
+		invalidate();
 		return true;
 	}
 	
@@ -158,6 +240,7 @@ public class ICMetadata implements Serializable
 		else
 		{
 			parameter.setContainer( null );
+			invalidate();
 			return parameter;
 		}
 	}
@@ -167,7 +250,15 @@ public class ICMetadata implements Serializable
 	 */
 	public Set<PCMetadata> getDeclaredParameters()
 	{
-		return new HashSet<PCMetadata>( this.parameters.values() );
+		return new LinkedHashSet<PCMetadata>( this.parameters.values() );
+	}
+
+	/**
+	 * Direct (uncopied) view of the declared parameters, for use by the model indexes
+	 */
+	protected Collection<PCMetadata> getDeclaredParameterValues()
+	{
+		return this.parameters.values();
 	}
 	
 	/**
@@ -175,20 +266,7 @@ public class ICMetadata implements Serializable
 	 */
 	public Set<PCMetadata> getAllParameters()
 	{
-		// if we don't have parent, all our parameters are just our local ones
-		if( this.parent == null )
-		{
-			return this.getDeclaredParameters();
-		}
-		else
-		{
-			// we have a parent, must combine our parameter with theirs
-			Set<PCMetadata> inherited = this.parent.getAllParameters();
-			// add our local parameters
-			inherited.addAll( this.parameters.values() );
-			// return the complete set
-			return inherited;
-		}
+		return new HashSet<PCMetadata>( getInheritedByHandle().values() );
 	}
 	
 	/**
@@ -230,24 +308,17 @@ public class ICMetadata implements Serializable
 	 */
 	public PCMetadata getParameter( int handle )
 	{
-		// check for the parameter locally first
-		if( this.parameters.containsKey(handle) )
-		{
-			// we have it
-			return this.parameters.get( handle );
-		}
-		else
+		// the model keeps a dense handle table of every declared parameter, if the one it
+		// has is declared in us or one of our ancestors, that's the one
+		if( this.model != null )
 		{
-			// we don't have it locally, check up the tree - if we can!
-			if( this.parent == null )
-			{
-				return null;
-			}
-			else
-			{
-				return this.parent.getParameter( handle );
-			}
+			PCMetadata parameter = this.model.getIndex().getParameter( handle );
+			if( parameter != null && this.isAssignableTo(parameter.getContainer()) )
+				return parameter;
 		}
+
+		// not attached to a model, or the handle isn't one of ours
+		return getInheritedByHandle().get( handle );
 	}
 	
 	/**
@@ -257,26 +328,9 @@ public class ICMetadata implements Serializable
 	 */
 	public int getParameterHandle( String name )
 	{
-		// check locally first
-		for( PCMetadata temp : this.parameters.values() )
-		{
-			if( temp.getName().equals(name) )
-			{
-				return temp.getHandle();
-			}
-		}
-		
-		// didn't find it, check up the tree
-		if( this.parent == null )
-		{
-			// no tree to check up
-			return ObjectModel.INVALID_HANDLE;
-		}
-		else
-		{
-			return this.parent.getParameterHandle( name );
-		}
-		
+		// declared and inherited parameters are flattened into a single table
+		PCMetadata parameter = getInheritedByName().get( name );
+		return parameter == null ? ObjectModel.INVALID_HANDLE : parameter.getHandle();
 	}
 	
 	/**
@@ -286,20 +340,8 @@ public class ICMetadata implements Serializable
 	 */
 	public String getParameterName( int handle )
 	{
-		if( this.parameters.containsKey(handle) )
-		{
-			return this.parameters.get(handle).getName();
-		}
-		
-		// check inherited parameters
-		if( this.parent == null )
-		{
-			return null;
-		}
-		else
-		{
-			return this.parent.getParameterName( handle );
-		}
+		PCMetadata parameter = getParameter( handle );
+		return parameter == null ? null : parameter.getName();
 	}
 
 	////////////////////////////////////////////////////////////
@@ -421,16 +463,15 @@ public class ICMetadata implements Serializable
 		if( this.parent != null )
 			this.parent.children.remove( this );
 		
-		// clear the qualified name caches //
-		this.qualifiedName = null;
-		this.vsafeQualifiedName = null;
-		
 		// register us in the new parent //
 		this.parent = parent;
 		if( parent != null )
 		{
 			parent.children.add( this );
 		}
+
+		// clear the qualified name and parameter caches (ours and our children's) //
+		invalidate();
 	}
 
 	public Transport getTransport()
@@ -470,6 +511,9 @@ public class ICMetadata implements Serializable
 	
 	public void setModel( ObjectModel model )
 	{
+		if( this.model != null && this.model != model )
+			this.model.invalidateIndex();
+
 		this.model = model;
 	}
 
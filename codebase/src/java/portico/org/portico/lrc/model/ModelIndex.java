@@ -0,0 +1,208 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.lrc.model;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only lookup tables for an {@link ObjectModel}. Class, attribute and parameter handles are
+ * resolved through dense arrays indexed by handle value (handles are generated sequentially from
+ * a single counter, so the arrays stay small), while class and space names are resolved through
+ * hash maps keyed on the lower-cased name.
+ * <p/>
+ * An index is a snapshot. It is built lazily by the model the first time a lookup needs it and
+ * is thrown away whenever the model structure changes (classes added/removed/re-parented, or
+ * attributes and parameters added/removed). Rebuilding is cheap compared to the linear scans it
+ * replaces, and the model only changes while FOM modules are being parsed and merged.
+ */
+class ModelIndex
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private OCMetadata[] oclasses;
+	private ICMetadata[] iclasses;
+	private ACMetadata[] attributes;
+	private PCMetadata[] parameters;
+
+	// keyed on lower-cased version-safe qualified name and on lower-cased local name
+	private Map<String,OCMetadata> ocQualified;
+	private Map<String,OCMetadata> ocLocal;
+	private Map<String,ICMetadata> icQualified;
+	private Map<String,ICMetadata> icLocal;
+	private Map<String,Space> spaces;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected ModelIndex( Collection<OCMetadata> objectClasses,
+	                      Collection<ICMetadata> interactionClasses,
+	                      Collection<Space> spaces )
+	{
+		this.ocQualified = new HashMap<String,OCMetadata>();
+		this.ocLocal     = new HashMap<String,OCMetadata>();
+		this.icQualified = new HashMap<String,ICMetadata>();
+		this.icLocal     = new HashMap<String,ICMetadata>();
+		this.spaces      = new HashMap<String,Space>();
+
+		// size the handle tables //
+		int maxClass = -1;
+		int maxAttribute = -1;
+		for( OCMetadata oc : objectClasses )
+		{
+			maxClass = Math.max( maxClass, oc.getHandle() );
+			for( ACMetadata attribute : oc.getDeclaredAttributeValues() )
+				maxAttribute = Math.max( maxAttribute, attribute.getHandle() );
+		}
+		
+		int maxInteraction = -1;
+		int maxParameter = -1;
+		for( ICMetadata ic : interactionClasses )
+		{
+			maxInteraction = Math.max( maxInteraction, ic.getHandle() );
+			for( PCMetadata parameter : ic.getDeclaredParameterValues() )
+				maxParameter = Math.max( maxParameter, parameter.getHandle() );
+		}
+
+		this.oclasses   = new OCMetadata[maxClass+1];
+		this.iclasses   = new ICMetadata[maxInteraction+1];
+		this.attributes = new ACMetadata[maxAttribute+1];
+		this.parameters = new PCMetadata[maxParameter+1];
+
+		// populate the tables //
+		for( OCMetadata oc : objectClasses )
+		{
+			if( oc.getHandle() >= 0 )
+				this.oclasses[oc.getHandle()] = oc;
+
+			this.ocQualified.put( oc.getVersionSafeQualifiedName().toLowerCase(), oc );
+
+			for( ACMetadata attribute : oc.getDeclaredAttributeValues() )
+			{
+				if( attribute.getHandle() >= 0 )
+					this.attributes[attribute.getHandle()] = attribute;
+			}
+		}
+
+		for( ICMetadata ic : interactionClasses )
+		{
+			if( ic.getHandle() >= 0 )
+				this.iclasses[ic.getHandle()] = ic;
+
+			this.icQualified.put( ic.getVersionSafeQualifiedName().toLowerCase(), ic );
+
+			for( PCMetadata parameter : ic.getDeclaredParameterValues() )
+			{
+				if( parameter.getHandle() >= 0 )
+					this.parameters[parameter.getHandle()] = parameter;
+			}
+		}
+
+		// local names are walked in handle order so ambiguous lookups are stable
+		for( OCMetadata oc : this.oclasses )
+		{
+			if( oc != null )
+				putFirst( this.ocLocal, oc.getLocalName().toLowerCase(), oc );
+		}
+
+		for( ICMetadata ic : this.iclasses )
+		{
+			if( ic != null )
+				putFirst( this.icLocal, ic.getLocalName().toLowerCase(), ic );
+		}
+
+		for( Space space : spaces )
+			putFirst( this.spaces, space.getName().toLowerCase(), space );
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	protected OCMetadata getObjectClass( int handle )
+	{
+		return (handle >= 0 && handle < oclasses.length) ? oclasses[handle] : null;
+	}
+
+	/** @param name Lower-cased, version-safe qualified name */
+	protected OCMetadata getObjectClassByQualifiedName( String name )
+	{
+		return ocQualified.get( name );
+	}
+
+	/** @param name Lower-cased local name */
+	protected OCMetadata getObjectClassByLocalName( String name )
+	{
+		return ocLocal.get( name );
+	}
+
+	protected ICMetadata getInteractionClass( int handle )
+	{
+		return (handle >= 0 && handle < iclasses.length) ? iclasses[handle] : null;
+	}
+
+	/** @param name Lower-cased, version-safe qualified name */
+	protected ICMetadata getInteractionClassByQualifiedName( String name )
+	{
+		return icQualified.get( name );
+	}
+
+	/** @param name Lower-cased local name */
+	protected ICMetadata getInteractionClassByLocalName( String name )
+	{
+		return icLocal.get( name );
+	}
+
+	/**
+	 * @return The attribute <i>declared</i> with the given handle in any object class of the
+	 *         model, or null if there isn't one
+	 */
+	protected ACMetadata getAttribute( int handle )
+	{
+		return (handle >= 0 && handle < attributes.length) ? attributes[handle] : null;
+	}
+
+	/**
+	 * @return The parameter <i>declared</i> with the given handle in any interaction class of the
+	 *         model, or null if there isn't one
+	 */
+	protected PCMetadata getParameter( int handle )
+	{
+		return (handle >= 0 && handle < parameters.length) ? parameters[handle] : null;
+	}
+
+	/** @param name Lower-cased space name */
+	protected Space getSpace( String name )
+	{
+		return spaces.get( name );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/**
+	 * Local names aren't unique across the hierarchy, so the first entry for a name keeps it.
+	 */
+	private static <T> void putFirst( Map<String,T> map, String key, T value )
+	{
+		if( map.containsKey(key) == false )
+			map.put( key, value );
+	}
+}
@@ -19,7 +19,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -282,7 +282,7 @@ public class ModelMerger
 		//////////////////////////////////
 		// check to see if there are any types in the extension that can be inserted into the base
 		// take copy of the set to avoid concurrent modificiation exceptions if we extend the model
-		Set<OCMetadata> extensionChildren = new HashSet<OCMetadata>( extension.getChildTypes() );
+		Set<OCMetadata> extensionChildren = new LinkedHashSet<OCMetadata>( extension.getChildTypes() );
 		for( OCMetadata extensionChild : extensionChildren )
 		{
 			// if the child does not exist in the base model, insert it, otherwise we need to
@@ -418,7 +418,7 @@ public class ModelMerger
 		//////////////////////////////////
 		// check to see if there are any types in the extension that can be inserted into the base
 		// take copy of the set to avoid concurrent modification exceptions if we extend the model
-		Set<ICMetadata> extensionChildren = new HashSet<ICMetadata>( extension.getChildTypes() );
+		Set<ICMetadata> extensionChildren = new LinkedHashSet<ICMetadata>( extension.getChildTypes() );
 		for( ICMetadata extensionChild : extensionChildren )
 		{
 			// if the child does not exist in the base model, insert it, otherwise we need to
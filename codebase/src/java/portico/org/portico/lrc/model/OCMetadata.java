@@ -19,6 +19,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.io.Serializable;
 
 import org.portico.lrc.PorticoConstants;
@@ -46,6 +48,11 @@ public class OCMetadata implements Serializable
 	private String                  qualifiedName; // set on first access
 	private String                  vsafeQualifiedName; // version-safe name, set on first access
 
+	// flattened view of declared + inherited attributes, built on first access and dropped
+	// whenever this class or one of its ancestors changes shape
+	private transient volatile Map<Integer,ACMetadata> inheritedByHandle;
+	private transient volatile Map<String,ACMetadata>  inheritedByName;
+
 
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -61,7 +68,7 @@ public class OCMetadata implements Serializable
 		this.parent      = null;
 		this.sharing	 = Sharing.NEITHER;
 		this.attributes  = new HashMap<Integer,ACMetadata>();
-		this.children    = new HashSet<OCMetadata>();
+		this.children    = new LinkedHashSet<OCMetadata>();
 	}
 	//----------------------------------------------------------
 	//                    INSTANCE METHODS
@@ -182,9 +189,67 @@ public class OCMetadata implements Serializable
 		}
 		
 		// remove our link to the model //
+		invalidate();
 		this.model = null;
 	}
 
+	/**
+	 * Drops the cached qualified names and flattened attribute tables of this class and all of
+	 * its descendants, and tells the model that its indexes are stale. Called whenever the shape
+	 * of the hierarchy changes.
+	 */
+	protected void invalidate()
+	{
+		this.qualifiedName = null;
+		this.vsafeQualifiedName = null;
+		this.inheritedByHandle = null;
+		this.inheritedByName = null;
+		for( OCMetadata child : this.children )
+			child.invalidate();
+
+		if( this.model != null )
+			this.model.invalidateIndex();
+	}
+
+	/**
+	 * Builds (if required) and returns the flattened map of all available attributes for this
+	 * class, keyed by handle. Declared attributes take precedence over inherited ones.
+	 */
+	private Map<Integer,ACMetadata> getInheritedByHandle()
+	{
+		Map<Integer,ACMetadata> flattened = this.inheritedByHandle;
+		if( flattened == null )
+		{
+			flattened = new LinkedHashMap<Integer,ACMetadata>();
+			if( this.parent != null )
+				flattened.putAll( this.parent.getInheritedByHandle() );
+			flattened.putAll( this.attributes );
+			this.inheritedByHandle = flattened;
+		}
+
+		return flattened;
+	}
+
+	/**
+	 * Builds (if required) and returns the flattened map of all available attributes for this
+	 * class, keyed by name. Declared attributes take precedence over inherited ones.
+	 */
+	private Map<String,ACMetadata> getInheritedByName()
+	{
+		Map<String,ACMetadata> flattened = this.inheritedByName;
+		if( flattened == null )
+		{
+			flattened = new HashMap<String,ACMetadata>();
+			if( this.parent != null )
+				flattened.putAll( this.parent.getInheritedByName() );
+			for( ACMetadata attribute : this.attributes.values() )
+				flattened.put( attribute.getName(), attribute );
+			this.inheritedByName = flattened;
+		}
+
+		return flattened;
+	}
+
 	////////////////////////////////////////////////////////////
 	///////////////////// Attribute Methods ////////////////////
 	////////////////////////////////////////////////////////////
@@ -210,6 +275,7 @@ public class OCMetadata implements Serializable
 		this.attributes.put( attribute.getHandle(), attribute );
 		// assign the container property of the attribute to us
 		attribute.setContainer( this );
+		invalidate();
 		return true;
 	}
 	
@@ -227,6 +293,7 @@ public class OCMetadata implements Serializable
 		else
 		{
 			attribute.setContainer( null );
+			invalidate();
 			return attribute;
 		}
 	}
@@ -236,7 +303,15 @@ public class OCMetadata implements Serializable
 	 */
 	public Set<ACMetadata> getDeclaredAttributes()
 	{
-		return new HashSet<ACMetadata>( this.attributes.values() );
+		return new LinkedHashSet<ACMetadata>( this.attributes.values() );
+	}
+
+	/**
+	 * Direct (uncopied) view of the declared attributes, for use by the model indexes
+	 */
+	protected Collection<ACMetadata> getDeclaredAttributeValues()
+	{
+		return this.attributes.values();
 	}
 	
 	/**
@@ -244,20 +319,7 @@ public class OCMetadata implements Serializable
 	 */
 	public Set<ACMetadata> getAllAttributes()
 	{
-		// if we don't have parent, all our attributes are just our local ones
-		if( this.parent == null )
-		{
-			return this.getDeclaredAttributes();
-		}
-		else
-		{
-			// we do have a parent, we have to add our local attributes to its set
-			Set<ACMetadata> inherited = this.parent.getAllAttributes();
-			// add our local attributes
-			inherited.addAll( this.attributes.values() );
-			// return the complete set
-			return inherited;
-		}
+		return new HashSet<ACMetadata>( getInheritedByHandle().values() );
 	}
 
 	public ACMetadata getPrivilegeToDelete()
@@ -302,20 +364,7 @@ public class OCMetadata implements Serializable
 	 */
 	public Set<Integer> getAllAttributeHandles()
 	{
-		// if we don't have parent, all our attributes are just our local ones
-		if( this.parent == null )
-		{
-			return new HashSet<Integer>( attributes.keySet() );
-		}
-		else
-		{
-			// we do have a parent, we have to add our local attributes to its set
-			Set<Integer> inherited = this.parent.getAllAttributeHandles();
-			// add our local attributes
-			inherited.addAll( attributes.keySet() );
-			// return the complete set
-			return inherited;
-		}
+		return new HashSet<Integer>( getInheritedByHandle().keySet() );
 	}
 	
 	/**
@@ -348,24 +397,17 @@ public class OCMetadata implements Serializable
 	 */
 	public ACMetadata getAttribute( int handle )
 	{
-		// check for the attribute locally first
-		if( this.attributes.containsKey(handle) )
-		{
-			// we have it
-			return this.attributes.get( handle );
-		}
-		else
+		// the model keeps a dense handle table of every declared attribute, if the one it
+		// has is declared in us or one of our ancestors, that's the one
+		if( this.model != null )
 		{
-			// we don't have it locally, check up the tree - if we can!
-			if( this.parent == null )
-			{
-				return null;
-			}
-			else
-			{
-				return this.parent.getAttribute( handle );
-			}
+			ACMetadata attribute = this.model.getIndex().getAttribute( handle );
+			if( attribute != null && this.isAssignableTo(attribute.getContainer()) )
+				return attribute;
 		}
+
+		// not attached to a model, or the handle isn't one of ours
+		return getInheritedByHandle().get( handle );
 	}
 	
 	/**
@@ -376,33 +418,21 @@ public class OCMetadata implements Serializable
 	 */
 	public int getAttributeHandle( String name )
 	{
-		// check locally first
-		for( ACMetadata temp : this.attributes.values() )
-		{
-			if( temp.getName().equals(name) )
-			{
-				return temp.getHandle();
-			}
-		}
+		// declared and inherited attributes are flattened into a single table
+		ACMetadata attribute = getInheritedByName().get( name );
+		if( attribute != null )
+			return attribute.getHandle();
 		
-		// didn't find it, check up the tree
-		if( this.parent == null )
+		// ensure that we're not talking about privToDelete, if we haven't found it yet it
+		// might because we've got the wrong HLA version
+		if( name != null &&
+			(name.equals("privilegeToDelete") || name.equals("HLAprivilegeToDeleteObject")) )
 		{
-			// there is nothing higher to check, ensure that we're not talking about privToDelete,
-			// if we haven't found it yet it might because we've got the wrong HLA version
-			if( name != null &&
-				(name.equals("privilegeToDelete") || name.equals("HLAprivilegeToDeleteObject")) )
-			{
-				return this.model.getPrivilegeToDelete();
-			}
-			else
-			{
-				return ObjectModel.INVALID_HANDLE;
-			}
+			return this.model.getPrivilegeToDelete();
 		}
 		else
 		{
-			return this.parent.getAttributeHandle( name );
+			return ObjectModel.INVALID_HANDLE;
 		}
 	}
 	
@@ -413,22 +443,8 @@ public class OCMetadata implements Serializable
 	 */
 	public String getAttributeName( int handle )
 	{
-		// check locally first
-		if( this.attributes.containsKey(handle) )
-		{
-			return this.attributes.get(handle).getName();
-		}
-		
-		// it's not local, check up the tree
-		if( this.parent == null )
-		{
-			// we are at the top of the tree, return null
-			return null;
-		}
-		else
-		{
-			return this.parent.getAttributeName( handle );
-		}
+		ACMetadata attribute = getAttribute( handle );
+		return attribute == null ? null : attribute.getName();
 	}
 
 	/**
@@ -437,12 +453,7 @@ public class OCMetadata implements Serializable
 	 */
 	public boolean hasAttribute( int handle )
 	{
-		if( this.attributes.containsKey(handle) )
-			return true;
-		else if( parent != null )
-			return parent.hasAttribute( handle );
-		else
-			return false;
+		return getAttribute( handle ) != null;
 	}
 
 	/**
@@ -561,16 +572,15 @@ public class OCMetadata implements Serializable
 		if( this.parent != null )
 			this.parent.children.remove( this );
 		
-		// clear the qualified name caches //
-		this.qualifiedName = null;
-		this.vsafeQualifiedName = null;
-		
 		// register us with the new parent //
 		this.parent = oc;
 		if( oc != null )
 		{
 			oc.children.add( this );
 		}
+
+		// clear the qualified name and attribute caches (ours and our children's) //
+		invalidate();
 	}
 	
 	public Sharing getSharing()
@@ -590,6 +600,9 @@ public class OCMetadata implements Serializable
 	
 	public void setModel( ObjectModel model )
 	{
+		if( this.model != null && this.model != model )
+			this.model.invalidateIndex();
+
 		this.model = model;
 	}
 	
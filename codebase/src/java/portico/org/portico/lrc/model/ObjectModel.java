@@ -79,6 +79,9 @@ public class ObjectModel implements Serializable
 	private ICMetadata icroot;
 	
 	private int privilegeToDelete; // set when object root is set
+
+	// name and handle lookup tables, built on demand and dropped when the model changes
+	private transient volatile ModelIndex index;
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
 	//----------------------------------------------------------
@@ -196,14 +199,7 @@ public class ObjectModel implements Serializable
 	 */
 	public Space getSpace( String name )
 	{
-		for( Space temp : this.spaces.values() )
-		{
-			if( temp.getName().equalsIgnoreCase(name) )
-				return temp;
-		}
-		
-		// we didn't find it
-		return null;
+		return getIndex().getSpace( name.toLowerCase() );
 	}
 	
 	/**
@@ -230,6 +226,7 @@ public class ObjectModel implements Serializable
 		// add it
 		this.spaces.put( space.getHandle(), space );
 		space.setModel( this );
+		invalidateIndex();
 	}
 
 	
@@ -242,7 +239,7 @@ public class ObjectModel implements Serializable
 	 */
 	public OCMetadata getObjectClass( int handle )
 	{
-		return this.oclasses.get( handle );
+		return getIndex().getObjectClass( handle );
 	}
 	
 	/**
@@ -269,24 +266,17 @@ public class ObjectModel implements Serializable
 			name = name.substring(14);
 		
 		// check for the qualified version of the name first, but using version-safe qualified
-		for( OCMetadata oc : this.oclasses.values() )
-		{
-			if( oc.getVersionSafeQualifiedName().equalsIgnoreCase(name) )
-			{
-				return oc;
-			}
-		}
+		ModelIndex index = getIndex();
+		OCMetadata oc = index.getObjectClassByQualifiedName( name );
+		if( oc != null )
+			return oc;
 
 		// we didn't find it in the version safe stuff, check the name by itself
 		// FIXME: Check to see if this is actually defined in the spec, it might just be that
 		//        the ObjectRoot bit is optional, not the entire prefix
-		for( OCMetadata oc : this.oclasses.values() )
-		{
-			if( oc.getLocalName().equalsIgnoreCase(name) )
-			{
-				return oc;
-			}
-		}
+		oc = index.getObjectClassByLocalName( name );
+		if( oc != null )
+			return oc;
 		
 		// make sure that we haven't got the root name itself, if we get this far without finding
 		// anything, we may well have it
@@ -306,7 +296,7 @@ public class ObjectModel implements Serializable
 	public ACMetadata getAttributeClass( int classHandle, String attributeName )
 	{
 		// find the class //
-		OCMetadata ocMetadata = this.oclasses.get( classHandle );
+		OCMetadata ocMetadata = this.getObjectClass( classHandle );
 		// do we have a class?
 		if( ocMetadata == null )
 		{
@@ -435,6 +425,7 @@ public class ObjectModel implements Serializable
 		// add it
 		this.oclasses.put( oc.getHandle(), oc );
 		oc.setModel( this );
+		invalidateIndex();
 	}
 	
 	/**
@@ -449,7 +440,8 @@ public class ObjectModel implements Serializable
 		{
 			removed.setModel( null );
 		}
-		
+
+		invalidateIndex();		
 		return removed;
 	}
 	
@@ -477,30 +469,20 @@ public class ObjectModel implements Serializable
 	 */
 	public String getObjectClassName( int handle )
 	{
-		if( this.oclasses.containsKey(handle) )
-		{
-			return this.oclasses.get(handle).getQualifiedName();
-		}
-		else
-		{
-			return null;
-		}
+		OCMetadata oc = getObjectClass( handle );
+		return oc == null ? null : oc.getQualifiedName();
 	}
 	
 	/**
-	 * This method will scan EVERY OBJECT CLASS in the FOM until it finds the attribute with the
-	 * given handle. It will then return that attributes name. Note that depending on the size of
-	 * the FOM, this could be *VERY* slow. If no attribute for the handle can be found, the string
-	 * "&lt;unknown&gt;" will be returned.
+	 * Find the attribute with the given handle, regardless of which object class declares it, and
+	 * return its name. If no attribute for the handle can be found, the string
+	 * "&lt;handle&gt; &lt;unknown&gt;" will be returned.
 	 */
 	public String findAttributeName( int attributeHandle )
 	{
-		for( OCMetadata objectClass : this.oclasses.values() )
-		{
-			ACMetadata attributeClass = objectClass.getDeclaredAttribute( attributeHandle );
-			if( attributeClass != null )
-				return attributeClass.getName();
-		}
+		ACMetadata attributeClass = getIndex().getAttribute( attributeHandle );
+		if( attributeClass != null )
+			return attributeClass.getName();
 		
 		return attributeHandle+" <unknown>";
 	}
@@ -544,7 +526,7 @@ public class ObjectModel implements Serializable
 	 */
 	public ICMetadata getInteractionClass( int handle )
 	{
-		return this.iclasses.get( handle );
+		return getIndex().getInteractionClass( handle );
 	}
 	
 	/**
@@ -570,24 +552,17 @@ public class ObjectModel implements Serializable
 			name = name.substring(19);
 		
 		// check for the qualified version of the name first, but using version-safe qualified
-		for( ICMetadata ic : this.iclasses.values() )
-		{
-			if( ic.getVersionSafeQualifiedName().equalsIgnoreCase(name) )
-			{
-				return ic;
-			}
-		}
+		ModelIndex index = getIndex();
+		ICMetadata ic = index.getInteractionClassByQualifiedName( name );
+		if( ic != null )
+			return ic;
 
 		// we didn't find it in the version safe stuff, check the name by itself
 		// FIXME: Check to see if this is actually defined in the spec, it might just be that
 		//        the ObjectRoot bit is optional, not the entire prefix
-		for( ICMetadata ic : this.iclasses.values() )
-		{
-			if( ic.getLocalName().equalsIgnoreCase(name) )
-			{
-				return ic;
-			}
-		}
+		ic = index.getInteractionClassByLocalName( name );
+		if( ic != null )
+			return ic;
 		
 		// make sure that we haven't got the root name itself, if we get this far without finding
 		// anything, we may well have it
@@ -664,6 +639,7 @@ public class ObjectModel implements Serializable
 		// add it
 		this.iclasses.put( ic.getHandle(), ic );
 		ic.setModel( this );
+		invalidateIndex();
 	}
 	
 	/**
@@ -672,7 +648,9 @@ public class ObjectModel implements Serializable
 	 */
 	public ICMetadata removeInteractionClass( int handle )
 	{
-		return this.iclasses.remove( handle );
+		ICMetadata removed = this.iclasses.remove( handle );
+		invalidateIndex();
+		return removed;
 	}
 	
 	/**
@@ -699,30 +677,20 @@ public class ObjectModel implements Serializable
 	 */
 	public String getInteractionClassName( int handle )
 	{
-		if( this.iclasses.containsKey(handle) )
-		{
-			return this.iclasses.get(handle).getQualifiedName();
-		}
-		else
-		{
-			return null;
-		}
+		ICMetadata ic = getInteractionClass( handle );
+		return ic == null ? null : ic.getQualifiedName();
 	}
 
 	/**
-	 * This method will scan EVERY INTERACTION CLASS in the FOM until it finds the parameter with
-	 * the given handle. It will then return that parameter's name. Note that depending on the size
-	 * of the FOM, this could be *VERY* slow. If no parameter for the handle is found, the string
+	 * Find the parameter with the given handle, regardless of which interaction class declares
+	 * it, and return its name. If no parameter for the handle is found, the string
 	 * "&lt;unknown&gt;" will be returned.
 	 */
 	public String findParameterName( int parameterHandle )
 	{
-		for( ICMetadata interactionClass : this.iclasses.values() )
-		{
-			PCMetadata parameterClass = interactionClass.getDeclaredParameter( parameterHandle );
-			if( parameterClass != null )
-				return parameterClass.getName();
-		}
+		PCMetadata parameterClass = getIndex().getParameter( parameterHandle );
+		if( parameterClass != null )
+			return parameterClass.getName();
 		
 		return "<unknown>";
 	}
@@ -736,6 +704,8 @@ public class ObjectModel implements Serializable
 	public synchronized void lock()
 	{
 		this.locked = true;
+		// the model won't change from here, build the lookup tables up front
+		getIndex();
 	}
 	
 	/**
@@ -815,6 +785,34 @@ public class ObjectModel implements Serializable
 		return new Dimension( name, generateHandle() );
 	}
 
+	/////////////////////////////////////////////////////////////
+	////////////////////// Index Methods ////////////////////////
+	/////////////////////////////////////////////////////////////
+	/**
+	 * Returns the lookup tables for the current structure of the model, building them first if
+	 * the model has changed since they were last used.
+	 */
+	protected ModelIndex getIndex()
+	{
+		ModelIndex current = this.index;
+		if( current == null )
+		{
+			current = new ModelIndex( oclasses.values(), iclasses.values(), spaces.values() );
+			this.index = current;
+		}
+
+		return current;
+	}
+
+	/**
+	 * Drop the lookup tables so that they are rebuilt on next use. Called whenever classes,
+	 * attributes, parameters or spaces are added, removed or moved around in the hierarchy.
+	 */
+	protected void invalidateIndex()
+	{
+		this.index = null;
+	}
+
 	protected synchronized int generateHandle()
 	{
 		return ++handle;
@@ -923,6 +921,8 @@ public class ObjectModel implements Serializable
 			}
 		}
 
+		model.invalidateIndex();
+
 		//////////////////////////////////
 		// add the predefined MOM stuff //
 		//////////////////////////////////
@@ -145,6 +145,12 @@ public class RegionInstance implements Serializable
 		}
 	}
 
+	@Override
+	public int hashCode()
+	{
+		return this.regionToken;
+	}
+
 	/**
 	 * Checks the provided index to make sure it is valid for this Region (greater than 0 and
 	 * less than the number of contained extents-1). If the index is not OK, an exception will
@@ -23,9 +23,8 @@ import org.portico.impl.HLAVersion;
 import org.portico.lrc.LRCMessageHandler;
 import org.portico.lrc.compat.JCouldNotOpenFED;
 import org.portico.lrc.compat.JRTIinternalError;
-import org.portico.lrc.model.ModelMerger;
 import org.portico.lrc.model.ObjectModel;
-import org.portico.utils.fom.FomParser;
+import org.portico.utils.fom.FomCache;
 import org.portico.utils.messaging.MessageContext;
 import org.portico.utils.messaging.MessageHandler;
 import org.portico2.common.services.federation.msg.CreateFederation;
@@ -62,16 +61,8 @@ public class CreateFederationHandler extends LRCMessageHandler
 	{
 		CreateFederation request = context.getRequest( CreateFederation.class, this );
 		
-		// try and parse each of the fed files that we have
-		List<ObjectModel> foms = new ArrayList<ObjectModel>();
-		List<FomModule> modules = new ArrayList<FomModule>();
-		for( URL module : request.getFomModuleLocations() )
-		{
-			foms.add( FomParser.parse(module) );
-			modules.add( new FomModule(module) );
-		}
-		
-		if( foms.isEmpty() )
+		List<URL> locations = request.getFomModuleLocations();
+		if( locations.isEmpty() )
 		{
 			HLAVersion version = this.lrc.getSpecHelper().getHlaVersion();
 			if( !version.equals( HLAVersion.IEEE1516e ) )
@@ -83,16 +74,14 @@ public class CreateFederationHandler extends LRCMessageHandler
 		// check to make sure we have the standard MIM as well - if not, load it
 		// validateStandardMimPresent( foms );
 
-		// merge the modules together
-		ObjectModel combinedFOM = ModelMerger.merge( foms );
+		// parse and merge the modules, insert the MOM and link up all the datatypes, or pull
+		// the finished model out of the FOM cache if we've seen these modules before
+		ObjectModel combinedFOM = FomCache.loadMergedModel( locations );
 		
-		// Now we have a single .. super model (which may include the MIM) we can post-process.
-		// Ditch the MIM if it is present and then re-insert with specific handles so that we can
-		// look up MOM handles without using names (thus support cross spec-version naming schemes).
-		ObjectModel.mommify( combinedFOM );
-
-		// Now that all datatypes have been finalized, we can link the placeholder symbols
-		ObjectModel.resolveSymbols( combinedFOM );
+		// grab the raw content of each of the fed files as well
+		List<FomModule> modules = new ArrayList<FomModule>();
+		for( URL module : locations )
+			modules.add( new FomModule(module) );
 		
 		// we have our grand unified FOM!
 		request.setModel( combinedFOM, modules );
@@ -23,7 +23,7 @@ import org.portico.lrc.PorticoConstants;
 import org.portico.lrc.compat.JFederateAlreadyExecutionMember;
 import org.portico.lrc.compat.JFederationExecutionDoesNotExist;
 import org.portico.lrc.compat.JRTIinternalError;
-import org.portico.utils.fom.FomParser;
+import org.portico.utils.fom.FomCache;
 import org.portico.utils.messaging.MessageContext;
 import org.portico.utils.messaging.MessageHandler;
 import org.portico2.common.services.federation.msg.JoinFederation;
@@ -94,7 +94,7 @@ public class JoinFederationHandler extends LRCMessageHandler
 		if( request.getFomModuleLocations().size() > 0 )
 		{
 			for( URL fedLocation : request.getFomModuleLocations() )
-				request.addJoinModule( fedLocation, FomParser.parse(fedLocation) );
+				request.addJoinModule( fedLocation, FomCache.loadModule(fedLocation) );
 			
 			// let people know what happened
 			logger.debug( "Parsed ["+request.getParsedJoinModules().size()+"] additional FOM modules" );
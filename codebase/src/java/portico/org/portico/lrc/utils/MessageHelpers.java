@@ -20,12 +20,15 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 
 import org.portico.lrc.LRC;
 import org.portico.lrc.compat.JRTIinternalError;
 import org.portico.utils.messaging.PorticoMessage;
 import org.portico2.common.messaging.MessageType;
 import org.portico2.common.messaging.ResponseMessage;
+import org.portico2.common.messaging.codec.IMessageCodec;
+import org.portico2.common.messaging.codec.MessageCodecs;
 import org.portico2.common.network.CallType;
 import org.portico2.common.network.Header;
 import org.portico2.common.services.object.msg.SendInteraction;
@@ -64,6 +67,12 @@ public class MessageHelpers
 	 * (see {@link #deflateHeader(byte[], int, PorticoMessage, CallType, int, boolean, int)}.
 	 * <p/>
 	 * 
+	 * <b>Note:</b> If there is an {@link IMessageCodec} registered for the type of message in
+	 * {@link MessageCodecs}, it is used to write the payload directly after the header and the
+	 * "manual marshal" flag is set in the header. All other messages fall back to standard
+	 * Java serialization.
+	 * <p/>
+	 * 
 	 * <b>Note:</b> If the message supports manual marshaling (where the reflection-based
 	 * serialization is ignored, instead providing total control to the message class), then
 	 * that process will be used in preference (resulting in
@@ -79,6 +88,10 @@ public class MessageHelpers
 	                                     CallType calltype,
 	                                     int requestId )
 	{
+		// If we have a codec for this message, use it in preference to Java serialization
+		if( MessageCodecs.hasCodec(message.getType()) )
+			return deflateWithCodec( message, calltype, requestId );
+
 		// Step 1. Write empty header (update later) and then full body
 		//         We write the body first because we need to know its length to include
 		//         in the header. For efficiency, we write an empty block of bytes into
@@ -86,8 +99,10 @@ public class MessageHelpers
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		try
 		{
-			// write the space for the header
+			// write the space for the header (and extension, if the request id needs it)
 			baos.write( Header.EMPTY_HEADER );
+			if( Header.getHeaderLength(calltype,requestId) > Header.HEADER_LENGTH )
+				baos.write( Header.EMPTY_HEADER, 0, Header.EXTENSION_LENGTH );
 			
 			// marshal the message
 			ObjectOutput out = new ObjectOutputStream( baos );
@@ -123,6 +138,30 @@ public class MessageHelpers
 		// create the output stream with the given size (or resizable if -1 is provided)
 		int payloadLength = buffer.length - Header.HEADER_LENGTH;
 		Header.writeHeader( buffer, 0, message, calltype, requestId, payloadLength );
+		new Header( buffer, 0 ).writeIsManualMarshal( false ); // Java serialized, not a codec
+		return buffer;
+	}
+
+	/**
+	 * Deflate the given message using the {@link IMessageCodec} registered for its type. The
+	 * codec tells us exactly how big the encoded payload will be, so we allocate the final
+	 * buffer once and have the codec write straight into it, directly after the header.
+	 */
+	private static final byte[] deflateWithCodec( PorticoMessage message,
+	                                              CallType calltype,
+	                                              int requestId )
+	{
+		int headerLength = Header.getHeaderLength( calltype, requestId );
+		int encodedLength = MessageCodecs.getEncodedLength( message );
+		byte[] buffer = new byte[headerLength+encodedLength];
+
+		ByteBuffer wrapper = ByteBuffer.wrap( buffer, headerLength, encodedLength );
+		MessageCodecs.encode( message, wrapper );
+
+		// payload length is everything after the fixed header, including any extension
+		int payloadLength = buffer.length - Header.HEADER_LENGTH;
+		Header.writeHeader( buffer, 0, message, calltype, requestId, payloadLength );
+		new Header( buffer, 0 ).writeIsManualMarshal( true ); // signal codec use to receiver
 		return buffer;
 	}
 
@@ -173,8 +212,10 @@ public class MessageHelpers
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		try
 		{
-			// write the space for the header
+			// write the space for the header (and extension, if the request id needs it)
 			baos.write( Header.EMPTY_HEADER );
+			if( Header.getHeaderLength(CallType.ControlResponseOK,requestId) > Header.HEADER_LENGTH )
+				baos.write( Header.EMPTY_HEADER, 0, Header.EXTENSION_LENGTH );
 			
 			// marshal the message
 			ObjectOutput out = new ObjectOutputStream( baos );
@@ -233,12 +274,42 @@ public class MessageHelpers
 	 * private method {@link #manuallyUnmarshal(ObjectInputStream, LRC)}).
 	 */
 	public static final <T> T inflate2( byte[] data, Class<T> expectedType, LRC lrc )
+	{
+		return inflate2( data, 0, data.length, expectedType, lrc );
+	}
+
+	/**
+	 * Same as {@link #inflate2(byte[], Class, LRC)}, except that the message is read from a
+	 * slice of the given array rather than the whole thing. This lets us inflate a message
+	 * straight out of a received bundle without having to copy it into its own array first.
+	 * 
+	 * @param data   The array holding the message (header and payload)
+	 * @param offset The offset within the array that the message header starts at
+	 * @param length The length of the message, including the header
+	 */
+	public static final <T> T inflate2( byte[] data,
+	                                    int offset,
+	                                    int length,
+	                                    Class<T> expectedType,
+	                                    LRC lrc )
 	{
 		try
 		{
+			// if the payload was written by a codec, hand it back to the same codec
+			Header header = new Header( data, offset );
+			int headerLength = header.getHeaderLength();
+			if( header.isManualMarshal() )
+			{
+				ByteBuffer wrapper = ByteBuffer.wrap( data,
+				                                      offset + headerLength,
+				                                      length - headerLength );
+				return expectedType.cast( MessageCodecs.decode(header.getMessageType(),wrapper) );
+			}
+
 			// create the stream we'll read from, skipping the header
-			int length = data.length - Header.HEADER_LENGTH;
-			ByteArrayInputStream bais = new ByteArrayInputStream( data, Header.HEADER_LENGTH, length );
+			ByteArrayInputStream bais = new ByteArrayInputStream( data,
+			                                                      offset + headerLength,
+			                                                      length - headerLength );
 			ObjectInputStream ois = new ObjectInputStream( bais );
 			
 			// find out whether of not manual marshaling was used
@@ -258,7 +329,7 @@ public class MessageHelpers
 		}
 		catch( Exception e )
 		{
-			Header header = new Header( data, 0 );
+			Header header = new Header( data, offset );
 			throw new JRTIinternalError( "Couldn't convert byte[] ("+header.getMessageType()+") into "+
 			                             expectedType.getSimpleName(), e );
 		}		
@@ -185,10 +185,10 @@ public class BitHelpers
 	{
 		checkUnderflow( 4, buffer, offset );
 
-		int temp = ((buffer[0] << 24) |
-		           ((buffer[1] & 255) << 16) |
-		           ((buffer[2] & 255) << 8) |
-		           ((buffer[3] & 255) << 0));
+		int temp = ((buffer[offset+0] << 24) |
+		           ((buffer[offset+1] & 255) << 16) |
+		           ((buffer[offset+2] & 255) << 8) |
+		           ((buffer[offset+3] & 255) << 0));
 
 		return Float.intBitsToFloat( temp );
 	}
@@ -203,10 +203,10 @@ public class BitHelpers
 	{
 		checkUnderflow( 4, buffer, offset );
 
-		int temp = ((buffer[3] << 24) |
-		           ((buffer[2] & 255) << 16) |
-		           ((buffer[1] & 255) << 8) |
-		           ((buffer[0] & 255) << 0));
+		int temp = ((buffer[offset+3] << 24) |
+		           ((buffer[offset+2] & 255) << 16) |
+		           ((buffer[offset+1] & 255) << 8) |
+		           ((buffer[offset+0] & 255) << 0));
 
 		return Float.intBitsToFloat( temp );
 	}
@@ -263,14 +263,14 @@ public class BitHelpers
 	{
 		checkUnderflow( 8, buffer, offset );
 
-		long temp = (((long)buffer[0] << 56) |
-		             ((long)(buffer[1] & 255) << 48) |
-		             ((long)(buffer[2] & 255) << 40) |
-		             ((long)(buffer[3] & 255) << 32) |
-		             ((long)(buffer[4] & 255) << 24) |
-		             ((buffer[5] & 255) << 16) |
-		             ((buffer[6] & 255) <<  8) |
-		             ((buffer[7] & 255) <<  0));
+		long temp = (((long)buffer[offset+0] << 56) |
+		             ((long)(buffer[offset+1] & 255) << 48) |
+		             ((long)(buffer[offset+2] & 255) << 40) |
+		             ((long)(buffer[offset+3] & 255) << 32) |
+		             ((long)(buffer[offset+4] & 255) << 24) |
+		             ((buffer[offset+5] & 255) << 16) |
+		             ((buffer[offset+6] & 255) <<  8) |
+		             ((buffer[offset+7] & 255) <<  0));
 
 		return Double.longBitsToDouble( temp );
 	}
@@ -285,14 +285,14 @@ public class BitHelpers
 	{
 		checkUnderflow( 8, buffer, offset );
 
-		long temp = (((long)buffer[7] << 56) |
-		             ((long)(buffer[6] & 255) << 48) |
-		             ((long)(buffer[5] & 255) << 40) |
-		             ((long)(buffer[4] & 255) << 32) |
-		             ((long)(buffer[3] & 255) << 24) |
-		             ((buffer[2] & 255) << 16) |
-		             ((buffer[1] & 255) <<  8) |
-		             ((buffer[0] & 255) <<  0));
+		long temp = (((long)buffer[offset+7] << 56) |
+		             ((long)(buffer[offset+6] & 255) << 48) |
+		             ((long)(buffer[offset+5] & 255) << 40) |
+		             ((long)(buffer[offset+4] & 255) << 32) |
+		             ((long)(buffer[offset+3] & 255) << 24) |
+		             ((buffer[offset+2] & 255) << 16) |
+		             ((buffer[offset+1] & 255) <<  8) |
+		             ((buffer[offset+0] & 255) <<  0));
 
 		return Double.longBitsToDouble( temp );
 	}
@@ -476,14 +476,14 @@ public class BitHelpers
 	{
 		checkUnderflow( 8, buffer, offset );
 
-		return (((long)buffer[0] << 56) |
-		        ((long)(buffer[1] & 255) << 48) |
-		        ((long)(buffer[2] & 255) << 40) |
-		        ((long)(buffer[3] & 255) << 32) |
-		        ((long)(buffer[4] & 255) << 24) |
-		        ((buffer[5] & 255) << 16) |
-		        ((buffer[6] & 255) <<  8) |
-		        ((buffer[7] & 255) <<  0));
+		return (((long)buffer[offset+0] << 56) |
+		        ((long)(buffer[offset+1] & 255) << 48) |
+		        ((long)(buffer[offset+2] & 255) << 40) |
+		        ((long)(buffer[offset+3] & 255) << 32) |
+		        ((long)(buffer[offset+4] & 255) << 24) |
+		        ((buffer[offset+5] & 255) << 16) |
+		        ((buffer[offset+6] & 255) <<  8) |
+		        ((buffer[offset+7] & 255) <<  0));
 	}
 
 	/**
@@ -496,14 +496,14 @@ public class BitHelpers
 	{
 		checkUnderflow( 8, buffer, offset );
 
-		return (((long)buffer[7] << 56) |
-		        ((long)(buffer[6] & 255) << 48) |
-		        ((long)(buffer[5] & 255) << 40) |
-		        ((long)(buffer[4] & 255) << 32) |
-		        ((long)(buffer[3] & 255) << 24) |
-		        ((buffer[2] & 255) << 16) |
-		        ((buffer[1] & 255) <<  8) |
-		        ((buffer[0] & 255) <<  0));
+		return (((long)buffer[offset+7] << 56) |
+		        ((long)(buffer[offset+6] & 255) << 48) |
+		        ((long)(buffer[offset+5] & 255) << 40) |
+		        ((long)(buffer[offset+4] & 255) << 32) |
+		        ((long)(buffer[offset+3] & 255) << 24) |
+		        ((buffer[offset+2] & 255) << 16) |
+		        ((buffer[offset+1] & 255) <<  8) |
+		        ((buffer[offset+0] & 255) <<  0));
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////////
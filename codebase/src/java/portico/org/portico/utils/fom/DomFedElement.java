@@ -0,0 +1,86 @@
+/*
+ *   Copyright 2019 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.utils.fom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Adapts a DOM {@link Element} to the {@link FedElement} interface.
+ */
+class DomFedElement implements FedElement
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private Element element;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected DomFedElement( Element element )
+	{
+		this.element = element;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	public String getTagName()
+	{
+		return element.getTagName();
+	}
+
+	public boolean hasAttribute( String name )
+	{
+		return element.hasAttribute( name );
+	}
+
+	public String getAttribute( String name )
+	{
+		return element.getAttribute( name );
+	}
+
+	public String getTextContent()
+	{
+		return element.getTextContent();
+	}
+
+	public List<FedElement> getChildElements()
+	{
+		NodeList list = element.getChildNodes();
+		List<FedElement> elements = new ArrayList<FedElement>();
+		for( int i = 0; i < list.getLength(); i++ )
+		{
+			Node temp = list.item( i );
+			if( temp.getNodeType() == Node.ELEMENT_NODE )
+				elements.add( new DomFedElement((Element)temp) );
+		}
+
+		return elements;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -0,0 +1,55 @@
+/*
+ *   Copyright 2019 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.utils.fom;
+
+import java.util.List;
+
+/**
+ * A minimal, read-only view of an element in an XML FOM document. The FOM parsers only ever
+ * need tag names, XML attributes, text and child elements, so this is all we expose. That lets
+ * the same extraction code run over a full DOM tree (see {@link FedHelpers#wrap(org.w3c.dom.Element)})
+ * or over the pruned tree produced by {@link FedStreamReader}.
+ */
+public interface FedElement
+{
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * @return The name of the element
+	 */
+	public String getTagName();
+
+	/**
+	 * @return True if the element has an XML attribute with the given name
+	 */
+	public boolean hasAttribute( String name );
+
+	/**
+	 * @return The value of the XML attribute with the given name, or an empty string if there is
+	 *         no such attribute (same as the DOM)
+	 */
+	public String getAttribute( String name );
+
+	/**
+	 * @return The text contained in the element (untrimmed)
+	 */
+	public String getTextContent();
+
+	/**
+	 * @return All the child elements of this element, in document order. Never null.
+	 */
+	public List<FedElement> getChildElements();
+}
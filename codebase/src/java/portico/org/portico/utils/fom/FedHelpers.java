@@ -134,6 +134,46 @@ public class FedHelpers
 		return node.getNodeType() == Node.ELEMENT_NODE;
 	}
 
+	/**
+	 * Wrap the given DOM element so that it can be handed to any of the {@link FedElement}
+	 * based helpers.
+	 */
+	public static FedElement wrap( Element element )
+	{
+		return new DomFedElement( element );
+	}
+
+	/**
+	 * Return the first child element under the given element that has the given tag name.
+	 * If there is none that matches, return null.
+	 */
+	public static FedElement getFirstChildElement( FedElement element, String tag )
+	{
+		for( FedElement child : element.getChildElements() )
+		{
+			if( child.getTagName().equals(tag) )
+				return child;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Return a list of all the children of the given element with the given tag name.
+	 * If there are no matching elements, an empty list is returned.
+	 */
+	public static List<FedElement> getAllChildElements( FedElement element, String tag )
+	{
+		ArrayList<FedElement> elements = new ArrayList<FedElement>();
+		for( FedElement child : element.getChildElements() )
+		{
+			if( child.getTagName().equals(tag) )
+				elements.add( child );
+		}
+
+		return elements;
+	}
+
 	/**
 	 * This method searches the given element for the first child element with the identified
 	 * tag-name. When it finds it, its text content is returned. If there is no child element
@@ -141,10 +181,28 @@ public class FedHelpers
 	 */
 	public static String getChildValue( Element element, String name ) 
 		throws JConfigurationException
+	{
+		return getChildValue( wrap(element), name, null );
+	}
+
+	/**
+	 * @see #getChildValue(Element, String)
+	 */
+	public static String getChildValue( FedElement element, String name ) 
+		throws JConfigurationException
 	{
 		return getChildValue( element, name, null );
 	}
 
+	/**
+	 * @see #getChildValue(FedElement, String, String)
+	 */
+	public static String getChildValue( Element element, String name, String typeName )
+		throws JConfigurationException
+	{
+		return getChildValue( wrap(element), name, typeName );
+	}
+
 	/**
 	 * To provide some better context to errors, this method takes an additional `typeName`
 	 * parameter that will be used in any exception reporting. This allows pretty generic,
@@ -159,7 +217,7 @@ public class FedHelpers
 	 * @return The value of the named sub-element inside the given element.
 	 * @throws JErrorReadingFed if the value cannot be found
 	 */
-	public static String getChildValue( Element element, String name, String typeName )
+	public static String getChildValue( FedElement element, String name, String typeName )
 		throws JConfigurationException
 	{
 		if( typeName == null )
@@ -175,7 +233,7 @@ public class FedHelpers
 		else
 		{
 			// if no attribute is present, look for a child element
-			Element child = getFirstChildElement( element, name );
+			FedElement child = getFirstChildElement( element, name );
 			if( child == null )
 			{
 				String message =
@@ -215,6 +273,14 @@ public class FedHelpers
 	 * @see {@link #getChildValue(Element, String, String)}
 	 */
 	public static String getChildValueForgiving( Element element, String name, String typeName )
+	{
+		return getChildValueForgiving( wrap(element), name, typeName );
+	}
+
+	/**
+	 * @see #getChildValueForgiving(Element, String, String)
+	 */
+	public static String getChildValueForgiving( FedElement element, String name, String typeName )
 	{
 		try
 		{
@@ -229,6 +295,12 @@ public class FedHelpers
 	
 	public static int getChildValueInt( Element element, String name, String typeName ) 
 		throws JConfigurationException
+	{
+		return getChildValueInt( wrap(element), name, typeName );
+	}
+
+	public static int getChildValueInt( FedElement element, String name, String typeName ) 
+		throws JConfigurationException
 	{
 		if( typeName == null )
 			typeName = "unknown";
@@ -254,10 +326,17 @@ public class FedHelpers
 	////////////////////////////////////////////////////////////////////////////////////////////
 	public static Set<IDatatype> extractDatatypes( Element datatypesElement, HLAVersion fomVersion ) 
 		throws JConfigurationException
+	{
+		return extractDatatypes( wrap(datatypesElement), fomVersion );
+	}
+
+	public static Set<IDatatype> extractDatatypes( FedElement datatypesElement,
+	                                               HLAVersion fomVersion ) 
+		throws JConfigurationException
 	{
 		Set<IDatatype> fedTypes = new HashSet<IDatatype>();
 		
-		for( Element temp : getChildElements(datatypesElement) )
+		for( FedElement temp : datatypesElement.getChildElements() )
 		{
 			String tagName = temp.getTagName();
 			if( tagName.equals("basicDataRepresentations") )
@@ -277,13 +356,13 @@ public class FedHelpers
 		return fedTypes;
 	}
 	
-	private static Set<BasicType> extractBasicTypes( Element basicParent ) 
+	private static Set<BasicType> extractBasicTypes( FedElement basicParent ) 
 		throws JConfigurationException
 	{
 		Set<BasicType> importedTypes = new HashSet<BasicType>();
 		
-		List<Element> basicElements = getAllChildElements( basicParent, "basicData" );
-		for( Element basicElement : basicElements )
+		List<FedElement> basicElements = getAllChildElements( basicParent, "basicData" );
+		for( FedElement basicElement : basicElements )
 		{
 			String name = getChildValue( basicElement, "name" );
 			int bitsize = getChildValueInt( basicElement, "size", name );
@@ -299,13 +378,13 @@ public class FedHelpers
 		return importedTypes;
 	}
 	
-	private static Set<SimpleType> extractSimpleTypes( Element simpleParent ) 
+	private static Set<SimpleType> extractSimpleTypes( FedElement simpleParent ) 
 		throws JConfigurationException
 	{
 		Set<SimpleType> importedTypes = new HashSet<SimpleType>();
 		
-		List<Element> simpleElements = getAllChildElements( simpleParent, "simpleData" );
-		for( Element simpleElement : simpleElements )
+		List<FedElement> simpleElements = getAllChildElements( simpleParent, "simpleData" );
+		for( FedElement simpleElement : simpleElements )
 		{
 			String name = getChildValue( simpleElement, "name" );
 
@@ -321,14 +400,14 @@ public class FedHelpers
 		return importedTypes;
 	}
 	
-	private static Set<EnumeratedType> extractEnumeratedTypes( Element enumeratedParent, 
+	private static Set<EnumeratedType> extractEnumeratedTypes( FedElement enumeratedParent, 
 	                                                           HLAVersion fomVersion ) 
 		throws JConfigurationException
 	{
 		Set<EnumeratedType> importedTypes = new HashSet<EnumeratedType>();
 		
-		List<Element> enumeratedElements = getAllChildElements( enumeratedParent, "enumeratedData" );
-		for( Element enumeratedElement : enumeratedElements )
+		List<FedElement> enumeratedElements = getAllChildElements( enumeratedParent, "enumeratedData" );
+		for( FedElement enumeratedElement : enumeratedElements )
 		{
 			String name = getChildValue( enumeratedElement, "name" );
 
@@ -339,13 +418,13 @@ public class FedHelpers
 			IDatatype placeholder = new DatatypePlaceholder( representationName );
 			List<Enumerator> enumerators = new ArrayList<Enumerator>();
 			
-			List<Element> enumeratorElements = getAllChildElements( enumeratedElement, 
+			List<FedElement> enumeratorElements = getAllChildElements( enumeratedElement, 
 			                                                        "enumerator" );
 			
 			if( enumeratorElements.isEmpty() )
 				throw new JConfigurationException( "Enumerator datatype has no values: "+name );
 			
-			for( Element enumeratorElement : enumeratorElements )
+			for( FedElement enumeratorElement : enumeratorElements )
 			{
 				String enumeratorName = getChildValue( enumeratorElement, "name" );
 				
@@ -389,7 +468,7 @@ public class FedHelpers
 				else
 				{
 					// 1516e == values each have a separate "value" element
-					List<Element> valueElements = getAllChildElements( enumeratorElement, "value" );
+					List<FedElement> valueElements = getAllChildElements( enumeratorElement, "value" );
 					if( valueElements.size() == 0 )
 					{
 						String message = String.format( "Enumerator %s.%s contains no values", 
@@ -403,7 +482,7 @@ public class FedHelpers
 					}
 					
 					// TODO: Support multiple value enumerators if the need arises
-					Element valueElement = valueElements.get( 0 );
+					FedElement valueElement = valueElements.get( 0 );
 					String valueToken = valueElement.getTextContent();
 					try
 					{
@@ -427,13 +506,13 @@ public class FedHelpers
 		return importedTypes;
 	}
 	
-	private static Set<ArrayType> extractArrayTypes( Element arrayParent ) 
+	private static Set<ArrayType> extractArrayTypes( FedElement arrayParent ) 
 		throws JConfigurationException
 	{
 		Set<ArrayType> importedTypes = new HashSet<ArrayType>();
 		
-		List<Element> arrayElements = getAllChildElements( arrayParent, "arrayData" );
-		for( Element arrayElement : arrayElements )
+		List<FedElement> arrayElements = getAllChildElements( arrayParent, "arrayData" );
+		for( FedElement arrayElement : arrayElements )
 		{
 			String name = getChildValue( arrayElement, "name" );
 			
@@ -452,20 +531,20 @@ public class FedHelpers
 		return importedTypes;
 	}
 	
-	private static Set<FixedRecordType> extractFixedRecordTypes( Element fixedRecordParent ) 
+	private static Set<FixedRecordType> extractFixedRecordTypes( FedElement fixedRecordParent ) 
 		throws JConfigurationException
 	{
 		Set<FixedRecordType> importedTypes = new HashSet<FixedRecordType>();
 		
-		List<Element> fixedRecordElements = getAllChildElements( fixedRecordParent, 
+		List<FedElement> fixedRecordElements = getAllChildElements( fixedRecordParent, 
 		                                                         "fixedRecordData" );
-		for( Element fixedRecordElement : fixedRecordElements )
+		for( FedElement fixedRecordElement : fixedRecordElements )
 		{
 			String name = getChildValue( fixedRecordElement, "name" );
 			
 			List<Field> fields = new ArrayList<Field>();
-			List<Element> fieldElements = getAllChildElements( fixedRecordElement, "field" );
-			for( Element fieldElement : fieldElements )
+			List<FedElement> fieldElements = getAllChildElements( fixedRecordElement, "field" );
+			for( FedElement fieldElement : fieldElements )
 			{
 				String fieldName = getChildValue( fieldElement, "name" );
 				
@@ -484,25 +563,25 @@ public class FedHelpers
 		return importedTypes;
 	}
 	
-	private static Set<VariantRecordType> extractVariantRecordTypes( Element variantRecordParent ) 
+	private static Set<VariantRecordType> extractVariantRecordTypes( FedElement variantRecordParent ) 
 		throws JConfigurationException
 	{
 		Set<VariantRecordType> importedTypes = new HashSet<VariantRecordType>();
 		
-		List<Element> variantRecordElements = getAllChildElements( variantRecordParent, 
+		List<FedElement> variantRecordElements = getAllChildElements( variantRecordParent, 
 		                                                           "variantRecordData" );
-		for( Element variantRecordElement : variantRecordElements )
+		for( FedElement variantRecordElement : variantRecordElements )
 		{
 			String name = getChildValue( variantRecordElement, 
 			                             "name" );
 			String discriminant = getChildValue( variantRecordElement, "discriminant", name );
 			String datatypeName = getChildValue( variantRecordElement, "dataType", name );
 			
-			List<Element> alternativeElements = getAllChildElements( variantRecordElement, 
+			List<FedElement> alternativeElements = getAllChildElements( variantRecordElement, 
 			                                                         "alternative" );
 			
 			Set<Alternative> alternatives = new HashSet<Alternative>();
-			for( Element alternativeElement : alternativeElements )
+			for( FedElement alternativeElement : alternativeElements )
 			{
 				String alternativeName = getChildValue( alternativeElement, "name" );
 				String alternativeDatatypeName = getChildValue( alternativeElement, "dataType", name );
@@ -0,0 +1,230 @@
+/*
+ *   Copyright 2019 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.utils.fom;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads an XML FOM document with a StAX pull parser and returns the parts the FOM parsers care
+ * about as a tree of {@link FedElement}s.
+ * <p/>
+ * Only elements whose (local) name is in {@link #RELEVANT_ELEMENTS} are kept; everything else,
+ * along with all of its content, is skipped as it streams past. In a typical modular FOM the
+ * bulk of the document is model identification, semantics and notes, so the tree that remains
+ * is a small fraction of what a DOM would build. If a parser needs to look at a new element,
+ * its name has to be added to the set.
+ * <p/>
+ * Text is only recorded for character data directly inside a kept element, and whitespace-only
+ * runs are dropped. That is all the parsers need, as they only read the text of leaf elements.
+ */
+public class FedStreamReader
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	/** Names of the elements the XML FOM parsers read. Everything else is skipped. */
+	public static final Set<String> RELEVANT_ELEMENTS = Collections.unmodifiableSet(
+		new HashSet<String>(Arrays.asList(
+			// top level sections
+			"objects", "interactions", "dataTypes",
+			// object and interaction classes
+			"objectClass", "attribute", "interactionClass", "parameter",
+			"name", "sharing", "order", "transportation", "dataType",
+			// datatypes
+			"basicDataRepresentations", "basicData", "size", "endian",
+			"simpleDataTypes", "simpleData", "representation",
+			"enumeratedDataTypes", "enumeratedData", "enumerator", "values", "value",
+			"arrayDataTypes", "arrayData", "cardinality",
+			"fixedRecordDataTypes", "fixedRecordData", "field",
+			"variantRecordDataTypes", "variantRecordData", "discriminant", "alternative" )) );
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	private FedStreamReader()
+	{
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/**
+	 * Read the XML document from the given stream and return its root element, pruned down to the
+	 * {@link #RELEVANT_ELEMENTS}. The stream is not closed.
+	 * 
+	 * @throws XMLStreamException If the document is not well formed or can't be read
+	 */
+	public static FedElement read( InputStream stream ) throws XMLStreamException
+	{
+		// factories aren't guaranteed to be thread safe, and this isn't done often enough
+		// for creating one each time to matter
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty( XMLInputFactory.IS_COALESCING, Boolean.TRUE );
+		factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE );
+
+		XMLStreamReader reader = factory.createXMLStreamReader( stream );
+		try
+		{
+			StreamedElement root = null;
+			Deque<StreamedElement> open = new ArrayDeque<StreamedElement>();
+			int skipDepth = 0; // > 0 while we're inside an element we don't care about
+			while( reader.hasNext() )
+			{
+				switch( reader.next() )
+				{
+					case XMLStreamConstants.START_ELEMENT:
+						String tag = reader.getLocalName();
+						if( skipDepth > 0 || (root != null && !RELEVANT_ELEMENTS.contains(tag)) )
+						{
+							++skipDepth;
+							break;
+						}
+
+						StreamedElement element = new StreamedElement( tag );
+						for( int i = 0; i < reader.getAttributeCount(); i++ )
+							element.putAttribute( reader.getAttributeLocalName(i),
+							                      reader.getAttributeValue(i) );
+
+						if( root == null )
+							root = element;
+						else
+							open.peek().addChild( element );
+
+						open.push( element );
+						break;
+						
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+						if( skipDepth == 0 && open.isEmpty() == false && reader.isWhiteSpace() == false )
+							open.peek().appendText( reader.getText() );
+						break;
+						
+					case XMLStreamConstants.END_ELEMENT:
+						if( skipDepth > 0 )
+							--skipDepth;
+						else
+							open.pop();
+						break;
+						
+					default:
+						break;
+				}
+			}
+			
+			if( root == null )
+				throw new XMLStreamException( "Document has no root element" );
+			
+			return root;
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////////
+	///////////////////////////////////  Private Classes  ////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////////
+	private static class StreamedElement implements FedElement
+	{
+		private String tagName;
+		private Map<String,String> attributes; // null until we have one
+		private String text;                   // null until we have some
+		private List<FedElement> children;     // null until we have one
+
+		private StreamedElement( String tagName )
+		{
+			this.tagName = tagName;
+		}
+
+		private void putAttribute( String name, String value )
+		{
+			if( attributes == null )
+				attributes = new HashMap<String,String>( 4 );
+
+			attributes.put( name, value );
+		}
+
+		private void appendText( String more )
+		{
+			text = text == null ? more : text+more;
+		}
+
+		private void addChild( FedElement child )
+		{
+			if( children == null )
+				children = new ArrayList<FedElement>( 4 );
+
+			children.add( child );
+		}
+
+		public String getTagName()
+		{
+			return tagName;
+		}
+
+		public boolean hasAttribute( String name )
+		{
+			return attributes != null && attributes.containsKey( name );
+		}
+
+		public String getAttribute( String name )
+		{
+			String value = attributes == null ? null : attributes.get( name );
+			return value == null ? "" : value;
+		}
+
+		public String getTextContent()
+		{
+			return text == null ? "" : text;
+		}
+
+		public List<FedElement> getChildElements()
+		{
+			if( children == null )
+				return Collections.emptyList();
+			else
+				return children;
+		}
+
+		public String toString()
+		{
+			return "<"+tagName+">";
+		}
+	}
+}
@@ -0,0 +1,534 @@
+/*
+ *   Copyright 2019 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.utils.fom;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.portico.lrc.PorticoConstants;
+import org.portico.lrc.compat.JCouldNotOpenFED;
+import org.portico.lrc.compat.JErrorReadingFED;
+import org.portico.lrc.compat.JInconsistentFDD;
+import org.portico.lrc.compat.JRTIinternalError;
+import org.portico.impl.HLAVersion;
+import org.portico.lrc.model.ACMetadata;
+import org.portico.lrc.model.Dimension;
+import org.portico.lrc.model.ICMetadata;
+import org.portico.lrc.model.ModelMerger;
+import org.portico.lrc.model.OCMetadata;
+import org.portico.lrc.model.ObjectModel;
+import org.portico.lrc.model.Order;
+import org.portico.lrc.model.PCMetadata;
+import org.portico.lrc.model.Sharing;
+import org.portico.lrc.model.Space;
+import org.portico.lrc.model.Transport;
+import org.portico.lrc.model.datatype.Alternative;
+import org.portico.lrc.model.datatype.ArrayType;
+import org.portico.lrc.model.datatype.BasicType;
+import org.portico.lrc.model.datatype.Endianness;
+import org.portico.lrc.model.datatype.EnumeratedType;
+import org.portico.lrc.model.datatype.Enumerator;
+import org.portico.lrc.model.datatype.Field;
+import org.portico.lrc.model.datatype.FixedRecordType;
+import org.portico.lrc.model.datatype.NaType;
+import org.portico.lrc.model.datatype.SimpleType;
+import org.portico.lrc.model.datatype.VariantRecordType;
+import org.portico.lrc.model.datatype.linker.DatatypePlaceholder;
+import org.portico.lrc.model.datatype.linker.EnumeratorPlaceholder;
+
+/**
+ * Turns a list of FOM modules into the single, merged and resolved {@link ObjectModel} that a
+ * federation is created with, and single modules into the parsed models that are sent along
+ * with a join request. Either can optionally be kept in an on-disk cache.
+ * <p/>
+ * Every federate that tries to create a federation parses, merges, mommifies and resolves the
+ * same modules, and for large modular FOMs that takes a while. When the cache is turned on
+ * (see {@link PorticoConstants#PROPERTY_FOM_CACHE}), the finished model is written to the cache
+ * directory, keyed by a SHA-256 hash of the contents of the modules (in order) along with the
+ * Portico version. The next time the same modules are used the model is read straight back.
+ * <p/>
+ * Entries are stored as a small header followed by the GZIP'd serialized model. Writes go to a
+ * temporary file that is then moved into place, so federates sharing a cache directory never see
+ * a half written entry. Any entry that can't be read (corrupt, from an incompatible build, ...)
+ * is deleted and rebuilt.
+ * <p/>
+ * As entries are deserialized, the cache has to trust whoever can write to the directory. On
+ * file systems with POSIX permissions the directory is created so only its owner can use it, and
+ * it is ignored (everything is parsed from scratch) if it belongs to someone else or if anyone
+ * else can write to it. On top of that, only the exact classes a model is made of are accepted
+ * when an entry is read back, and a model using anything else is never written.
+ */
+public class FomCache
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final Logger logger = LogManager.getFormatterLogger( "portico.lrc.fom" );
+
+	private static final int MAGIC = 0x50464f4d; // "PFOM"
+	private static final int FORMAT_VERSION = 2;
+	private static final String SUFFIX = ".fom";
+
+	private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString( "rwx------" );
+
+	/** The only classes that may appear in a cache entry. Strings are handled by the stream */
+	private static final Set<String> PERMITTED = permitted(
+		// JDK
+		Enum.class, Number.class, Integer.class, Long.class,
+		ArrayList.class, java.util.HashMap.class, HashSet.class, java.util.LinkedHashSet.class,
+		// model
+		HLAVersion.class, ObjectModel.class, OCMetadata.class, ACMetadata.class, ICMetadata.class,
+		PCMetadata.class, Space.class, Dimension.class, Order.class, Sharing.class, Transport.class,
+		// datatypes
+		Alternative.class, ArrayType.class, BasicType.class,
+		org.portico.lrc.model.datatype.Dimension.class, Endianness.class, EnumeratedType.class,
+		Enumerator.class, Field.class, FixedRecordType.class, NaType.class, SimpleType.class,
+		VariantRecordType.class, DatatypePlaceholder.class, EnumeratorPlaceholder.class );
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private File directory;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public FomCache( File directory )
+	{
+		this.directory = directory;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Return the merged and resolved model for the given modules. If the cache has an entry for
+	 * them it is used, otherwise the modules are parsed and merged and the result is stored.
+	 * 
+	 * @see FomCache#parseAndMerge(List)
+	 */
+	public ObjectModel getMergedModel( List<URL> modules ) throws JCouldNotOpenFED,
+	                                                              JErrorReadingFED,
+	                                                              JInconsistentFDD,
+	                                                              JRTIinternalError
+	{
+		// nothing to key on, nothing worth caching
+		if( modules.isEmpty() || isDirectoryTrusted() == false )
+			return parseAndMerge( modules );
+
+		String key = computeKey( "merged", modules );
+		File entry = new File( directory, key+SUFFIX );
+		ObjectModel model = readEntry( entry, key );
+		if( model != null )
+		{
+			logger.debug( "Loaded merged FOM from cache: key=%s, modules=%d", key, modules.size() );
+			model.setFileName( modules.get(0).toString() );
+			return model;
+		}
+
+		model = parseAndMerge( modules );
+		writeEntry( entry, key, model );
+		return model;
+	}
+
+	/**
+	 * Return the parsed (but not merged) model for a single module, as sent along with a join
+	 * request. If the cache has an entry for it it is used, otherwise the module is parsed and
+	 * the result is stored.
+	 * 
+	 * @see FomParser#parse(URL)
+	 */
+	public ObjectModel getModule( URL module ) throws JCouldNotOpenFED, JErrorReadingFED
+	{
+		if( isDirectoryTrusted() == false )
+			return FomParser.parse( module );
+
+		String key = computeKey( "module", Collections.singletonList(module) );
+		File entry = new File( directory, key+SUFFIX );
+		ObjectModel model = readEntry( entry, key );
+		if( model != null )
+		{
+			logger.debug( "Loaded FOM module from cache: key=%s, module=%s", key, module );
+			model.setFileName( module.toString() );
+			return model;
+		}
+
+		model = FomParser.parse( module );
+		writeEntry( entry, key, model );
+		return model;
+	}
+
+	/**
+	 * Remove all entries from the cache directory.
+	 */
+	public void clear()
+	{
+		File[] entries = directory.listFiles();
+		if( entries == null )
+			return;
+
+		for( File entry : entries )
+		{
+			if( entry.getName().endsWith(SUFFIX) )
+				entry.delete();
+		}
+	}
+
+	/**
+	 * Make sure the cache directory exists and that nobody but us can put entries in it. If it
+	 * doesn't exist yet it is created readable and writable only by its owner. Directories on
+	 * file systems without POSIX permissions are trusted as they are.
+	 * 
+	 * @return <code>true</code> if the directory can be used, <code>false</code> if the cache
+	 *         should be skipped
+	 */
+	private boolean isDirectoryTrusted()
+	{
+		Path path = directory.toPath();
+		boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains( "posix" );
+		try
+		{
+			if( Files.exists(path) == false )
+			{
+				if( posix )
+					Files.createDirectories( path, PosixFilePermissions.asFileAttribute(OWNER_ONLY) );
+				else
+					Files.createDirectories( path );
+			}
+
+			if( posix == false )
+				return true;
+
+			PosixFileAttributes attributes =
+				Files.getFileAttributeView( path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS )
+				     .readAttributes();
+
+			if( attributes.isDirectory() == false )
+			{
+				logger.warn( "FOM cache disabled: [%s] is not a directory", directory );
+				return false;
+			}
+
+			Set<PosixFilePermission> permissions = attributes.permissions();
+			if( permissions.contains(PosixFilePermission.GROUP_WRITE) ||
+				permissions.contains(PosixFilePermission.OTHERS_WRITE) )
+			{
+				logger.warn( "FOM cache disabled: [%s] can be written by other users (%s)",
+				             directory, PosixFilePermissions.toString(permissions) );
+				return false;
+			}
+
+			UserPrincipal user = currentUser();
+			if( user != null && user.equals(attributes.owner()) == false )
+			{
+				logger.warn( "FOM cache disabled: [%s] is owned by %s, not %s",
+				             directory, attributes.owner().getName(), user.getName() );
+				return false;
+			}
+
+			return true;
+		}
+		catch( Exception e )
+		{
+			logger.warn( "FOM cache disabled: could not use [%s]: %s", directory, e.getMessage() );
+			return false;
+		}
+	}
+
+	/**
+	 * Hash the type of entry, the Portico version and the raw contents of each module, in order.
+	 */
+	private String computeKey( String type, List<URL> modules ) throws JCouldNotOpenFED
+	{
+		MessageDigest digest = null;
+		try
+		{
+			digest = MessageDigest.getInstance( "SHA-256" );
+		}
+		catch( Exception e )
+		{
+			throw new JRTIinternalError( "SHA-256 not available: "+e.getMessage(), e );
+		}
+		
+		digest.update( (FORMAT_VERSION+"/"+PorticoConstants.RTI_VERSION+"/"+type).getBytes() );
+		byte[] buffer = new byte[8192];
+		for( URL module : modules )
+		{
+			if( module == null )
+				throw new JCouldNotOpenFED( "Fed file doesn't exist: file="+null );
+
+			// mark where each module starts so that moving bytes between modules changes the key
+			digest.update( (byte)0 );
+			try( InputStream stream = module.openStream() )
+			{
+				int read = 0;
+				while( (read = stream.read(buffer)) != -1 )
+					digest.update( buffer, 0, read );
+			}
+			catch( IOException ioex )
+			{
+				throw new JCouldNotOpenFED( "Error opening fed file from ["+module+
+				                            "]: "+ioex.getMessage(), ioex );
+			}
+		}
+		
+		StringBuilder builder = new StringBuilder();
+		for( byte b : digest.digest() )
+			builder.append( String.format("%02x",b) );
+		return builder.toString();
+	}
+
+	/**
+	 * Read the model from the given entry. If the entry doesn't exist, null is returned. If it
+	 * can't be read, it is deleted and null is returned.
+	 */
+	private ObjectModel readEntry( File entry, String key )
+	{
+		if( entry.exists() == false )
+			return null;
+		
+		try( DataInputStream input =
+		     new DataInputStream(new BufferedInputStream(new FileInputStream(entry))) )
+		{
+			if( input.readInt() != MAGIC ||
+				input.readInt() != FORMAT_VERSION ||
+				input.readUTF().equals(key) == false )
+			{
+				throw new IOException( "Header doesn't match" );
+			}
+
+			ObjectInputStream objects = new ModelInputStream( new GZIPInputStream(input) );
+			return (ObjectModel)objects.readObject();
+		}
+		catch( Exception e )
+		{
+			logger.debug( "Discarding unreadable FOM cache entry [%s]: %s", entry, e.getMessage() );
+			entry.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Store the model against the given key. Failures are logged and otherwise ignored, the
+	 * cache is only ever an optimization.
+	 */
+	private void writeEntry( File entry, String key, ObjectModel model )
+	{
+		File temp = null;
+		try
+		{
+			// serialize first, so a model that can't be written never leaves a file behind
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream header = new DataOutputStream( bytes );
+			header.writeInt( MAGIC );
+			header.writeInt( FORMAT_VERSION );
+			header.writeUTF( key );
+			header.flush();
+			GZIPOutputStream zip = new GZIPOutputStream( bytes );
+			ObjectOutputStream objects = new ModelOutputStream( zip );
+			objects.writeObject( model );
+			objects.close();
+
+			temp = File.createTempFile( key, ".tmp", directory );
+			try( BufferedOutputStream output = new BufferedOutputStream(new FileOutputStream(temp)) )
+			{
+				bytes.writeTo( output );
+			}
+
+			try
+			{
+				Files.move( temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				            StandardCopyOption.ATOMIC_MOVE );
+			}
+			catch( AtomicMoveNotSupportedException amnse )
+			{
+				Files.move( temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING );
+			}
+
+			logger.debug( "Stored merged FOM in cache: key=%s, size=%d bytes", key, bytes.size() );
+		}
+		catch( Exception e )
+		{
+			logger.warn( "Could not store merged FOM in cache [%s]: %s", entry, e.getMessage() );
+			if( temp != null )
+				temp.delete();
+		}
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/**
+	 * Parse each of the modules, merge them together, insert the MOM and resolve all datatype
+	 * references. This is the full process a federation's FOM goes through on creation.
+	 */
+	public static ObjectModel parseAndMerge( List<URL> modules ) throws JCouldNotOpenFED,
+	                                                                    JErrorReadingFED,
+	                                                                    JInconsistentFDD,
+	                                                                    JRTIinternalError
+	{
+		// try and parse each of the fed files that we have
+		List<ObjectModel> foms = new ArrayList<ObjectModel>();
+		for( URL module : modules )
+			foms.add( FomParser.parse(module) );
+
+		// merge the modules together
+		ObjectModel combined = ModelMerger.merge( foms );
+		
+		// Now we have a single .. super model (which may include the MIM) we can post-process.
+		// Ditch the MIM if it is present and then re-insert with specific handles so that we can
+		// look up MOM handles without using names (thus support cross spec-version naming schemes).
+		ObjectModel.mommify( combined );
+
+		// Now that all datatypes have been finalized, we can link the placeholder symbols
+		ObjectModel.resolveSymbols( combined );
+		return combined;
+	}
+
+	/**
+	 * Return the parsed model for a single join module, going through the cache in the directory
+	 * given by {@link PorticoConstants#getFomCacheDirectory()} if the cache is turned on, or
+	 * straight to {@link FomParser#parse(URL)} if it isn't.
+	 */
+	public static ObjectModel loadModule( URL module ) throws JCouldNotOpenFED, JErrorReadingFED
+	{
+		if( PorticoConstants.isFomCacheEnabled() )
+			return new FomCache( PorticoConstants.getFomCacheDirectory() ).getModule( module );
+		else
+			return FomParser.parse( module );
+	}
+
+	/**
+	 * Return the merged model for the given modules, going through the cache in the directory
+	 * given by {@link PorticoConstants#getFomCacheDirectory()} if the cache is turned on, or
+	 * straight to {@link #parseAndMerge(List)} if it isn't.
+	 */
+	public static ObjectModel loadMergedModel( List<URL> modules ) throws JCouldNotOpenFED,
+	                                                                      JErrorReadingFED,
+	                                                                      JInconsistentFDD,
+	                                                                      JRTIinternalError
+	{
+		if( PorticoConstants.isFomCacheEnabled() )
+			return new FomCache( PorticoConstants.getFomCacheDirectory() ).getMergedModel( modules );
+		else
+			return parseAndMerge( modules );
+	}
+
+	private static Set<String> permitted( Class<?>... classes )
+	{
+		Set<String> names = new HashSet<String>();
+		for( Class<?> clazz : classes )
+			names.add( clazz.getName() );
+
+		return Collections.unmodifiableSet( names );
+	}
+
+	/**
+	 * @return The user we are running as, or <code>null</code> if it can't be determined, in
+	 *         which case only the directory permissions are checked
+	 */
+	private static UserPrincipal currentUser()
+	{
+		try
+		{
+			return FileSystems.getDefault().getUserPrincipalLookupService()
+			                  .lookupPrincipalByName( System.getProperty("user.name") );
+		}
+		catch( Exception e )
+		{
+			return null;
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////////
+	///////////////////////////////////  Private Classes  ////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Only lets the classes in {@link FomCache#PERMITTED} be deserialized out of a cache entry,
+	 * so a file in the directory can never get us to instantiate anything else.
+	 */
+	private static class ModelInputStream extends ObjectInputStream
+	{
+		private ModelInputStream( InputStream stream ) throws IOException
+		{
+			super( stream );
+		}
+
+		@Override
+		protected Class<?> resolveClass( ObjectStreamClass descriptor )
+			throws IOException, ClassNotFoundException
+		{
+			if( PERMITTED.contains(descriptor.getName()) )
+				return super.resolveClass( descriptor );
+			else
+				throw new InvalidClassException( descriptor.getName(), "Not permitted in a FOM cache entry" );
+		}
+	}
+
+	/**
+	 * Refuses to write any class that {@link ModelInputStream} wouldn't read back, so a model
+	 * that uses one is never cached rather than being cached and rejected every time.
+	 */
+	private static class ModelOutputStream extends ObjectOutputStream
+	{
+		private ModelOutputStream( OutputStream stream ) throws IOException
+		{
+			super( stream );
+		}
+
+		@Override
+		protected void annotateClass( Class<?> clazz ) throws IOException
+		{
+			if( PERMITTED.contains(clazz.getName()) == false )
+				throw new NotSerializableException( clazz.getName()+" is not permitted in a FOM cache entry" );
+		}
+	}
+}
@@ -20,7 +20,9 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.portico.lrc.compat.JRTIinternalError;
@@ -382,6 +384,39 @@ public abstract class PorticoMessage implements Serializable, Cloneable
 			throw new JRTIinternalError( "Error performing clone()", cnse );
 		}
 	}
+
+	/**
+	 * Get a copy of this message to hand straight to a receiver in the same JVM, in place of
+	 * serializing it. By default this is a {@link #clone()}. Messages that carry values the
+	 * application owns (attribute values, parameters, tags) override it to copy those as well,
+	 * so that neither side can change what the other sees once the message has been passed on.
+	 */
+	public PorticoMessage copyForReceiver() throws JRTIinternalError
+	{
+		return clone( PorticoMessage.class );
+	}
+
+	/**
+	 * @return A new map holding a copy of each of the given values, or <code>null</code> if
+	 *         the given map is <code>null</code>
+	 */
+	protected static HashMap<Integer,byte[]> copyValues( HashMap<Integer,byte[]> values )
+	{
+		if( values == null )
+			return null;
+
+		HashMap<Integer,byte[]> copy = new HashMap<>( (int)(values.size()/0.75f)+1 );
+		for( Map.Entry<Integer,byte[]> entry : values.entrySet() )
+			copy.put( entry.getKey(), copyValue(entry.getValue()) );
+
+		return copy;
+	}
+
+	/** @return A copy of the given value, or <code>null</code> if it is <code>null</code> */
+	protected static byte[] copyValue( byte[] value )
+	{
+		return value == null ? null : value.clone();
+	}
 	
 	/////////////////////////////////////////////////////////////
 	/////////////////// Serialization Methods ///////////////////
@@ -163,6 +163,25 @@ public class PorticoConstants
 	    joining a federation. By default it should and this check is enabled */
 	public static final String PROPERTY_UNIQUE_FEDERATE_NAMES = "portico.uniqueFederateNames";
 
+	/** System property for turning on the RTI's cache of last known attribute values. When on,
+	    the RTI can answer attribute update requests itself rather than asking the owners. Default
+	    is off */
+	public static final String PROPERTY_RTI_VALUE_CACHE = "portico.rti.valueCache";
+
+	/** System property for the most memory (in megabytes) the value cache of each federation can
+	    use before it starts dropping the least recently updated objects. Default is 64 */
+	public static final String PROPERTY_RTI_VALUE_CACHE_SIZE = "portico.rti.valueCache.maxMB";
+
+	/** System property for how long (in milliseconds) a cached value can be used to answer an
+	    update request. Older values are ignored and the request goes to the owner. The default,
+	    0, means cached values never go stale */
+	public static final String PROPERTY_RTI_VALUE_CACHE_AGE = "portico.rti.valueCache.maxAge";
+
+	/** System property for the default of the JVM transport's "passObjects" setting. When on,
+	    messages between connections in the same JVM are handed over as objects rather than being
+	    serialized. The RID can still turn it on or off for each connection. Default is off */
+	public static final String PROPERTY_JVM_PASS_OBJECTS = "portico.jvm.passObjects";
+
 	//////////////////////////////////////////////
 	///////// Portico C++ Property Names /////////
 	//////////////////////////////////////////////
@@ -312,6 +331,26 @@ public class PorticoConstants
 		                                   " expected bool (true,false,on,off,enabled,disabled)" );
 	}
 
+	/**
+	 * This is a wrapper for {@link System#getProperty(String, String)} except that it will
+	 * sanitize long values. If the value of the property is not a number, an exception will be
+	 * thrown. If there is no property set for that system property, the default value will be used.
+	 */
+	public static long getLongProperty( String propertyName, String defaultValue )
+		throws JConfigurationException
+	{
+		String propertyValue = System.getProperty( propertyName, defaultValue );
+		try
+		{
+			return Long.parseLong( propertyValue.trim() );
+		}
+		catch( Exception e )
+		{
+			throw new JConfigurationException( "Invalid value for system property \"" +propertyName+
+			                                   "\", found="+propertyValue+", expected number" );
+		}
+	}
+
 	public static boolean isPrintHandlesForObjectClass()
 	{
 		updateLogValues();
@@ -379,6 +418,32 @@ public class PorticoConstants
 		return getBooleanProperty( PROPERTY_UNIQUE_FEDERATE_NAMES, "true" );
 	}
 
+	public static boolean isJvmPassObjects()
+	{
+		return getBooleanProperty( PROPERTY_JVM_PASS_OBJECTS, "false" );
+	}
+
+	public static boolean isValueCacheEnabled()
+	{
+		return getBooleanProperty( PROPERTY_RTI_VALUE_CACHE, "false" );
+	}
+
+	/**
+	 * @return The memory budget for the value cache of each federation, in bytes
+	 */
+	public static long getValueCacheSize()
+	{
+		return getLongProperty( PROPERTY_RTI_VALUE_CACHE_SIZE, "64" ) * 1024L * 1024L;
+	}
+
+	/**
+	 * @return How long a cached value can be used for, in milliseconds. 0 means forever.
+	 */
+	public static long getValueCacheMaxAge()
+	{
+		return getLongProperty( PROPERTY_RTI_VALUE_CACHE_AGE, "0" );
+	}
+
 	/**
 	 * Returns true if the FOM should be logged every time a federation is created.
 	 */
@@ -102,7 +102,8 @@ public class RID
 			override( commandline );
 		
 		// store the location of teh RID file for later read-only reference
-		this.ridpath = ridfile.getPath();
+		if( ridfile != null )
+			this.ridpath = ridfile.getPath();
 		// FIXME what about rtihome and rtidata???
 		this.commandline = commandline;
 	}
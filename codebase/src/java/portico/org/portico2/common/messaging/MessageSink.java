@@ -67,6 +67,25 @@ public class MessageSink
 			handler.process( context );
 	}
 	
+	/**
+	 * @return <code>true</code> if there is a handler registered for the given message type.
+	 *         If not, messages of this type will go to the default handler, which ignores them.
+	 */
+	public boolean hasHandler( MessageType type )
+	{
+		return messageHandlers.containsKey( type );
+	}
+
+	/**
+	 * @return The handler registered for the given message type, or <code>null</code> if there
+	 *         isn't one. If more than one handler is registered for the type, this is the handler
+	 *         that chains them together.
+	 */
+	public IMessageHandler getHandler( MessageType type )
+	{
+		return messageHandlers.get( type );
+	}
+
 	///////////////////////////////////////////////////////////////////////////////////////
 	///  Handler Management Methods   /////////////////////////////////////////////////////
 	///////////////////////////////////////////////////////////////////////////////////////
@@ -108,7 +127,7 @@ public class MessageSink
 			// If it is a single handler, turn it into a list
 			IMessageHandler existing = messageHandlers.get( type );
 			if( existing instanceof ListHandler )
-				ListHandler.class.cast(existing).handlers.add( existing );
+				ListHandler.class.cast(existing).handlers.add( handler );
 			else
 				messageHandlers.put( type, new ListHandler(existing,handler) );
 		}
@@ -34,6 +34,7 @@ public enum MessageType
 	// Non-HLA Messages (010-039)
 	SuccessResponse         ( (short)14 ),
 	ErrorResponse           ( (short)15 ),
+	Batch                   ( (short)16 ),  // Many control requests in one round trip
 	
 	// Synchronization Points (040-049)
 	RegisterSyncPoint       ( (short)40 ),  // Register
@@ -63,6 +64,7 @@ public enum MessageType
 	ReserveObjectNameResult ( (short)67 ),
 	RequestObjectUpdate     ( (short)68 ),
 	RequestClassUpdate      ( (short)69 ),
+	DiscoverObjectBatch     ( (short)70 ),  // Many discoveries for a late subscriber
 
 	// Save Restore (080-099)
 	SaveRequest             ( (short)86 ),  // Start things off
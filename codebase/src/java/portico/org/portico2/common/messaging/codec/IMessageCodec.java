@@ -0,0 +1,91 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.messaging.codec;
+
+import java.nio.ByteBuffer;
+
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.messaging.MessageType;
+
+/**
+ * A codec converts a single type of {@link PorticoMessage} to and from a compact binary form.
+ * Codecs are registered against their {@link MessageType} in {@link MessageCodecs} and are used
+ * by the message helpers in preference to standard Java serialization.
+ * <p/>
+ *
+ * <b>Versioning</b>
+ * <p/>
+ * Each codec declares a version. The version is written as a single unsigned byte in front of
+ * the encoded body and is passed back to {@link #decode(int, ByteBuffer)} on the receiving side.
+ * If the format of a message ever changes, bump the version and keep reading the older format
+ * for as long as it needs to be supported.
+ * <p/>
+ *
+ * <b>Thread Safety</b>
+ * <p/>
+ * A single codec instance is shared by every connection in the process. Implementations must
+ * not hold any per-call state.
+ *
+ * @param <T> The type of message this codec handles
+ */
+public interface IMessageCodec<T extends PorticoMessage>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * @return The type of message this codec handles
+	 */
+	public MessageType getMessageType();
+
+	/**
+	 * @return The current version of the encoded format (0-255). This is the version that
+	 *         {@link #encode(PorticoMessage, ByteBuffer)} will produce.
+	 */
+	public int getVersion();
+
+	/**
+	 * Work out exactly how many bytes {@link #encode(PorticoMessage, ByteBuffer)} will write for
+	 * the given message. This lets callers size their buffer once, without having to grow it.
+	 *
+	 * @param message The message that is about to be encoded
+	 * @return The number of bytes the encoded body will take up
+	 */
+	public int getEncodedLength( T message );
+
+	/**
+	 * Write the given message into the buffer, starting at its current position. When this
+	 * method returns the buffer position must sit directly after the last byte written.
+	 *
+	 * @param message The message to encode
+	 * @param buffer  The buffer to write into. Must have enough space remaining.
+	 */
+	public void encode( T message, ByteBuffer buffer );
+
+	/**
+	 * Read a message from the buffer, starting at its current position.
+	 *
+	 * @param version The version of the format the message was written with
+	 * @param buffer  The buffer to read from
+	 * @return The decoded message
+	 * @throws IllegalArgumentException If the version is not one this codec can read
+	 */
+	public T decode( int version, ByteBuffer buffer ) throws IllegalArgumentException;
+
+}
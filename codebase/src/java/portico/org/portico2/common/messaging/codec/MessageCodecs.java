@@ -0,0 +1,351 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.messaging.codec;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.portico.utils.bithelpers.BitHelpers;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.messaging.MessageType;
+
+/**
+ * Registry of all the {@link IMessageCodec} implementations known to Portico. Codecs are indexed
+ * directly by the id of their {@link MessageType}, so looking one up is a single array access.
+ * <p/>
+ *
+ * Message types that do not have a codec registered fall back to standard Java serialization
+ * (see <code>MessageHelpers.deflate2()</code>). The fallback is deliberate: it lets us convert
+ * message types over to hand-written codecs one at a time, starting with the high-volume ones.
+ * <p/>
+ *
+ * <b>Encoded Format</b>
+ * <p/>
+ * Everything written by this class sits directly after the fixed message header:
+ * <pre>
+ *   [version:uint8][targetFederation:int][codec specific body...]
+ * </pre>
+ * The presence of a codec-encoded body is signalled in the header through the "manual marshal"
+ * flag (see {@link org.portico2.common.network.Header#isManualMarshal()}).
+ * <p/>
+ *
+ * The header only has room for a 4-bit federation id, which is not enough to route on. Writing
+ * the full federation handle at a fixed position lets the RTI find out where a message is going
+ * (see {@link #peekTargetFederation(byte[], int)}) without having to decode the whole thing.
+ */
+public class MessageCodecs
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	/** Size of the version marker written before each encoded body */
+	public static final int VERSION_LENGTH = 1;
+
+	/** Size of the common prefix (version and target federation) written before each body */
+	public static final int PREFIX_LENGTH = VERSION_LENGTH + 4;
+
+	/** Message type ids are uint8, so 256 slots cover every possible type */
+	private static final IMessageCodec<?>[] CODECS = new IMessageCodec<?>[256];
+
+	static
+	{
+		register( new UpdateAttributesCodec() );
+		register( new SendInteractionCodec() );
+	}
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	private MessageCodecs()
+	{
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/**
+	 * Register the given codec, replacing any existing codec for the same message type.
+	 *
+	 * @param codec The codec to register
+	 */
+	public static synchronized void register( IMessageCodec<?> codec )
+	{
+		if( codec.getVersion() < 0 || codec.getVersion() > 255 )
+			throw new IllegalArgumentException( "Codec version must be in the range 0-255: "+codec.getVersion() );
+
+		CODECS[codec.getMessageType().getId() & 0xff] = codec;
+	}
+
+	/**
+	 * Remove the codec for the given type. Messages of this type will go back to being sent
+	 * with standard Java serialization.
+	 *
+	 * @param type The message type to remove the codec for
+	 */
+	public static synchronized void deregister( MessageType type )
+	{
+		CODECS[type.getId() & 0xff] = null;
+	}
+
+	/**
+	 * @return The codec registered for the given type, or <code>null</code> if there isn't one
+	 */
+	public static IMessageCodec<?> getCodec( MessageType type )
+	{
+		return CODECS[type.getId() & 0xff];
+	}
+
+	/**
+	 * @return <code>true</code> if there is a codec registered for the given message type
+	 */
+	public static boolean hasCodec( MessageType type )
+	{
+		return CODECS[type.getId() & 0xff] != null;
+	}
+
+	/**
+	 * Work out how many bytes {@link #encode(PorticoMessage, ByteBuffer)} will need for the given
+	 * message, including the common prefix.
+	 *
+	 * @param message The message to size
+	 * @return The number of bytes needed to encode the message
+	 * @throws IllegalArgumentException If there is no codec for the type of message
+	 */
+	@SuppressWarnings("unchecked")
+	public static int getEncodedLength( PorticoMessage message ) throws IllegalArgumentException
+	{
+		IMessageCodec<PorticoMessage> codec = (IMessageCodec<PorticoMessage>)findCodec( message.getType() );
+		return PREFIX_LENGTH + codec.getEncodedLength( message );
+	}
+
+	/**
+	 * Encode the given message into the buffer (starting at its current position), writing the
+	 * common prefix followed by the codec body.
+	 *
+	 * @param message The message to encode
+	 * @param buffer  The buffer to write into
+	 * @throws IllegalArgumentException If there is no codec for the type of message
+	 */
+	@SuppressWarnings("unchecked")
+	public static void encode( PorticoMessage message, ByteBuffer buffer ) throws IllegalArgumentException
+	{
+		IMessageCodec<PorticoMessage> codec = (IMessageCodec<PorticoMessage>)findCodec( message.getType() );
+		buffer.put( (byte)codec.getVersion() );
+		buffer.putInt( message.getTargetFederation() );
+		codec.encode( message, buffer );
+	}
+
+	/**
+	 * Decode a message of the given type from the buffer (starting at its current position).
+	 * The buffer should be positioned at the version marker.
+	 *
+	 * @param type   The type of message to decode (typically taken from the header)
+	 * @param buffer The buffer to read from
+	 * @return The decoded message
+	 * @throws IllegalArgumentException If there is no codec for the type, or the version that the
+	 *                                  message was written with is newer than the local codec
+	 */
+	public static PorticoMessage decode( MessageType type, ByteBuffer buffer ) throws IllegalArgumentException
+	{
+		IMessageCodec<?> codec = findCodec( type );
+		int version = buffer.get() & 0xff;
+		if( version > codec.getVersion() )
+		{
+			throw new IllegalArgumentException( "Cannot decode "+type+": encoded with codec version "+
+			                                    version+", local version is "+codec.getVersion() );
+		}
+
+		int targetFederation = buffer.getInt();
+		PorticoMessage message = codec.decode( version, buffer );
+		message.setTargetFederation( targetFederation );
+		return message;
+	}
+
+	/**
+	 * Read the target federation handle out of a codec-encoded message without decoding it.
+	 *
+	 * @param buffer The buffer holding the encoded message
+	 * @param offset The offset at which the encoded message starts (the version marker)
+	 * @return The handle of the federation that the message is targeted at
+	 */
+	public static int peekTargetFederation( byte[] buffer, int offset )
+	{
+		return BitHelpers.readIntBE( buffer, offset+VERSION_LENGTH );
+	}
+
+	private static IMessageCodec<?> findCodec( MessageType type ) throws IllegalArgumentException
+	{
+		IMessageCodec<?> codec = CODECS[type.getId() & 0xff];
+		if( codec == null )
+			throw new IllegalArgumentException( "No codec registered for message type "+type );
+		else
+			return codec;
+	}
+
+	///////////////////////////////////////////////////////////////////////////////////////////
+	/////////////////////////////  Shared Encoding Helper Methods  ////////////////////////////
+	///////////////////////////////////////////////////////////////////////////////////////////
+	// These are used by the data message codecs, which all share the same basic building
+	// blocks: a length-prefixed byte[] (tags) and a map of handle to byte[] values.
+
+	/** @return Number of bytes {@link #putBytes(byte[], ByteBuffer)} will write for the array */
+	protected static int getBytesLength( byte[] value )
+	{
+		return 4 + (value == null ? 0 : value.length);
+	}
+
+	/** Write a length-prefixed byte[]. A <code>null</code> value is written as zero-length. */
+	protected static void putBytes( byte[] value, ByteBuffer buffer )
+	{
+		if( value == null )
+		{
+			buffer.putInt( 0 );
+		}
+		else
+		{
+			buffer.putInt( value.length );
+			buffer.put( value );
+		}
+	}
+
+	/**
+	 * Read a length-prefixed byte[] written by {@link #putBytes(byte[], ByteBuffer)}
+	 * 
+	 * @throws IllegalArgumentException If the length is negative or longer than what is left in
+	 *                                  the buffer (a corrupt or truncated message)
+	 */
+	protected static byte[] getBytes( ByteBuffer buffer ) throws IllegalArgumentException
+	{
+		int length = getLength( buffer, 1, "value length" );
+		byte[] value = new byte[length];
+		buffer.get( value );
+		return value;
+	}
+
+	/** @return Number of bytes {@link #putHandleValueMap(Map, ByteBuffer)} will write for the map */
+	protected static int getHandleValueMapLength( Map<Integer,byte[]> map )
+	{
+		int length = 4;
+		if( map == null )
+			return length;
+
+		for( byte[] value : map.values() )
+			length += 4 + getBytesLength( value );
+
+		return length;
+	}
+
+	/** Write the map as [count:int] followed by [handle:int][length:int][value...] per entry */
+	protected static void putHandleValueMap( Map<Integer,byte[]> map, ByteBuffer buffer )
+	{
+		if( map == null )
+		{
+			buffer.putInt( 0 );
+			return;
+		}
+
+		buffer.putInt( map.size() );
+		for( Map.Entry<Integer,byte[]> entry : map.entrySet() )
+		{
+			buffer.putInt( entry.getKey() );
+			putBytes( entry.getValue(), buffer );
+		}
+	}
+
+	/**
+	 * Read a map written by {@link #putHandleValueMap(Map, ByteBuffer)}
+	 * 
+	 * @throws IllegalArgumentException If the entry count or any value length doesn't fit in
+	 *                                  what is left in the buffer (a corrupt or truncated message)
+	 */
+	protected static HashMap<Integer,byte[]> getHandleValueMap( ByteBuffer buffer )
+		throws IllegalArgumentException
+	{
+		// each entry is at least a handle and a value length
+		int count = getLength( buffer, 8, "entry count" );
+		// size the map so that it never has to rehash as we fill it
+		HashMap<Integer,byte[]> map = new HashMap<>( (int)(count/0.75f)+1 );
+		for( int i = 0; i < count; i++ )
+		{
+			int handle = buffer.getInt();
+			map.put( handle, getBytes(buffer) );
+		}
+
+		return map;
+	}
+
+	/**
+	 * Read just the handles out of a map written by {@link #putHandleValueMap(Map, ByteBuffer)},
+	 * skipping over the values
+	 * 
+	 * @throws IllegalArgumentException If the entry count or any value length doesn't fit in
+	 *                                  what is left in the buffer (a corrupt or truncated message)
+	 */
+	protected static int[] getHandles( ByteBuffer buffer ) throws IllegalArgumentException
+	{
+		int count = getLength( buffer, 8, "entry count" );
+		int[] handles = new int[count];
+		for( int i = 0; i < count; i++ )
+		{
+			handles[i] = buffer.getInt();
+			skipBytes( buffer );
+		}
+
+		return handles;
+	}
+
+	/**
+	 * Move the buffer past a length-prefixed byte[] written by {@link #putBytes(byte[], ByteBuffer)}
+	 * without reading it
+	 * 
+	 * @throws IllegalArgumentException If the length is negative or longer than what is left in
+	 *                                  the buffer (a corrupt or truncated message)
+	 */
+	protected static void skipBytes( ByteBuffer buffer ) throws IllegalArgumentException
+	{
+		int length = getLength( buffer, 1, "value length" );
+		buffer.position( buffer.position()+length );
+	}
+
+	/**
+	 * Read a length or count off the buffer and check that it is sane before anyone allocates
+	 * anything based on it. Each unit must take up at least <code>unitSize</code> bytes of what
+	 * is left in the buffer, otherwise the message can't possibly hold what it claims to.
+	 */
+	private static int getLength( ByteBuffer buffer, int unitSize, String what )
+		throws IllegalArgumentException
+	{
+		if( buffer.remaining() < 4 )
+			throw new IllegalArgumentException( "Message truncated: no room for "+what );
+
+		int length = buffer.getInt();
+		if( length < 0 || length > buffer.remaining() / unitSize )
+		{
+			throw new IllegalArgumentException( "Corrupt message: "+what+" of "+length+" with "+
+			                                    buffer.remaining()+" bytes remaining" );
+		}
+
+		return length;
+	}
+}
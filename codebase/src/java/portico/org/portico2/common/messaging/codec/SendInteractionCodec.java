@@ -0,0 +1,103 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.messaging.codec;
+
+import java.nio.ByteBuffer;
+
+import org.portico2.common.messaging.MessageType;
+import org.portico2.common.services.object.msg.SendInteraction;
+
+/**
+ * Binary codec for {@link SendInteraction}. The layout (version 1) is:
+ * <pre>
+ *   [interactionId:int][sourceFederate:int][timestamp:double]
+ *   [regionToken:int][tagLength:int][tag...]
+ *   [parameterCount:int] { [handle:int][valueLength:int][value...] }*
+ * </pre>
+ * The target federation is not part of the body; it goes in the prefix written by
+ * {@link MessageCodecs}.
+ */
+public class SendInteractionCodec implements IMessageCodec<SendInteraction>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final int VERSION = 1;
+
+	/** interactionId, sourceFederate, regionToken (ints) plus timestamp (double) */
+	private static final int FIXED_LENGTH = 4 + 4 + 8 + 4;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@Override
+	public MessageType getMessageType()
+	{
+		return MessageType.SendInteraction;
+	}
+
+	@Override
+	public int getVersion()
+	{
+		return VERSION;
+	}
+
+	@Override
+	public int getEncodedLength( SendInteraction message )
+	{
+		return FIXED_LENGTH +
+		       MessageCodecs.getBytesLength( message.getTag() ) +
+		       MessageCodecs.getHandleValueMapLength( message.getParameters() );
+	}
+
+	@Override
+	public void encode( SendInteraction message, ByteBuffer buffer )
+	{
+		buffer.putInt( message.getInteractionId() );
+		buffer.putInt( message.getSourceFederate() );
+		buffer.putDouble( message.getTimestamp() );
+		buffer.putInt( message.getRegionToken() );
+		MessageCodecs.putBytes( message.getTag(), buffer );
+		MessageCodecs.putHandleValueMap( message.getParameters(), buffer );
+	}
+
+	@Override
+	public SendInteraction decode( int version, ByteBuffer buffer )
+	{
+		if( version != VERSION )
+			throw new IllegalArgumentException( "Cannot decode SendInteraction codec version "+version );
+
+		SendInteraction message = new SendInteraction();
+		message.setInteractionId( buffer.getInt() );
+		message.setSourceFederateIfNull( buffer.getInt() ); // doesn't touch the isFromRti flag
+		message.setTimestamp( buffer.getDouble() );
+		message.setRegionToken( buffer.getInt() );
+		message.setTag( MessageCodecs.getBytes(buffer) );
+		message.setParameters( MessageCodecs.getHandleValueMap(buffer) );
+		return message;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
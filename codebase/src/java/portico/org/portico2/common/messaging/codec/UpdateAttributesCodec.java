@@ -0,0 +1,132 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.messaging.codec;
+
+import java.nio.ByteBuffer;
+
+import org.portico2.common.messaging.MessageType;
+import org.portico2.common.services.object.msg.UpdateAttributes;
+
+/**
+ * Binary codec for {@link UpdateAttributes}. The layout (version 1) is:
+ * <pre>
+ *   [objectId:int][sourceFederate:int][timestamp:double]
+ *   [tagLength:int][tag...]
+ *   [attributeCount:int] { [handle:int][valueLength:int][value...] }*
+ * </pre>
+ * The target federation is not part of the body; it goes in the prefix written by
+ * {@link MessageCodecs}.
+ * <p/>
+ * The target federate isn't written either. Most updates go to everyone, but the RTI does
+ * address some to a single federate (when it answers a request from its value cache). Those
+ * carry the target in the message header, which is what receivers filter on.
+ */
+public class UpdateAttributesCodec implements IMessageCodec<UpdateAttributes>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final int VERSION = 1;
+
+	/** objectId, sourceFederate (ints) plus timestamp (double) */
+	private static final int FIXED_LENGTH = 4 + 4 + 8;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@Override
+	public MessageType getMessageType()
+	{
+		return MessageType.UpdateAttributes;
+	}
+
+	@Override
+	public int getVersion()
+	{
+		return VERSION;
+	}
+
+	@Override
+	public int getEncodedLength( UpdateAttributes message )
+	{
+		return FIXED_LENGTH +
+		       MessageCodecs.getBytesLength( message.getTag() ) +
+		       MessageCodecs.getHandleValueMapLength( message.getAttributes() );
+	}
+
+	@Override
+	public void encode( UpdateAttributes message, ByteBuffer buffer )
+	{
+		buffer.putInt( message.getObjectId() );
+		buffer.putInt( message.getSourceFederate() );
+		buffer.putDouble( message.getTimestamp() );
+		MessageCodecs.putBytes( message.getTag(), buffer );
+		MessageCodecs.putHandleValueMap( message.getAttributes(), buffer );
+	}
+
+	@Override
+	public UpdateAttributes decode( int version, ByteBuffer buffer )
+	{
+		if( version != VERSION )
+			throw new IllegalArgumentException( "Cannot decode UpdateAttributes codec version "+version );
+
+		UpdateAttributes message = new UpdateAttributes();
+		message.setObjectId( buffer.getInt() );
+		message.setSourceFederateIfNull( buffer.getInt() ); // doesn't touch the isFromRti flag
+		message.setTimestamp( buffer.getDouble() );
+		message.setTag( MessageCodecs.getBytes(buffer) );
+		message.setAttributes( MessageCodecs.getHandleValueMap(buffer) );
+		return message;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/**
+	 * Read the handles of the attributes in an encoded update without decoding anything else.
+	 * The RTI uses this to only route an update to the federates that are subscribed to at
+	 * least one of its attributes.
+	 * 
+	 * @param buffer The buffer holding the encoded message
+	 * @param offset The offset at which the encoded message starts (the version marker)
+	 * @param length The length of the encoded message (prefix and body)
+	 * @return The handles of the attributes in the update
+	 * @throws IllegalArgumentException If the message is in a version we don't know, or is
+	 *                                  corrupt or truncated
+	 */
+	public static int[] peekAttributeHandles( byte[] buffer, int offset, int length )
+		throws IllegalArgumentException
+	{
+		ByteBuffer body = ByteBuffer.wrap( buffer, offset, length );
+		int version = body.get();
+		if( version != VERSION )
+			throw new IllegalArgumentException( "Cannot read UpdateAttributes codec version "+version );
+		if( body.remaining() < 4 + FIXED_LENGTH )
+			throw new IllegalArgumentException( "Message truncated: no room for fixed fields" );
+
+		// skip the target federation (rest of the prefix) and the fixed fields, then the tag
+		body.position( body.position() + 4 + FIXED_LENGTH );
+		MessageCodecs.skipBytes( body );
+		return MessageCodecs.getHandles( body );
+	}
+}
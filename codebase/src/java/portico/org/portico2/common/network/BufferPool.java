@@ -0,0 +1,128 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A simple pool of {@link PooledBuffer}s, used by transports to read incoming bundles into
+ * without allocating a new array for each one.
+ * <p/>
+ *
+ * Buffers are kept in power-of-two size classes, starting at {@link #MIN_SIZE}. A request is
+ * served from the smallest class that fits, so the array you get back may be larger than you
+ * asked for. Requests bigger than the largest class are given a one-off array that is never
+ * pooled. Each class holds a limited number of spare buffers; anything released beyond that is
+ * left for the garbage collector. Buffers can be released from any thread.
+ */
+public class BufferPool
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	/** Size of the smallest buffer class (1k) */
+	public static final int MIN_SIZE = 1024;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private final int maxSize;
+	private final int maxPerClass;
+	private final List<Queue<PooledBuffer>> classes;
+	private final AtomicInteger[] classSizes;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	/**
+	 * @param maxSize     Largest buffer that will be pooled (rounded up to a power of two)
+	 * @param maxPerClass Max number of spare buffers kept for each size class
+	 */
+	public BufferPool( int maxSize, int maxPerClass )
+	{
+		int count = classOf( Math.max(maxSize,MIN_SIZE) ) + 1;
+		this.maxSize = MIN_SIZE << (count-1);
+		this.maxPerClass = maxPerClass;
+		this.classes = new ArrayList<>( count );
+		this.classSizes = new AtomicInteger[count];
+		for( int i = 0; i < count; i++ )
+		{
+			this.classes.add( new ConcurrentLinkedQueue<>() );
+			this.classSizes[i] = new AtomicInteger( 0 );
+		}
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Get a buffer that can hold at least the given number of bytes. The caller holds the only
+	 * reference to it and must {@link PooledBuffer#release()} it when done.
+	 */
+	public PooledBuffer acquire( int size )
+	{
+		if( size > maxSize )
+			return new PooledBuffer( new byte[size], null ).retain();
+
+		int sizeClass = classOf( size );
+		PooledBuffer buffer = classes.get( sizeClass ).poll();
+		if( buffer == null )
+			return new PooledBuffer( new byte[MIN_SIZE << sizeClass], this ).retain();
+
+		classSizes[sizeClass].decrementAndGet();
+		buffer.reset();
+		return buffer;
+	}
+
+	/** Called by a buffer once its last reference has been released */
+	protected void recycle( PooledBuffer buffer )
+	{
+		int sizeClass = classOf( buffer.array().length );
+		if( classSizes[sizeClass].incrementAndGet() > maxPerClass )
+		{
+			classSizes[sizeClass].decrementAndGet();
+			return; // we have enough already, let it go
+		}
+
+		classes.get( sizeClass ).add( buffer );
+	}
+
+	/** @return The number of spare buffers currently held by the pool */
+	public int getPooledCount()
+	{
+		int count = 0;
+		for( AtomicInteger size : classSizes )
+			count += size.get();
+
+		return count;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/** @return Index of the smallest size class that can hold the given number of bytes */
+	private static int classOf( int size )
+	{
+		if( size <= MIN_SIZE )
+			return 0;
+
+		// number of doublings of MIN_SIZE needed to reach size
+		return 32 - Integer.numberOfLeadingZeros( (size-1) / MIN_SIZE );
+	}
+}
@@ -14,6 +14,8 @@
  */
 package org.portico2.common.network;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.portico.lrc.compat.JConfigurationException;
@@ -22,12 +24,14 @@ import org.portico.lrc.compat.JRTIinternalError;
 import org.portico.utils.messaging.PorticoMessage;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.messaging.ResponseMessage;
+import org.portico2.common.network.ResponseCorrelator.Pending;
 import org.portico2.common.network.configuration.ConnectionConfiguration;
 import org.portico2.common.network.configuration.protocol.ProtocolConfiguration;
 import org.portico2.common.network.protocol.Protocol;
 import org.portico2.common.network.protocol.ProtocolFactory;
 import org.portico2.common.network.protocol.ProtocolType;
 import org.portico2.common.network.transport.Transport;
+import org.portico2.common.network.transport.udp.BestEffortChannel;
 import org.portico2.common.services.federation.msg.RtiProbe;
 
 /**
@@ -83,6 +87,7 @@ public class Connection
 
 	protected Transport transport;
 	private ProtocolStack protocolStack;
+	private BestEffortChannel bestEffortChannel; // null if there isn't one
 	private ResponseCorrelator<ResponseMessage> responseCorrelator;
 
 	//----------------------------------------------------------
@@ -109,6 +114,7 @@ public class Connection
 
 		this.transport = null;       // set in configure()
 		this.protocolStack = null;   // set in configure()
+		this.bestEffortChannel = null; // set in configure()
 		this.responseCorrelator = new ResponseCorrelator<>();
 	}
 
@@ -152,6 +158,15 @@ public class Connection
 			protocol.configure( config, this );
 			protocolStack.addProtocol( protocol );
 		}
+
+		// add the best effort channel last so it sits directly above the transport. It is only
+		// used by LRCs; datagrams go straight between federates, the RTI gets a reliable copy
+		if( host == Host.LRC && configuration.getBestEffortConfiguration().isEnabled() )
+		{
+			this.bestEffortChannel = new BestEffortChannel();
+			this.bestEffortChannel.configure( configuration.getBestEffortConfiguration(), this );
+			protocolStack.addProtocol( this.bestEffortChannel );
+		}
 	}
 
 	/**
@@ -222,10 +237,58 @@ public class Connection
 	 */
 	public void sendDataMessage( PorticoMessage message ) throws JException
 	{
-		Message outgoing = new Message( message, CallType.DataMessage, 0 );
+		Message outgoing = newMessage( message, CallType.DataMessage, 0 );
 		protocolStack.down( outgoing );
 	}
 
+	/**
+	 * Send a data message that is happy to be delivered best effort. If the connection has a
+	 * best effort channel configured the message will go over that. If not, it is sent exactly
+	 * like any other data message. Callers that have to do extra work to send something best
+	 * effort should check {@link #hasBestEffortChannel()} first.
+	 * <p/>
+	 * 
+	 * Best effort messages can be lost, duplicated or re-ordered, so this should only be used
+	 * for receive order updates and interactions that the FOM declares as
+	 * <code>HLAbestEffort</code>.
+	 * 
+	 * @param message The message to send to all other federates
+	 * @throws JException If there is a problem sending the message
+	 */
+	public void sendBestEffortDataMessage( PorticoMessage message ) throws JException
+	{
+		Message outgoing = newMessage( message, CallType.DataMessage, 0 );
+		outgoing.getHeader().writeIsBestEffort( true );
+		protocolStack.down( outgoing );
+	}
+
+	/**
+	 * Send a data message that has already been serialized, such as one that was received on
+	 * another connection and is now being forwarded. The buffer is not copied or re-serialized,
+	 * so the same buffer can be handed to any number of connections.
+	 * <p/>
+	 * 
+	 * Protocols never write into the buffer they are given. If they need to change the contents
+	 * (encryption for example) they build a new one and swap it into the message. Each call
+	 * wraps the buffer in its own {@link Message} so those swaps stay local to this connection.
+	 * Encryption results are shared between the copies though (see {@link Message#forward()}),
+	 * so each key only has to encrypt the message once.
+	 * <p/>
+	 * 
+	 * If the message was never serialized (it came in over a transport that passes objects) and
+	 * our transport passes objects as well, it is passed on as an object.
+	 * 
+	 * @param message The message to send
+	 * @throws JException If there is a problem sending the message
+	 */
+	public void sendDataMessage( Message message ) throws JException
+	{
+		if( message.isDeferred() && isDeferring() )
+			protocolStack.down( message.copyDeferred() );
+		else
+			protocolStack.down( message.forward() );
+	}
+
 	/**
 	 * Builds and sends a notification message down the protocol stack to the transport.
 	 * This message will carry the call type {@link CallType#Notification} to signal that
@@ -237,7 +300,7 @@ public class Connection
 	 */
 	public void sendNotification( PorticoMessage message ) throws JException
 	{
-		Message outgoing = new Message( message, CallType.Notification, 0 );
+		Message outgoing = newMessage( message, CallType.Notification, 0 );
 		protocolStack.down( outgoing );
 	}
 	
@@ -257,14 +320,14 @@ public class Connection
 			throw new JRTIinternalError( "Async Messages no longer supported - move to Notificatins" );
 		
 		// Get an ID for the request
-		int requestId = responseCorrelator.register();
+		Pending<ResponseMessage> pending = responseCorrelator.register();
 		
 		// Send the message
 		PorticoMessage request = context.getRequest();
-		protocolStack.down( new Message(request,CallType.ControlRequest,requestId) );
+		protocolStack.down( newMessage(request,CallType.ControlRequest,pending.getId()) );
 
 		// Wait for the response
-		ResponseMessage response = responseCorrelator.waitFor( requestId );
+		ResponseMessage response = responseCorrelator.waitFor( pending );
 
 		// Package the response
 		if( response != null )
@@ -272,7 +335,58 @@ public class Connection
 		else
 			context.error( "No response received (request:"+request.getType()+") - RTI/Federates still running?" );
 	}
+
+	/**
+	 * Same as {@link #sendControlRequest(MessageContext)} except that this call does <b>NOT</b>
+	 * block. The request is sent and a future is returned that will be completed with the given
+	 * context once the response has been put into it (or the request has timed out, in which
+	 * case the context will hold an error). Use this for requests where the caller doesn't need
+	 * the answer before carrying on, so that any number of them can be in flight at once.
+	 * 
+	 * @param context Contains the request. Response will be put in here when it arrives.
+	 * @return A future that is completed with the context once it holds the response
+	 * @throws JRTIinternalError If there is a problem sending the request.
+	 */
+	public CompletableFuture<MessageContext> sendControlRequestAsync( MessageContext context )
+		throws JRTIinternalError
+	{
+		// Get an ID for the request; the correlator will time it out if nothing comes back
+		Pending<ResponseMessage> pending = responseCorrelator.registerAsync();
+
+		// Send the message
+		PorticoMessage request = context.getRequest();
+		protocolStack.down( newMessage(request,CallType.ControlRequest,pending.getId()) );
+
+		// Package the response when it arrives
+		return pending.handle( (response,error) -> {
+			if( response != null )
+				context.setResponse( response );
+			else
+				context.error( "No response received (request:"+request.getType()+") - RTI/Federates still running?" );
+
+			return context;
+		});
+	}
 	
+	/**
+	 * Wrap an outgoing message up for the protocol stack. If it can go to the other side as an
+	 * object (see {@link #isDeferring()}), serializing it is put off until something needs the
+	 * bytes.
+	 */
+	private Message newMessage( PorticoMessage message, CallType calltype, int requestId )
+	{
+		return new Message( message, calltype, requestId, isDeferring() );
+	}
+
+	/**
+	 * @return <code>true</code> if our transport passes objects and there are no protocols in the
+	 *         stack that would need the message bytes (encryption, authentication, ...)
+	 */
+	private boolean isDeferring()
+	{
+		return transport.isPassingObjects() && protocolStack.hasProtocols() == false;
+	}
+
 	///////////////////////////////////////////////////////////////////////////////////////
 	///  Message RECEIVING methods   //////////////////////////////////////////////////////
 	///////////////////////////////////////////////////////////////////////////////////////
@@ -288,7 +402,7 @@ public class Connection
 		switch( header.getCallType() )
 		{
 			case DataMessage:
-				appReceiver.receiveDataMessage( message.inflateAsPorticoMessage() );
+				appReceiver.receiveDataMessage( message );
 				break;
 			case Notification:
 				appReceiver.receiveNotification( message.inflateAsPorticoMessage() );
@@ -362,6 +476,15 @@ public class Connection
 		return this.protocolStack;
 	}
 
+	/**
+	 * @return <code>true</code> if this connection has a best effort channel and it is running.
+	 *         If not, best effort messages are just sent reliably.
+	 */
+	public boolean hasBestEffortChannel()
+	{
+		return this.bestEffortChannel != null && this.bestEffortChannel.isRunning();
+	}
+
 	public ResponseCorrelator<ResponseMessage> getResponseCorrelator()
 	{
 		return this.responseCorrelator;
@@ -17,6 +17,7 @@ package org.portico2.common.network;
 import org.portico.utils.bithelpers.BitHelpers;
 import org.portico.utils.bithelpers.BufferUnderflowException;
 import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.PorticoConstants;
 import org.portico2.common.messaging.MessageType;
 import org.portico2.common.messaging.ResponseMessage;
 import org.portico2.common.services.object.msg.SendInteraction;
@@ -58,6 +59,12 @@ public class Header
 	public static final int HEADER_LENGTH = 12;
 	public static final byte[] EMPTY_HEADER = new byte[HEADER_LENGTH];
 
+	/** Size in bytes of the optional header extension (present if the extended flag is set) */
+	public static final int EXTENSION_LENGTH = 4;
+
+	/** Largest request id that fits in the fixed header. Anything bigger needs the extension. */
+	public static final int MAX_SHORT_REQUEST_ID = 0xffff;
+
 	//----------------------------------------------------------
 	//                   INSTANCE VARIABLES
 	//----------------------------------------------------------
@@ -87,6 +94,7 @@ public class Header
 	//   "Flags:8,Payload Length:24"
 	//   "CType:4,FedID:4,MessageType:8,RequestId/FilteringId:16"
 	//   "Source Handle:16,Target Handle:16"
+	//   "(Optional) Request ID High:16,Reserved:16"
 	//   "Payload...:128"
 	//   "(Optional) Authentication Token:32,(Optional) Encryption Nonce:128"
 	//
@@ -99,6 +107,8 @@ public class Header
     // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
     // |         Source Handle         |         Target Handle         |
     // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+    // |  (Optional) Request ID High   |           Reserved            |
+    // +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
     // |                                                               |
     // +                                                               +
     // |                                                               |
@@ -121,28 +131,37 @@ public class Header
     //  == Lead Line ==
     //  (00-00)   | 1-bit  | Bundle?
     //  (01-01)   | 1-bit  | Encrypted? If true, Nonce/IV must be present
-    //  (02-02)   | 1-bit  | Filtering data present?
-    //  (03-03)   | 1-bit  | Object Handle (Filtering)? // 1=Object, 0=Interaction
-    //  (04-04)   | 1-bit  | Authenticated? If sender is authenticated, a token is included in the body
-    //  (05-05)   | 1-bit  | Manually Marshalled? If true, the message uses manual marshalling
-    //  (06-06)   | 1-bit  | Spare
-    //  (07-07)   | 1-bit  | Spare
-    //  (08-31)   | 24-bit | Payload Length: Range=16,777,216 (16MB) {EXCLUDES HEADER SIZE}
+    //  (02-02)   | 1-bit  | Authenticated? If sender is authenticated, a token is included in the body
+    //  (03-03)   | 1-bit  | Manually Marshalled? If true, the payload was written by a message codec
+    //  (04-04)   | 1-bit  | Filtering data present? If true, FilteringId holds a class handle
+    //  (05-05)   | 1-bit  | Object Class (Filtering)? // 1=Object Class, 0=Interaction Class
+    //  (06-06)   | 1-bit  | Best Effort? If true, may be sent over the best effort channel (if any)
+    //  (07-07)   | 1-bit  | Extended? If true, the header extension line is present
+    //  (08-31)   | 24-bit | Payload Length: Range=16,777,216 (16MB) {EXCLUDES FIXED HEADER SIZE}
+    //            |        | Includes the extension line (if present) so that framing code can
+    //            |        | always find the end of a message from the fixed header alone.
     //
     //  == Identification Line ==
     //  (32-35)   | 4-bit  | Call Type: uint4, Enum, {DataMessage,Notification,ControlRequest,ControlResponseOK,ControlResponseErr}
     //  (36-39)   | 4-bit  | Federation ID: uint4, range=1-16 
     //  (40-47)   | 8-bit  | Message Type: uint8, ID for the specific message type (uint8)
-    //  (48-63)   | 16-bit | Request ID: uint16, range=64k 
+    //  (48-63)   | 16-bit | Request ID: uint16, range=64k (control messages)
+    //            |        | Filtering ID: uint16, class handle (data messages with filtering set)
     //
     //  == Routing Line ==
     //  (64-79)   | 16-bit | Source Handle: uint16, handle of source federate 
     //  (80-95)   | 16-bit | Target Handle: uint16, handle of target federate
     //
+    //  == Extension Line (Optional) ==
+    //  (96-111)  | 16-bit | Request ID High: uint16, top 16 bits of the request id. Only control
+    //            |        | messages with an id above 65535 carry this, widening the id to 31-bits
+    //  (112-127) | 16-bit | Reserved
+    //
     // == Payload ==
     //  (96-xxx)  | Varies | Payload Data, padded out to nearest 32-bit boundary.
     //                       If neither Auth or Encryption is set, this will start
-    //                       earlier (as those headers won't be present).
+    //                       earlier (as those headers won't be present). Starts after
+    //                       the extension line if there is one.
 	//
 	
 	////////////////////////////////////////////////////////////////////////////////////////
@@ -155,8 +174,8 @@ public class Header
 	// 01 Manually Marshalled
 	// 01 Filtering                    // Handle stored in RequestID/FilteringID combo field
 	// 01 Object Handle (Filtering)    //
-	// 01 Spare
-	// 01 Spare
+	// 01 Best Effort
+	// 01 Extended                     // adds guaranteed +32
 	public final boolean isBundle()
 	{
 		return BitHelpers.readBooleanBit( buffer, offset, 0 );
@@ -217,6 +236,26 @@ public class Header
 		BitHelpers.putBooleanBit( isFilteringObjectClass, buffer, offset, 5 );
 	}
 
+	public final boolean isBestEffort()
+	{
+		return BitHelpers.readBooleanBit( buffer, offset, 6 );
+	}
+	
+	public final void writeIsBestEffort( boolean isBestEffort )
+	{
+		BitHelpers.putBooleanBit( isBestEffort, buffer, offset, 6 );
+	}
+
+	public final boolean isExtended()
+	{
+		return BitHelpers.readBooleanBit( buffer, offset, 7 );
+	}
+	
+	public final void writeIsExtended( boolean isExtended )
+	{
+		BitHelpers.putBooleanBit( isExtended, buffer, offset, 7 );
+	}
+
 	////////////////////////////////////////////////////////////////////////////////////////
 	///  Message/Header Length Methods   ///////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////
@@ -229,6 +268,15 @@ public class Header
 	{
 		BitHelpers.putUint24( payloadLength, buffer, offset+1 );
 	}
+
+	/**
+	 * @return The full length of the header, including the extension line if it is present.
+	 *         The message payload starts this many bytes after the start of the header.
+	 */
+	public final int getHeaderLength()
+	{
+		return isExtended() ? HEADER_LENGTH+EXTENSION_LENGTH : HEADER_LENGTH;
+	}
 	
 	////////////////////////////////////////////////////////////////////////////////////////
 	///  Identifier Line Methods   /////////////////////////////////////////////////////////
@@ -269,12 +317,25 @@ public class Header
 
 	public final int getRequestId()
 	{
-		return BitHelpers.readUint16( buffer, offset+6 );    // caution, doubles up with FilterId
+		int requestId = BitHelpers.readUint16( buffer, offset+6 ); // caution, doubles up with FilterId
+		if( isExtended() )
+			requestId |= BitHelpers.readUint16( buffer, offset+HEADER_LENGTH ) << 16;
+
+		return requestId;
 	}
 	
+	/**
+	 * Write the request id into the header. If the id is larger than {@link #MAX_SHORT_REQUEST_ID}
+	 * the extended flag must already be set (and space left for the extension line), otherwise
+	 * an exception is thrown.
+	 */
 	public final void writeRequestId( int requestId )
 	{
-		BitHelpers.putUint16( requestId, buffer, offset+6 ); // caution, doubles up with FilterId
+		BitHelpers.putUint16( requestId & 0xffff, buffer, offset+6 ); // caution, doubles up with FilterId
+		if( isExtended() )
+			BitHelpers.putUint16( requestId >>> 16, buffer, offset+HEADER_LENGTH );
+		else if( requestId > MAX_SHORT_REQUEST_ID )
+			throw new IllegalArgumentException( "Request id "+requestId+" requires an extended header" );
 	}
 
 	public final int getFilteringId()
@@ -316,6 +377,18 @@ public class Header
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
+	/**
+	 * Work out how much space to leave for the header of a message with the given call type and
+	 * request id. Only control messages with a request id too large for the fixed header need
+	 * the extension line. Data messages never carry one.
+	 */
+	public static int getHeaderLength( CallType calltype, int requestId )
+	{
+		if( calltype != CallType.DataMessage && requestId > MAX_SHORT_REQUEST_ID )
+			return HEADER_LENGTH+EXTENSION_LENGTH;
+		else
+			return HEADER_LENGTH;
+	}
 	
 	public static void writeHeader( byte[] buffer,           // buffer to write into
 	                                int byteOffset,          // offset to start at within buffer
@@ -343,24 +416,7 @@ public class Header
 		header.writeIsManualMarshal( message.supportsManualMarshal() );
 
 		// Filtering Flags
-		if( calltype == CallType.DataMessage )
-		{
-			// If this is a data message, we must write in the Filtering ID/Handle information
-			header.writeIsFiltering( true );
-			switch( message.getType() )
-			{
-				case UpdateAttributes:
-					header.writeIsFilteringObjectClass( true );
-					header.writeFilteringId( ((UpdateAttributes)message).getObjectId() );
-					break;
-				case SendInteraction:
-					header.writeIsFilteringObjectClass( false );
-					header.writeFilteringId( ((SendInteraction)message).getInteractionId() );
-					break;
-				default:
-					break;
-			}
-		}
+		// These share space with the request id, so they are written in the identification line
 
 		// Payload Length
 		header.writePayloadLength( payloadLength );
@@ -375,7 +431,15 @@ public class Header
 		header.writeCallType( calltype );
 		header.writeFederation( message.getTargetFederation() );
 		header.writeMessageType( message.getType() );
-		header.writeRequestId( reqOrFilteringId );
+		if( calltype == CallType.DataMessage )
+		{
+			writeFiltering( header, message );
+		}
+		else
+		{
+			header.writeIsExtended( reqOrFilteringId > MAX_SHORT_REQUEST_ID );
+			header.writeRequestId( reqOrFilteringId );
+		}
 		
 		// Routing
 		//   16-bit, Source FederateHandle (uint16)
@@ -384,6 +448,43 @@ public class Header
 		                                     message.getTargetFederate() );
 	}
 
+	/**
+	 * Data messages carry the handle of the class they relate to in the FilteringId field, so
+	 * that receivers (the RTI when routing, LRCs when discarding) can decide whether they care
+	 * about a message without having to inflate it. For updates this is the class the object was
+	 * registered as. For interactions it is the interaction class. If there is no class we can use
+	 * (or it won't fit in the field) the filtering flag is left clear and receivers must assume
+	 * that everyone is interested.
+	 */
+	private static void writeFiltering( Header header, PorticoMessage message )
+	{
+		int classHandle = PorticoConstants.NULL_HANDLE;
+		switch( message.getType() )
+		{
+			case UpdateAttributes:
+				header.writeIsFilteringObjectClass( true );
+				classHandle = ((UpdateAttributes)message).getObjectClass();
+				break;
+			case SendInteraction:
+				header.writeIsFilteringObjectClass( false );
+				classHandle = ((SendInteraction)message).getInteractionId();
+				break;
+			default:
+				break;
+		}
+
+		if( classHandle > 0 && classHandle <= 0xffff )
+		{
+			header.writeIsFiltering( true );
+			header.writeFilteringId( classHandle );
+		}
+		else
+		{
+			header.writeIsFiltering( false );
+			header.writeFilteringId( 0 );
+		}
+	}
+
 	public static void writeResponseHeader( byte[] buffer,
 	                                        int byteOffset,
 	                                        int requestId,
@@ -419,6 +520,7 @@ public class Header
 		                                             CallType.ControlResponseErr );
 		header.writeFederation( request.getTargetFederation() );
 		header.writeMessageType( request.getType() );
+		header.writeIsExtended( requestId > MAX_SHORT_REQUEST_ID );
 		header.writeRequestId( requestId ); // TODO Could this move into PorticoMessage?
 		
 		// Routing -- Flipped from request
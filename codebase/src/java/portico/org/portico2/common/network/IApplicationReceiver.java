@@ -102,10 +102,15 @@ public interface IApplicationReceiver
 	 * Their use is currently limited to attribute reflections and interactions. Although
 	 * these messages are only a small subset of all those available, in any given federation
 	 * they will represent the _vast_ majority of the volume of messages exchanged. 
+	 * <p/>
+	 * 
+	 * The message is passed in its serialized form. Receivers that only need to pass it on
+	 * can do so without paying to inflate it. Those that need the contents can call
+	 * {@link Message#inflateAsPorticoMessage()}.
 	 * 
-	 * @param message The message to send to all other federates
-	 * @throws JException If there is a problem sending the message
+	 * @param message The message that was received
+	 * @throws JException If there is a problem processing the message
 	 */
-	public void receiveDataMessage( PorticoMessage message ) throws JException;
+	public void receiveDataMessage( Message message ) throws JException;
 	
 }
@@ -14,10 +14,15 @@
  */
 package org.portico2.common.network;
 
+import java.util.Arrays;
+
 import org.portico.lrc.utils.MessageHelpers;
 import org.portico.utils.messaging.PorticoMessage;
 import org.portico2.common.messaging.MessageType;
 import org.portico2.common.messaging.ResponseMessage;
+import org.portico2.common.messaging.codec.MessageCodecs;
+import org.portico2.common.messaging.codec.UpdateAttributesCodec;
+import org.portico2.common.services.object.msg.UpdateAttributes;
 
 /**
  * NEW Structure of a message:
@@ -25,6 +30,18 @@ import org.portico2.common.messaging.ResponseMessage;
  *   - Payload
  *   - Auth Token (Optional) // layered in by auth protocol
  *   - Nonce      (Optional) // layered in by encryption protocol
+ *
+ * A message normally owns its buffer outright. Messages that are received as part of a bundle
+ * can instead be a view over a slice of a shared {@link PooledBuffer}, so that they don't have to
+ * be copied out of the bundle first. Such views hold a reference to the pooled buffer, which is
+ * only valid until {@link #release()} is called. Anything that needs to hold on to the raw bytes
+ * past that point must call {@link #getBuffer()}, which copies the message into an array of its
+ * own (once) and lets go of the pooled buffer.
+ * <p/>
+ * A message built from a {@link PorticoMessage} can also be <i>deferred</i>. A deferred message
+ * only has its header written. The payload is not serialized until something asks for the bytes,
+ * and transports that can hand the objects over directly (see {@link #copyDeferred()}) never
+ * serialize it at all.
  */
 
 public class Message
@@ -48,7 +65,18 @@ public class Message
 	
 	// serialized version of the message
 	private byte[] buffer;
+	private int offset;           // where the message starts in the buffer
+	private int length;           // length of the message (header and payload)
+	private PooledBuffer pooled;  // set if we are a view over a pooled buffer
 	private Header header;
+	private boolean deferred;     // only the header has been written, payload is still an object
+
+	// where a received message came from, so that a transport can send the response straight back
+	private Object returnAddress;
+	
+	// encrypted copy of the message, shared with any forwarded copies; see getSealed()
+	private Message origin;       // message we were forwarded from (if any)
+	private volatile Sealed sealed;
 	
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -63,6 +91,21 @@ public class Message
 	 * @param requestId The request ID, if any, for the call (will go into the header)
 	 */
 	public Message( PorticoMessage request, CallType calltype, int requestId )
+	{
+		this( request, calltype, requestId, false );
+	}
+
+	/**
+	 * Same as {@link #Message(PorticoMessage, CallType, int)}, except that if <code>defer</code>
+	 * is <code>true</code> only the header is written. The message is deflated the first time its
+	 * bytes are asked for, which for transports that pass objects around may be never.
+	 * 
+	 * @param request The request that has been made
+	 * @param calltype The type of call that it is (will go into the header)
+	 * @param requestId The request ID, if any, for the call (will go into the header)
+	 * @param defer Whether to put off serializing the message until the bytes are needed
+	 */
+	public Message( PorticoMessage request, CallType calltype, int requestId, boolean defer )
 	{
 		this.calltype = calltype;
 		this.requestId = requestId;
@@ -72,22 +115,66 @@ public class Message
 		this.requestHeader = null;    // set in deflateAndStoreResponse()
 		this.response = null;         // set in deflateAndStoreResponse()                       
 
-		// create a buffer big enough for the header and the message
-		// deflate the message into it
-		// populate the header in the buffer
-		this.buffer = MessageHelpers.deflate2( request, calltype, requestId );
+		if( defer )
+		{
+			// write the header only, payload length is filled in if we are ever deflated
+			this.buffer = new byte[Header.getHeaderLength(calltype,requestId)];
+			Header.writeHeader( buffer, 0, request, calltype, requestId, 0 );
+			this.deferred = true;
+		}
+		else
+		{
+			// create a buffer big enough for the header and the message
+			// deflate the message into it
+			// populate the header in the buffer
+			this.buffer = MessageHelpers.deflate2( request, calltype, requestId );
+		}
+
+		this.offset = 0;
+		this.length = buffer.length;
+		this.pooled = null;
 		this.header = new Header( buffer, 0 ); // FIXME
 	}
 	
 	public Message( byte[] buffer )
+	{
+		this( buffer, 0, buffer.length );
+	}
+
+	/**
+	 * Create a message that is a view over a slice of the given array. No copy is made.
+	 * 
+	 * @param buffer The array holding the message
+	 * @param offset Offset within the array that the message header starts at
+	 * @param length Length of the message (header and payload)
+	 */
+	public Message( byte[] buffer, int offset, int length )
 	{
 		this.buffer = buffer;
-		this.header = new Header( buffer, 0 );
+		this.offset = offset;
+		this.length = length;
+		this.pooled = null;
+		this.header = new Header( buffer, offset );
 		this.requestId = header.getRequestId();
 		this.calltype = this.header.getCallType();
 		this.messageType = this.header.getMessageType();
 	}
 
+	/**
+	 * Create a message that is a view over a slice of a pooled buffer. The message takes its own
+	 * reference to the buffer, which is given back when {@link #release()} is called (or when
+	 * the message is copied out or replaced).
+	 * 
+	 * @param pooled The pooled buffer holding the message
+	 * @param offset Offset within the buffer that the message header starts at
+	 * @param length Length of the message (header and payload)
+	 */
+	public Message( PooledBuffer pooled, int offset, int length )
+	{
+		this( pooled.array(), offset, length );
+		this.pooled = pooled.retain();
+	}
+
 	//----------------------------------------------------------
 	//                    INSTANCE METHODS
 	//----------------------------------------------------------
@@ -98,12 +185,17 @@ public class Message
 	 * {@link PorticoMessage} object, returning the result. The request object is lazy
 	 * loaded, so if you call {@link #getOriginalRequest()} before this method has been called,
 	 * the message class will implicitly call it on your behalf.
+	 * <p/>
+	 * The inflated object is cached, so calling this more than once only pays for the
+	 * deserialization the first time.
 	 * 
 	 * @return The {@link PorticoMessage} that represents the contained byte[] buffer (if present).
 	 */
 	public final PorticoMessage inflateAsPorticoMessage()
 	{
-		this.request = MessageHelpers.inflate2( buffer, PorticoMessage.class ); 
+		if( this.request == null )
+			this.request = MessageHelpers.inflate2( buffer, offset, length, PorticoMessage.class, null ); 
+
 		return request;
 	}
 	
@@ -114,19 +206,85 @@ public class Message
 	
 	public final ResponseMessage inflateAsResponse()
 	{
-		return MessageHelpers.inflate2( buffer, ResponseMessage.class );
+		// responses that were handed over as objects never had to be serialized
+		if( this.response != null )
+			return this.response;
+
+		return MessageHelpers.inflate2( buffer, offset, length, ResponseMessage.class, null );
 	}
 	
+	/**
+	 * Turn this message into the response to the request it holds. If the request came in as a
+	 * deferred message, the response is deferred too, so it can go back without being serialized.
+	 */
 	public final void deflateAndStoreResponse( ResponseMessage response )
 	{
 		if( this.request == null )
 			throw new IllegalArgumentException( "You cannot deflate a ResponseMessage without a request" );
 		
 		this.response = response;
-		this.requestHeader = new Header( buffer, 0 ); // store the old header
+
+		if( this.deferred )
+		{
+			this.requestHeader = new Header( Arrays.copyOf(buffer,buffer.length), 0 );
+			this.buffer = new byte[Header.getHeaderLength(CallType.ControlResponseOK,requestId)];
+			Header.writeResponseHeader( buffer, 0, requestId, response, request, 0 );
+			this.offset = 0;
+			this.length = buffer.length;
+			this.header = new Header( buffer, 0 );
+			return;
+		}
+
+		// store the old header; copy it out as the buffer may be a pooled one we're about to drop
+		byte[] oldHeader = new byte[Header.HEADER_LENGTH];
+		System.arraycopy( buffer, offset, oldHeader, 0, Header.HEADER_LENGTH );
+		this.requestHeader = new Header( oldHeader, 0 );
 		this.replaceBuffer( MessageHelpers.deflate2(response,this.requestId,this.request) );
 	}
 	
+	/**
+	 * Find the handle of the federation this message is targeted at. The header only carries a
+	 * 4-bit federation id, so for messages that were written with a codec we read the full handle
+	 * out of the payload prefix. Anything else has to be inflated to find out.
+	 * 
+	 * @return The handle of the federation the message is targeted at
+	 */
+	public final int getTargetFederation()
+	{
+		if( this.request != null )
+			return request.getTargetFederation();
+		else if( header.isManualMarshal() )
+			return MessageCodecs.peekTargetFederation( buffer, offset+header.getHeaderLength() );
+		else
+			return inflateAsPorticoMessage().getTargetFederation();
+	}
+
+	/**
+	 * Find the handles of the attributes carried by an attribute update. As with
+	 * {@link #getTargetFederation()}, messages written with a codec are read without being
+	 * inflated.
+	 * 
+	 * @return The handles of the attributes in the update, or <code>null</code> if this message
+	 *         isn't an attribute update
+	 */
+	public final int[] getAttributeHandles()
+	{
+		if( header.getMessageType() != MessageType.UpdateAttributes )
+			return null;
+
+		if( this.request == null && header.isManualMarshal() )
+		{
+			int headerLength = header.getHeaderLength();
+			return UpdateAttributesCodec.peekAttributeHandles( buffer,
+			                                                   offset+headerLength,
+			                                                   length-headerLength );
+		}
+
+		PorticoMessage update = this.request != null ? this.request : inflateAsPorticoMessage();
+		return ((UpdateAttributes)update).getAttributes().keySet().stream()
+		                                 .mapToInt( Integer::intValue ).toArray();
+	}
+
 	/**
 	 * Replace the existing buffer with the given one. This will generate a new header
 	 * based on the start of the new buffer and will update the buffer payload to be the
@@ -139,18 +297,172 @@ public class Message
 	 */
 	public final void replaceBuffer( byte[] buffer )
 	{
+		release();
+		this.deferred = false;
 		this.buffer = buffer;
+		this.offset = 0;
+		this.length = buffer.length;
 		this.header = new Header( buffer, 0 );
 		this.header.writePayloadLength( buffer.length-Header.HEADER_LENGTH );
 	}
 
+	/**
+	 * Same as {@link #replaceBuffer(byte[])}, but the new contents are held in a pooled buffer.
+	 * The message takes over the caller's reference to it, and gives it back when the message
+	 * is released (or copied out, see {@link #getBuffer()}).
+	 * 
+	 * @param pooled The buffer holding the new contents
+	 * @param length The length of the message in the buffer (header and payload)
+	 */
+	public final void replaceBuffer( PooledBuffer pooled, int length )
+	{
+		release();
+		this.deferred = false;
+		this.pooled = pooled;
+		this.buffer = pooled.array();
+		this.offset = 0;
+		this.length = length;
+		this.header = new Header( buffer, 0 );
+		this.header.writePayloadLength( length-Header.HEADER_LENGTH );
+	}
+
+	/**
+	 * Create a copy of this message to pass on to another connection. The copy wraps the same
+	 * buffer (see {@link #getBuffer()}), so protocols must replace rather than write into it.
+	 * Anything one connection leaves with the copy through {@link #setSealed(Object, byte[])}
+	 * is visible to all the other copies, so a message that goes out to many connections with
+	 * the same key only has to be encrypted once.
+	 */
+	public final Message forward()
+	{
+		Message copy = new Message( getBuffer() );
+		copy.origin = this.origin == null ? this : this.origin;
+		return copy;
+	}
+
+	/**
+	 * @param key Identifies the key (and anything else) the message was encrypted with
+	 * @return The encrypted version of this message left by {@link #setSealed(Object, byte[])}
+	 *         if it was made with an equal key, <code>null</code> otherwise
+	 */
+	public final byte[] getSealed( Object key )
+	{
+		Sealed current = (origin == null ? this : origin).sealed;
+		if( current != null && current.key.equals(key) )
+			return current.buffer;
+		else
+			return null;
+	}
+
+	/**
+	 * Leave an encrypted copy of this message for any other connections it is forwarded to.
+	 * The buffer is shared, so nobody can write into it once it is here.
+	 */
+	public final void setSealed( Object key, byte[] buffer )
+	{
+		(origin == null ? this : origin).sealed = new Sealed( key, buffer );
+	}
+
+	/**
+	 * If this message is a view over a pooled buffer, give our reference to it back. The bytes
+	 * must not be accessed through this message afterwards (although anything that was already
+	 * inflated remains available). Does nothing for messages that own their buffer.
+	 */
+	public final void release()
+	{
+		if( this.pooled == null )
+			return;
+
+		this.pooled.release();
+		this.pooled = null;
+		this.buffer = null;
+	}
+
+	/**
+	 * Create a copy of this deferred message to hand to a receiver in the same JVM, without it
+	 * ever being serialized. The receiver gets its own copy of the header, and its own copy of
+	 * the request (see {@link PorticoMessage#copyForReceiver()}), which includes any attribute
+	 * or parameter values, so that anything either side changes stays on that side. Responses
+	 * are handed over as they are, as the side that created them doesn't use them again.
+	 * 
+	 * @return A new deferred message holding the same request/response as this one
+	 * @throws IllegalStateException If this message isn't deferred
+	 */
+	public final Message copyDeferred()
+	{
+		if( this.deferred == false )
+			throw new IllegalStateException( "Only deferred messages can be copied as objects" );
+		
+		Message copy = new Message( Arrays.copyOf(buffer,buffer.length) );
+		copy.deferred = true;
+		copy.requestHeader = this.requestHeader;
+		copy.response = this.response;
+		if( this.response == null )
+			copy.request = this.request.copyForReceiver();
+		else
+			copy.request = this.request; // only needed if the response has to be deflated
+		
+		return copy;
+	}
+
+	/**
+	 * If this message is still deferred, serialize it now. The header is rewritten as part of
+	 * that, so any flags that were set on it since construction are carried over.
+	 */
+	private final void deflateDeferred()
+	{
+		if( this.deferred == false )
+			return;
+		
+		boolean bestEffort = header.isBestEffort();
+		if( this.response != null )
+			this.buffer = MessageHelpers.deflate2( response, requestId, request );
+		else
+			this.buffer = MessageHelpers.deflate2( request, calltype, requestId );
+		
+		this.deferred = false;
+		this.offset = 0;
+		this.length = buffer.length;
+		this.header = new Header( buffer, 0 );
+		this.header.writeIsBestEffort( bestEffort );
+	}
+
 
 	////////////////////////////////////////////////////////////////////////////////////////
 	///  Accessors and Mutators   //////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////
 	public final int getRequestId() { return this.requestId; }
 	public final Header getHeader() { return this.header; }
-	public final byte[] getBuffer() { return this.buffer; }
+	public final int getOffset() { deflateDeferred(); return this.offset; }
+	public final int getLength() { deflateDeferred(); return this.length; }
+
+	/**
+	 * Get the serialized message as an array of its own. If this message is a view over a slice
+	 * of a larger (or pooled) buffer, it is copied out the first time this is called, and the
+	 * pooled buffer is released. If you can work with the slice directly, use
+	 * {@link #getArray()}, {@link #getOffset()} and {@link #getLength()} instead.
+	 */
+	public final byte[] getBuffer()
+	{
+		if( this.buffer == null )
+			throw new IllegalStateException( "Message buffer has already been released" );
+
+		deflateDeferred();
+		if( pooled != null || offset != 0 || length != buffer.length )
+		{
+			byte[] copy = new byte[length];
+			System.arraycopy( buffer, offset, copy, 0, length );
+			release();
+			this.buffer = copy;
+			this.offset = 0;
+			this.header = new Header( copy, 0 );
+		}
+
+		return this.buffer;
+	}
+
+	/** @return The array the message is held in, which may be shared. See {@link #getOffset()}. */
+	public final byte[] getArray() { deflateDeferred(); return this.buffer; }
 	public final CallType getCallType() { return this.header.getCallType(); }
 	public final MessageType getMessageType() { return this.header.getMessageType(); }
 	public final boolean hasRequest() { return this.request != null; }
@@ -164,8 +476,31 @@ public class Message
 	public final boolean hasResponse() { return this.response != null; }
 	public final ResponseMessage getResponse() { return this.response; }
 
+	/** @return <code>true</code> if the message hasn't been serialized yet (only the header has) */
+	public final boolean isDeferred() { return this.deferred; }
+
+	/** @return Where the message was received from, if the transport recorded it. See
+	            {@link #setReturnAddress(Object)}. */
+	public final Object getReturnAddress() { return this.returnAddress; }
+
+	/** Transports can record where a message came from here, so that they can send the response
+	    straight back. The value means nothing outside of the transport that set it. */
+	public final void setReturnAddress( Object returnAddress ) { this.returnAddress = returnAddress; }
+
 	
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
+
+	/** Encrypted copy of a message, and the key that made it */
+	private static class Sealed
+	{
+		private final Object key;
+		private final byte[] buffer;
+		private Sealed( Object key, byte[] buffer )
+		{
+			this.key = key;
+			this.buffer = buffer;
+		}
+	}
 }
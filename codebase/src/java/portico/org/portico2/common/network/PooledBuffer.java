@@ -0,0 +1,96 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.network;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference counted byte[] handed out by a {@link BufferPool}. Whoever takes a buffer from
+ * the pool holds the first reference. Anyone else who wants to keep looking at the contents after
+ * the current call returns must {@link #retain()} it, and {@link #release()} it when done. Once
+ * the last reference has been released the array goes back to the pool and will be reused, so
+ * it must not be touched again.
+ * <p/>
+ *
+ * Forgetting to release a buffer is harmless: the pool just never sees it again and it gets
+ * garbage collected. Releasing one too many times is not, so only release what you retained.
+ */
+public class PooledBuffer
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private final byte[] array;
+	private final BufferPool pool; // null if the buffer was too big to pool
+	private final AtomicInteger references;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected PooledBuffer( byte[] array, BufferPool pool )
+	{
+		this.array = array;
+		this.pool = pool;
+		this.references = new AtomicInteger( 0 );
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/** Add a reference. The buffer will not be reused until this reference is released. */
+	public PooledBuffer retain()
+	{
+		references.incrementAndGet();
+		return this;
+	}
+
+	/** Drop a reference. When the last one goes, the buffer is returned to its pool. */
+	public void release()
+	{
+		int remaining = references.decrementAndGet();
+		if( remaining == 0 && pool != null )
+			pool.recycle( this );
+		else if( remaining < 0 )
+			throw new IllegalStateException( "PooledBuffer released more times than it was retained" );
+	}
+
+	/** Called by the pool when the buffer is handed out again */
+	protected void reset()
+	{
+		references.set( 1 );
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Accessors and Mutators   //////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/** @return The underlying array. It may be larger than the data that was put in it. */
+	public byte[] array()
+	{
+		return this.array;
+	}
+
+	public int getReferenceCount()
+	{
+		return this.references.get();
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -199,7 +199,13 @@ public class ProtocolStack
 	////////////////////////////////////////////////////////////////////////////////////////
 	///  Accessors and Mutators   //////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////
-	
+	/**
+	 * @return <code>true</code> if there are any protocols in the stack besides the transport
+	 */
+	public boolean hasProtocols()
+	{
+		return first.next() != last;
+	}
 	
 	//----------------------------------------------------------
 	//                     STATIC METHODS
@@ -14,10 +14,15 @@
  */
 package org.portico2.common.network;
 
-
-import java.util.Hashtable;
-import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -34,35 +39,42 @@ import java.util.concurrent.atomic.AtomicInteger;
  *   <li> Correlating incoming messages with their associated requests (and requestors) </li>
  * </ul>
  *   
- * To use it, a sender first registers their request via {@link #register()} and is given an ID
- * that can be used to fetch a request later on.
+ * To use it, a sender first registers their request via {@link #register()} and is given a
+ * {@link Pending} handle. The handle carries the ID that should be sent with the request, the
+ * deadline by which a response must arrive, and is itself a {@link CompletableFuture} that will
+ * be completed with the response.
  * <p/>
  * 
- * The sender then sends their message via whatever medium they want. They can then call
- * {@link #waitFor(int)}, passing in the ID of the request. This method will block until
- * either a response with that ID has been provided, or a timeout period has been reached.
- * There is an overload you can specify a precise timeout with, but the default timeout
- * can be set on the correlator (in milliseconds) via {@link #setTimeout(long)}.
+ * The sender then sends their message via whatever medium they want. If they want to block,
+ * they call {@link #waitFor(Pending)}, which returns the response or <code>null</code> if the
+ * deadline passed first. If they don't want to block, they register with
+ * {@link #registerAsync()} instead and just hang callbacks off the handle. Async requests
+ * are failed with a {@link TimeoutException} when their deadline passes, so any number of them
+ * can be in flight at once without anyone having to watch them. The default timeout can be set
+ * on the correlator (in milliseconds) via {@link #setTimeout(long)}, or given per request.
  * <p/>
  * 
  * On the input side, the medium receiving messages can offer them to the correlator via the
- * {@link #offer(int, Object)} method. The correlator will take and store the reference against
- * the ID if there is an outstanding request. It will then notify anybody waiting on the ID
- * that a response has arrived.
+ * {@link #offer(int, Object)} method. If there is an outstanding request with that ID, it is
+ * removed and its handle completed with the response. Anything else is ignored.
  * <p/>
  * 
- * Once someone has consumed the ID, it is available for use again, although the specific manner
- * in which IDs are generated is not specified and should not be assumed.
+ * IDs are handed out in sequence up to {@link #MAX_REQUEST_ID} before wrapping, and an ID
+ * that is still outstanding is never handed out again. IDs over 16-bits need the extended
+ * message header (see {@link Header#getHeaderLength(CallType, int)}).
  * <p/>
  * 
- * This class is <b>thread-safe</b>.
+ * This class is <b>thread-safe</b> and does not take any locks.
  */
 public class ResponseCorrelator<T>
 {
 	//----------------------------------------------------------
 	//                    STATIC VARIABLES
 	//----------------------------------------------------------
-	public static final int MAX_REQUEST_ID = 65535;
+	public static final int MAX_REQUEST_ID = Integer.MAX_VALUE;
+
+	/** Shared by all correlators to fail async requests that pass their deadline */
+	private static final ScheduledThreadPoolExecutor EXPIRY_TIMER = createExpiryTimer();
 
 	//----------------------------------------------------------
 	//                   INSTANCE VARIABLES
@@ -70,7 +82,7 @@ public class ResponseCorrelator<T>
 	private AtomicInteger idGenerator;
 	private long timeout;
 	
-	private Map<Integer,Holder> responseMap;
+	private ConcurrentMap<Integer,Pending<T>> responseMap;
 
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -79,80 +91,127 @@ public class ResponseCorrelator<T>
 	{
 		this.idGenerator = new AtomicInteger(0);
 		this.timeout = 2000;
-		this.responseMap = new Hashtable<>();
+		this.responseMap = new ConcurrentHashMap<>();
 	}
 
 	//----------------------------------------------------------
 	//                    INSTANCE METHODS
 	//----------------------------------------------------------
 	/**
-	 * Register a new request that will require correlation. This method will return
-	 * the unique ID that should be used for the request. After this call, the correlator
-	 * will keep an eye out for any incoming responses with this ID.
+	 * Register a new request that the caller will wait on with {@link #waitFor(Pending)}.
+	 * The request is given the default timeout.
 	 * 
-	 * @return The unique ID to send with the request
+	 * @return The handle for the request, containing the unique ID to send with it
 	 */
-	public int register()
+	public Pending<T> register()
 	{
-		int id = idGenerator.incrementAndGet();
-		if( id > MAX_REQUEST_ID )
+		return register( timeout );
+	}
+
+	/**
+	 * Same as {@link #register()}, but with a specific timeout for this request.
+	 */
+	public Pending<T> register( long timeoutMillis )
+	{
+		Pending<T> pending = new Pending<>( System.nanoTime() +
+		                                    TimeUnit.MILLISECONDS.toNanos(timeoutMillis) );
+		int id;
+		do
 		{
-			id = 0;
-			idGenerator.set( 0 );
+			id = nextId();
 		}
+		while( responseMap.putIfAbsent(id,pending) != null );
 
-		responseMap.put( id, new Holder() );
-		return id;
+		pending.id = id;
+		return pending;
 	}
-	
-	public T waitFor( int id )
+
+	/**
+	 * Register a new request that nobody is going to block on. When the request passes its
+	 * deadline the handle is completed exceptionally with a {@link TimeoutException} and
+	 * the ID is released. The request is given the default timeout.
+	 * 
+	 * @return The handle for the request, containing the unique ID to send with it
+	 */
+	public Pending<T> registerAsync()
 	{
-		return waitFor( id, timeout );
+		return registerAsync( timeout );
 	}
-	
-	public T waitFor( int id, long timeout )
+
+	/**
+	 * Same as {@link #registerAsync()}, but with a specific timeout for this request.
+	 */
+	public Pending<T> registerAsync( long timeoutMillis )
 	{
-		// Make sure we know about the request
-		if( responseMap.containsKey(id) == false )
-			throw new IllegalArgumentException( "ID not registered with response correlator: "+id );
-		
-		// Wait for a response to turn up
-		Holder holder = responseMap.get( id );
-		if( holder.isPresent() == false )
+		Pending<T> pending = register( timeoutMillis );
+		pending.expiry = EXPIRY_TIMER.schedule( () -> expire(pending),
+		                                        timeoutMillis,
+		                                        TimeUnit.MILLISECONDS );
+		return pending;
+	}
+
+	/**
+	 * Block until a response for the given request turns up, or its deadline passes. Either way
+	 * the request is no longer outstanding once this returns.
+	 * 
+	 * @return The response, or <code>null</code> if none arrived in time
+	 */
+	public T waitFor( Pending<T> pending )
+	{
+		try
 		{
-			try
-			{
-				synchronized( holder )
-				{
-					holder.wait( timeout );
-				}
-			}
-			catch( InterruptedException ie )
-			{
-				// We have been demanded to exit!
-			}
+			long remaining = pending.deadline - System.nanoTime();
+			return pending.get( Math.max(remaining,0), TimeUnit.NANOSECONDS );
+		}
+		catch( TimeoutException | ExecutionException e )
+		{
+			return null;
+		}
+		catch( InterruptedException ie )
+		{
+			// We have been demanded to exit!
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		finally
+		{
+			responseMap.remove( pending.id, pending );
 		}
-		
-		// We either have a response or not.
-		// Remove the request from the map and either return the response or null
-		responseMap.remove( id );
-		return holder.get();
 	}
 	
-	
+	/**
+	 * Hand the response for the request with the given ID to whoever registered it. If there
+	 * is no outstanding request with that ID (it never existed, or has timed out), the response
+	 * is discarded.
+	 */
 	public void offer( int id, T response )
 	{
-		// check to see if we are waiting for this request
-		if( responseMap.containsKey(id) == false )
+		Pending<T> pending = responseMap.remove( id );
+		if( pending == null )
 			return;
-		
-		// get the placeholder and notify anyone waiting on it
-		Holder holder = responseMap.get( id );
-		synchronized( holder )
-		{
-    		holder.set( response );
-    		holder.notifyAll();
-		}
+
+		if( pending.expiry != null )
+			pending.expiry.cancel( false );
+
+		pending.complete( response );
+	}
+
+	private void expire( Pending<T> pending )
+	{
+		if( responseMap.remove(pending.id,pending) )
+			pending.completeExceptionally( new TimeoutException("No response for request "+pending.id) );
+	}
+
+	/** Get the next ID in sequence, wrapping (and skipping 0) once we hit the maximum */
+	private int nextId()
+	{
+		int id = idGenerator.incrementAndGet();
+		if( id > 0 )
+			return id;
+
+		// we have overflowed; only one thread needs to win the reset
+		idGenerator.compareAndSet( id, 0 );
+		return nextId();
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////
@@ -163,41 +222,66 @@ public class ResponseCorrelator<T>
 		if( millis > 0 )
 			this.timeout = millis;
 	}
+
+	public long getTimeout()
+	{
+		return this.timeout;
+	}
 	
 	public boolean isRegistered( int id )
 	{
 		return responseMap.containsKey(id);
 	}
 
+	/**
+	 * @return The number of requests that are still waiting on a response
+	 */
+	public int getOutstandingCount()
+	{
+		return responseMap.size();
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
 	public static final int getUnregisteredRandomID()
 	{
-		return new Random().nextInt( MAX_REQUEST_ID );
+		return new Random().nextInt( Header.MAX_SHORT_REQUEST_ID );
+	}
+
+	private static ScheduledThreadPoolExecutor createExpiryTimer()
+	{
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor( 1, runnable -> {
+			Thread thread = new Thread( runnable, "portico-response-timeout" );
+			thread.setDaemon( true );
+			return thread;
+		});
+		
+		timer.setRemoveOnCancelPolicy( true ); // most requests get answered, don't let them pile up
+		return timer;
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////
-	///  Private Inner Class: Holder   /////////////////////////////////////////////////////
+	///  Public Inner Class: Pending   /////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////
-	private class Holder
+	/**
+	 * Handle for an outstanding request. Completed with the response when it arrives.
+	 */
+	public static class Pending<T> extends CompletableFuture<T>
 	{
-		private T value;
-		
-		public boolean isPresent()
-		{
-			return value != null;
-		}
-		
-		public T get()
+		private volatile int id;
+		private final long deadline;          // System.nanoTime() value
+		private volatile ScheduledFuture<?> expiry; // only set for async requests
+
+		private Pending( long deadline )
 		{
-			return this.value;
+			this.deadline = deadline;
+			this.expiry = null;
 		}
-		
-		public void set( T value )
+
+		public int getId()
 		{
-			this.value = value;
+			return this.id;
 		}
 	}
-
 }
@@ -17,6 +17,7 @@ package org.portico2.common.network.configuration;
 import org.portico.lrc.compat.JConfigurationException;
 import org.portico2.common.configuration.RID;
 import org.portico2.common.network.configuration.protocol.ProtocolStackConfiguration;
+import org.portico2.common.network.configuration.transport.BestEffortConfiguration;
 import org.portico2.common.network.configuration.transport.TransportConfiguration;
 import org.portico2.common.network.protocol.Protocol;
 import org.portico2.common.network.transport.Transport;
@@ -43,6 +44,7 @@ public class ConnectionConfiguration
 	private boolean enabled;
 	private TransportConfiguration transportConfiguration;
 	private ProtocolStackConfiguration protocolStackConfiguration;
+	private BestEffortConfiguration bestEffortConfiguration;
 
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -51,6 +53,8 @@ public class ConnectionConfiguration
 	{
 		this.name = name;
 		this.enabled = true;
+		this.protocolStackConfiguration = new ProtocolStackConfiguration(); // empty by default
+		this.bestEffortConfiguration = new BestEffortConfiguration(); // disabled by default
 	}
 
 	//----------------------------------------------------------
@@ -91,6 +95,14 @@ public class ConnectionConfiguration
 		this.protocolStackConfiguration = new ProtocolStackConfiguration();
 		if( protocolStackElement != null )
 			protocolStackConfiguration.parseConfiguration( rid, protocolStackElement );
+
+		///////////////////////////////////
+		// Best Effort Channel  ///////////
+		///////////////////////////////////
+		Element bestEffortElement = XmlUtils.getChild( element, "best-effort", false );
+		this.bestEffortConfiguration = new BestEffortConfiguration();
+		if( bestEffortElement != null )
+			bestEffortConfiguration.parseConfiguration( rid, bestEffortElement );
 	}
 
 	/**
@@ -120,6 +132,17 @@ public class ConnectionConfiguration
 	{
 		return this.protocolStackConfiguration;
 	}
+
+	/**
+	 * A connection can optionally have a best effort side channel for data messages. This
+	 * returns the configuration for it. It is disabled unless declared in the RID.
+	 * 
+	 * @return The configuration to use for the best effort channel
+	 */
+	public BestEffortConfiguration getBestEffortConfiguration()
+	{
+		return this.bestEffortConfiguration;
+	}
 	
 	////////////////////////////////////////////////////////////////////////////////////////
 	///  Accessors and Mutators   //////////////////////////////////////////////////////////
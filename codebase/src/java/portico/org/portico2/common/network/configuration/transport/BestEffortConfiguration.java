@@ -0,0 +1,217 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.network.configuration.transport;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.portico.lrc.compat.JConfigurationException;
+import org.portico2.common.configuration.RID;
+import org.portico2.common.network.configuration.protocol.ProtocolConfiguration;
+import org.portico2.common.network.protocol.ProtocolType;
+import org.portico2.common.network.transport.udp.BestEffortChannel;
+import org.w3c.dom.Element;
+
+/**
+ * Configuration for the optional {@link BestEffortChannel} that can sit alongside the main
+ * transport of a connection. It is loaded from a <code>&lt;best-effort&gt;</code> element
+ * inside the <code>&lt;connection&gt;</code>, and is disabled unless that element is present.
+ * <p/>
+ *
+ * Like a transport configuration this is not a "real" protocol, so {@link #getProtocolType()}
+ * always returns <code>null</code>.
+ */
+public class BestEffortConfiguration extends ProtocolConfiguration
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	public static final String KEY_ADDRESS     = "address";
+	public static final String KEY_PORT        = "port";
+	public static final String KEY_NIC         = "nic";
+	public static final String KEY_MAX_SIZE    = "max-size";
+
+	public static final String DEFAULT_ADDRESS  = "239.1.2.4";
+	public static final int    DEFAULT_PORT     = 20914;
+	public static final String DEFAULT_NIC      = "SITE_LOCAL";
+	public static final int    DEFAULT_MAX_SIZE = 1400; // keep under a typical MTU
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private String address;
+	private int port;
+	private String nic;
+	private int maxSize;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public BestEffortConfiguration()
+	{
+		super();
+		super.enabled = false; // only on if it is in the RID
+		this.address = DEFAULT_ADDRESS;
+		this.port    = DEFAULT_PORT;
+		this.nic     = DEFAULT_NIC;
+		this.maxSize = DEFAULT_MAX_SIZE;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+
+	/**
+	 * This will always return <code>null<code>. The best effort channel is not a protocol
+	 * that can be declared in the protocol stack.
+	 */
+	@Override
+	public ProtocolType getProtocolType()
+	{
+		return null;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////////
+	/// Configuration Loading   ////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public void parseConfiguration( RID rid, Element element ) throws JConfigurationException
+	{
+		// if the element is there, the channel is on unless told otherwise
+		this.enabled = true;
+		if( element.hasAttribute("enabled") )
+			this.enabled = Boolean.valueOf( element.getAttribute("enabled") );
+
+		try
+		{
+			if( element.hasAttribute(KEY_ADDRESS) )
+				this.setAddress( element.getAttribute(KEY_ADDRESS) );
+
+			if( element.hasAttribute(KEY_PORT) )
+				this.setPort( Integer.parseInt(element.getAttribute(KEY_PORT)) );
+
+			if( element.hasAttribute(KEY_NIC) )
+				this.setNic( element.getAttribute(KEY_NIC) );
+
+			if( element.hasAttribute(KEY_MAX_SIZE) )
+				this.setMaxSize( Integer.parseInt(element.getAttribute(KEY_MAX_SIZE)) );
+		}
+		catch( IllegalArgumentException iae )
+		{
+			throw new JConfigurationException( "Invalid <best-effort> configuration: "+iae.getMessage(), iae );
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Accessors and Mutators   //////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	public String getAddressString()
+	{
+		return this.address;
+	}
+
+	/**
+	 * @return the InetAddress for the multicast group to use
+	 */
+	public InetAddress getAddress()
+	{
+		try
+		{
+			return InetAddress.getByName( address );
+		}
+		catch( Exception e )
+		{
+			throw new RuntimeException( e );
+		}
+	}
+
+	/**
+	 * Set the multicast group that best effort messages are exchanged on. This should be a
+	 * different group (or port) to any multicast connection, as the traffic is not compatible.
+	 * 
+	 * @param address The address to use. Must be a valid multicast address.
+	 */
+	public void setAddress( String address )
+	{
+		try
+		{
+			InetAddress temp = InetAddress.getByName( address );
+			if( temp.isMulticastAddress() == false )
+				throw new IllegalArgumentException( address+" is not a valid multicast address" );
+			else
+				this.address = address;
+		}
+		catch( UnknownHostException e )
+		{
+			throw new IllegalArgumentException( address+" is not a valid multicast address" );
+		}
+	}
+
+	public int getPort()
+	{
+		return this.port;
+	}
+
+	public void setPort( int port )
+	{
+		if( port > 65536 )
+			throw new IllegalArgumentException( "Port must be in range 0-65536" );
+		else
+			this.port = port;
+	}
+
+	/**
+	 * @return String representing the NIC the channel should use. May be an IP address, a NIC
+	 *         name or one of the symbolic names: LOOPBACK, LINK_LOCAL, SITE_LOCAL or GLOBAL.
+	 */
+	public String getNic()
+	{
+		return this.nic;
+	}
+
+	public void setNic( String nic )
+	{
+		this.nic = nic;
+	}
+
+	/**
+	 * @return The largest message (in bytes, including the header) that will be sent best
+	 *         effort. Anything bigger is sent through the reliable transport instead, so we
+	 *         don't have to deal with datagram fragmentation.
+	 */
+	public int getMaxSize()
+	{
+		return this.maxSize;
+	}
+
+	public void setMaxSize( int maxSize )
+	{
+		if( maxSize < 64 || maxSize > 65000 )
+			throw new IllegalArgumentException( "Max size must be in range 64-65000" );
+		else
+			this.maxSize = maxSize;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format( "[Best Effort: enabled=%s, address=%s, port=%d, nic=%s, max-size=%d]",
+		                      super.enabled, address, port, nic, maxSize );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -14,6 +14,7 @@
  */
 package org.portico2.common.network.configuration.transport;
 
+import org.portico2.common.PorticoConstants;
 import org.portico2.common.configuration.RID;
 import org.portico2.common.network.configuration.ConnectionConfiguration;
 import org.portico2.common.network.transport.TransportType;
@@ -24,10 +25,12 @@ public class JvmConfiguration extends TransportConfiguration
 	//----------------------------------------------------------
 	//                    STATIC VARIABLES
 	//----------------------------------------------------------
+	public static final String KEY_PASS_OBJECTS = "passObjects";
 
 	//----------------------------------------------------------
 	//                   INSTANCE VARIABLES
 	//----------------------------------------------------------
+	private boolean passObjects;
 
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -35,6 +38,7 @@ public class JvmConfiguration extends TransportConfiguration
 	public JvmConfiguration( ConnectionConfiguration connectionConfiguration )
 	{
 		super( connectionConfiguration );
+		this.passObjects = PorticoConstants.isJvmPassObjects();
 	}
 
 	//----------------------------------------------------------
@@ -52,7 +56,8 @@ public class JvmConfiguration extends TransportConfiguration
 	@Override
 	public String toString()
 	{
-		return String.format( "[JVM: name=%s, enabled=%s]", super.name, super.enabled );
+		return String.format( "[JVM: name=%s, enabled=%s, passObjects=%s]",
+		                      super.name, super.enabled, passObjects );
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////////
@@ -61,6 +66,26 @@ public class JvmConfiguration extends TransportConfiguration
 	@Override
 	public void parseConfiguration( RID rid, Element element )
 	{
+		if( element.hasAttribute(KEY_PASS_OBJECTS) )
+			this.setPassObjects( Boolean.valueOf(element.getAttribute(KEY_PASS_OBJECTS)) );
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Accessors and Mutators   //////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return <code>true</code> if messages should be handed to the other connections in the
+	 *         JVM as objects rather than being serialized. Anything in the protocol stack that
+	 *         needs the bytes (encryption, for example) still gets them.
+	 */
+	public boolean isPassObjects()
+	{
+		return this.passObjects;
+	}
+
+	public void setPassObjects( boolean passObjects )
+	{
+		this.passObjects = passObjects;
 	}
 	
 	//----------------------------------------------------------
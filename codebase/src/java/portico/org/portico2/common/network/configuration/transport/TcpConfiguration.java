@@ -20,6 +20,8 @@ import org.portico.lrc.compat.JConfigurationException;
 import org.portico2.common.configuration.RID;
 import org.portico2.common.network.configuration.ConnectionConfiguration;
 import org.portico2.common.network.transport.TransportType;
+import org.portico2.common.network.transport.tcp.channel.OutboundQueue;
+import org.portico2.common.network.transport.tcp.channel.SlowConsumerPolicy;
 import org.portico2.common.utils.NetworkUtils;
 import org.w3c.dom.Element;
 
@@ -30,21 +32,31 @@ public class TcpConfiguration extends TransportConfiguration
 	//----------------------------------------------------------
 	public static final String KEY_ADDRESS     = "address";
 	public static final String KEY_PORT        = "port";
+	public static final String KEY_SELECTORS   = "selectors";
+	public static final String KEY_WORKERS     = "workers";
 
 	public static final String DEFAULT_ADDRESS = "SITE_LOCAL";
 	public static final int    DEFAULT_PORT    = 52295;
+	public static final int    DEFAULT_SELECTORS = Math.min( 4, Runtime.getRuntime().availableProcessors() );
+	public static final int    DEFAULT_WORKERS   = Math.max( 2, Runtime.getRuntime().availableProcessors() );
 	
 	// Bundling Properties
 	public static final String KEY_BUNDLING_ENABLED  = "bundling";
 	public static final String KEY_BUNDLING_MAX_SIZE = "bundling.maxSize";
 	public static final String KEY_BUNDLING_MAX_TIME = "bundling.maxTime";
 
+	// Outbound Queue Properties
+	public static final String KEY_OUTBOUND_MAX_QUEUED = "outbound.maxQueued";
+	public static final String KEY_SLOW_CONSUMER       = "outbound.slowConsumer";
+
 	//----------------------------------------------------------
 	//                   INSTANCE VARIABLES
 	//----------------------------------------------------------
 	private TransportType type;
 	private String address;
 	private int port;
+	private int selectors;  // number of event loops (nio-server only)
+	private int workers;    // number of message processing threads (nio-server only)
 	
 	private boolean recordMetrics;
 
@@ -52,13 +64,17 @@ public class TcpConfiguration extends TransportConfiguration
 	private boolean isBundling;
 	private int bundlingMaxSize;
 	private int bundlingMaxTime;
+
+	// Outbound Queue
+	private int outboundMaxQueued;
+	private SlowConsumerPolicy slowConsumerPolicy;
 	
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
 	//----------------------------------------------------------
 	/**
-	 * Create a new TcpConfiguration, which can be of type either {@link TransportType#TcpClient}
-	 * or {@link TransportType#TcpServer}.
+	 * Create a new TcpConfiguration, which can be of type {@link TransportType#TcpClient},
+	 * {@link TransportType#TcpServer} or {@link TransportType#NioServer}.
 	 * 
 	 * @param connectionConfiguration The configuration for the connection we are the transport for
 	 * @param transportType The specific transport type we're creating
@@ -66,12 +82,14 @@ public class TcpConfiguration extends TransportConfiguration
 	public TcpConfiguration( ConnectionConfiguration connectionConfiguration, TransportType transportType )
 	{
 		super( connectionConfiguration );
-		if( transportType != TransportType.TcpClient && transportType != TransportType.TcpServer )
-			throw new JConfigurationException( "TCP Configuration must have type of either tcp-client or tcp-server" );
+		if( isTcpType(transportType) == false )
+			throw new JConfigurationException( "TCP Configuration must have type of tcp-client, tcp-server or nio-server" );
 		
-		this.type    = transportType;
-		this.address = DEFAULT_ADDRESS;
-		this.port    = DEFAULT_PORT;
+		this.type      = transportType;
+		this.address   = DEFAULT_ADDRESS;
+		this.port      = DEFAULT_PORT;
+		this.selectors = DEFAULT_SELECTORS;
+		this.workers   = DEFAULT_WORKERS;
 		
 		this.recordMetrics = true;
 		
@@ -79,7 +97,10 @@ public class TcpConfiguration extends TransportConfiguration
 		this.isBundling = false;
 		this.bundlingMaxSize = 64000; // 64k
 		this.bundlingMaxTime = 20000; // 20ms
-		
+
+		// Outbound Queue
+		this.outboundMaxQueued = OutboundQueue.DEFAULT_MAX_QUEUED;
+		this.slowConsumerPolicy = SlowConsumerPolicy.Block;
 	}
 	
 	//----------------------------------------------------------
@@ -87,7 +108,8 @@ public class TcpConfiguration extends TransportConfiguration
 	//----------------------------------------------------------
 
 	/**
-	 * Can be {@link TransportType#TcpClient} or {@link TransportType#TcpServer}.
+	 * Can be {@link TransportType#TcpClient}, {@link TransportType#TcpServer} or
+	 * {@link TransportType#NioServer}.
 	 */
 	@Override
 	public TransportType getTransportType()
@@ -98,8 +120,8 @@ public class TcpConfiguration extends TransportConfiguration
 	@Override
 	public String toString()
 	{
-		return String.format( "[TCP: name=%s, enabled=%s, transport=%s, address=%s, port=%d]",
-		                      super.name, super.enabled, type, address, port );
+		return String.format( "[TCP: name=%s, enabled=%s, transport=%s, address=%s, port=%d, selectors=%d, workers=%d]",
+		                      super.name, super.enabled, type, address, port, selectors, workers );
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////////
@@ -117,6 +139,19 @@ public class TcpConfiguration extends TransportConfiguration
 		
 		if( element.hasAttribute("port") )
 			this.setPort( Integer.parseInt(element.getAttribute("port")) );
+
+		if( element.hasAttribute(KEY_SELECTORS) )
+			this.setSelectors( Integer.parseInt(element.getAttribute(KEY_SELECTORS)) );
+
+		if( element.hasAttribute(KEY_WORKERS) )
+			this.setWorkers( Integer.parseInt(element.getAttribute(KEY_WORKERS)) );
+
+		// outbound queue and slow consumer handling
+		if( element.hasAttribute(KEY_OUTBOUND_MAX_QUEUED) )
+			this.setOutboundMaxQueued( Integer.parseInt(element.getAttribute(KEY_OUTBOUND_MAX_QUEUED)) );
+
+		if( element.hasAttribute(KEY_SLOW_CONSUMER) )
+			this.setSlowConsumerPolicy( SlowConsumerPolicy.fromString(element.getAttribute(KEY_SLOW_CONSUMER)) );
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////
@@ -124,10 +159,10 @@ public class TcpConfiguration extends TransportConfiguration
 	////////////////////////////////////////////////////////////////////////////////////////
 	public void setTransportType( TransportType type )
 	{
-		if( type == TransportType.TcpServer || type == TransportType.TcpClient )
+		if( isTcpType(type) )
 			this.type = type;
 		else
-			throw new JConfigurationException( "TCP connections must have the type 'tcp-server' or 'tcp-client': "+type );
+			throw new JConfigurationException( "TCP connections must have the type 'tcp-server', 'tcp-client' or 'nio-server': "+type );
 	}
 	
 	public String getAddressString()
@@ -165,6 +200,42 @@ public class TcpConfiguration extends TransportConfiguration
 			this.port = port;
 	}
 
+	/**
+	 * @return The number of selector event loops the nio-server will spread its client connections
+	 *         across. Ignored by the other TCP transports. Defaults to the number of processors,
+	 *         capped at 4.
+	 */
+	public int getSelectors()
+	{
+		return this.selectors;
+	}
+
+	public void setSelectors( int selectors )
+	{
+		if( selectors < 1 )
+			throw new JConfigurationException( "Number of selectors must be at least 1: "+selectors );
+		else
+			this.selectors = selectors;
+	}
+
+	/**
+	 * @return The number of worker threads the nio-server uses to pass received messages up the
+	 *         stack. Ignored by the other TCP transports. Defaults to the number of processors,
+	 *         with a minimum of 2.
+	 */
+	public int getWorkers()
+	{
+		return this.workers;
+	}
+
+	public void setWorkers( int workers )
+	{
+		if( workers < 1 )
+			throw new JConfigurationException( "Number of workers must be at least 1: "+workers );
+		else
+			this.workers = workers;
+	}
+
 	public boolean isRecordMetrics()
 	{
 		return this.recordMetrics;
@@ -257,7 +328,49 @@ public class TcpConfiguration extends TransportConfiguration
 		this.bundlingMaxTime = millis;
 	}
 
+	////////////////////////////////////////////////////////////////////////////////////////////
+	/// Outbound Queue Settings   //////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * @return The number of messages a single connection can have waiting to be written before
+	 *         the slow consumer policy is applied. A client that reaches twice this is
+	 *         disconnected. Default is 65536.
+	 */
+	public int getOutboundMaxQueued()
+	{
+		return this.outboundMaxQueued;
+	}
+
+	public void setOutboundMaxQueued( int maxQueued )
+	{
+		if( maxQueued < 1 )
+			throw new JConfigurationException( "Outbound queue limit must be at least 1: "+maxQueued );
+		else
+			this.outboundMaxQueued = maxQueued;
+	}
+
+	/**
+	 * @return What to do when a connection reaches its outbound queue limit. Default is
+	 *         {@link SlowConsumerPolicy#Block}, which keeps the old behaviour of making the
+	 *         sender wait. Use Drop or Conflate to stop one slow client holding up the others.
+	 */
+	public SlowConsumerPolicy getSlowConsumerPolicy()
+	{
+		return this.slowConsumerPolicy;
+	}
+
+	public void setSlowConsumerPolicy( SlowConsumerPolicy policy )
+	{
+		this.slowConsumerPolicy = policy;
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
+	private static boolean isTcpType( TransportType type )
+	{
+		return type == TransportType.TcpClient ||
+		       type == TransportType.TcpServer ||
+		       type == TransportType.NioServer;
+	}
 }
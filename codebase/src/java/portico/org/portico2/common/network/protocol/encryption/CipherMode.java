@@ -14,8 +14,12 @@
  */
 package org.portico2.common.network.protocol.encryption;
 
+import java.security.spec.AlgorithmParameterSpec;
 import java.util.Arrays;
 
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
 public enum CipherMode
 {
 	//----------------------------------------------------------
@@ -24,26 +28,32 @@ public enum CipherMode
 	/* I've ruled out the first two options due to the following:
 	 *   ECB: No IV & Block mode (see CBC)
 	 *   CBC: Block mode gives us variable payload sizes that are more work to encode/decode
+	 * GCM is the only authenticated mode. Its cipher text carries a 16-byte tag on the end.
 	 */
 	//ECB( 0, "AES/ECB/PKCS7Padding", true, 16 ),// Electronic Codebook            // no IV
 	//CBC( 0, "AES/CBC/PKCS7Padding", true, 16 ),// Cipher Block Chaining          // variable payload
-	CFB( 0, "AES/CFB/NoPadding" ),               // Cipher Feedback 
-	CTR( 1, "AES/CTR/NoPadding" ),               // Counter Mode     **default**
-	CTS( 2, "AES/CBC/CS3Padding" );              // CBC with Ciphertext Stealing (CTS)
+	CFB( 0, "AES/CFB/NoPadding", 16, 0 ),        // Cipher Feedback 
+	CTR( 1, "AES/CTR/NoPadding", 16, 0 ),        // Counter Mode     **default**
+	CTS( 2, "AES/CBC/CS3Padding", 16, 0 ),       // CBC with Ciphertext Stealing (CTS)
+	GCM( 3, "AES/GCM/NoPadding", 12, 16 );       // Galois/Counter Mode (authenticated, 128-bit tag)
 	
 	//----------------------------------------------------------
 	//                   INSTANCE VARIABLES
 	//----------------------------------------------------------
 	private int id;
 	private String configString;
+	private int ivSize;
+	private int tagSize;
 
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
 	//----------------------------------------------------------
-	private CipherMode( int id, String configString )
+	private CipherMode( int id, String configString, int ivSize, int tagSize )
 	{
 		this.id = id;
 		this.configString = configString;
+		this.ivSize = ivSize;
+		this.tagSize = tagSize;
 	}
 
 	//----------------------------------------------------------
@@ -67,15 +77,32 @@ public enum CipherMode
 
 	public final int getCipherTextSize( int plainTextSize )
 	{
-		// currently, all supported modes generate a cipher text that is the
-		// same size as the original plain text
-		return plainTextSize;
+		// the stream-like modes generate a cipher text that is the same size as the original
+		// plain text, authenticated modes add their tag on the end
+		return plainTextSize + tagSize;
 	}
 
 	public final int getIvSize()
 	{
-		// currently, we only support AES which has a 128-bit block size, so that's what IV is
-		return 16;
+		return this.ivSize;
+	}
+
+	/** @return Size of the authentication tag added to the cipher text (0 if not authenticated) */
+	public final int getTagSize()
+	{
+		return this.tagSize;
+	}
+
+	/**
+	 * @return The parameters needed to initialize a cipher for this mode with the IV found at
+	 *         the given offset in the buffer
+	 */
+	public final AlgorithmParameterSpec getParameterSpec( byte[] buffer, int offset )
+	{
+		if( tagSize > 0 )
+			return new GCMParameterSpec( tagSize*8, buffer, offset, ivSize );
+		else
+			return new IvParameterSpec( buffer, offset, ivSize );
 	}
 
 	//----------------------------------------------------------
@@ -85,9 +112,10 @@ public enum CipherMode
 	{
 		switch( id )
 		{
-			case 1: return CFB;
-			case 2: return CTR;
-			case 3: return CTS;
+			case 0: return CFB;
+			case 1: return CTR;
+			case 2: return CTS;
+			case 3: return GCM;
 			default: throw new IllegalArgumentException( "Cipher Mode id not known: "+id );
 		}
 	}
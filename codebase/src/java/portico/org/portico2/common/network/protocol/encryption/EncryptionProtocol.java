@@ -15,19 +15,22 @@
 package org.portico2.common.network.protocol.encryption;
 
 import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.security.Security;
+import java.util.Arrays;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.bouncycastle.jcajce.provider.BouncyCastleFipsProvider;
 import org.portico.lrc.compat.JConfigurationException;
 import org.portico.lrc.compat.JRTIinternalError;
+import org.portico2.common.network.BufferPool;
 import org.portico2.common.network.Connection;
 import org.portico2.common.network.Header;
 import org.portico2.common.network.Message;
+import org.portico2.common.network.PooledBuffer;
 import org.portico2.common.network.configuration.protocol.EncryptionConfiguration;
 import org.portico2.common.network.configuration.protocol.ProtocolConfiguration;
 import org.portico2.common.network.protocol.Protocol;
@@ -48,6 +51,24 @@ import org.portico2.common.network.protocol.Protocol;
  * <p>If we don't have a key and we receive a federation-level message, we throw an exception.
  * Things should never get that far without us having our key and something is wrong. However,
  * to allow setup to happen, we let non-federation messages get through unencrypted.</p>
+ * 
+ * <p><b>Threading</b></p>
+ * <p>Ciphers are not thread safe, so each thread that passes through here gets its own pair
+ * (see {@link CipherContext}). Nothing is locked, so messages can be encrypted on as many cores
+ * as there are threads sending them. Decrypted messages are written into buffers from a pool,
+ * which go back to the pool when the message is released.</p>
+ * 
+ * <p>When the RTI forwards one message to many connections, each connection encrypts it for
+ * itself. The first one to do so leaves the result with the message (see
+ * {@link Message#getSealed(Object)}), and any other connection using the same key just sends
+ * that rather than encrypting it again.</p>
+ * 
+ * <p><b>Header Authentication</b></p>
+ * <p>The header is left in the clear. In GCM mode the parts of it that stay the same in transit
+ * (call type, federation id, message type, request/filtering id and source) are bound into the
+ * tag, so a message whose header has been tampered with fails to decrypt. The flags, length and
+ * target aren't covered: the length and encrypted flag are written after encryption, and the
+ * best effort channel rewrites the flags and target of the copy it sends to the RTI.</p>
  */
 public class EncryptionProtocol extends Protocol
 {
@@ -56,6 +77,15 @@ public class EncryptionProtocol extends Protocol
 	//----------------------------------------------------------
 	static{ Security.addProvider(new BouncyCastleFipsProvider()); }
 
+	/** Largest decrypted message we'll pool the buffer for. Anything bigger gets a one-off array */
+	private static final int MAX_POOLED_MESSAGE = 64 * 1024;
+	/** Spare buffers kept per size class */
+	private static final int POOLED_PER_CLASS = 16;
+
+	/** Header bytes bound into the GCM tag: call type/federation id through to the source */
+	private static final int AAD_OFFSET = 4;
+	private static final int AAD_LENGTH = 6;
+
 	//----------------------------------------------------------
 	//                   INSTANCE VARIABLES
 	//----------------------------------------------------------
@@ -63,9 +93,10 @@ public class EncryptionProtocol extends Protocol
 
 	private boolean isEnabled;
 	private CipherMode cipherMode;
-	private SecretKey sessionKey;
-	private Cipher encryptCipher;
-	private Cipher decryptCipher;
+	private volatile SecretKey sessionKey;
+	private volatile Object sealingKey;  // session key and cipher mode; see Message.getSealed()
+	private ThreadLocal<CipherContext> contexts;
+	private BufferPool bufferPool; // buffers incoming messages are decrypted into
 
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -79,8 +110,8 @@ public class EncryptionProtocol extends Protocol
 		this.isEnabled = false;      // set in configure()
 		this.cipherMode = CipherMode.defaultMode(); // set in configure()
 		this.sessionKey = null;      // set in open()
-		this.encryptCipher = null;   // set in configure()
-		this.decryptCipher = null;   // set in configure()		
+		this.contexts = null;        // set in configure()
+		this.bufferPool = new BufferPool( MAX_POOLED_MESSAGE, POOLED_PER_CLASS );
 	}
 
 	//----------------------------------------------------------
@@ -100,18 +131,19 @@ public class EncryptionProtocol extends Protocol
 		this.isEnabled = configuration.isEnabled();
 		this.cipherMode = configuration.getCipherConfig();
 		
-		// Create the Ciphers
+		// Create the Ciphers. Each thread makes its own set the first time it needs them, but
+		// make one now so that any problem with the configuration shows up here.
 		try
 		{
-			String configString = configuration.getCipherConfig().getConfigString();
-			this.encryptCipher = Cipher.getInstance( configString, "BCFIPS" );
-			this.decryptCipher = Cipher.getInstance( configString, "BCFIPS" );
+			new CipherContext();
 		}
 		catch( Exception e )
 		{
 			throw new JConfigurationException( "Error while setting up ciphers: "+e.getMessage(), e );
 		}
 		
+		this.contexts = ThreadLocal.withInitial( this::newCipherContext );
+		
 		// Shared key is extracted in open() call, or set by a the Auth protocol above
 		// us if we are getting it from the RTI
 	}
@@ -231,12 +263,25 @@ public class EncryptionProtocol extends Protocol
 			throw new IllegalArgumentException( "Key bit-length incorrect for AES (128, 192, 256): Found="+sessionKey.length );
  
 		this.sessionKey = new SecretKeySpec( sessionKey, "AES" );
+		this.sealingKey = Arrays.asList( this.sessionKey, this.cipherMode );
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////
 	///  Encryption/Decryption Methods   ///////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////
-	private synchronized void encrypt( Message message ) throws JRTIinternalError
+	private CipherContext newCipherContext() throws JRTIinternalError
+	{
+		try
+		{
+			return new CipherContext();
+		}
+		catch( GeneralSecurityException gse )
+		{
+			throw new JRTIinternalError( "Error while setting up ciphers: "+gse.getMessage(), gse );
+		}
+	}
+
+	private void encrypt( Message message ) throws JRTIinternalError
 	{
 		//
 		// Note that if authentication is being used it will have been layered into
@@ -244,105 +289,147 @@ public class EncryptionProtocol extends Protocol
 		//
 		
 		// Unencrypted Message Structure (Before):
-		//    Header  [12 Bytes]
+		//    Header  [12 Bytes, 16 if extended]
 		//    Payload [xx Bytes]
 		//
 		// Encrypted Message Structure (After):
-		//    Header      [12 Bytes]
-		//    Payload     [xx+16 Bytes]
-		//       Data         [xx Bytes]
-		//       IV/Nonce     [16 Bytes]   -- may be different size
+		//    Header      [12 Bytes, 16 if extended] -- left in the clear
+		//    Payload     [xx+iv Bytes, +16 for GCM tag]
+		//       Data         [xx Bytes, +16 for the GCM tag]
+		//       IV/Nonce     [16 Bytes, 12 for GCM]
 		//
 
-		// Step 1. Get the original message buffer.
-		//         We want to retain the header, but encrypt the payload.
-		byte[] original = message.getBuffer();
+		// Step 1. If this message has already been encrypted with our key for another
+		//         connection, just send that
+		SecretKey key = this.sessionKey;
+		byte[] sealed = message.getSealed( sealingKey );
+		if( sealed != null )
+		{
+			message.replaceBuffer( sealed );
+			return;
+		}
+		
+		// Step 2. Get the original message. We want to retain the header, but encrypt the
+		//         payload. The message may be a slice of a larger buffer, so work from its
+		//         offset rather than copy it out.
+		byte[] original = message.getArray();
+		int offset = message.getOffset();
 		int payloadLength = message.getHeader().getPayloadLength();
+		int headerLength = message.getHeader().getHeaderLength();
+		int dataLength = message.getLength() - headerLength;
 		
-		// Step 2. Create a new buffer large enough to hold the encrypted output
+		// Step 3. Create a new buffer large enough to hold the encrypted output and
+		//         generate a fresh IV straight into its tail
 		int ivSize = cipherMode.getIvSize();
-		byte[] target = new byte[original.length + 4/*auth*/ + ivSize];
+		int cipherLength = cipherMode.getCipherTextSize( dataLength );
+		byte[] target = new byte[headerLength + cipherLength + ivSize];
+		CipherContext context = contexts.get();
+		context.random.nextBytes( context.iv );
+		System.arraycopy( context.iv, 0, target, headerLength+cipherLength, ivSize );
 		
-		// Step 3. Encryption
-		//         Do the encryption, writing the CT into the new array.
-		//         Write the IV into the start of the payload section.
+		// Step 4. Encryption
+		//         Do the encryption, writing the CT into the new array after the header.
 		try
 		{
-			// Initialize the encrypter. This will generate a new IV.
-			encryptCipher.init( Cipher.ENCRYPT_MODE, sessionKey );
-			
-			// Write the Cipher Text first
-			encryptCipher.doFinal( original,                          // Source
-			                       Header.HEADER_LENGTH,              // Source Offset
-			                       payloadLength,                     // Length to read
-			                       target,                            // Destination
-			                       Header.HEADER_LENGTH );            // Destination Offset
+			context.encrypter.init( Cipher.ENCRYPT_MODE,
+			                        key,
+			                        cipherMode.getParameterSpec(context.iv,0) );
+			updateAAD( context.encrypter, original, offset, headerLength );
 			
-			// Write the IV last
-			System.arraycopy( encryptCipher.getIV(),                  // Source
-			                  0,                                      // Source Offset
-			                  target,                                 // Destination
-			                  Header.HEADER_LENGTH+payloadLength,     // IV Offset
-			                  ivSize );                               // Num bytes to copy
+			context.encrypter.doFinal( original,                      // Source
+			                           offset+headerLength,           // Source Offset
+			                           dataLength,                    // Length to read
+			                           target,                        // Destination
+			                           headerLength );                // Destination Offset
 		}
 		catch( GeneralSecurityException gse )
 		{
 			throw new JRTIinternalError( "Error encrypting message: "+gse.getMessage(), gse );
 		}
 
-		// Step 4. Write the original header into the new target
-		System.arraycopy( original, 0, target, 0, Header.HEADER_LENGTH );
+		// Step 5. Write the original header into the new target
+		System.arraycopy( original, offset, target, 0, headerLength );
 		
-		// Step 5. Store the updated payload back in the message and update the header
+		// Step 6. Store the updated payload back in the message and update the header.
+		//         Leave a copy with the message in case it is also going somewhere else.
 		message.replaceBuffer( target );
 		message.getHeader().writeIsEncrypted( true );
-		message.getHeader().writePayloadLength( payloadLength + ivSize );
+		message.getHeader().writePayloadLength( payloadLength + (cipherLength-dataLength) + ivSize );
+		message.setSealed( sealingKey, target );
 	}
 	
-	private synchronized void decrypt( Message message ) throws JRTIinternalError
+	private void decrypt( Message message ) throws JRTIinternalError
 	{
 		if( message.getHeader().isEncrypted() == false )
 			return;
 
 		// Step 1. Get the original message buffer.
-		//         We want to retain the header, but decrypt the payload.
-		byte[] original = message.getBuffer();
+		//         We want to retain the header, but decrypt the payload. The message may
+		//         be a slice of a larger bundle, so work from its offset rather than copy it.
+		byte[] original = message.getArray();
+		int offset = message.getOffset();
+		int length = message.getLength();
 		int payloadLength = message.getHeader().getPayloadLength();
+		int headerLength = message.getHeader().getHeaderLength();
+		int extensionLength = headerLength - Header.HEADER_LENGTH;
 		
-		// Step 2. Create a new buffer of reduced size to hold just the plain text
+		// Step 2. Get a buffer from the pool to hold just the plain text
 		int ivSize = cipherMode.getIvSize();
-		byte[] target = new byte[original.length-ivSize];
+		int tagSize = cipherMode.getTagSize();
+		int cipherLength = payloadLength-extensionLength-ivSize;
+		int plainLength = length-ivSize-tagSize;
+		PooledBuffer target = bufferPool.acquire( plainLength );
 
 		// Step 3. Decryption
 		//         Extract the IV from the tail of the payload and then decrypt the contents
-		//         in place, replacing the original buffer with the plain text version.
+		//         into the target buffer, which replaces the original in the message.
 		try
 		{
-			// Read the IV from the tail of the payload         [ <---- Offset ----> ]
-			IvParameterSpec iv = new IvParameterSpec( original, original.length-ivSize, ivSize );
-			
-			// Initialize the decrypter
-			decryptCipher.init( Cipher.DECRYPT_MODE, sessionKey, iv );
+			// Initialize the decrypter with the IV from the tail of the payload
+			CipherContext context = contexts.get();
+			context.decrypter.init( Cipher.DECRYPT_MODE,
+			                        sessionKey,
+			                        cipherMode.getParameterSpec(original,offset+length-ivSize) );
+			updateAAD( context.decrypter, original, offset, headerLength );
 
 			// Decrypt the contents
-			decryptCipher.doFinal( original,
-			                       Header.HEADER_LENGTH,   // Offset to CT payload
-			                       payloadLength-ivSize,   // Size of section to decrypt
-			                       target,                 // Output buffer
-			                       Header.HEADER_LENGTH ); // Offset into output
+			context.decrypter.doFinal( original,
+			                           offset+headerLength,    // Offset to CT payload
+			                           cipherLength,           // Size of section to decrypt
+			                           target.array(),         // Output buffer
+			                           headerLength );         // Offset into output
 		}
 		catch( GeneralSecurityException gse )
 		{
+			// a failed decrypt (a bad tag, say) can leave data buffered in the cipher, so
+			// throw this thread's ciphers away rather than let it spoil the next message
+			contexts.remove();
+			target.release();
 			throw new JRTIinternalError( "Error decrypting message: "+gse.getMessage(), gse );
 		}
 
 		// Step 4. Write the original header into the new target
-		System.arraycopy( original, 0, target, 0, Header.HEADER_LENGTH );
+		System.arraycopy( original, offset, target.array(), 0, headerLength );
 		
 		// Step 5. Store the updated payload back in the message and update the header
-		message.replaceBuffer( target );
+		message.replaceBuffer( target, plainLength );
 		message.getHeader().writeIsEncrypted( false );
-		message.getHeader().writePayloadLength( payloadLength-ivSize );
+		message.getHeader().writePayloadLength( payloadLength-ivSize-tagSize );
+	}
+
+	/**
+	 * In an authenticated mode (GCM), feed the header fields that don't change in transit to
+	 * the cipher as additional authenticated data. This includes the extension line if there is
+	 * one. See the class comments for why the rest of the header isn't covered.
+	 */
+	private void updateAAD( Cipher cipher, byte[] buffer, int offset, int headerLength )
+	{
+		if( cipherMode.getTagSize() == 0 )
+			return;
+
+		cipher.updateAAD( buffer, offset+AAD_OFFSET, AAD_LENGTH );
+		if( headerLength > Header.HEADER_LENGTH )
+			cipher.updateAAD( buffer, offset+Header.HEADER_LENGTH, headerLength-Header.HEADER_LENGTH );
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////
@@ -356,4 +443,27 @@ public class EncryptionProtocol extends Protocol
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Private Inner Class: CipherContext   //////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Everything one thread needs to encrypt and decrypt messages. None of it is thread safe,
+	 * so it must only ever be used by the thread it belongs to.
+	 */
+	private class CipherContext
+	{
+		private final Cipher encrypter;
+		private final Cipher decrypter;
+		private final SecureRandom random;
+		private final byte[] iv;
+		
+		private CipherContext() throws GeneralSecurityException
+		{
+			this.encrypter = Cipher.getInstance( cipherMode.getConfigString(), "BCFIPS" );
+			this.decrypter = Cipher.getInstance( cipherMode.getConfigString(), "BCFIPS" );
+			this.random = new SecureRandom();
+			this.iv = new byte[cipherMode.getIvSize()];
+		}
+	}
 }
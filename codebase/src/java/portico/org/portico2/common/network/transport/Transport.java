@@ -117,6 +117,17 @@ public abstract class Transport extends Protocol
 	 * @return Whether the transport is open or not.
 	 */
 	public abstract boolean isOpen();
+
+	/**
+	 * @return <code>true</code> if this transport can hand messages to the other side as objects,
+	 *         without serializing them. The {@link Connection} then builds deferred messages
+	 *         (see {@link Message#isDeferred()}) that are only serialized if some protocol in
+	 *         the stack asks for the bytes. Defaults to <code>false</code>.
+	 */
+	public boolean isPassingObjects()
+	{
+		return false;
+	}
 	
 	///////////////////////////////////////////////////////////////////////////////////////
 	///  Protocol Messaging Methods   /////////////////////////////////////////////////////
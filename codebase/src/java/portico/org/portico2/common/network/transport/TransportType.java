@@ -25,6 +25,7 @@ import org.portico2.common.network.transport.jvm.JvmTransport;
 import org.portico2.common.network.transport.multicast.MulticastTransport;
 import org.portico2.common.network.transport.tcp.TcpClientTransport;
 import org.portico2.common.network.transport.tcp.TcpServerTransport;
+import org.portico2.common.network.transport.tcp.nio.NioServerTransport;
 
 /**
  * Every connection has an {@link ITransport} that it ultimately uses to facilite communication.
@@ -41,6 +42,7 @@ public enum TransportType
 	Multicast,
 	TcpClient,
 	TcpServer,
+	NioServer,
 	UdpClient,
 	UdpServer;
 
@@ -69,6 +71,7 @@ public enum TransportType
 			case Multicast: return new MulticastConfiguration( connection );
 			case TcpClient: return new TcpConfiguration( connection, TcpClient );
 			case TcpServer: return new TcpConfiguration( connection, TcpServer );
+			case NioServer: return new TcpConfiguration( connection, NioServer );
 			case UdpClient: throw new JRTIinternalError( "UDP Connection Not Yet Supported" );
 			case UdpServer: throw new JRTIinternalError( "UDP Connection Not Yet Supported" );
 			default:        throw new JRTIinternalError( "Unknown Transport: "+this );
@@ -88,6 +91,7 @@ public enum TransportType
 			case Multicast: return new MulticastTransport();
 			case TcpClient: return new TcpClientTransport();
 			case TcpServer: return new TcpServerTransport();
+			case NioServer: return new NioServerTransport();
 			case UdpClient: throw new JRTIinternalError( "UDP Connection Not Yet Supported" );
 			case UdpServer: throw new JRTIinternalError( "UDP Connection Not Yet Supported" );
 			default:        throw new JRTIinternalError( "Unknown Transport: "+this );
@@ -104,6 +108,7 @@ public enum TransportType
 			case Multicast: return "multicast";
 			case TcpClient: return "tcp-client";
 			case TcpServer: return "tcp-server";
+			case NioServer: return "nio-server";
 			case UdpClient: throw new JRTIinternalError( "UDP Connection Not Yet Supported" );
 			case UdpServer: throw new JRTIinternalError( "UDP Connection Not Yet Supported" );
 			default:        throw new JRTIinternalError( "Unknown Transport: "+this );
@@ -127,6 +132,8 @@ public enum TransportType
 			return TcpServer;
 		else if( string.equalsIgnoreCase("tcp-client") )
 			return TcpClient;
+		else if( string.equalsIgnoreCase("nio-server") )
+			return NioServer;
 		
 		// loop through the list of the others
 		for( TransportType type : TransportType.values() )
@@ -14,10 +14,17 @@
  */
 package org.portico2.common.network.transport.jvm;
 
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.portico.lrc.compat.JRTIinternalError;
+import org.portico2.common.PorticoConstants;
+import org.portico2.common.messaging.MessageType;
+import org.portico2.common.network.CallType;
+import org.portico2.common.network.Header;
+import org.portico2.common.network.Message;
 
 /**
  * The {@link JvmExchange} is an aggregation point for {@link JvmTransport}s. Each connection will
@@ -35,13 +42,17 @@ public class JvmExchange
 	//                   INSTANCE VARIABLES
 	//----------------------------------------------------------
 	private Set<JvmTransport> transports;
+	private Map<JvmTransport,Integer> routes;  // LRC transport -> federation/federate it is hosting
+	private Map<Integer,JvmTransport> targets; // federation/federate -> the one LRC transport hosting it
 
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
 	//----------------------------------------------------------
 	private JvmExchange()
 	{
-		this.transports = new HashSet<>();
+		this.transports = new CopyOnWriteArraySet<>();
+		this.routes = new ConcurrentHashMap<>();
+		this.targets = new ConcurrentHashMap<>();
 	}
 
 	//----------------------------------------------------------
@@ -77,19 +88,164 @@ public class JvmExchange
 	 */
 	protected void detachLrc( JvmTransport lrc ) throws JRTIinternalError
 	{
+		// remove it first so that a message still on its way through can't put the route back
 		this.transports.remove( lrc );
+		setRoute( lrc, null );
 	}
 
 	
 	////////////////////////////////////////////////////////////////////////////////////////
 	///  Message Exchange Methods   ////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////
-	protected void sendMessage( JvmTransport sender, byte[] message ) throws JRTIinternalError
+	/**
+	 * Pass the given message on to the other transports in the exchange.
+	 * <ul>
+	 *   <li>A response goes back only to the transport that sent the request.</li>
+	 *   <li>A message from an LRC goes to the RTI. Unless it targets the RTI, it also goes to all
+	 *       the other LRCs, as the RTI doesn't forward it back into the exchange.</li>
+	 *   <li>A message from the RTI that targets a single federate goes only to the LRC hosting
+	 *       that federate, if we know which one it is. Everything else goes to everyone.</li>
+	 * </ul>
+	 * The routes used for targeting are learned from the source federate of messages sent by
+	 * each LRC. A route is dropped when the LRC resigns or detaches. If more than one LRC claims
+	 * the same federate, we fall back to sending to everyone.
+	 */
+	protected void sendMessage( JvmTransport sender, Message message ) throws JRTIinternalError
+	{
+		Header header = message.getHeader();
+		CallType calltype = header.getCallType();
+
+		// responses go straight back to whoever asked
+		if( calltype == CallType.ControlResponseOK || calltype == CallType.ControlResponseErr )
+		{
+			Object returnAddress = message.getReturnAddress();
+			if( returnAddress instanceof JvmTransport )
+			{
+				JvmTransport requestor = (JvmTransport)returnAddress;
+				if( transports.contains(requestor) )
+					requestor.receive( sender, message );
+
+				return;
+			}
+		}
+
+		if( sender.isHub() == false )
+		{
+			// LRCs drop anything targeted at the RTI, so don't bother handing it to them
+			learnRoute( sender, header );
+			boolean forLrcs = header.getTargetFederate() != PorticoConstants.RTI_HANDLE;
+			for( JvmTransport temp : transports )
+			{
+				if( temp != sender && (forLrcs || temp.isHub()) )
+					temp.receive( sender, message );
+			}
+		}
+		else
+		{
+			JvmTransport target = findRoute( header );
+			if( target != null )
+			{
+				target.receive( sender, message );
+				return;
+			}
+
+			// reflect to all other connected JVM transports, skipping ourselves
+			for( JvmTransport temp : transports )
+				if( temp != sender )
+					temp.receive( sender, message );
+		}
+	}
+
+	/**
+	 * Record which federate the given LRC transport is hosting, based on the source of a message
+	 * it sent. Until the LRC has a federate handle, and once it resigns, it has no route.
+	 */
+	private void learnRoute( JvmTransport sender, Header header )
+	{
+		int source = header.getSourceFederate();
+		if( isSingleFederate(source) == false || header.getMessageType() == MessageType.ResignFederation )
+		{
+			if( routes.containsKey(sender) )
+				setRoute( sender, null );
+
+			return;
+		}
+
+		Integer key = routeKey( header.getFederation(), source );
+		if( key.equals(routes.get(sender)) == false )
+			setRoute( sender, key );
+	}
+
+	/**
+	 * Change the route for the given LRC transport, or remove it if the key is null, and keep
+	 * the target lookup in step. Routes only change when a federate joins or resigns, so this
+	 * can afford to lock and look over all the routes.
+	 */
+	private synchronized void setRoute( JvmTransport transport, Integer key )
+	{
+		Integer previous = null;
+		if( key == null )
+			previous = routes.remove( transport );
+		else if( transports.contains(transport) )
+			previous = routes.put( transport, key );
+		else
+			return; // detached, don't let a late message put it back
+
+		if( previous != null && previous.equals(key) == false )
+			updateTarget( previous );
+
+		if( key != null )
+			updateTarget( key );
+	}
+
+	/**
+	 * Point the given key at the transport that claims it. If no transport or more than one
+	 * claims it, remove it so those messages go to everyone.
+	 */
+	private void updateTarget( Integer key )
+	{
+		JvmTransport found = null;
+		for( Map.Entry<JvmTransport,Integer> entry : routes.entrySet() )
+		{
+			if( entry.getValue().equals(key) == false )
+				continue;
+			else if( found != null )
+			{
+				targets.remove( key ); // more than one claim, don't guess
+				return;
+			}
+			else
+				found = entry.getKey();
+		}
+
+		if( found == null )
+			targets.remove( key );
+		else
+			targets.put( key, found );
+	}
+
+	/**
+	 * @return The transport hosting the federate the message targets, or <code>null</code> if
+	 *         it doesn't target a single federate, or we don't know exactly one LRC hosting it
+	 */
+	private JvmTransport findRoute( Header header )
+	{
+		int target = header.getTargetFederate();
+		if( isSingleFederate(target) == false || targets.isEmpty() )
+			return null;
+
+		return targets.get( routeKey(header.getFederation(),target) );
+	}
+
+	private static boolean isSingleFederate( int handle )
+	{
+		// header fields are uint16, so the NULL/TARGET_ALL handle (-1) shows up as 0xffff
+		return handle > 0 && handle < 0xffff;
+	}
+
+	private static Integer routeKey( int federation, int federate )
 	{
-		// reflect to all other connected JVM transports, skipping ourselves
-		for( JvmTransport temp : transports )
-			if( temp != sender )
-				temp.receive( message );
+		return (federation << 16) | federate;
 	}
 	
 	//----------------------------------------------------------
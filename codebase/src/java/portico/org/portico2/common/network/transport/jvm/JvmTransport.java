@@ -17,11 +17,22 @@ package org.portico2.common.network.transport.jvm;
 import org.portico.lrc.compat.JConfigurationException;
 import org.portico.lrc.compat.JRTIinternalError;
 import org.portico2.common.network.Connection;
+import org.portico2.common.network.Connection.Host;
 import org.portico2.common.network.Message;
 import org.portico2.common.network.configuration.protocol.ProtocolConfiguration;
+import org.portico2.common.network.configuration.transport.JvmConfiguration;
 import org.portico2.common.network.transport.Transport;
 import org.portico2.common.network.transport.TransportType;
 
+/**
+ * Transport for connections that live in the same JVM. Everything goes through the shared
+ * {@link JvmExchange}.
+ * <p/>
+ * If <code>passObjects</code> is enabled in the configuration, messages are handed across as
+ * objects rather than being serialized and deserialized again on the other side. Each receiver
+ * gets its own copy of the header and the message, including the attribute and parameter values,
+ * so federates never share the arrays. See {@link Message#copyDeferred()}.
+ */
 public class JvmTransport extends Transport
 {
 	//----------------------------------------------------------
@@ -32,6 +43,8 @@ public class JvmTransport extends Transport
 	//                   INSTANCE VARIABLES
 	//----------------------------------------------------------
 	private boolean isConnected;
+	private boolean passObjects;
+	private boolean hub;          // true if we are the RTI (or forwarder) side of the exchange
 
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -54,6 +67,9 @@ public class JvmTransport extends Transport
 	{
 		// drop the response wait time
 		connection.getResponseCorrelator().setTimeout( 100 );
+		
+		this.passObjects = ((JvmConfiguration)configuration).isPassObjects();
+		this.hub = connection.getHost() != Host.LRC;
 	}
 
 	@Override
@@ -86,18 +102,44 @@ public class JvmTransport extends Transport
 		return this.isConnected;
 	}
 
+	@Override
+	public boolean isPassingObjects()
+	{
+		return this.passObjects;
+	}
+
+	/**
+	 * @return <code>true</code> if this transport belongs to the RTI (or a forwarder) rather
+	 *         than to an LRC
+	 */
+	protected boolean isHub()
+	{
+		return this.hub;
+	}
+
 	///////////////////////////////////////////////////////////////////////////////////////
 	///  Transport Messaging Methods   ////////////////////////////////////////////////////
 	///////////////////////////////////////////////////////////////////////////////////////
 	@Override
 	public void down( Message message )
 	{
-		JvmExchange.instance().sendMessage( this, message.getBuffer() );
+		JvmExchange.instance().sendMessage( this, message );
 	}
 
-	protected void receive( byte[] message )
+	/**
+	 * Called by the exchange when a message arrives for us. Deferred messages are copied as
+	 * objects. Serialized messages get a new {@link Message} around the same bytes. We note the
+	 * sender so that any response can be returned straight to it.
+	 * 
+	 * @param sender The transport the message came from
+	 * @param message The message that was sent
+	 */
+	protected void receive( JvmTransport sender, Message message )
 	{
-		up( new Message(message) );
+		Message received = message.isDeferred() ? message.copyDeferred() :
+		                                          new Message( message.getBuffer() );
+		received.setReturnAddress( sender );
+		up( received );
 	}
 
 	//----------------------------------------------------------
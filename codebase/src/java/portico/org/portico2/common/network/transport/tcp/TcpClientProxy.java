@@ -65,6 +65,7 @@ public class TcpClientProxy implements ITcpChannelListener
 		this.instream  = new DataInputStream( socket.getInputStream() );
 		this.outstream = new DataOutputStream( socket.getOutputStream() );
 		this.channel = new TcpChannel( this );
+		this.channel.configureOutbound( server.getConfiguration() );
 
 		this.hostID = ID_GENERATOR.incrementAndGet();
 		this.running = false;
@@ -151,6 +152,15 @@ public class TcpClientProxy implements ITcpChannelListener
 		logger.info( "  (Removed) Connection ID="+hostID+" has disconnected" );
 		logger.info( "            Packets From: "+metrics.messagesReceived+" packets, "+dataReceived );
 		logger.info( "            Packets Sent: "+metrics.messagesSent+" packets, "+dataSent );
+		logger.info( "            Queue Wait  : "+metrics.queueLatency );
+		logger.info( "            Write Time  : "+metrics.writeLatency );
+		logger.info( "            Max Queued  : "+metrics.queueHighWater+" messages" );
+		if( metrics.messagesDropped > 0 || metrics.messagesConflated > 0 || metrics.blockedNanos > 0 )
+		{
+			logger.info( "            Dropped     : "+metrics.messagesDropped+" messages" );
+			logger.info( "            Conflated   : "+metrics.messagesConflated+" messages" );
+			logger.info( "            Blocked For : "+(metrics.blockedNanos/1000000)+"ms" );
+		}
 	}
 
 	public boolean isRunning()
@@ -166,14 +176,18 @@ public class TcpClientProxy implements ITcpChannelListener
 		channel.send( message.getBuffer() );
 	}
 
+	public void send( byte[] buffer )
+	{
+		channel.send( buffer );
+	}
+
 	///////////////////////////////////////////////////////////////////////////////////////
 	///  Message RECEIVING Methods   //////////////////////////////////////////////////////
 	///////////////////////////////////////////////////////////////////////////////////////
 	@Override
-	public void receive( TcpChannel channel, byte[] payload ) throws JRTIinternalError
+	public void receive( TcpChannel channel, Message message ) throws JRTIinternalError
 	{
 		// pass up the protocol stack and into the RTI
-		Message message = new Message( payload );
 		parent.up( message );
 		
 		// We must also loop it around to all the other clients that are attached
@@ -183,12 +197,14 @@ public class TcpClientProxy implements ITcpChannelListener
 		// over the server connection (because it is technically the origin), thus
 		// missing any other client proxies that are connected through it. So we
 		// must pick up the slack. We only do this for data messages, as control
-		// messages are meant for the RTI
-		if( message.getHeader().isDataMessage() )
+		// messages are meant for the RTI, as are data messages targeted at it
+		if( message.getHeader().isDataMessage() &&
+			message.getHeader().getTargetFederate() != PorticoConstants.RTI_HANDLE )
 		{
+			byte[] buffer = message.getBuffer();
 			for( TcpClientProxy proxy : parent.clients )
 				if( proxy != this )
-					proxy.send( message );
+					proxy.send( buffer );
 		}
 	}
 
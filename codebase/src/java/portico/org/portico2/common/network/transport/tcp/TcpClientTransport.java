@@ -214,6 +214,9 @@ public class TcpClientTransport extends Transport implements ITcpChannelListener
 		String bytesReceived = StringUtils.getSizeString( metrics.bytesReceived );
 		logger.info( "       Sent: "+bytesSent+" ("+metrics.messagesSent+" messages)" );
 		logger.info( "   Received: "+bytesReceived+" ("+metrics.messagesReceived+" messages)" );
+		logger.info( "    Bundles: "+metrics.bundlesSent+" sent, "+metrics.messagesOverflowed+" messages overflowed" );
+		logger.info( " Queue Wait: "+metrics.queueLatency );
+		logger.info( " Write Time: "+metrics.writeLatency );
 		
 		// Annnnnnnnd, we're done
 		this.isConnected = false;
@@ -234,14 +237,14 @@ public class TcpClientTransport extends Transport implements ITcpChannelListener
 	///  Message RECEIVING Methods   //////////////////////////////////////////////////////
 	///////////////////////////////////////////////////////////////////////////////////////
 	@Override
-	public void receive( TcpChannel channel, byte[] payload ) throws JRTIinternalError
+	public void receive( TcpChannel channel, Message message ) throws JRTIinternalError
 	{
 		// TODO Put this back in
 		// Should we even process this?
 		//if( receiver.isReceivable(incoming.getTargetFederate()) == false )
 		//	return;
 
-		up( new Message(payload) );
+		up( message );
 	}
 
 	/**
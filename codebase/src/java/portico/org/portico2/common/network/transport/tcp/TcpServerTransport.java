@@ -18,8 +18,8 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.logging.log4j.Logger;
 import org.portico.lrc.compat.JConfigurationException;
@@ -73,7 +73,7 @@ public class TcpServerTransport extends Transport
 		this.connectionAcceptor = null; // set in startup()
 		
 		// Connected Clients
-		this.clients = new LinkedList<>();
+		this.clients = new CopyOnWriteArrayList<>();
 	}
 
 	//----------------------------------------------------------
@@ -179,8 +179,11 @@ public class TcpServerTransport extends Transport
 	{
 		// TODO Optimize me - we should only hand off to those representing certain federate Ids
 
-		// Hand off to all the clients to process
-		clients.parallelStream().forEach( client -> client.send(message) );
+		// Hand off to all the clients. This never waits on a slow client unless its slow
+		// consumer policy is to block (see OutboundQueue), so we don't need to fan out.
+		byte[] buffer = message.getBuffer();
+		for( TcpClientProxy client : clients )
+			client.send( buffer );
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////
@@ -209,6 +212,11 @@ public class TcpServerTransport extends Transport
 		return super.logger;
 	}
 
+	protected TcpConfiguration getConfiguration()
+	{
+		return this.configuration;
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
@@ -17,15 +17,17 @@ package org.portico2.common.network.transport.tcp.channel;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.TimerTask;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.logging.log4j.Logger;
 import org.portico.utils.StringUtils;
-import org.portico2.common.network.CallType;
 import org.portico2.common.network.Header;
 
 /**
@@ -34,57 +36,100 @@ import org.portico2.common.network.Header;
  * stream, and will store up messages so that they can be sent in larger chunks rather
  * than one at a time, making more efficient use of available write-bandwidth.
  * <p/>
- * 
- * The bundler has three properties that control when and how messages are flushed:
- * 
- * <ol>
- *     <li><b>Enabled</b>: If the bundler is disabled, a flush will happen on every call.</li>
  *
- *     <li><b>Max Size</b>: This is the maximum number of bytes that will be buffered before a
- *                          flush is triggered. If a submission pushes the buffer over this limit,
- *                          it will also trigger an instant flush.</li>
+ * <b>Submitting Messages</b>
+ * <p/>
+ * Any number of threads can call {@link #submit(byte[])} at once. Messages are placed on a
+ * lock-free ring buffer and the caller returns straight away. It never waits for a flush, and
+ * never takes a lock. If the ring fills up because the socket can't keep up, messages go to an
+ * overflow queue instead. That is the only time submitting a message allocates. Ordering is
+ * kept: once anything is in the overflow queue, all new messages go there too until the sender
+ * has caught up.
+ * <p/>
+ *
+ * The overflow queue is bounded as well (see {@link #setOverflowLimit(int)}). Once it is full,
+ * submitting threads wait until the sender has made room, or the bundler is stopped. The sender
+ * thread itself never waits, as it is the one that has to make the room; anything it submits
+ * (e.g. from the drain listener) is queued regardless.
+ * <p/>
+ *
+ * <b>Flushing</b>
+ * <p/>
+ * A single sender thread does all the writing. Flushing is adaptive, so there is no fixed
+ * bundling delay:
  *
- *     <li><b>Max Time</b>: If the bundler is enabled, this is the maximum amount of time that
- *                          data can sit inside the bundler before being flushed. This is to
- *                          ensure that messages don't sit forever, waiting for the last few
- *                          bytes needed to trigger a flush. Time is in millis.</li>
+ * <ol>
+ *     <li><b>Idle link</b>: The sender is parked. The first message that turns up wakes it
+ *                           and is written straight away.</li>
+ *
+ *     <li><b>Busy link</b>: While the sender is blocked writing one bundle, new messages pile
+ *                           up in the ring. When the write returns, the sender takes everything
+ *                           waiting (up to the <b>Max Size</b>) and writes it as the next
+ *                           bundle. The busier the link, the bigger the bundles.</li>
  * </ol>
- * 
- * <b>Flushing a Buffer</b>
- * As per the above, a flush will only be triggered if either the bytes have been sitting around
- * for too long, or the number of bytes in the buffer exceeds the limit (or if bundling is disabled
- * entirely).
+ *
+ * If bundling is <b>disabled</b>, every message is written in a bundle of its own. The
+ * <b>Max Time</b> is now just the longest the sender will park before checking for work,
+ * rather than a delay that is added to every message.
  * <p/>
- * 
- * Flushing of the <i>buffer will happen on a <b>separate thread</b></i>. As such, a bundler will
- * not accept messages or process them until after {@link #startBundler()} has been called.
+ *
+ * <b>Metrics</b>
+ * <p/>
+ * The sender records how long each message waited before it was picked up, and how long each
+ * socket write took, into the {@link LatencyHistogram}s held in the {@link Metrics}.
+ * <p/>
+ *
+ * <b>Queue Size</b>
+ * <p/>
+ * The bundler itself never refuses a message. It keeps count of how many are waiting to be
+ * written (see {@link #getQueuedCount()}) and tells the drain listener each time it has written
+ * a bundle, so that something sitting in front of it (the {@link OutboundQueue}) can put a
+ * tighter limit on that, with its own policy for slow connections.
+ * <p/>
+ *
+ * The bundler will not write any messages until {@link #startBundler(DataOutputStream)} has
+ * been called.
  */
 public class Bundler
 {
 	//----------------------------------------------------------
 	//                    STATIC VARIABLES
 	//----------------------------------------------------------
+	/** Number of messages the ring can hold before we start to overflow. Must be a power of 2. */
+	public static final int RING_CAPACITY = 4096;
+
+	/** Default number of messages the overflow queue can hold before submitters have to wait */
+	public static final int DEFAULT_OVERFLOW_LIMIT = 65536;
+
+	/** How long a submitter waiting for room parks before checking again */
+	private static final long OVERFLOW_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos( 100 );
+
+	/** Bundle marker + length */
+	private static final int FRAME_HEADER_LENGTH = 8;
 
 	//----------------------------------------------------------
 	//                   INSTANCE VARIABLES
 	//----------------------------------------------------------
 	private Logger logger;
-	
+
 	// message queuing
-	private boolean isEnabled;      // bundle messages or not? if false, flush on every submit
-	private int sizeLimit;          // max bytes to hold onto before release
-	private int timeLimit;          // max amount of time to hold onto messages before release
-	private ByteBuffer buffer;      // store incoming messages here prior to flush
-	private int queuedMessages;     // number of messages we currently have queued
-	private long oldestMessage;     // time (millis) when first message turned up in queue
+	private boolean isEnabled;          // bundle messages or not? if false, one message per write
+	private int sizeLimit;              // max bytes to put into a single bundle
+	private int timeLimit;              // max time the sender will park for
+	private RingBuffer ring;            // where messages go when they're submitted
+	private Queue<Overflow> overflow;   // where they go when the ring is full
+	private AtomicInteger overflowing;  // number of messages in the overflow queue
+	private int overflowLimit;          // max messages in the overflow queue before submit() waits
+	private AtomicInteger queued;       // number of messages submitted but not yet written
+	private Runnable drainListener;     // told each time a bundle has been written (may be null)
 
 	// output writing
 	private DataOutputStream outstream; // connection to the router
-	private Lock lock;                  // lock the send/receive processing
-	private Condition armCondition;     // tell the timer that it should be ready to flush soon
-	private Condition flushCondition;   // triggered when it is time to flush
-	private Condition returnCondition;  // triggered when the flush is over
+	private ByteBuffer buffer;          // bundle being built; only touched by the sender thread
 	private Thread senderThread;        // thread that will do all our sending work
+	private volatile boolean running;
+	private volatile boolean stopped;   // stopBundler() called; nothing will be written anymore
+	private AtomicBoolean senderParked; // is the sender waiting for work?
 
 	// metrics
 	private Metrics metrics;
@@ -100,15 +145,18 @@ public class Bundler
 		this.isEnabled = true;
 		this.sizeLimit = 64000; // 64k
 		this.timeLimit = 20; // 20ms
-		this.buffer = ByteBuffer.allocate( (int)(sizeLimit*1.1) );
-		this.queuedMessages = 0;
-		this.oldestMessage = 0;
+		this.ring = new RingBuffer( RING_CAPACITY );
+		this.overflow = new ConcurrentLinkedQueue<>();
+		this.overflowing = new AtomicInteger( 0 );
+		this.overflowLimit = DEFAULT_OVERFLOW_LIMIT;
+		this.queued = new AtomicInteger( 0 );
+		this.drainListener = null;
 
 		// output writing
-		this.lock = new ReentrantLock();
-		this.armCondition = this.lock.newCondition();
-		this.flushCondition = this.lock.newCondition();
-		this.returnCondition = this.lock.newCondition();
+		this.buffer = ByteBuffer.allocate( (int)(sizeLimit*1.1) );
+		this.running = false;
+		this.stopped = false;
+		this.senderParked = new AtomicBoolean( false );
 
 		// metrics
 		this.metrics = new Metrics();
@@ -126,35 +174,39 @@ public class Bundler
 	{
 		if( logger == null )
 			throw new IllegalStateException( "You must give the bundler a logger prior to start" );
-		
+
 		logger.debug( "[Bundler] Starting. Max bundle size="+StringUtils.getSizeString(sizeLimit)+
-		              ", max bundle time="+timeLimit+"ms" );
+		              ", bundling="+(isEnabled ? "adaptive" : "disabled") );
 
 		this.outstream = outstream;
+		this.running = true;
 
 		// start the sender
 		this.senderThread = new Thread( new Sender(), "Bundler-Sender" );
 		this.senderThread.setDaemon( true );
 		this.senderThread.start();
 	}
-	
+
 	public void stopBundler()
 	{
-		// NOTE: Disabling - we can't tell if the connection is open or not.
-		//                   If we are stopping because of a disconnection then
-		//                   flushing will trigger an exception (duh, connection closed).
-		// flush whatever we have in the pipes currently
-		//logger.trace( "Flushing "+queuedMessages+" stored messages" );
-		//flush();
-		if( queuedMessages > 0 )
-			logger.warn( "Shutting down bundler with %d messages still queued", queuedMessages );
+		// NOTE: We don't flush here - we can't tell if the connection is open or not.
+		//       If we are stopping because of a disconnection then flushing will
+		//       trigger an exception (duh, connection closed).
+		int queued = ring.size() + overflowing.get();
+		if( queued > 0 )
+			logger.warn( "Shutting down bundler with %d messages still queued", queued );
 
 		// kill the sender thread
 		try
 		{
 			logger.trace( "Shutting down bundler sending thread" );
-			senderThread.interrupt();
-			senderThread.join( 2000 );
+			this.running = false;
+			this.stopped = true;
+			if( senderThread != null )
+			{
+				LockSupport.unpark( senderThread );
+				senderThread.join( 2000 );
+			}
 		}
 		catch( InterruptedException ie )
 		{
@@ -168,87 +220,76 @@ public class Bundler
 	///  Bundling Methods   ////////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////
 	/**
-	 * Submit a message for bundling.
+	 * Submit a message for sending. This method is safe to call from any number of threads at
+	 * once. The message will be written by the sender thread as soon as it is free to do so.
+	 * It only blocks if both the ring and the overflow queue are full, until the sender has
+	 * made room. If the bundler is stopped while we wait, the message is discarded.
 	 * <p/>
-	 * 
-	 * If the size limit is now broken, a flush will happen and this method will block.
-	 * Otherwise it will buffer the request and then return immediately. If this is the first
-	 * message since the last flush, the timer will be armed so that if our size cap isn't
-	 * broken in a configurable amount of time (20ms by default), a flush will happen anyway.
-	 * <p/>
-	 * 
-	 * This method will block in two instances:
-	 *   <ul>
-	 *    <li>If the total size of bundled messages exceeds the limit, causing a flush</li>
-	 *    <li>If a flush is already under way</li>
-	 *   </ul>
-	 * 
-	 * <b>Disable Bundling</b>
-	 * Bundling can be disabled in configuration. If this is the case, submitted messages
-	 * will immediately be flushed to the router.
-	 * 
-	 * <b>Control Sync and Control Response Messages</b>
-	 * These two types of messages can be time sensitive. As such, if you submit a message with
-	 * either of these headers it will trigger an immediate flush, regardless of queue state.
-	 * 
+	 *
+	 * The array is written out as-is at some point after this call returns, so the caller must
+	 * not modify it afterwards.
+	 *
 	 * @param message the body of the message to send
 	 */
 	public void submit( byte[] message )
 	{
-		lock.lock();
+		long now = System.nanoTime();
+		queued.incrementAndGet();
 
-		try
+		// Once anything has gone to the overflow queue, everything has to go there until
+		// it is empty again, otherwise messages could be sent out of order
+		if( overflowing.get() > 0 || ring.offer(message,now) == false )
 		{
-			//
-			// queue the message
-			//
-			growBufferIfNeeded( message.length );
-			buffer.put( message );
-			queuedMessages++; // metrics
-			
-//			growBufferIfNeeded( 9+message.length );
-//			buffer.put( header.getByteValue() );
-//			buffer.putInt( requestId );
-//			buffer.putInt( message.length );
-//			buffer.put( message );
-//			queuedMessages++; // metrics
-			
-			// log that we've queued the message
-			Header header = new Header( message, 0 );
-			if( logger.isTraceEnabled() )
-				logQueuedMessage( header, message );
-			
-			// if actual message bundling is turned off, flush right away
-			//   -OR-
-			// if the header is time critical (ControlSync, or ControlResp)
-			if( this.isEnabled == false || header.getCallType() != CallType.DataMessage )
+			if( claimOverflowSlot() == false )
 			{
-				flush();
+				queued.decrementAndGet();
 				return;
 			}
 
-			// check if we need to reset the time trigger
-			if( this.oldestMessage == 0 )
-			{
-				this.oldestMessage = System.currentTimeMillis();
-				// arm the timer
-				armCondition.signalAll();
-			}
-
-			// check to see if we've hit the size trigger
-			if( buffer.position() > sizeLimit )
-			{
-				flushCondition.signalAll();
-				returnCondition.await();
-			}
+			overflow.add( new Overflow(message,now) );
 		}
-		catch( InterruptedException ie )
+
+		if( logger.isTraceEnabled() )
+			logQueuedMessage( message );
+
+		// wake the sender up if it is waiting for work
+		if( senderParked.get() && senderParked.compareAndSet(true,false) )
+			LockSupport.unpark( senderThread );
+	}
+
+	/**
+	 * Claim a place in the overflow queue, waiting until there is room if it is full. The
+	 * sender thread never waits, as it is the only one that can make room.
+	 * 
+	 * @return <code>false</code> if the bundler was stopped while we were waiting
+	 */
+	private boolean claimOverflowSlot()
+	{
+		if( Thread.currentThread() == senderThread )
 		{
-			// only when we're exiting - ignore
+			overflowing.incrementAndGet();
+			return true;
 		}
-		finally
+
+		while( true )
 		{
-			lock.unlock();
+			int count = overflowing.get();
+			if( count < overflowLimit )
+			{
+				if( overflowing.compareAndSet(count,count+1) )
+					return true;
+				else
+					continue;
+			}
+
+			if( stopped )
+				return false;
+
+			// make sure the sender is awake to work through it
+			if( senderParked.get() && senderParked.compareAndSet(true,false) )
+				LockSupport.unpark( senderThread );
+
+			LockSupport.parkNanos( this, OVERFLOW_WAIT_NANOS );
 		}
 	}
 
@@ -256,35 +297,25 @@ public class Bundler
 	 * Should only be called if trace is enabled. Does an obscene amount of work just to
 	 * generate some better logs.
 	 */
-	private final void logQueuedMessage( Header header, byte[] payload )
+	private final void logQueuedMessage( byte[] payload )
 	{
 		if( logger.isTraceEnabled() == false )
 			return;
 
-		// Log some generation information about the message. If it is a response message,
-		// log the result. We can only do this if the message is unencrypted. If it isn't,
-		// we have to fall back to the header-only encryption.
-//		if( header.isEncrypted() == false && header.getCallType() == CallType.ControlResp )
-//		{
-//			ResponseMessage response = MessageHelpers.inflate2( payload, ResponseMessage.class );
-//			logger.trace( "(outgoing) type=%s (id=%d), success=%s, result=%s, size=%d",
-//			              header.getCallType(),
-//			              header.getRequestId(),
-//			              ""+response.isSuccess(),
-//			              response.getResult(),
-//			              payload.length );
-//		}
-//		else
-//		{
-			// we have the PorticoMessage original, let's log some stuff!
-			logger.trace( "(outgoing) type=%s (id=%d), ptype=%s, from=%s, to=%s, size=%d",
-			              header.getCallType(),
-			              header.getRequestId(),
-			              header.getMessageType(),
-			              StringUtils.sourceHandleToString( header.getSourceFederate() ),
-			              StringUtils.targetHandleToString( header.getTargetFederate()),
-			              payload.length );
-//		}
+		Header header = new Header( payload, 0 );
+		logger.trace( "(outgoing) type=%s (id=%d), ptype=%s, from=%s, to=%s, size=%d",
+		              header.getCallType(),
+		              header.getRequestId(),
+		              header.getMessageType(),
+		              StringUtils.sourceHandleToString( header.getSourceFederate() ),
+		              StringUtils.targetHandleToString( header.getTargetFederate()),
+		              payload.length );
+	}
+
+	/** @return True if there are messages waiting to be sent. Called from the sender only. */
+	private final boolean hasQueuedMessages()
+	{
+		return ring.isEmpty() == false || overflowing.get() > 0;
 	}
 
 	/**
@@ -306,33 +337,91 @@ public class Bundler
 			this.buffer = newBuffer;
 		}
 	}
-	
+
 	/**
-	 * Check what's been bundled up to see if it should be released. There are two trigger
-	 * conditions for release:
-	 * 
-	 *   1. We've stored up more than `MAX_BYTES` bytes
-	 *   2. We've held messages longer than `MAX_WAIT` time
-	 * 
-	 * This method can be called from the thread that invokes `submit()` when the size trigger is
-	 * tripped, or from the Sender-thread when the time trigger is tripped.
+	 * Take everything that is waiting (up to the size limit, or a single message if bundling
+	 * is disabled) and write it out as a single bundle. Only ever called by the sender thread.
 	 */
 	private void flush()
 	{
-		// grab the lock so that stuff isn't jumping into the buffer while we're working
-		lock.lock();
+		// leave room for the frame header, we fill it in once we know how big the bundle is
+		buffer.clear();
+		buffer.position( FRAME_HEADER_LENGTH );
+
+		long now = System.nanoTime();
+		int queuedMessages = 0;
+		while( true )
+		{
+			// Drain the ring before the overflow queue. Anything in the ring was put there
+			// before the overflow queue started to be used (see submit()).
+			byte[] next = ring.peek();
+			long submitted = 0;
+			boolean fromOverflow = false;
+			if( next != null )
+			{
+				submitted = ring.peekTimestamp();
+			}
+			else if( ring.hasUnpublished() )
+			{
+				// a producer has claimed the next slot but not filled it yet. the overflow queue
+				// can't go ahead of it, so finish this bundle and come back for it
+				break;
+			}
+			else
+			{
+				Overflow overflowed = overflow.peek();
+				if( overflowed == null )
+					break;
+
+				next = overflowed.message;
+				submitted = overflowed.timestamp;
+				fromOverflow = true;
+			}
+
+			// stop if this would break the size limit (we always take at least one message)
+			int bundled = buffer.position() - FRAME_HEADER_LENGTH;
+			if( queuedMessages > 0 && (isEnabled == false || bundled+next.length > sizeLimit) )
+				break;
+
+			growBufferIfNeeded( next.length );
+			buffer.put( next );
+			queuedMessages++;
+			metrics.queueLatency.record( now-submitted );
+
+			if( fromOverflow )
+			{
+				overflow.poll();
+				overflowing.decrementAndGet();
+				metrics.messagesOverflowed++;
+			}
+			else
+			{
+				ring.advance();
+			}
+		}
+
+		if( queuedMessages == 0 )
+		{
+			// only get here if we're waiting on a producer to publish, let it run
+			Thread.yield();
+			return;
+		}
+
+		// down the loo!
+		int bytes = buffer.position() - FRAME_HEADER_LENGTH;
+		buffer.putInt( 0, 0xcafe );
+		buffer.putInt( 4, bytes );
 		try
 		{
-			// down the loo!
-			int bytes = buffer.position();
-			outstream.writeInt( 0xcafe );
-			outstream.writeInt( bytes );
-			outstream.write( buffer.array(), 0, bytes );
+			long writeStart = System.nanoTime();
+			outstream.write( buffer.array(), 0, buffer.position() );
+			metrics.writeLatency.record( System.nanoTime()-writeStart );
 
 			// metrics
 			metrics.messagesSent += queuedMessages;
 			metrics.bytesSent += bytes;
-			
+			metrics.bundlesSent++;
+
 			if( logger.isTraceEnabled() )
 				logger.trace( "(outgoing) {FLUSH} %d messages (%s) have been flushed", queuedMessages, bytes );
 		}
@@ -340,16 +429,11 @@ public class Bundler
 		{
 			logger.error( "Error while flushing bundler: "+ioex.getMessage(), ioex );
 		}
-		finally
-		{
-			// empty our buffer - it is used in submit() as well
-			buffer.clear();
-			this.queuedMessages = 0;
-			this.oldestMessage = 0;
 
-			this.returnCondition.signalAll();
-			lock.unlock();
-		}
+		// only count them as gone once the write has returned, so a stalled socket shows up
+		queued.addAndGet( -queuedMessages );
+		if( drainListener != null )
+			drainListener.run();
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////
@@ -359,37 +443,43 @@ public class Bundler
 	{
 		return this.isEnabled;
 	}
-	
+
+	/**
+	 * If bundling is disabled, every message is written to the socket on its own.
+	 */
 	public void setEnabled( boolean isEnabled )
 	{
 		this.isEnabled = isEnabled;
 	}
 
-	/** Max number of bytes held prior to flush (in bytes). Default is 64k. */
+	/** Max number of bytes put in a single bundle (in bytes). Default is 64k. */
 	public int getSizeLimit()
 	{
 		return this.sizeLimit;
 	}
 
 	/**
-	 * Sets the max size that the buffer can be prior to triggering a flush.
-	 * 
+	 * Sets the max size that a single bundle can grow to. A message larger than this will
+	 * still be sent, it will just be in a bundle of its own.
+	 *
 	 * @param bytes Max size in bytes
 	 */
 	public void setSizeLimit( int bytes )
 	{
 		this.sizeLimit = bytes;
 	}
-	
-	/** Max period of time that bytes are held prior to flush (in millis). Default is 20ms. */
+
+	/** Max period of time the sender will sleep for between checks (in millis). Default is 20ms. */
 	public int getTimeLimit()
 	{
 		return this.timeLimit;
 	}
 
 	/**
-	 * Set the max time that bytes can sit in the buffer prior to triggering a flush.
-	 * 
+	 * Set the max time the sender thread will park for while waiting for messages. Messages
+	 * wake the sender when they arrive, so this does not add any latency. It is only a safety
+	 * net.
+	 *
 	 * @param millis The max wait time in millis
 	 */
 	public void setTimeLimit( int millis )
@@ -397,6 +487,39 @@ public class Bundler
 		this.timeLimit = millis;
 	}
 
+	/** Max number of messages the overflow queue holds before submitters have to wait */
+	public int getOverflowLimit()
+	{
+		return this.overflowLimit;
+	}
+
+	/**
+	 * Set the max number of messages that can be waiting in the overflow queue (on top of the
+	 * {@link #RING_CAPACITY} held in the ring). Once it is full, {@link #submit(byte[])} waits
+	 * until the sender has made room.
+	 * 
+	 * @param messages Max number of messages in the overflow queue
+	 */
+	public void setOverflowLimit( int messages )
+	{
+		this.overflowLimit = messages;
+	}
+
+	/** @return Number of messages that have been submitted but not yet written to the socket */
+	public int getQueuedCount()
+	{
+		return this.queued.get();
+	}
+
+	/**
+	 * Set something to be told each time the sender thread has written a bundle out. It is
+	 * called on the sender thread, so it must not block.
+	 */
+	public void setDrainListener( Runnable drainListener )
+	{
+		this.drainListener = drainListener;
+	}
+
 	public Metrics getMetrics()
 	{
 		return this.metrics;
@@ -417,45 +540,149 @@ public class Bundler
 	//////////////////////////////////////////////////////////////////////////////////////
 	////// Private Class: Sender   ///////////////////////////////////////////////////////
 	//////////////////////////////////////////////////////////////////////////////////////
-	private class Sender extends TimerTask implements Runnable
+	private class Sender implements Runnable
 	{
 		public void run()
 		{
-			lock.lock();
-			try
+			logger.debug( "Sender thread has started up inside the Bundler" );
+
+			while( running )
 			{
-				logger.debug( "Sender thread has started up inside the Bundler" );
-				
-				while( true )
+				if( hasQueuedMessages() )
 				{
-					// Wait for someone to arm us for sending.
-					// We don't want to just busy-loop - we only arm when there are messages
-					armCondition.await();
-					
-					// The flush condition we were waiting for has triggered.
-					// Either our wait time expired, or we reached our size threshold
-					// and this condition was manually triggered
-					//boolean triggered = flushCondition.await( timeLimit, TimeUnit.MILLISECONDS );
-					flushCondition.await( timeLimit, TimeUnit.MILLISECONDS );
-
-					//if( triggered )
-					//	logger.trace( "Bundler triggered by busting our SIZE cap, flushing" );
-					//else
-					//	logger.trace( "Bundler triggered by busting our TIME cap, flushing" );
-					
-					// Do the actual work
 					flush();
+					continue;
 				}
+
+				// Nothing to do, park until someone submits a message. Check again after
+				// flagging that we're parked, in case a message snuck in between the two.
+				senderParked.set( true );
+				if( hasQueuedMessages() == false && running )
+					LockSupport.parkNanos( this, TimeUnit.MILLISECONDS.toNanos(timeLimit) );
+
+				senderParked.set( false );
 			}
-			catch( InterruptedException ie )
-			{
-				// We are shutting down and that's cool
-				logger.debug( "Bundler Sender thread interrupted; shutting down" );
-			}
-			finally
+
+			logger.debug( "Bundler Sender thread stopped; shutting down" );
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	////// Private Class: Overflow   /////////////////////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////
+	/** A message that didn't fit in the ring, along with the time it was submitted */
+	private static class Overflow
+	{
+		private final byte[] message;
+		private final long timestamp;
+		private Overflow( byte[] message, long timestamp )
+		{
+			this.message = message;
+			this.timestamp = timestamp;
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	////// Private Class: RingBuffer   ///////////////////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Bounded, lock-free, multi-producer/single-consumer ring of messages. Each slot has a
+	 * sequence number that tells producers when it is free to write to, and tells the consumer
+	 * when it has been filled. Producers claim slots by moving the tail forward with a CAS.
+	 * The head is only ever touched by the sender thread, so it doesn't need to be atomic.
+	 */
+	private static class RingBuffer
+	{
+		private final int mask;
+		private final byte[][] messages;
+		private final long[] timestamps;
+		private final AtomicLongArray sequences;
+		private final AtomicLong tail;
+		private long head;
+
+		private RingBuffer( int capacity )
+		{
+			this.mask = capacity-1;
+			this.messages = new byte[capacity][];
+			this.timestamps = new long[capacity];
+			this.sequences = new AtomicLongArray( capacity );
+			for( int i = 0; i < capacity; i++ )
+				sequences.set( i, i );
+
+			this.tail = new AtomicLong( 0 );
+			this.head = 0;
+		}
+
+		/** @return False if the ring is full */
+		private boolean offer( byte[] message, long timestamp )
+		{
+			long position = tail.get();
+			while( true )
 			{
-				lock.unlock();
+				int index = (int)(position & mask);
+				long available = sequences.get(index) - position;
+				if( available == 0 )
+				{
+					// slot is free, try to claim it
+					if( tail.compareAndSet(position,position+1) )
+					{
+						messages[index] = message;
+						timestamps[index] = timestamp;
+						sequences.lazySet( index, position+1 ); // publish to the consumer
+						return true;
+					}
+				}
+				else if( available < 0 )
+				{
+					// the consumer hasn't freed this slot yet, we're full
+					return false;
+				}
+
+				// someone else got in first, try again from the latest position
+				position = tail.get();
 			}
 		}
+
+		/** @return The next message, or null if there isn't one. Consumer only. */
+		private byte[] peek()
+		{
+			int index = (int)(head & mask);
+			return sequences.get(index) == head+1 ? messages[index] : null;
+		}
+
+		/** @return Submission time of the message last returned by peek(). Consumer only. */
+		private long peekTimestamp()
+		{
+			return timestamps[(int)(head & mask)];
+		}
+
+		/** Release the slot of the message last returned by peek(). Consumer only. */
+		private void advance()
+		{
+			int index = (int)(head & mask);
+			messages[index] = null;
+			sequences.lazySet( index, head+mask+1 ); // free for the producer one lap ahead
+			head++;
+		}
+
+		private boolean isEmpty()
+		{
+			return sequences.get((int)(head & mask)) != head+1;
+		}
+
+		/**
+		 * @return True if a producer has claimed the slot at the head but not yet written to it.
+		 *         Consumer only, and only meaningful when {@link #peek()} has returned null.
+		 */
+		private boolean hasUnpublished()
+		{
+			return tail.get() != head;
+		}
+
+		/** @return Approximate number of messages in the ring */
+		private int size()
+		{
+			return (int)Math.max( 0, tail.get()-head );
+		}
 	}
 }
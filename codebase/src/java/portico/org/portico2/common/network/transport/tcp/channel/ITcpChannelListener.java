@@ -16,6 +16,7 @@ package org.portico2.common.network.transport.tcp.channel;
 
 import org.apache.logging.log4j.Logger;
 import org.portico.lrc.compat.JRTIinternalError;
+import org.portico2.common.network.Message;
 
 public interface ITcpChannelListener
 {
@@ -28,12 +29,17 @@ public interface ITcpChannelListener
 	//----------------------------------------------------------
 	/**
 	 * A message has been received on the given channel for processing.
+	 * <p/>
+	 * 
+	 * The message is a view over the buffer the bundle it arrived in was read into, and that
+	 * buffer is reused once this call returns. If you need the raw bytes after that, call
+	 * {@link Message#getBuffer()} before returning to get a copy of your own.
 	 * 
 	 * @param channel The channel it was received on
-	 * @param payload The raw payload that was received
+	 * @param message The message that was received
 	 * @throws JRTIinternalError Throw this if there is an error and the channel will log it
 	 */
-	public void receive( TcpChannel channel, byte[] payload ) throws JRTIinternalError;
+	public void receive( TcpChannel channel, Message message ) throws JRTIinternalError;
 
 	/**
 	 * This method is called when the channel has disconnected for any reason
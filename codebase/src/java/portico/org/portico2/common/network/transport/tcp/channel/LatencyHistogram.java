@@ -0,0 +1,154 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL)
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.network.transport.tcp.channel;
+
+/**
+ * A cheap, fixed-size histogram of latency samples. Samples are recorded in nanoseconds and
+ * stored in power-of-two buckets of microseconds (&lt;1us, 1-2us, 2-4us, 4-8us, ...), so
+ * percentiles are only accurate to within a factor of two. That is plenty for spotting whether
+ * something takes microseconds or milliseconds, and recording a sample never allocates.
+ * <p/>
+ *
+ * Like {@link Metrics}, this is not thread safe. It is expected that a single thread records
+ * into it (for the {@link Bundler}, that is the sender thread). Values read from other threads
+ * may be slightly stale.
+ */
+public class LatencyHistogram
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	/** Bucket 0 holds &lt;1us, bucket n holds [2^(n-1), 2^n) micros. 40 buckets covers ~6 days */
+	private static final int BUCKETS = 40;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private long[] buckets;
+	private long count;
+	private long total;
+	private long max;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public LatencyHistogram()
+	{
+		this.buckets = new long[BUCKETS];
+		clear();
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Record a single sample.
+	 *
+	 * @param nanos The latency to record, in nanoseconds. Negative values are treated as 0.
+	 */
+	public void record( long nanos )
+	{
+		if( nanos < 0 )
+			nanos = 0;
+
+		long micros = nanos / 1000;
+		int bucket = 64 - Long.numberOfLeadingZeros( micros );
+		if( bucket >= BUCKETS )
+			bucket = BUCKETS-1;
+
+		++buckets[bucket];
+		++count;
+		total += nanos;
+		if( nanos > max )
+			max = nanos;
+	}
+
+	/**
+	 * Get the approximate latency that the given percentage of samples fall at or under. The
+	 * value returned is the upper bound of the bucket the percentile lands in.
+	 *
+	 * @param percentile The percentile to get (0-100)
+	 * @return The latency (nanos) at the given percentile, or 0 if there are no samples
+	 */
+	public long getPercentile( double percentile )
+	{
+		if( count == 0 )
+			return 0;
+
+		long target = (long)Math.ceil( count * (percentile/100.0) );
+		long seen = 0;
+		for( int i = 0; i < BUCKETS; i++ )
+		{
+			seen += buckets[i];
+			if( seen >= target )
+				return Math.min( (1L << i) * 1000, max );
+		}
+
+		return max;
+	}
+
+	public void clear()
+	{
+		for( int i = 0; i < BUCKETS; i++ )
+			buckets[i] = 0;
+
+		this.count = 0;
+		this.total = 0;
+		this.max = 0;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format( "count=%d, mean=%s, p50=%s, p99=%s, max=%s",
+		                      count,
+		                      format(getMean()),
+		                      format(getPercentile(50)),
+		                      format(getPercentile(99)),
+		                      format(max) );
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Accessors and Mutators   //////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/** @return The number of samples recorded */
+	public long getCount()
+	{
+		return this.count;
+	}
+
+	/** @return The mean of all samples in nanos, or 0 if there are none */
+	public long getMean()
+	{
+		return count == 0 ? 0 : total / count;
+	}
+
+	/** @return The largest sample recorded in nanos */
+	public long getMax()
+	{
+		return this.max;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	private static String format( long nanos )
+	{
+		if( nanos < 1000000 )
+			return (nanos/1000)+"us";
+		else
+			return String.format( "%.2fms", nanos/1000000.0 );
+	}
+}
@@ -33,11 +33,25 @@ public class Metrics
 	public long bytesSent;
 	public long bytesReceived;
 
+	// Sending (recorded by the Bundler)
+	public long bundlesSent;
+	public long messagesOverflowed;          // messages that went to the overflow queue
+	public LatencyHistogram queueLatency;    // time from submission to being picked up for sending
+	public LatencyHistogram writeLatency;    // time taken to write each bundle to the socket
+
+	// Slow consumers (recorded by the OutboundQueue)
+	public int queueHighWater;               // most messages we have seen waiting to be written
+	public long messagesDropped;             // receive order messages dropped while lagging
+	public long messagesConflated;           // updates merged into an earlier one while lagging
+	public long blockedNanos;                // time senders spent waiting for the queue to drain
+
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
 	//----------------------------------------------------------
 	public Metrics()
 	{
+		this.queueLatency = new LatencyHistogram();
+		this.writeLatency = new LatencyHistogram();
 		clear();
 	}
 
@@ -54,6 +68,14 @@ public class Metrics
 		this.messagesReceived = 0;
 		this.bytesSent = 0;
 		this.bytesReceived = 0;
+		this.bundlesSent = 0;
+		this.messagesOverflowed = 0;
+		this.queueHighWater = 0;
+		this.messagesDropped = 0;
+		this.messagesConflated = 0;
+		this.blockedNanos = 0;
+		this.queueLatency.clear();
+		this.writeLatency.clear();
 	}
 
 	//----------------------------------------------------------
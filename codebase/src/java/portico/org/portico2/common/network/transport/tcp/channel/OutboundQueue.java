@@ -0,0 +1,589 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.network.transport.tcp.channel;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Logger;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.messaging.MessageType;
+import org.portico2.common.network.CallType;
+import org.portico2.common.network.Header;
+import org.portico2.common.network.Message;
+import org.portico2.common.services.object.msg.UpdateAttributes;
+
+/**
+ * Puts a limit on the number of messages a single server-side connection can have waiting to
+ * be written. Without one, a client that can't keep up (slow link, stalled federate) just has
+ * everything pile up in memory until the RTI runs out of it.
+ * <p/>
+ *
+ * Messages are passed straight through to the connection (the {@link Sink}) while it has fewer
+ * than <code>maxQueued</code> messages waiting. Once it reaches the limit, the connection is
+ * "lagging" and the configured {@link SlowConsumerPolicy} kicks in:
+ *
+ * <ul>
+ *   <li><b>Block</b>: The sending thread waits until there is room again. If the sending thread
+ *                     is not allowed to wait (see {@link Sink#canBlock()}) the message is queued
+ *                     regardless. This is the default, and is how the connections behaved before
+ *                     there was a limit: nothing is lost, but a slow client holds up its
+ *                     senders.</li>
+ *   <li><b>Drop</b>: Receive order updates and interactions are thrown away.</li>
+ *   <li><b>Conflate</b>: Receive order updates are held back here, one per object and sending
+ *                        federate. A new update from the same federate for an object that is
+ *                        already held is merged into it, so only the latest value of each
+ *                        attribute goes out. Updates from different federates are held
+ *                        separately, so each still arrives with the right source. Receive order
+ *                        interactions can't be merged, so they are thrown away as with Drop.</li>
+ * </ul>
+ *
+ * Control messages, timestamped messages and anything we can't look inside (encrypted) are never
+ * dropped or held back. Before one of these is passed on, any held updates are released first so
+ * that nothing is sent out of order. These still can't pile up forever though. If the connection
+ * reaches twice its limit, we give up on the client and disconnect it (see {@link Sink#disconnect()}).
+ * <p/>
+ *
+ * The connection must call {@link #drained()} each time it has written messages out. Once it has
+ * worked through half of its limit, held updates are released and the connection is no longer
+ * considered to be lagging. The same check is made when a message is submitted, so nothing is
+ * held back once the connection has caught up, even if it goes idle before calling drained().
+ * <p/>
+ *
+ * Everything is counted in the shared {@link Metrics}. Submitting while the connection is not
+ * lagging costs one read of the queue size and no locking.
+ */
+public class OutboundQueue
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	/** Default limit on the number of messages waiting to be written */
+	public static final int DEFAULT_MAX_QUEUED = 65536;
+
+	/** How long a blocked sender waits before checking the queue again, in case we miss a wakeup */
+	private static final long BLOCK_CHECK_MILLIS = 10;
+
+	/** Multiple of the limit at which we disconnect a client rather than queue any more for it */
+	private static final int DISCONNECT_FACTOR = 2;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private Logger logger;
+	private Sink sink;
+	private Metrics metrics;
+	private int maxQueued;
+	private int lowWater;
+	private int disconnectAt;
+	private SlowConsumerPolicy policy;
+
+	// lag tracking
+	private volatile boolean lagging;
+	private long droppedWhileLagging;
+	private long conflatedWhileLagging;
+	private long blockedWhileLagging;
+	private boolean disconnected; // given up on the connection, drop everything; guarded by this
+
+	// updates held back by the Conflate policy, by federation and object; guarded by this
+	private Map<ConflationKey,Conflated> conflated;
+	private volatile boolean hasConflated;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public OutboundQueue( Logger logger, Sink sink, Metrics metrics )
+	{
+		this.logger = logger;
+		this.sink = sink;
+		this.metrics = metrics;
+		this.policy = SlowConsumerPolicy.Block;
+		this.setMaxQueued( DEFAULT_MAX_QUEUED );
+
+		// lag tracking
+		this.lagging = false;
+		this.droppedWhileLagging = 0;
+		this.conflatedWhileLagging = 0;
+		this.blockedWhileLagging = 0;
+		this.disconnected = false;
+
+		this.conflated = new LinkedHashMap<>();
+		this.hasConflated = false;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Submitting and Draining   /////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Pass the given message on to the connection, applying the slow consumer policy if the
+	 * connection has hit its limit. Safe to call from any thread.
+	 *
+	 * @param message The full message (header and payload). Must not be modified afterwards.
+	 */
+	public void submit( byte[] message )
+	{
+		int queued = sink.getQueuedCount();
+		if( queued > metrics.queueHighWater )
+			metrics.queueHighWater = queued; // racy, but it is only a high-water mark
+
+		if( queued < maxQueued && hasConflated == false )
+			sink.write( message );
+		else
+			submitSlow( message, queued );
+	}
+
+	private synchronized void submitSlow( byte[] message, int queued )
+	{
+		// we've already given up on this one, it's on its way down
+		if( disconnected )
+			return;
+
+		boolean full = queued >= maxQueued;
+		if( full && lagging == false )
+		{
+			lagging = true;
+			logger.warn( "Connection to %s is falling behind: %d messages queued (limit=%d, policy=%s)",
+			             sink, queued, maxQueued, policy );
+		}
+		else if( queued <= lowWater )
+		{
+			caughtUp();
+		}
+
+		switch( policy )
+		{
+			case Drop:
+				if( full && isReceiveOrder(message) )
+				{
+					drop();
+					return;
+				}
+				break;
+			case Conflate:
+				// only hold back while we are behind, otherwise an update could sit here until
+				// some unrelated message comes along to push it out
+				UpdateAttributes update = (full || lagging) ? toReceiveOrderUpdate(message) : null;
+				if( update != null )
+				{
+					conflate( message, update );
+					return;
+				}
+
+				// interactions can't be merged, so they go the same way they would under Drop
+				if( full && isInteraction(message) && isReceiveOrder(message) )
+				{
+					drop();
+					return;
+				}
+
+				// not holding this one back, so anything we are holding has to go first
+				if( tooFarBehind() )
+					return;
+
+				releaseConflated();
+				sink.write( message );
+				return;
+			case Block:
+			default:
+				if( full )
+					block();
+				break;
+		}
+
+		if( tooFarBehind() )
+			return;
+
+		sink.write( message );
+	}
+
+	/**
+	 * Whatever makes it past the policy can't be dropped or held back, but it can't pile up
+	 * forever either. If the connection has twice its limit waiting, disconnect it.
+	 *
+	 * @return True if the connection was disconnected and the message should be thrown away
+	 */
+	private boolean tooFarBehind()
+	{
+		if( sink.isOpen() && sink.getQueuedCount() >= disconnectAt )
+		{
+			disconnect();
+			return true;
+		}
+
+		return false;
+	}
+
+	private void drop()
+	{
+		++metrics.messagesDropped;
+		++droppedWhileLagging;
+	}
+
+	/**
+	 * The connection has reached the point where we would rather lose the client than keep
+	 * queuing for it. Throw away anything we're holding, wake any blocked senders and ask the
+	 * connection to close.
+	 */
+	private void disconnect()
+	{
+		disconnected = true;
+		logger.error( "Disconnecting %s: %d messages queued that can't be dropped or merged (limit=%d, policy=%s)",
+		              sink, sink.getQueuedCount(), maxQueued, policy );
+
+		conflated.clear();
+		hasConflated = false;
+		notifyAll();
+
+		sink.disconnect();
+	}
+
+	/**
+	 * Wait until the connection is below its limit or has closed. Releases the lock while
+	 * waiting so that {@link #drained()} can get in to wake us up.
+	 */
+	private void block()
+	{
+		if( sink.canBlock() == false )
+			return;
+
+		long start = System.nanoTime();
+		try
+		{
+			while( sink.isOpen() && sink.getQueuedCount() >= maxQueued )
+				wait( BLOCK_CHECK_MILLIS );
+		}
+		catch( InterruptedException ie )
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		long blocked = System.nanoTime() - start;
+		metrics.blockedNanos += blocked;
+		blockedWhileLagging += blocked;
+	}
+
+	/**
+	 * Called by the connection each time it has written messages out. Cheap unless the
+	 * connection is lagging. Once there is room, blocked senders are woken up. Once the
+	 * connection has worked through half its limit, held updates are released and the
+	 * connection stops being considered lagging.
+	 */
+	public void drained()
+	{
+		if( lagging == false && hasConflated == false )
+			return;
+
+		int queued = sink.getQueuedCount();
+		if( queued >= maxQueued )
+			return;
+
+		synchronized( this )
+		{
+			notifyAll();
+			if( queued <= lowWater )
+				caughtUp();
+		}
+	}
+
+	/** The connection is back under its low water mark: release held updates and stop lagging */
+	private void caughtUp()
+	{
+		releaseConflated();
+		if( lagging )
+		{
+			lagging = false;
+			logger.info( "Connection to %s has caught up (dropped=%d, conflated=%d, blocked=%dms)",
+			             sink, droppedWhileLagging, conflatedWhileLagging,
+			             TimeUnit.NANOSECONDS.toMillis(blockedWhileLagging) );
+
+			droppedWhileLagging = 0;
+			conflatedWhileLagging = 0;
+			blockedWhileLagging = 0;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Conflation   //////////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Hold the update back, merging it into any update we're already holding for the object
+	 * from the same federate
+	 */
+	private void conflate( byte[] message, UpdateAttributes update )
+	{
+		ConflationKey key = new ConflationKey( update.getTargetFederation(),
+		                                       update.getObjectId(),
+		                                       new Header(message,0).getSourceFederate() );
+		Conflated existing = conflated.get( key );
+		if( existing == null )
+		{
+			conflated.put( key, new Conflated(message,update) );
+			hasConflated = true;
+		}
+		else
+		{
+			existing.merge( message, update );
+			++metrics.messagesConflated;
+			++conflatedWhileLagging;
+		}
+	}
+
+	/** Pass everything we are holding on to the connection, oldest object first */
+	private void releaseConflated()
+	{
+		if( hasConflated == false )
+			return;
+
+		Iterator<Conflated> iterator = conflated.values().iterator();
+		while( iterator.hasNext() )
+		{
+			Conflated next = iterator.next();
+			iterator.remove();
+			try
+			{
+				sink.write( next.toBytes() );
+			}
+			catch( Exception e )
+			{
+				logger.error( "Could not send conflated update for object "+
+				              next.update.getObjectId()+": "+e.getMessage(), e );
+			}
+		}
+
+		hasConflated = false;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Message Inspection   //////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/** @return True if the message is a receive order update or interaction */
+	private boolean isReceiveOrder( byte[] message )
+	{
+		Header header = new Header( message, 0 );
+		if( isUpdateOrInteraction(header) == false )
+			return false;
+
+		// best effort messages are always receive order, no need to look inside
+		if( header.isBestEffort() )
+			return true;
+		else if( header.isEncrypted() )
+			return false;
+
+		PorticoMessage inflated = inflate( message );
+		return inflated != null && inflated.isTimestamped() == false;
+	}
+
+	/** @return The inflated update if the message is a receive order update, null otherwise */
+	private UpdateAttributes toReceiveOrderUpdate( byte[] message )
+	{
+		Header header = new Header( message, 0 );
+		if( header.getMessageType() != MessageType.UpdateAttributes ||
+			isUpdateOrInteraction(header) == false ||
+			header.isEncrypted() )
+		{
+			return null;
+		}
+
+		PorticoMessage inflated = inflate( message );
+		if( inflated == null || inflated.isTimestamped() )
+			return null;
+		else
+			return (UpdateAttributes)inflated;
+	}
+
+	private boolean isInteraction( byte[] message )
+	{
+		return new Header(message,0).getMessageType() == MessageType.SendInteraction;
+	}
+
+	private boolean isUpdateOrInteraction( Header header )
+	{
+		if( header.isDataMessage() == false )
+			return false;
+
+		MessageType type = header.getMessageType();
+		return type == MessageType.UpdateAttributes || type == MessageType.SendInteraction;
+	}
+
+	private PorticoMessage inflate( byte[] message )
+	{
+		try
+		{
+			return new Message( message ).inflateAsPorticoMessage();
+		}
+		catch( Exception e )
+		{
+			// can't tell what it is, so it isn't safe to drop
+			logger.debug( "Could not inflate message to apply slow consumer policy: "+e.getMessage() );
+			return null;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Accessors and Mutators   //////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	public int getMaxQueued()
+	{
+		return this.maxQueued;
+	}
+
+	/**
+	 * @param maxQueued Number of messages the connection can have waiting before the slow
+	 *                  consumer policy is applied. The client is disconnected if it gets to
+	 *                  twice this.
+	 */
+	public void setMaxQueued( int maxQueued )
+	{
+		this.maxQueued = Math.max( 1, maxQueued );
+		this.lowWater = this.maxQueued / 2;
+		this.disconnectAt = (int)Math.min( Integer.MAX_VALUE, (long)this.maxQueued*DISCONNECT_FACTOR );
+	}
+
+	public SlowConsumerPolicy getPolicy()
+	{
+		return this.policy;
+	}
+
+	public void setPolicy( SlowConsumerPolicy policy )
+	{
+		this.policy = policy;
+	}
+
+	public boolean isLagging()
+	{
+		return this.lagging;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	////// Interface: Sink   /////////////////////////////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////
+	/** The connection that messages are passed on to */
+	public interface Sink
+	{
+		/** Queue the message for writing. Must never block. */
+		public void write( byte[] message );
+
+		/** @return Number of messages queued but not yet written */
+		public int getQueuedCount();
+
+		/** @return False once the connection has closed, so blocked senders can give up */
+		public boolean isOpen();
+
+		/** @return True if the calling thread can be made to wait for the queue to drain */
+		public boolean canBlock();
+
+		/** Close the connection, it has fallen too far behind to keep. Must never block. */
+		public void disconnect();
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	////// Private Class: ConflationKey   ////////////////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////
+	/** Identifies the updates that can be merged together: same federation, object and sender */
+	private static class ConflationKey
+	{
+		private final int federation;
+		private final int objectId;
+		private final int source;
+
+		private ConflationKey( int federation, int objectId, int source )
+		{
+			this.federation = federation;
+			this.objectId = objectId;
+			this.source = source;
+		}
+
+		@Override
+		public boolean equals( Object other )
+		{
+			if( other instanceof ConflationKey == false )
+				return false;
+
+			ConflationKey key = (ConflationKey)other;
+			return key.objectId == objectId && key.federation == federation && key.source == source;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (federation*31 + objectId)*31 + source;
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////
+	////// Private Class: Conflated   ////////////////////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////
+	/** The update being held back for a single object from a single federate */
+	private static class Conflated
+	{
+		private byte[] latest;                      // last message received for the object
+		private UpdateAttributes update;            // inflated version of latest
+		private HashMap<Integer,byte[]> attributes; // merged values, null until we merge
+
+		private Conflated( byte[] message, UpdateAttributes update )
+		{
+			this.latest = message;
+			this.update = update;
+			this.attributes = null;
+		}
+
+		private void merge( byte[] message, UpdateAttributes next )
+		{
+			if( attributes == null )
+				attributes = new HashMap<>( update.getAttributes() );
+
+			attributes.putAll( next.getAttributes() );
+			this.latest = message;
+			this.update = next;
+		}
+
+		/**
+		 * @return The original message if nothing was merged into it, otherwise a new message
+		 *         built from the latest update, carrying the merged attribute values. The tag
+		 *         and routing information come from the latest update. Everything merged came
+		 *         from the same federate, so the source is right for all of the values.
+		 */
+		private byte[] toBytes()
+		{
+			if( attributes == null )
+				return latest;
+
+			// the object class only lives in the header, so pull it back out
+			Header original = new Header( latest, 0 );
+			UpdateAttributes merged = update.clone( UpdateAttributes.class );
+			merged.setAttributes( attributes );
+			if( original.isFiltering() && original.isFilteringObjectClass() )
+				merged.setObjectClass( original.getFilteringId() );
+
+			byte[] buffer = new Message( merged, CallType.DataMessage, 0 ).getBuffer();
+			Header header = new Header( buffer, 0 );
+			header.writeSourceAndTargetFederate( original.getSourceFederate(),
+			                                     original.getTargetFederate() );
+			header.writeIsBestEffort( original.isBestEffort() );
+			return buffer;
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.network.transport.tcp.channel;
+
+import org.portico.lrc.compat.JConfigurationException;
+
+/**
+ * What a TCP server connection should do when a client can't read messages as fast as we are
+ * sending them and its outbound queue has reached its limit. See {@link OutboundQueue}.
+ */
+public enum SlowConsumerPolicy
+{
+	//----------------------------------------------------------
+	//                        VALUES
+	//----------------------------------------------------------
+	/** The sending thread waits until the queue has room. Nothing is lost. This is how the
+	    connections always behaved, so it is the **default** */
+	Block,
+
+	/** Receive order updates and interactions are thrown away until the queue has room */
+	Drop,
+
+	/** Receive order updates for the same object are merged, so only the latest value of each
+	    attribute is sent once the queue has room. Receive order interactions are thrown away */
+	Conflate;
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/**
+	 * Turn the given string into a {@link SlowConsumerPolicy}, ignoring case.
+	 * 
+	 * @param string The string to load the policy from
+	 * @return The policy represented by the string
+	 * @throws JConfigurationException If the policy is not known
+	 */
+	public static SlowConsumerPolicy fromString( String string ) throws JConfigurationException
+	{
+		for( SlowConsumerPolicy policy : SlowConsumerPolicy.values() )
+			if( policy.name().equalsIgnoreCase(string.trim()) )
+				return policy;
+
+		throw new JConfigurationException( "Unknown slow consumer policy: "+string+
+		                                   " (expected block, drop or conflate)" );
+	}
+}
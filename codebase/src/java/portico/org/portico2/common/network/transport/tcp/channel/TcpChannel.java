@@ -22,7 +22,11 @@ import java.net.Socket;
 
 import org.apache.logging.log4j.Logger;
 import org.portico.utils.StringUtils;
+import org.portico.utils.bithelpers.BitHelpers;
+import org.portico2.common.network.BufferPool;
 import org.portico2.common.network.Header;
+import org.portico2.common.network.Message;
+import org.portico2.common.network.PooledBuffer;
 import org.portico2.common.network.configuration.transport.TcpConfiguration;
 
 /**
@@ -33,6 +37,10 @@ public class TcpChannel
 	//----------------------------------------------------------
 	//                    STATIC VARIABLES
 	//----------------------------------------------------------
+	/** Largest incoming bundle we'll pool the buffer for. Anything bigger gets a one-off array */
+	private static final int MAX_POOLED_BUNDLE = 256 * 1024;
+	/** Spare buffers kept per size class. We only ever have one bundle in flight at a time */
+	private static final int POOLED_PER_CLASS = 4;
 
 	//----------------------------------------------------------
 	//                   INSTANCE VARIABLES
@@ -47,7 +55,9 @@ public class TcpChannel
 	
 	// Sending and Receiving
 	private Bundler bundler;   // sending
+	private OutboundQueue outbound; // limits what can pile up in the bundler
 	private Receiver receiver; // receiving
+	private BufferPool bufferPool; // buffers incoming bundles are read into
 	private ITcpChannelListener appListener;
 	
 	// Metrics
@@ -68,12 +78,16 @@ public class TcpChannel
 
 		// Sending and Receiving
 		this.receiver = new Receiver();
+		this.bufferPool = new BufferPool( MAX_POOLED_BUNDLE, POOLED_PER_CLASS );
 		this.bundler = new Bundler(logger);
 		this.appListener = appListener; 
 
 		// Metrics
 		this.metrics = new Metrics();
 		this.bundler.setMetrics( metrics ); // share our metrics
+
+		this.outbound = new OutboundQueue( logger, new BundlerSink(), metrics );
+		this.bundler.setDrainListener( outbound::drained );
 	}
 
 	//----------------------------------------------------------
@@ -87,8 +101,22 @@ public class TcpChannel
 		this.bundler.setEnabled( configuration.isBundlingEnabled() );
 		this.bundler.setTimeLimit( configuration.getBundleMaxTime() );
 		this.bundler.setSizeLimit( configuration.getBundleMaxSize() );
+		this.bundler.setMetrics( metrics ); // keep sharing our metrics with the new bundler
+		this.bundler.setDrainListener( outbound::drained );
 		if( configuration.isBundlingEnabled() == false )
 			logger.debug( "Message bundling disabled for TCP Channel" );
+
+		configureOutbound( configuration );
+	}
+
+	/**
+	 * Apply the outbound queue limit and slow consumer policy from the given configuration,
+	 * leaving the bundler as it is.
+	 */
+	public void configureOutbound( TcpConfiguration configuration )
+	{
+		this.outbound.setMaxQueued( configuration.getOutboundMaxQueued() );
+		this.outbound.setPolicy( configuration.getSlowConsumerPolicy() );
 	}
 	
 	public void connect( Socket socket, DataInputStream instream, DataOutputStream outstream ) throws IOException
@@ -164,38 +192,37 @@ public class TcpChannel
 	//////////////////////////////////////////////////////////////////////////////////////
 	/**
 	 * Send the given message to the network. If bundling is enabled this will not necessarily
-	 * result in an immediate send.
+	 * result in an immediate send. If the other end isn't keeping up, the slow consumer policy
+	 * decides what happens to the message (see {@link OutboundQueue}).
 	 * 
 	 * @param payload Raw payload to send
 	 */
 	public final void send( byte[] payload )
 	{
-		bundler.submit( payload );
+		outbound.submit( payload );
 	}
 
 	//////////////////////////////////////////////////////////////////////////////////////
 	///  Message RECEIVING Methods   /////////////////////////////////////////////////////
 	//////////////////////////////////////////////////////////////////////////////////////
-	private final void receiveBundle( byte[] payload ) throws IOException
+	/**
+	 * Split a received bundle up into its messages and hand each to the listener. The messages
+	 * are views straight over the bundle buffer; nothing is copied. Each message holds its own
+	 * reference to the buffer while it is being processed, so the buffer only goes back to the
+	 * pool once the bundle reference and every message reference have been released.
+	 */
+	private final void receiveBundle( PooledBuffer bundle, int length ) throws IOException
 	{
 		int bytesRead = 0;
-		while( bytesRead < payload.length )
-			bytesRead += receiveSingle( payload, bytesRead );
+		while( bytesRead < length )
+			bytesRead += receiveSingle( bundle, bytesRead );
 	}
 	
-	private final int receiveSingle( byte[] payload, int offset ) throws IOException
+	private final int receiveSingle( PooledBuffer bundle, int offset ) throws IOException
 	{
-		Header header = new Header( payload, offset );
-		int messageLength = header.getPayloadLength() + Header.HEADER_LENGTH;
-		
-		// Extract the contents for this single message from the payload
-		// If the payload is the same length as the message, they're one and the same
-		byte[] messageOnly = payload;
-		if( payload.length != messageLength )
-		{
-			messageOnly = new byte[messageLength];
-			System.arraycopy( payload, offset, messageOnly, 0, messageLength ); // TODO Remove this wasteful copy
-		}
+		// read the length straight out of the header; see Header.getPayloadLength()
+		int messageLength = (int)BitHelpers.readUint24( bundle.array(), offset+1 ) + Header.HEADER_LENGTH;
+		Message message = new Message( bundle, offset, messageLength );
 		
 		// Keep some stats
 		++metrics.messagesReceived;
@@ -204,6 +231,7 @@ public class TcpChannel
 		// Log the message
 		if( logger.isTraceEnabled() )
 		{
+			Header header = message.getHeader();
 			logger.trace( "(incoming) type=%s (id=%d), ptype=%s, from=%s, to=%s, size=%s, app=%s",
 			              header.getCallType(),
 			              header.getRequestId(),
@@ -217,13 +245,18 @@ public class TcpChannel
 		try
 		{
     		// Handle the message
-    		appListener.receive( this, messageOnly );
+    		appListener.receive( this, message );
 		}
 		catch( Exception e )
 		{
 			logger.warn( "Error while processing message: "+e.getMessage() );
 			logger.trace( "Exception Details", e );
 		}
+		finally
+		{
+			// Anything that wanted to keep the bytes has taken a copy by now
+			message.release();
+		}
 		
 		// return bytes read
 		return messageLength;
@@ -237,10 +270,68 @@ public class TcpChannel
 		return this.metrics;
 	}
 
+	public OutboundQueue getOutboundQueue()
+	{
+		return this.outbound;
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
 
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Private Inner Class: BundlerSink   ////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/** Feeds the outbound queue into whichever bundler we currently have */
+	private class BundlerSink implements OutboundQueue.Sink
+	{
+		@Override
+		public void write( byte[] message )
+		{
+			bundler.submit( message );
+		}
+
+		@Override
+		public int getQueuedCount()
+		{
+			return bundler.getQueuedCount();
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return isConnected;
+		}
+
+		@Override
+		public boolean canBlock()
+		{
+			// the receiver can't wait on our own bundler, it may be the one we're waiting on
+			return Thread.currentThread() != receiver;
+		}
+
+		@Override
+		public void disconnect()
+		{
+			// knocks the receiver out of its read, and it takes the connection down from there
+			try
+			{
+				if( instream != null )
+					instream.close();
+			}
+			catch( IOException ioex )
+			{
+				logger.error( "Exception while closing TCP Channel streams: "+ioex.getMessage(), ioex );
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			return connectionInfo;
+		}
+	}
+
 	////////////////////////////////////////////////////////////////////////////////////////
 	///  Private Inner Class: Receiver   ///////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////
@@ -262,18 +353,24 @@ public class TcpChannel
 					// Read the next message from sender
     				int header = instream.readInt();
 					int length = instream.readInt(); // messages always come through bundler, so no requestId on outside, just read length
-					byte[] payload = new byte[length];
-					instream.readFully( payload );
-
-					if( header == 0xcafe )
+					PooledBuffer bundle = bufferPool.acquire( length );
+					try
 					{
-						// Bundle Received
-						receiveBundle( payload );
+						instream.readFully( bundle.array(), 0, length );
+						if( header == 0xcafe )
+						{
+							// Bundle Received
+							receiveBundle( bundle, length );
+						}
+						else if( header == 0xbabe )
+						{
+							// Single Message
+							logger.warn( "We received a single message... wtf?" );
+						}
 					}
-					else if( header == 0xbabe )
+					finally
 					{
-						// Single Message
-						logger.warn( "We received a single message... wtf?" );
+						bundle.release();
 					}
     			}
 			}
@@ -0,0 +1,710 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.network.transport.tcp.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+import org.portico.utils.StringUtils;
+import org.portico2.common.PorticoConstants;
+import org.portico2.common.network.Header;
+import org.portico2.common.network.transport.tcp.TcpClientProxy;
+import org.portico2.common.network.transport.tcp.channel.Metrics;
+import org.portico2.common.network.transport.tcp.channel.OutboundQueue;
+
+/**
+ * The server-side end of a single client connection to the {@link NioServerTransport}. This
+ * is the NIO equivalent of the {@link TcpClientProxy}, and speaks exactly the same protocol:
+ *
+ * <ol>
+ *   <li>Server sends WELCOME: <code>0xbeef, length, text</code> then READY: <code>0xfeed</code></li>
+ *   <li>Client replies with READY: <code>0xfeed</code></li>
+ *   <li>From then on, both sides send bundles: <code>0xcafe, length, message*</code></li>
+ * </ol>
+ *
+ * <b>Reading</b>
+ * <p/>
+ * Data is read into the event loop's shared buffer and fed through a small state machine. Each
+ * message inside a bundle is copied once, straight into a <code>byte[]</code> of exactly the
+ * right size. Bundles and messages may be split across any number of reads. Lengths come from
+ * the remote host, so they are checked before anything is allocated: a negative bundle length,
+ * or a message that claims to run past the end of its bundle, closes the connection.
+ * <p/>
+ *
+ * Complete messages are not processed on the event loop. They are queued and handed to one of
+ * the server's worker threads, which passes them up in the order they arrived. That keeps a
+ * slow message handler from holding up the reads and writes of every other client on the loop.
+ * If a client gets too far ahead of its worker, we stop reading from it until the worker has
+ * caught up, which pushes back on the client through TCP flow control.
+ * <p/>
+ *
+ * <b>Writing</b>
+ * <p/>
+ * {@link #send(byte[])} can be called from any thread. It adds the message to a queue and asks
+ * the event loop to flush us if it isn't already going to. When the loop flushes, everything
+ * that is queued (up to the configured max bundle size) goes out as a single bundle using one
+ * gathering write. If the socket can't take it all, we wait for it to become writable again.
+ * Messages pass through an {@link OutboundQueue} first, which applies the slow consumer policy
+ * if this client falls too far behind. Event loop threads are never made to block, as they may
+ * be the ones that have to do the draining.
+ * <p/>
+ *
+ * Apart from {@link #send(byte[])}, {@link #shutdown()} and the worker that processes inbound
+ * messages, everything must only be called from the event loop the connection is registered with.
+ */
+public class NioClientConnection
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	// used to give each client an index
+	private static final AtomicLong ID_GENERATOR = new AtomicLong( 0 );
+
+	/** Max number of messages to put in a single gathering write */
+	private static final int MAX_BATCH = 256;
+
+	/** Largest message we will accept. The header only has 24 bits for the payload length */
+	private static final int MAX_MESSAGE_LENGTH = Header.HEADER_LENGTH + 0xffffff;
+
+	/** Number of received messages waiting on a worker before we stop reading from the client */
+	private static final int MAX_INBOUND = 1024;
+
+	private static final int CODE_WELCOME = 0xbeef;
+	private static final int CODE_READY   = 0xfeed;
+	private static final int CODE_BUNDLE  = 0xcafe;
+
+	private enum ReadState{ Handshake, FrameHeader, MessageHeader, MessageBody, Skip };
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private Logger logger;
+	private NioServerTransport server;
+	private NioEventLoop loop;
+	private SocketChannel channel;
+	private SelectionKey key;
+	private long hostID;
+	private String connectionInfo;
+	private AtomicBoolean running;
+
+	// reading
+	private ReadState readState;
+	private ByteBuffer control;      // handshake codes and frame headers
+	private byte[] messageHeader;    // header of the message we're reading, until we have all of it
+	private int headerRead;
+	private byte[] message;          // message we're reading, once we know how big it is
+	private int messageRead;
+	private int bundleRemaining;     // bytes left in the current bundle
+
+	// dispatching
+	private Queue<byte[]> inbound;
+	private AtomicInteger inboundQueued;
+	private AtomicBoolean dispatchScheduled;
+	private AtomicBoolean readPaused;
+
+	// writing
+	private OutboundQueue outboundQueue;
+	private Queue<byte[]> outbound;
+	private AtomicInteger queued;    // messages in the outbound queue
+	private AtomicBoolean flushScheduled;
+	private int maxBundleSize;
+	private ByteBuffer frameHeader;
+	private ByteBuffer[] writeBatch;
+	private int writeOffset;
+	private int writeCount;
+	private boolean writePending;    // waiting for the socket to become writable
+
+	// metrics
+	private Metrics metrics;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected NioClientConnection( NioServerTransport server, NioEventLoop loop, SocketChannel channel )
+		throws IOException
+	{
+		this.logger = server.getLogger();
+		this.server = server;
+		this.loop = loop;
+		this.channel = channel;
+		this.key = null;  // set in registered()
+		this.hostID = ID_GENERATOR.incrementAndGet();
+		this.connectionInfo = channel.getRemoteAddress().toString();
+		this.running = new AtomicBoolean( true );
+
+		// reading
+		this.readState = ReadState.Handshake;
+		this.control = ByteBuffer.allocate( 8 );
+		this.control.limit( 4 ); // handshake is a single int
+		this.messageHeader = new byte[Header.HEADER_LENGTH];
+		this.headerRead = 0;
+		this.message = null;
+		this.messageRead = 0;
+		this.bundleRemaining = 0;
+
+		// dispatching
+		this.inbound = new ConcurrentLinkedQueue<>();
+		this.inboundQueued = new AtomicInteger( 0 );
+		this.dispatchScheduled = new AtomicBoolean( false );
+		this.readPaused = new AtomicBoolean( false );
+
+		// writing
+		this.outbound = new ConcurrentLinkedQueue<>();
+		this.queued = new AtomicInteger( 0 );
+		this.flushScheduled = new AtomicBoolean( false );
+		this.maxBundleSize = server.getConfiguration().getBundleMaxSize();
+		this.frameHeader = ByteBuffer.allocate( 8 );
+		this.writeBatch = new ByteBuffer[MAX_BATCH+1];
+		this.writeOffset = 0;
+		this.writeCount = 0;
+		this.writePending = false;
+
+		// metrics
+		this.metrics = new Metrics();
+
+		this.outboundQueue = new OutboundQueue( logger, new ConnectionSink(), metrics );
+		this.outboundQueue.setMaxQueued( server.getConfiguration().getOutboundMaxQueued() );
+		this.outboundQueue.setPolicy( server.getConfiguration().getSlowConsumerPolicy() );
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	public long getID() { return this.hostID; }
+
+	/////////////////////////////////////////////////////////////////////////////////////
+	/// Lifecycle Methods  //////////////////////////////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Called by the event loop once we've been registered with its selector. Kick off the
+	 * handshake by sending the WELCOME and READY codes.
+	 */
+	protected void registered( SelectionKey key ) throws IOException
+	{
+		this.key = key;
+
+		byte[] welcome = ("Portico Router ("+PorticoConstants.RTI_VERSION+"): Your ID"+hostID).getBytes();
+		ByteBuffer handshake = ByteBuffer.allocate( 12+welcome.length );
+		handshake.putInt( CODE_WELCOME );
+		handshake.putInt( welcome.length );
+		handshake.put( welcome );
+		handshake.putInt( CODE_READY );
+		handshake.flip();
+
+		writeBatch[0] = handshake;
+		writeCount = 1;
+		writeInFlight();
+	}
+
+	public void shutdown()
+	{
+		if( running.compareAndSet(true,false) == false )
+			return;
+
+		// pull ourselves out of the processing queue
+		server.removeClient( this );
+
+		// close the channel, which will also cancel our key
+		try
+		{
+			channel.close();
+		}
+		catch( IOException ioex )
+		{
+			logger.error( "Exception while closing NIO channel: "+ioex.getMessage(), ioex );
+		}
+
+		// user feedback
+		String dataReceived = StringUtils.getSizeString( metrics.bytesReceived, 2 );
+		String dataSent = StringUtils.getSizeString( metrics.bytesSent, 2 );
+		logger.info( "  (Removed) Connection ID="+hostID+" has disconnected" );
+		logger.info( "            Packets From: "+metrics.messagesReceived+" packets, "+dataReceived );
+		logger.info( "            Packets Sent: "+metrics.messagesSent+" packets, "+dataSent );
+		logger.info( "            Max Queued  : "+metrics.queueHighWater+" messages" );
+		if( metrics.messagesDropped > 0 || metrics.messagesConflated > 0 || metrics.blockedNanos > 0 )
+		{
+			logger.info( "            Dropped     : "+metrics.messagesDropped+" messages" );
+			logger.info( "            Conflated   : "+metrics.messagesConflated+" messages" );
+			logger.info( "            Blocked For : "+(metrics.blockedNanos/1000000)+"ms" );
+		}
+	}
+
+	protected void disconnected( Throwable throwable )
+	{
+		if( running.get() )
+		{
+			logger.debug( "NIO Channel has disconnected, closing connection down: "+throwable.getMessage() );
+			shutdown();
+		}
+	}
+
+	public boolean isRunning()
+	{
+		return running.get();
+	}
+
+	///////////////////////////////////////////////////////////////////////////////////////
+	///  Message SENDING Methods   ////////////////////////////////////////////////////////
+	///////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Queue the given message for sending. Safe to call from any thread. The buffer must not
+	 * be modified after it has been passed in.
+	 *
+	 * @param payload The full message (header and payload) to send
+	 */
+	public void send( byte[] payload )
+	{
+		if( running.get() == false )
+			return;
+
+		outboundQueue.submit( payload );
+	}
+
+	/** Where the outbound queue puts messages once it has decided they can go */
+	private void enqueue( byte[] payload )
+	{
+		queued.incrementAndGet();
+		outbound.add( payload );
+		if( flushScheduled.compareAndSet(false,true) )
+			loop.scheduleFlush( this );
+	}
+
+	/**
+	 * Write out as much as we can of anything that is in flight and then anything queued.
+	 * If the socket fills up, register for write interest and pick up where we left off
+	 * when the loop tells us it has drained.
+	 */
+	protected void flush() throws IOException
+	{
+		// reset first so that anything queued from here on schedules another flush
+		flushScheduled.set( false );
+		if( running.get() == false )
+			return;
+
+		try
+		{
+			flushQueued();
+		}
+		finally
+		{
+			outboundQueue.drained();
+		}
+	}
+
+	private void flushQueued() throws IOException
+	{
+		if( writeInFlight() == false )
+			return;
+
+		while( outbound.isEmpty() == false )
+		{
+			// gather up everything queued into a single bundle
+			int bundleSize = 0;
+			int count = 1; // slot 0 is the frame header
+			byte[] next = null;
+			while( count <= MAX_BATCH && (next = outbound.peek()) != null )
+			{
+				if( bundleSize > 0 && bundleSize+next.length > maxBundleSize )
+					break;
+
+				outbound.poll();
+				queued.decrementAndGet();
+				writeBatch[count++] = ByteBuffer.wrap( next );
+				bundleSize += next.length;
+			}
+
+			frameHeader.clear();
+			frameHeader.putInt( CODE_BUNDLE );
+			frameHeader.putInt( bundleSize );
+			frameHeader.flip();
+			writeBatch[0] = frameHeader;
+			writeCount = count;
+
+			metrics.messagesSent += count-1;
+			metrics.bytesSent += bundleSize;
+			if( logger.isTraceEnabled() )
+				logger.trace( "(outgoing) {FLUSH} %d messages (%s) have been flushed", count-1, bundleSize );
+
+			if( writeInFlight() == false )
+				return;
+		}
+	}
+
+	/**
+	 * Try to write out the rest of the current batch.
+	 *
+	 * @return <code>true</code> if the batch was written in full, <code>false</code> if the
+	 *         socket is full and we have to wait for it to become writable
+	 */
+	private boolean writeInFlight() throws IOException
+	{
+		while( writeOffset < writeCount )
+		{
+			long written = channel.write( writeBatch, writeOffset, writeCount-writeOffset );
+			while( writeOffset < writeCount && writeBatch[writeOffset].hasRemaining() == false )
+				writeBatch[writeOffset++] = null;
+
+			if( written == 0 && writeOffset < writeCount )
+			{
+				writePending = true;
+				updateInterest();
+				return false;
+			}
+		}
+
+		writeOffset = 0;
+		writeCount = 0;
+		if( writePending )
+		{
+			writePending = false;
+			updateInterest();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Set the ops we're interested in on our key from the current read and write state. Only
+	 * ever called from the event loop, so the two can't stomp on each other.
+	 */
+	private void updateInterest()
+	{
+		int ops = readPaused.get() ? 0 : SelectionKey.OP_READ;
+		if( writePending )
+			ops |= SelectionKey.OP_WRITE;
+
+		if( key.interestOps() != ops )
+			key.interestOps( ops );
+	}
+
+	///////////////////////////////////////////////////////////////////////////////////////
+	///  Message RECEIVING Methods   //////////////////////////////////////////////////////
+	///////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Read whatever is available from the socket into the given (shared) buffer and process it.
+	 *
+	 * @param buffer The event loop's read buffer
+	 * @throws IOException If the channel has been closed or there is an error reading from it
+	 */
+	protected void read( ByteBuffer buffer ) throws IOException
+	{
+		buffer.clear();
+		int count = channel.read( buffer );
+		if( count == -1 )
+			throw new EOFException( "Connection closed by remote host" );
+
+		buffer.flip();
+		while( buffer.hasRemaining() )
+		{
+			switch( readState )
+			{
+				case Handshake:
+					readHandshake( buffer );
+					break;
+				case FrameHeader:
+					readFrameHeader( buffer );
+					break;
+				case MessageHeader:
+					readMessageHeader( buffer );
+					break;
+				case MessageBody:
+					readMessageBody( buffer );
+					break;
+				case Skip:
+					int skip = Math.min( buffer.remaining(), bundleRemaining );
+					buffer.position( buffer.position()+skip );
+					bundleRemaining -= skip;
+					if( bundleRemaining == 0 )
+						readState = ReadState.FrameHeader;
+					break;
+			}
+		}
+	}
+
+	private void readHandshake( ByteBuffer buffer ) throws IOException
+	{
+		if( fillControl(buffer) == false )
+			return;
+
+		int received = control.getInt();
+		if( received != CODE_READY )
+			throw new IOException( "Expected code READY (0xfeed) but got "+StringUtils.formatAsHex(received) );
+
+		control.clear();
+		readState = ReadState.FrameHeader;
+		server.addClient( this );
+	}
+
+	private void readFrameHeader( ByteBuffer buffer ) throws IOException
+	{
+		if( fillControl(buffer) == false )
+			return;
+
+		int code = control.getInt();
+		bundleRemaining = control.getInt();
+		control.clear();
+
+		if( bundleRemaining < 0 )
+		{
+			throw new IOException( "Invalid frame length from "+connectionInfo+": code="+
+			                       StringUtils.formatAsHex(code)+", length="+bundleRemaining );
+		}
+		else if( bundleRemaining == 0 )
+		{
+			return;
+		}
+
+		if( code == CODE_BUNDLE )
+		{
+			readState = ReadState.MessageHeader;
+		}
+		else
+		{
+			// The TcpChannel doesn't process single messages (0xbabe) either
+			logger.warn( "Skipping unexpected frame from %s: code=%s, length=%d",
+			             connectionInfo, StringUtils.formatAsHex(code), bundleRemaining );
+			readState = ReadState.Skip;
+		}
+	}
+
+	private void readMessageHeader( ByteBuffer buffer ) throws IOException
+	{
+		if( headerRead == 0 && bundleRemaining < Header.HEADER_LENGTH )
+		{
+			throw new IOException( "Bundle from "+connectionInfo+" has "+bundleRemaining+
+			                       " bytes left, not enough for a message header" );
+		}
+
+		int length = Math.min( buffer.remaining(), Header.HEADER_LENGTH-headerRead );
+		buffer.get( messageHeader, headerRead, length );
+		headerRead += length;
+		bundleRemaining -= length;
+		if( headerRead < Header.HEADER_LENGTH )
+			return;
+
+		// we know how big the message is, check it before we make room for it
+		int payloadLength = new Header(messageHeader,0).getPayloadLength();
+		int messageLength = payloadLength + Header.HEADER_LENGTH;
+		if( payloadLength < 0 || messageLength > MAX_MESSAGE_LENGTH || payloadLength > bundleRemaining )
+		{
+			throw new IOException( "Message from "+connectionInfo+" has invalid length "+messageLength+
+			                       " ("+bundleRemaining+" bytes left in bundle)" );
+		}
+
+		this.message = new byte[messageLength];
+		System.arraycopy( messageHeader, 0, message, 0, Header.HEADER_LENGTH );
+		this.messageRead = Header.HEADER_LENGTH;
+		this.headerRead = 0;
+
+		if( messageRead == messageLength )
+			messageComplete();
+		else
+			readState = ReadState.MessageBody;
+	}
+
+	private void readMessageBody( ByteBuffer buffer )
+	{
+		int length = Math.min( buffer.remaining(), message.length-messageRead );
+		buffer.get( message, messageRead, length );
+		messageRead += length;
+		bundleRemaining -= length;
+		if( messageRead == message.length )
+			messageComplete();
+	}
+
+	private void messageComplete()
+	{
+		byte[] payload = this.message;
+		this.message = null;
+		this.messageRead = 0;
+		readState = bundleRemaining > 0 ? ReadState.MessageHeader : ReadState.FrameHeader;
+
+		// Keep some stats
+		++metrics.messagesReceived;
+		metrics.bytesReceived += payload.length;
+
+		// Log the message
+		if( logger.isTraceEnabled() )
+		{
+			Header header = new Header( payload, 0 );
+			logger.trace( "(incoming) type=%s (id=%d), ptype=%s, from=%s, to=%s, size=%s, app=%s",
+			              header.getCallType(),
+			              header.getRequestId(),
+			              header.getMessageType(),
+			              StringUtils.sourceHandleToString( header.getSourceFederate() ),
+			              StringUtils.targetHandleToString( header.getTargetFederate() ),
+			              payload.length,
+			              connectionInfo );
+		}
+
+		dispatch( payload );
+	}
+
+	/**
+	 * Queue a received message for one of the server's workers. If the client is getting too
+	 * far ahead of its worker, stop reading from it until the worker catches up.
+	 */
+	private void dispatch( byte[] payload )
+	{
+		inbound.add( payload );
+		if( inboundQueued.incrementAndGet() >= MAX_INBOUND && readPaused.compareAndSet(false,true) )
+		{
+			logger.debug( "Pausing reads from %s, %d messages waiting to be processed",
+			              connectionInfo, inboundQueued.get() );
+			updateInterest();
+		}
+
+		if( dispatchScheduled.compareAndSet(false,true) )
+			server.dispatch( this::processInbound );
+	}
+
+	/**
+	 * Runs on a worker thread. Pass everything that has been received up to the server, in
+	 * order, and then ask the event loop to start reading again if we had paused it.
+	 */
+	private void processInbound()
+	{
+		do
+		{
+			byte[] payload = null;
+			while( (payload = inbound.poll()) != null )
+			{
+				inboundQueued.decrementAndGet();
+				try
+				{
+					server.receive( this, payload );
+				}
+				catch( Exception e )
+				{
+					logger.warn( "Error while processing message: "+e.getMessage() );
+					logger.trace( "Exception Details", e );
+				}
+			}
+
+			dispatchScheduled.set( false );
+		}
+		while( inbound.isEmpty() == false && dispatchScheduled.compareAndSet(false,true) );
+
+		if( readPaused.compareAndSet(true,false) )
+			loop.scheduleResume( this );
+	}
+
+	/**
+	 * Called by the event loop when a worker has caught up with everything we've received.
+	 */
+	protected void resumeReading()
+	{
+		if( running.get() == false )
+			return;
+
+		logger.debug( "Resuming reads from %s", connectionInfo );
+		updateInterest();
+	}
+
+	/**
+	 * Copy bytes from the buffer into the control buffer until it is full. If it is, flip it
+	 * ready for reading and return true. Otherwise return false and wait for more data.
+	 */
+	private boolean fillControl( ByteBuffer buffer )
+	{
+		while( control.hasRemaining() && buffer.hasRemaining() )
+			control.put( buffer.get() );
+
+		if( control.hasRemaining() )
+			return false;
+
+		control.flip();
+		return true;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Accessors and Mutators   //////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	protected SocketChannel getChannel()
+	{
+		return this.channel;
+	}
+
+	public Metrics getMetrics()
+	{
+		return this.metrics;
+	}
+
+	public OutboundQueue getOutboundQueue()
+	{
+		return this.outboundQueue;
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.connectionInfo;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Private Inner Class: ConnectionSink   /////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	private class ConnectionSink implements OutboundQueue.Sink
+	{
+		@Override
+		public void write( byte[] message )
+		{
+			enqueue( message );
+		}
+
+		@Override
+		public int getQueuedCount()
+		{
+			return queued.get();
+		}
+
+		@Override
+		public boolean isOpen()
+		{
+			return running.get();
+		}
+
+		@Override
+		public boolean canBlock()
+		{
+			return (Thread.currentThread() instanceof NioEventLoop) == false;
+		}
+
+		@Override
+		public void disconnect()
+		{
+			shutdown();
+		}
+
+		@Override
+		public String toString()
+		{
+			return connectionInfo;
+		}
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.network.transport.tcp.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A single selector thread that services the reads and writes for a number of
+ * {@link NioClientConnection}s. Every connection belongs to exactly one loop for its whole life,
+ * so the per-connection read and write state is only ever touched from one thread.
+ * <p/>
+ *
+ * Other threads talk to the loop through three queues: new connections waiting to be registered,
+ * connections that have had messages queued and need flushing, and connections whose received
+ * messages have been processed and can be read from again. Adding to any of them wakes the
+ * selector up.
+ * <p/>
+ *
+ * Each loop owns a single direct {@link ByteBuffer} that all of its connections read into. The
+ * connections pull complete messages straight out of it, so nothing is read into an intermediate
+ * per-bundle array first.
+ */
+public class NioEventLoop extends Thread
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private NioServerTransport server;
+	private Logger logger;
+	private Selector selector;
+	private ByteBuffer readBuffer;
+	private volatile boolean running;
+
+	private Queue<NioClientConnection> pendingRegistrations;
+	private Queue<NioClientConnection> pendingFlushes;
+	private Queue<NioClientConnection> pendingResumes;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	protected NioEventLoop( NioServerTransport server, String name ) throws IOException
+	{
+		super( name );
+		super.setDaemon( true );
+
+		this.server = server;
+		this.logger = server.getLogger();
+		this.selector = Selector.open();
+		this.readBuffer = ByteBuffer.allocateDirect( READ_BUFFER_SIZE );
+		this.running = true;
+
+		this.pendingRegistrations = new ConcurrentLinkedQueue<>();
+		this.pendingFlushes = new ConcurrentLinkedQueue<>();
+		this.pendingResumes = new ConcurrentLinkedQueue<>();
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	public void run()
+	{
+		logger.trace( "%s started", getName() );
+		while( running )
+		{
+			try
+			{
+				selector.select();
+				processRegistrations();
+				processSelectedKeys();
+				processFlushes();
+				processResumes();
+			}
+			catch( ClosedSelectorException cse )
+			{
+				break;
+			}
+			catch( IOException ioex )
+			{
+				logger.error( "Error in NIO event loop: "+ioex.getMessage(), ioex );
+			}
+		}
+
+		logger.trace( "%s stopped", getName() );
+	}
+
+	protected void shutdown()
+	{
+		this.running = false;
+
+		try
+		{
+			selector.close();
+			join( 2000 );
+		}
+		catch( IOException | InterruptedException e )
+		{
+			logger.warn( "%s did not shut down cleanly: %s", getName(), e.getMessage() );
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Cross-Thread Requests   ///////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/** Must be called before the loop is started */
+	protected void registerAcceptor( ServerSocketChannel channel ) throws IOException
+	{
+		channel.register( selector, SelectionKey.OP_ACCEPT );
+	}
+
+	/** Queue a newly accepted connection to be registered with this loop */
+	protected void register( NioClientConnection connection )
+	{
+		pendingRegistrations.add( connection );
+		selector.wakeup();
+	}
+
+	/** Queue the given connection to have its outbound messages written */
+	protected void scheduleFlush( NioClientConnection connection )
+	{
+		pendingFlushes.add( connection );
+		selector.wakeup();
+	}
+
+	/** Queue the given connection to start reading again after its worker has caught up */
+	protected void scheduleResume( NioClientConnection connection )
+	{
+		pendingResumes.add( connection );
+		selector.wakeup();
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Event Processing   ////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	private void processRegistrations()
+	{
+		NioClientConnection connection = null;
+		while( (connection = pendingRegistrations.poll()) != null )
+		{
+			try
+			{
+				SelectionKey key = connection.getChannel().register( selector, SelectionKey.OP_READ, connection );
+				connection.registered( key );
+			}
+			catch( IOException ioex )
+			{
+				logger.error( "Could not register NIO connection: "+ioex.getMessage(), ioex );
+				connection.disconnected( ioex );
+			}
+		}
+	}
+
+	private void processSelectedKeys() throws IOException
+	{
+		Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+		while( iterator.hasNext() )
+		{
+			SelectionKey key = iterator.next();
+			iterator.remove();
+
+			if( key.isValid() == false )
+				continue;
+
+			if( key.isAcceptable() )
+			{
+				accept( (ServerSocketChannel)key.channel() );
+				continue;
+			}
+
+			NioClientConnection connection = (NioClientConnection)key.attachment();
+			try
+			{
+				if( key.isReadable() )
+					connection.read( readBuffer );
+
+				if( key.isValid() && key.isWritable() )
+					connection.flush();
+			}
+			catch( IOException | CancelledKeyException e )
+			{
+				connection.disconnected( e );
+			}
+		}
+	}
+
+	private void accept( ServerSocketChannel serverChannel )
+	{
+		try
+		{
+			SocketChannel channel = null;
+			while( (channel = serverChannel.accept()) != null )
+				server.accepted( channel );
+		}
+		catch( IOException ioex )
+		{
+			if( serverChannel.isOpen() )
+				logger.error( "Error accepting connection: "+ioex.getMessage(), ioex );
+		}
+	}
+
+	private void processFlushes()
+	{
+		NioClientConnection connection = null;
+		while( (connection = pendingFlushes.poll()) != null )
+		{
+			try
+			{
+				connection.flush();
+			}
+			catch( IOException | CancelledKeyException e )
+			{
+				connection.disconnected( e );
+			}
+		}
+	}
+
+	private void processResumes()
+	{
+		NioClientConnection connection = null;
+		while( (connection = pendingResumes.poll()) != null )
+		{
+			try
+			{
+				connection.resumeReading();
+			}
+			catch( CancelledKeyException e )
+			{
+				connection.disconnected( e );
+			}
+		}
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -0,0 +1,351 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.network.transport.tcp.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+import org.portico.lrc.compat.JConfigurationException;
+import org.portico.lrc.compat.JRTIinternalError;
+import org.portico2.common.PorticoConstants;
+import org.portico2.common.network.Connection;
+import org.portico2.common.network.Message;
+import org.portico2.common.network.configuration.protocol.ProtocolConfiguration;
+import org.portico2.common.network.configuration.transport.TcpConfiguration;
+import org.portico2.common.network.transport.Transport;
+import org.portico2.common.network.transport.TransportType;
+import org.portico2.common.network.transport.tcp.TcpServerTransport;
+
+/**
+ * Server side TCP transport built on non-blocking NIO channels. It is a drop-in alternative to
+ * the {@link TcpServerTransport}: the handshake and the <code>(0xcafe, length, bundle)</code>
+ * framing are identical, so existing <code>tcp-client</code> connections can talk to it without
+ * any change.
+ * <p/>
+ *
+ * The difference is in the threading. The {@link TcpServerTransport} gives every client its own
+ * receiver thread and its own bundler thread. This transport instead spreads all clients across
+ * a small, fixed number of {@link NioEventLoop}s (configured with the <code>selectors</code>
+ * attribute). Each loop does all the reading and writing for the clients assigned to it.
+ * Outgoing messages are queued against the client and written with a single gathering write
+ * per batch, so there is no bundler timer to wait on. Received messages are passed up the stack
+ * by a pool of worker threads rather than the loops themselves, so processing one client's
+ * messages never stalls the I/O of the others. Each client has at most one worker task queued or
+ * active for it at a time, so its messages are still passed up in the order they arrived.
+ * <p/>
+ *
+ * The worker pool is a fixed size (the <code>workers</code> attribute) with a bounded backlog.
+ * If the backlog fills, the event loop that handed off the task runs it itself. That slows the
+ * loop's reads down until the workers catch up, rather than letting threads or tasks pile up.
+ * <p/>
+ *
+ * To use it, set <code>transport="nio-server"</code> on the connection in the RID and provide
+ * a <code>&lt;nio-server&gt;</code> element with the same attributes as <code>tcp-server</code>.
+ */
+public class NioServerTransport extends Transport
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	/** Number of client tasks that may wait for a free worker, per worker thread */
+	private static final int BACKLOG_PER_WORKER = 64;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private TcpConfiguration configuration;
+
+	// Configuration Options
+	private InetSocketAddress socketAddress;
+
+	// Runtime Components
+	private boolean isConnected;
+	private ServerSocketChannel serverChannel;
+	private NioEventLoop[] loops;
+	private int nextLoop;
+	private ThreadPoolExecutor workers;
+
+	// Connected Client Properties
+	protected List<NioClientConnection> clients;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public NioServerTransport()
+	{
+		super( TransportType.NioServer );
+
+		this.configuration = null;  // set in configure()
+
+		// Configuration Options
+		this.socketAddress = null;  // set in configure()
+
+		// Runtime Components
+		this.isConnected = false;
+		this.serverChannel = null;  // set in open()
+		this.loops = null;          // set in open()
+		this.nextLoop = 0;
+		this.workers = null;        // set in open()
+
+		// Connected Clients
+		this.clients = new CopyOnWriteArrayList<>();
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+
+	///////////////////////////////////////////////////////////////////////////////////////
+	///  Transport Lifecycle Methods   ////////////////////////////////////////////////////
+	///////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	protected void doConfigure( ProtocolConfiguration protocolConfiguration, Connection connection )
+		throws JConfigurationException
+	{
+		this.configuration = (TcpConfiguration)protocolConfiguration;
+
+		this.socketAddress = new InetSocketAddress( this.configuration.getAddress(),
+		                                            this.configuration.getPort() );
+	}
+
+	/**
+	 * Bind the server channel and start the event loops. The first loop also looks after
+	 * accepting new connections.
+	 *
+	 * @throws JRTIinternalError If there is a problem binding the socket or opening a selector
+	 */
+	@Override
+	public void open() throws JRTIinternalError
+	{
+		if( this.isConnected )
+			return;
+
+		try
+		{
+			logger.trace( "--- NIO Server Configuration ---" );
+			logger.trace( "  >> Listen Address: "+this.configuration.getAddressString() );
+			logger.trace( "  >> Listen Port   : "+this.configuration.getPort() );
+			logger.trace( "  >> Selectors     : "+this.configuration.getSelectors() );
+			logger.trace( "  >> Workers       : "+this.configuration.getWorkers() );
+			logger.trace( "" );
+			logger.trace( "Opening server channel and listening for new connection requests" );
+
+			// re-initialize the socket address just in case
+			this.socketAddress = new InetSocketAddress( this.configuration.getAddress(),
+			                                            this.configuration.getPort() );
+
+			// open the server channel
+			this.serverChannel = ServerSocketChannel.open();
+			this.serverChannel.bind( this.socketAddress );
+			this.serverChannel.configureBlocking( false );
+
+			// create the event loops, giving the acceptor to the first of them
+			this.loops = new NioEventLoop[configuration.getSelectors()];
+			for( int i = 0; i < loops.length; i++ )
+				loops[i] = new NioEventLoop( this, "NIO Event Loop "+i );
+
+			loops[0].registerAcceptor( serverChannel );
+
+			// create the workers that process what the loops receive. When they are all busy and
+			// the backlog is full, the loop runs the task itself (see rejected())
+			int workerCount = configuration.getWorkers();
+			AtomicInteger workerIndex = new AtomicInteger( 0 );
+			this.workers = new ThreadPoolExecutor( workerCount,
+			                                       workerCount,
+			                                       0L,
+			                                       TimeUnit.MILLISECONDS,
+			                                       new ArrayBlockingQueue<>(workerCount*BACKLOG_PER_WORKER),
+			                                       runnable -> {
+			                                           Thread thread = new Thread( runnable, "NIO Worker "+workerIndex.getAndIncrement() );
+			                                           thread.setDaemon( true );
+			                                           return thread;
+			                                       },
+			                                       (task,executor) -> rejected(task) );
+		}
+		catch( IOException ioex )
+		{
+			throw new JRTIinternalError( "Error starting NIO Server: "+ioex.getMessage(), ioex );
+		}
+
+		for( NioEventLoop loop : loops )
+			loop.start();
+
+		this.isConnected = true;
+		logger.trace( "NIO Server connection is open" );
+	}
+
+	/**
+	 * Close the server channel and all connected clients, then stop the event loops.
+	 *
+	 * @throws JRTIinternalError If there is a problem closing the server channel
+	 */
+	@Override
+	public void close() throws JRTIinternalError
+	{
+		if( this.isConnected == false )
+			return;
+
+		try
+		{
+			logger.trace( "Closing server channel and refusing any new connections" );
+			this.serverChannel.close();
+
+			for( NioClientConnection client : clients )
+				client.shutdown();
+
+			for( NioEventLoop loop : loops )
+				loop.shutdown();
+
+			// let the workers finish passing up anything already received
+			workers.shutdown();
+		}
+		catch( IOException ioex )
+		{
+			throw new JRTIinternalError( "Error stopping NIO Server: "+ioex.getMessage(), ioex );
+		}
+		finally
+		{
+			this.isConnected = false;
+		}
+	}
+
+	/**
+	 * Called by the accepting event loop each time a new client connects. The client is handed
+	 * to the next event loop in round-robin order, which will complete the handshake.
+	 */
+	protected void accepted( SocketChannel channel ) throws IOException
+	{
+		channel.configureBlocking( false );
+		channel.socket().setTcpNoDelay( true );
+
+		NioEventLoop loop = loops[nextLoop];
+		nextLoop = (nextLoop+1) % loops.length;
+
+		NioClientConnection client = new NioClientConnection( this, loop, channel );
+		loop.register( client );
+		logger.info( "(Accepted) Connection ID=%d, ip=%s",
+		             client.getID(),
+		             channel.getRemoteAddress() );
+	}
+
+	///////////////////////////////////////////////////////////////////////////////////////
+	///  Transport Messaging Methods   ////////////////////////////////////////////////////
+	///////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public void down( Message message )
+	{
+		// Queuing is cheap and never blocks; the event loops do the actual writing
+		byte[] buffer = message.getBuffer();
+		for( NioClientConnection client : clients )
+			client.send( buffer );
+	}
+
+	/**
+	 * Run the given task on one of the worker threads. Called by the event loops to hand off
+	 * received messages.
+	 */
+	protected void dispatch( Runnable task )
+	{
+		workers.execute( task );
+	}
+
+	/**
+	 * The worker pool couldn't take the task. If that is because we've closed, anything that
+	 * turns up is dropped. Otherwise all the workers are busy and the backlog is full, so run the
+	 * task on the calling event loop. The client's messages stay in order because it only ever
+	 * has the one task outstanding.
+	 */
+	private void rejected( Runnable task )
+	{
+		if( workers.isShutdown() )
+		{
+			logger.debug( "NIO Server is closed, dropping received messages" );
+			return;
+		}
+
+		logger.trace( "NIO worker backlog is full, processing on the event loop" );
+		task.run();
+	}
+
+	/**
+	 * A complete message has arrived from one of our clients. Pass it up the protocol stack
+	 * and loop data messages around to all our other clients. Called from a worker thread.
+	 */
+	protected void receive( NioClientConnection source, byte[] payload )
+	{
+		Message message = new Message( payload );
+		up( message );
+
+		// Same as the TcpClientProxy: the RTI will skip this connection when it reflects
+		// data messages because it is the origin, so we have to pass it on to the other
+		// clients attached through us ourselves (unless it is only meant for the RTI)
+		if( message.getHeader().isDataMessage() &&
+			message.getHeader().getTargetFederate() != PorticoConstants.RTI_HANDLE )
+		{
+			for( NioClientConnection client : clients )
+				if( client != source )
+					client.send( payload );
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Accessors and Mutators   //////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public boolean isOpen()
+	{
+		return this.isConnected;
+	}
+
+	public int getClientCount()
+	{
+		return this.clients.size();
+	}
+
+	protected TcpConfiguration getConfiguration()
+	{
+		return this.configuration;
+	}
+
+	protected void addClient( NioClientConnection client )
+	{
+		this.clients.add( client );
+		logger.debug( "Connected NIO client: "+client );
+	}
+
+	protected void removeClient( NioClientConnection client )
+	{
+		this.clients.remove( client );
+		logger.debug( "Disconnected NIO client: "+client );
+	}
+
+	protected Logger getLogger()
+	{
+		return super.logger;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
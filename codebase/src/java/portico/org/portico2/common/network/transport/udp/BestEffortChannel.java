@@ -0,0 +1,401 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.network.transport.udp;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.portico.lrc.compat.JConfigurationException;
+import org.portico.lrc.compat.JRTIinternalError;
+import org.portico.utils.StringUtils;
+import org.portico.utils.bithelpers.BitHelpers;
+import org.portico2.common.PorticoConstants;
+import org.portico2.common.network.Connection;
+import org.portico2.common.network.Connection.Host;
+import org.portico2.common.network.Header;
+import org.portico2.common.network.Message;
+import org.portico2.common.network.ProtocolStack;
+import org.portico2.common.network.configuration.protocol.ProtocolConfiguration;
+import org.portico2.common.network.configuration.transport.BestEffortConfiguration;
+import org.portico2.common.network.protocol.Protocol;
+import org.portico2.common.network.transport.Transport;
+import org.portico2.common.utils.NetworkUtils;
+import org.portico2.lrc.LRC;
+import org.portico2.lrc.LRCState;
+
+/**
+ * A best effort side channel for data messages, sent as UDP multicast datagrams. It sits in the
+ * {@link ProtocolStack} directly above the {@link Transport}, so every other protocol (encryption,
+ * authentication) has already done its work on the way down, and will do it again on the way up.
+ * <p/>
+ *
+ * <b>Sending</b>
+ * <p/>
+ * Messages with the best effort flag set in their {@link Header} are sent as a single datagram
+ * to the multicast group. Each datagram is the message exactly as it would be sent by the
+ * transport, prefixed by an 8-byte id unique to this channel so we can ignore our own traffic.
+ * A copy of the message is then passed down to the reliable transport as well, with its target
+ * set to the RTI. The RTI needs to see it to keep the attribute value cache fresh and to feed the
+ * MOM, but it must not forward it; every federate that can hear the group already has it (or has
+ * lost it), and sending it again over the reliable transport would double the bandwidth we are
+ * trying to save. Federates that can't hear the multicast group (e.g. on another subnet) don't
+ * get best effort data at all, so the group has to reach every federate that wants it.
+ * <p/>
+ * 
+ * Best effort messages that are too large for one datagram have their flag cleared and only go
+ * down to the reliable transport, as does everything else.
+ * <p/>
+ *
+ * <b>Receiving</b>
+ * <p/>
+ * Datagrams are passed up the stack as if they came from the transport. Nothing is resent,
+ * acknowledged or re-ordered, so messages can be lost, duplicated or arrive out of order. That
+ * is exactly what <code>HLAbestEffort</code> allows for, and in exchange they never queue
+ * behind reliable traffic.
+ * <p/>
+ * 
+ * Other federations can share the group, so datagrams for any federation other than the one
+ * we are joined to are dropped, as is everything that arrives before we have joined.
+ * <p/>
+ * 
+ * The channel is only created for LRC connections.
+ */
+public class BestEffortChannel extends Protocol
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	/** Size of the channel id that prefixes each datagram */
+	private static final int PREFIX_LENGTH = 8;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private BestEffortConfiguration configuration;
+	private LRCState lrcState;        // null outside an LRC; no federation filtering then
+	private long channelId;
+	private InetSocketAddress group;
+
+	private MulticastSocket socket;
+	private byte[] sendBuffer;        // guarded by synchronization on itself
+	private DatagramPacket sendPacket;
+	private Thread receiver;
+	private volatile boolean running;
+
+	// Metrics
+	private AtomicLong messagesSent;
+	private AtomicLong messagesReceived;
+	private AtomicLong messagesTooLarge; // sent through the transport instead
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public BestEffortChannel()
+	{
+		super();
+		this.configuration = null;  // set in configure()
+		this.lrcState = null;       // set in configure()
+		this.channelId = new Random().nextLong();
+		this.group = null;          // set in configure()
+
+		this.socket = null;         // set in open()
+		this.sendBuffer = null;     // set in open()
+		this.sendPacket = null;     // set in open()
+		this.receiver = null;       // set in open()
+		this.running = false;
+
+		this.messagesSent = new AtomicLong( 0 );
+		this.messagesReceived = new AtomicLong( 0 );
+		this.messagesTooLarge = new AtomicLong( 0 );
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Lifecycle Management   ////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	protected void doConfigure( ProtocolConfiguration configuration, Connection hostConnection )
+		throws JConfigurationException
+	{
+		this.configuration = (BestEffortConfiguration)configuration;
+		this.group = new InetSocketAddress( this.configuration.getAddress(),
+		                                    this.configuration.getPort() );
+
+		LRC lrc = hostType == Host.LRC ? hostConnection.getHostReference(LRC.class) : null;
+		if( lrc != null )
+			this.lrcState = lrc.getState();
+	}
+
+	/**
+	 * Join the multicast group and start the receiver thread.
+	 * 
+	 * @throws JRTIinternalError If we can't find the NIC or create the socket
+	 */
+	@Override
+	public void open() throws JRTIinternalError
+	{
+		if( this.running )
+			return;
+
+		logger.trace( "--- Best Effort Configuration ---" );
+		logger.trace( "  >>   NIC Address: "+configuration.getNic() );
+		logger.trace( "  >> Group Address: "+configuration.getAddressString() );
+		logger.trace( "  >>    Group Port: "+configuration.getPort() );
+		logger.trace( "  >>      Max Size: "+configuration.getMaxSize() );
+
+		try
+		{
+			NetworkInterface nic = NetworkUtils.getNetworkInterface( configuration.getNic() );
+			if( nic == null )
+				throw new JRTIinternalError( "Could not find NIC for best effort channel: "+configuration.getNic() );
+
+			this.socket = (MulticastSocket)NetworkUtils.createMulticast( group.getAddress(),
+			                                                             group.getPort(),
+			                                                             nic );
+			this.socket.setNetworkInterface( nic );
+			// we want other federates on this host, we filter out our own datagrams by id.
+			// note: the flag is inverted; false *enables* loopback
+			this.socket.setLoopbackMode( false );
+		}
+		catch( IOException ioex )
+		{
+			throw new JRTIinternalError( "Error opening best effort channel: "+ioex.getMessage(), ioex );
+		}
+
+		int packetSize = PREFIX_LENGTH + configuration.getMaxSize();
+		this.sendBuffer = new byte[packetSize];
+		BitHelpers.putLongBE( channelId, sendBuffer, 0 );
+		this.sendPacket = new DatagramPacket( sendBuffer, packetSize, group );
+
+		this.running = true;
+		this.receiver = new Receiver( packetSize );
+		this.receiver.start();
+		logger.debug( "Best effort channel is open: %s", configuration );
+	}
+
+	@Override
+	public void close()
+	{
+		if( this.running == false )
+			return;
+
+		this.running = false;
+		try
+		{
+			socket.leaveGroup( group, socket.getNetworkInterface() );
+		}
+		catch( IOException ioex )
+		{
+			logger.warn( "Error leaving best effort multicast group: "+ioex.getMessage() );
+		}
+		finally
+		{
+			// closing the socket kicks the receiver out of receive()
+			socket.close();
+		}
+
+		try
+		{
+			receiver.join( 2000 );
+		}
+		catch( InterruptedException ie )
+		{
+			logger.warn( "Best effort receiver thread did not shut down cleanly (2 sec wait)" );
+		}
+
+		logger.debug( "Best effort channel closed. Sent: %d messages, Received: %d messages, "+
+		              "Too Large (sent reliably): %d messages",
+		              messagesSent.get(), messagesReceived.get(), messagesTooLarge.get() );
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Message Passing   /////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public void down( Message message )
+	{
+		Header header = message.getHeader();
+		if( header.isBestEffort() == false )
+		{
+			passDown( message );
+			return;
+		}
+
+		// if we can't multicast it, it goes reliably and without the flag, otherwise receivers
+		// could drop it thinking they already heard it
+		int length = message.getLength();
+		if( running == false || length > configuration.getMaxSize() )
+		{
+			if( running )
+				messagesTooLarge.incrementAndGet();
+
+			header.writeIsBestEffort( false );
+			passDown( message );
+			return;
+		}
+
+		synchronized( sendBuffer )
+		{
+			System.arraycopy( message.getArray(), message.getOffset(), sendBuffer, PREFIX_LENGTH, length );
+			sendPacket.setLength( PREFIX_LENGTH+length );
+			try
+			{
+				socket.send( sendPacket );
+				messagesSent.incrementAndGet();
+			}
+			catch( IOException ioex )
+			{
+				// it's best effort; log it and move on
+				logger.warn( "Error sending best effort message: "+ioex.getMessage() );
+			}
+		}
+
+		// the RTI gets a copy over the reliable transport, for its own use only. The datagram
+		// has already been copied out, so we can retarget the message itself.
+		header.writeSourceAndTargetFederate( header.getSourceFederate(), PorticoConstants.RTI_HANDLE );
+		passDown( message );
+	}
+
+	@Override
+	public void up( Message message )
+	{
+		passUp( message );
+	}
+
+	/**
+	 * @return <code>true</code> if the datagram with the given header belongs to the federation
+	 *         we are joined to (or we aren't in an LRC and have no federation to check against)
+	 */
+	private boolean isForFederation( Header header )
+	{
+		if( lrcState == null )
+			return true;
+		else
+			return lrcState.isJoined() && header.getFederation() == lrcState.getFederationHandle();
+	}
+
+	private void receive( byte[] buffer, int length )
+	{
+		// ignore anything too short to hold a message, or that we sent ourselves
+		if( length < PREFIX_LENGTH+Header.HEADER_LENGTH || BitHelpers.readLongBE(buffer,0) == channelId )
+			return;
+
+		// ignore anything for another federation sharing the group
+		if( isForFederation(new Header(buffer,PREFIX_LENGTH)) == false )
+			return;
+
+		// copy it out, the receive buffer will be reused for the next datagram
+		byte[] payload = new byte[length-PREFIX_LENGTH];
+		System.arraycopy( buffer, PREFIX_LENGTH, payload, 0, payload.length );
+		Message message = new Message( payload );
+
+		messagesReceived.incrementAndGet();
+		if( logger.isTraceEnabled() )
+		{
+			Header header = message.getHeader();
+			logger.trace( "(incoming) {best-effort} ptype=%s, from=%s, size=%d",
+			              header.getMessageType(),
+			              StringUtils.sourceHandleToString( header.getSourceFederate() ),
+			              payload.length );
+		}
+
+		passUp( message );
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Accessors and Mutators   //////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	@Override
+	public String getName()
+	{
+		return "BestEffort";
+	}
+
+	/**
+	 * @return <code>true</code> if the channel is open and multicasting best effort messages
+	 */
+	public boolean isRunning()
+	{
+		return this.running;
+	}
+
+	public long getMessagesSent()
+	{
+		return this.messagesSent.get();
+	}
+
+	public long getMessagesReceived()
+	{
+		return this.messagesReceived.get();
+	}
+
+	public long getMessagesTooLarge()
+	{
+		return this.messagesTooLarge.get();
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Private Inner Class: Receiver   ///////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/** Reads datagrams off the socket and passes them up the stack */
+	private class Receiver extends Thread
+	{
+		private byte[] buffer;
+		private DatagramPacket packet;
+
+		public Receiver( int packetSize )
+		{
+			super( "BestEffortReceiver" );
+			super.setDaemon( true );
+			this.buffer = new byte[packetSize];
+			this.packet = new DatagramPacket( buffer, packetSize );
+		}
+
+		public void run()
+		{
+			while( running )
+			{
+				try
+				{
+					packet.setLength( buffer.length );
+					socket.receive( packet );
+					receive( buffer, packet.getLength() );
+				}
+				catch( IOException ioex )
+				{
+					if( running )
+						logger.warn( "Error receiving best effort message: "+ioex.getMessage() );
+				}
+				catch( Exception e )
+				{
+					logger.warn( "Error while processing best effort message: "+e.getMessage() );
+					logger.trace( "Exception Details", e );
+				}
+			}
+		}
+	}
+}
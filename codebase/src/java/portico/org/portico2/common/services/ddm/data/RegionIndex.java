@@ -0,0 +1,292 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.services.ddm.data;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.portico.lrc.PorticoConstants;
+import org.portico.lrc.model.Extent;
+import org.portico.lrc.model.RegionInstance;
+
+/**
+ * A spatial index over all the {@link RegionInstance}s of a single routing space, used to find
+ * the regions that overlap a given region without comparing it against every region in the
+ * space.
+ * <p/>
+ * Each extent of each region is an entry in the index. Entries are sorted by their lower bound
+ * on one of the dimensions of the space (the "indexed dimension") and laid out as an implicit,
+ * balanced interval tree: the middle entry of any range is the root of that range, and for each
+ * entry we record the largest upper bound found in the subtree below it. A query only descends
+ * into subtrees that could hold an overlapping range on the indexed dimension, and candidates
+ * are then checked on all dimensions with {@link Extent#overlapsWith(Extent)}. Queries cost
+ * <code>O(log n + k)</code>, where <code>n</code> is the number of extents in the space and
+ * <code>k</code> the number of candidates.
+ * <p/>
+ * Regions change far less often than they are queried, so the index is rebuilt lazily on the
+ * first query after a change. If the extents of a region already in the index are modified,
+ * {@link #invalidate()} must be called so the next query picks the change up.
+ */
+public class RegionIndex
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private int spaceHandle;
+	private Map<Integer,RegionInstance> regions; // key: region token
+	private boolean dirty;
+
+	// the index itself, one slot per extent, sorted by lower bound on the indexed dimension
+	private int dimensionHandle;
+	private RegionInstance[] entryRegions;
+	private Extent[] entryExtents;
+	private long[] lowerBounds;
+	private long[] upperBounds;
+	private long[] maxUpperBounds; // largest upper bound in the subtree rooted at each slot
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public RegionIndex( int spaceHandle )
+	{
+		this.spaceHandle = spaceHandle;
+		this.regions = new HashMap<>();
+		this.dirty = true;
+		this.dimensionHandle = PorticoConstants.NULL_HANDLE;
+		this.entryRegions = new RegionInstance[0];
+		this.entryExtents = new Extent[0];
+		this.lowerBounds = new long[0];
+		this.upperBounds = new long[0];
+		this.maxUpperBounds = new long[0];
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Add the region to the index, replacing any existing region with the same token.
+	 */
+	public synchronized void add( RegionInstance region )
+	{
+		regions.put( region.getToken(), region );
+		dirty = true;
+	}
+
+	/**
+	 * Remove the region with the same token as the given one from the index.
+	 * 
+	 * @return <code>true</code> if the region was in the index, <code>false</code> otherwise
+	 */
+	public synchronized boolean remove( RegionInstance region )
+	{
+		boolean removed = regions.remove( region.getToken() ) != null;
+		if( removed )
+			dirty = true;
+		
+		return removed;
+	}
+
+	/**
+	 * Mark the index as out of date. Call this when the extents of a region that is already in
+	 * the index have been changed.
+	 */
+	public synchronized void invalidate()
+	{
+		dirty = true;
+	}
+
+	/**
+	 * Find all the regions in the index that overlap the given region, using the same rules as
+	 * {@link RegionInstance#overlapsWith(RegionInstance)}. If the given region is itself in the
+	 * index, it will be part of the result.
+	 * 
+	 * @param region The region to find the overlapping regions for
+	 * @return A new set containing every region that overlaps the given one. Empty if there are
+	 *         none, or if the region is from a different routing space.
+	 */
+	public synchronized Set<RegionInstance> getOverlapping( RegionInstance region )
+	{
+		Set<RegionInstance> results = new HashSet<>();
+		if( region.getSpaceHandle() != spaceHandle || regions.isEmpty() )
+			return results;
+		
+		if( dirty )
+			rebuild();
+		
+		for( int i = 0; i < region.getSize(); i++ )
+		{
+			Extent query = region.getExtent( i );
+			collect( 0, entryExtents.length, query, lowerBound(query), upperBound(query), results );
+		}
+		
+		return results;
+	}
+
+	/**
+	 * Walk the implicit tree over the slots in <code>[low,high)</code>, adding the region of
+	 * every slot whose extent overlaps the query extent to the results.
+	 */
+	private void collect( int low,
+	                      int high,
+	                      Extent query,
+	                      long queryLower,
+	                      long queryUpper,
+	                      Set<RegionInstance> results )
+	{
+		while( low < high )
+		{
+			int middle = (low+high) >>> 1;
+			
+			// nothing in this subtree reaches up to the query range
+			if( maxUpperBounds[middle] < queryLower )
+				return;
+			
+			collect( low, middle, query, queryLower, queryUpper, results );
+			
+			// everything from here to the right starts after the query range
+			if( lowerBounds[middle] > queryUpper )
+				return;
+			
+			if( upperBounds[middle] >= queryLower &&
+				results.contains(entryRegions[middle]) == false &&
+				entryExtents[middle].overlapsWith(query) )
+			{
+				results.add( entryRegions[middle] );
+			}
+			
+			low = middle+1;
+		}
+	}
+
+	/**
+	 * Rebuild the sorted slots and subtree bounds from the current set of regions.
+	 */
+	private void rebuild()
+	{
+		// pick the dimension to sort on. All extents in a space have the same dimensions, so
+		// any of them will do; use the lowest handle so the choice is stable between rebuilds
+		this.dimensionHandle = PorticoConstants.NULL_HANDLE;
+		int entryCount = 0;
+		for( RegionInstance region : regions.values() )
+		{
+			entryCount += region.getSize();
+			if( dimensionHandle == PorticoConstants.NULL_HANDLE && region.getSize() > 0 )
+			{
+				for( Integer handle : region.getExtent(0).getAllRanges().keySet() )
+				{
+					if( dimensionHandle == PorticoConstants.NULL_HANDLE || handle < dimensionHandle )
+						dimensionHandle = handle;
+				}
+			}
+		}
+		
+		// collect and sort the extents
+		final long[][] entries = new long[entryCount][]; // {lower, upper, slot}
+		RegionInstance[] unsortedRegions = new RegionInstance[entryCount];
+		Extent[] unsortedExtents = new Extent[entryCount];
+		int slot = 0;
+		for( RegionInstance region : regions.values() )
+		{
+			for( int i = 0; i < region.getSize(); i++ )
+			{
+				Extent extent = region.getExtent( i );
+				unsortedRegions[slot] = region;
+				unsortedExtents[slot] = extent;
+				entries[slot] = new long[]{ lowerBound(extent), upperBound(extent), slot };
+				slot++;
+			}
+		}
+		
+		Arrays.sort( entries, new Comparator<long[]>()
+		{
+			public int compare( long[] one, long[] two )
+			{
+				return Long.compare( one[0], two[0] );
+			}
+		});
+		
+		this.entryRegions = new RegionInstance[entryCount];
+		this.entryExtents = new Extent[entryCount];
+		this.lowerBounds = new long[entryCount];
+		this.upperBounds = new long[entryCount];
+		this.maxUpperBounds = new long[entryCount];
+		for( int i = 0; i < entryCount; i++ )
+		{
+			int original = (int)entries[i][2];
+			entryRegions[i] = unsortedRegions[original];
+			entryExtents[i] = unsortedExtents[original];
+			lowerBounds[i] = entries[i][0];
+			upperBounds[i] = entries[i][1];
+		}
+		
+		buildMaxUpperBounds( 0, entryCount );
+		this.dirty = false;
+	}
+
+	/**
+	 * Fill in the subtree upper bounds for slots in <code>[low,high)</code>, returning the
+	 * largest upper bound in the range.
+	 */
+	private long buildMaxUpperBounds( int low, int high )
+	{
+		if( low >= high )
+			return Long.MIN_VALUE;
+		
+		int middle = (low+high) >>> 1;
+		long max = Math.max( upperBounds[middle],
+		                     Math.max(buildMaxUpperBounds(low,middle),
+		                              buildMaxUpperBounds(middle+1,high)) );
+		maxUpperBounds[middle] = max;
+		return max;
+	}
+
+	private long lowerBound( Extent extent )
+	{
+		Extent.Range range = extent.getAllRanges().get( dimensionHandle );
+		return range == null ? PorticoConstants.MIN_EXTENT : range.lowerBound;
+	}
+
+	private long upperBound( Extent extent )
+	{
+		Extent.Range range = extent.getAllRanges().get( dimensionHandle );
+		return range == null ? PorticoConstants.MAX_EXTENT : range.upperBound;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Accessors and Mutators   //////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	public int getSpaceHandle()
+	{
+		return this.spaceHandle;
+	}
+
+	/** @return The number of regions in the index */
+	public synchronized int size()
+	{
+		return regions.size();
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -17,8 +17,10 @@ package org.portico2.common.services.ddm.data;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.portico.impl.hla13.types.HLA13Region;
 import org.portico.impl.hla13.types.Java1Region;
@@ -31,7 +33,10 @@ import org.portico.lrc.model.Space;
 import org.portico.lrc.services.saverestore.data.SaveRestoreTarget;
 
 /**
- * This class maintains a list of all {@link RegionInstance} instances known locally.
+ * This class maintains a list of all {@link RegionInstance} instances known locally. Regions are
+ * also held in a {@link RegionIndex} for their routing space, so that the set of regions
+ * overlapping a given region can be found without comparing it against every other region (see
+ * {@link #getOverlappingRegions(RegionInstance)}).
  */
 public class RegionStore implements SaveRestoreTarget
 {
@@ -43,6 +48,7 @@ public class RegionStore implements SaveRestoreTarget
 	//                   INSTANCE VARIABLES
 	//----------------------------------------------------------
 	private Map<Integer,RegionInstance> regions;
+	private Map<Integer,RegionIndex> indexes; // key: space handle
 
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -51,6 +57,7 @@ public class RegionStore implements SaveRestoreTarget
 	public RegionStore()
 	{
 		this.regions = new HashMap<Integer,RegionInstance>();
+		this.indexes = new ConcurrentHashMap<Integer,RegionIndex>();
 	}
 
 	//----------------------------------------------------------
@@ -66,7 +73,8 @@ public class RegionStore implements SaveRestoreTarget
 	{
 		if( region != null )
 		{
-			regions.put( region.getToken(), region );
+			unindex( regions.put(region.getToken(),region) );
+			index( region );
 		}
 	}
 
@@ -126,7 +134,9 @@ public class RegionStore implements SaveRestoreTarget
 	 */
 	public RegionInstance removeRegion( int regionHandle )
 	{
-		return regions.remove( regionHandle );
+		RegionInstance removed = regions.remove( regionHandle );
+		unindex( removed );
+		return removed;
 	}
 
 	/**
@@ -137,11 +147,50 @@ public class RegionStore implements SaveRestoreTarget
 	public RegionInstance removeRegion( RegionInstance theRegion )
 	{
 		if( theRegion != null )
-			return regions.remove( theRegion.getToken() );
+			return removeRegion( theRegion.getToken() );
 		else
 			return null;
 	}
 
+	/**
+	 * Let the store know that the extents of one of its regions have been changed (for example,
+	 * when region modifications are committed), so that overlap queries will take the new
+	 * extents into account.
+	 */
+	public void regionModified( RegionInstance region )
+	{
+		RegionIndex index = indexes.get( region.getSpaceHandle() );
+		if( index != null )
+			index.invalidate();
+	}
+
+	/**
+	 * Find all the regions in the store that overlap the given region. Only regions of the same
+	 * routing space are considered, and the lookup goes through the {@link RegionIndex} for that
+	 * space rather than checking every region. If the given region is held in the store, it will
+	 * be part of the result.
+	 * 
+	 * @param region The region to find overlapping regions for
+	 * @return A new set of all regions overlapping the given one (empty if there are none)
+	 */
+	public Set<RegionInstance> getOverlappingRegions( RegionInstance region )
+	{
+		RegionIndex index = indexes.get( region.getSpaceHandle() );
+		if( index == null )
+			return new HashSet<RegionInstance>();
+		else
+			return index.getOverlapping( region );
+	}
+
+	/**
+	 * @return <code>true</code> if there are no regions in the store. When this is the case no
+	 *         DDM is being used, and callers can skip any region related processing.
+	 */
+	public boolean isEmpty()
+	{
+		return indexes.isEmpty();
+	}
+
 	/**
 	 * Returns <code>true</code> if the store contains a {@link RegionInstance} with the given
 	 * handle, <code>false</code> otherwise.
@@ -189,6 +238,32 @@ public class RegionStore implements SaveRestoreTarget
 		return regions.containsKey( region.getWrappedRegion().getToken() );
 	}
 
+	private void index( RegionInstance region )
+	{
+		RegionIndex index = indexes.get( region.getSpaceHandle() );
+		if( index == null )
+		{
+			index = new RegionIndex( region.getSpaceHandle() );
+			indexes.put( region.getSpaceHandle(), index );
+		}
+		
+		index.add( region );
+	}
+
+	private void unindex( RegionInstance region )
+	{
+		if( region == null )
+			return;
+		
+		RegionIndex index = indexes.get( region.getSpaceHandle() );
+		if( index != null )
+		{
+			index.remove( region );
+			if( index.size() == 0 )
+				indexes.remove( region.getSpaceHandle() );
+		}
+	}
+
 	/////////////////////////////////////////////////////////////////////////////////////////
 	////////////////////////////////// Save/Restore Methods /////////////////////////////////
 	/////////////////////////////////////////////////////////////////////////////////////////
@@ -201,6 +276,9 @@ public class RegionStore implements SaveRestoreTarget
 	public void restoreFromStream( ObjectInput input ) throws Exception
 	{
 		this.regions = (Map<Integer,RegionInstance>)input.readObject();
+		this.indexes = new ConcurrentHashMap<Integer,RegionIndex>();
+		for( RegionInstance region : regions.values() )
+			index( region );
 	}
 
 	//----------------------------------------------------------
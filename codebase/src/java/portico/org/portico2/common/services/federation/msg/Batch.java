@@ -0,0 +1,85 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.services.federation.msg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.messaging.MessageType;
+
+/**
+ * Carries a number of control requests so that they can be sent to the RTI in one round trip.
+ * The RTI processes each request in order, exactly as if it had been sent on its own, and
+ * responds with a success holding a <code>List</code> of {@link org.portico2.common.messaging.ResponseMessage}s,
+ * one for each request, in the same order. A failure of one request does not stop the others
+ * from being processed.
+ * <p/>
+ * Only requests whose handlers support it are batched. See
+ * {@link org.portico2.lrc.IBatchableHandler}.
+ */
+public class Batch extends PorticoMessage
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final long serialVersionUID = 98121116105109L;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private List<PorticoMessage> requests;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public Batch()
+	{
+		this.requests = new ArrayList<>();
+	}
+
+	public Batch( List<? extends PorticoMessage> requests )
+	{
+		this.requests = new ArrayList<>( requests );
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@Override
+	public MessageType getType()
+	{
+		return MessageType.Batch;
+	}
+
+	public void addRequest( PorticoMessage request )
+	{
+		this.requests.add( request );
+	}
+
+	public List<PorticoMessage> getRequests()
+	{
+		return this.requests;
+	}
+
+	public int size()
+	{
+		return this.requests.size();
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -0,0 +1,249 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.services.object.msg;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.portico.lrc.PorticoConstants;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.messaging.MessageType;
+
+/**
+ * A snapshot of many object instances that a federate is to discover at once. The RTI sends
+ * these when a federate subscribes to a class that already has instances registered, rather
+ * than one {@link DiscoverObject} for each instance. Each record can optionally carry the last
+ * known values for the instance's attributes so the federate can catch up without having to
+ * request an update from each owner.
+ * <p/>
+ * The LRC does not process these messages directly. When one arrives it is broken back up into
+ * the {@link DiscoverObject} (and {@link UpdateAttributes}) messages it stands in for, see
+ * {@link #expand()}, so that the discoveries are processed and called back exactly as they would
+ * be had they been sent one at a time.
+ */
+public class DiscoverObjectBatch extends PorticoMessage implements Externalizable
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final long serialVersionUID = 98121116105109L;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private int classHandle;
+	private List<Record> records;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	/** <b>DO NOT USE</b> This is only provided because the deserialization of Externalizable
+	    objects requires that the class have a 0-arg constructor */
+	public DiscoverObjectBatch()
+	{
+		this( PorticoConstants.NULL_HANDLE );
+	}
+
+	/**
+	 * @param classHandle The class the instances in this batch are being discovered through
+	 */
+	public DiscoverObjectBatch( int classHandle )
+	{
+		this.classHandle = classHandle;
+		this.records = new ArrayList<>();
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@Override
+	public MessageType getType()
+	{
+		return MessageType.DiscoverObjectBatch;
+	}
+
+	public void addObject( int objectHandle, String objectName )
+	{
+		this.records.add( new Record(objectHandle,objectName,null) );
+	}
+
+	/**
+	 * Add an instance along with the last known values of its attributes. The values may be
+	 * null or empty if none are known.
+	 */
+	public void addObject( int objectHandle, String objectName, HashMap<Integer,byte[]> values )
+	{
+		this.records.add( new Record(objectHandle,objectName,values) );
+	}
+
+	public int getClassHandle()
+	{
+		return this.classHandle;
+	}
+
+	public void setClassHandle( int classHandle )
+	{
+		this.classHandle = classHandle;
+	}
+
+	public List<Record> getRecords()
+	{
+		return this.records;
+	}
+
+	public int size()
+	{
+		return this.records.size();
+	}
+
+	/**
+	 * Break this batch up into the individual messages it represents. For each instance there is
+	 * a {@link DiscoverObject}, followed by an {@link UpdateAttributes} if any values were sent
+	 * for it. Each message has the same source, target and federation as this batch.
+	 */
+	public List<PorticoMessage> expand()
+	{
+		List<PorticoMessage> messages = new ArrayList<>( records.size() );
+		for( Record record : records )
+		{
+			DiscoverObject discover = new DiscoverObject( classHandle,
+			                                              record.objectHandle,
+			                                              record.objectName );
+			discover.setImmediateProcessingFlag( false );
+			messages.add( copyRouting(discover) );
+
+			if( record.values != null && record.values.isEmpty() == false )
+			{
+				UpdateAttributes update = new UpdateAttributes( record.objectHandle,
+				                                                new byte[0],
+				                                                record.values );
+				messages.add( copyRouting(update) );
+			}
+		}
+
+		return messages;
+	}
+
+	private PorticoMessage copyRouting( PorticoMessage message )
+	{
+		message.setSourceFederate( getSourceFederate() );
+		message.setTargetFederation( getTargetFederation() );
+		message.setTargetFederate( getTargetFederate() );
+		return message;
+	}
+
+	/////////////////////////////////////////////////////////////
+	/////////////////// Serialization Methods ///////////////////
+	/////////////////////////////////////////////////////////////
+	public void readExternal( ObjectInput input ) throws IOException, ClassNotFoundException
+	{
+		super.readExternal( input );
+		this.classHandle = input.readInt();
+
+		int count = input.readInt();
+		this.records = new ArrayList<>( count );
+		for( int i = 0; i < count; i++ )
+		{
+			int objectHandle = input.readInt();
+			String objectName = input.readUTF();
+			HashMap<Integer,byte[]> values = null;
+			int valueCount = input.readInt();
+			if( valueCount > 0 )
+			{
+				values = new HashMap<>( valueCount*2 );
+				for( int j = 0; j < valueCount; j++ )
+				{
+					int attributeHandle = input.readInt();
+					byte[] value = new byte[input.readInt()];
+					input.readFully( value );
+					values.put( attributeHandle, value );
+				}
+			}
+
+			records.add( new Record(objectHandle,objectName,values) );
+		}
+	}
+
+	public void writeExternal( ObjectOutput output ) throws IOException
+	{
+		super.writeExternal( output );
+		output.writeInt( this.classHandle );
+
+		output.writeInt( records.size() );
+		for( Record record : records )
+		{
+			output.writeInt( record.objectHandle );
+			output.writeUTF( record.objectName );
+			if( record.values == null )
+			{
+				output.writeInt( 0 );
+				continue;
+			}
+
+			output.writeInt( record.values.size() );
+			for( Map.Entry<Integer,byte[]> entry : record.values.entrySet() )
+			{
+				output.writeInt( entry.getKey() );
+				output.writeInt( entry.getValue().length );
+				output.write( entry.getValue() );
+			}
+		}
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/////////////////////////////////// Public Inner Class //////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * One instance in the batch: its handle, name and (optionally) last known attribute values.
+	 */
+	public static class Record
+	{
+		private final int objectHandle;
+		private final String objectName;
+		private final HashMap<Integer,byte[]> values;
+
+		private Record( int objectHandle, String objectName, HashMap<Integer,byte[]> values )
+		{
+			this.objectHandle = objectHandle;
+			this.objectName = objectName;
+			this.values = values;
+		}
+
+		public int getObjectHandle()
+		{
+			return this.objectHandle;
+		}
+
+		public String getObjectName()
+		{
+			return this.objectName;
+		}
+
+		public HashMap<Integer,byte[]> getValues()
+		{
+			return this.values;
+		}
+	}
+}
@@ -177,6 +177,20 @@ public class SendInteraction extends PorticoMessage implements Externalizable
 		return true;
 	}
 
+	/**
+	 * The receivers get their own copies of the tag and parameter values. The sender is free
+	 * to reuse its arrays once the send call returns, and a receiver can't change the values
+	 * another one sees.
+	 */
+	@Override
+	public SendInteraction copyForReceiver()
+	{
+		SendInteraction copy = clone( SendInteraction.class );
+		copy.tag = copyValue( this.tag );
+		copy.parameters = copyValues( this.parameters );
+		return copy;
+	}
+
 	/////////////////////////////////////////////////////////////
 	/////////////////// Serialization Methods ///////////////////
 	/////////////////////////////////////////////////////////////
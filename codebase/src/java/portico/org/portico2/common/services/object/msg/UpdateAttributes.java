@@ -42,6 +42,10 @@ public class UpdateAttributes extends PorticoMessage implements Externalizable,
 	private int objectId;
 	private byte[] tag;
 	private HashMap<Integer,byte[]> attributes;
+
+	// the class the object was registered as. this is not part of the payload, it is carried
+	// in the message header so that the update can be routed/filtered without inflating it
+	private transient int objectClass;
 	
 	// these are filled out on the receiver side as required for filtering callbacks
 	// they should never be sent over the wire
@@ -57,6 +61,7 @@ public class UpdateAttributes extends PorticoMessage implements Externalizable,
 		this.objectId = PorticoConstants.NULL_HANDLE;
 		this.tag = new byte[0];
 		this.attributes = new HashMap<Integer,byte[]>();
+		this.objectClass = PorticoConstants.NULL_HANDLE;
 		this.filtered = new HashMap<Integer,FilteredAttribute>();
 	}
 	
@@ -84,6 +89,7 @@ public class UpdateAttributes extends PorticoMessage implements Externalizable,
 	public UpdateAttributes( UpdateAttributes original )
 	{
 		this( original.objectId, original.tag, original.attributes, original.timestamp );
+		this.objectClass = original.objectClass;
 	}
 
 	//----------------------------------------------------------
@@ -139,6 +145,25 @@ public class UpdateAttributes extends PorticoMessage implements Externalizable,
 		this.objectId = objectId;
 	}
 
+	/**
+	 * @return The handle of the class the object was registered as, or
+	 *         {@link PorticoConstants#NULL_HANDLE} if it hasn't been set. This is only
+	 *         available on the sending side; it is not carried in the payload.
+	 */
+	public int getObjectClass()
+	{
+		return objectClass;
+	}
+
+	/**
+	 * Set the handle of the class the object was registered as. This is written into the
+	 * message header as filtering information (see {@link org.portico2.common.network.Header}).
+	 */
+	public void setObjectClass( int objectClass )
+	{
+		this.objectClass = objectClass;
+	}
+
 	public byte[] getTag()
 	{
 		return tag;
@@ -245,6 +270,20 @@ public class UpdateAttributes extends PorticoMessage implements Externalizable,
 		return clone;
 	}
 
+	/**
+	 * The receivers get their own copies of the tag and attribute values. The sender is free
+	 * to reuse its arrays once the update call returns, and a receiver can't change the values
+	 * another one sees.
+	 */
+	@Override
+	public UpdateAttributes copyForReceiver()
+	{
+		UpdateAttributes copy = clone( UpdateAttributes.class );
+		copy.tag = copyValue( this.tag );
+		copy.attributes = copyValues( this.attributes );
+		return copy;
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
@@ -16,10 +16,13 @@ package org.portico2.common.services.pubsub.data;
 
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.portico.lrc.compat.JAttributeNotDefined;
 import org.portico.lrc.compat.JInteractionClassNotDefined;
@@ -47,6 +50,18 @@ import org.portico2.common.services.ddm.data.RegionStore;
  * interest in them, and what the interest is. That is, rather than storing a separate set of
  * information for each federate, we store sets of information about a particular object/interaction
  * class (inside each is information about any federate).
+ * <p/>
+ * 
+ * <b>Subscriber Routing Index</b>
+ * <p/>
+ * Working out who is subscribed to a class means walking up its inheritance hierarchy, which is
+ * too expensive to do for every update, interaction and registration. Instead, we keep an index
+ * holding an immutable {@link Subscribers} snapshot for every class in the FOM. A subscription
+ * change can only affect the class it is for and that class's descendants, so only their
+ * snapshots are replaced. Lookups ({@link #getObjectSubscribers(OCMetadata)} and
+ * {@link #getInteractionSubscribers(ICMetadata)}) are then a single map get. They don't lock or
+ * allocate, so it is safe to call them from network threads. While a change is being applied,
+ * a reader may see the new snapshot for some of the affected classes and the old one for others.
  */
 public class InterestManager implements SaveRestoreTarget
 {
@@ -64,6 +79,10 @@ public class InterestManager implements SaveRestoreTarget
 	private Map<ICMetadata,ICInterest> pInteractions;
 	private Map<ICMetadata,ICInterest> sInteractions;
 
+	// subscriber routing index, only replaced wholesale when the FOM is set or state restored
+	private volatile Map<OCMetadata,Subscribers<OCMetadata>> objectRoutes;
+	private volatile Map<ICMetadata,Subscribers<ICMetadata>> interactionRoutes;
+
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
 	//----------------------------------------------------------
@@ -75,6 +94,8 @@ public class InterestManager implements SaveRestoreTarget
 		this.sObjects = new HashMap<OCMetadata,OCInterest>();
 		this.pInteractions = new HashMap<ICMetadata,ICInterest>();
 		this.sInteractions = new HashMap<ICMetadata,ICInterest>();
+		this.objectRoutes = new ConcurrentHashMap<>();
+		this.interactionRoutes = new ConcurrentHashMap<>();
 	}
 
 	//----------------------------------------------------------
@@ -90,9 +111,11 @@ public class InterestManager implements SaveRestoreTarget
 	 * 
 	 * @param fom The FOM we are using
 	 */
-	public void setFOM( ObjectModel fom )
+	public synchronized void setFOM( ObjectModel fom )
 	{
 		this.fom = fom;
+		rebuildObjectRoutes();
+		rebuildInteractionRoutes();
 	}
 	
 	//////////////////////////////////////////////////////////////////////////////////////////
@@ -210,6 +233,8 @@ public class InterestManager implements SaveRestoreTarget
 		}
 
 		interest.registerInterest( federateHandle, attributes, region /*null ok*/ );
+		if( map == sObjects )
+			updateRoutes( objectClass );
 	}
 	
 	/**
@@ -285,6 +310,8 @@ public class InterestManager implements SaveRestoreTarget
 			throw new NoRegistration( action+": federate has no pub/sub interest in "+classHandle );
 		
 		interest.removeInterest( federateHandle, region );
+		if( map == sObjects )
+			updateRoutes( objectClass );
 	}
 
 	/**
@@ -370,6 +397,8 @@ public class InterestManager implements SaveRestoreTarget
 			throw new NoRegistration( action+": federate has no pub/sub interest in "+classHandle );
 		
 		interest.removeInterest( federateHandle, attributes );
+		if( map == sObjects )
+			updateRoutes( objectClass );
 	}
 	
 	/**
@@ -524,6 +553,8 @@ public class InterestManager implements SaveRestoreTarget
 		}
 		
 		interest.registerInterest( federateHandle, region );
+		if( map == sInteractions )
+			updateRoutes( interactionClass );
 	}
 	
 	/**
@@ -599,6 +630,8 @@ public class InterestManager implements SaveRestoreTarget
 		// null will be passed for the region if no region data was provided, this is equivalent
 		// to passing the default region causing region considerations to be ignored
 		interest.removeInterest( federateHandle, region );
+		if( map == sInteractions )
+			updateRoutes( interactionClass );
 	}
 	
 	/**
@@ -909,16 +942,32 @@ public class InterestManager implements SaveRestoreTarget
 		OCMetadata clazz = fom.getObjectClass( initialClass );
 		if( clazz == null )
 			return false;
-		
-		while( clazz != null )
-		{
-			if( isObjectClassSubscribedDirectly( federateHandle, clazz.getHandle()) )
-				return true;
-			else
-				clazz = clazz.getParent();
-		}
-		
-		return false;
+		else
+			return getObjectSubscribers( clazz ).contains( federateHandle );
+	}
+
+	/**
+	 * The same as {@link #isObjectClassSubscribed(int, int)}, but the federate must also be
+	 * subscribed to at least one of the given attributes (through the class or any of its parents).
+	 * 
+	 * @param attributeHandles The attributes to check, or <code>null</code> to only check the class
+	 * @return <code>true</code> if the identified federate subscribes to the class of the given
+	 *         handle (or any of its parents) and to at least one of the attributes
+	 */
+	public boolean isObjectClassSubscribed( int federateHandle,
+	                                        int initialClass,
+	                                        int[] attributeHandles )
+	{
+		OCMetadata clazz = fom.getObjectClass( initialClass );
+		if( clazz == null )
+			return false;
+
+		Subscribers<OCMetadata> subscribers = getObjectSubscribers( clazz );
+		int index = subscribers.indexOf( federateHandle );
+		if( index < 0 )
+			return false;
+		else
+			return attributeHandles == null || subscribers.isSubscribed( index, attributeHandles );
 	}
 
 	/**
@@ -955,19 +1004,7 @@ public class InterestManager implements SaveRestoreTarget
 	 */
 	public Set<Integer> getAllSubscribers( OCMetadata objectClass )
 	{
-		HashSet<Integer> set = new HashSet<>();
-
-		OCMetadata currentClass = objectClass;
-		while( currentClass != null )
-		{
-			OCInterest interest = sObjects.get( currentClass );
-			if( interest != null )
-				set.addAll( interest.getFederates() );
-
-			currentClass = currentClass.getParent();
-		}
-		
-		return set;
+		return getObjectSubscribers( objectClass ).toSet();
 	}
 	
 	/**
@@ -985,30 +1022,38 @@ public class InterestManager implements SaveRestoreTarget
 	 */
 	public Map<Integer,OCMetadata> getAllSubscribersWithTypes( OCMetadata initialClass )
 	{
-		HashMap<Integer,OCMetadata> map = new HashMap<>();
-		
-		// get the interest information for thi
-		OCMetadata currentClass = initialClass;
-		while( currentClass != null )
+		return getObjectSubscribers( initialClass ).toMap();
+	}
+
+	/**
+	 * Get the snapshot of all federates that have a subscription interest in the given object
+	 * class <b>OR</b> any of its parents, along with the most specific class each is subscribed
+	 * to (the type they would discover an instance of the class as). The snapshot comes straight
+	 * out of the routing index and is immutable. Use this rather than
+	 * {@link #getAllSubscribers(OCMetadata)} on any path that is hit often.
+	 * 
+	 * @param objectClass The class to get the subscribers for
+	 * @return The subscribers to the class. Never <code>null</code>.
+	 */
+	public Subscribers<OCMetadata> getObjectSubscribers( OCMetadata objectClass )
+	{
+		Subscribers<OCMetadata> subscribers = objectRoutes.get( objectClass );
+		if( subscribers != null )
+			return subscribers;
+
+		// we don't have this class in the index. most likely it was merged into the FOM
+		// (by a late-joining federate's modules) after we last rebuilt. add just this class
+		synchronized( this )
 		{
-			// find if there is any interest in this class directly
-			OCInterest currentInterest = sObjects.get( currentClass );
-			if( currentInterest != null )
+			subscribers = objectRoutes.get( objectClass );
+			if( subscribers == null )
 			{
-				for( int federateHandle : currentInterest.getFederates() )
-				{
-					// only register a federate's interest if it isn't already stored.
-					// if it is stored, it means they're interested in a more specific class
-					if( map.containsKey(federateHandle) == false )
-						map.put( federateHandle, currentClass );
-				}
+				subscribers = buildSubscribers( objectClass );
+				objectRoutes.put( objectClass, subscribers );
 			}
-
-			// skip to the parent class
-			currentClass = currentClass.getParent();
+			
+			return subscribers;
 		}
-		
-		return map;
 	}
 
 	//////////////////////////////////////////////////////////////////////////////////////////
@@ -1150,16 +1195,8 @@ public class InterestManager implements SaveRestoreTarget
 		ICMetadata clazz = fom.getInteractionClass( initialClass );
 		if( clazz == null )
 			return false;
-		
-		while( clazz != null )
-		{
-			if( isInteractionClassSubscribedDirectly(federateHandle, clazz.getHandle()) )
-				return true;
-			else
-				clazz = clazz.getParent();
-		}
-		
-		return false;
+		else
+			return getInteractionSubscribers( clazz ).contains( federateHandle );
 	}
 	
 	/**
@@ -1236,19 +1273,36 @@ public class InterestManager implements SaveRestoreTarget
 	 */
 	public Set<Integer> getAllSubscribers( ICMetadata interactionClass )
 	{
-		HashSet<Integer> set = new HashSet<>();
+		return getInteractionSubscribers( interactionClass ).toSet();
+	}
 
-		ICMetadata currentClass = interactionClass;
-		while( currentClass != null )
-		{
-			ICInterest interest = sInteractions.get( currentClass );
-			if( interest != null )
-				set.addAll( interest.getFederates() );
+	/**
+	 * Get the snapshot of all federates that have a subscription interest in the given
+	 * interaction class <b>OR</b> any of its parents, along with the most specific class each is
+	 * subscribed to. The snapshot comes straight out of the routing index and is immutable. Use
+	 * this rather than {@link #getAllSubscribers(ICMetadata)} on any path that is hit often.
+	 * 
+	 * @param interactionClass The class to get the subscribers for
+	 * @return The subscribers to the class. Never <code>null</code>.
+	 */
+	public Subscribers<ICMetadata> getInteractionSubscribers( ICMetadata interactionClass )
+	{
+		Subscribers<ICMetadata> subscribers = interactionRoutes.get( interactionClass );
+		if( subscribers != null )
+			return subscribers;
 
-			currentClass = currentClass.getParent();
+		// not in the index, see getObjectSubscribers() for why this might happen
+		synchronized( this )
+		{
+			subscribers = interactionRoutes.get( interactionClass );
+			if( subscribers == null )
+			{
+				subscribers = buildSubscribers( interactionClass );
+				interactionRoutes.put( interactionClass, subscribers );
+			}
+			
+			return subscribers;
 		}
-		
-		return set;
 	}
 	
 	/**
@@ -1325,6 +1379,38 @@ public class InterestManager implements SaveRestoreTarget
 		return interactionClasses;
 	}
 	
+	/**
+	 * Remove every publication and subscription interest the given federate has. Called when the
+	 * federate resigns so that it no longer shows up as a subscriber.
+	 * 
+	 * @param federateHandle The handle of the federate to remove
+	 */
+	public synchronized void removeFederate( int federateHandle )
+	{
+		for( OCInterest interest : pObjects.values() )
+			interest.removeInterest( federateHandle );
+		for( ICInterest interest : pInteractions.values() )
+			interest.removeInterest( federateHandle );
+
+		for( OCInterest interest : sObjects.values() )
+		{
+			if( interest.hasInterest(federateHandle) )
+			{
+				interest.removeInterest( federateHandle );
+				updateRoutes( interest.getObjectClass() );
+			}
+		}
+
+		for( ICInterest interest : sInteractions.values() )
+		{
+			if( interest.hasInterest(federateHandle) )
+			{
+				interest.removeInterest( federateHandle );
+				updateRoutes( interest.getInteractionClass() );
+			}
+		}
+	}
+
 	//////////////////////////////////////////////////////////////////////////////////////////
 	///////////////////////////////// Private Helper Methods /////////////////////////////////
 	//////////////////////////////////////////////////////////////////////////////////////////
@@ -1347,6 +1433,159 @@ public class InterestManager implements SaveRestoreTarget
 		this.sObjects      = (Map<OCMetadata,OCInterest>)input.readObject();
 		this.pInteractions = (Map<ICMetadata,ICInterest>)input.readObject();
 		this.sInteractions = (Map<ICMetadata,ICInterest>)input.readObject();
+		synchronized( this )
+		{
+			rebuildObjectRoutes();
+			rebuildInteractionRoutes();
+		}
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////// Subscriber Routing Index //////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////////
+	// All of these must be called while holding the lock on this object
+
+	/**
+	 * Rebuild the {@link Subscribers} snapshot for every object class in the FOM and swap the
+	 * new index in. Readers will see either the old or the new index, never a partial one.
+	 * Only needed when the FOM or all the interest data is replaced.
+	 */
+	private void rebuildObjectRoutes()
+	{
+		if( fom == null )
+			return;
+
+		Map<OCMetadata,Subscribers<OCMetadata>> routes = new ConcurrentHashMap<>();
+		for( OCMetadata objectClass : fom.getAllObjectClasses() )
+			routes.put( objectClass, buildSubscribers(objectClass) );
+
+		this.objectRoutes = routes;
+	}
+
+	/**
+	 * Same as {@link #rebuildObjectRoutes()}, but for interaction classes
+	 */
+	private void rebuildInteractionRoutes()
+	{
+		if( fom == null )
+			return;
+
+		Map<ICMetadata,Subscribers<ICMetadata>> routes = new ConcurrentHashMap<>();
+		for( ICMetadata interactionClass : fom.getAllInteractionClasses() )
+			routes.put( interactionClass, buildSubscribers(interactionClass) );
+
+		this.interactionRoutes = routes;
+	}
+
+	/**
+	 * The subscriptions for the given class have changed. Replace the snapshot for it and each
+	 * of its descendants, as they are the only classes that inherit those subscriptions.
+	 */
+	private void updateRoutes( OCMetadata objectClass )
+	{
+		objectRoutes.put( objectClass, buildSubscribers(objectClass) );
+		for( OCMetadata child : objectClass.getChildTypes() )
+			updateRoutes( child );
+	}
+
+	/**
+	 * Same as {@link #updateRoutes(OCMetadata)}, but for interaction classes
+	 */
+	private void updateRoutes( ICMetadata interactionClass )
+	{
+		interactionRoutes.put( interactionClass, buildSubscribers(interactionClass) );
+		for( ICMetadata child : interactionClass.getChildTypes() )
+			updateRoutes( child );
+	}
+
+	/**
+	 * Walk up the hierarchy from the given class, recording each subscribed federate against the
+	 * first (and thus most specific) class we find them subscribed to. We also gather up all the
+	 * attributes each federate is subscribed to along the way. A federate will filter reflections
+	 * against the class it discovered an instance as, which is always one of these classes, so
+	 * this is the widest set of attributes it could ever want.
+	 */
+	private Subscribers<OCMetadata> buildSubscribers( OCMetadata objectClass )
+	{
+		TreeMap<Integer,OCMetadata> found = new TreeMap<>();
+		Map<Integer,Set<Integer>> attributes = new HashMap<>();
+		for( OCMetadata current = objectClass; current != null; current = current.getParent() )
+		{
+			OCInterest interest = sObjects.get( current );
+			if( interest != null )
+			{
+				for( Integer federateHandle : interest.getFederates() )
+				{
+					found.putIfAbsent( federateHandle, current );
+					Set<Integer> subscribed = interest.getInterest( federateHandle );
+					if( subscribed != null )
+					{
+						attributes.computeIfAbsent( federateHandle, k -> new HashSet<>() )
+						          .addAll( subscribed );
+					}
+				}
+			}
+		}
+
+		if( found.isEmpty() )
+			return Subscribers.empty();
+
+		int[] federates = new int[found.size()];
+		Object[] types = new Object[found.size()];
+		int[][] subscribed = new int[found.size()][];
+		int classAttributes = objectClass.getAllAttributeHandles().size();
+		boolean partial = false;
+		int index = 0;
+		for( Map.Entry<Integer,OCMetadata> entry : found.entrySet() )
+		{
+			federates[index] = entry.getKey();
+			types[index] = entry.getValue();
+			subscribed[index] = attributes.getOrDefault(entry.getKey(),Collections.emptySet())
+			                              .stream().mapToInt(Integer::intValue).sorted().toArray();
+			if( subscribed[index].length < classAttributes )
+				partial = true;
+
+			index++;
+		}
+
+		return new Subscribers<>( federates, types, subscribed, partial );
+	}
+
+	/**
+	 * Same as {@link #buildSubscribers(OCMetadata)}, but for interaction classes
+	 */
+	private Subscribers<ICMetadata> buildSubscribers( ICMetadata interactionClass )
+	{
+		TreeMap<Integer,ICMetadata> found = new TreeMap<>();
+		for( ICMetadata current = interactionClass; current != null; current = current.getParent() )
+		{
+			ICInterest interest = sInteractions.get( current );
+			if( interest != null )
+			{
+				for( Integer federateHandle : interest.getFederates() )
+					found.putIfAbsent( federateHandle, current );
+			}
+		}
+
+		return toSubscribers( found );
+	}
+
+	private <T> Subscribers<T> toSubscribers( TreeMap<Integer,T> found )
+	{
+		if( found.isEmpty() )
+			return Subscribers.empty();
+
+		int[] federates = new int[found.size()];
+		Object[] types = new Object[found.size()];
+		int index = 0;
+		for( Map.Entry<Integer,T> entry : found.entrySet() )
+		{
+			federates[index] = entry.getKey();
+			types[index] = entry.getValue();
+			index++;
+		}
+
+		return new Subscribers<>( federates, types );
 	}
 
 	//----------------------------------------------------------
@@ -0,0 +1,238 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.common.services.pubsub.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.function.Function;
+
+/**
+ * An immutable snapshot of all the federates that have a subscription interest in a particular
+ * object or interaction class, <i>including</i> interest inherited from subscriptions to any of
+ * its parent classes. For each federate we also hold the most specific class they subscribe to
+ * in the hierarchy (for objects, this is the class they will discover instances as).
+ * <p/>
+ *
+ * Object class snapshots also hold the attributes each federate is subscribed to (across the
+ * class and all of its parents), so that updates can be routed only to federates that want
+ * at least one of the attributes in them. See {@link #isSubscribed(int, int[])}.
+ * <p/>
+ *
+ * Instances are built by the {@link InterestManager} whenever subscription interest changes
+ * and are shared between all callers. Federate handles are held in a sorted <code>int[]</code>,
+ * so looking them up or iterating over them doesn't allocate or box anything:
+ *
+ * <pre>
+ *   Subscribers&lt;OCMetadata&gt; subscribers = interests.getObjectSubscribers( objectClass );
+ *   for( int i = 0; i &lt; subscribers.size(); i++ )
+ *   {
+ *       int federateHandle = subscribers.getFederate( i );
+ *       OCMetadata discoveredAs = subscribers.getType( i );
+ *   }
+ * </pre>
+ *
+ * @param <T> The metadata type of the class ({@link org.portico.lrc.model.OCMetadata} or
+ *            {@link org.portico.lrc.model.ICMetadata})
+ */
+public final class Subscribers<T>
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	@SuppressWarnings("rawtypes")
+	private static final Subscribers EMPTY = new Subscribers<>( new int[0], new Object[0] );
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private final int[] federates;  // sorted ascending
+	private final Object[] types;   // most specific subscribed class for each federate
+	private final int[][] attributes; // sorted subscribed attributes per federate, null if n/a
+	private final boolean partial;    // true if any federate has only some of the attributes
+	private volatile Object derived; // see getDerived()
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	/**
+	 * @param federates Handles of all the subscribed federates, sorted in ascending order
+	 * @param types     The most specific subscribed class for the federate at the same index
+	 */
+	protected Subscribers( int[] federates, Object[] types )
+	{
+		this( federates, types, null, false );
+	}
+
+	/**
+	 * @param federates  Handles of all the subscribed federates, sorted in ascending order
+	 * @param types      The most specific subscribed class for the federate at the same index
+	 * @param attributes The attribute handles that the federate at the same index is subscribed
+	 *                   to, each sorted in ascending order. <code>null</code> if there are none
+	 *                   to filter on (interaction classes).
+	 * @param partial    <code>true</code> if at least one federate is not subscribed to all the
+	 *                   attributes of the class
+	 */
+	protected Subscribers( int[] federates, Object[] types, int[][] attributes, boolean partial )
+	{
+		this.federates = federates;
+		this.types = types;
+		this.attributes = attributes;
+		this.partial = partial;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/** @return The number of subscribed federates */
+	public int size()
+	{
+		return federates.length;
+	}
+
+	public boolean isEmpty()
+	{
+		return federates.length == 0;
+	}
+
+	/** @return The handle of the subscribed federate at the given index */
+	public int getFederate( int index )
+	{
+		return federates[index];
+	}
+
+	/**
+	 * @return The most specific class that the federate at the given index is subscribed to. This
+	 *         will be the class the snapshot is for, or one of its parents.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getType( int index )
+	{
+		return (T)types[index];
+	}
+
+	/**
+	 * @return <code>true</code> if at least one of the federates is only subscribed to some of
+	 *         the attributes of the class, in which case {@link #isSubscribed(int, int[])} may
+	 *         turn some of them away. Always <code>false</code> for interaction classes.
+	 */
+	public boolean isPartial()
+	{
+		return partial;
+	}
+
+	/**
+	 * Check whether the federate at the given index is subscribed to any of the given attributes.
+	 * If the snapshot doesn't hold attribute information (interaction classes) this is always
+	 * <code>true</code>.
+	 *
+	 * @param index            The index of the federate to check
+	 * @param attributeHandles The handles of the attributes in an update
+	 * @return <code>true</code> if the federate is subscribed to at least one of the attributes
+	 */
+	public boolean isSubscribed( int index, int[] attributeHandles )
+	{
+		if( attributes == null )
+			return true;
+
+		int[] subscribed = attributes[index];
+		for( int attributeHandle : attributeHandles )
+		{
+			if( Arrays.binarySearch(subscribed,attributeHandle) >= 0 )
+				return true;
+		}
+
+		return false;
+	}
+
+	/** @return <code>true</code> if the given federate has a subscription interest */
+	public boolean contains( int federateHandle )
+	{
+		return indexOf( federateHandle ) >= 0;
+	}
+
+	/** @return The index of the given federate, or a negative value if it isn't subscribed */
+	public int indexOf( int federateHandle )
+	{
+		return Arrays.binarySearch( federates, federateHandle );
+	}
+
+	/**
+	 * @return A new, mutable set containing all the subscribed federate handles
+	 */
+	public HashSet<Integer> toSet()
+	{
+		HashSet<Integer> set = new HashSet<>( (int)(federates.length/0.75f)+1 );
+		for( int federate : federates )
+			set.add( federate );
+
+		return set;
+	}
+
+	/**
+	 * @return A new, mutable map of each subscribed federate handle to the most specific class
+	 *         that it is subscribed to
+	 */
+	@SuppressWarnings("unchecked")
+	public HashMap<Integer,T> toMap()
+	{
+		HashMap<Integer,T> map = new HashMap<>( (int)(federates.length/0.75f)+1 );
+		for( int i = 0; i < federates.length; i++ )
+			map.put( federates[i], (T)types[i] );
+
+		return map;
+	}
+
+	/**
+	 * Get a value worked out from this snapshot, building it the first time it is asked for.
+	 * Snapshots never change, so whatever is built from one stays valid for as long as the
+	 * snapshot is in use. The RTI uses this to keep the set of connections that a class routes
+	 * to, rather than working it out again for every message.
+	 * <p/>
+	 * Only one value is held, so every caller must pass an equivalent builder. Two threads may
+	 * race to build it, in which case one of the results is kept.
+	 *
+	 * @param builder Works out the value from this snapshot
+	 * @return The value, either cached or freshly built
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V getDerived( Function<? super Subscribers<T>,V> builder )
+	{
+		Object value = this.derived;
+		if( value == null )
+		{
+			value = builder.apply( this );
+			this.derived = value;
+		}
+
+		return (V)value;
+	}
+
+	@Override
+	public String toString()
+	{
+		return Arrays.toString( federates );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/** @return A shared, empty set of subscribers */
+	@SuppressWarnings("unchecked")
+	public static <T> Subscribers<T> empty()
+	{
+		return (Subscribers<T>)EMPTY;
+	}
+}
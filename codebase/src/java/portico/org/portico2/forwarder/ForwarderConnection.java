@@ -24,6 +24,7 @@ import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.network.Connection;
 import org.portico2.common.network.Header;
 import org.portico2.common.network.IApplicationReceiver;
+import org.portico2.common.network.Message;
 import org.portico2.common.network.Connection.Host;
 import org.portico2.common.network.Connection.Status;
 import org.portico2.common.network.configuration.ConnectionConfiguration;
@@ -103,13 +104,13 @@ public class ForwarderConnection implements IApplicationReceiver
 	}
 
 	@Override
-	public void receiveDataMessage( PorticoMessage message ) throws JException
+	public void receiveDataMessage( Message message ) throws JException
 	{
 		// No-op
 		logger.warn( "Received Data Message - should never get here (%s) source=%s, target=%s",
-		             message.getType(),
-		             message.getSourceFederate(),
-		             message.getTargetFederate() );
+		             message.getMessageType(),
+		             message.getHeader().getSourceFederate(),
+		             message.getHeader().getTargetFederate() );
 	}
 
 	@Override
@@ -61,6 +61,7 @@ public class ForwardingProtocol extends Protocol
 	                                                            MessageType.DeleteObject );
 	
 	private static final EnumSet NotificationPassthrough = EnumSet.of( MessageType.DiscoverObject,
+	                                                            MessageType.DiscoverObjectBatch,
 	                                                            MessageType.DeleteObject );
 
 	//----------------------------------------------------------
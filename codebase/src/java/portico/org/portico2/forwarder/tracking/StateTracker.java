@@ -26,6 +26,7 @@ import org.portico2.common.services.federation.msg.CreateFederation;
 import org.portico2.common.services.federation.msg.WelcomePack;
 import org.portico2.common.services.object.msg.DeleteObject;
 import org.portico2.common.services.object.msg.DiscoverObject;
+import org.portico2.common.services.object.msg.DiscoverObjectBatch;
 import org.portico2.common.services.object.msg.RegisterObject;
 
 public class StateTracker
@@ -91,6 +92,17 @@ public class StateTracker
 				                notice.getClassHandle() );
 				break;
 			}
+			case DiscoverObjectBatch:
+			{
+				DiscoverObjectBatch notice = message.inflateAsPorticoMessage( DiscoverObjectBatch.class );
+				for( DiscoverObjectBatch.Record record : notice.getRecords() )
+				{
+					discoverObject( message.getHeader().getFederation(),
+					                record.getObjectHandle(),
+					                notice.getClassHandle() );
+				}
+				break;
+			}
 			case DeleteObject:
 			{
 				DeleteObject notice = message.inflateAsPorticoMessage( DeleteObject.class );
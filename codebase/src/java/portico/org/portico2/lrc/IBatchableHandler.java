@@ -0,0 +1,52 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.lrc;
+
+import org.portico.lrc.compat.JException;
+import org.portico2.common.messaging.MessageContext;
+import org.portico2.common.services.federation.msg.Batch;
+
+/**
+ * Outgoing handlers that implement this interface can have their requests sent to the RTI as
+ * part of a {@link Batch}, rather than each in its own round trip. To support this the handler
+ * splits its work into the part done before the request goes to the RTI, and the part done once
+ * the response comes back. Its normal <code>process()</code> method should just be these two
+ * with a call to the RTI in between.
+ */
+public interface IBatchableHandler
+{
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Validate the request in the given context and get it ready to send to the RTI.
+	 * 
+	 * @param context The context holding the request
+	 * @return <code>true</code> if the request should be sent to the RTI. <code>false</code> if
+	 *         the handler has already dealt with it some other way and the context holds the
+	 *         response (for example, a publish with no attributes is turned into an unpublish)
+	 * @throws JException If the request isn't valid and should not be sent
+	 */
+	public boolean prepare( MessageContext context ) throws JException;
+
+	/**
+	 * The response from the RTI has been put into the given context. Record whatever needs to
+	 * be recorded locally. If the response is an error, throw it.
+	 * 
+	 * @param context The context holding the request and the response from the RTI
+	 * @throws JException If the RTI returned an error, or the result can't be applied
+	 */
+	public void complete( MessageContext context ) throws JException;
+}
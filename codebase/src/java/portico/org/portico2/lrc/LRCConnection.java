@@ -14,6 +14,8 @@
  */
 package org.portico2.lrc;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.apache.logging.log4j.Logger;
 import org.portico.lrc.compat.JConfigurationException;
 import org.portico.lrc.compat.JConnectionFailed;
@@ -22,12 +24,16 @@ import org.portico.lrc.compat.JRTIinternalError;
 import org.portico.utils.messaging.PorticoMessage;
 import org.portico2.common.PorticoConstants;
 import org.portico2.common.messaging.MessageContext;
+import org.portico2.common.messaging.MessageType;
 import org.portico2.common.network.Connection;
 import org.portico2.common.network.Header;
 import org.portico2.common.network.IApplicationReceiver;
+import org.portico2.common.network.Message;
 import org.portico2.common.network.Connection.Host;
 import org.portico2.common.network.Connection.Status;
 import org.portico2.common.network.configuration.ConnectionConfiguration;
+import org.portico2.common.services.object.msg.DiscoverObjectBatch;
+import org.portico2.common.services.pubsub.data.InterestManager;
 
 public class LRCConnection implements IApplicationReceiver
 {
@@ -92,12 +98,38 @@ public class LRCConnection implements IApplicationReceiver
 		context.getRequest().setTargetFederate( PorticoConstants.RTI_HANDLE );
 		this.connection.sendControlRequest( context );
 	}
+
+	/**
+	 * @see Connection#sendControlRequestAsync(MessageContext)
+	 */
+	public CompletableFuture<MessageContext> sendControlRequestAsync( MessageContext context )
+		throws JRTIinternalError
+	{
+		context.getRequest().setTargetFederate( PorticoConstants.RTI_HANDLE );
+		return this.connection.sendControlRequestAsync( context );
+	}
 	
 	public void sendDataMessage( PorticoMessage message ) throws JException
 	{
 		this.connection.sendDataMessage( message );
 	}
 
+	/**
+	 * @see Connection#sendBestEffortDataMessage(PorticoMessage)
+	 */
+	public void sendBestEffortDataMessage( PorticoMessage message ) throws JException
+	{
+		this.connection.sendBestEffortDataMessage( message );
+	}
+
+	/**
+	 * @see Connection#hasBestEffortChannel()
+	 */
+	public boolean hasBestEffortChannel()
+	{
+		return this.connection.hasBestEffortChannel();
+	}
+
 
 	///////////////////////////////////////////////////////////////////////////////////////
 	///  Message RECEIVING methods   //////////////////////////////////////////////////////
@@ -118,15 +150,60 @@ public class LRCConnection implements IApplicationReceiver
 	}
 	
 	@Override
-	public void receiveDataMessage( PorticoMessage incoming ) throws JException
+	public void receiveDataMessage( Message incoming ) throws JException
 	{
+		// Some transports broadcast everything to everyone. Use the filtering information
+		// in the header to throw away anything we aren't subscribed to before we inflate it
+		if( isSubscribed(incoming) == false )
+			return;
+
 		// Dump the message into the LRC queue for processing
-		lrc.getState().getQueue().offer( incoming );
+		lrc.getState().getQueue().offer( incoming.inflateAsPorticoMessage() );
+	}
+
+	/**
+	 * Check the filtering information in the header of a data message against the subscriptions
+	 * of the local federate. For attribute updates we also check that we are subscribed to at
+	 * least one of the attributes in it. The incoming handlers still do the full region filtering
+	 * (and cut the update down to just the attributes we want).
+	 * 
+	 * @return <code>false</code> if the message is for a class we have no subscription interest in
+	 *         (or any parent class), or only holds attributes we aren't subscribed to;
+	 *         <code>true</code> otherwise, including when there is no filtering information or we
+	 *         are not joined yet.
+	 */
+	private boolean isSubscribed( Message message )
+	{
+		Header header = message.getHeader();
+		LRCState state = lrc.getState();
+		if( header.isFiltering() == false || state.isJoined() == false )
+			return true;
+
+		InterestManager interests = state.getInterestManager();
+		int federateHandle = state.getFederateHandle();
+		if( header.isFilteringObjectClass() )
+		{
+			return interests.isObjectClassSubscribed( federateHandle,
+			                                          header.getFilteringId(),
+			                                          message.getAttributeHandles() );
+		}
+		else
+			return interests.isInteractionClassSubscribed( federateHandle, header.getFilteringId() );
 	}
 
 	@Override
 	public void receiveNotification( PorticoMessage incoming ) throws JException
 	{
+		// Discovery snapshots are broken up into the individual discoveries they stand for so
+		// the rest of the LRC processes them exactly as it would if they had come one by one
+		if( incoming.getType() == MessageType.DiscoverObjectBatch )
+		{
+			for( PorticoMessage message : ((DiscoverObjectBatch)incoming).expand() )
+				lrc.getState().getQueue().offer( message );
+
+			return;
+		}
+
 		// Drop this into the LRC message queue for processing
 		lrc.getState().getQueue().offer( incoming );
 	}
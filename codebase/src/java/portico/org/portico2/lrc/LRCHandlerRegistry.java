@@ -36,6 +36,7 @@ import org.portico.lrc.compat.JConfigurationException;
 import org.portico2.common.messaging.IMessageHandler;
 import org.portico2.common.messaging.MessageSink;
 import org.portico2.common.messaging.MessageType;
+import org.portico2.lrc.services.federation.outgoing.BatchHandler;
 import org.portico2.lrc.services.federation.outgoing.CreateFederationHandler;
 import org.portico2.lrc.services.federation.outgoing.DestroyFederationHandler;
 import org.portico2.lrc.services.federation.outgoing.JoinFederationHandler;
@@ -127,6 +128,7 @@ public class LRCHandlerRegistry
 		out.register( MessageType.CreateFederation,  new CreateFederationHandler() );
 		out.register( MessageType.JoinFederation,    new JoinFederationHandler() );
 		out.register( MessageType.ResignFederation,  new ResignFederationHandler() );
+		out.register( MessageType.Batch,             new BatchHandler() );
 		out.register( MessageType.DestroyFederation, new DestroyFederationHandler() );
 		out.register( MessageType.ListFederations,   new ListFederationsHandler() );
 		
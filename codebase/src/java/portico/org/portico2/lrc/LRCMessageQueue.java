@@ -17,13 +17,14 @@ package org.portico2.lrc;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -41,14 +42,25 @@ import org.portico2.common.services.time.data.TimeStatus;
  * of the linked LRC. For example, if the LRC is constrained, it will not release timestampped
  * messages until an advance to at least that time has been requested.
  * <p/>
- * This queue contains two queues internally: one for receive-order messages (RO) and one for 
- * timestamp-ordered messages (TSO). The RO queue is maintained on a normal first-in/first-out
- * basis. The TSO queue is sorted based on the timestamp of the incoming message. Those with
- * lower timestamps will be placed at the front of the queue. TSO messages are only released by the
- * queue when the {@link TimeStatus} of the local federate and federation is in an appropriate 
+ * This queue contains three lanes internally: two for receive-order messages (RO) and one for
+ * timestamp-ordered messages (TSO). The RO messages are maintained on a normal first-in/first-out
+ * basis, but are split into those that the HLA spec considers "messages" (reflections,
+ * interactions and removals) and everything else. A constrained federate that isn't advancing
+ * and doesn't have asynchronous delivery enabled can only be given the latter, and keeping them
+ * apart means they can be found without searching. Each RO message is given a sequence number as
+ * it is queued so that when both lanes can be released they still come out in arrival order.
+ * <p/>
+ * The TSO lane is a {@link TimestampOrderedQueue}, sorted based on the timestamp of the incoming
+ * message. Those with lower timestamps will be placed at the front of the queue, and those with
+ * the same timestamp are kept in arrival order. TSO messages are only released by the
+ * queue when the {@link TimeStatus} of the local federate and federation is in an appropriate
  * state (briefly: when the federation-lbts is greater-or-equal to the timestamp AND the time of
  * the local federate is as well).
  * <p/>
+ * Queuing an RO message doesn't take any lock: the lanes are lock-free queues and the thread
+ * pulling messages out is only woken if it is actually waiting. TSO messages and all removals
+ * are done under the queue lock.
+ * <p/>
  * Any messages that are placed in the queue and have the
  * {@link PorticoMessage#isImmediateProcessingRequired()} flag set will be automatically routed
  * into the incoming sink of the kernel associated with the LRC rather than storing them. I repeat,
@@ -65,17 +77,22 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	//----------------------------------------------------------
 	private LRC lrc;
 	private LRCState state;
-	
-	private BlockingQueue<PorticoMessage> roQueue;
-	private PriorityBlockingQueue<PorticoMessage> tsoQueue;
+
+	private Queue<Entry> roMessages;  // RO reflections, interactions and removals
+	private Queue<Entry> roCallbacks; // RO everything else
+	private AtomicLong roSequence;
+	private AtomicInteger roSize;
+	private TimestampOrderedQueue tsoQueue;
+	private volatile int tsoSize;
 
 	// hla-related properties //
 	private TimeStatus timeStatus;
-	
+
 	// locking and concurrency //
 	private Lock lock;
 	private Condition condition;
-	
+	private volatile int waiters;
+
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
 	//----------------------------------------------------------
@@ -84,20 +101,25 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	{
 		this.state = lrcState;
 		this.lrc = lrcState.theLRC;
-		this.roQueue = new LinkedBlockingQueue<PorticoMessage>();
-		this.tsoQueue = new PriorityBlockingQueue<PorticoMessage>( 13, new Sorter() );
-		
+		this.roMessages = new ConcurrentLinkedQueue<Entry>();
+		this.roCallbacks = new ConcurrentLinkedQueue<Entry>();
+		this.roSequence = new AtomicLong( 0 );
+		this.roSize = new AtomicInteger( 0 );
+		this.tsoQueue = new TimestampOrderedQueue();
+		this.tsoSize = 0;
+
 		// locking and concurrency //
 		this.lock = new ReentrantLock();
 		this.condition = this.lock.newCondition();
-		
+		this.waiters = 0;
+
 		// this will be lazy-loaded
 		// when a federate first joins a federation, the time status will be created and
 		// put into the LRCState. All access to this variable should be through the local
 		// private timeStatus() method which will lazy load this if it is null
 		this.timeStatus = lrcState.getTimeStatus();
 	}
-	
+
 	//----------------------------------------------------------
 	//                    INSTANCE METHODS
 	//----------------------------------------------------------
@@ -113,11 +135,11 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	 *   <li><b>Constrained *IS* set</b>: If the message is RO, it is placed on the RO queue. If
 	 *       the message is TSO, it is placed on the TSO queue.</li>
 	 * </ul>
-	 * 
+	 *
 	 * Timestamped messages will be ordered according to their time (lowest to highest). If the
 	 * federate is *NOT* constrained, messages will automatically be stored in the RO queue (and
 	 * will have their times set to PorticoConstants.NULL_TIME).
-	 * 
+	 *
 	 * @return true if the message was successfully added to the queue, false otherwise.
 	 */
 	public boolean offer( PorticoMessage message )
@@ -125,50 +147,109 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 		if( message == null )
 			return false;
 
-		lock.lock();
-		try
+		// if this is a priority message, process it right away (removed for now)
+		if( message.isImmediateProcessingRequired() )
 		{
-			// if this is a priority message, process it right away (removed for now)
-			if( message.isImmediateProcessingRequired() )
+			try
 			{
-				try
-				{
-					lrc.incoming.process( new MessageContext(message) );
-					return true;
-				}
-				catch( Exception e )
-				{
-					lrc.logger.info( "Exception processing priority message", e );
-					return false;
-				}
+				lrc.incoming.process( new MessageContext(message) );
+				return true;
 			}
-			
-			// FIX: PORT-103: If not constrained, store the message RO and remove the timestamp
-			if( timeStatus.isConstrained() == false )
+			catch( Exception e )
 			{
-				message.setTimestamp( PorticoConstants.NULL_TIME );
-				return this.roQueue.offer( message );
+				lrc.logger.info( "Exception processing priority message", e );
+				return false;
 			}
-			
-			// check if it is RO or TSO
-			if( message.isTimestamped() )
+			finally
 			{
-				return this.tsoQueue.offer( message );
+				// processing may have changed our time status, let any waiters check again
+				signalWaiters();
 			}
-			else
+		}
+
+		// FIX: PORT-103: If not constrained, store the message RO and remove the timestamp
+		if( timeStatus.isConstrained() == false )
+		{
+			message.setTimestamp( PorticoConstants.NULL_TIME );
+			offerRO( message );
+		}
+		else if( message.isTimestamped() )
+		{
+			offerTSO( message );
+		}
+		else
+		{
+			offerRO( message );
+		}
+
+		// notify the queue logger
+		if( state.isQueueLogging() )
+			logOffer( message );
+
+		// wake anyone waiting for a message
+		signalWaiters();
+		return true;
+	}
+
+	/**
+	 * Lock-free. Tag the message with the next RO sequence number and add it to the right lane.
+	 */
+	private void offerRO( PorticoMessage message )
+	{
+		Entry entry = new Entry( roSequence.getAndIncrement(), message );
+		if( message.isSpecDefinedMessage() )
+			roMessages.offer( entry );
+		else
+			roCallbacks.offer( entry );
+
+		roSize.incrementAndGet();
+	}
+
+	/**
+	 * The constrained check in {@link #offer(PorticoMessage)} is made without the lock. If
+	 * {@link #becameUnconstrained()} drained the TSO queue since then, a message added to it now
+	 * would never be delivered. Check again while holding the lock, and if we are no longer
+	 * constrained send it receive order without its timestamp, the same as the drain does.
+	 */
+	private void offerTSO( PorticoMessage message )
+	{
+		lock.lock();
+		try
+		{
+			if( timeStatus.isConstrained() == false )
 			{
-				return this.roQueue.offer( message );
+				message.setTimestamp( PorticoConstants.NULL_TIME );
+				offerRO( message );
+				return;
 			}
+
+			tsoQueue.offer( message );
+			tsoSize = tsoQueue.size();
 		}
 		finally
 		{
-			// notify the queue logger
-			if( state.isQueueLogging() )
-				logOffer( message );
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Only take the lock to signal if there is someone waiting. A waiting thread registers
+	 * itself in {@link #waiters} and checks the queue again (while holding the lock) before it
+	 * goes to sleep, so a message queued after that check will always see it waiting, and one
+	 * queued before will be found by the check.
+	 */
+	private void signalWaiters()
+	{
+		if( waiters == 0 )
+			return;
 
-			// signal to any threads waiting on the condition
+		lock.lock();
+		try
+		{
 			condition.signalAll();
-			// release the lock
+		}
+		finally
+		{
 			lock.unlock();
 		}
 	}
@@ -177,7 +258,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	 * Fetch the next available message from the queue.
 	 * <p/>
 	 * The algorithm used to determine which message is next goes as follows:
-	 * 
+	 *
 	 * <ol>
 	 *   <li>If there are any RO messages, they are removed first</li>
 	 *   <li>If there are no RO messages the first message of the TSO queue is consulted
@@ -198,7 +279,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	{
 		// get the lock //
 		lock.lock();
-		
+
 		// check for a message //
 		try
 		{
@@ -206,7 +287,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 			// check for any RO messages //
 			///////////////////////////////
 			// is there an RO message for delivery?
-			if( this.roQueue.isEmpty() == false )
+			if( roSize.get() > 0 )
 			{
 				// we have an RO message
 				////////////////////////////
@@ -232,10 +313,10 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 				else
 				{
 					// we don't need to worry about the async status, just deliver the RO message
-					return this.roQueue.poll();
+					return this.pollRO();
 				}
 			}
-			
+
 			////////////////////////////////////////////////////////
 			// no RO messages - check for releasable TSO messages //
 			////////////////////////////////////////////////////////
@@ -248,18 +329,16 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 				//                           -OR-
 				//   2) a time-advance grant message (which is always inserted into the TSO queue
 				//      behind all other messages of the same time)
-				if( message.isTimeAdvance() )
-				{
-					// it is! release it - we also need to remove it, so we'll poll
-					return this.tsoQueue.poll();
-				}
-				else if( message.getTimestamp() <= timeStatus.getRequestedTime() )
+				if( message.isTimeAdvance() ||
+					message.getTimestamp() <= timeStatus.getRequestedTime() )
 				{
 					// it is! release it - we also need to remove it, so we'll poll
-					return this.tsoQueue.poll();
+					message = this.tsoQueue.poll();
+					this.tsoSize = tsoQueue.size();
+					return message;
 				}
 			}
-	
+
 			//////////////////////////////////////
 			// no messages that can be released //
 			//////////////////////////////////////
@@ -276,11 +355,31 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 		}
 	}
 
+	/**
+	 * Remove and return whichever of the RO lane heads arrived first. Must hold the lock.
+	 */
+	private PorticoMessage pollRO()
+	{
+		Entry message = roMessages.peek();
+		Entry callback = roCallbacks.peek();
+		if( message == null && callback == null )
+			return null;
+
+		Entry winner = null;
+		if( callback == null || (message != null && message.sequence < callback.sequence) )
+			winner = roMessages.poll();
+		else
+			winner = roCallbacks.poll();
+
+		roSize.decrementAndGet();
+		return winner.message;
+	}
+
 	/**
 	 * This method is provided to support implementations of the HLA method flushQueueRequest().
 	 * It will return a list of all available messages that exist in the RO queue, along with all
 	 * those that exist in the TSO queue up to the given time (regardless of what the release time
-	 * is). FQR is a strange services indeed. 
+	 * is). FQR is a strange services indeed.
 	 */
 	public List<PorticoMessage> flush( double maxTime )
 	{
@@ -292,18 +391,13 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 			List<PorticoMessage> flushList = new ArrayList<PorticoMessage>();
 
 			// flush out all the RO messages
-			roQueue.drainTo( flushList );
+			PorticoMessage message = null;
+			while( (message = pollRO()) != null )
+				flushList.add( message );
 
 			// get all the TSO messages up to the specified time
-			PorticoMessage temp = tsoQueue.peek();
-			while( temp != null )
-			{
-				if( temp.getTimestamp() > maxTime )
-					break;
-
-				flushList.add( tsoQueue.poll() );
-				temp = tsoQueue.peek();
-			}
+			tsoQueue.drainTo( flushList, maxTime );
+			tsoSize = tsoQueue.size();
 
 			return flushList;
 		}
@@ -316,7 +410,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 			lock.unlock();
 		}
 	}
-	
+
 	/**
 	 * All this applies to RO messages only.
 	 * <p/>
@@ -324,45 +418,22 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	 * asynchronous delivery enabled and c) isn't in the middle of a time advance, then RO
 	 * "messages" cannot be released to it. Sadly, the HLA spec also defines "messages" as
 	 * (basically) reflections, interactions and removals. Everything else is not a "message" and
-	 * thus can be happily delivered RO. 
+	 * thus can be happily delivered RO.
 	 * <p/>
-	 * This method will find, remove and return from the RO queue the first non "message" callback
-	 * message. Thus, in the situation above, it will return the first queued message that can
-	 * happily be delivered, or null, if none exists
-	 * 
-	 * @return The first RO message in the queue that can be delivered, or null, if none can 
+	 * Non "messages" are kept in their own lane, so this method just takes the first one from it.
+	 * In the situation above, it will return the first queued message that can happily be
+	 * delivered, or null, if none exists. Must hold the lock.
+	 *
+	 * @return The first RO message in the queue that can be delivered, or null, if none can
 	 */
 	private PorticoMessage pollForNonMessage()
 	{
-		// we are contrained, NOT asynchronous and NOT advancing, we can only
-		// release RO messages that are NOT "messages" (according to the spec
-		// definition of the word)
-		if( roQueue.peek().isSpecDefinedMessage() == false )
-		{
-			// the first available message can happily be released
-			return roQueue.poll();
-		}
-
-		// we have to trawl the queue for the first "non-message" message
-		// so we can return it
-		PorticoMessage winner = null;
-		Iterator<PorticoMessage> iterator = this.roQueue.iterator();
-		while( iterator.hasNext() )
-		{
-			PorticoMessage message = iterator.next();
-			if( message.isSpecDefinedMessage() == false )
-			{
-				// found one!
-				winner = message;
-				break;
-			}
-		}
-		
-		// remove the message from the queue and return it, unless we didn't find one
-		if( winner != null )
-			this.roQueue.remove( winner );
+		Entry winner = roCallbacks.poll();
+		if( winner == null )
+			return null;
 
-		return winner;
+		roSize.decrementAndGet();
+		return winner.message;
 	}
 
 	/**
@@ -373,10 +444,11 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	public PorticoMessage poll( long timeoutNanos )
 	{
 		lock.lock();
+		++waiters;
 		try
 		{
 			// 1. check to see if we have a message //
-			// there is no need to aquire the lock as we are not accessing the queue directly
+			// we're registered as waiting, so anything queued after this check will signal us
 			// lock is reentrant, so we shouldn't take hit for aquiring it in poll()
 			PorticoMessage theMessage = poll();
 			if( theMessage != null )
@@ -384,7 +456,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 				// there is a message so we can just return it
 				return theMessage;
 			}
-	
+
 			// 2. need to wait for an update to come through //
 			// wait on condition
 			condition.awaitNanos( timeoutNanos );
@@ -399,6 +471,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 		}
 		finally
 		{
+			--waiters;
 			lock.unlock();
 		}
 	}
@@ -411,10 +484,11 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	public PorticoMessage pollUntilNextMessage() throws InterruptedException
 	{
 		lock.lock();
+		++waiters;
 		try
 		{
 			// 1. check to see if we have a message
-			// there is no need to aquire the lock as we are not accessing the queue directly
+			// we're registered as waiting, so anything queued after this check will signal us
 			// lock is reentrant, so we shouldn't take hit for aquiring it in poll()
 			PorticoMessage theMessage = poll();
 			if( theMessage != null )
@@ -422,7 +496,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 				// there is a message so we can just return it
 				return theMessage;
 			}
-	
+
 			// 2. need to wait for an update to come through
 			// wait on condition
 			condition.await();
@@ -433,6 +507,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 		}
 		finally
 		{
+			--waiters;
 			lock.unlock();
 		}
 	}
@@ -445,10 +520,11 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	public PorticoMessage pollUntil( Date deadline )
 	{
 		lock.lock();
+		++waiters;
 		try
 		{
 			// 1. check to see if we have a message
-			// there is no need to aquire the lock as we are not accessing the queue directly
+			// we're registered as waiting, so anything queued after this check will signal us
 			// lock is reentrant, so we shouldn't take hit for aquiring it in poll()
 			PorticoMessage theMessage = poll();
 			if( theMessage != null )
@@ -456,7 +532,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 				// there is a message so we can just return it
 				return theMessage;
 			}
-	
+
 			// 2. need to wait for an update to come through
 			condition.awaitUntil( deadline );
 			return poll();
@@ -467,6 +543,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 		}
 		finally
 		{
+			--waiters;
 			lock.unlock();
 		}
 	}
@@ -478,14 +555,18 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	 */
 	public PorticoMessage peekTSO()
 	{
-		if( tsoQueue.isEmpty() )
-		{
+		if( tsoSize == 0 )
 			return null;
-		}
-		else
+
+		lock.lock();
+		try
 		{
 			return tsoQueue.peek();
 		}
+		finally
+		{
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -493,16 +574,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	 */
 	public boolean isEmpty()
 	{
-		lock.lock();
-		try
-		{
-			// test the queues //
-			return this.roQueue.isEmpty() && this.tsoQueue.isEmpty();
-		}
-		finally
-		{
-			lock.unlock();
-		}
+		return roSize.get() == 0 && tsoSize == 0;
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////////
@@ -510,23 +582,24 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	////////////////////////////////////////////////////////////////////////////////////////////
 	/**
 	 * When a federate becomes unconstrained, it is no long able to receive messages with
-	 * timestamps. This method goes through the existing TSO queue and sets the timestamps of all
-	 * contained messages to {@link PorticoConstants#NULL_TIME} before putting them into the RO
-	 * queue and clearing the TSO queue.
+	 * timestamps. This method goes through the existing TSO queue (in timestamp order) and sets
+	 * the timestamps of all contained messages to {@link PorticoConstants#NULL_TIME} before
+	 * putting them into the RO queue and clearing the TSO queue.
 	 */
 	public void becameUnconstrained()
 	{
 		lock.lock();
 		try
 		{
-			for( PorticoMessage message : this.tsoQueue )
+			List<PorticoMessage> tsoContents = new ArrayList<PorticoMessage>( tsoQueue.size() );
+			tsoQueue.drainTo( tsoContents );
+			tsoSize = 0;
+
+			for( PorticoMessage message : tsoContents )
 			{
 				message.setTimestamp( PorticoConstants.NULL_TIME );
-				roQueue.offer( message );
+				offerRO( message );
 			}
-
-			// clear the tso queue
-			this.tsoQueue.clear();
 		}
 		finally
 		{
@@ -536,69 +609,100 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 
 	public int getSize()
 	{
-		return this.roQueue.size() + this.tsoQueue.size();
+		return roSize.get() + tsoSize;
 	}
-	
+
 	public String toString()
 	{
 		StringBuilder builder = new StringBuilder( "Message Queue (federate:" );
 		builder.append( state.getFederateHandle() );
 		builder.append( ")\n" );
-		
+
 		// Receive Order Queue //
 		builder.append( "\t[RO Queue]\n" );
-		if( roQueue.isEmpty() )
+		List<PorticoMessage> roContents = roContents();
+		if( roContents.isEmpty() )
 		{
 			builder.append( "\t(empty)\n" );
 		}
 		else
 		{
-			PorticoMessage[] roArray = roQueue.toArray( new PorticoMessage[roQueue.size()] );
-			for( int i = 0; i < roArray.length; i++ )
+			for( int i = 0; i < roContents.size(); i++ )
 			{
-				if( roArray[i] == null )
-					continue;
-
+				PorticoMessage message = roContents.get( i );
 				builder.append( "\t[" );
 				builder.append( i+1 );
 				builder.append( "] message=" );
-				builder.append( roArray[i].getClass().getCanonicalName() );
+				builder.append( message.getClass().getCanonicalName() );
 				builder.append( ", src=" );
-				builder.append( roArray[i].getSourceFederate() );
+				builder.append( message.getSourceFederate() );
 				builder.append( ", dst=" );
-				builder.append( roArray[i].getTargetFederate() );
+				builder.append( message.getTargetFederate() );
 				builder.append( "\n" );
 			}
 		}
-		
-		// Receive Order Queue //
+
+		// Timestamp Order Queue //
 		builder.append( "\t[TSO Queue]\n" );
-		if( tsoQueue.isEmpty() )
+		List<PorticoMessage> tsoContents = tsoContents();
+		if( tsoContents.isEmpty() )
 		{
 			builder.append( "\t(empty)\n" );
 		}
 		else
 		{
-			PorticoMessage[] tsoArray = tsoQueue.toArray( new PorticoMessage[tsoQueue.size()] );
-			for( int i = 0; i < tsoArray.length; i++ )
+			for( int i = 0; i < tsoContents.size(); i++ )
 			{
+				PorticoMessage message = tsoContents.get( i );
 				builder.append( "\t[" );
 				builder.append( i+1 );
 				builder.append( "] message=" );
-				builder.append( tsoArray[i].getClass().getCanonicalName() );
+				builder.append( message.getClass().getCanonicalName() );
 				builder.append( " @" );
-				builder.append( tsoArray[0].getTimestamp() );
+				builder.append( message.getTimestamp() );
 				builder.append( ", src=" );
-				builder.append( tsoArray[i].getSourceFederate() );
+				builder.append( message.getSourceFederate() );
 				builder.append( ", dst=" );
-				builder.append( tsoArray[i].getTargetFederate() );
+				builder.append( message.getTargetFederate() );
 				builder.append( "\n" );
 			}
 		}
-		
+
 		return builder.toString();
 	}
-	
+
+	/**
+	 * @return A snapshot of the RO messages, merged from both lanes back into arrival order
+	 */
+	private List<PorticoMessage> roContents()
+	{
+		List<Entry> entries = new ArrayList<Entry>( roMessages );
+		entries.addAll( roCallbacks );
+		entries.sort( (one,two) -> Long.compare(one.sequence,two.sequence) );
+
+		List<PorticoMessage> contents = new ArrayList<PorticoMessage>( entries.size() );
+		for( Entry entry : entries )
+			contents.add( entry.message );
+
+		return contents;
+	}
+
+	/**
+	 * @return A snapshot of the TSO messages, in the order they will be released
+	 */
+	private List<PorticoMessage> tsoContents()
+	{
+		lock.lock();
+		try
+		{
+			return tsoQueue.toList();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
 	private void logOffer( PorticoMessage message )
 	{
 		if( state.theLRC.getLogger().isTraceEnabled() )
@@ -611,7 +715,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 			state.theLRC.getLogger().trace( this );
 		}
 	}
-	
+
 	private void logPoll()
 	{
 		if( state.theLRC.getLogger().isTraceEnabled() )
@@ -630,12 +734,8 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 		{
 			lock.lock();
 
-			// only write the CONTENTS of the tsoQueue. Writing the whole queue means that
-    		// we have to write the Sorter, and because it's an inner class it attempts to
-    		// write the queue itself (which we don't want to do)
-    		ArrayList<PorticoMessage> tsoContents = new ArrayList<PorticoMessage>();
-    		tsoQueue.drainTo( tsoContents );
-    		output.writeObject( tsoContents );
+			// only write the CONTENTS of the tsoQueue, in release order
+    		output.writeObject( new ArrayList<PorticoMessage>(tsoQueue.toList()) );
 
     		// don't include any Save status messages from the RO-Queue when we write the
     		// contents to disk. this just causes problems on restore when federates think
@@ -658,7 +758,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	private BlockingQueue<PorticoMessage> filterSaveMessages()
 	{
 		BlockingQueue<PorticoMessage> newQueue = new LinkedBlockingQueue<PorticoMessage>();
-		for( PorticoMessage message : roQueue )
+		for( PorticoMessage message : roContents() )
 		{
 			if( message instanceof org.portico.lrc.services.saverestore.msg.SaveBegun ||
 				message instanceof org.portico.lrc.services.saverestore.msg.SaveComplete )
@@ -670,7 +770,7 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 				newQueue.add( message );
 			}
 		}
-		
+
 		return newQueue;
 	}
 
@@ -680,11 +780,21 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 		try
 		{
 			lock.lock();
-			
+
     		ArrayList<PorticoMessage> tsoContents = (ArrayList<PorticoMessage>)input.readObject();
-    		this.tsoQueue.addAll( tsoContents );
-    
-    		this.roQueue = (BlockingQueue<PorticoMessage>)input.readObject();
+    		for( PorticoMessage message : tsoContents )
+    			this.tsoQueue.offer( message );
+
+    		this.tsoSize = tsoQueue.size();
+
+    		// replace the RO contents with those from the stream
+    		this.roMessages.clear();
+    		this.roCallbacks.clear();
+    		this.roSize.set( 0 );
+    		BlockingQueue<PorticoMessage> roContents = (BlockingQueue<PorticoMessage>)input.readObject();
+    		for( PorticoMessage message : roContents )
+    			offerRO( message );
+
     		this.timeStatus = (TimeStatus)input.readObject();
 		}
 		finally
@@ -700,39 +810,18 @@ public class LRCMessageQueue //implements SaveRestoreTarget
 	////////////////////////////////// Private Inner Class //////////////////////////////////
 	/////////////////////////////////////////////////////////////////////////////////////////
 	/**
-	 * Comparator used for sorting TSO callback messages such that the callback queue remains
-	 * ordered. If the TSO message is a time advance grant (responds <code>true</code> to the
-	 * {@link PorticoMessage#isTimeAdvance()}), it is considered LESS than any other
-	 * message with the SAME timestamp. This way, it forces it to the bottom of the queue for
-	 * that timestamp.
+	 * An RO message along with the order it arrived in relative to all other RO messages, so
+	 * that the two RO lanes can be merged back together in arrival order.
 	 */
-	private class Sorter implements Comparator<PorticoMessage>
+	private static class Entry
 	{
-		public int compare( PorticoMessage o1, PorticoMessage o2 )
+		private final long sequence;
+		private final PorticoMessage message;
+
+		private Entry( long sequence, PorticoMessage message )
 		{
-			double time1 = o1.getTimestamp();
-			double time2 = o2.getTimestamp();
-			
-			if( time1 < time2 )
-			{
-				return -1;
-			}
-			else if( time1 > time2 )
-			{
-				return 1;
-			}
-			else
-			{
-				// they appear to be equal, which is fine as long as NEITHER of them
-				// is a time advance grant
-				if( o1.isTimeAdvance() )
-					return 1;
-				else if( o2.isTimeAdvance() )
-					return -1;
-				else
-					return 0;
-			}
+			this.sequence = sequence;
+			this.message = message;
 		}
 	}
 }
-
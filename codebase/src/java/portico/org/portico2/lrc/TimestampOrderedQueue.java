@@ -0,0 +1,252 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.lrc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.portico.utils.messaging.PorticoMessage;
+
+/**
+ * Holds timestamp-ordered messages for the {@link LRCMessageQueue}. Messages are kept in buckets,
+ * one for each distinct timestamp, with the buckets sorted by time. Inside a bucket, messages are
+ * kept in the order they arrived, so two messages with the same timestamp always come out in the
+ * order they went in. Time advance grants for a given time are kept to one side and only come
+ * out once all the other messages for that time have been released.
+ * <p/>
+ * Most federations have many messages sharing each timestamp (everything sent in a time step),
+ * so adding a message is normally just an append to the bucket that was last used. Only the
+ * first message at a new time pays for an insert into the sorted map, and the map only grows
+ * with the number of distinct timestamps, not the number of messages.
+ * <p/>
+ * This class is not thread safe. The {@link LRCMessageQueue} guards access to it.
+ */
+public class TimestampOrderedQueue
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private TreeMap<Double,Bucket> buckets;
+	private Bucket lastBucket; // bucket last offered to, saves a lookup for runs at the same time
+	private int size;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public TimestampOrderedQueue()
+	{
+		this.buckets = new TreeMap<>();
+		this.lastBucket = null;
+		this.size = 0;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	public void offer( PorticoMessage message )
+	{
+		double time = message.getTimestamp();
+		Bucket bucket = lastBucket;
+		if( bucket == null || bucket.time != time || bucket.isEmpty() )
+		{
+			bucket = buckets.get( time );
+			if( bucket == null )
+			{
+				bucket = new Bucket( time );
+				buckets.put( time, bucket );
+			}
+
+			this.lastBucket = bucket;
+		}
+
+		bucket.add( message );
+		++size;
+	}
+
+	/**
+	 * @return The message with the lowest timestamp without removing it, or null if empty
+	 */
+	public PorticoMessage peek()
+	{
+		Map.Entry<Double,Bucket> first = buckets.firstEntry();
+		return first == null ? null : first.getValue().peek();
+	}
+
+	/**
+	 * @return The message with the lowest timestamp, removing it, or null if empty
+	 */
+	public PorticoMessage poll()
+	{
+		Map.Entry<Double,Bucket> first = buckets.firstEntry();
+		if( first == null )
+			return null;
+
+		Bucket bucket = first.getValue();
+		PorticoMessage message = bucket.poll();
+		if( bucket.isEmpty() )
+			buckets.pollFirstEntry();
+
+		--size;
+		return message;
+	}
+
+	/**
+	 * Remove all messages with a timestamp less than or equal to the given time and add them,
+	 * in order, to the given list.
+	 */
+	public void drainTo( List<PorticoMessage> list, double maxTime )
+	{
+		Map.Entry<Double,Bucket> first = buckets.firstEntry();
+		while( first != null && first.getKey() <= maxTime )
+		{
+			Bucket bucket = first.getValue();
+			size -= bucket.size();
+			bucket.drainTo( list );
+			buckets.pollFirstEntry();
+			first = buckets.firstEntry();
+		}
+	}
+
+	/**
+	 * Remove all messages and add them, in order, to the given list.
+	 */
+	public void drainTo( List<PorticoMessage> list )
+	{
+		for( Bucket bucket : buckets.values() )
+			bucket.drainTo( list );
+
+		clear();
+	}
+
+	/**
+	 * @return A new list of all the messages in the queue, in the order they would be released
+	 */
+	public List<PorticoMessage> toList()
+	{
+		List<PorticoMessage> list = new ArrayList<>( size );
+		for( Bucket bucket : buckets.values() )
+			bucket.copyTo( list );
+
+		return list;
+	}
+
+	public void clear()
+	{
+		this.buckets.clear();
+		this.lastBucket = null;
+		this.size = 0;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////// Private Inner Class //////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * All the messages for a single timestamp. Time advance grants are held separately so that
+	 * they always sort behind every other message at the same time, no matter when they arrived.
+	 */
+	private static class Bucket
+	{
+		private final double time;
+		private ArrayDeque<PorticoMessage> messages;
+		private ArrayDeque<PorticoMessage> advances;
+
+		private Bucket( double time )
+		{
+			this.time = time;
+			this.messages = new ArrayDeque<>();
+			this.advances = null; // lazy loaded, most buckets won't have one
+		}
+
+		private void add( PorticoMessage message )
+		{
+			if( message.isTimeAdvance() )
+			{
+				if( advances == null )
+					advances = new ArrayDeque<>( 2 );
+
+				advances.add( message );
+			}
+			else
+			{
+				messages.add( message );
+			}
+		}
+
+		private PorticoMessage peek()
+		{
+			if( messages.isEmpty() == false )
+				return messages.peek();
+			else
+				return advances == null ? null : advances.peek();
+		}
+
+		private PorticoMessage poll()
+		{
+			if( messages.isEmpty() == false )
+				return messages.poll();
+			else
+				return advances == null ? null : advances.poll();
+		}
+
+		private void drainTo( List<PorticoMessage> list )
+		{
+			list.addAll( messages );
+			messages.clear();
+			if( advances != null )
+			{
+				list.addAll( advances );
+				advances.clear();
+			}
+		}
+
+		private void copyTo( List<PorticoMessage> list )
+		{
+			list.addAll( messages );
+			if( advances != null )
+				list.addAll( advances );
+		}
+
+		private boolean isEmpty()
+		{
+			return messages.isEmpty() && (advances == null || advances.isEmpty());
+		}
+
+		private int size()
+		{
+			return messages.size() + (advances == null ? 0 : advances.size());
+		}
+	}
+}
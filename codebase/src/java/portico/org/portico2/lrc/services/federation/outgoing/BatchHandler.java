@@ -0,0 +1,195 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.lrc.services.federation.outgoing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.portico.lrc.compat.JConfigurationException;
+import org.portico.lrc.compat.JException;
+import org.portico.lrc.compat.JRTIinternalError;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.messaging.IMessageHandler;
+import org.portico2.common.messaging.MessageContext;
+import org.portico2.common.messaging.ResponseMessage;
+import org.portico2.common.services.federation.msg.Batch;
+import org.portico2.lrc.IBatchableHandler;
+import org.portico2.lrc.LRCMessageHandler;
+
+/**
+ * Sends a group of requests to the RTI in as few round trips as possible. Each request is given
+ * to the handler that would normally process it. If that handler is an {@link IBatchableHandler}
+ * it is asked to prepare the request, and the request is then held back to go out with the rest
+ * in a single {@link Batch}. Anything else is processed as normal, on its own, once everything
+ * held back ahead of it has been sent so that the order the requests were given in is kept.
+ * <p/>
+ * The success result is a list with one {@link ResponseMessage} for each request in the batch,
+ * in the same order. One request failing does not stop the others.
+ */
+public class BatchHandler extends LRCMessageHandler
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@Override
+	public void configure( Map<String,Object> properties ) throws JConfigurationException
+	{
+		super.configure( properties );
+	}
+
+	@Override
+	public void process( MessageContext context ) throws JException
+	{
+		Batch batch = context.getRequest( Batch.class, this );
+		lrcState.checkJoined();
+
+		if( logger.isDebugEnabled() )
+			logger.debug( "ATTEMPT Send batch of ["+batch.size()+"] requests" );
+
+		List<MessageContext> items = new ArrayList<>( batch.size() );
+		List<MessageContext> pending = new ArrayList<>();
+		for( PorticoMessage request : batch.getRequests() )
+		{
+			request.setSourceFederate( lrcState.getFederateHandle() );
+			request.setTargetFederation( lrcState.getFederationHandle() );
+			MessageContext item = new MessageContext( request );
+			items.add( item );
+
+			try
+			{
+				IMessageHandler handler = lrc.getOutgoingSink().getHandler( request.getType() );
+				if( handler instanceof IBatchableHandler )
+				{
+					// Some requests depend on earlier ones having been applied (registering an
+					// instance of a class published earlier in the batch). If the checks fail
+					// and we have requests held back, send those and then try once more.
+					IBatchableHandler batchable = (IBatchableHandler)handler;
+					boolean send;
+					try
+					{
+						send = batchable.prepare( item );
+					}
+					catch( JException je )
+					{
+						if( pending.isEmpty() )
+							throw je;
+
+						flush( pending );
+						send = batchable.prepare( item );
+					}
+
+					if( send )
+						pending.add( item );
+				}
+				else
+				{
+					flush( pending );
+					lrc.getOutgoingSink().process( item );
+				}
+			}
+			catch( Exception e )
+			{
+				item.error( e );
+			}
+		}
+
+		flush( pending );
+
+		ArrayList<ResponseMessage> responses = new ArrayList<>( items.size() );
+		for( MessageContext item : items )
+		{
+			if( item.hasResponse() == false )
+				item.error( new JRTIinternalError("No response for batched request") );
+
+			responses.add( item.getResponse() );
+		}
+
+		context.success( responses );
+
+		if( logger.isDebugEnabled() )
+			logger.debug( "SUCCESS Sent batch of ["+batch.size()+"] requests" );
+	}
+
+	/**
+	 * Send all the given (prepared) requests to the RTI, hand each its response and let its
+	 * handler complete it. The list is empty when this returns.
+	 */
+	@SuppressWarnings("unchecked")
+	private void flush( List<MessageContext> pending )
+	{
+		if( pending.isEmpty() )
+			return;
+
+		if( pending.size() == 1 )
+		{
+			// not worth wrapping a single request up
+			connection.sendControlRequest( pending.get(0) );
+		}
+		else
+		{
+			Batch batch = fill( new Batch() );
+			for( MessageContext item : pending )
+				batch.addRequest( item.getRequest() );
+
+			MessageContext context = new MessageContext( batch );
+			connection.sendControlRequest( context );
+
+			List<ResponseMessage> responses = null;
+			if( context.isSuccessResponse() )
+				responses = (List<ResponseMessage>)context.getSuccessResult();
+
+			for( int i = 0; i < pending.size(); i++ )
+			{
+				// if the batch as a whole failed, every request in it did
+				if( responses == null || i >= responses.size() )
+					pending.get(i).setResponse( context.getResponse() );
+				else
+					pending.get(i).setResponse( responses.get(i) );
+			}
+		}
+
+		for( MessageContext item : pending )
+		{
+			try
+			{
+				IMessageHandler handler = lrc.getOutgoingSink().getHandler( item.getRequestType() );
+				((IBatchableHandler)handler).complete( item );
+			}
+			catch( Exception e )
+			{
+				item.error( e );
+			}
+		}
+
+		pending.clear();
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -22,9 +22,8 @@ import java.util.Map;
 import org.portico.lrc.compat.JConfigurationException;
 import org.portico.lrc.compat.JException;
 import org.portico.lrc.compat.JRTIinternalError;
-import org.portico.lrc.model.ModelMerger;
 import org.portico.lrc.model.ObjectModel;
-import org.portico.utils.fom.FomParser;
+import org.portico.utils.fom.FomCache;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.services.federation.msg.CreateFederation;
 import org.portico2.lrc.LRCMessageHandler;
@@ -62,28 +61,20 @@ public class CreateFederationHandler extends LRCMessageHandler
 		if( request.getFederationName() == null )
 			throw new JRTIinternalError( "Can't create a federation with null name" );
 		
-		// try and parse each of the fed files that we have
-		List<ObjectModel> foms = new ArrayList<ObjectModel>();
-		List<FomModule> modules = new ArrayList<FomModule>();
-		for( URL module : request.getFomModuleLocations() )
-		{
-			foms.add( FomParser.parse(module) );
-			modules.add( new FomModule(module) );
-		}
-		
 		// -- NOT DONE ANY MORE --
 		// Used to be important, but we will manually insert the MOM with handles we can control
 		// check to make sure we have the standard MIM as well - if not, load it
 		// validateStandardMimPresent( foms );
 
-		// merge the modules together
-		ObjectModel combinedFOM = ModelMerger.merge( foms );
+		// parse and merge the modules, insert the MOM and link up all the datatypes, or pull
+		// the finished model out of the FOM cache if we've seen these modules before
+		List<URL> locations = request.getFomModuleLocations();
+		ObjectModel combinedFOM = FomCache.loadMergedModel( locations );
 		
-		// Now we have a single .. super model (which may include the MIM) we can post-process.
-		// Ditch the MIM if it is present and then re-insert with specific handles so that we can
-		// look up MOM handles without using names (thus support cross spec-version naming schemes).
-		ObjectModel.mommify( combinedFOM );
-		ObjectModel.resolveSymbols( combinedFOM ); 
+		// grab the raw content of each of the fed files as well
+		List<FomModule> modules = new ArrayList<FomModule>();
+		for( URL module : locations )
+			modules.add( new FomModule(module) );
 		
 		// we have our grand unified FOM!
 		request.setModel( combinedFOM, modules );
@@ -22,7 +22,7 @@ import org.portico.lrc.compat.JException;
 import org.portico.lrc.compat.JFederateAlreadyExecutionMember;
 import org.portico.lrc.compat.JFederationExecutionDoesNotExist;
 import org.portico.lrc.compat.JRTIinternalError;
-import org.portico.utils.fom.FomParser;
+import org.portico.utils.fom.FomCache;
 import org.portico2.common.PorticoConstants;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.services.federation.msg.JoinFederation;
@@ -90,7 +90,7 @@ public class JoinFederationHandler extends LRCMessageHandler
 		if( request.getFomModuleLocations().size() > 0 )
 		{
 			for( URL fedLocation : request.getFomModuleLocations() )
-				request.addJoinModule( fedLocation, FomParser.parse(fedLocation) );
+				request.addJoinModule( fedLocation, FomCache.loadModule(fedLocation) );
 			
 			// let people know what happened
 			logger.debug( "Parsed ["+request.getParsedJoinModules().size()+"] additional FOM modules" );
@@ -25,10 +25,11 @@ import org.portico.lrc.compat.JRTIinternalError;
 import org.portico.lrc.model.OCMetadata;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.services.object.msg.RegisterObject;
+import org.portico2.lrc.IBatchableHandler;
 import org.portico2.lrc.LRCMessageHandler;
 import org.portico2.lrc.services.object.data.LOCInstance;
 
-public class RegisterObjectHandler extends LRCMessageHandler
+public class RegisterObjectHandler extends LRCMessageHandler implements IBatchableHandler
 {
 	//----------------------------------------------------------
 	//                    STATIC VARIABLES
@@ -53,6 +54,16 @@ public class RegisterObjectHandler extends LRCMessageHandler
 
 	@Override
 	public void process( MessageContext context ) throws JException
+	{
+		if( prepare(context) )
+		{
+			connection.sendControlRequest( context );
+			complete( context );
+		}
+	}
+
+	@Override
+	public boolean prepare( MessageContext context ) throws JException
 	{
 		// basic validity checks
 		lrcState.checkJoined();
@@ -72,11 +83,19 @@ public class RegisterObjectHandler extends LRCMessageHandler
 		}
 
 		// make sure the object class exists AND that we are publishing it
-		OCMetadata objectClass = checkPublished( classHandle );
+		checkPublished( classHandle );
 
 		// Send the request to the RTI for processing
-		connection.sendControlRequest( context );
-		
+		return true;
+	}
+
+	@Override
+	public void complete( MessageContext context ) throws JException
+	{
+		RegisterObject request = context.getRequest( RegisterObject.class, this );
+		int classHandle = request.getClassHandle();
+		OCMetadata objectClass = lrcState.getFOM().getObjectClass( classHandle );
+
 		// Check to see if we got an error and then bug out if we did
 		if( context.isErrorResponse() )
 			throw context.getErrorResponseException();
@@ -93,12 +93,11 @@ public class RequestClassUpdateHandler extends LRCMessageHandler
 //		if( request.usesDDM() && regions.getRegion(regionToken) == null )
 //			throw new JRegionNotKnown( "token: " + regionToken );
 
-		// Send the request to the RTI
-		connection.sendControlRequest( context );
-
-		// Check for error
-		if( context.isErrorResponse() )
-			throw context.getErrorResponseException();
+		// Send the request to the RTI. We have already validated everything the RTI would, so
+		// don't hold the federate up waiting on the answer. It only needs to be told about a
+		// failure, which is logged when the response turns up.
+		connection.sendControlRequestAsync( new MessageContext(request) )
+		           .thenAccept( result -> logIfError(result,"class "+ocMoniker(classHandle)) );
 		
 		context.success();
 		if( logger.isInfoEnabled() )
@@ -111,6 +110,15 @@ public class RequestClassUpdateHandler extends LRCMessageHandler
 		}
 	}
 
+	private void logIfError( MessageContext result, String target )
+	{
+		if( result.isErrorResponse() )
+		{
+			JException exception = result.getErrorResponseException();
+			logger.error( "FAILURE Request update for "+target+": "+exception.getMessage(), exception );
+		}
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
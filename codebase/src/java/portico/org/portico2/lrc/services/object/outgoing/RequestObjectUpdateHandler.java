@@ -98,11 +98,11 @@ public class RequestObjectUpdateHandler extends LRCMessageHandler
 		//
 		// send to the RTI for processing
 		//
-		connection.sendControlRequest( context );
-		
-		// check for error
-		if( context.isErrorResponse() )
-			throw context.getErrorResponseException();
+		// We have already validated everything the RTI would, so don't hold the federate up
+		// waiting on the answer. It only needs to be told about a failure, which is logged
+		// when the response turns up.
+		connection.sendControlRequestAsync( new MessageContext(request) )
+		           .thenAccept( result -> logIfError(result,"object "+objectMoniker(objectHandle)) );
 		
 		context.success();
 		if( logger.isInfoEnabled() )
@@ -112,6 +112,15 @@ public class RequestObjectUpdateHandler extends LRCMessageHandler
 		}
 	}
 
+	private void logIfError( MessageContext result, String target )
+	{
+		if( result.isErrorResponse() )
+		{
+			JException exception = result.getErrorResponseException();
+			logger.error( "FAILURE Request update for "+target+": "+exception.getMessage(), exception );
+		}
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
@@ -26,6 +26,7 @@ import org.portico.lrc.compat.JInteractionParameterNotDefined;
 import org.portico.lrc.compat.JInvalidRegionContext;
 import org.portico.lrc.compat.JRegionNotKnown;
 import org.portico.lrc.model.ICMetadata;
+import org.portico.lrc.model.Transport;
 import org.portico.lrc.model.RegionInstance;
 import org.portico.lrc.model.Space;
 import org.portico2.common.messaging.MessageContext;
@@ -92,8 +93,15 @@ public class SendInteractionHandler extends LRCMessageHandler
 		if( request.usesDDM() )
 			validateRegion( interactionClass, regionToken );
 		
-		// everything is OK here, broadcast out the update
-		connection.sendDataMessage( request );
+		// everything is OK here, broadcast out the update. Receive order interactions the FOM
+		// declares as best effort don't need to queue behind reliable traffic
+		if( request.isTimestamped() == false &&
+			interactionClass.getTransport() == Transport.BEST_EFFORT &&
+			connection.hasBestEffortChannel() )
+			connection.sendBestEffortDataMessage( request );
+		else
+			connection.sendDataMessage( request );
+
 		context.success();
 
 		if( logger.isInfoEnabled() )
@@ -22,6 +22,9 @@ import org.portico.lrc.compat.JAttributeNotOwned;
 import org.portico.lrc.compat.JConfigurationException;
 import org.portico.lrc.compat.JException;
 import org.portico.lrc.compat.JObjectNotKnown;
+import org.portico.lrc.model.ACMetadata;
+import org.portico.lrc.model.OCMetadata;
+import org.portico.lrc.model.Transport;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.services.object.msg.UpdateAttributes;
 import org.portico2.lrc.LRCMessageHandler;
@@ -102,8 +105,10 @@ public class UpdateAttributesHandler extends LRCMessageHandler
 			}
 		}
 
-		// everything is OK here, broadcast out the update
-		connection.sendDataMessage( request );
+		// everything is OK here, broadcast out the update. record the registered class
+		// so that it can go in the header for routing/filtering
+		request.setObjectClass( instance.getRegisteredClassHandle() );
+		send( request, instance );
 		context.success();
 		
 		if( logger.isInfoEnabled() )
@@ -116,6 +121,51 @@ public class UpdateAttributesHandler extends LRCMessageHandler
 		}
 	}
 
+	/**
+	 * Send the update out. Any attributes that the FOM declares as best effort are split out into
+	 * their own update and sent best effort, so they don't queue behind reliable traffic. Updates
+	 * with a timestamp are always sent reliably, as TSO delivery relies on it. If there is no
+	 * best effort channel running, everything goes reliably and the update is sent as is.
+	 */
+	private void send( UpdateAttributes request, LOCInstance instance ) throws JException
+	{
+		if( request.isTimestamped() || connection.hasBestEffortChannel() == false )
+		{
+			connection.sendDataMessage( request );
+			return;
+		}
+
+		// split the attributes by transport type
+		OCMetadata objectClass = instance.getRegisteredType();
+		HashMap<Integer,byte[]> reliable = new HashMap<>();
+		HashMap<Integer,byte[]> bestEffort = new HashMap<>();
+		for( Map.Entry<Integer,byte[]> entry : request.getAttributes().entrySet() )
+		{
+			ACMetadata attribute = objectClass.getAttribute( entry.getKey() );
+			if( attribute != null && attribute.getTransport() == Transport.BEST_EFFORT )
+				bestEffort.put( entry.getKey(), entry.getValue() );
+			else
+				reliable.put( entry.getKey(), entry.getValue() );
+		}
+
+		if( bestEffort.isEmpty() )
+		{
+			connection.sendDataMessage( request );
+		}
+		else if( reliable.isEmpty() )
+		{
+			connection.sendBestEffortDataMessage( request );
+		}
+		else
+		{
+			UpdateAttributes bestEffortUpdate = request.clone( UpdateAttributes.class );
+			bestEffortUpdate.setAttributes( bestEffort );
+			request.setAttributes( reliable );
+			connection.sendDataMessage( request );
+			connection.sendBestEffortDataMessage( bestEffortUpdate );
+		}
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
@@ -20,9 +20,10 @@ import org.portico.lrc.compat.JConfigurationException;
 import org.portico.lrc.compat.JException;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.services.pubsub.msg.PublishInteractionClass;
+import org.portico2.lrc.IBatchableHandler;
 import org.portico2.lrc.LRCMessageHandler;
 
-public class PublishInteractionClassHandler extends LRCMessageHandler
+public class PublishInteractionClassHandler extends LRCMessageHandler implements IBatchableHandler
 {
 	//----------------------------------------------------------
 	//                    STATIC VARIABLES
@@ -47,6 +48,16 @@ public class PublishInteractionClassHandler extends LRCMessageHandler
 
 	@Override
 	public void process( MessageContext context ) throws JException
+	{
+		if( prepare(context) )
+		{
+			connection.sendControlRequest( context );
+			complete( context );
+		}
+	}
+
+	@Override
+	public boolean prepare( MessageContext context ) throws JException
 	{
 		// basic validity checks
 		lrcState.checkJoined();
@@ -60,8 +71,13 @@ public class PublishInteractionClassHandler extends LRCMessageHandler
 			logger.debug( "ATTEMPT Publish interaction class [" +icMoniker(classHandle)+ "]" );
 		
 		// just send it on and see what the RTI says
-		connection.sendControlRequest( context );
-		
+		return true;
+	}
+
+	@Override
+	public void complete( MessageContext context ) throws JException
+	{
+		int classHandle = context.getRequest( PublishInteractionClass.class, this ).getClassHandle();
 		if( context.isSuccessResponse() )
 		{
 			// record the publication
@@ -22,9 +22,10 @@ import org.portico.lrc.compat.JException;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.services.pubsub.msg.PublishObjectClass;
 import org.portico2.common.services.pubsub.msg.UnpublishObjectClass;
+import org.portico2.lrc.IBatchableHandler;
 import org.portico2.lrc.LRCMessageHandler;
 
-public class PublishObjectClassHandler extends LRCMessageHandler
+public class PublishObjectClassHandler extends LRCMessageHandler implements IBatchableHandler
 {
 	//----------------------------------------------------------
 	//                    STATIC VARIABLES
@@ -49,6 +50,16 @@ public class PublishObjectClassHandler extends LRCMessageHandler
 
 	@Override
 	public void process( MessageContext context ) throws JException
+	{
+		if( prepare(context) )
+		{
+			connection.sendControlRequest( context );
+			complete( context );
+		}
+	}
+
+	@Override
+	public boolean prepare( MessageContext context ) throws JException
 	{
 		// basic validity checks
 		lrcState.checkJoined();
@@ -77,7 +88,7 @@ public class PublishObjectClassHandler extends LRCMessageHandler
 			UnpublishObjectClass unpublish = fill( new UnpublishObjectClass(classHandle) );
 			context.setRequest( unpublish );
 			lrc.getOutgoingSink().process( context );
-			return;
+			return false;
 		}
 		
 		////////////////////////////////////////////////////////////////////
@@ -96,8 +107,15 @@ public class PublishObjectClassHandler extends LRCMessageHandler
 		}                                                                 //
 		////////////////////////////////////////////////////////////////////
 
-		connection.sendControlRequest( context );
-		
+		return true;
+	}
+
+	@Override
+	public void complete( MessageContext context ) throws JException
+	{
+		PublishObjectClass request = context.getRequest( PublishObjectClass.class, this );
+		int classHandle = request.getClassHandle();
+		Set<Integer> attributes = request.getAttributes();
 		if( context.isSuccessResponse() )
 		{
 			// record the publication
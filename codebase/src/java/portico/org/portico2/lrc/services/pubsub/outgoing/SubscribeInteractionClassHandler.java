@@ -20,9 +20,10 @@ import org.portico.lrc.compat.JConfigurationException;
 import org.portico.lrc.compat.JException;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.services.pubsub.msg.SubscribeInteractionClass;
+import org.portico2.lrc.IBatchableHandler;
 import org.portico2.lrc.LRCMessageHandler;
 
-public class SubscribeInteractionClassHandler extends LRCMessageHandler
+public class SubscribeInteractionClassHandler extends LRCMessageHandler implements IBatchableHandler
 {
 	//----------------------------------------------------------
 	//                    STATIC VARIABLES
@@ -47,6 +48,16 @@ public class SubscribeInteractionClassHandler extends LRCMessageHandler
 
 	@Override
 	public void process( MessageContext context ) throws JException
+	{
+		if( prepare(context) )
+		{
+			connection.sendControlRequest( context );
+			complete( context );
+		}
+	}
+
+	@Override
+	public boolean prepare( MessageContext context ) throws JException
 	{
 		// basic validity checks
 		lrcState.checkJoined();
@@ -64,8 +75,15 @@ public class SubscribeInteractionClassHandler extends LRCMessageHandler
 			              request.usesDdm() ? "(region: "+regionToken+")" : "" );
 		}
 		
-		connection.sendControlRequest( context );
-		
+		return true;
+	}
+
+	@Override
+	public void complete( MessageContext context ) throws JException
+	{
+		SubscribeInteractionClass request = context.getRequest( SubscribeInteractionClass.class, this );
+		int classHandle = request.getClassHandle();
+		int regionToken = request.getRegionToken();
 		if( context.isSuccessResponse() )
 		{
 			// Record the subscription
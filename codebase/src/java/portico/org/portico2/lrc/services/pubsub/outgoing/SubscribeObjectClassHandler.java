@@ -23,9 +23,10 @@ import org.portico.lrc.compat.JObjectClassNotSubscribed;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.services.pubsub.msg.SubscribeObjectClass;
 import org.portico2.common.services.pubsub.msg.UnsubscribeObjectClass;
+import org.portico2.lrc.IBatchableHandler;
 import org.portico2.lrc.LRCMessageHandler;
 
-public class SubscribeObjectClassHandler extends LRCMessageHandler
+public class SubscribeObjectClassHandler extends LRCMessageHandler implements IBatchableHandler
 {
 	//----------------------------------------------------------
 	//                    STATIC VARIABLES
@@ -50,6 +51,16 @@ public class SubscribeObjectClassHandler extends LRCMessageHandler
 
 	@Override
 	public void process( MessageContext context ) throws JException
+	{
+		if( prepare(context) )
+		{
+			connection.sendControlRequest( context );
+			complete( context );
+		}
+	}
+
+	@Override
+	public boolean prepare( MessageContext context ) throws JException
 	{
 		// basic validity checks
 		lrcState.checkJoined();
@@ -99,12 +110,21 @@ public class SubscribeObjectClassHandler extends LRCMessageHandler
 				context.success();
 			}
 			
-			return;
+			return false;
 		}
 
 		// Send it to the RTI for handling
-		connection.sendControlRequest( context );
-		
+		return true;
+	}
+
+	@Override
+	public void complete( MessageContext context ) throws JException
+	{
+		SubscribeObjectClass request = context.getRequest( SubscribeObjectClass.class, this );
+		int classHandle = request.getClassHandle();
+		Set<Integer> attributes = request.getAttributes();
+		int regionToken = request.getRegionToken();
+
 		// What happened!?
 		if( context.isSuccessResponse() )
 		{
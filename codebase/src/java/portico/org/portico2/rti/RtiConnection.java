@@ -25,6 +25,7 @@ import org.portico2.common.network.Connection.Host;
 import org.portico2.common.network.Connection.Status;
 import org.portico2.common.network.Header;
 import org.portico2.common.network.IApplicationReceiver;
+import org.portico2.common.network.Message;
 import org.portico2.common.network.configuration.ConnectionConfiguration;
 import org.portico2.common.network.transport.TransportType;
 import org.portico2.common.services.federation.msg.RtiProbe;
@@ -107,6 +108,25 @@ public class RtiConnection implements IApplicationReceiver
 		this.connection.sendDataMessage( message );
 	}
 
+	/**
+	 * Send a control message that doesn't need a response, such as one the RTI generates itself
+	 * for a federate (time advance grants, discoveries, ...). This does not block waiting on the
+	 * other side. See {@link Connection#sendNotification(PorticoMessage)}.
+	 */
+	public void sendNotification( PorticoMessage message ) throws JException
+	{
+		this.connection.sendNotification( message );
+	}
+
+	/**
+	 * Send an already serialized data message, without re-serializing it.
+	 * See {@link Connection#sendDataMessage(Message)}.
+	 */
+	public void sendDataMessage( Message message ) throws JException
+	{
+		this.connection.sendDataMessage( message );
+	}
+
 
 	///////////////////////////////////////////////////////////////////////////////////////
 	///  Message RECEIVING methods   //////////////////////////////////////////////////////
@@ -129,7 +149,7 @@ public class RtiConnection implements IApplicationReceiver
 	 * FIXME
 	 */
 	@Override
-	public void receiveDataMessage( PorticoMessage incoming ) throws JException
+	public void receiveDataMessage( Message incoming ) throws JException
 	{
 		rti.getInbox().receiveDataMessage( incoming, this );
 	}
@@ -26,6 +26,8 @@ import org.portico.lrc.model.ObjectModel;
 import org.portico.utils.messaging.PorticoMessage;
 import org.portico2.common.PorticoConstants;
 import org.portico2.common.messaging.MessageContext;
+import org.portico2.common.network.CallType;
+import org.portico2.common.network.Message;
 import org.portico2.common.services.federation.msg.CreateFederation;
 import org.portico2.common.services.federation.msg.DestroyFederation;
 import org.portico2.common.services.federation.msg.JoinFederation;
@@ -163,21 +165,38 @@ public class RtiInbox
 	 */
 	public void receiveDataMessage( PorticoMessage message, RtiConnection sender )
 		throws JRTIinternalError
+	{
+		receiveDataMessage( new Message(message,CallType.DataMessage,0), sender );
+	}
+
+	/**
+	 * Same as {@link #receiveDataMessage(PorticoMessage, RtiConnection)} except that the message
+	 * is still in its serialized form. Routing only needs information from the header (and the
+	 * codec prefix), so the message is not inflated here. The same buffer is then forwarded to
+	 * each of the other connections in the federation.
+	 * 
+	 * @param message The message that was received
+	 * @param sender  The connection from which the message was received
+	 * @throws JRTIinternalError If the target federation is not known
+	 */
+	public void receiveDataMessage( Message message, RtiConnection sender )
+		throws JRTIinternalError
 	{
 		// find the federation this message is for
-		Federation targetFederation = federationManager.getFederation( message.getTargetFederation() );
+		int federationHandle = message.getTargetFederation();
+		Federation targetFederation = federationManager.getFederation( federationHandle );
 		if( targetFederation == null )
 		{
 			throw new JRTIinternalError( "No federation with handle [%d] (msg=%s)",
-			                             message.getTargetFederation(),
-			                             message.getClass().getSimpleName() );
+			                             federationHandle,
+			                             message.getMessageType() );
 		}
 		
 		// Requesting federate must be a member of the target federation to submit federation 
 		// messages to it
-		int sourceFederate = message.getSourceFederate();
+		int sourceFederate = message.getHeader().getSourceFederate();
 		if( sourceFederate == PorticoConstants.RTI_HANDLE || 
-			targetFederation.containsFederate(message.getSourceFederate()) )
+			targetFederation.containsFederate(sourceFederate) )
 		{
 			targetFederation.queueDataMessage( message, sender );
 		}
@@ -141,7 +141,7 @@ public class MomInfo implements ICommand
 		paddedPrintln( console, "HLAlogicalTime:", time.currentTime );
 		paddedPrintln( console, "HLAlookahead:", time.lookahead );
 		paddedPrintln( console, "HLALBTS:", time.lbts );
-		//paddedPrintln( console, "HLAGALT:", );
+		paddedPrintln( console, "HLAGALT:", federation.getTimeManager().getGALT(federate.getFederateHandle()) );
 		//paddedPrintln( console, "HLALITS:", );
 		//paddedPrintln( console, "HLAROlength:", );
 		//paddedPrintln( console, "HLATSOlength:", );
@@ -15,14 +15,17 @@
 package org.portico2.rti.federation;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import javax.crypto.SecretKey;
 
@@ -32,20 +35,27 @@ import org.portico.impl.HLAVersion;
 import org.portico.lrc.compat.JConfigurationException;
 import org.portico.lrc.compat.JFederateNameAlreadyInUse;
 import org.portico.lrc.compat.JFederateNotExecutionMember;
+import org.portico.lrc.model.ICMetadata;
+import org.portico.lrc.model.OCMetadata;
 import org.portico.lrc.model.ObjectModel;
 import org.portico.utils.messaging.PorticoMessage;
 import org.portico2.common.PorticoConstants;
 import org.portico2.common.configuration.RID;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.messaging.MessageSink;
+import org.portico2.common.network.CallType;
+import org.portico2.common.network.Header;
+import org.portico2.common.network.Message;
 import org.portico2.common.services.ddm.data.RegionStore;
 import org.portico2.common.services.ownership.data.OwnershipManager;
 import org.portico2.common.services.pubsub.data.InterestManager;
+import org.portico2.common.services.pubsub.data.Subscribers;
 import org.portico2.rti.RTI;
 import org.portico2.rti.RtiConnection;
 import org.portico2.rti.services.RTIHandlerRegistry;
 import org.portico2.rti.services.mom.data.FomModule;
 import org.portico2.rti.services.mom.data.MomManager;
+import org.portico2.rti.services.object.data.AttributeValueCache;
 import org.portico2.rti.services.object.data.Repository;
 import org.portico2.rti.services.sync.data.SyncPointManager;
 import org.portico2.rti.services.time.data.TimeManager;
@@ -79,6 +89,7 @@ public class Federation
 	private AtomicInteger federateHandleCounter;
 	private Map<Integer,Federate> federates;
 	private Set<RtiConnection> federateConnections;
+	private Function<Subscribers<?>,Set<RtiConnection>> connectionsOf; // see getInterestedConnections()
 	
 	// Auth Settings //
 	public SecretKey federationKey;
@@ -97,6 +108,7 @@ public class Federation
 
 	// Instance Repository //
 	private Repository repository;
+	private AttributeValueCache valueCache; // null if disabled
 
 	// Time Management //
 	private TimeManager timeManager;
@@ -148,8 +160,9 @@ public class Federation
 		
 		// Federation Management //
 		this.federateHandleCounter = new AtomicInteger(0);
-		this.federates = new HashMap<>();
-		this.federateConnections = new HashSet<>();
+		this.federates = new ConcurrentHashMap<>();
+		this.federateConnections = ConcurrentHashMap.newKeySet(); // read by the outgoing processor
+		this.connectionsOf = this::getConnections;
 		
 		// Auth Settings //
 		this.federationKey = null; // must be manually set
@@ -172,6 +185,11 @@ public class Federation
 		
 		// Instance Repository //
 		this.repository = new Repository( regionStore );
+		if( PorticoConstants.isValueCacheEnabled() )
+		{
+			this.valueCache = new AttributeValueCache( PorticoConstants.getValueCacheSize(),
+			                                           PorticoConstants.getValueCacheMaxAge() );
+		}
 		
 		// Time Management //
 		this.timeManager = new TimeManager();
@@ -223,6 +241,15 @@ public class Federation
 		return this.repository;
 	}
 	
+	/**
+	 * @return The cache of last known attribute values, or <code>null</code> if the cache is
+	 *         not enabled (see {@link PorticoConstants#PROPERTY_RTI_VALUE_CACHE})
+	 */
+	public AttributeValueCache getValueCache()
+	{
+		return this.valueCache;
+	}
+	
 	public RegionStore getRegionStore()
 	{
 		return this.regionStore;
@@ -345,8 +372,9 @@ public class Federation
 			                                       federationName );
 		}
 
-		// Remove the federate from our store of federates
+		// Remove the federate from our store of federates, and from the subscriber routes
 		this.federates.remove( federate.getFederateHandle() );
+		this.interestManager.removeFederate( federate.getFederateHandle() );
 		
 		// Remove the connection this federate was using (unless another federate also using it)
 		RtiConnection connection = federate.getConnection();
@@ -451,6 +479,10 @@ public class Federation
 	 * federates are using it. As such, if we have 10 federates spread across 3 connections, this will
 	 * cause two broadcast requests to be sent.
 	 * <p/>
+	 * If the message header carries filtering information, it is only sent to the connections that
+	 * have at least one federate subscribed to the class (or one of its parents) and, for attribute
+	 * updates, to at least one of the attributes in it. See {@link #getInterestedConnections(Message)}.
+	 * <p/>
 	 * Also note, MESSAGES ARE NOT LOOPED BACK TO THE SENDER CONNECTION. If one connection is
 	 * multiplexing many, it must handle broadcast to those connections internally.
 	 * 
@@ -458,11 +490,31 @@ public class Federation
 	 * @param sender  The connection we received the message from
 	 */
 	public final void queueDataMessage( PorticoMessage message, RtiConnection sender )
+	{
+		queueDataMessage( new Message(message,CallType.DataMessage,0), sender );
+	}
+
+	/**
+	 * Same as {@link #queueDataMessage(PorticoMessage, RtiConnection)}, but for a message that is
+	 * already serialized. The message is only inflated if there is a handler in the incoming
+	 * sink that wants to see it (the MOM handlers, if the MOM is enabled). The same buffer is
+	 * passed to every connection, so it is serialized once no matter how many there are.
+	 * 
+	 * @param message The message to broadcast
+	 * @param sender  The connection we received the message from
+	 */
+	public final void queueDataMessage( Message message, RtiConnection sender )
 	{
 		// Reflect data message into the message sink so that the Mom Handlers can get a go at it
-		this.incomingSink.process( new MessageContext(message) );
-		
-		for( RtiConnection connection : federateConnections )
+		if( this.incomingSink.hasHandler(message.getMessageType()) )
+			this.incomingSink.process( new MessageContext(message.inflateAsPorticoMessage()) );
+
+		// Messages targeted at us are only for the sink (the RTI copy of a best effort message,
+		// which the other federates have already been sent over multicast)
+		if( message.getHeader().getTargetFederate() == PorticoConstants.RTI_HANDLE )
+			return;
+
+		for( RtiConnection connection : getInterestedConnections(message) )
 		{
 			if( connection == sender )
 				continue;
@@ -471,6 +523,90 @@ public class Federation
 		}
 	}
 
+	/**
+	 * Work out which connections should receive the given data message. If the header has filtering
+	 * information we find all the federates subscribed to the identified object or interaction class
+	 * (including subscriptions to any parent class) and return the set of connections they sit on.
+	 * If there is no filtering information, or the class isn't known, all the connections in the
+	 * federation are returned.
+	 * <p/>
+	 * Attribute updates are also filtered on the attributes in them. A federate that isn't subscribed
+	 * to any of the updated attributes is left out. Region level filtering is still done by the
+	 * receiving LRC.
+	 * <p/>
+	 * The class-level answer only depends on the subscribers, so the connection set is kept with the
+	 * {@link Subscribers} snapshot (see {@link Subscribers#getDerived(Function)}). We only build a
+	 * new set for an update if it actually leaves someone out. The returned set must not be modified.
+	 * 
+	 * @param message The data message being routed
+	 * @return The set of connections that have an interest in the message
+	 */
+	private Set<RtiConnection> getInterestedConnections( Message message )
+	{
+		Header header = message.getHeader();
+		if( header.isFiltering() == false )
+			return federateConnections;
+
+		Subscribers<?> subscribers = null;
+		int classHandle = header.getFilteringId();
+		if( header.isFilteringObjectClass() )
+		{
+			OCMetadata objectClass = fom.getObjectClass( classHandle );
+			if( objectClass != null )
+				subscribers = interestManager.getObjectSubscribers( objectClass );
+		}
+		else
+		{
+			ICMetadata interactionClass = fom.getInteractionClass( classHandle );
+			if( interactionClass != null )
+				subscribers = interestManager.getInteractionSubscribers( interactionClass );
+		}
+
+		if( subscribers == null )
+			return federateConnections;
+		else if( subscribers.isPartial() == false )
+			return subscribers.getDerived( connectionsOf );
+
+		int[] attributes = message.getAttributeHandles();
+		if( attributes == null )
+			return subscribers.getDerived( connectionsOf );
+
+		// only build a new set if there is at least one federate that doesn't want the update
+		int index = 0;
+		while( index < subscribers.size() && subscribers.isSubscribed(index,attributes) )
+			index++;
+
+		if( index == subscribers.size() )
+			return subscribers.getDerived( connectionsOf );
+
+		Set<RtiConnection> connections = new HashSet<>();
+		for( int i = 0; i < subscribers.size(); i++ )
+		{
+			Federate federate = federates.get( subscribers.getFederate(i) );
+			if( federate != null && subscribers.isSubscribed(i,attributes) )
+				connections.add( federate.getConnection() );
+		}
+
+		return connections;
+	}
+
+	/**
+	 * @return The connections of all the given subscribers, each only once. Built once per
+	 *         {@link Subscribers} snapshot, see {@link #getInterestedConnections(Message)}.
+	 */
+	private Set<RtiConnection> getConnections( Subscribers<?> subscribers )
+	{
+		Set<RtiConnection> connections = new HashSet<>();
+		for( int i = 0; i < subscribers.size(); i++ )
+		{
+			Federate federate = federates.get( subscribers.getFederate(i) );
+			if( federate != null )
+				connections.add( federate.getConnection() );
+		}
+
+		return Collections.unmodifiableSet( connections );
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
@@ -509,19 +645,19 @@ public class Federation
 			}
 		}
 
+		/**
+		 * Send the message to each connection that one of its target federates sits on. Messages
+		 * generated by the RTI never get a response from the LRC, so they go out as notifications.
+		 * Nothing blocks waiting on a connection, and a slow connection can't hold up the next message
+		 * to a different one.
+		 */
 		private void sendMessage( PorticoMessage message )
 		{
-			// FIXME - Do something smarter about only routing control messages to the connection
-			//         that a target federate resides in
-			MessageContext ctx = new MessageContext( message );
-			for( RtiConnection connection : federateConnections )
+			for( RtiConnection connection : getTargetConnections(message) )
 			{
 				try
 				{
-					connection.sendControlRequest( ctx );
-					if( ctx.isErrorResponse() && ctx.hasResponse() )
-						throw ctx.getErrorResponseException();
-					
+					connection.sendNotification( message );
 					if( logger.isTraceEnabled() )
 						logger.trace( "Passed message [%s] to connection [%s]", message.getType(), connection.getName() );
 				}
@@ -529,8 +665,42 @@ public class Federation
 				{
 					logger.warn( "Error sending message [%s] via connection [%s]",
 					             message.getType(), connection.getName(), e );
-				}				
+				}
 			}
 		}
+
+		/**
+		 * Work out which connections the given message has to go to. Broadcasts go to everyone.
+		 * Otherwise each target federate is mapped to the connection it is using. If a number
+		 * of targets share a connection, the message is only sent down it once. Targets that
+		 * are no longer in the federation (resigned while the message was queued) are skipped.
+		 */
+		private Collection<RtiConnection> getTargetConnections( PorticoMessage message )
+		{
+			int target = message.getTargetFederate();
+			if( target == PorticoConstants.TARGET_ALL_HANDLE )
+				return federateConnections;
+
+			if( target != PorticoConstants.TARGET_MANY_HANDLE )
+			{
+				Federate federate = federates.get( target );
+				if( federate != null )
+					return Collections.singletonList( federate.getConnection() );
+
+				logger.debug( "Dropping message [%s]: target federate [%d] not in federation",
+				              message.getType(), target );
+				return Collections.emptyList();
+			}
+
+			Set<RtiConnection> connections = new HashSet<>();
+			for( Integer handle : message.getMultipleTargets() )
+			{
+				Federate federate = federates.get( handle );
+				if( federate != null )
+					connections.add( federate.getConnection() );
+			}
+
+			return connections;
+		}
 	} // end of OutgoingMessageProcessor
 }
@@ -23,10 +23,12 @@ import org.portico2.common.messaging.IMessageHandler;
 import org.portico2.common.messaging.MessageSink;
 import org.portico2.common.messaging.MessageType;
 import org.portico2.rti.federation.Federation;
+import org.portico2.rti.services.federation.incoming.BatchHandler;
 import org.portico2.rti.services.federation.incoming.JoinFederationHandler;
 import org.portico2.rti.services.federation.incoming.ResignFederationHandler;
 import org.portico2.rti.services.mom.incoming.MomSendInteractionHandler;
 import org.portico2.rti.services.mom.incoming.MomUpdateAttributesHandler;
+import org.portico2.rti.services.object.incoming.CacheAttributeValuesHandler;
 import org.portico2.rti.services.object.incoming.DeleteObjectHandler;
 import org.portico2.rti.services.object.incoming.RegisterObjectHandler;
 import org.portico2.rti.services.object.incoming.RequestClassUpdateHandler;
@@ -97,6 +99,7 @@ public class RTIHandlerRegistry
 		MessageSink in = federation.getIncomingSink();
 		in.register( MessageType.JoinFederation,    new JoinFederationHandler() );
 		in.register( MessageType.ResignFederation,  new ResignFederationHandler() );
+		in.register( MessageType.Batch,             new BatchHandler() );
 		
 		// Synchronization Points
 		in.register( MessageType.RegisterSyncPoint, new RegisterSyncPointHandler() );
@@ -119,6 +122,10 @@ public class RTIHandlerRegistry
 		in.register( MessageType.RequestClassUpdate,     new RequestClassUpdateHandler() );
 		in.register( MessageType.ReserveObjectName,      new ReserveObjectNameHandler() );
 		
+		// Last known value cache -- fed by the updates passing through the RTI
+		if( federation.getValueCache() != null )
+			in.register( MessageType.UpdateAttributes,   new CacheAttributeValuesHandler() );
+		
 		// Time Management
 		in.register( MessageType.EnableTimeConstrained,  new EnableTimeConstrainedHandler() );
 		in.register( MessageType.DisableTimeConstrained, new DisableTimeConstrainedHandler() );
@@ -15,6 +15,8 @@
 package org.portico2.rti.services;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -32,6 +34,7 @@ import org.portico2.common.PorticoConstants;
 import org.portico2.common.messaging.IMessageHandler;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.services.ddm.data.RegionStore;
+import org.portico2.common.services.object.msg.UpdateAttributes;
 import org.portico2.common.services.ownership.data.OwnershipManager;
 import org.portico2.common.services.pubsub.data.InterestManager;
 import org.portico2.common.services.time.msg.TimeAdvanceRequest;
@@ -39,6 +42,9 @@ import org.portico2.rti.federation.Federate;
 import org.portico2.rti.federation.Federation;
 import org.portico2.rti.federation.FederationManager;
 import org.portico2.rti.services.mom.data.MomManager;
+import org.portico2.rti.services.object.data.AttributeValueCache;
+import org.portico2.rti.services.object.data.RACInstance;
+import org.portico2.rti.services.object.data.ROCInstance;
 import org.portico2.rti.services.object.data.Repository;
 import org.portico2.rti.services.sync.data.SyncPointManager;
 import org.portico2.rti.services.time.data.TimeManager;
@@ -59,6 +65,7 @@ public abstract class RTIMessageHandler implements IMessageHandler
 	protected SyncPointManager syncManager;
 	protected InterestManager  interests;
 	protected Repository       repository;
+	protected AttributeValueCache valueCache; // null if disabled
 	protected RegionStore      regionStore2;
 	protected TimeManager      timeManager;
 	protected OwnershipManager ownership;
@@ -97,6 +104,7 @@ public abstract class RTIMessageHandler implements IMessageHandler
 		this.syncManager   = federation.getSyncPointManager();
 		this.interests     = federation.getInterestManager();
 		this.repository    = federation.getRepository();
+		this.valueCache    = federation.getValueCache();
 		this.regionStore2  = federation.getRegionStore();
 		this.timeManager   = federation.getTimeManager();
 		this.ownership     = federation.getOwnershipManager();
@@ -259,6 +267,65 @@ public abstract class RTIMessageHandler implements IMessageHandler
 		//lrcState.getQueue().offer( new TimeAdvanceRequest() );
 	}
 
+	/////////////////////////////////////////////////////////////////////////////////////////
+	///  Value Cache Methods  ///////////////////////////////////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Answer as much of a request for an update of the given attributes as we can from the
+	 * {@link AttributeValueCache}, sending the cached values straight back to the federate that
+	 * asked for them. Attributes owned by the RTI (MOM) or by the requester itself are never
+	 * answered from the cache. If the cache is not enabled nothing is sent.
+	 * 
+	 * @param instance   The object the update was requested for
+	 * @param requested  The attributes the update was requested for
+	 * @param requester  The federate that asked for the update
+	 * @param tag        The tag to send the update with (may be null)
+	 * @return The attributes that could not be answered from the cache, and so still need to go
+	 *         to their owners
+	 */
+	protected Set<Integer> provideFromCache( ROCInstance instance,
+	                                         Set<Integer> requested,
+	                                         int requester,
+	                                         byte[] tag )
+	{
+		if( valueCache == null )
+			return requested;
+
+		Set<Integer> cacheable = new HashSet<>();
+		for( Integer attributeHandle : requested )
+		{
+			RACInstance attribute = instance.getAttribute( attributeHandle );
+			if( attribute == null )
+				continue; // leave it for the caller to report
+			
+			int owner = attribute.getOwner();
+			if( owner != PorticoConstants.RTI_HANDLE && owner != requester )
+				cacheable.add( attributeHandle );
+		}
+
+		HashMap<Integer,byte[]> values = valueCache.get( instance.getHandle(), cacheable );
+		if( values.isEmpty() )
+			return requested;
+
+		UpdateAttributes update = new UpdateAttributes( instance.getHandle(),
+		                                                tag == null ? new byte[0] : tag,
+		                                                values );
+		update.setObjectClass( instance.getRegisteredClassHandle() );
+		queueUnicast( update, requester );
+
+		if( logger.isDebugEnabled() )
+		{
+			logger.debug( "Provided attributes %s of object [%s] to federate [%s] from the value cache",
+			              acMoniker(values.keySet()),
+			              objectMoniker(instance.getHandle()),
+			              moniker(requester) );
+		}
+
+		Set<Integer> remaining = new HashSet<>( requested );
+		remaining.removeAll( values.keySet() );
+		return remaining;
+	}
+
 	/////////////////////////////////////////////////////////////////////////////////////////
 	///  Handle and Name Methods  ///////////////////////////////////////////////////////////
 	/////////////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,104 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.rti.services.federation.incoming;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.portico.lrc.compat.JConfigurationException;
+import org.portico.lrc.compat.JException;
+import org.portico.lrc.compat.JRTIinternalError;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.messaging.MessageContext;
+import org.portico2.common.messaging.MessageType;
+import org.portico2.common.messaging.ResponseMessage;
+import org.portico2.common.services.federation.msg.Batch;
+import org.portico2.rti.services.RTIMessageHandler;
+
+/**
+ * Unpacks a {@link Batch} and passes each request it holds through the federation's incoming
+ * sink in turn, exactly as if it had arrived on its own. The responses are collected and sent
+ * back as a list in one success response. If an individual request fails, its slot in the list
+ * holds the error and we carry on with the rest.
+ */
+public class BatchHandler extends RTIMessageHandler
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@Override
+	public void configure( Map<String,Object> properties ) throws JConfigurationException
+	{
+		super.configure( properties );
+	}
+
+	@Override
+	public void process( MessageContext context ) throws JException
+	{
+		Batch batch = context.getRequest( Batch.class, this );
+		
+		if( logger.isDebugEnabled() )
+		{
+			logger.debug( "ATTEMPT Process batch of [%d] requests from federate [%s]",
+			              batch.size(), moniker(batch.getSourceFederate()) );
+		}
+
+		ArrayList<ResponseMessage> responses = new ArrayList<>( batch.size() );
+		for( PorticoMessage request : batch.getRequests() )
+		{
+			// Requests act for the federate that sent the batch, nobody else
+			request.setSourceFederate( batch.getSourceFederate() );
+			request.setTargetFederation( batch.getTargetFederation() );
+
+			MessageContext item = new MessageContext( request );
+			try
+			{
+				if( request.getType() == MessageType.Batch || !request.getType().isFederationMessage() )
+					throw new JRTIinternalError( "Request type cannot be batched: "+request.getType() );
+
+				federation.getIncomingSink().process( item );
+				if( item.hasResponse() == false )
+					item.error( new JRTIinternalError("No response after passing to RTI") );
+			}
+			catch( Exception e )
+			{
+				item.error( e );
+			}
+
+			responses.add( item.getResponse() );
+		}
+
+		context.success( responses );
+		
+		if( logger.isDebugEnabled() )
+			logger.debug( "SUCCESS Processed batch of [%d] requests", batch.size() );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -178,6 +178,7 @@ public class MomFederate
 		                                                new byte[0],
 		                                                attributes );
 		update.setSourceFederate( PorticoConstants.RTI_HANDLE );
+		update.setObjectClass( federateObject.getRegisteredClassHandle() );
 		return update;
 	}
 	
@@ -282,7 +283,8 @@ public class MomFederate
 	
 	private byte[] getGALT( ACMetadata metadata )
 	{
-		return notYetSupported("HLAGALT");
+		IDatatype type = metadata.getDatatype();
+		return MomEncodingHelpers.encode( type, timeManager.getGALT(getFederateHandle()) );
 	}
 
 	private byte[] getROlength( ACMetadata metadata )
@@ -178,6 +178,7 @@ public class MomFederation
 		                                                new byte[0],
 		                                                attributes );
 		update.setSourceFederate( PorticoConstants.RTI_HANDLE );
+		update.setObjectClass( federationObject.getRegisteredClassHandle() );
 		return update;
 	}
 	
@@ -38,6 +38,7 @@ import org.portico2.common.services.mom.msg.SetExceptionReporting;
 import org.portico2.common.services.mom.msg.SetServiceReporting;
 import org.portico2.common.services.object.msg.SendInteraction;
 import org.portico2.common.services.pubsub.data.InterestManager;
+import org.portico2.common.services.pubsub.data.Subscribers;
 import org.portico2.rti.RtiConnection;
 import org.portico2.rti.federation.Federate;
 import org.portico2.rti.federation.FederateMetrics;
@@ -168,9 +169,10 @@ public class MomSendInteractionHandler extends RTIMessageHandler
 		
 		// Record metrics for all interaction receivers
 		InterestManager interests = federation.getInterestManager();
-		Set<Integer> subscribers = interests.getAllSubscribers( interactionClass );
-		for( int subscriber : subscribers )
+		Subscribers<ICMetadata> subscribers = interests.getInteractionSubscribers( interactionClass );
+		for( int i = 0; i < subscribers.size(); i++ )
 		{
+			int subscriber = subscribers.getFederate( i );
 			if( subscriber != sender )
 				momManager.interactionReceived( subscriber, interactionClass );
 		}
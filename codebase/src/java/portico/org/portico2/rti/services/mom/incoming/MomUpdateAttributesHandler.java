@@ -14,14 +14,14 @@
  */
 package org.portico2.rti.services.mom.incoming;
 
-import java.util.Set;
-
 import org.portico.lrc.compat.JException;
+import org.portico.lrc.model.OCMetadata;
 import org.portico.lrc.model.ObjectModel;
 import org.portico.utils.messaging.PorticoMessage;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.services.object.msg.UpdateAttributes;
 import org.portico2.common.services.pubsub.data.InterestManager;
+import org.portico2.common.services.pubsub.data.Subscribers;
 import org.portico2.rti.RtiConnection;
 import org.portico2.rti.federation.Federation;
 import org.portico2.rti.services.RTIMessageHandler;
@@ -65,9 +65,10 @@ public class MomUpdateAttributesHandler extends RTIMessageHandler
 		
 		// Log reflect metrics
 		InterestManager interests = federation.getInterestManager();
-		Set<Integer> subscribers = interests.getAllSubscribers( instance.getRegisteredType() );
-		for( int subscriber : subscribers )
+		Subscribers<OCMetadata> subscribers = interests.getObjectSubscribers( instance.getRegisteredType() );
+		for( int i = 0; i < subscribers.size(); i++ )
 		{
+			int subscriber = subscribers.getFederate( i );
 			if( subscriber == sendingFederate )
 				continue;
 			
@@ -0,0 +1,259 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.rti.services.object.data;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds the last value the RTI has seen sent for each attribute of each object instance in a
+ * federation. The RTI can use this to answer requests for attribute updates (and to give late
+ * subscribers the current state of the objects they discover) without going to the owners, who
+ * would otherwise each send a fresh update out to the whole federation.
+ * <p/>
+ * The cache has a memory budget. Objects are kept in the order they were last updated, and once
+ * the values held go over the budget the objects that have gone longest without an update are
+ * dropped. Values can also be given a maximum age, after which they are no longer handed out
+ * (the request has to go to the owner instead).
+ * <p/>
+ * This class is thread safe. Updates arrive on the data path while requests are answered from
+ * the control path.
+ */
+public class AttributeValueCache
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	/** Rough bookkeeping cost of each cached value over and above its bytes */
+	private static final int VALUE_OVERHEAD = 48;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private final long maxBytes;
+	private final long maxAgeNanos;  // 0 == never stale
+	private LinkedHashMap<Integer,CachedObject> objects; // in access (update) order
+	private long currentBytes;
+	private long evictions;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	/**
+	 * @param maxBytes    The most memory that the cached values can take up
+	 * @param maxAgeMillis How long a value can be handed out for after it was cached. 0 means
+	 *                    values never go stale
+	 */
+	public AttributeValueCache( long maxBytes, long maxAgeMillis )
+	{
+		this.maxBytes = maxBytes;
+		this.maxAgeNanos = maxAgeMillis * 1000000L;
+		this.objects = new LinkedHashMap<>( 256, 0.75f, true );
+		this.currentBytes = 0;
+		this.evictions = 0;
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Record the given values as the latest for the object. Any attribute not in the map keeps
+	 * the value it already had.
+	 */
+	public synchronized void put( int objectHandle, Map<Integer,byte[]> values )
+	{
+		if( values.isEmpty() )
+			return;
+
+		long now = System.nanoTime();
+		CachedObject object = objects.get( objectHandle );
+		if( object == null )
+		{
+			object = new CachedObject();
+			objects.put( objectHandle, object );
+		}
+
+		for( Map.Entry<Integer,byte[]> entry : values.entrySet() )
+		{
+			byte[] value = entry.getValue();
+			if( value == null )
+				continue;
+
+			CachedValue old = object.values.put( entry.getKey(), new CachedValue(value,now) );
+			if( old != null )
+				currentBytes -= sizeOf( old.value );
+
+			currentBytes += sizeOf( value );
+		}
+
+		evictIfNeeded();
+	}
+
+	/**
+	 * Get the fresh cached values for the given attributes of an object. Only those attributes
+	 * that have a fresh value are in the returned map, so check its size against what you asked
+	 * for if you need them all.
+	 * 
+	 * @return The fresh values we have, which may be none (never null)
+	 */
+	public synchronized HashMap<Integer,byte[]> get( int objectHandle, Set<Integer> attributes )
+	{
+		HashMap<Integer,byte[]> found = new HashMap<>();
+		CachedObject object = objects.get( objectHandle );
+		if( object == null )
+			return found;
+
+		long now = System.nanoTime();
+		for( Integer attributeHandle : attributes )
+		{
+			CachedValue cached = object.values.get( attributeHandle );
+			if( cached != null && isFresh(cached,now) )
+				found.put( attributeHandle, cached.value );
+		}
+
+		return found;
+	}
+
+	/**
+	 * @return All the fresh cached values for the object (never null)
+	 */
+	public synchronized HashMap<Integer,byte[]> getAll( int objectHandle )
+	{
+		CachedObject object = objects.get( objectHandle );
+		if( object == null )
+			return new HashMap<>();
+		else
+			return get( objectHandle, object.values.keySet() );
+	}
+
+	/**
+	 * Drop everything cached for the object. Call this when the object is deleted.
+	 */
+	public synchronized void remove( int objectHandle )
+	{
+		CachedObject object = objects.remove( objectHandle );
+		if( object != null )
+			currentBytes -= object.size();
+	}
+
+	/**
+	 * Drop the cached values for some of an object's attributes, so that requests for them go
+	 * to their owners until a new value can be cached.
+	 */
+	public synchronized void remove( int objectHandle, Set<Integer> attributes )
+	{
+		CachedObject object = objects.get( objectHandle );
+		if( object == null )
+			return;
+
+		for( Integer attributeHandle : attributes )
+		{
+			CachedValue old = object.values.remove( attributeHandle );
+			if( old != null )
+				currentBytes -= sizeOf( old.value );
+		}
+
+		if( object.values.isEmpty() )
+			objects.remove( objectHandle );
+	}
+
+	public synchronized void clear()
+	{
+		objects.clear();
+		currentBytes = 0;
+	}
+
+	private boolean isFresh( CachedValue cached, long now )
+	{
+		return maxAgeNanos == 0 || (now - cached.time) <= maxAgeNanos;
+	}
+
+	private void evictIfNeeded()
+	{
+		Iterator<CachedObject> iterator = objects.values().iterator();
+		while( currentBytes > maxBytes && iterator.hasNext() )
+		{
+			currentBytes -= iterator.next().size();
+			iterator.remove();
+			++evictions;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Accessors and Mutators   //////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	/** @return The number of objects that have at least one value cached */
+	public synchronized int getObjectCount()
+	{
+		return objects.size();
+	}
+
+	/** @return Roughly how much memory the cached values take up, in bytes */
+	public synchronized long getSize()
+	{
+		return currentBytes;
+	}
+
+	/** @return The number of objects that have been dropped to stay under the memory budget */
+	public synchronized long getEvictionCount()
+	{
+		return evictions;
+	}
+
+	public long getMaxSize()
+	{
+		return maxBytes;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	private static long sizeOf( byte[] value )
+	{
+		return value.length + VALUE_OVERHEAD;
+	}
+
+	/////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////// Private Inner Class //////////////////////////////////
+	/////////////////////////////////////////////////////////////////////////////////////////
+	private static class CachedObject
+	{
+		private HashMap<Integer,CachedValue> values = new HashMap<>();
+
+		private long size()
+		{
+			long size = 0;
+			for( CachedValue cached : values.values() )
+				size += sizeOf( cached.value );
+
+			return size;
+		}
+	}
+
+	private static class CachedValue
+	{
+		private final byte[] value;
+		private final long time;
+
+		private CachedValue( byte[] value, long time )
+		{
+			this.value = value;
+			this.time = time;
+		}
+	}
+}
@@ -241,6 +241,12 @@ public class ROCInstance implements Serializable
 			return false;
 	}
 
+	@Override
+	public int hashCode()
+	{
+		return this.handle;
+	}
+
 	////////////////////////////////////////////////////////////////////////////////////////
 	///  Discovery Management   ////////////////////////////////////////////////////////////
 	////////////////////////////////////////////////////////////////////////////////////////
@@ -14,7 +14,9 @@
  */
 package org.portico2.rti.services.object.data;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -43,6 +45,7 @@ public class Repository
 	private Map<Integer,ROCInstance> objectsByHandle;
 	private Map<String,ROCInstance>  objectsByName;
 	private Map<String,Integer>      reservedNames;
+	private Map<Integer,Set<ROCInstance>> objectsByClass; // keyed by registered class handle
 	
 	private RegionStore regionStore;
 
@@ -55,6 +58,7 @@ public class Repository
 		this.objectsByHandle = new HashMap<>();
 		this.objectsByName = new HashMap<>();
 		this.reservedNames = new HashMap<>();
+		this.objectsByClass = new HashMap<>();
 		
 		this.regionStore = regionStore;
 	}
@@ -119,7 +123,17 @@ public class Repository
 	{
 		ROCInstance removed = objectsByHandle.remove( instanceHandle );
 		if( removed != null )
+		{
 			objectsByName.remove( removed.getName() );
+			
+			Set<ROCInstance> classSet = objectsByClass.get( removed.getRegisteredClassHandle() );
+			if( classSet != null )
+			{
+				classSet.remove( removed );
+				if( classSet.isEmpty() )
+					objectsByClass.remove( removed.getRegisteredClassHandle() );
+			}
+		}
 		
 		return removed;
 	}
@@ -144,34 +158,45 @@ public class Repository
 
 	/**
 	 * @return A set of all the {@link ROCInstance} types in the repository that are explicitly
-	 *         registered with the given class handle (_NOT_ any parent of the type).
+	 *         registered with the given class handle (_NOT_ any parent of the type). The set is
+	 *         a copy and can be modified by the caller.
 	 */
-	public Set<ROCInstance> getAllInstances( int classHandle )
+	public synchronized Set<ROCInstance> getAllInstances( int classHandle )
 	{
-		HashSet<ROCInstance> objects = new HashSet<>();
-		for( ROCInstance instance : objectsByHandle.values() )
-		{
-			if( instance.getRegisteredClassHandle() == classHandle )
-				objects.add( instance );
-		}
-		
-		return objects;
+		Set<ROCInstance> classSet = objectsByClass.get( classHandle );
+		if( classSet == null )
+			return new HashSet<>();
+		else
+			return new HashSet<>( classSet );
 	}
 
 	/**
 	 * Returns a set of all {@link ROCInstance}s that are either explicitly of the given class,
-	 * or are "assignable" to it (that is, are a subclass of).
+	 * or are "assignable" to it (that is, are a subclass of). Rather than scanning every object
+	 * in the repository, this walks the class tree down from the given class and collects the
+	 * instances registered at each level, so the cost is in proportion to the size of the result
+	 * (plus the number of classes in the subtree).
 	 * 
 	 * @param initialClass Find all instances that are types (or subtypes) of this class
 	 * @return The set of all instances that are types (or subtypes) of the given class
 	 */
-	public Set<ROCInstance> getAllInstancesAssignableFrom( OCMetadata initialClass )
+	public synchronized Set<ROCInstance> getAllInstancesAssignableFrom( OCMetadata initialClass )
 	{
 		HashSet<ROCInstance> objects = new HashSet<>();
-		for( ROCInstance instance : objectsByHandle.values() )
+		if( objectsByClass.isEmpty() )
+			return objects;
+		
+		Deque<OCMetadata> pending = new ArrayDeque<>();
+		pending.push( initialClass );
+		while( pending.isEmpty() == false )
 		{
-			if( instance.getRegisteredType().isAssignableTo(initialClass) )
-				objects.add( instance );
+			OCMetadata current = pending.pop();
+			Set<ROCInstance> classSet = objectsByClass.get( current.getHandle() );
+			if( classSet != null )
+				objects.addAll( classSet );
+			
+			for( OCMetadata child : current.getChildTypes() )
+				pending.push( child );
 		}
 		
 		return objects;
@@ -230,6 +255,14 @@ public class Repository
 	{
 		this.objectsByHandle.put( instance.getHandle(), instance );
 		this.objectsByName.put( instance.getName(), instance );
+		
+		Set<ROCInstance> classSet = objectsByClass.get( instance.getRegisteredClassHandle() );
+		if( classSet == null )
+		{
+			classSet = new HashSet<>();
+			objectsByClass.put( instance.getRegisteredClassHandle(), classSet );
+		}
+		classSet.add( instance );
 	}
 
 	//----------------------------------------------------------
@@ -0,0 +1,79 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.rti.services.object.incoming;
+
+import java.util.Map;
+
+import org.portico.lrc.compat.JConfigurationException;
+import org.portico.lrc.compat.JException;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.messaging.MessageContext;
+import org.portico2.common.services.object.msg.UpdateAttributes;
+import org.portico2.rti.RtiConnection;
+import org.portico2.rti.federation.Federation;
+import org.portico2.rti.services.RTIMessageHandler;
+import org.portico2.rti.services.object.data.AttributeValueCache;
+
+/**
+ * Records the values in each {@link UpdateAttributes} that passes through the RTI in the
+ * federation's {@link AttributeValueCache}. Updates are reflected into the federation's message
+ * sink when {@link Federation#queueDataMessage(PorticoMessage, RtiConnection)} is called. This
+ * handler is only registered if the value cache is enabled.
+ * <p/>
+ * Timestamped updates are not cached. The RTI sees them as soon as they are sent, but federates
+ * only get them once their time advances far enough, so handing one out in answer to a request
+ * could give a federate a value from its future. Instead they knock out any value cached for
+ * the same attributes, and requests for those go to the owners until a receive order update
+ * comes along.
+ */
+public class CacheAttributeValuesHandler extends RTIMessageHandler
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@Override
+	public void configure( Map<String,Object> properties ) throws JConfigurationException
+	{
+		super.configure( properties );
+	}
+
+	@Override
+	public void process( MessageContext context ) throws JException
+	{
+		UpdateAttributes request = context.getRequest( UpdateAttributes.class, this );
+		int objectHandle = request.getObjectId();
+
+		if( request.isTimestamped() )
+			valueCache.remove( objectHandle, request.getAttributes().keySet() );
+		else if( repository.containsObject(objectHandle) )
+			valueCache.put( objectHandle, request.getAttributes() ); // ignore objects that are gone
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -95,6 +95,8 @@ public class DeleteObjectHandler extends RTIMessageHandler
 		
 		// remove the object
 		repository.deleteObject( objectHandle );
+		if( valueCache != null )
+			valueCache.remove( objectHandle );
 		context.success( objectHandle ); // handle needed for forwarder
 		
 		logMetrics( sourceFederate, instance );
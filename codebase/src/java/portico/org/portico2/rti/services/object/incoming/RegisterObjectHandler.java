@@ -14,6 +14,7 @@
  */
 package org.portico2.rti.services.object.incoming;
 
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -26,6 +27,7 @@ import org.portico.lrc.model.OCMetadata;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.services.object.msg.DiscoverObject;
 import org.portico2.common.services.object.msg.RegisterObject;
+import org.portico2.common.services.pubsub.data.Subscribers;
 import org.portico2.rti.services.RTIMessageHandler;
 import org.portico2.rti.services.object.data.ROCInstance;
 
@@ -111,21 +113,23 @@ public class RegisterObjectHandler extends RTIMessageHandler
 		//
 		// Step 3. Notify federates with a subscription interest
 		//
-		Map<Integer,OCMetadata> subscriptions = interests.getAllSubscribersWithTypes( objectClass );
-		for( Integer subscriberHandle : subscriptions.keySet() )
+		Subscribers<OCMetadata> subscriptions = interests.getObjectSubscribers( objectClass );
+		Set<Integer> targets = new HashSet<>();
+		for( int i = 0; i < subscriptions.size(); i++ )
 		{
-			OCMetadata discoveredAs = subscriptions.get( subscriberHandle );
-			newInstance.discover( subscriberHandle, discoveredAs );
+			int subscriberHandle = subscriptions.getFederate( i );
+			newInstance.discover( subscriberHandle, subscriptions.getType(i) );
 			
-			// Log discovery metrics
-			if( federateHandle != subscriberHandle)
-				momManager.objectDiscovered( subscriberHandle, newInstance );
+			// don't need to notify the one who created it
+			if( federateHandle != subscriberHandle )
+			{
+				targets.add( subscriberHandle );
+				momManager.objectDiscovered( subscriberHandle, newInstance ); // Log discovery metrics
+			}
 		}
 
 		DiscoverObject discover = fill( new DiscoverObject(newInstance), federateHandle );
-		subscriptions.remove( federateHandle ); // don't need to notify the one who created it
-		
-		super.queueManycast( discover, subscriptions.keySet() );
+		super.queueManycast( discover, targets );
 	}
 
 	/**
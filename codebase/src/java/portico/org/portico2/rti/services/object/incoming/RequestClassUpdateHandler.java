@@ -79,22 +79,28 @@ public class RequestClassUpdateHandler extends RTIMessageHandler
 		// get the OCMetadata instance representing the class and start to process
 		// the request, recursing up the inheritance hierarchy
 		OCMetadata clazz = fom().getObjectClass( classHandle );
-		check( clazz, requested, region );
+		check( clazz, requested, region, notice );
 		context.success();
 	}
 
 	// need this in a separate method so we can call it recursively
-	private void check( OCMetadata type, Set<Integer> requested, RegionInstance region )
+	private void check( OCMetadata type,
+	                    Set<Integer> requested,
+	                    RegionInstance region,
+	                    RequestClassUpdate notice )
 	{
 		// For the class (and each of its children) we have to
 		//   - Locate all instances of the type
 		//   - Issue an update request for the object with each of the handles that we own
-		processClass( type.getHandle(), requested, region );
+		processClass( type.getHandle(), requested, region, notice );
 		for( OCMetadata child : type.getChildTypes() )
-			check( child, requested, region );
+			check( child, requested, region, notice );
 	}
 
-	private void processClass( int classHandle, Set<Integer> requested, RegionInstance region )
+	private void processClass( int classHandle,
+	                           Set<Integer> requested,
+	                           RegionInstance region,
+	                           RequestClassUpdate notice )
 	{
 		// Find all the objects of this class
 		Set<ROCInstance> objects = repository.getAllInstances( classHandle );
@@ -105,7 +111,18 @@ public class RequestClassUpdateHandler extends RTIMessageHandler
 			// Somewhere to associate attributes with owners
 			Map<Integer,Set<Integer>> ownermap = new HashMap<>();
 
-			for( int attributeHandle : requested )
+			// Answer what we can from the value cache. The cache doesn't know which regions the
+			// values were sent with, so region based requests always go to the owners
+			Set<Integer> remaining = requested;
+			if( region == null )
+			{
+				remaining = provideFromCache( object,
+				                              requested,
+				                              notice.getSourceFederate(),
+				                              notice.getTag() );
+			}
+
+			for( int attributeHandle : remaining )
 			{
 				// Get the attribute information for the requested handle
 				RACInstance attribute = object.getAttribute( attributeHandle );
@@ -122,7 +139,11 @@ public class RequestClassUpdateHandler extends RTIMessageHandler
 					}
 				}
 				
+				// Skip unowned attributes, and don't ask the requester to provide values to itself
 				int federateHandle = attribute.getOwner();
+				if( attribute.isUnowned() || federateHandle == notice.getSourceFederate() )
+					continue;
+
 				if( ownermap.containsKey(federateHandle) == false )
 					ownermap.put( federateHandle, new HashSet<>() );
 				
@@ -76,8 +76,16 @@ public class RequestObjectUpdateHandler extends RTIMessageHandler
 			throw new JObjectNotKnown( "Object not known ["+objectHandle+"], we can't provide any update" );
 		}
 
+		// if we have fresh values for any of the attributes, answer for them ourselves
+		attributeHandles = provideFromCache( instance,
+		                                     attributeHandles,
+		                                     notice.getSourceFederate(),
+		                                     notice.getTag() );
+
 		// find out which federates own which attributes
-		Map<Integer,HashSet<Integer>> owners = findOwners( instance, attributeHandles );
+		Map<Integer,HashSet<Integer>> owners = findOwners( instance,
+		                                                   attributeHandles,
+		                                                   notice.getSourceFederate() );
 
 		// send a Provide request to each of the owners
 		for( Integer owner : owners.keySet() )
@@ -93,7 +101,14 @@ public class RequestObjectUpdateHandler extends RTIMessageHandler
 		context.success();
 	}
 	
-	private Map<Integer,HashSet<Integer>> findOwners( ROCInstance objectInstance, Set<Integer> attributeHandles )
+	/**
+	 * Group the requested attributes by owner. Unowned attributes have no one to provide them,
+	 * and attributes the requester owns itself are left out too; it already has the values and
+	 * shouldn't be asked to provide them to itself.
+	 */
+	private Map<Integer,HashSet<Integer>> findOwners( ROCInstance objectInstance,
+	                                                  Set<Integer> attributeHandles,
+	                                                  int requester )
 	{
 		Map<Integer,HashSet<Integer>> owners = new HashMap<>();
 		
@@ -108,6 +123,9 @@ public class RequestObjectUpdateHandler extends RTIMessageHandler
 			}
 			
 			int owner = attributeInstance.getOwner();
+			if( attributeInstance.isUnowned() || owner == requester )
+				continue;
+
 			if( owners.containsKey(owner) == false )
 				owners.put( owner, new HashSet<Integer>() );
 			
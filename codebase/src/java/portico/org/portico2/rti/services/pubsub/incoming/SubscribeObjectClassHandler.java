@@ -16,7 +16,6 @@ package org.portico2.rti.services.pubsub.incoming;
 
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.portico.lrc.compat.JConfigurationException;
 import org.portico.lrc.compat.JException;
@@ -24,9 +23,8 @@ import org.portico.lrc.compat.JObjectClassNotDefined;
 import org.portico.lrc.compat.JRTIinternalError;
 import org.portico.lrc.model.OCMetadata;
 import org.portico2.common.messaging.MessageContext;
-import org.portico2.common.services.object.msg.DiscoverObject;
+import org.portico2.common.services.object.msg.DiscoverObjectBatch;
 import org.portico2.common.services.pubsub.msg.SubscribeObjectClass;
-import org.portico2.rti.federation.Federate;
 import org.portico2.rti.services.RTIMessageHandler;
 import org.portico2.rti.services.object.data.ROCInstance;
 
@@ -35,6 +33,8 @@ public class SubscribeObjectClassHandler extends RTIMessageHandler
 	//----------------------------------------------------------
 	//                    STATIC VARIABLES
 	//----------------------------------------------------------
+	/** Most instances we'll put in any one discovery snapshot message */
+	private static final int DISCOVERY_BATCH_SIZE = 1024;
 
 	//----------------------------------------------------------
 	//                   INSTANCE VARIABLES
@@ -95,43 +95,55 @@ public class SubscribeObjectClassHandler extends RTIMessageHandler
 		//  Discover Check   /////////////////////////////
 		//////////////////////////////////////////////////
 		// After a federate newly subscribes to a class, there may be existing objects that
-		// they can now also discover. Loop through and find any, generating DiscoverObject
-		// callbacks as appropriate
-		Set<ROCInstance> instances = repository.getAllInstancesAssignableFrom( classType );
-		instances = instances.stream()
-		                     .filter( instance -> instance.hasDiscovered(federateHandle) == false )
-		                     .collect( Collectors.toSet() );
-		
-		Federate federate = federation.getFederate( federateHandle );
-		
-		for( ROCInstance instance : instances )
+		// they can now also discover. Walk the repository for any, and send them across in
+		// batches rather than generating a DiscoverObject callback for each one
+		DiscoverObjectBatch batch = new DiscoverObjectBatch( classType.getHandle() );
+		int discovered = 0;
+		for( ROCInstance instance : repository.getAllInstancesAssignableFrom(classType) )
 		{
 			// have we already discovered this one?
 			if( instance.hasDiscovered(federateHandle) )
 				continue;
 			
-			// this one is new to us, register the discovery and queue a callback
+			// this one is new to us, register the discovery and add it to the snapshot, along
+			// with the last values we have for the attributes they just subscribed to
 			instance.discover( federateHandle, classType );
-			DiscoverObject discover = new DiscoverObject( instance );
-			discover.setClassHandle( classType.getHandle() );
-			
-			// The subscriber may not have had a chance to update its internal subscription list yet so
-			// discoveries need to be queued to avoid false vetos due to race conditions.
-			discover.setImmediateProcessingFlag( false );
+			if( valueCache == null )
+				batch.addObject( instance.getHandle(), instance.getName() );
+			else
+				batch.addObject( instance.getHandle(),
+				                 instance.getName(),
+				                 valueCache.get(instance.getHandle(),attributes) );
 			
 			// Update discovery metrics
 			momManager.objectDiscovered( federateHandle, instance );
+			++discovered;
 			
-			super.queueUnicast( discover, federateHandle );
-			if( logger.isDebugEnabled() )
+			if( batch.size() == DISCOVERY_BATCH_SIZE )
 			{
-				logger.debug( "Queued Discover callback. Federate [%s] discovered instance [%s] (type=%s, discoveredAs=%s)",
-				              moniker(federateHandle),
-				              objectMoniker(instance.getHandle()),
-				              ocMoniker(instance.getRegisteredClassHandle()),
-				              ocMoniker(classHandle) );
+				queueDiscoveries( batch, federateHandle );
+				batch = new DiscoverObjectBatch( classType.getHandle() );
 			}
 		}
+		
+		if( batch.size() > 0 )
+			queueDiscoveries( batch, federateHandle );
+
+		if( discovered > 0 && logger.isDebugEnabled() )
+		{
+			logger.debug( "Queued discovery of [%d] existing instances for federate [%s] (discoveredAs=%s)",
+			              discovered,
+			              moniker(federateHandle),
+			              ocMoniker(classHandle) );
+		}
+	}
+
+	private void queueDiscoveries( DiscoverObjectBatch batch, int federateHandle )
+	{
+		// The subscriber may not have had a chance to update its internal subscription list yet so
+		// discoveries need to be queued to avoid false vetos due to race conditions.
+		batch.setImmediateProcessingFlag( false );
+		super.queueUnicast( batch, federateHandle );
 	}
 	
 	//----------------------------------------------------------
@@ -0,0 +1,241 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico2.rti.services.time.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.portico.lrc.PorticoConstants;
+
+/**
+ * A binary min-heap of federate handles, each keyed by a time value. Because the position of each
+ * federate in the heap is indexed, the time for a federate can be changed or removed in
+ * <code>O(log N)</code> without having to search for it first, and the lowest time can be read
+ * in constant time.
+ * <p/>
+ * The {@link TimeManager} keeps one of these for the LBTS of all regulating federates and another
+ * for the requested time of all constrained federates that are waiting on an advance.
+ * <p/>
+ * This class is not thread safe.
+ */
+public class IndexedTimeQueue
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final int INITIAL_CAPACITY = 16;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private int[] handles;
+	private double[] times;
+	private int size;
+	private Map<Integer,Integer> positions; // federate handle to index in the heap
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+	public IndexedTimeQueue()
+	{
+		this.handles = new int[INITIAL_CAPACITY];
+		this.times = new double[INITIAL_CAPACITY];
+		this.size = 0;
+		this.positions = new HashMap<>();
+	}
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Add the given federate with the given time, or if it is already present, change its time
+	 * to the given value.
+	 */
+	public void put( int federate, double time )
+	{
+		Integer position = positions.get( federate );
+		if( position == null )
+		{
+			ensureCapacity();
+			handles[size] = federate;
+			times[size] = time;
+			positions.put( federate, size );
+			siftUp( size++ );
+			return;
+		}
+
+		int index = position;
+		double oldTime = times[index];
+		times[index] = time;
+		if( time < oldTime )
+			siftUp( index );
+		else if( time > oldTime )
+			siftDown( index );
+	}
+
+	/**
+	 * Remove the given federate from the queue. If it isn't present, nothing happens.
+	 */
+	public void remove( int federate )
+	{
+		Integer position = positions.remove( federate );
+		if( position == null )
+			return;
+
+		int index = position;
+		--size;
+		if( index == size )
+			return;
+
+		// move the last element into the hole and restore the heap property
+		move( size, index );
+		siftDown( index );
+		siftUp( index );
+	}
+
+	public boolean contains( int federate )
+	{
+		return positions.containsKey( federate );
+	}
+
+	public void clear()
+	{
+		this.size = 0;
+		this.positions.clear();
+	}
+
+	/**
+	 * @return The handle of the federate with the lowest time, or
+	 *         {@link PorticoConstants#NULL_HANDLE} if the queue is empty
+	 */
+	public int peekFederate()
+	{
+		return size == 0 ? PorticoConstants.NULL_HANDLE : handles[0];
+	}
+
+	/**
+	 * @return The lowest time in the queue, or {@link Double#MAX_VALUE} if the queue is empty
+	 */
+	public double peekTime()
+	{
+		return size == 0 ? Double.MAX_VALUE : times[0];
+	}
+
+	/**
+	 * Get the lowest time of any federate in the queue <i>other</i> than the given one. If the
+	 * given federate doesn't hold the lowest time this is just {@link #peekTime()}. If it does,
+	 * the next lowest must be one of its two children, so this is still constant time.
+	 *
+	 * @return The lowest time of all other federates, or {@link Double#MAX_VALUE} if there are none
+	 */
+	public double peekTimeExcluding( int federate )
+	{
+		if( size == 0 )
+			return Double.MAX_VALUE;
+		else if( handles[0] != federate )
+			return times[0];
+
+		double lowest = Double.MAX_VALUE;
+		if( size > 1 )
+			lowest = times[1];
+		if( size > 2 && times[2] < lowest )
+			lowest = times[2];
+
+		return lowest;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	////////////////////////////////////////////////////////////////////////////////////////
+	///  Heap Maintenance   ////////////////////////////////////////////////////////////////
+	////////////////////////////////////////////////////////////////////////////////////////
+	private void siftUp( int index )
+	{
+		int handle = handles[index];
+		double time = times[index];
+		while( index > 0 )
+		{
+			int parent = (index-1) >>> 1;
+			if( times[parent] <= time )
+				break;
+
+			move( parent, index );
+			index = parent;
+		}
+
+		place( handle, time, index );
+	}
+
+	private void siftDown( int index )
+	{
+		int handle = handles[index];
+		double time = times[index];
+		int half = size >>> 1;
+		while( index < half )
+		{
+			int child = (index << 1) + 1;
+			int right = child + 1;
+			if( right < size && times[right] < times[child] )
+				child = right;
+
+			if( time <= times[child] )
+				break;
+
+			move( child, index );
+			index = child;
+		}
+
+		place( handle, time, index );
+	}
+
+	private void move( int from, int to )
+	{
+		handles[to] = handles[from];
+		times[to] = times[from];
+		positions.put( handles[to], to );
+	}
+
+	private void place( int handle, double time, int index )
+	{
+		handles[index] = handle;
+		times[index] = time;
+		positions.put( handle, index );
+	}
+
+	private void ensureCapacity()
+	{
+		if( size < handles.length )
+			return;
+
+		int[] newHandles = new int[handles.length*2];
+		double[] newTimes = new double[times.length*2];
+		System.arraycopy( handles, 0, newHandles, 0, size );
+		System.arraycopy( times, 0, newTimes, 0, size );
+		this.handles = newHandles;
+		this.times = newTimes;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -21,6 +21,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.portico.lrc.PorticoConstants;
 import org.portico.lrc.services.saverestore.data.SaveRestoreTarget;
 import org.portico2.common.services.time.data.TAR;
 import org.portico2.common.services.time.data.TimeStatus;
@@ -48,6 +49,14 @@ import org.portico2.common.services.time.data.TimeStatus;
  * the federation (or null, or any other invalid key), you will get a NullPointerException. It
  * is expected that the various handlers will have taken care to ensure that a federate exists
  * before calling these methods. To be fair, this should never really be a problem.
+ * <p/>
+ * <b>IMPLEMENTATION NOTE:</b> To avoid scanning every federate each time something changes, the
+ * manager keeps two {@link IndexedTimeQueue}s: the LBTS of each regulating federate, and the
+ * requested time of each constrained federate that is waiting on an advance. Both are kept up to
+ * date as each federate's status changes, so finding the federation LBTS is constant time and
+ * finding who can be granted an advance only touches the federates that can. Because of this,
+ * changes to a {@link TimeStatus} that affect its LBTS or requested time should be made through
+ * the manager rather than directly on the status.
  */
 public class TimeManager implements SaveRestoreTarget
 {
@@ -62,6 +71,8 @@ public class TimeManager implements SaveRestoreTarget
 	private Set<Integer>            regulating;
 	private Set<Integer>            constrained;
 	private double                  lbts;
+	private IndexedTimeQueue        regulatingLbts;  // lbts of each regulating federate
+	private IndexedTimeQueue        waiting;         // requested time of waiting constrained feds
 
 	//----------------------------------------------------------
 	//                      CONSTRUCTORS
@@ -72,6 +83,8 @@ public class TimeManager implements SaveRestoreTarget
 		this.regulating  = new HashSet<Integer>();
 		this.constrained = new HashSet<Integer>();
 		this.lbts        = Double.MAX_VALUE;
+		this.regulatingLbts = new IndexedTimeQueue();
+		this.waiting        = new IndexedTimeQueue();
 	}
 	
 	//----------------------------------------------------------
@@ -81,38 +94,53 @@ public class TimeManager implements SaveRestoreTarget
 	////////////////////// Helper Methods //////////////////////
 	////////////////////////////////////////////////////////////
 	/**
-	 * This method will interrogate the current time status of each of the recorded federates and
-	 * will determine the LBTS for *the federation* (that is, the lowest relevant LBTS of any
-	 * federate). Once it is been determined, the <code>lbts</code> property of the manager will
-	 * be set to the value. The new federation-lbts will be returned.
+	 * Returns the LBTS for *the federation* (that is, the lowest relevant LBTS of any regulating
+	 * federate), making sure the <code>lbts</code> property of the manager is set to it. The LBTS
+	 * of each regulating federate is tracked as it changes, so this doesn't need to look at each
+	 * federate in turn.
 	 */
 	public double recalculateLBTS()
 	{
-		// if there are no regulating federates, reset the LBTS
-		if( this.regulating.size() == 0 )
-		{
-			this.lbts = Double.MAX_VALUE;
-			// the removal of all regulating federates might mean advances are possible for
-			// constrained federates, thus we should return true
-			return this.lbts;
-		}
-			
-		// there are regulating federates, process them for a possible change
-		double lowestLBTS = Double.MAX_VALUE;
-		for( Integer federateHandle : regulating )
-		{
-			TimeStatus status = timeStatus.get( federateHandle );
-			if( status.lbts < lowestLBTS )
-				lowestLBTS = status.lbts;
-		}
-		
-		// reset the current federation LBTS
-		if( this.lbts != lowestLBTS )
-			this.lbts = lowestLBTS;
-		
+		// if there are no regulating federates, the queue is empty and this is MAX_VALUE
+		this.lbts = regulatingLbts.peekTime();
 		return this.lbts;
 	}
-	
+
+	/**
+	 * Update the indexes for the given federate to reflect the current values in its time status
+	 * and then refresh the federation LBTS. This must be called whenever the regulating,
+	 * constrained, advancing, requested time or LBTS values for a federate change.
+	 */
+	private void updateIndexes( int federate, TimeStatus status )
+	{
+		if( status != null && status.regulating == TimeStatus.TriState.ON )
+			regulatingLbts.put( federate, status.lbts );
+		else
+			regulatingLbts.remove( federate );
+
+		if( status != null && status.constrained == TimeStatus.TriState.ON &&
+			status.isInAdvancingState() )
+			waiting.put( federate, status.requestedTime );
+		else
+			waiting.remove( federate );
+
+		recalculateLBTS();
+	}
+
+	/**
+	 * Throw away the indexes and rebuild them from the current time status of every federate.
+	 * Only needed when all the status information is replaced at once, such as after a restore.
+	 */
+	private void rebuildIndexes()
+	{
+		this.regulatingLbts = new IndexedTimeQueue();
+		this.waiting = new IndexedTimeQueue();
+		for( Map.Entry<Integer,TimeStatus> entry : timeStatus.entrySet() )
+			updateIndexes( entry.getKey(), entry.getValue() );
+
+		recalculateLBTS();
+	}
+
 	/**
 	 * Advances the {@link TimeStatus} of the given federate to the value it requested using
 	 * {@link TimeStatus#advanceFederate(double)}.
@@ -121,6 +149,37 @@ public class TimeManager implements SaveRestoreTarget
 	{
 		TimeStatus status = timeStatus.get( federateHandle );
 		status.advanceFederate( status.requestedTime );
+		updateIndexes( federateHandle, status );
+	}
+
+	/**
+	 * Record a new time advance request for the given federate using
+	 * {@link TimeStatus#timeAdvanceRequested(double)}. The federation LBTS is updated to take
+	 * the new request into account.
+	 */
+	public void timeAdvanceRequested( int federate, double requestedTime )
+	{
+		TimeStatus status = timeStatus.get( federate );
+		status.timeAdvanceRequested( requestedTime );
+		updateIndexes( federate, status );
+	}
+
+	/**
+	 * Find a constrained federate that has an outstanding advance request for a time below the
+	 * current federation LBTS. Federates are returned in order of their requested time, so as soon
+	 * as one is found that can't advance we know that none of the others can either. Once the
+	 * returned federate has been {@link #advanceFederate(int) advanced} it is no longer waiting,
+	 * and the next call will return the next federate that can advance.
+	 *
+	 * @return The handle of a federate that can be granted its advance, or
+	 *         {@link PorticoConstants#NULL_HANDLE} if there are none
+	 */
+	public int getNextAdvanceableFederate()
+	{
+		if( waiting.peekTime() < this.lbts )
+			return waiting.peekFederate();
+		else
+			return PorticoConstants.NULL_HANDLE;
 	}
 	
 	/**
@@ -156,9 +215,8 @@ public class TimeManager implements SaveRestoreTarget
 		ts.currentTime = time;
 		ts.lbts = ts.currentTime + ts.lookahead;
 		
-		// if this federate is regulating, recalculate the federation-wide LBTS
-		if( ts.regulating == TimeStatus.TriState.ON )
-			recalculateLBTS();
+		// if this federate is regulating, this will update the federation-wide LBTS
+		updateIndexes( federate, ts );
 	}
 	
 	/**
@@ -175,7 +233,9 @@ public class TimeManager implements SaveRestoreTarget
 	 */
 	public void setRequestedTime( int federate, double time )
 	{
-		timeStatus.get(federate).requestedTime = time;
+		TimeStatus ts = timeStatus.get( federate );
+		ts.requestedTime = time;
+		updateIndexes( federate, ts );
 	}
 	
 	public double getLookahead( int federate )
@@ -188,7 +248,7 @@ public class TimeManager implements SaveRestoreTarget
 		TimeStatus ts = timeStatus.get( federate );
 		ts.lookahead = newLookahead;
 		ts.lbts = ts.currentTime + ts.lookahead;
-		recalculateLBTS();
+		updateIndexes( federate, ts );
 	}
 	
 	/**
@@ -208,6 +268,17 @@ public class TimeManager implements SaveRestoreTarget
 	{
 		return lbts;
 	}
+
+	/**
+	 * Fetch the Greatest Available Logical Time (GALT) for the given federate. This is the lowest
+	 * LBTS of all the regulating federates <i>other than</i> the given federate, as a federate is
+	 * never held back by its own lookahead. If there are no other regulating federates this is
+	 * {@link Double#MAX_VALUE}.
+	 */
+	public double getGALT( int federate )
+	{
+		return regulatingLbts.peekTimeExcluding( federate );
+	}
 	
 	/**
 	 * @return <code>true</code> if the given federate has an outstanding time advancement
@@ -223,7 +294,9 @@ public class TimeManager implements SaveRestoreTarget
 	 */
 	public void setAdvancing( int federate, TAR advancing )
 	{
-		timeStatus.get(federate).advancing = advancing;
+		TimeStatus ts = timeStatus.get( federate );
+		ts.advancing = advancing;
+		updateIndexes( federate, ts );
 	}
 	
 	////////////////////////////////////////////////////////////
@@ -251,8 +324,8 @@ public class TimeManager implements SaveRestoreTarget
 		// update the cache of currently regulating federates
 		regulating.add( federate );
 		
-		// this could affect the LBTS, recalculate it
-		recalculateLBTS();
+		// this could affect the LBTS, update it
+		updateIndexes( federate, ts );
 	}
 	
 	/**
@@ -264,12 +337,13 @@ public class TimeManager implements SaveRestoreTarget
 	public void disableRegulating( int federate )
 	{
 		// update the time status
-		timeStatus.get(federate).regulating = TimeStatus.TriState.OFF;
+		TimeStatus ts = timeStatus.get( federate );
+		ts.regulating = TimeStatus.TriState.OFF;
 		// update the cache
 		regulating.remove( federate );
 
-		// this could affect the LBTS, recalculate it
-		recalculateLBTS();
+		// this could affect the LBTS, update it
+		updateIndexes( federate, ts );
 	}
 	
 	public boolean isRegulating( int federate )
@@ -315,8 +389,8 @@ public class TimeManager implements SaveRestoreTarget
 		// update the cache
 		constrained.add( federate );
 
-		// this could affect the LBTS, recalculate it
-		recalculateLBTS();
+		// this could affect the LBTS, update it
+		updateIndexes( federate, ts );
 	}
 	
 	/**
@@ -328,12 +402,13 @@ public class TimeManager implements SaveRestoreTarget
 	public void disableConstrained( int federate )
 	{
 		// update the time status
-		timeStatus.get(federate).constrained = TimeStatus.TriState.OFF;
+		TimeStatus ts = timeStatus.get( federate );
+		ts.constrained = TimeStatus.TriState.OFF;
 		// update the cache
 		constrained.remove( federate );
 		
-		// this could affect the LBTS, recalculate it
-		recalculateLBTS();
+		// this could affect the LBTS, update it
+		updateIndexes( federate, ts );
 	}
 	
 	public boolean isConstrained( int federate )
@@ -389,8 +464,9 @@ public class TimeManager implements SaveRestoreTarget
 		if( existingStatus.regulating == TimeStatus.TriState.ON )
 		{
 			regulating.add( federate );
-			recalculateLBTS();
 		}
+
+		updateIndexes( federate, existingStatus );
 	}
 	
 	/**
@@ -404,8 +480,8 @@ public class TimeManager implements SaveRestoreTarget
 		regulating.remove( federate );
 		constrained.remove( federate );
 
-		// this could affect the LBTS, recalculate it
-		recalculateLBTS();
+		// this could affect the LBTS, update it
+		updateIndexes( federate, null );
 	}
 
 	public String toString()
@@ -460,6 +536,7 @@ public class TimeManager implements SaveRestoreTarget
 		this.regulating = (Set<Integer>)input.readObject();
 		this.constrained = (Set<Integer>)input.readObject();
 		this.lbts = input.readDouble();
+		rebuildIndexes();
 	}
 
 	//----------------------------------------------------------
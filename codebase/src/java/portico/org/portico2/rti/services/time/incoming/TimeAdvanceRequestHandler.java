@@ -16,6 +16,7 @@ package org.portico2.rti.services.time.incoming;
 
 import java.util.Map;
 
+import org.portico.lrc.PorticoConstants;
 import org.portico.lrc.compat.JConfigurationException;
 import org.portico.lrc.compat.JException;
 import org.portico2.common.messaging.MessageContext;
@@ -68,9 +69,9 @@ public class TimeAdvanceRequestHandler extends RTIMessageHandler
 			logger.debug( "Federate ["+moniker(federate)+"] requests ADVANCE to time ["+newTime+"]" );
 
 		// record the time advance request in the time manager
+		timeManager.timeAdvanceRequested( federate, newTime );
 		TimeStatus status = timeManager.getTimeStatus( federate );
-		status.timeAdvanceRequested( newTime );
-		double federationLbts = timeManager.recalculateLBTS();
+		double federationLbts = timeManager.getLBTS();
 		
 		//////////////////////////////////
 		// Is the federate CONSTRAINED? //
@@ -137,13 +138,15 @@ public class TimeAdvanceRequestHandler extends RTIMessageHandler
 
 	private void issueAllPossibleAdvances()
 	{
-		// process a potential advance for all the constrained federates //
-		double federationLbts = timeManager.getLBTS();
-		for( Integer constrainedHandle : timeManager.getConstrainedFederates() )
+		// The time manager keeps the waiting constrained federates ordered by the time they
+		// requested, so we only ever look at those that can actually be granted an advance.
+		// Advancing a federate takes it out of the waiting set, so just keep asking for the
+		// next one until there are none left that the federation LBTS will let through.
+		int constrainedHandle = timeManager.getNextAdvanceableFederate();
+		while( constrainedHandle != PorticoConstants.NULL_HANDLE )
 		{
-			TimeStatus constrainedStatus = timeManager.getTimeStatus( constrainedHandle );
-			if( constrainedStatus.canAdvance(federationLbts) )
-				advanceFederate( constrainedHandle, constrainedStatus );
+			advanceFederate( constrainedHandle, timeManager.getTimeStatus(constrainedHandle) );
+			constrainedHandle = timeManager.getNextAdvanceableFederate();
 		}
 	}
 
@@ -162,7 +165,7 @@ public class TimeAdvanceRequestHandler extends RTIMessageHandler
 	private void advanceFederate( int federateHandle, TimeStatus status )
 	{
 		// mark the federate as being able to advance
-		status.advanceFederate();
+		timeManager.advanceFederate( federateHandle );
 
 		// queue a callback
 		TimeAdvanceGrant grant = new TimeAdvanceGrant( status.getRequestedTime() );
@@ -0,0 +1,224 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package hlaunit.ieee1516e.support;
+
+import static hlaunit.ieee1516e.common.TypeFactory.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import hla.rti1516e.AttributeHandleSet;
+import hla.rti1516e.ObjectClassHandle;
+import hla.rti1516e.ObjectInstanceHandle;
+import hla.rti1516e.exceptions.ObjectClassNotDefined;
+import hla.rti1516e.exceptions.ObjectClassNotPublished;
+import hla.rti1516e.exceptions.ObjectInstanceNameInUse;
+import hlaunit.ieee1516e.common.Abstract1516eTest;
+import hlaunit.ieee1516e.common.TestFederate;
+
+import org.portico.impl.hla1516e.Rti1516eAmbassadorEx;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the batched declaration and registration services that the Portico
+ * {@link Rti1516eAmbassadorEx} adds on top of the standard interface.
+ */
+@Test(sequential=true, groups={"BatchedServicesTest", "batch", "supportServices"})
+public class BatchedServicesTest extends Abstract1516eTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private TestFederate secondFederate;
+	private int aHandle, aaHandle, abHandle, xHandle;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@Override
+	@BeforeClass(alwaysRun=true)
+	public void beforeClass()
+	{
+		super.beforeClass();
+		secondFederate = new TestFederate( "secondFederate", this );
+	}
+	
+	@BeforeMethod(alwaysRun=true)
+	public void beforeMethod()
+	{
+		defaultFederate.quickCreate();
+		defaultFederate.quickJoin();
+		secondFederate.quickJoin();
+
+		aHandle  = defaultFederate.quickOCHandle( "ObjectRoot.A" );
+		aaHandle = defaultFederate.quickACHandle( "ObjectRoot.A", "aa" );
+		abHandle = defaultFederate.quickACHandle( "ObjectRoot.A", "ab" );
+		xHandle  = defaultFederate.quickICHandle( "InteractionRoot.X" );
+	}
+	
+	@Override
+	@AfterClass(alwaysRun=true)
+	public void afterClass()
+	{
+		super.afterClass();
+	}
+	
+	@AfterMethod(alwaysRun=true)
+	public void afterMethod()
+	{
+		secondFederate.quickResign();
+		defaultFederate.quickResign();
+		defaultFederate.quickDestroy();
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////// Test Methods //////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////////
+	///////////////////////////////////////////////////
+	// TEST: (valid) testBatchedPublishAndRegister() //
+	///////////////////////////////////////////////////
+	@Test
+	public void testBatchedPublishAndRegister()
+	{
+		Rti1516eAmbassadorEx defaultEx = (Rti1516eAmbassadorEx)defaultFederate.rtiamb;
+		Rti1516eAmbassadorEx secondEx = (Rti1516eAmbassadorEx)secondFederate.rtiamb;
+		ObjectClassHandle aClass = getObjectClassHandle( aHandle );
+
+		List<ObjectInstanceHandle> instances = null;
+		try
+		{
+			Map<ObjectClassHandle,AttributeHandleSet> classes = new HashMap<>();
+			classes.put( aClass, newAttributeSet(aaHandle,abHandle) );
+			defaultEx.publishObjectClassAttributes( classes );
+			defaultEx.publishInteractionClasses( Arrays.asList(getInteractionHandle(xHandle)) );
+			secondEx.subscribeObjectClassAttributes( classes );
+			secondEx.subscribeInteractionClasses( Arrays.asList(getInteractionHandle(xHandle)) );
+
+			instances = defaultEx.registerObjectInstances( aClass, 3 );
+		}
+		catch( Exception e )
+		{
+			Assert.fail( "Unexpected exception in batched publish/subscribe/register", e );
+		}
+
+		// every instance should have come back, in order, and been discovered
+		Assert.assertEquals( instances.size(), 3 );
+		for( ObjectInstanceHandle instance : instances )
+			secondFederate.fedamb.waitForDiscovery( getObjectHandle(instance) );
+
+		// the interaction publication and subscription should be in place as well
+		defaultFederate.quickSend( "InteractionRoot.X", "xa" );
+		secondFederate.fedamb.waitForROInteraction( xHandle );
+	}
+
+	/////////////////////////////////////////
+	// TEST: testBatchedPublishWithError() //
+	/////////////////////////////////////////
+	@Test
+	public void testBatchedPublishWithError()
+	{
+		Rti1516eAmbassadorEx defaultEx = (Rti1516eAmbassadorEx)defaultFederate.rtiamb;
+		try
+		{
+			Map<ObjectClassHandle,AttributeHandleSet> classes = new HashMap<>();
+			classes.put( getObjectClassHandle(aHandle), newAttributeSet(aaHandle) );
+			classes.put( getObjectClassHandle(11111111), newAttributeSet(aaHandle) );
+			defaultEx.publishObjectClassAttributes( classes );
+			expectedException( ObjectClassNotDefined.class );
+		}
+		catch( ObjectClassNotDefined ocnd )
+		{
+			// success!
+		}
+		catch( Exception e )
+		{
+			wrongException( e, ObjectClassNotDefined.class );
+		}
+
+		// the valid request in the batch should still have gone through
+		defaultFederate.quickRegister( aHandle );
+	}
+
+	//////////////////////////////////////////////////
+	// TEST: testBatchedRegisterWhenNotPublished() //
+	//////////////////////////////////////////////////
+	@Test
+	public void testBatchedRegisterWhenNotPublished()
+	{
+		Rti1516eAmbassadorEx defaultEx = (Rti1516eAmbassadorEx)defaultFederate.rtiamb;
+		try
+		{
+			defaultEx.registerObjectInstances( getObjectClassHandle(aHandle), 2 );
+			expectedException( ObjectClassNotPublished.class );
+		}
+		catch( ObjectClassNotPublished ocnp )
+		{
+			// success!
+		}
+		catch( Exception e )
+		{
+			wrongException( e, ObjectClassNotPublished.class );
+		}
+	}
+
+	//////////////////////////////////////////////
+	// TEST: testBatchedRegisterWithNameInUse() //
+	//////////////////////////////////////////////
+	@Test
+	public void testBatchedRegisterWithNameInUse()
+	{
+		Rti1516eAmbassadorEx defaultEx = (Rti1516eAmbassadorEx)defaultFederate.rtiamb;
+		defaultFederate.quickPublish( aHandle, aaHandle, abHandle );
+		defaultFederate.quickRegister( aHandle, "taken" );
+
+		try
+		{
+			defaultEx.registerObjectInstances( getObjectClassHandle(aHandle),
+			                                   Arrays.asList("first","taken","third") );
+			expectedException( ObjectInstanceNameInUse.class );
+		}
+		catch( ObjectInstanceNameInUse oiniu )
+		{
+			// success!
+		}
+		catch( Exception e )
+		{
+			wrongException( e, ObjectInstanceNameInUse.class );
+		}
+
+		// the instances that did register should have been deleted again, freeing their names
+		defaultFederate.quickRegister( aHandle, "first" );
+		defaultFederate.quickRegister( aHandle, "third" );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
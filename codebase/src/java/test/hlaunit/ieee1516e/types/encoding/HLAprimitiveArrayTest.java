@@ -0,0 +1,245 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package hlaunit.ieee1516e.types.encoding;
+
+import org.portico.impl.hla1516e.types.encoding.HLA1516eEncoderFactory;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eFloat64BEArray;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eInteger32BEArray;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eInteger64BEArray;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import hla.rti1516e.encoding.ByteWrapper;
+import hla.rti1516e.encoding.DataElementFactory;
+import hla.rti1516e.encoding.DecoderException;
+import hla.rti1516e.encoding.HLAASCIIstring;
+import hla.rti1516e.encoding.HLAbyte;
+import hla.rti1516e.encoding.HLAfixedRecord;
+import hla.rti1516e.encoding.HLAfloat64BE;
+import hla.rti1516e.encoding.HLAinteger16BE;
+import hla.rti1516e.encoding.HLAinteger16LE;
+import hla.rti1516e.encoding.HLAunicodeChar;
+import hla.rti1516e.encoding.HLAvariableArray;
+import hlaunit.ieee1516e.common.Abstract1516eTest;
+
+@Test(sequential=true, groups={"HLAprimitiveArrayTest","datatype","encoding"})
+public class HLAprimitiveArrayTest extends Abstract1516eTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final int[] TWO_INTS = { 1431655765, -1431655766 };
+	private static final byte[] TWO_INTS_BIN = { (byte)0x00, (byte)0x00, (byte)0x00, (byte)0x02,
+	                                             (byte)0x55, (byte)0x55, (byte)0x55, (byte)0x55,
+	                                             (byte)0xAA, (byte)0xAA, (byte)0xAA, (byte)0xAA };
+
+	private static final double[] DOUBLES = { 3.14159, -2.71828, 0.0, Double.MAX_VALUE, 9.80665 };
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private HLA1516eEncoderFactory encoderFactory;
+	private DataElementFactory<HLAfloat64BE> doubleFactory;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@Override
+	@BeforeClass(alwaysRun = true)
+	public void beforeClass()
+	{
+		super.beforeClass();
+		this.encoderFactory = new HLA1516eEncoderFactory();
+		this.doubleFactory = new DataElementFactory<HLAfloat64BE>()
+		{
+			public HLAfloat64BE createElement( int index )
+			{
+				return encoderFactory.createHLAfloat64BE();
+			}
+		};
+	}
+
+	@Override
+	@AfterClass(alwaysRun = true)
+	public void afterClass()
+	{
+		this.encoderFactory = null;
+		super.afterClass();
+	}
+
+	//////////////////////////////////////////////////////////////////////////////////////////
+	////////////////////////////////////// Test Methods //////////////////////////////////////
+	//////////////////////////////////////////////////////////////////////////////////////////
+
+	//////////////////////////////////////////////////
+	// TEST: testPrimitiveArrayMatchesVariableArray //
+	//////////////////////////////////////////////////
+	@Test
+	public void testPrimitiveArrayMatchesVariableArray() throws Exception
+	{
+		// build the same array both ways and make sure the bytes line up
+		HLAvariableArray<HLAfloat64BE> boxed = encoderFactory.createHLAvariableArray( doubleFactory );
+		for( double value : DOUBLES )
+			boxed.addElement( encoderFactory.createHLAfloat64BE(value) );
+		
+		HLA1516eFloat64BEArray primitive = encoderFactory.createHLAfloat64BEArray( DOUBLES );
+		Assert.assertEquals( primitive.getEncodedLength(), boxed.getEncodedLength() );
+		Assert.assertEquals( primitive.getOctetBoundary(), boxed.getOctetBoundary() );
+		Assert.assertEquals( primitive.toByteArray(), boxed.toByteArray() );
+		
+		// and that each can decode what the other wrote
+		HLA1516eFloat64BEArray decoded = new HLA1516eFloat64BEArray();
+		decoded.decode( boxed.toByteArray() );
+		Assert.assertEquals( decoded.toArray(), DOUBLES );
+		boxed.decode( primitive.toByteArray() );
+		for( int i = 0; i < DOUBLES.length; i++ )
+			Assert.assertEquals( boxed.get(i).getValue(), DOUBLES[i] );
+		
+		// known bytes for ints
+		HLA1516eInteger32BEArray ints = encoderFactory.createHLAinteger32BEArray( TWO_INTS );
+		Assert.assertEquals( ints.toByteArray(), TWO_INTS_BIN );
+		
+		// and a round trip for longs, inside a record so the bulk path runs mid-buffer
+		long[] longs = { Long.MIN_VALUE, -1L, 42L, Long.MAX_VALUE };
+		HLAfixedRecord record = encoderFactory.createHLAfixedRecord();
+		record.add( encoderFactory.createHLAinteger32BE(7) );
+		record.add( encoderFactory.createHLAinteger64BEArray(longs) );
+		
+		HLA1516eInteger64BEArray decodedLongs = new HLA1516eInteger64BEArray();
+		HLAfixedRecord decodedRecord = encoderFactory.createHLAfixedRecord();
+		decodedRecord.add( encoderFactory.createHLAinteger32BE() );
+		decodedRecord.add( decodedLongs );
+		decodedRecord.decode( record.toByteArray() );
+		Assert.assertEquals( decodedLongs.toArray(), longs );
+	}
+
+	//////////////////////////////////////
+	// TEST: testPrimitiveArrayDecodeView //
+	//////////////////////////////////////
+	@Test
+	public void testPrimitiveArrayDecodeView() throws Exception
+	{
+		byte[] buffer = encoderFactory.createHLAfloat64BEArray(DOUBLES).toByteArray();
+		ByteWrapper wrapper = new ByteWrapper( buffer );
+		
+		HLA1516eFloat64BEArray view = new HLA1516eFloat64BEArray();
+		view.decodeView( wrapper );
+		Assert.assertTrue( view.isView() );
+		Assert.assertEquals( wrapper.remaining(), 0 );
+		Assert.assertEquals( view.size(), DOUBLES.length );
+		for( int i = 0; i < DOUBLES.length; i++ )
+			Assert.assertEquals( view.getValue(i), DOUBLES[i] );
+		
+		// the view reads straight from the buffer, and re-encodes the same bytes
+		Assert.assertEquals( view.toByteArray(), buffer );
+		
+		// mutation copies the values out, after which the buffer is no longer referenced
+		view.setValue( 0, 1.0 );
+		Assert.assertFalse( view.isView() );
+		Assert.assertEquals( view.getValue(0), 1.0 );
+		Assert.assertEquals( view.getValue(4), DOUBLES[4] );
+		Assert.assertEquals( new HLA1516eFloat64BEArray().toByteArray().length, 4 );
+		
+		// a count that runs past the end of the buffer is rejected up front
+		byte[] truncated = new byte[buffer.length-1];
+		System.arraycopy( buffer, 0, truncated, 0, truncated.length );
+		try
+		{
+			new HLA1516eFloat64BEArray().decodeView( new ByteWrapper(truncated) );
+			expectedException( DecoderException.class );
+		}
+		catch( DecoderException de )
+		{
+			// PASS
+		}
+	}
+
+	///////////////////////////////////////////////
+	// TEST: testCompositeLengthFollowsMutation //
+	///////////////////////////////////////////////
+	@Test
+	public void testCompositeLengthFollowsMutation() throws Exception
+	{
+		// lengths of fixed-size contents are cached, make sure mutation is still seen
+		HLAfixedRecord record = encoderFactory.createHLAfixedRecord();
+		record.add( encoderFactory.createHLAinteger32BE(1) );
+		Assert.assertEquals( record.getEncodedLength(), 4 );
+		record.add( encoderFactory.createHLAfloat64BE(2.0) );
+		Assert.assertEquals( record.getEncodedLength(), 12 );
+		Assert.assertEquals( record.getOctetBoundary(), 8 );
+		
+		HLAvariableArray<HLAfloat64BE> array = encoderFactory.createHLAvariableArray( doubleFactory );
+		Assert.assertEquals( array.getEncodedLength(), 4 );
+		array.resize( 3 );
+		Assert.assertEquals( array.getEncodedLength(), 28 );
+		array.decode( encoderFactory.createHLAfloat64BEArray(1.0).toByteArray() );
+		Assert.assertEquals( array.getEncodedLength(), 12 );
+		
+		// variable length contents are never cached
+		HLAfixedRecord strings = encoderFactory.createHLAfixedRecord();
+		strings.add( encoderFactory.createHLAASCIIstring("a") );
+		Assert.assertEquals( strings.getEncodedLength(), 5 );
+		((HLAASCIIstring)strings.get(0)).setValue( "abc" );
+		Assert.assertEquals( strings.getEncodedLength(), 7 );
+	}
+
+	///////////////////////////////////////////////
+	// TEST: testCompositeOfSixteenBitAndByteTypes //
+	///////////////////////////////////////////////
+	@Test
+	public void testCompositeOfSixteenBitAndByteTypes() throws Exception
+	{
+		// the 16-bit integers, bytes and unicode chars are fixed length too, so a record of
+		// them caches its length and must still encode and decode their current values
+		HLAfixedRecord record = encoderFactory.createHLAfixedRecord();
+		record.add( encoderFactory.createHLAinteger16BE((short)0x0102) );
+		record.add( encoderFactory.createHLAinteger16LE((short)0x0304) );
+		record.add( encoderFactory.createHLAbyte((byte)0x05) );
+		record.add( encoderFactory.createHLAunicodeChar((short)'A') );
+		Assert.assertEquals( record.getEncodedLength(), 7 );
+		Assert.assertEquals( record.getOctetBoundary(), 2 );
+		Assert.assertEquals( record.toByteArray(),
+		                     new byte[]{ 0x01, 0x02, 0x04, 0x03, 0x05, 0x00, 0x41 } );
+		
+		((HLAinteger16LE)record.get(1)).setValue( (short)-1 );
+		((HLAunicodeChar)record.get(3)).setValue( (short)'z' );
+		Assert.assertEquals( record.getEncodedLength(), 7 );
+		byte[] encoded = record.toByteArray();
+		Assert.assertEquals( encoded,
+		                     new byte[]{ 0x01, 0x02, (byte)0xff, (byte)0xff, 0x05, 0x00, 0x7a } );
+		
+		HLAfixedRecord decoded = encoderFactory.createHLAfixedRecord();
+		decoded.add( encoderFactory.createHLAinteger16BE() );
+		decoded.add( encoderFactory.createHLAinteger16LE() );
+		decoded.add( encoderFactory.createHLAbyte() );
+		decoded.add( encoderFactory.createHLAunicodeChar() );
+		Assert.assertEquals( decoded.getEncodedLength(), 7 );
+		decoded.decode( encoded );
+		Assert.assertEquals( ((HLAinteger16BE)decoded.get(0)).getValue(), (short)0x0102 );
+		Assert.assertEquals( ((HLAinteger16LE)decoded.get(1)).getValue(), (short)-1 );
+		Assert.assertEquals( ((HLAbyte)decoded.get(2)).getValue(), (byte)0x05 );
+		Assert.assertEquals( ((HLAunicodeChar)decoded.get(3)).getValue(), (short)'z' );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
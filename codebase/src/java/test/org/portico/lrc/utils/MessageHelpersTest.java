@@ -14,7 +14,10 @@
  */
 package org.portico.lrc.utils;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
@@ -25,13 +28,18 @@ import org.portico2.common.logging.Log4jConfigurator;
 import org.portico2.common.messaging.MessageContext;
 import org.portico2.common.messaging.MessageType;
 import org.portico2.common.messaging.ResponseMessage;
+import org.portico2.common.messaging.codec.MessageCodecs;
 import org.portico2.common.network.CallType;
 import org.portico2.common.network.Connection;
 import org.portico2.common.network.Header;
 import org.portico2.common.network.IApplicationReceiver;
+import org.portico2.common.network.Message;
 import org.portico2.common.network.configuration.ConnectionConfiguration;
 import org.portico2.common.network.configuration.transport.JvmConfiguration;
 import org.portico2.common.services.federation.msg.RtiProbe;
+import org.portico2.common.services.object.msg.SendInteraction;
+import org.portico2.common.services.object.msg.UpdateAttributes;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 @Test(groups={"MessageHelpersTest","messaging","utils"})
@@ -61,6 +69,152 @@ public class MessageHelpersTest
 		RtiProbe after = MessageHelpers.inflate2( buffer, RtiProbe.class );
 	}
 	
+	@Test
+	public void testDeflateInflateUpdateAttributes()
+	{
+		HashMap<Integer,byte[]> attributes = new HashMap<>();
+		attributes.put( 1, "one".getBytes() );
+		attributes.put( 2, new byte[0] );
+		attributes.put( 3, new byte[]{ (byte)0xff, 0x00, (byte)0xac, (byte)0xed } );
+		UpdateAttributes before = new UpdateAttributes( 42, new byte[]{ 0x00, (byte)0x80 }, attributes, 3.5 );
+		before.setSourceFederate( 7 );
+		before.setTargetFederation( 2 );
+		before.setObjectClass( 12 );
+
+		byte[] buffer = MessageHelpers.deflate2( before, CallType.DataMessage, 0 );
+		Header header = new Header( buffer, 0 );
+		Assert.assertTrue( header.isManualMarshal(), "Expected UpdateAttributes to be encoded by a codec" );
+		Assert.assertEquals( header.getPayloadLength(), buffer.length-Header.HEADER_LENGTH );
+		Assert.assertEquals( new Message(buffer).getTargetFederation(), 2, "Target federation not readable without inflating" );
+		int[] handles = new Message(buffer).getAttributeHandles();
+		Arrays.sort( handles );
+		Assert.assertEquals( handles, new int[]{ 1, 2, 3 }, "Attribute handles not readable without inflating" );
+		Assert.assertTrue( header.isFiltering() );
+		Assert.assertTrue( header.isFilteringObjectClass() );
+		Assert.assertEquals( header.getFilteringId(), 12, "Header should carry the registered object class" );
+
+		UpdateAttributes after = MessageHelpers.inflate2( buffer, UpdateAttributes.class );
+		Assert.assertEquals( after.getObjectId(), 42 );
+		Assert.assertEquals( after.getSourceFederate(), 7 );
+		Assert.assertEquals( after.getTargetFederation(), 2 );
+		Assert.assertEquals( after.getTimestamp(), 3.5 );
+		Assert.assertEquals( after.getTag(), before.getTag() );
+		Assert.assertEquals( after.getAttributes().size(), 3 );
+		for( Integer handle : attributes.keySet() )
+			Assert.assertEquals( after.getAttributes().get(handle), attributes.get(handle) );
+	}
+
+	@Test
+	public void testDeflateInflateSendInteraction()
+	{
+		HashMap<Integer,byte[]> parameters = new HashMap<>();
+		parameters.put( 11, "eleven".getBytes() );
+		parameters.put( 12, "twelve".getBytes() );
+		SendInteraction before = new SendInteraction( 9, null, parameters, 5, 1.0 );
+		before.setSourceFederate( 3 );
+
+		byte[] buffer = MessageHelpers.deflate2( before, CallType.DataMessage, 0 );
+		Header header = new Header( buffer, 0 );
+		Assert.assertTrue( header.isManualMarshal() );
+		Assert.assertTrue( header.isFiltering() );
+		Assert.assertFalse( header.isFilteringObjectClass() );
+		Assert.assertEquals( header.getFilteringId(), 9, "Header should carry the interaction class" );
+
+		SendInteraction after = MessageHelpers.inflate2( buffer, SendInteraction.class );
+		Assert.assertEquals( after.getInteractionId(), 9 );
+		Assert.assertEquals( after.getSourceFederate(), 3 );
+		Assert.assertEquals( after.getRegionToken(), 5 );
+		Assert.assertEquals( after.getTimestamp(), 1.0 );
+		Assert.assertEquals( after.getTag().length, 0 );
+		Assert.assertEquals( after.getParameters().get(11), "eleven".getBytes() );
+		Assert.assertEquals( after.getParameters().get(12), "twelve".getBytes() );
+	}
+
+	/**
+	 * A body written by a newer codec than ours must be refused rather than misread.
+	 */
+	@Test
+	public void testCodecRejectsNewerVersion()
+	{
+		UpdateAttributes update = new UpdateAttributes( 42, null, new HashMap<>(), 1.0 );
+		byte[] buffer = MessageHelpers.deflate2( update, CallType.DataMessage, 0 );
+		Header header = new Header( buffer, 0 );
+		int offset = header.getHeaderLength();
+		Assert.assertEquals( buffer[offset], 1, "Expected codec version 1" );
+
+		buffer[offset] = 2;
+		try
+		{
+			MessageCodecs.decode( header.getMessageType(),
+			                      ByteBuffer.wrap(buffer,offset,buffer.length-offset) );
+			Assert.fail( "Decoded a version 2 body" );
+		}
+		catch( IllegalArgumentException iae )
+		{
+			// expected
+		}
+	}
+
+	/**
+	 * Lengths and counts come straight off the wire. Bad ones must be reported as a decode
+	 * error, not turned into a huge (or negative) allocation.
+	 */
+	@Test
+	public void testCodecRejectsCorruptLengths()
+	{
+		HashMap<Integer,byte[]> attributes = new HashMap<>();
+		attributes.put( 1, "one".getBytes() );
+		UpdateAttributes update = new UpdateAttributes( 42, "tag".getBytes(), attributes, 1.0 );
+		byte[] buffer = MessageHelpers.deflate2( update, CallType.DataMessage, 0 );
+		Header header = new Header( buffer, 0 );
+		int offset = header.getHeaderLength();
+		// prefix, then objectId, sourceFederate and timestamp
+		int tagLength = offset + MessageCodecs.PREFIX_LENGTH + 4 + 4 + 8;
+		int attributeCount = tagLength + 4 + 3;
+
+		int[][] corruptions = new int[][]{ { tagLength, -1 },
+		                                   { tagLength, Integer.MAX_VALUE },
+		                                   { attributeCount, -1 },
+		                                   { attributeCount, Integer.MAX_VALUE } };
+		for( int[] corruption : corruptions )
+		{
+			byte[] corrupt = buffer.clone();
+			ByteBuffer.wrap( corrupt ).putInt( corruption[0], corruption[1] );
+			try
+			{
+				MessageCodecs.decode( header.getMessageType(),
+				                      ByteBuffer.wrap(corrupt,offset,corrupt.length-offset) );
+				Assert.fail( "Decoded a message with a length of "+corruption[1] );
+			}
+			catch( IllegalArgumentException iae )
+			{
+				// expected
+			}
+		}
+
+		// truncated frame: chop the last value in half
+		try
+		{
+			MessageCodecs.decode( header.getMessageType(),
+			                      ByteBuffer.wrap(buffer,offset,buffer.length-offset-2) );
+			Assert.fail( "Decoded a truncated message" );
+		}
+		catch( IllegalArgumentException iae )
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void testDeflateWithoutCodecUsesSerialization()
+	{
+		// no codec for probes, so they should go through the fallback path
+		Assert.assertFalse( MessageCodecs.hasCodec(MessageType.RtiProbe) );
+		byte[] buffer = MessageHelpers.deflate2( new RtiProbe(), CallType.ControlRequest, 0 );
+		Assert.assertFalse( new Header(buffer,0).isManualMarshal() );
+		Assert.assertNotNull( MessageHelpers.inflate2(buffer,RtiProbe.class) );
+	}
+
 	@Test
 	public void testHeader()
 	{
@@ -147,9 +301,9 @@ public class MessageHelpersTest
 				context.success( "This. Is. Sparta!" );
 		}
 
-		public void receiveDataMessage( PorticoMessage message )
+		public void receiveDataMessage( Message message )
 		{
-			this.receivedRequests.add( message );
+			this.receivedRequests.add( message.inflateAsPorticoMessage() );
 		}
 		
 		public void receiveNotification( PorticoMessage message )
@@ -0,0 +1,140 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.portico2.rti.services.object.data.AttributeValueCache;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"AttributeValueCacheTest","shared"})
+public class AttributeValueCacheTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Newer values replace older ones attribute by attribute, and only the attributes asked
+	 * for come back.
+	 */
+	@Test
+	public void testPutAndGet()
+	{
+		AttributeValueCache cache = new AttributeValueCache( 1024*1024, 0 );
+		cache.put( 1, values(10,"a",11,"b") );
+		cache.put( 1, values(11,"c") );
+
+		Map<Integer,byte[]> found = cache.get( 1, new HashSet<>(Arrays.asList(10,11,12)) );
+		Assert.assertEquals( found.size(), 2 );
+		Assert.assertEquals( found.get(10), "a".getBytes() );
+		Assert.assertEquals( found.get(11), "c".getBytes() );
+		Assert.assertTrue( cache.get(2,found.keySet()).isEmpty() );
+
+		cache.remove( 1 );
+		Assert.assertEquals( cache.getObjectCount(), 0 );
+		Assert.assertEquals( cache.getSize(), 0 );
+	}
+
+	/**
+	 * Removing some of an object's attributes leaves the rest, and removing the last of them
+	 * drops the object.
+	 */
+	@Test
+	public void testRemoveAttributes()
+	{
+		AttributeValueCache cache = new AttributeValueCache( 1024*1024, 0 );
+		cache.put( 1, values(10,"a",11,"b") );
+		long sizeOfOne = cache.getSize() / 2;
+
+		cache.remove( 1, new HashSet<>(Arrays.asList(10,12)) );
+		Map<Integer,byte[]> found = cache.getAll( 1 );
+		Assert.assertEquals( found.keySet(), new HashSet<>(Arrays.asList(11)) );
+		Assert.assertEquals( cache.getSize(), sizeOfOne );
+
+		cache.remove( 1, new HashSet<>(Arrays.asList(11)) );
+		Assert.assertEquals( cache.getObjectCount(), 0 );
+		Assert.assertEquals( cache.getSize(), 0 );
+		cache.remove( 2, found.keySet() ); // unknown objects are ignored
+	}
+
+	/**
+	 * Going over the memory budget should drop the objects that have gone longest without
+	 * an update.
+	 */
+	@Test
+	public void testEviction()
+	{
+		// room for roughly three values of 100 bytes each
+		AttributeValueCache cache = new AttributeValueCache( 3*(100+48), 0 );
+		cache.put( 1, values(10,new byte[100]) );
+		cache.put( 2, values(10,new byte[100]) );
+		cache.put( 3, values(10,new byte[100]) );
+		cache.put( 1, values(10,new byte[100]) ); // 1 is now the most recent
+		cache.put( 4, values(10,new byte[100]) ); // pushes out 2
+
+		Assert.assertEquals( cache.getObjectCount(), 3 );
+		Assert.assertEquals( cache.getEvictionCount(), 1 );
+		Assert.assertTrue( cache.getAll(2).isEmpty() );
+		Assert.assertFalse( cache.getAll(1).isEmpty() );
+		Assert.assertTrue( cache.getSize() <= cache.getMaxSize() );
+	}
+
+	/**
+	 * Values older than the maximum age shouldn't be handed out.
+	 */
+	@Test
+	public void testStaleValues() throws Exception
+	{
+		AttributeValueCache cache = new AttributeValueCache( 1024*1024, 20 );
+		cache.put( 1, values(10,"a") );
+		Assert.assertEquals( cache.getAll(1).size(), 1 );
+
+		Thread.sleep( 50 );
+		Assert.assertTrue( cache.getAll(1).isEmpty() );
+	}
+
+	private HashMap<Integer,byte[]> values( Object... pairs )
+	{
+		HashMap<Integer,byte[]> map = new HashMap<>();
+		for( int i = 0; i < pairs.length; i += 2 )
+		{
+			Object value = pairs[i+1];
+			map.put( (Integer)pairs[i], value instanceof String ? ((String)value).getBytes()
+			                                                    : (byte[])value );
+		}
+
+		return map;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -0,0 +1,264 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.PorticoConstants;
+import org.portico2.common.messaging.MessageContext;
+import org.portico2.common.network.CallType;
+import org.portico2.common.network.Connection;
+import org.portico2.common.network.Connection.Host;
+import org.portico2.common.network.Header;
+import org.portico2.common.network.IApplicationReceiver;
+import org.portico2.common.network.Message;
+import org.portico2.common.network.configuration.ConnectionConfiguration;
+import org.portico2.common.network.configuration.protocol.ProtocolConfiguration;
+import org.portico2.common.network.configuration.transport.BestEffortConfiguration;
+import org.portico2.common.network.configuration.transport.JvmConfiguration;
+import org.portico2.common.network.protocol.Protocol;
+import org.portico2.common.network.transport.udp.BestEffortChannel;
+import org.portico2.common.services.federation.msg.DestroyFederation;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups={"BestEffortChannelTest","shared"})
+public class BestEffortChannelTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final String GROUP = "239.1.2.40";
+	private static final long WAIT_MILLIS = 2000;
+	private static int nextPort = 20940; // new port for each test so they can't hear each other
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private Capture aboveFirst;
+	private Capture belowFirst;
+	private BestEffortChannel first;
+	private Capture aboveSecond;
+	private Capture belowSecond;
+	private BestEffortChannel second;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@BeforeMethod(alwaysRun=true)
+	public void beforeMethod()
+	{
+		int port = nextPort++;
+		this.aboveFirst = new Capture();
+		this.belowFirst = new Capture();
+		this.first = newChannel( port, 1400, aboveFirst, belowFirst );
+		this.aboveSecond = new Capture();
+		this.belowSecond = new Capture();
+		this.second = newChannel( port, 1400, aboveSecond, belowSecond );
+	}
+
+	@AfterMethod(alwaysRun=true)
+	public void afterMethod()
+	{
+		first.close();
+		second.close();
+	}
+
+	/////////////////////////////////////////////////////////////
+	///////////////////////// Send Tests ////////////////////////
+	/////////////////////////////////////////////////////////////
+	/**
+	 * A best effort message should be multicast to the other channel, and a copy should still
+	 * go down to the transport targeted at the RTI, so that it isn't forwarded on to anyone.
+	 */
+	@Test
+	public void testSendMulticastsAndCopiesToRti() throws Exception
+	{
+		first.down( newMessage("federation",1,true) );
+
+		Message copy = belowFirst.take();
+		Assert.assertNotNull( copy, "RTI copy was not passed to the transport" );
+		Assert.assertTrue( copy.getHeader().isBestEffort() );
+		Assert.assertEquals( copy.getHeader().getTargetFederate(), PorticoConstants.RTI_HANDLE );
+		Assert.assertEquals( copy.getHeader().getSourceFederate(), 1 );
+
+		Message received = aboveSecond.take();
+		Assert.assertNotNull( received, "Datagram was not received" );
+		Assert.assertEquals( received.getHeader().getSourceFederate(), 1 );
+		Assert.assertEquals( received.inflateAsPorticoMessage(DestroyFederation.class).getFederationName(),
+		                     "federation" );
+		Assert.assertEquals( first.getMessagesSent(), 1 );
+		Assert.assertEquals( second.getMessagesReceived(), 1 );
+	}
+
+	/**
+	 * Reliable messages, and best effort ones too large for a datagram, should only go to the
+	 * transport. The too-large one must lose its flag so receivers don't drop it.
+	 */
+	@Test
+	public void testReliableAndTooLargeOnlyGoToTransport() throws Exception
+	{
+		first.down( newMessage("reliable",1,false) );
+		Message reliable = belowFirst.take();
+		Assert.assertFalse( reliable.getHeader().isBestEffort() );
+		Assert.assertNotEquals( reliable.getHeader().getTargetFederate(), PorticoConstants.RTI_HANDLE );
+		Assert.assertNull( aboveSecond.poll(), "Reliable message was multicast" );
+
+		Capture below = new Capture();
+		BestEffortChannel small = newChannel( nextPort++, 64, new Capture(), below );
+		try
+		{
+			StringBuilder name = new StringBuilder();
+			while( name.length() < 64 )
+				name.append( "too-large" );
+
+			small.down( newMessage(name.toString(),1,true) );
+			Message tooLarge = below.take();
+			Assert.assertFalse( tooLarge.getHeader().isBestEffort() );
+			Assert.assertNotEquals( tooLarge.getHeader().getTargetFederate(), PorticoConstants.RTI_HANDLE );
+			Assert.assertEquals( small.getMessagesSent(), 0 );
+			Assert.assertEquals( small.getMessagesTooLarge(), 1 );
+		}
+		finally
+		{
+			small.close();
+		}
+	}
+
+	/////////////////////////////////////////////////////////////
+	/////////////////////// Receive Tests ///////////////////////
+	/////////////////////////////////////////////////////////////
+	/**
+	 * Everything that comes up from the transport should be passed up untouched, even after
+	 * we have heard the sender over multicast.
+	 */
+	@Test
+	public void testReceivePassesTransportMessagesUp() throws Exception
+	{
+		first.down( newMessage("federation",1,true) );
+		Assert.assertNotNull( aboveSecond.take(), "Datagram was not received" );
+		
+		second.up( newMessage("federation",1,false) );
+		Assert.assertNotNull( aboveSecond.take(), "Reliable message was dropped" );
+		Assert.assertEquals( second.getMessagesReceived(), 1 );
+	}
+
+	/**
+	 * Without a running channel, the connection should report that it can't send best effort
+	 * so that callers don't bother splitting messages up.
+	 */
+	@Test
+	public void testConnectionWithoutChannel()
+	{
+		ConnectionConfiguration configuration = new ConnectionConfiguration( "jvm" );
+		configuration.setTransportConfiguration( new JvmConfiguration(configuration) );
+		Connection connection = new Connection( Host.LRC, null );
+		connection.configure( configuration, new Receiver() );
+		Assert.assertFalse( connection.hasBestEffortChannel() );
+		Assert.assertTrue( first.isRunning() );
+	}
+
+	/**
+	 * Loopback must be on so that federates on the same host hear each other, but a channel
+	 * should never pass up its own datagrams.
+	 */
+	@Test
+	public void testLoopback() throws Exception
+	{
+		first.down( newMessage("federation",1,true) );
+		Assert.assertNotNull( aboveSecond.take(), "Federate on the same host did not hear datagram" );
+		Assert.assertNull( aboveFirst.poll(), "Channel passed up its own datagram" );
+		Assert.assertEquals( first.getMessagesReceived(), 0 );
+	}
+
+	private BestEffortChannel newChannel( int port, int maxSize, Capture above, Capture below )
+	{
+		ConnectionConfiguration configuration = new ConnectionConfiguration( "jvm" );
+		configuration.setTransportConfiguration( new JvmConfiguration(configuration) );
+		Connection connection = new Connection( Host.LRC, null );
+		connection.configure( configuration, new Receiver() );
+
+		BestEffortConfiguration bestEffort = new BestEffortConfiguration();
+		bestEffort.setEnabled( true );
+		bestEffort.setAddress( GROUP );
+		bestEffort.setPort( port );
+		bestEffort.setNic( "LOOPBACK" );
+		bestEffort.setMaxSize( maxSize );
+
+		BestEffortChannel channel = new BestEffortChannel();
+		channel.configure( bestEffort, connection );
+		channel.setPrevious( above );
+		channel.setNext( below );
+		channel.open();
+		return channel;
+	}
+
+	private Message newMessage( String federation, int sender, boolean bestEffort )
+	{
+		DestroyFederation request = new DestroyFederation( federation );
+		request.setSourceFederate( sender );
+		Message message = new Message( request, CallType.DataMessage, 0 );
+		message.getHeader().writeIsBestEffort( bestEffort );
+		return message;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/** Sits either side of the channel and keeps whatever comes out of it */
+	private static class Capture extends Protocol
+	{
+		private BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+		
+		public void down( Message message ) { messages.add( message ); }
+		public void up( Message message )   { messages.add( message ); }
+		
+		public Message take() throws InterruptedException
+		{
+			return messages.poll( WAIT_MILLIS, TimeUnit.MILLISECONDS );
+		}
+
+		// short wait, for things we expect never to arrive
+		public Message poll() throws InterruptedException
+		{
+			return messages.poll( 200, TimeUnit.MILLISECONDS );
+		}
+
+		public void open()  {}
+		public void close() {}
+		public String getName() { return "Capture"; }
+		protected void doConfigure( ProtocolConfiguration configuration, Connection connection ) {}
+	}
+
+	private static class Receiver implements IApplicationReceiver
+	{
+		public Logger getLogger() { return LogManager.getFormatterLogger( "portico" ); }
+		public boolean isReceivable( Header header ) { return true; }
+		public void receiveControlRequest( MessageContext context ) {}
+		public void receiveNotification( PorticoMessage message ) {}
+		public void receiveDataMessage( Message message ) {}
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.portico2.common.network.BufferPool;
+import org.portico2.common.network.CallType;
+import org.portico2.common.network.Message;
+import org.portico2.common.network.PooledBuffer;
+import org.portico2.common.network.transport.tcp.channel.ITcpChannelListener;
+import org.portico2.common.network.transport.tcp.channel.TcpChannel;
+import org.portico2.common.services.federation.msg.DestroyFederation;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"BufferPoolTest","shared"})
+public class BufferPoolTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Requests are served from the smallest power-of-two class that fits. Anything over the
+	 * largest class gets an array of exactly the right size that is never pooled.
+	 */
+	@Test
+	public void testSizeClasses()
+	{
+		BufferPool pool = new BufferPool( 8*1024, 4 );
+		Assert.assertEquals( pool.acquire(1).array().length, BufferPool.MIN_SIZE );
+		Assert.assertEquals( pool.acquire(1024).array().length, 1024 );
+		Assert.assertEquals( pool.acquire(1025).array().length, 2048 );
+		Assert.assertEquals( pool.acquire(4096).array().length, 4096 );
+		Assert.assertEquals( pool.acquire(8*1024).array().length, 8*1024 );
+
+		PooledBuffer oversized = pool.acquire( 8*1024+1 );
+		Assert.assertEquals( oversized.array().length, 8*1024+1 );
+		oversized.release();
+		Assert.assertEquals( pool.getPooledCount(), 0, "Oversized buffer was pooled" );
+	}
+
+	/**
+	 * A released buffer goes back to the pool and is handed out again, with a fresh reference.
+	 * Each class only keeps so many spares.
+	 */
+	@Test
+	public void testAcquireAndRelease()
+	{
+		BufferPool pool = new BufferPool( 8*1024, 2 );
+		PooledBuffer first = pool.acquire( 2000 );
+		Assert.assertEquals( first.getReferenceCount(), 1 );
+		first.release();
+		Assert.assertEquals( pool.getPooledCount(), 1 );
+
+		PooledBuffer again = pool.acquire( 1500 );
+		Assert.assertSame( again, first, "Released buffer was not reused" );
+		Assert.assertEquals( again.getReferenceCount(), 1 );
+		Assert.assertEquals( pool.getPooledCount(), 0 );
+
+		// buffers from another class aren't reused
+		PooledBuffer small = pool.acquire( 10 );
+		Assert.assertNotSame( small, first );
+
+		// only two spares per class are kept
+		PooledBuffer[] buffers = { pool.acquire(10), pool.acquire(10), pool.acquire(10) };
+		for( PooledBuffer buffer : buffers )
+			buffer.release();
+
+		Assert.assertEquals( pool.getPooledCount(), 2 );
+	}
+
+	/**
+	 * A retained buffer only goes back to the pool once every reference is gone, and releasing
+	 * it once too often is an error.
+	 */
+	@Test
+	public void testRetainAndDoubleRelease()
+	{
+		BufferPool pool = new BufferPool( 8*1024, 4 );
+		PooledBuffer buffer = pool.acquire( 100 ).retain();
+		buffer.release();
+		Assert.assertEquals( pool.getPooledCount(), 0, "Buffer recycled while still referenced" );
+		buffer.release();
+		Assert.assertEquals( pool.getPooledCount(), 1 );
+
+		try
+		{
+			buffer.release();
+			Assert.fail( "Released a buffer more times than it was retained" );
+		}
+		catch( IllegalStateException ise )
+		{
+			// expected
+		}
+	}
+
+	/**
+	 * A message that is a view over a pooled buffer holds its own reference. Copying it out
+	 * with getBuffer() gives that reference back.
+	 */
+	@Test
+	public void testMessageSlices()
+	{
+		BufferPool pool = new BufferPool( 8*1024, 4 );
+		byte[] encoded = newMessage( "federation" );
+		PooledBuffer bundle = pool.acquire( encoded.length*2 );
+		System.arraycopy( encoded, 0, bundle.array(), 0, encoded.length );
+		System.arraycopy( encoded, 0, bundle.array(), encoded.length, encoded.length );
+
+		Message first = new Message( bundle, 0, encoded.length );
+		Message second = new Message( bundle, encoded.length, encoded.length );
+		Assert.assertEquals( bundle.getReferenceCount(), 3 );
+
+		byte[] copy = first.getBuffer();
+		Assert.assertEquals( copy, encoded );
+		Assert.assertEquals( bundle.getReferenceCount(), 2 );
+
+		bundle.release();
+		second.release();
+		Assert.assertEquals( bundle.getReferenceCount(), 0 );
+		Assert.assertEquals( pool.getPooledCount(), 1 );
+		second.release(); // safe to call again, the message has already let go
+		Assert.assertEquals( name(first), "federation", "Copied message lost its contents" );
+	}
+
+	/**
+	 * The TCP channel releases each message once the listener returns. A listener that copied
+	 * the bytes keeps them, one that didn't can no longer get at them.
+	 */
+	@Test
+	public void testChannelReleasesAfterReceive() throws Exception
+	{
+		Listener listener = new Listener();
+		TcpChannel channel = new TcpChannel( listener );
+		try( ServerSocket server = new ServerSocket(0,1,InetAddress.getLoopbackAddress());
+		     Socket client = new Socket(InetAddress.getLoopbackAddress(),server.getLocalPort());
+		     Socket accepted = server.accept() )
+		{
+			channel.connect( accepted,
+			                 new DataInputStream(accepted.getInputStream()),
+			                 new DataOutputStream(accepted.getOutputStream()) );
+
+			byte[] kept = newMessage( "kept" );
+			byte[] dropped = newMessage( "dropped" );
+			byte[] fence = newMessage( "fence" );
+			DataOutputStream output = new DataOutputStream( client.getOutputStream() );
+			output.writeInt( 0xcafe );
+			output.writeInt( kept.length+dropped.length+fence.length );
+			output.write( kept );
+			output.write( dropped );
+			output.write( fence );
+			output.flush();
+
+			// messages are handled one after the other, so once the fence has arrived the
+			// channel is done with the second one
+			Message first = listener.take();
+			Message second = listener.take();
+			Assert.assertNotNull( first );
+			Assert.assertNotNull( second );
+			Assert.assertNotNull( listener.take() );
+			Assert.assertEquals( name(first), "kept" );
+			try
+			{
+				second.getBuffer();
+				Assert.fail( "Message still had its bytes after the listener returned" );
+			}
+			catch( IllegalStateException ise )
+			{
+				// expected
+			}
+		}
+		finally
+		{
+			channel.disconnect();
+		}
+	}
+
+	private byte[] newMessage( String federation )
+	{
+		return new Message( new DestroyFederation(federation), CallType.Notification, 0 ).getBuffer();
+	}
+
+	private String name( Message message )
+	{
+		return message.inflateAsPorticoMessage( DestroyFederation.class ).getFederationName();
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/** Copies the first message it gets and holds on to the rest without copying them */
+	private static class Listener implements ITcpChannelListener
+	{
+		private BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+		private int received = 0;
+
+		public void receive( TcpChannel channel, Message message )
+		{
+			if( received++ == 0 )
+				messages.add( new Message(message.getBuffer()) );
+			else
+				messages.add( message );
+		}
+
+		public Message take() throws InterruptedException
+		{
+			return messages.poll( 2000, TimeUnit.MILLISECONDS );
+		}
+
+		public void disconnected( Throwable throwable ) {}
+		public Logger provideLogger() { return LogManager.getFormatterLogger( "portico" ); }
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.logging.log4j.LogManager;
+import org.portico2.common.network.transport.tcp.channel.Bundler;
+import org.portico2.common.network.transport.tcp.channel.Metrics;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"BundlerTest","shared"})
+public class BundlerTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final int PRODUCERS = 4;
+	private static final int MESSAGES = 5000; // per producer, enough to overflow the ring
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Have a number of threads submit messages at the same time and make sure that every one
+	 * of them comes out the other side, in the order each thread submitted them.
+	 */
+	@Test
+	public void testConcurrentSubmitKeepsOrder() throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Bundler bundler = new Bundler( LogManager.getFormatterLogger("portico") );
+		bundler.setSizeLimit( 1024 );
+		bundler.startBundler( new DataOutputStream(bytes) );
+
+		// each message is [producer][sequence]
+		Thread[] producers = new Thread[PRODUCERS];
+		for( int i = 0; i < PRODUCERS; i++ )
+		{
+			final int producer = i;
+			producers[i] = new Thread( () -> {
+				for( int sequence = 0; sequence < MESSAGES; sequence++ )
+					bundler.submit( ByteBuffer.allocate(8).putInt(producer).putInt(sequence).array() );
+			} );
+			producers[i].start();
+		}
+
+		for( Thread producer : producers )
+			producer.join();
+
+		// wait for the sender to catch up
+		Metrics metrics = bundler.getMetrics();
+		long deadline = System.currentTimeMillis() + 5000;
+		while( metrics.messagesSent < PRODUCERS*MESSAGES && System.currentTimeMillis() < deadline )
+			Thread.sleep( 10 );
+
+		bundler.stopBundler();
+		Assert.assertEquals( metrics.messagesSent, PRODUCERS*MESSAGES, "Not all messages were sent" );
+
+		// unpack the bundles and check each producer's messages are in order
+		int[] expected = new int[PRODUCERS];
+		long bundles = 0;
+		DataInputStream instream = new DataInputStream( new ByteArrayInputStream(bytes.toByteArray()) );
+		while( instream.available() > 0 )
+		{
+			Assert.assertEquals( instream.readInt(), 0xcafe, "Bundle header missing" );
+			int length = instream.readInt();
+			Assert.assertTrue( length <= 1024, "Bundle larger than the size limit: "+length );
+			for( int i = 0; i < length; i += 8 )
+			{
+				int producer = instream.readInt();
+				int sequence = instream.readInt();
+				Assert.assertEquals( sequence, expected[producer], "Message out of order" );
+				expected[producer]++;
+			}
+
+			bundles++;
+		}
+
+		for( int i = 0; i < PRODUCERS; i++ )
+			Assert.assertEquals( expected[i], MESSAGES, "Missing messages from producer "+i );
+
+		Assert.assertEquals( metrics.bundlesSent, bundles );
+		Assert.assertEquals( metrics.queueLatency.getCount(), PRODUCERS*MESSAGES );
+	}
+
+	/**
+	 * Fill the ring and part of the overflow queue before the sender starts, with the overflow
+	 * queue limited so that the producer has to wait for room. Once the sender starts, the
+	 * producer should be let go and everything should come out in the order it went in.
+	 */
+	@Test
+	public void testRingFullOverflowKeepsOrder() throws Exception
+	{
+		final int overflowLimit = 100;
+		final int total = Bundler.RING_CAPACITY + overflowLimit + 50;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Bundler bundler = new Bundler( LogManager.getFormatterLogger("portico") );
+		bundler.setOverflowLimit( overflowLimit );
+
+		Thread producer = new Thread( () -> {
+			for( int sequence = 0; sequence < total; sequence++ )
+				bundler.submit( ByteBuffer.allocate(4).putInt(sequence).array() );
+		} );
+		producer.start();
+
+		// the producer should get stuck once the ring and the overflow queue are full
+		long deadline = System.currentTimeMillis() + 5000;
+		while( bundler.getQueuedCount() <= Bundler.RING_CAPACITY+overflowLimit && System.currentTimeMillis() < deadline )
+			Thread.sleep( 10 );
+
+		// queued count includes the message the producer is waiting to place
+		producer.join( 200 );
+		Assert.assertTrue( producer.isAlive(), "Producer was not held back when the overflow queue was full" );
+		Assert.assertEquals( bundler.getQueuedCount(), Bundler.RING_CAPACITY+overflowLimit+1 );
+
+		// start the sender, which should make room and let the producer finish
+		bundler.startBundler( new DataOutputStream(bytes) );
+		producer.join( 5000 );
+		Assert.assertFalse( producer.isAlive(), "Producer was not released once the sender started" );
+
+		Metrics metrics = bundler.getMetrics();
+		deadline = System.currentTimeMillis() + 5000;
+		while( metrics.messagesSent < total && System.currentTimeMillis() < deadline )
+			Thread.sleep( 10 );
+
+		bundler.stopBundler();
+		Assert.assertEquals( metrics.messagesSent, total, "Not all messages were sent" );
+		Assert.assertTrue( metrics.messagesOverflowed >= overflowLimit, "Overflow queue was not used" );
+
+		int expected = 0;
+		DataInputStream instream = new DataInputStream( new ByteArrayInputStream(bytes.toByteArray()) );
+		while( instream.available() > 0 )
+		{
+			Assert.assertEquals( instream.readInt(), 0xcafe, "Bundle header missing" );
+			int length = instream.readInt();
+			for( int i = 0; i < length; i += 4 )
+				Assert.assertEquals( instream.readInt(), expected++, "Message out of order" );
+		}
+
+		Assert.assertEquals( expected, total, "Missing messages" );
+	}
+
+	/**
+	 * Once the sender has nothing to do it parks. A message submitted after that should wake it
+	 * and be written straight away, rather than waiting out the time limit.
+	 */
+	@Test
+	public void testFlushOnIdle() throws Exception
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Bundler bundler = new Bundler( LogManager.getFormatterLogger("portico") );
+		bundler.setTimeLimit( 60000 ); // the sender only checks for work once a minute by itself
+		bundler.startBundler( new DataOutputStream(bytes) );
+		Metrics metrics = bundler.getMetrics();
+		try
+		{
+			for( int i = 1; i <= 3; i++ )
+			{
+				// let the sender go idle, then give it a single message
+				Thread.sleep( 100 );
+				bundler.submit( ByteBuffer.allocate(4).putInt(i).array() );
+
+				long deadline = System.currentTimeMillis() + 2000;
+				while( metrics.messagesSent < i && System.currentTimeMillis() < deadline )
+					Thread.sleep( 1 );
+
+				Assert.assertEquals( metrics.messagesSent, i, "Message was not flushed while idle" );
+				Assert.assertEquals( metrics.bundlesSent, i, "Idle message was not sent on its own" );
+				Assert.assertEquals( bundler.getQueuedCount(), 0 );
+			}
+		}
+		finally
+		{
+			bundler.stopBundler();
+		}
+
+		Assert.assertEquals( bytes.size(), 3*(8+4) );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
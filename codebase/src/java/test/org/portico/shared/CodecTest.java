@@ -0,0 +1,388 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+
+import org.portico.impl.hla1516e.types.encoding.HLA1516eASCIIstring;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eEncoderFactory;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eFixedRecord;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eFloat64BE;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eFloat64BEArray;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eFloat64LE;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eInteger16LE;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eInteger32BE;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eInteger32BEArray;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eInteger32LE;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eInteger64BEArray;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eOpaqueData;
+import org.portico.impl.hla1516e.types.encoding.HLA1516eUnicodeString;
+import org.portico.impl.hla1516e.types.encoding.codec.DatatypeCodec;
+import org.portico.lrc.model.ObjectModel;
+import org.portico.lrc.model.datatype.Alternative;
+import org.portico.lrc.model.datatype.ArrayType;
+import org.portico.lrc.model.datatype.EnumeratedType;
+import org.portico.lrc.model.datatype.Enumerator;
+import org.portico.lrc.model.datatype.Field;
+import org.portico.lrc.model.datatype.FixedRecordType;
+import org.portico.lrc.model.datatype.VariantRecordType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import hla.rti1516e.encoding.DecoderException;
+import hla.rti1516e.encoding.EncoderException;
+import hla.rti1516e.encoding.HLAinteger32BE;
+import hla.rti1516e.encoding.HLAinteger32LE;
+import hla.rti1516e.encoding.HLAvariableArray;
+import hla.rti1516e.encoding.HLAvariantRecord;
+
+@Test(groups={"CodecTest","shared"})
+public class CodecTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private HLA1516eEncoderFactory factory = new HLA1516eEncoderFactory();
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	private ObjectModel createModel()
+	{
+		ObjectModel model = new ObjectModel();
+		EnumeratedType state = new EnumeratedType( "TrackState",
+		                                           model.getDatatype("HLAinteger32BE"),
+		                                           new Enumerator("Tentative",0),
+		                                           new Enumerator("Firm",5) );
+		model.addDatatype( state );
+		model.addDatatype( new ArrayType("Samples",model.getDatatype("HLAfloat64BE")) );
+		model.addDatatype( new FixedRecordType("Track",
+		                                       new Field("HLAlatitude", model.getDatatype("HLAfloat64BE")),
+		                                       new Field("Count", model.getDatatype("HLAinteger32BE")),
+		                                       new Field("Name", model.getDatatype("HLAASCIIstring")),
+		                                       new Field("Samples", model.getDatatype("Samples")),
+		                                       new Field("State", state)) );
+		model.addDatatype( new ArrayType("TrackList",model.getDatatype("Track")) );
+		model.addDatatype( new VariantRecordType("Report", "State", state, Arrays.asList(
+		                       new Alternative("Estimate", model.getDatatype("HLAfloat64BE"), state.valueOf("Tentative")),
+		                       new Alternative("Confirmed", model.getDatatype("Track"), state.valueOf("Firm")))) );
+		return model;
+	}
+
+	/**
+	 * A record bound to a Java class must give the same bytes as the hand assembled
+	 * data elements, and decode back to an equal object.
+	 */
+	@Test
+	public void testRecordMatchesDataElements() throws Exception
+	{
+		ObjectModel model = createModel();
+		DatatypeCodec<Track> codec = factory.createCodec( model, "Track", Track.class );
+		Assert.assertSame( factory.createCodec(model,"Track",Track.class), codec );
+		
+		Track track = new Track( 51.5, 3, "alpha", TrackState.Firm, 1.0, 2.0, 3.0 );
+		HLA1516eFixedRecord record = new HLA1516eFixedRecord();
+		record.add( new HLA1516eFloat64BE(51.5) );
+		record.add( new HLA1516eInteger32BE(3) );
+		record.add( new HLA1516eASCIIstring("alpha") );
+		record.add( new HLA1516eFloat64BEArray(1.0, 2.0, 3.0) );
+		record.add( new HLA1516eInteger32BE(5) );
+		
+		byte[] encoded = codec.toByteArray( track );
+		Assert.assertEquals( encoded, record.toByteArray() );
+		Assert.assertEquals( codec.getEncodedLength(track), encoded.length );
+		
+		Track decoded = codec.decode( encoded );
+		Assert.assertEquals( decoded.latitude, 51.5 );
+		Assert.assertEquals( decoded.count, 3 );
+		Assert.assertEquals( decoded.name, "alpha" );
+		Assert.assertEquals( decoded.samples, track.samples );
+		Assert.assertEquals( decoded.state, TrackState.Firm );
+		
+		// lists of records bind through the generic element type
+		DatatypeCodec<Object> list = factory.createCodec( model, "TrackList" );
+		List<?> unbound = (List<?>)list.decode( factory.createCodec(model,"TrackList",Track[].class)
+		                                               .toByteArray(new Track[]{ track, track }) );
+		Assert.assertEquals( unbound.size(), 2 );
+		Object[] fields = (Object[])unbound.get( 1 );
+		Assert.assertEquals( fields[2], "alpha" );
+		Assert.assertEquals( (double[])fields[3], track.samples );
+		Assert.assertEquals( ((Enumerator)fields[4]).getName(), "Firm" );
+	}
+
+	/**
+	 * Variant records select the alternative from the discriminant, and reject data that
+	 * is cut short.
+	 */
+	@Test
+	public void testVariantRecord() throws Exception
+	{
+		ObjectModel model = createModel();
+		DatatypeCodec<Object> codec = factory.createCodec( model, "Report" );
+		
+		byte[] estimate = codec.toByteArray( new Object[]{ "Tentative", 0.25 } );
+		Assert.assertEquals( estimate.length, 12 );
+		Object[] decoded = (Object[])codec.decode( estimate );
+		Assert.assertEquals( ((Enumerator)decoded[0]).getName(), "Tentative" );
+		Assert.assertEquals( decoded[1], 0.25 );
+		
+		// unbound records are Object[] in FOM field order
+		Object[] track = { 1.0, 2, "b", new double[0], "Tentative" };
+		byte[] confirmed = codec.toByteArray( new Object[]{ TrackState.Firm, track } );
+		Report report = factory.createCodec(model,"Report",Report.class).decode( confirmed );
+		Assert.assertEquals( report.state, TrackState.Firm );
+		Assert.assertEquals( report.confirmed.name, "b" );
+		Assert.assertEquals( report.estimate, 0.0 );
+		
+		// a record of the wrong shape, or data that is cut short, is rejected
+		try
+		{
+			codec.toByteArray( new Object[]{ "Firm", new Object[]{ 1.0 } } );
+			Assert.fail( "Expected an EncoderException for a short record" );
+		}
+		catch( EncoderException ee )
+		{
+			// PASS
+		}
+		
+		try
+		{
+			codec.decode( Arrays.copyOf(confirmed,confirmed.length-1) );
+			Assert.fail( "Expected a DecoderException for a truncated buffer" );
+		}
+		catch( DecoderException de )
+		{
+			// PASS
+		}
+	}
+
+	/**
+	 * Little endian basic types, on their own and in arrays, must give the same bytes as the
+	 * little endian data elements.
+	 */
+	@Test
+	public void testLittleEndian() throws Exception
+	{
+		ObjectModel model = createModel();
+		model.addDatatype( new FixedRecordType("Reading",
+		                                       new Field("Count", model.getDatatype("HLAinteger16LE")),
+		                                       new Field("Value", model.getDatatype("HLAinteger32LE")),
+		                                       new Field("Scale", model.getDatatype("HLAfloat64LE"))) );
+		model.addDatatype( new ArrayType("LittleInts",model.getDatatype("HLAinteger32LE")) );
+		
+		HLA1516eFixedRecord record = new HLA1516eFixedRecord();
+		record.add( new HLA1516eInteger16LE((short)7) );
+		record.add( new HLA1516eInteger32LE(0x01020304) );
+		record.add( new HLA1516eFloat64LE(-2.5) );
+		DatatypeCodec<Object> codec = factory.createCodec( model, "Reading" );
+		byte[] encoded = codec.toByteArray( new Object[]{ (short)7, 0x01020304, -2.5 } );
+		Assert.assertEquals( encoded, record.toByteArray() );
+		Assert.assertEquals( (Object[])codec.decode(encoded), new Object[]{ (short)7, 0x01020304, -2.5 } );
+		
+		HLAvariableArray<HLAinteger32LE> array =
+			factory.createHLAvariableArray( i -> new HLA1516eInteger32LE(),
+			                                new HLA1516eInteger32LE(1), new HLA1516eInteger32LE(-2) );
+		DatatypeCodec<int[]> ints = factory.createCodec( model, "LittleInts", int[].class );
+		encoded = ints.toByteArray( new int[]{ 1, -2 } );
+		Assert.assertEquals( encoded, array.toByteArray() );
+		Assert.assertEquals( ints.decode(encoded), new int[]{ 1, -2 } );
+	}
+
+	/**
+	 * Enumerated types bound to a number (or a numeric field) carry the raw enumerator value
+	 */
+	@Test
+	public void testEnumAsNumber() throws Exception
+	{
+		ObjectModel model = createModel();
+		DatatypeCodec<Integer> codec = factory.createCodec( model, "TrackState", Integer.class );
+		byte[] encoded = codec.toByteArray( 5 );
+		Assert.assertEquals( encoded, new HLA1516eInteger32BE(5).toByteArray() );
+		Assert.assertEquals( codec.decode(encoded), Integer.valueOf(5) );
+		Assert.assertEquals( codec.toByteArray(5), factory.createCodec(model,"TrackState").toByteArray("Firm") );
+		
+		// values that have no enumerator still come through as numbers
+		Assert.assertEquals( codec.decode(new HLA1516eInteger32BE(9).toByteArray()), Integer.valueOf(9) );
+		
+		model.addDatatype( new FixedRecordType("Status", new Field("State", model.getDatatype("TrackState"))) );
+		Status status = factory.createCodec( model, "Status", Status.class ).decode( encoded );
+		Assert.assertEquals( status.state, 5 );
+	}
+
+	/**
+	 * Arrays of octets are moved as a byte[], matching HLAopaqueData
+	 */
+	@Test
+	public void testOctetArray() throws Exception
+	{
+		ObjectModel model = createModel();
+		model.addDatatype( new ArrayType("Blob",model.getDatatype("HLAoctet")) );
+		byte[] value = { 0, 1, (byte)0xff, 42 };
+		byte[] expected = new HLA1516eOpaqueData( value ).toByteArray();
+		
+		for( String datatype : new String[]{ "Blob", "HLAopaqueData" } )
+		{
+			DatatypeCodec<byte[]> codec = factory.createCodec( model, datatype, byte[].class );
+			byte[] encoded = codec.toByteArray( value );
+			Assert.assertEquals( encoded, expected, datatype );
+			Assert.assertEquals( codec.decode(encoded), value, datatype );
+			Assert.assertEquals( factory.createCodec(model,datatype).decode(encoded), value, datatype );
+		}
+	}
+
+	/**
+	 * Arrays of ASCII or unicode characters are moved as a String, matching the string elements
+	 */
+	@Test
+	public void testCharArray() throws Exception
+	{
+		ObjectModel model = createModel();
+		DatatypeCodec<String> ascii = factory.createCodec( model, "HLAASCIIstring", String.class );
+		byte[] encoded = ascii.toByteArray( "portico" );
+		Assert.assertEquals( encoded, new HLA1516eASCIIstring("portico").toByteArray() );
+		Assert.assertEquals( ascii.decode(encoded), "portico" );
+		Assert.assertEquals( ascii.getEncodedLength("portico"), encoded.length );
+		
+		DatatypeCodec<String> unicode = factory.createCodec( model, "HLAunicodeString", String.class );
+		encoded = unicode.toByteArray( "h\u00e9llo" );
+		Assert.assertEquals( encoded, new HLA1516eUnicodeString("h\u00e9llo").toByteArray() );
+		Assert.assertEquals( unicode.decode(encoded), "h\u00e9llo" );
+		Assert.assertEquals( unicode.getEncodedLength("h\u00e9llo"), encoded.length );
+	}
+
+	/**
+	 * Arrays of int and long are moved in bulk, matching the primitive array elements
+	 */
+	@Test
+	public void testPrimitiveArrays() throws Exception
+	{
+		ObjectModel model = createModel();
+		model.addDatatype( new ArrayType("Ints",model.getDatatype("HLAinteger32BE")) );
+		model.addDatatype( new ArrayType("Longs",model.getDatatype("HLAinteger64BE")) );
+		
+		int[] ints = { 0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		DatatypeCodec<int[]> intCodec = factory.createCodec( model, "Ints", int[].class );
+		byte[] encoded = intCodec.toByteArray( ints );
+		Assert.assertEquals( encoded, new HLA1516eInteger32BEArray(ints).toByteArray() );
+		Assert.assertEquals( intCodec.decode(encoded), ints );
+		Assert.assertEquals( (int[])factory.createCodec(model,"Ints").decode(encoded), ints );
+		
+		long[] longs = { 1L, -1L, Long.MAX_VALUE, Long.MIN_VALUE };
+		DatatypeCodec<long[]> longCodec = factory.createCodec( model, "Longs", long[].class );
+		encoded = longCodec.toByteArray( longs );
+		Assert.assertEquals( encoded, new HLA1516eInteger64BEArray(longs).toByteArray() );
+		Assert.assertEquals( longCodec.decode(encoded), longs );
+		Assert.assertEquals( longCodec.toByteArray(new long[0]), new HLA1516eInteger64BEArray().toByteArray() );
+	}
+
+	/**
+	 * Variant records must give the same bytes as the variant record data element
+	 */
+	@Test
+	public void testVariantRecordMatchesDataElements() throws Exception
+	{
+		ObjectModel model = createModel();
+		DatatypeCodec<Object> codec = factory.createCodec( model, "Report" );
+		
+		// data elements don't compare by value, so the variant is keyed by the discriminant itself
+		HLAinteger32BE tentative = new HLA1516eInteger32BE( 0 );
+		HLAvariantRecord<HLAinteger32BE> record = factory.createHLAvariantRecord( tentative );
+		record.setVariant( tentative, new HLA1516eFloat64BE(0.25) );
+		byte[] encoded = codec.toByteArray( new Object[]{ "Tentative", 0.25 } );
+		Assert.assertEquals( encoded, record.toByteArray() );
+		Assert.assertEquals( codec.getEncodedLength(new Object[]{ "Tentative", 0.25 }), encoded.length );
+		
+		HLAinteger32BE discriminant = new HLA1516eInteger32BE();
+		HLAvariantRecord<HLAinteger32BE> decoded = factory.createHLAvariantRecord( discriminant );
+		decoded.setVariant( discriminant, new HLA1516eFloat64BE() );
+		decoded.decode( encoded );
+		Assert.assertEquals( discriminant.getValue(), 0 );
+		Assert.assertEquals( ((HLA1516eFloat64BE)decoded.getValue()).getValue(), 0.25 );
+	}
+
+	/**
+	 * Codecs are cached for each model, but the cache must not keep a model alive
+	 */
+	@Test
+	public void testCodecCacheIsWeakPerModel() throws Exception
+	{
+		ObjectModel first = createModel();
+		ObjectModel second = createModel();
+		DatatypeCodec<Object> codec = factory.createCodec( first, "Track" );
+		Assert.assertSame( factory.createCodec(first,"Track"), codec );
+		Assert.assertNotSame( factory.createCodec(second,"Track"), codec );
+		Assert.assertNotSame( factory.createCodec(first,"Track",Track.class), codec );
+		
+		WeakReference<ObjectModel> reference = new WeakReference<>( first );
+		first = null;
+		codec = null;
+		for( int i = 0; i < 50 && reference.get() != null; i++ )
+		{
+			System.gc();
+			Thread.sleep( 10 );
+		}
+		
+		Assert.assertNull( reference.get(), "Codec cache is holding on to the object model" );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	public enum TrackState { Tentative, Firm };
+
+	public static class Track
+	{
+		private double latitude;
+		private int count;
+		private String name;
+		private double[] samples;
+		private TrackState state;
+
+		public Track()
+		{
+		}
+
+		public Track( double latitude, int count, String name, TrackState state, double... samples )
+		{
+			this.latitude = latitude;
+			this.count = count;
+			this.name = name;
+			this.state = state;
+			this.samples = samples;
+		}
+	}
+
+	public static class Status
+	{
+		private long state;
+	}
+
+	public static class Report
+	{
+		private TrackState state;
+		private double estimate;
+		private Track confirmed;
+	}
+}
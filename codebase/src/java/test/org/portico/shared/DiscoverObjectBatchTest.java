@@ -0,0 +1,92 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.HashMap;
+import java.util.List;
+
+import org.portico.lrc.utils.MessageHelpers;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.network.CallType;
+import org.portico2.common.services.object.msg.DiscoverObject;
+import org.portico2.common.services.object.msg.DiscoverObjectBatch;
+import org.portico2.common.services.object.msg.UpdateAttributes;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"DiscoverObjectBatchTest","shared"})
+public class DiscoverObjectBatchTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * A batch should survive the trip through serialization and then expand into one discovery
+	 * for each instance, plus a reflection for those instances that carried values.
+	 */
+	@Test
+	public void testSerializeAndExpand()
+	{
+		HashMap<Integer,byte[]> values = new HashMap<>();
+		values.put( 10, "ten".getBytes() );
+		values.put( 11, new byte[0] );
+
+		DiscoverObjectBatch original = new DiscoverObjectBatch( 5 );
+		original.setSourceFederate( 1 );
+		original.setTargetFederation( 2 );
+		original.setTargetFederate( 3 );
+		original.addObject( 100, "first" );
+		original.addObject( 101, "second", values );
+		original.addObject( 102, "third", new HashMap<>() );
+
+		byte[] deflated = MessageHelpers.deflate2( original, CallType.Notification, 0 );
+		DiscoverObjectBatch inflated = MessageHelpers.inflate2( deflated, DiscoverObjectBatch.class );
+		Assert.assertEquals( inflated.getClassHandle(), 5 );
+		Assert.assertEquals( inflated.size(), 3 );
+
+		List<PorticoMessage> messages = inflated.expand();
+		Assert.assertEquals( messages.size(), 4 );
+		DiscoverObject discover = (DiscoverObject)messages.get( 0 );
+		Assert.assertEquals( discover.getObjectHandle(), 100 );
+		Assert.assertEquals( discover.getObjectName(), "first" );
+		Assert.assertEquals( discover.getClassHandle(), 5 );
+		Assert.assertEquals( discover.getSourceFederate(), 1 );
+		Assert.assertEquals( discover.getTargetFederation(), 2 );
+		Assert.assertFalse( discover.isImmediateProcessingRequired() );
+
+		Assert.assertEquals( ((DiscoverObject)messages.get(1)).getObjectHandle(), 101 );
+		UpdateAttributes update = (UpdateAttributes)messages.get( 2 );
+		Assert.assertEquals( update.getObjectId(), 101 );
+		Assert.assertEquals( update.getAttributes().get(10), "ten".getBytes() );
+		Assert.assertEquals( update.getAttributes().get(11).length, 0 );
+		Assert.assertEquals( ((DiscoverObject)messages.get(3)).getObjectHandle(), 102 );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -0,0 +1,285 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.portico.lrc.compat.JRTIinternalError;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.PorticoConstants;
+import org.portico2.common.messaging.MessageContext;
+import org.portico2.common.network.CallType;
+import org.portico2.common.network.Connection;
+import org.portico2.common.network.Connection.Host;
+import org.portico2.common.network.Header;
+import org.portico2.common.network.IApplicationReceiver;
+import org.portico2.common.network.Message;
+import org.portico2.common.network.configuration.ConnectionConfiguration;
+import org.portico2.common.network.configuration.protocol.EncryptionConfiguration;
+import org.portico2.common.network.configuration.protocol.ProtocolConfiguration;
+import org.portico2.common.network.configuration.transport.JvmConfiguration;
+import org.portico2.common.network.protocol.Protocol;
+import org.portico2.common.network.protocol.encryption.CipherMode;
+import org.portico2.common.network.protocol.encryption.EncryptionProtocol;
+import org.portico2.common.services.federation.msg.DestroyFederation;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"EncryptionProtocolTest","shared"})
+public class EncryptionProtocolTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final int THREADS = 4;
+	private static final int MESSAGES = 2000; // per thread
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Encrypt and then decrypt a message with each of the supported modes, making sure it
+	 * comes out the same as it went in.
+	 */
+	@Test
+	public void testRoundTripAllModes() throws Exception
+	{
+		for( CipherMode mode : CipherMode.values() )
+		{
+			Capture capture = new Capture();
+			EncryptionProtocol protocol = newProtocol( mode, capture );
+			
+			Message original = newMessage( "federation-"+mode );
+			byte[] plain = original.getBuffer().clone();
+			protocol.down( original );
+			
+			Message encrypted = capture.take();
+			Assert.assertTrue( encrypted.getHeader().isEncrypted(), mode.toString() );
+			Assert.assertEquals( encrypted.getLength(),
+			                     plain.length + mode.getIvSize() + mode.getTagSize(), mode.toString() );
+
+			protocol.up( new Message(encrypted.getBuffer().clone()) );
+			Message decrypted = capture.take();
+			Assert.assertFalse( decrypted.getHeader().isEncrypted(), mode.toString() );
+			Assert.assertEquals( decrypted.getBuffer(), plain, mode.toString() );
+			Assert.assertEquals( decrypted.inflateAsPorticoMessage(DestroyFederation.class).getFederationName(),
+			                     "federation-"+mode );
+		}
+	}
+
+	/**
+	 * GCM is authenticated, so a message that was changed on the way should be rejected
+	 */
+	@Test
+	public void testGcmRejectsTamperedMessage() throws Exception
+	{
+		Capture capture = new Capture();
+		EncryptionProtocol protocol = newProtocol( CipherMode.GCM, capture );
+		protocol.down( newMessage("federation") );
+		
+		byte[] encrypted = capture.take().getBuffer().clone();
+		encrypted[Header.HEADER_LENGTH+2] ^= 0x01;
+		try
+		{
+			protocol.up( new Message(encrypted) );
+			Assert.fail( "Tampered message was decrypted without error" );
+		}
+		catch( JRTIinternalError rtie )
+		{
+			// success!
+		}
+	}
+
+	/**
+	 * In GCM mode the header is authenticated too. A changed source or request id must be
+	 * rejected, but the target and flags that the best effort channel rewrites must not be.
+	 */
+	@Test
+	public void testGcmRejectsTamperedHeader() throws Exception
+	{
+		Capture capture = new Capture();
+		EncryptionProtocol protocol = newProtocol( CipherMode.GCM, capture );
+		protocol.down( newMessage("federation") );
+		byte[] sealed = capture.take().getBuffer();
+		
+		// source federate
+		byte[] encrypted = sealed.clone();
+		Header header = new Header( encrypted, 0 );
+		header.writeSourceAndTargetFederate( header.getSourceFederate()+1, header.getTargetFederate() );
+		assertRejected( protocol, encrypted );
+		
+		// request id
+		encrypted = sealed.clone();
+		encrypted[7] ^= 0x01;
+		assertRejected( protocol, encrypted );
+		
+		// target and best effort flag can still be changed on the way
+		encrypted = sealed.clone();
+		header = new Header( encrypted, 0 );
+		header.writeSourceAndTargetFederate( header.getSourceFederate(), PorticoConstants.RTI_HANDLE );
+		header.writeIsBestEffort( true );
+		protocol.up( new Message(encrypted) );
+		Assert.assertEquals( capture.take().inflateAsPorticoMessage(DestroyFederation.class).getFederationName(),
+		                     "federation" );
+	}
+
+	private void assertRejected( EncryptionProtocol protocol, byte[] encrypted )
+	{
+		try
+		{
+			protocol.up( new Message(encrypted) );
+			Assert.fail( "Message with a tampered header was decrypted without error" );
+		}
+		catch( JRTIinternalError rtie )
+		{
+			// success!
+		}
+	}
+
+	/**
+	 * When one message is forwarded to several connections that use the same key, it should
+	 * only be encrypted once and the result shared.
+	 */
+	@Test
+	public void testForwardedMessageIsEncryptedOnce() throws Exception
+	{
+		Capture capture = new Capture();
+		EncryptionProtocol first = newProtocol( CipherMode.GCM, capture );
+		EncryptionProtocol second = newProtocol( CipherMode.GCM, capture );
+		EncryptionProtocol otherMode = newProtocol( CipherMode.CTR, capture );
+		
+		Message source = newMessage( "federation" );
+		first.down( source.forward() );
+		second.down( source.forward() );
+		otherMode.down( source.forward() );
+		
+		byte[] fromFirst = capture.take().getBuffer();
+		byte[] fromSecond = capture.take().getBuffer();
+		byte[] fromOther = capture.take().getBuffer();
+		Assert.assertSame( fromSecond, fromFirst );
+		Assert.assertNotSame( fromOther, fromFirst );
+		
+		// and the shared copy should still decrypt fine
+		second.up( new Message(fromSecond.clone()) );
+		Assert.assertEquals( capture.take().inflateAsPorticoMessage(DestroyFederation.class).getFederationName(),
+		                     "federation" );
+	}
+
+	/**
+	 * Encrypt and decrypt from a number of threads at once through the same protocol
+	 */
+	@Test
+	public void testConcurrentEncryption() throws Exception
+	{
+		Capture capture = new Capture();
+		EncryptionProtocol protocol = newProtocol( CipherMode.GCM, capture );
+		List<Throwable> errors = Collections.synchronizedList( new ArrayList<>() );
+		
+		Thread[] threads = new Thread[THREADS];
+		for( int i = 0; i < THREADS; i++ )
+		{
+			final String name = "federation-"+i;
+			threads[i] = new Thread( () -> {
+				try
+				{
+					for( int count = 0; count < MESSAGES; count++ )
+					{
+						Message outgoing = newMessage( name );
+						protocol.down( outgoing );
+						Message incoming = new Message( outgoing.getBuffer().clone() );
+						protocol.up( incoming );
+						String received = incoming.inflateAsPorticoMessage(DestroyFederation.class).getFederationName();
+						if( received.equals(name) == false )
+							throw new IllegalStateException( "Expected "+name+", found "+received );
+					}
+				}
+				catch( Throwable throwable )
+				{
+					errors.add( throwable );
+				}
+			} );
+			threads[i].start();
+		}
+		
+		for( Thread thread : threads )
+			thread.join();
+		
+		Assert.assertTrue( errors.isEmpty(), "Errors during concurrent encryption: "+errors );
+	}
+
+	private EncryptionProtocol newProtocol( CipherMode mode, Capture capture ) throws Exception
+	{
+		ConnectionConfiguration configuration = new ConnectionConfiguration( "jvm" );
+		configuration.setTransportConfiguration( new JvmConfiguration(configuration) );
+		Connection connection = new Connection( Host.RTI, null );
+		connection.configure( configuration, new Receiver() );
+
+		EncryptionConfiguration encryption = new EncryptionConfiguration();
+		encryption.setEnabled( true );
+		encryption.setCipherMode( mode );
+		encryption.setSharedKey( "evelyn" );
+		
+		EncryptionProtocol protocol = new EncryptionProtocol();
+		protocol.configure( encryption, connection );
+		protocol.setNext( capture );
+		protocol.setPrevious( capture );
+		protocol.open();
+		return protocol;
+	}
+
+	private Message newMessage( String federation )
+	{
+		return new Message( new DestroyFederation(federation), CallType.ControlRequest, 0 );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/** Sits either side of the protocol and keeps whatever comes out of it */
+	private static class Capture extends Protocol
+	{
+		private List<Message> messages = Collections.synchronizedList( new ArrayList<>() );
+		
+		public void down( Message message ) { messages.add( message ); }
+		public void up( Message message )   { messages.add( message ); }
+		public Message take()               { return messages.remove( 0 ); }
+
+		public void open()  {}
+		public void close() {}
+		public String getName() { return "Capture"; }
+		protected void doConfigure( ProtocolConfiguration configuration, Connection connection ) {}
+	}
+
+	private static class Receiver implements IApplicationReceiver
+	{
+		public Logger getLogger() { return LogManager.getFormatterLogger( "portico" ); }
+		public boolean isReceivable( Header header ) { return true; }
+		public void receiveControlRequest( MessageContext context ) {}
+		public void receiveNotification( PorticoMessage message ) {}
+		public void receiveDataMessage( Message message ) {}
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.portico.impl.HLAVersion;
+import org.portico.lrc.compat.JException;
+import org.portico.utils.fom.FomCache;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.configuration.RID;
+import org.portico2.common.configuration.commandline.CommandLine;
+import org.portico2.common.network.configuration.ConnectionConfiguration;
+import org.portico2.common.network.configuration.transport.JvmConfiguration;
+import org.portico2.common.services.federation.msg.DestroyFederation;
+import org.portico2.rti.RTI;
+import org.portico2.rti.RtiConnection;
+import org.portico2.rti.federation.Federate;
+import org.portico2.rti.federation.Federation;
+import org.portico2.rti.federation.FederationManager;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups={"FederationRoutingTest","shared"})
+public class FederationRoutingTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private RTI rti;
+	private FederationManager manager;
+	private Federation federation;
+	private Capture first;   // federates one and two
+	private Capture second;  // federate three
+	private Capture third;   // federate four
+	private Federate[] federates;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@BeforeMethod(alwaysRun=true)
+	public void beforeMethod() throws Exception
+	{
+		// the federation never looks at the RID, but we can't make an RTI without one
+		Logger logger = LogManager.getFormatterLogger( "portico.rti" );
+		this.rti = new RTI( RID.loadRid(new CommandLine()) )
+		{
+			@Override
+			public Logger getLogger() { return logger; }
+		};
+
+		List<URL> modules = new ArrayList<>();
+		for( String name : Arrays.asList("RestaurantProcesses","RestaurantFood","RestaurantDrinks") )
+			modules.add( ClassLoader.getSystemResource("fom/ieee1516e/restaurant/"+name+".xml") );
+
+		this.manager = new FederationManager();
+		this.federation = manager.createFederation( rti,
+		                                            "routing",
+		                                            FomCache.parseAndMerge(modules),
+		                                            HLAVersion.IEEE1516e );
+
+		this.first = new Capture( rti );
+		this.second = new Capture( rti );
+		this.third = new Capture( rti );
+		this.federates = new Federate[]{ new Federate("one",first),
+		                                 new Federate("two",first),
+		                                 new Federate("three",second),
+		                                 new Federate("four",third) };
+		for( Federate federate : federates )
+			federation.joinFederate( federate );
+	}
+
+	@AfterMethod(alwaysRun=true)
+	public void afterMethod()
+	{
+		manager.destroyFederation( federation );
+	}
+
+	/////////////////////////////////////////////////////////////
+	////////////////////// Routing Modes ////////////////////////
+	/////////////////////////////////////////////////////////////
+	/**
+	 * A broadcast goes to every connection once, no matter how many federates sit on it
+	 */
+	@Test
+	public void testBroadcastReachesEveryConnection() throws Exception
+	{
+		PorticoMessage message = newMessage();
+		message.setTargetFederates();
+		send( message );
+
+		Assert.assertEquals( first.received, Collections.singletonList(message) );
+		Assert.assertEquals( second.received, Collections.singletonList(message) );
+		Assert.assertEquals( third.received, Collections.singletonList(message) );
+	}
+
+	/**
+	 * A message for one federate only goes to the connection that federate is using
+	 */
+	@Test
+	public void testSingleTargetReachesOnlyItsConnection() throws Exception
+	{
+		PorticoMessage message = newMessage();
+		message.setTargetFederate( handle(2) );
+		send( message );
+
+		Assert.assertTrue( first.received.isEmpty() );
+		Assert.assertEquals( second.received, Collections.singletonList(message) );
+		Assert.assertTrue( third.received.isEmpty() );
+	}
+
+	/**
+	 * A message for several federates goes to each of their connections once, even when some
+	 * of the targets share a connection, and nowhere else
+	 */
+	@Test
+	public void testManyTargetsReachEachConnectionOnce() throws Exception
+	{
+		PorticoMessage message = newMessage();
+		message.setTargetFederates( handle(0), handle(1), handle(2) );
+		send( message );
+
+		Assert.assertEquals( first.received, Collections.singletonList(message) );
+		Assert.assertEquals( second.received, Collections.singletonList(message) );
+		Assert.assertTrue( third.received.isEmpty() );
+	}
+
+	/**
+	 * Targets that have resigned are skipped, and a connection that no federate uses any more
+	 * is left out of broadcasts
+	 */
+	@Test
+	public void testResignedTargetsAreSkipped() throws Exception
+	{
+		federation.resignFederate( federates[3] );
+
+		PorticoMessage single = newMessage();
+		single.setTargetFederate( handle(3) );
+		PorticoMessage many = newMessage();
+		many.setTargetFederates( new HashSet<>(Arrays.asList(handle(2),handle(3))) );
+		PorticoMessage broadcast = newMessage();
+		broadcast.setTargetFederates();
+		send( single, many, broadcast );
+
+		Assert.assertEquals( first.received, Collections.singletonList(broadcast) );
+		Assert.assertEquals( second.received, Arrays.asList(many,broadcast) );
+		Assert.assertTrue( third.received.isEmpty() );
+	}
+
+	/**
+	 * Queue the given messages and wait until the outgoing processor has dealt with all of them.
+	 * A broadcast fence is queued after them, and because the processor sends in order, once it
+	 * reaches a connection that is still in use, everything before it has been sent. The fence
+	 * is left out of what each connection received.
+	 */
+	private void send( PorticoMessage... messages ) throws Exception
+	{
+		for( PorticoMessage message : messages )
+			federation.queueControlMessage( message );
+
+		PorticoMessage fence = newMessage();
+		fence.setTargetFederates();
+		federation.queueControlMessage( fence );
+		PorticoMessage next = null;
+		while( next != fence )
+		{
+			next = first.queue.poll( 5, TimeUnit.SECONDS );
+			Assert.assertNotNull( next, "Outgoing processor stalled" );
+		}
+
+		for( Capture capture : Arrays.asList(first,second,third) )
+		{
+			capture.queue.clear();
+			capture.received.remove( fence );
+		}
+	}
+
+	private int handle( int index )
+	{
+		return federates[index].getFederateHandle();
+	}
+
+	private PorticoMessage newMessage()
+	{
+		return new DestroyFederation( "routing" );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+
+	///////////////////////////////////////////////////////////////////////////////////////
+	///  Private Class: Capture   /////////////////////////////////////////////////////////
+	///////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Records the notifications sent down it rather than putting them on the wire. Messages
+	 * are only ever sent from the outgoing processor thread, but are read by the test thread.
+	 */
+	private static class Capture extends RtiConnection
+	{
+		private List<PorticoMessage> received;
+		private BlockingQueue<PorticoMessage> queue; // lets the test wait for a message to arrive
+
+		public Capture( RTI rti ) throws Exception
+		{
+			super( rti, configuration() );
+			this.received = Collections.synchronizedList( new ArrayList<>() );
+			this.queue = new LinkedBlockingQueue<>();
+		}
+
+		@Override
+		public void sendNotification( PorticoMessage message ) throws JException
+		{
+			received.add( message );
+			queue.add( message );
+		}
+
+		private static ConnectionConfiguration configuration()
+		{
+			ConnectionConfiguration configuration = new ConnectionConfiguration( "jvm" );
+			configuration.setTransportConfiguration( new JvmConfiguration(configuration) );
+			return configuration;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ *   Copyright 2019 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.portico.impl.hla1516e.fomparser.FOM;
+import org.portico.lrc.model.ACMetadata;
+import org.portico.lrc.model.ICMetadata;
+import org.portico.lrc.model.ModelMerger;
+import org.portico.lrc.model.OCMetadata;
+import org.portico.lrc.model.ObjectModel;
+import org.portico.lrc.model.PCMetadata;
+import org.portico.lrc.model.datatype.IDatatype;
+import org.portico.utils.fom.FomCache;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+
+@Test(groups={"FomLoadingTest","shared"})
+public class FomLoadingTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private List<URL> modules;
+	private File cacheDirectory;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@BeforeMethod(alwaysRun=true)
+	public void beforeMethod() throws Exception
+	{
+		this.modules = new ArrayList<URL>();
+		for( String name : Arrays.asList("RestaurantProcesses","RestaurantFood",
+		                                 "RestaurantDrinks","RestaurantSoup") )
+		{
+			modules.add( ClassLoader.getSystemResource("fom/ieee1516e/restaurant/"+name+".xml") );
+		}
+		
+		this.cacheDirectory = Files.createTempDirectory( "fomcache" ).toFile();
+	}
+
+	@AfterMethod(alwaysRun=true)
+	public void afterMethod()
+	{
+		new FomCache( cacheDirectory ).clear();
+		cacheDirectory.delete();
+	}
+
+	/////////////////////////////////////////////////////////////
+	/////////////////////// Parsing Tests ///////////////////////
+	/////////////////////////////////////////////////////////////
+	/**
+	 * The streaming parser must build exactly the same model (right down to the handles) as
+	 * processing a full DOM of each module does.
+	 */
+	@Test
+	public void testStreamingParserMatchesDom() throws Exception
+	{
+		// DOM, the long way around
+		List<ObjectModel> foms = new ArrayList<ObjectModel>();
+		for( URL module : modules )
+		{
+			try( InputStream stream = module.openStream() )
+			{
+				Document document =
+					DocumentBuilderFactory.newInstance().newDocumentBuilder().parse( stream );
+				foms.add( new FOM().process(document.getDocumentElement()) );
+			}
+		}
+		
+		ObjectModel expected = ModelMerger.merge( foms );
+		ObjectModel.mommify( expected );
+		ObjectModel.resolveSymbols( expected );
+		
+		// streamed
+		ObjectModel streamed = FomCache.parseAndMerge( modules );
+		assertSameModel( streamed, expected );
+	}
+
+	/////////////////////////////////////////////////////////////
+	//////////////////////// Cache Tests ////////////////////////
+	/////////////////////////////////////////////////////////////
+	@Test
+	public void testCacheRoundTrip() throws Exception
+	{
+		FomCache cache = new FomCache( cacheDirectory );
+		ObjectModel parsed = cache.getMergedModel( modules );
+		File[] entries = cacheDirectory.listFiles();
+		Assert.assertEquals( entries.length, 1, "Expected a single cache entry" );
+		
+		// second time around comes from the cache
+		ObjectModel cached = cache.getMergedModel( modules );
+		Assert.assertNotSame( cached, parsed );
+		assertSameModel( cached, parsed );
+		Assert.assertEquals( cached.getFileName(), modules.get(0).toString() );
+		Assert.assertNotNull( cached.getObjectClass("HLAobjectRoot.Food.MainCourse") );
+		
+		// a different module order is a different model
+		List<URL> reordered = new ArrayList<URL>( modules );
+		reordered.add( reordered.remove(0) );
+		cache.getMergedModel( reordered );
+		Assert.assertEquals( cacheDirectory.listFiles().length, 2 );
+		
+		// a broken entry is thrown away and rebuilt
+		try( FileOutputStream output = new FileOutputStream(entries[0]) )
+		{
+			output.write( new byte[]{ 1, 2, 3, 4 } );
+		}
+		
+		ObjectModel rebuilt = cache.getMergedModel( modules );
+		assertSameModel( rebuilt, parsed );
+		Assert.assertTrue( entries[0].length() > 4, "Broken cache entry wasn't replaced" );
+	}
+
+	/**
+	 * Join modules are cached on their own, parsed but not merged, and separately from any
+	 * merged model that uses the same module.
+	 */
+	@Test
+	public void testModuleRoundTrip() throws Exception
+	{
+		FomCache cache = new FomCache( cacheDirectory );
+		URL module = modules.get( 1 );
+		ObjectModel parsed = cache.getModule( module );
+		Assert.assertEquals( cacheDirectory.listFiles().length, 1, "Expected a single cache entry" );
+
+		ObjectModel cached = cache.getModule( module );
+		Assert.assertNotSame( cached, parsed );
+		Assert.assertEquals( describe(cached), describe(parsed) );
+		Assert.assertEquals( cached.getFileName(), module.toString() );
+		Assert.assertNull( cached.getObjectClass("HLAobjectRoot.HLAmanager"), "Join module was mommified" );
+
+		cache.getMergedModel( modules.subList(1,2) );
+		Assert.assertEquals( cacheDirectory.listFiles().length, 2, "Module and merged entries collided" );
+	}
+
+	/**
+	 * A cache directory we create should only be usable by us, and one that other users can
+	 * write to must be ignored.
+	 */
+	@Test
+	public void testCacheDirectoryPermissions() throws Exception
+	{
+		File created = new File( cacheDirectory, "created" );
+		new FomCache( created ).getMergedModel( modules );
+		Assert.assertEquals( PosixFilePermissions.toString(Files.getPosixFilePermissions(created.toPath())),
+		                     "rwx------" );
+		Assert.assertEquals( created.listFiles().length, 1 );
+		new FomCache( created ).clear();
+		created.delete();
+
+		File shared = new File( cacheDirectory, "shared" );
+		shared.mkdir();
+		Files.setPosixFilePermissions( shared.toPath(), PosixFilePermissions.fromString("rwxrwxrwx") );
+		ObjectModel model = new FomCache( shared ).getMergedModel( modules );
+		Assert.assertNotNull( model.getObjectClass("HLAobjectRoot.Food.MainCourse") );
+		Assert.assertEquals( shared.listFiles().length, 0, "Wrote to a directory others can write to" );
+		shared.delete();
+	}
+
+	private void assertSameModel( ObjectModel actual, ObjectModel expected )
+	{
+		Assert.assertEquals( describe(actual), describe(expected) );
+
+		Assert.assertEquals( actual.getDatatypes().size(), expected.getDatatypes().size() );
+		for( IDatatype datatype : expected.getDatatypes() )
+		{
+			// variant alternatives only have identity equality, so compare name and kind
+			IDatatype other = actual.getDatatype( datatype.getName() );
+			Assert.assertNotNull( other, "Missing datatype "+datatype.getName() );
+			Assert.assertEquals( other.getDatatypeClass(), datatype.getDatatypeClass() );
+			Assert.assertEquals( other.getClass(), datatype.getClass() );
+		}
+	}
+
+	/**
+	 * Flatten the class hierarchy into a sorted list of lines, so that two models can be compared
+	 * in full. Handles are included, but can't be used as keys as MOM handles overlap.
+	 */
+	private List<String> describe( ObjectModel model )
+	{
+		List<String> lines = new ArrayList<String>();
+		for( OCMetadata oc : model.getAllObjectClasses() )
+		{
+			String name = oc.getQualifiedName();
+			lines.add( name+" "+oc.getHandle()+" "+oc.getSharing() );
+			for( ACMetadata ac : oc.getDeclaredAttributes() )
+			{
+				lines.add( name+"."+ac.getName()+" "+ac.getHandle()+" "+ac.getOrder()+" "+
+				           ac.getTransport()+" "+ac.getSharing()+" "+ac.getDatatype().getName() );
+			}
+		}
+
+		for( ICMetadata ic : model.getAllInteractionClasses() )
+		{
+			String name = ic.getQualifiedName();
+			lines.add( name+" "+ic.getHandle()+" "+ic.getOrder()+" "+ic.getTransport()+" "+
+			           ic.getSharing() );
+			for( PCMetadata pc : ic.getDeclaredParameters() )
+				lines.add( name+"."+pc.getName()+" "+pc.getHandle()+" "+pc.getDatatype().getName() );
+		}
+
+		Collections.sort( lines );
+		return lines;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
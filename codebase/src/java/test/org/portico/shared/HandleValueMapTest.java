@@ -0,0 +1,178 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.portico.impl.hla1516e.types.HLA1516eAttributeHandleValueMap;
+import org.portico.impl.hla1516e.types.HLA1516eHandle;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import hla.rti1516e.AttributeHandle;
+
+@Test(groups={"HandleValueMapTest","shared"})
+public class HandleValueMapTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Fill the map well past its initial size, remove every other entry and make sure that
+	 * lookups, iteration and conversion back to a java map all still agree with a HashMap.
+	 */
+	@Test
+	public void testAgainstHashMap() throws Exception
+	{
+		HLA1516eAttributeHandleValueMap map = new HLA1516eAttributeHandleValueMap();
+		HashMap<Integer,byte[]> expected = new HashMap<>();
+		for( int i = 1; i <= 500; i++ )
+		{
+			byte[] value = (""+i).getBytes();
+			map.put( HLA1516eHandle.valueOf(i), value );
+			expected.put( i, value );
+		}
+
+		// replacing doesn't change the size
+		byte[] replacement = "replaced".getBytes();
+		Assert.assertNotNull( map.put(HLA1516eHandle.valueOf(7),replacement) );
+		expected.put( 7, replacement );
+
+		// remove every other one, half through the map and half through the iterator
+		for( int i = 2; i <= 250; i += 2 )
+		{
+			Assert.assertNotNull( map.remove(HLA1516eHandle.valueOf(i)) );
+			expected.remove( i );
+		}
+
+		Iterator<AttributeHandle> iterator = map.keySet().iterator();
+		while( iterator.hasNext() )
+		{
+			int handle = HLA1516eHandle.fromHandle( iterator.next() );
+			if( handle > 250 && handle % 2 == 0 )
+			{
+				iterator.remove();
+				expected.remove( handle );
+			}
+		}
+
+		Assert.assertEquals( map.size(), expected.size() );
+		for( int i = 1; i <= 500; i++ )
+		{
+			Assert.assertSame( map.get(HLA1516eHandle.valueOf(i)), expected.get(i), "handle "+i );
+			Assert.assertSame( map.get(i), expected.get(i), "handle "+i );
+		}
+
+		int count = 0;
+		for( Map.Entry<AttributeHandle,byte[]> entry : map.entrySet() )
+		{
+			Assert.assertSame( entry.getValue(), expected.get(HLA1516eHandle.fromHandle(entry.getKey())) );
+			count++;
+		}
+
+		Assert.assertEquals( count, expected.size() );
+		Assert.assertEquals( map.toJavaMap(), expected );
+		Assert.assertEquals( HLA1516eAttributeHandleValueMap.toJavaMap(map), expected );
+	}
+
+	/**
+	 * Clones and serialized copies should have the same contents, and should not be affected
+	 * by changes to the original.
+	 */
+	@Test
+	public void testCloneAndSerialize() throws Exception
+	{
+		HLA1516eAttributeHandleValueMap map = new HLA1516eAttributeHandleValueMap();
+		map.put( 1, "one".getBytes() );
+		map.put( 2, null );
+		map.put( 3, "three".getBytes() );
+		map.remove( 3 );
+
+		HLA1516eAttributeHandleValueMap clone = (HLA1516eAttributeHandleValueMap)map.clone();
+		map.put( 4, "four".getBytes() );
+		Assert.assertEquals( clone.size(), 2 );
+		Assert.assertFalse( clone.containsKey(4) );
+		Assert.assertTrue( clone.containsKey(2) );
+		Assert.assertNull( clone.get(2) );
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream( bytes );
+		out.writeObject( clone );
+		out.close();
+
+		ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream(bytes.toByteArray()) );
+		HLA1516eAttributeHandleValueMap copy = (HLA1516eAttributeHandleValueMap)in.readObject();
+		Assert.assertEquals( copy.size(), 2 );
+		Assert.assertEquals( new String(copy.get(1)), "one" );
+		Assert.assertTrue( copy.containsKey(2) );
+		Assert.assertNull( copy.get(2) );
+	}
+
+	/**
+	 * Small handles should come back as the same instance each time
+	 */
+	@Test
+	public void testInternedHandles()
+	{
+		Assert.assertSame( HLA1516eHandle.valueOf(42), HLA1516eHandle.valueOf(42) );
+		Assert.assertEquals( HLA1516eHandle.valueOf(Integer.MAX_VALUE), new HLA1516eHandle(Integer.MAX_VALUE) );
+	}
+
+	/**
+	 * Interned handles are shared, so nobody may be able to decode a new value into one.
+	 * Decoding gives back the shared instance for the value instead.
+	 */
+	@Test
+	public void testInternedHandlesAreImmutable()
+	{
+		HLA1516eHandle shared = HLA1516eHandle.valueOf( 42 );
+		byte[] buffer = HLA1516eHandle.valueOf( 43 ).getBytes();
+		try
+		{
+			shared.decode( buffer, 0 );
+			Assert.fail( "Expected decoding into a handle to be rejected" );
+		}
+		catch( UnsupportedOperationException uoe )
+		{
+			// expected
+		}
+
+		Assert.assertEquals( shared, HLA1516eHandle.valueOf(42) );
+		Assert.assertEquals( HLA1516eHandle.decode(buffer), 43 );
+		Assert.assertSame( HLA1516eHandle.decode(AttributeHandle.class,buffer,0), HLA1516eHandle.valueOf(43) );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
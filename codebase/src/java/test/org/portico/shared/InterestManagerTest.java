@@ -0,0 +1,294 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.portico.impl.HLAVersion;
+import org.portico.lrc.model.ACMetadata;
+import org.portico.lrc.model.ICMetadata;
+import org.portico.lrc.model.OCMetadata;
+import org.portico.lrc.model.ObjectModel;
+import org.portico2.common.services.ddm.data.RegionStore;
+import org.portico2.common.services.pubsub.data.InterestManager;
+import org.portico2.common.services.pubsub.data.Subscribers;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups={"InterestManagerTest","shared"})
+public class InterestManagerTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private ObjectModel model;
+	private OCMetadata root;
+	private OCMetadata vehicle;
+	private OCMetadata car;
+	private OCMetadata building;
+	private ICMetadata fire;
+	private ICMetadata missile;
+	private InterestManager interests;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@BeforeMethod(alwaysRun=true)
+	public void beforeMethod()
+	{
+		this.model = new ObjectModel( HLAVersion.IEEE1516e );
+		
+		// objects: root -> Vehicle -> Car, root -> Building
+		this.root = model.newObject( "HLAobjectRoot" );
+		model.addObjectClass( root );
+		model.setObjectRoot( root );
+		this.vehicle = newObject( "Vehicle", root );
+		this.car = newObject( "Car", vehicle );
+		this.building = newObject( "Building", root );
+		
+		// interactions: root -> Fire -> Missile
+		ICMetadata iroot = model.newInteraction( "HLAinteractionRoot" );
+		model.addInteractionClass( iroot );
+		model.setInteractionRoot( iroot );
+		this.fire = newInteraction( "Fire", iroot );
+		this.missile = newInteraction( "Missile", fire );
+		
+		this.interests = new InterestManager( model, new RegionStore() );
+		this.interests.setFOM( model );
+	}
+
+	private OCMetadata newObject( String name, OCMetadata parent )
+	{
+		OCMetadata objectClass = model.newObject( name );
+		objectClass.setParent( parent );
+		model.addObjectClass( objectClass );
+		return objectClass;
+	}
+
+	private ICMetadata newInteraction( String name, ICMetadata parent )
+	{
+		ICMetadata interactionClass = model.newInteraction( name );
+		interactionClass.setParent( parent );
+		model.addInteractionClass( interactionClass );
+		return interactionClass;
+	}
+
+	/////////////////////////////////////////////////////////////
+	/////////////////////// Object Routes ///////////////////////
+	/////////////////////////////////////////////////////////////
+	/**
+	 * Subscribing to a parent class routes its children to the federate as well, with the parent
+	 * as the discovery type. Classes outside the subtree must be left alone.
+	 */
+	@Test
+	public void testObjectSubscribersParentAndChild() throws Exception
+	{
+		Subscribers<OCMetadata> buildingBefore = interests.getObjectSubscribers( building );
+
+		interests.subscribeObjectClass( 1, vehicle.getHandle(), attributes() );
+		Assert.assertEquals( types(vehicle), map(1,vehicle) );
+		Assert.assertEquals( types(car), map(1,vehicle) );
+		Assert.assertTrue( interests.getObjectSubscribers(root).isEmpty() );
+		Assert.assertSame( interests.getObjectSubscribers(building), buildingBefore );
+
+		// a more specific subscription from another federate
+		interests.subscribeObjectClass( 2, car.getHandle(), attributes() );
+		Assert.assertEquals( types(vehicle), map(1,vehicle) );
+		Assert.assertEquals( types(car), map(1,vehicle,2,car) );
+
+		// federate 1 moves down to the child
+		interests.subscribeObjectClass( 1, car.getHandle(), attributes() );
+		Assert.assertEquals( types(car), map(1,car,2,car) );
+		interests.unsubscribeObjectClass( 1, vehicle.getHandle() );
+		Assert.assertTrue( interests.getObjectSubscribers(vehicle).isEmpty() );
+		Assert.assertEquals( types(car), map(1,car,2,car) );
+
+		// and back out of it
+		interests.unsubscribeObjectClass( 2, car.getHandle() );
+		interests.unsubscribeObjectClass( 1, car.getHandle() );
+		Assert.assertTrue( interests.getObjectSubscribers(car).isEmpty() );
+		Assert.assertSame( interests.getObjectSubscribers(building), buildingBefore );
+	}
+
+	/**
+	 * A class merged into the FOM after the index was built should still pick up the
+	 * subscriptions of its parents, and follow later changes.
+	 */
+	@Test
+	public void testObjectSubscribersForLateClass() throws Exception
+	{
+		interests.subscribeObjectClass( 1, vehicle.getHandle(), attributes() );
+		
+		OCMetadata truck = newObject( "Truck", vehicle );
+		Assert.assertEquals( types(truck), map(1,vehicle) );
+		
+		interests.unsubscribeObjectClass( 1, vehicle.getHandle() );
+		Assert.assertTrue( interests.getObjectSubscribers(truck).isEmpty() );
+	}
+
+	/////////////////////////////////////////////////////////////
+	//////////////////// Interaction Routes /////////////////////
+	/////////////////////////////////////////////////////////////
+	@Test
+	public void testInteractionSubscribersParentAndChild() throws Exception
+	{
+		interests.subscribeInteractionClass( 1, fire.getHandle() );
+		interests.subscribeInteractionClass( 2, missile.getHandle() );
+		Assert.assertEquals( interests.getInteractionSubscribers(fire).toMap(), map(1,fire) );
+		Assert.assertEquals( interests.getInteractionSubscribers(missile).toMap(), map(1,fire,2,missile) );
+
+		interests.unsubscribeInteractionClass( 1, fire.getHandle() );
+		Assert.assertTrue( interests.getInteractionSubscribers(fire).isEmpty() );
+		Assert.assertEquals( interests.getInteractionSubscribers(missile).toMap(), map(2,missile) );
+	}
+
+	/////////////////////////////////////////////////////////////
+	/////////////////////////// Resign //////////////////////////
+	/////////////////////////////////////////////////////////////
+	/**
+	 * Once a federate has resigned it must not be routed anything, but other federates'
+	 * subscriptions must stay as they were.
+	 */
+	@Test
+	public void testResignRemovesSubscriber() throws Exception
+	{
+		interests.subscribeObjectClass( 1, vehicle.getHandle(), attributes() );
+		interests.subscribeObjectClass( 2, car.getHandle(), attributes() );
+		interests.subscribeInteractionClass( 1, missile.getHandle() );
+		interests.subscribeInteractionClass( 2, fire.getHandle() );
+		interests.publishObjectClass( 1, building.getHandle(), attributes() );
+
+		interests.removeFederate( 1 );
+		Assert.assertTrue( interests.getObjectSubscribers(vehicle).isEmpty() );
+		Assert.assertEquals( types(car), map(2,car) );
+		Assert.assertEquals( interests.getInteractionSubscribers(missile).toMap(), map(2,fire) );
+		Assert.assertFalse( interests.isObjectClassSubscribed(1,car.getHandle()) );
+		Assert.assertFalse( interests.isObjectClassPublished(1,building.getHandle()) );
+		Assert.assertTrue( interests.getAllSubscribedInteractionClasses(1).isEmpty() );
+	}
+
+	/**
+	 * The RTI keeps the connections a class routes to with its subscribers snapshot. It must only
+	 * be built once per snapshot, and a changed subscription must give a snapshot without it.
+	 */
+	@Test
+	public void testDerivedValueKeptPerSnapshot() throws Exception
+	{
+		interests.subscribeObjectClass( 1, vehicle.getHandle(), attributes() );
+		Subscribers<OCMetadata> before = interests.getObjectSubscribers( car );
+		int[] builds = new int[1];
+		Function<Subscribers<?>,Set<Integer>> builder = subscribers -> {
+			builds[0]++;
+			return subscribers.toMap().keySet();
+		};
+
+		Assert.assertEquals( before.getDerived(builder), Collections.singleton(1) );
+		Assert.assertSame( before.getDerived(builder), before.getDerived(builder) );
+		Assert.assertEquals( builds[0], 1 );
+
+		interests.subscribeObjectClass( 2, car.getHandle(), attributes() );
+		Subscribers<OCMetadata> after = interests.getObjectSubscribers( car );
+		Assert.assertNotSame( after, before );
+		Assert.assertEquals( after.getDerived(builder), new HashSet<>(Arrays.asList(1,2)) );
+		Assert.assertEquals( builds[0], 2 );
+	}
+
+	/**
+	 * Object snapshots carry the attributes each federate is subscribed to, gathered from the
+	 * class and all its parents, so updates can be routed on them.
+	 */
+	@Test
+	public void testAttributeSubscribers() throws Exception
+	{
+		int speed = addAttribute( vehicle, "Speed" );
+		int gear = addAttribute( car, "Gear" );
+		int ptd = model.getPrivilegeToDelete();
+
+		interests.subscribeObjectClass( 1, vehicle.getHandle(), Collections.singleton(speed) );
+		interests.subscribeObjectClass( 2, car.getHandle(), Collections.singleton(gear) );
+		interests.subscribeObjectClass( 2, vehicle.getHandle(), Collections.singleton(ptd) );
+
+		Subscribers<OCMetadata> subscribers = interests.getObjectSubscribers( car );
+		Assert.assertTrue( subscribers.isPartial() );
+		int one = subscribers.indexOf( 1 );
+		int two = subscribers.indexOf( 2 );
+		Assert.assertTrue( subscribers.isSubscribed(one,new int[]{ speed }) );
+		Assert.assertFalse( subscribers.isSubscribed(one,new int[]{ gear, ptd }) );
+		Assert.assertTrue( subscribers.isSubscribed(two,new int[]{ speed, ptd }) ); // from parent
+		Assert.assertFalse( subscribers.isSubscribed(two,new int[]{ speed }) );
+
+		Assert.assertTrue( interests.isObjectClassSubscribed(2,car.getHandle(),new int[]{ gear }) );
+		Assert.assertFalse( interests.isObjectClassSubscribed(1,car.getHandle(),new int[]{ gear }) );
+		Assert.assertTrue( interests.isObjectClassSubscribed(1,car.getHandle(),null) );
+
+		// once everyone has every attribute there is nothing to filter
+		interests.subscribeObjectClass( 1, car.getHandle(), car.getAllAttributeHandles() );
+		interests.subscribeObjectClass( 2, car.getHandle(), car.getAllAttributeHandles() );
+		Assert.assertFalse( interests.getObjectSubscribers(car).isPartial() );
+
+		// interactions have no attributes to filter on
+		interests.subscribeInteractionClass( 1, fire.getHandle() );
+		Subscribers<ICMetadata> interactions = interests.getInteractionSubscribers( fire );
+		Assert.assertFalse( interactions.isPartial() );
+		Assert.assertTrue( interactions.isSubscribed(0,new int[]{ speed }) );
+	}
+
+	private int addAttribute( OCMetadata objectClass, String name )
+	{
+		ACMetadata attribute = model.newAttribute( name, null );
+		objectClass.addAttribute( attribute );
+		return attribute.getHandle();
+	}
+
+	private Map<Integer,OCMetadata> types( OCMetadata objectClass )
+	{
+		return interests.getObjectSubscribers( objectClass ).toMap();
+	}
+
+	private Set<Integer> attributes()
+	{
+		return Collections.singleton( model.getPrivilegeToDelete() );
+	}
+
+	/** Build a map of federate handle to type from alternating handle/type arguments */
+	@SuppressWarnings("unchecked")
+	private <T> Map<Integer,T> map( Object... values )
+	{
+		Map<Integer,T> map = new HashMap<>();
+		for( int i = 0; i < values.length; i += 2 )
+			map.put( (Integer)values[i], (T)values[i+1] );
+
+		return map;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
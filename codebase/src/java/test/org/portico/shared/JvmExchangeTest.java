@@ -0,0 +1,305 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.messaging.MessageContext;
+import org.portico2.common.network.CallType;
+import org.portico2.common.network.Connection;
+import org.portico2.common.network.Connection.Host;
+import org.portico2.common.network.Header;
+import org.portico2.common.network.IApplicationReceiver;
+import org.portico2.common.network.Message;
+import org.portico2.common.network.configuration.ConnectionConfiguration;
+import org.portico2.common.network.configuration.protocol.ProtocolConfiguration;
+import org.portico2.common.network.configuration.transport.JvmConfiguration;
+import org.portico2.common.network.protocol.Protocol;
+import org.portico2.common.services.federation.msg.DestroyFederation;
+import org.portico2.common.services.federation.msg.ResignFederation;
+import org.portico2.common.services.federation.msg.RtiProbe;
+import org.portico2.common.services.object.msg.SendInteraction;
+import org.portico2.common.services.object.msg.UpdateAttributes;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups={"JvmExchangeTest","shared"})
+public class JvmExchangeTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final int FEDERATION = 4242;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private List<Endpoint> endpoints;
+	private Endpoint rti;
+	private Endpoint first;
+	private Endpoint second;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@BeforeMethod(alwaysRun=true)
+	public void beforeMethod()
+	{
+		this.endpoints = new ArrayList<>();
+		this.rti = newEndpoint( Host.RTI, false );
+		this.first = newEndpoint( Host.LRC, false );
+		this.second = newEndpoint( Host.LRC, false );
+	}
+
+	@AfterMethod(alwaysRun=true)
+	public void afterMethod()
+	{
+		for( Endpoint endpoint : endpoints )
+			endpoint.connection.disconnect();
+	}
+
+	/////////////////////////////////////////////////////////////
+	//////////////////// Return Addressing //////////////////////
+	/////////////////////////////////////////////////////////////
+	/**
+	 * A response goes back to the LRC that made the request and no one else
+	 */
+	@Test
+	public void testResponseReturnsToRequester() throws Exception
+	{
+		MessageContext context = new MessageContext( new RtiProbe() );
+		first.connection.sendControlRequest( context );
+
+		Assert.assertTrue( context.isSuccessResponse(), "Request was not answered" );
+		Assert.assertEquals( rti.tap.callTypes(), Collections.singletonList(CallType.ControlRequest) );
+		Assert.assertEquals( first.tap.callTypes(), Collections.singletonList(CallType.ControlResponseOK) );
+		Assert.assertTrue( second.tap.callTypes().isEmpty(), "Request or response leaked to another LRC" );
+	}
+
+	/////////////////////////////////////////////////////////////
+	////////////////////// Route Learning ///////////////////////
+	/////////////////////////////////////////////////////////////
+	/**
+	 * Once an LRC has sent something from a federate, messages the RTI sends to that federate
+	 * only go to that LRC
+	 */
+	@Test
+	public void testTargetedMessageFollowsLearnedRoute() throws Exception
+	{
+		announce( first, 1 );
+		announce( second, 2 );
+
+		notify( FEDERATION, 2 );
+		Assert.assertEquals( first.tap.take(), 0 );
+		Assert.assertEquals( second.tap.take(), 1 );
+
+		notify( FEDERATION, 1 );
+		Assert.assertEquals( first.tap.take(), 1 );
+		Assert.assertEquals( second.tap.take(), 0 );
+		
+		// broadcasts still go to everyone
+		notify( FEDERATION, -1 );
+		Assert.assertEquals( first.tap.take(), 1 );
+		Assert.assertEquals( second.tap.take(), 1 );
+	}
+
+	/**
+	 * When there isn't exactly one LRC known to host the target, the message goes to everyone
+	 * rather than risk losing it
+	 */
+	@Test
+	public void testTargetedMessageFallsBackToEveryone() throws Exception
+	{
+		announce( first, 1 );
+
+		// nobody has claimed the federate
+		notify( FEDERATION, 3 );
+		Assert.assertEquals( first.tap.take(), 1 );
+		Assert.assertEquals( second.tap.take(), 1 );
+
+		// same federate handle, but in a different federation
+		notify( FEDERATION+1, 1 );
+		Assert.assertEquals( first.tap.take(), 1 );
+		Assert.assertEquals( second.tap.take(), 1 );
+
+		// two LRCs claim the same federate
+		announce( second, 1 );
+		notify( FEDERATION, 1 );
+		Assert.assertEquals( first.tap.take(), 1 );
+		Assert.assertEquals( second.tap.take(), 1 );
+
+		// once one of them resigns, the other is the only route again
+		ResignFederation resign = new ResignFederation();
+		resign.setSourceFederate( 1 );
+		resign.setTargetFederation( FEDERATION );
+		second.connection.sendNotification( resign );
+		first.tap.take();
+
+		notify( FEDERATION, 1 );
+		Assert.assertEquals( first.tap.take(), 1 );
+		Assert.assertEquals( second.tap.take(), 0 );
+	}
+
+	/**
+	 * Send a data message from the given LRC on behalf of the given federate, so the exchange
+	 * learns where it lives. The taps are cleared afterwards.
+	 */
+	private void announce( Endpoint endpoint, int federate )
+	{
+		DestroyFederation message = new DestroyFederation( "announce" );
+		message.setSourceFederate( federate );
+		message.setTargetFederation( FEDERATION );
+		endpoint.connection.sendDataMessage( message );
+		
+		for( Endpoint temp : endpoints )
+			temp.tap.take();
+	}
+
+	/** Send a notification from the RTI to the given federate */
+	private void notify( int federation, int federate )
+	{
+		DestroyFederation message = new DestroyFederation( "notify" );
+		message.setTargetFederation( federation );
+		message.setTargetFederate( federate );
+		rti.connection.sendNotification( message );
+	}
+
+	/////////////////////////////////////////////////////////////
+	/////////////////////// Pass Objects ////////////////////////
+	/////////////////////////////////////////////////////////////
+	/**
+	 * When messages are passed as objects, every receiver gets its own copy of the values. What
+	 * the sender (or another receiver) does to its arrays afterwards can't be seen.
+	 */
+	@Test
+	public void testPassedObjectsDoNotShareValues() throws Exception
+	{
+		Endpoint rti = newEndpoint( Host.RTI, true );
+		Endpoint sender = newEndpoint( Host.LRC, true );
+		Endpoint receiver = newEndpoint( Host.LRC, true );
+
+		byte[] tag = { 1 };
+		byte[] value = { 2, 3 };
+		HashMap<Integer,byte[]> values = new HashMap<>();
+		values.put( 1, value );
+		sender.connection.sendDataMessage( new UpdateAttributes(1,tag,values) );
+		sender.connection.sendDataMessage( new SendInteraction(1,tag,values) );
+		tag[0] = 9;
+		value[0] = 9;
+
+		List<byte[]> seen = new ArrayList<>();
+		for( Endpoint endpoint : new Endpoint[]{ rti, receiver } )
+		{
+			Assert.assertEquals( endpoint.data.size(), 2 );
+			Assert.assertTrue( endpoint.data.get(0).isDeferred(), "Message was serialized" );
+			UpdateAttributes update = endpoint.data.get(0).inflateAsPorticoMessage( UpdateAttributes.class );
+			SendInteraction interaction = endpoint.data.get(1).inflateAsPorticoMessage( SendInteraction.class );
+
+			Assert.assertEquals( update.getTag(), new byte[]{1} );
+			Assert.assertEquals( update.getAttributes().get(1), new byte[]{2,3} );
+			Assert.assertEquals( interaction.getTag(), new byte[]{1} );
+			Assert.assertEquals( interaction.getParameters().get(1), new byte[]{2,3} );
+			seen.add( update.getAttributes().get(1) );
+			seen.add( interaction.getParameters().get(1) );
+		}
+
+		// and no two receivers share an array either
+		for( int i = 0; i < seen.size(); i++ )
+			for( int j = i+1; j < seen.size(); j++ )
+				Assert.assertNotSame( seen.get(i), seen.get(j) );
+	}
+
+	/**
+	 * Create a connection attached to the exchange. Connections that don't pass objects get a
+	 * tap in their protocol stack, so we can see everything that comes up to them.
+	 */
+	private Endpoint newEndpoint( Host host, boolean passObjects )
+	{
+		ConnectionConfiguration configuration = new ConnectionConfiguration( "jvm" );
+		JvmConfiguration jvm = new JvmConfiguration( configuration );
+		jvm.setPassObjects( passObjects );
+		configuration.setTransportConfiguration( jvm );
+
+		Endpoint endpoint = new Endpoint();
+		endpoint.connection = new Connection( host, null );
+		endpoint.connection.configure( configuration, endpoint );
+		if( passObjects == false )
+			endpoint.connection.getProtocolStack().addProtocol( endpoint.tap );
+
+		endpoint.connection.connect();
+		endpoints.add( endpoint );
+		return endpoint;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/** One side of the exchange. Answers every request it gets, and keeps any data messages */
+	private static class Endpoint implements IApplicationReceiver
+	{
+		private Connection connection;
+		private Tap tap = new Tap();
+		private List<Message> data = new ArrayList<>();
+
+		public Logger getLogger() { return LogManager.getFormatterLogger( "portico" ); }
+		public boolean isReceivable( Header header ) { return true; }
+		public void receiveControlRequest( MessageContext context ) { context.success(); }
+		public void receiveNotification( PorticoMessage message ) {}
+		public void receiveDataMessage( Message message ) { data.add( message ); }
+	}
+
+	/**
+	 * Sits just above the transport and notes each message that comes up. The exchange delivers
+	 * messages on the sending thread, so everything has arrived by the time a send returns.
+	 */
+	private static class Tap extends Protocol
+	{
+		private List<CallType> received = new ArrayList<>();
+
+		public void down( Message message ) { next().down( message ); }
+		public void up( Message message )
+		{
+			received.add( message.getHeader().getCallType() );
+			previous().up( message );
+		}
+
+		public List<CallType> callTypes() { return received; }
+
+		/** @return The number of messages received since the last call, then forgets them */
+		public int take()
+		{
+			int count = received.size();
+			received.clear();
+			return count;
+		}
+
+		public void open()  {}
+		public void close() {}
+		public String getName() { return "Tap"; }
+		protected void doConfigure( ProtocolConfiguration configuration, Connection connection ) {}
+	}
+}
@@ -22,6 +22,7 @@ import org.portico.lrc.model.ObjectModel;
 import org.portico.lrc.model.PCMetadata;
 import org.portico.lrc.utils.MessageHelpers;
 import org.portico2.common.network.CallType;
+import org.portico2.common.network.Message;
 import org.portico2.common.services.federation.msg.CreateFederation;
 import org.portico2.common.services.federation.msg.DestroyFederation;
 import org.testng.Assert;
@@ -139,6 +140,33 @@ public class MessageHelpersTest
 		Assert.assertEquals( inflated.getFederationName(), request.getFederationName() );
 	}
 
+	/**
+	 * A deferred message should be copied across as an object without being serialized, and
+	 * still produce the right bytes if something does ask for them.
+	 */
+	@Test
+	public void testDeferredMessage() throws Exception
+	{
+		DestroyFederation request = new DestroyFederation( "testFederation" );
+		Message original = new Message( request, CallType.ControlRequest, 7, true );
+		Assert.assertTrue( original.isDeferred() );
+
+		// copy it as an object; the receiver gets its own clone of the request
+		Message copy = original.copyDeferred();
+		Assert.assertTrue( copy.isDeferred() );
+		Assert.assertEquals( copy.getHeader().getRequestId(), 7 );
+		DestroyFederation received = copy.inflateAsPorticoMessage( DestroyFederation.class );
+		Assert.assertNotSame( received, request );
+		Assert.assertEquals( received.getFederationName(), request.getFederationName() );
+
+		// asking for the bytes should serialize it properly
+		byte[] buffer = original.getBuffer();
+		Assert.assertFalse( original.isDeferred() );
+		DestroyFederation inflated = new Message(buffer).inflateAsPorticoMessage( DestroyFederation.class );
+		Assert.assertEquals( inflated.getFederationName(), request.getFederationName() );
+		Assert.assertEquals( new Message(buffer).getHeader().getRequestId(), 7 );
+	}
+
 	//----------------------------------------------------------
 	//                     STATIC METHODS
 	//----------------------------------------------------------
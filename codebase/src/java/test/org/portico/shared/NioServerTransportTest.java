@@ -0,0 +1,317 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.messaging.MessageContext;
+import org.portico2.common.network.CallType;
+import org.portico2.common.network.Connection;
+import org.portico2.common.network.Connection.Host;
+import org.portico2.common.network.Header;
+import org.portico2.common.network.IApplicationReceiver;
+import org.portico2.common.network.Message;
+import org.portico2.common.network.configuration.ConnectionConfiguration;
+import org.portico2.common.network.configuration.protocol.ProtocolConfiguration;
+import org.portico2.common.network.configuration.transport.JvmConfiguration;
+import org.portico2.common.network.configuration.transport.TcpConfiguration;
+import org.portico2.common.network.protocol.Protocol;
+import org.portico2.common.network.transport.TransportType;
+import org.portico2.common.network.transport.tcp.nio.NioServerTransport;
+import org.portico2.common.services.federation.msg.DestroyFederation;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test(groups={"NioServerTransportTest","shared"})
+public class NioServerTransportTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final long WAIT_MILLIS = 2000;
+	private static int nextPort = 20960; // new port for each test so a slow close can't clash
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private Capture above;
+	private NioServerTransport server;
+	private Socket socket;
+	private DataInputStream instream;
+	private DataOutputStream outstream;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	@BeforeMethod(alwaysRun=true)
+	public void beforeMethod() throws Exception
+	{
+		int port = nextPort++;
+		ConnectionConfiguration configuration = new ConnectionConfiguration( "jvm" );
+		configuration.setTransportConfiguration( new JvmConfiguration(configuration) );
+		Connection connection = new Connection( Host.RTI, null );
+		connection.configure( configuration, new Receiver() );
+
+		TcpConfiguration tcp = new TcpConfiguration( configuration, TransportType.NioServer );
+		tcp.setAddress( "127.0.0.1" );
+		tcp.setPort( port );
+		tcp.setSelectors( 1 );
+
+		this.above = new Capture();
+		this.server = new NioServerTransport();
+		this.server.configure( tcp, connection );
+		this.server.setPrevious( above );
+		this.server.open();
+
+		this.socket = connect( port );
+		this.instream = new DataInputStream( socket.getInputStream() );
+		this.outstream = new DataOutputStream( socket.getOutputStream() );
+	}
+
+	@AfterMethod(alwaysRun=true)
+	public void afterMethod() throws Exception
+	{
+		socket.close();
+		server.close();
+	}
+
+	/////////////////////////////////////////////////////////////
+	//////////////////////// Framing Tests //////////////////////
+	/////////////////////////////////////////////////////////////
+	/**
+	 * Several messages in one bundle, and several bundles in one write, should all come out the
+	 * top in order. They must be passed up by a worker, not by the event loop.
+	 */
+	@Test
+	public void testBundles() throws Exception
+	{
+		byte[] first = bundle( message("one"), message("two"), message("three") );
+		byte[] second = bundle( message("four") );
+		outstream.write( concat(first,second) );
+		outstream.flush();
+
+		for( String expected : new String[]{ "one", "two", "three", "four" } )
+			Assert.assertEquals( nameOf(above.take()), expected );
+
+		Assert.assertTrue( above.lastThread.startsWith("NIO Worker"),
+		                   "Message passed up on "+above.lastThread );
+	}
+
+	/**
+	 * Frame headers, message headers and message bodies can all be split across reads.
+	 */
+	@Test
+	public void testPartialReads() throws Exception
+	{
+		byte[] bytes = concat( bundle(message("one"),message("two")), bundle(message("three")) );
+		for( int i = 0; i < bytes.length; i++ )
+		{
+			outstream.write( bytes[i] );
+			outstream.flush();
+			if( i % 3 == 0 )
+				Thread.sleep( 1 ); // give the loop a chance to read what we have so far
+		}
+
+		Assert.assertEquals( nameOf(above.take()), "one" );
+		Assert.assertEquals( nameOf(above.take()), "two" );
+		Assert.assertEquals( nameOf(above.take()), "three" );
+	}
+
+	/**
+	 * A message that claims to be longer than the rest of its bundle must not be allocated.
+	 * The server should close the connection instead.
+	 */
+	@Test
+	public void testMessageOverrunningBundleClosesConnection() throws Exception
+	{
+		byte[] message = message( "liar" );
+		new Header( message, 0 ).writePayloadLength( 0xffffff );
+		outstream.write( bundle(message) );
+		outstream.flush();
+
+		assertClosed();
+		Assert.assertNull( above.poll(), "Bad message was passed up" );
+	}
+
+	/**
+	 * Negative bundle lengths, and bundles too short to hold a message header, close the
+	 * connection.
+	 */
+	@Test
+	public void testInvalidBundleLengthClosesConnection() throws Exception
+	{
+		outstream.writeInt( 0xcafe );
+		outstream.writeInt( -1 );
+		outstream.flush();
+		assertClosed();
+
+		reconnect();
+		outstream.writeInt( 0xcafe );
+		outstream.writeInt( Header.HEADER_LENGTH-1 );
+		outstream.write( new byte[Header.HEADER_LENGTH-1] );
+		outstream.flush();
+		assertClosed();
+	}
+
+	/**
+	 * When a client goes away the server should drop it, but still pass up everything it sent
+	 * before it went.
+	 */
+	@Test
+	public void testDisconnect() throws Exception
+	{
+		outstream.write( bundle(message("one"),message("two")) );
+		outstream.flush();
+		socket.close();
+
+		Assert.assertEquals( nameOf(above.take()), "one" );
+		Assert.assertEquals( nameOf(above.take()), "two" );
+
+		// the server stops sending to clients once it has removed them
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+		while( server.getClientCount() > 0 && System.currentTimeMillis() < deadline )
+			Thread.sleep( 10 );
+
+		Assert.assertEquals( server.getClientCount(), 0, "Disconnected client was not removed" );
+	}
+
+	private void reconnect() throws Exception
+	{
+		socket.close();
+		this.socket = connect( nextPort-1 );
+		this.instream = new DataInputStream( socket.getInputStream() );
+		this.outstream = new DataOutputStream( socket.getOutputStream() );
+	}
+
+	/** Connect and do the handshake, the same way the tcp-client does */
+	private Socket connect( int port ) throws Exception
+	{
+		Socket socket = new Socket( "127.0.0.1", port );
+		socket.setTcpNoDelay( true );
+		socket.setSoTimeout( (int)WAIT_MILLIS );
+
+		DataInputStream instream = new DataInputStream( socket.getInputStream() );
+		Assert.assertEquals( instream.readInt(), 0xbeef );
+		instream.readFully( new byte[instream.readInt()] );
+		Assert.assertEquals( instream.readInt(), 0xfeed );
+
+		OutputStream outstream = socket.getOutputStream();
+		outstream.write( ByteBuffer.allocate(4).putInt(0xfeed).array() );
+		outstream.flush();
+		return socket;
+	}
+
+	private void assertClosed() throws Exception
+	{
+		try
+		{
+			Assert.assertEquals( instream.read(), -1, "Server sent data instead of closing" );
+		}
+		catch( SocketException se )
+		{
+			// connection reset, which is just as closed
+		}
+	}
+
+	private byte[] message( String federation )
+	{
+		return new Message( new DestroyFederation(federation), CallType.Notification, 1 ).getBuffer();
+	}
+
+	private String nameOf( Message message )
+	{
+		Assert.assertNotNull( message, "Message was not passed up" );
+		return message.inflateAsPorticoMessage( DestroyFederation.class ).getFederationName();
+	}
+
+	private byte[] bundle( byte[]... messages )
+	{
+		int length = 0;
+		for( byte[] message : messages )
+			length += message.length;
+
+		ByteBuffer buffer = ByteBuffer.allocate( 8+length );
+		buffer.putInt( 0xcafe );
+		buffer.putInt( length );
+		for( byte[] message : messages )
+			buffer.put( message );
+
+		return buffer.array();
+	}
+
+	private byte[] concat( byte[] first, byte[] second )
+	{
+		return ByteBuffer.allocate( first.length+second.length ).put( first ).put( second ).array();
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/** Sits above the transport and keeps whatever comes up out of it */
+	private static class Capture extends Protocol
+	{
+		private BlockingQueue<Message> messages = new LinkedBlockingQueue<>();
+		private volatile String lastThread = "";
+		
+		public void down( Message message ) {}
+		public void up( Message message )
+		{
+			lastThread = Thread.currentThread().getName();
+			messages.add( message );
+		}
+		
+		public Message take() throws InterruptedException
+		{
+			return messages.poll( WAIT_MILLIS, TimeUnit.MILLISECONDS );
+		}
+
+		// short wait, for things we expect never to arrive
+		public Message poll() throws InterruptedException
+		{
+			return messages.poll( 200, TimeUnit.MILLISECONDS );
+		}
+
+		public void open()  {}
+		public void close() {}
+		public String getName() { return "Capture"; }
+		protected void doConfigure( ProtocolConfiguration configuration, Connection connection ) {}
+	}
+
+	private static class Receiver implements IApplicationReceiver
+	{
+		public Logger getLogger() { return LogManager.getFormatterLogger( "portico" ); }
+		public boolean isReceivable( Header header ) { return true; }
+		public void receiveControlRequest( MessageContext context ) {}
+		public void receiveNotification( PorticoMessage message ) {}
+		public void receiveDataMessage( Message message ) {}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ *   Copyright 2019 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import org.portico.impl.HLAVersion;
+import org.portico.lrc.model.ACMetadata;
+import org.portico.lrc.model.ICMetadata;
+import org.portico.lrc.model.OCMetadata;
+import org.portico.lrc.model.ObjectModel;
+import org.portico.lrc.model.PCMetadata;
+import org.portico.lrc.model.Space;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"ObjectModelIndexTest","shared"})
+public class ObjectModelIndexTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+	private ObjectModel model;
+	private OCMetadata vehicle;
+	private OCMetadata car;
+	private ACMetadata speed;
+	private ACMetadata doors;
+	private ICMetadata fire;
+	private PCMetadata target;
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	private void createModel()
+	{
+		this.model = new ObjectModel( HLAVersion.IEEE1516e );
+		
+		// objects
+		OCMetadata root = model.newObject( "HLAobjectRoot" );
+		model.addObjectClass( root );
+		model.setObjectRoot( root );
+		
+		this.vehicle = model.newObject( "Vehicle" );
+		this.vehicle.setParent( root );
+		this.speed = model.newAttribute( "Speed", model.getDatatype("HLAfloat64BE") );
+		this.vehicle.addAttribute( speed );
+		model.addObjectClass( vehicle );
+		
+		this.car = model.newObject( "Car" );
+		this.car.setParent( vehicle );
+		this.doors = model.newAttribute( "Doors", model.getDatatype("HLAinteger32BE") );
+		this.car.addAttribute( doors );
+		model.addObjectClass( car );
+		
+		// interactions
+		ICMetadata iroot = model.newInteraction( "HLAinteractionRoot" );
+		model.addInteractionClass( iroot );
+		model.setInteractionRoot( iroot );
+		
+		this.fire = model.newInteraction( "Fire" );
+		this.fire.setParent( iroot );
+		this.target = model.newParameter( "Target", model.getDatatype("HLAinteger32BE") );
+		this.fire.addParameter( target );
+		model.addInteractionClass( fire );
+		
+		// spaces
+		model.addSpace( model.newSpace("Geo") );
+	}
+	
+	/////////////////////////////////////////////////////////////
+	//////////////////////// Lookup Tests ///////////////////////
+	/////////////////////////////////////////////////////////////
+	@Test
+	public void testLookups()
+	{
+		createModel();
+		
+		// class names, qualified, version-safe and local, all case insensitive
+		Assert.assertSame( model.getObjectClass("HLAobjectRoot.Vehicle.Car"), car );
+		Assert.assertSame( model.getObjectClass("ObjectRoot.vehicle.car"), car );
+		Assert.assertSame( model.getObjectClass("CAR"), car );
+		Assert.assertSame( model.getObjectClass("HLAobjectRoot"), model.getObjectRoot() );
+		Assert.assertNull( model.getObjectClass("Vehicle.Truck") );
+		Assert.assertSame( model.getInteractionClass("HLAinteractionRoot.Fire"), fire );
+		Assert.assertSame( model.getInteractionClass("fire"), fire );
+		Assert.assertSame( model.getObjectClass(car.getHandle()), car );
+		Assert.assertSame( model.getInteractionClass(fire.getHandle()), fire );
+		Assert.assertNull( model.getObjectClass(fire.getHandle()) );
+		
+		// attributes and parameters, including inherited ones
+		Assert.assertEquals( car.getAttributeHandle("Speed"), speed.getHandle() );
+		Assert.assertSame( car.getAttribute(speed.getHandle()), speed );
+		Assert.assertNull( vehicle.getAttribute(doors.getHandle()) );
+		Assert.assertFalse( vehicle.hasAttribute(doors.getHandle()) );
+		Assert.assertEquals( car.getAllAttributeHandles().size(), 3 ); // privToDelete included
+		Assert.assertEquals( car.getAttributeHandle("HLAprivilegeToDeleteObject"),
+		                     model.getPrivilegeToDelete() );
+		Assert.assertEquals( model.findAttributeName(doors.getHandle()), "Doors" );
+		Assert.assertEquals( model.findAttributeName(9999), "9999 <unknown>" );
+		Assert.assertEquals( fire.getParameterHandle("Target"), target.getHandle() );
+		Assert.assertEquals( model.findParameterName(target.getHandle()), "Target" );
+		
+		// spaces
+		Assert.assertNotNull( model.getSpace("geo") );
+		Assert.assertNull( model.getSpace("Time") );
+	}
+
+	@Test
+	public void testIndexesFollowModelChanges()
+	{
+		createModel();
+		
+		// prime all the lookup tables
+		Assert.assertEquals( car.getAttributeHandle("Colour"), ObjectModel.INVALID_HANDLE );
+		Assert.assertNull( model.getObjectClass("Vehicle.Truck") );
+		
+		// add an attribute to the parent, the child must inherit it
+		ACMetadata colour = model.newAttribute( "Colour", model.getDatatype("HLAASCIIstring") );
+		vehicle.addAttribute( colour );
+		Assert.assertEquals( car.getAttributeHandle("Colour"), colour.getHandle() );
+		Assert.assertSame( car.getAttribute(colour.getHandle()), colour );
+		Assert.assertEquals( model.findAttributeName(colour.getHandle()), "Colour" );
+		
+		// add a new class
+		OCMetadata truck = model.newObject( "Truck" );
+		truck.setParent( vehicle );
+		model.addObjectClass( truck );
+		Assert.assertSame( model.getObjectClass("Vehicle.Truck"), truck );
+		
+		// move a class, its qualified name (and that of its children) changes
+		OCMetadata pickup = model.newObject( "Pickup" );
+		pickup.setParent( truck );
+		model.addObjectClass( pickup );
+		Assert.assertSame( model.getObjectClass("Vehicle.Truck.Pickup"), pickup );
+		truck.setParent( car );
+		Assert.assertSame( model.getObjectClass("Vehicle.Car.Truck.Pickup"), pickup );
+		Assert.assertNull( model.getObjectClass("Vehicle.Truck.Pickup") );
+		Assert.assertEquals( pickup.getAttributeHandle("Doors"), doors.getHandle() );
+		
+		// remove a class
+		model.removeObjectClass( car.getHandle() );
+		Assert.assertNull( model.getObjectClass("Car") );
+		Assert.assertNull( model.getObjectClass(car.getHandle()) );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -0,0 +1,306 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.portico2.common.messaging.MessageType;
+import org.portico2.common.network.CallType;
+import org.portico2.common.network.Message;
+import org.portico2.common.network.transport.tcp.channel.Metrics;
+import org.portico2.common.network.transport.tcp.channel.OutboundQueue;
+import org.portico2.common.network.transport.tcp.channel.SlowConsumerPolicy;
+import org.portico2.common.services.federation.msg.DestroyFederation;
+import org.portico2.common.services.object.msg.SendInteraction;
+import org.portico2.common.services.object.msg.UpdateAttributes;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"OutboundQueueTest","shared"})
+public class OutboundQueueTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Once the connection is full, receive order updates should be dropped. Timestamped
+	 * updates and control messages must still get through.
+	 */
+	@Test
+	public void testDropReceiveOrder() throws Exception
+	{
+		Sink sink = new Sink();
+		Metrics metrics = new Metrics();
+		OutboundQueue queue = newQueue( sink, metrics, 2, SlowConsumerPolicy.Drop );
+
+		queue.submit( update(1,1.0,"a") );
+		queue.submit( update(1,1.0,"b") );
+		Assert.assertEquals( sink.written.size(), 2 );
+
+		// full now, this one should go
+		queue.submit( update(1,1.0,"c") );
+		Assert.assertEquals( sink.written.size(), 2 );
+		Assert.assertTrue( queue.isLagging() );
+
+		// these should not
+		queue.submit( timestampedUpdate(1,10.0) );
+		queue.submit( control() );
+		Assert.assertEquals( sink.written.size(), 4 );
+		Assert.assertEquals( metrics.messagesDropped, 1 );
+
+		// drain it and we should be back to normal
+		sink.written.clear();
+		queue.drained();
+		Assert.assertFalse( queue.isLagging() );
+		queue.submit( update(1,1.0,"d") );
+		Assert.assertEquals( sink.written.size(), 1 );
+	}
+
+	/**
+	 * Once the connection is full, receive order updates should be held back and merged per
+	 * object, and released with the latest value of each attribute when the connection drains.
+	 * Anything that can't be held back must release the held updates first so order is kept.
+	 */
+	@Test
+	public void testConflateLatestPerObject() throws Exception
+	{
+		Sink sink = new Sink();
+		Metrics metrics = new Metrics();
+		OutboundQueue queue = newQueue( sink, metrics, 1, SlowConsumerPolicy.Conflate );
+
+		queue.submit( update(1,1.0,"a") );
+		Assert.assertEquals( sink.written.size(), 1 );
+
+		// full now, these should be held and merged
+		queue.submit( update(1,1.0,"b",2.0,"c") );
+		queue.submit( update(1,1.0,"d") );
+		queue.submit( update(2,1.0,"x") );
+		Assert.assertEquals( sink.written.size(), 1 );
+		Assert.assertEquals( metrics.messagesConflated, 1 );
+
+		// drain and the held updates should come out, one per object, oldest object first
+		sink.written.clear();
+		queue.drained();
+		Assert.assertEquals( sink.written.size(), 2 );
+
+		UpdateAttributes first = inflate( sink.written.get(0) );
+		Assert.assertEquals( first.getObjectId(), 1 );
+		Assert.assertEquals( new String(first.getAttributes().get(1)), "d" );
+		Assert.assertEquals( new String(first.getAttributes().get(2)), "c" );
+		Assert.assertEquals( new Message(sink.written.get(0)).getHeader().getFilteringId(), 99 );
+
+		UpdateAttributes second = inflate( sink.written.get(1) );
+		Assert.assertEquals( second.getObjectId(), 2 );
+		Assert.assertEquals( new String(second.getAttributes().get(1)), "x" );
+
+		// fill it up again, then send something we can't hold back: held update goes first
+		queue.submit( update(3,1.0,"y") );
+		sink.written.clear();
+		sink.written.add( new byte[0] ); // pretend it's still queued
+		queue.submit( update(3,1.0,"z") );
+		queue.submit( control() );
+		Assert.assertEquals( sink.written.size(), 3 );
+		Assert.assertEquals( new Message(sink.written.get(1)).getMessageType(), MessageType.UpdateAttributes );
+		Assert.assertEquals( new String(inflate(sink.written.get(1)).getAttributes().get(1)), "z" );
+		Assert.assertEquals( new Message(sink.written.get(2)).getMessageType(), MessageType.DestroyFederation );
+	}
+
+	/**
+	 * Once the connection has gone idle, a single update must go straight out, rather than
+	 * being held until something else comes along, and anything held must go out with it.
+	 */
+	@Test
+	public void testConflateIdleSinkSingleUpdate() throws Exception
+	{
+		Sink sink = new Sink();
+		Metrics metrics = new Metrics();
+		OutboundQueue queue = newQueue( sink, metrics, 4, SlowConsumerPolicy.Conflate );
+
+		for( int i = 0; i < 4; i++ )
+			queue.submit( update(1,1.0,"a") );
+
+		// full, this one is held
+		queue.submit( update(2,1.0,"b") );
+		Assert.assertEquals( sink.written.size(), 4 );
+		Assert.assertTrue( queue.isLagging() );
+
+		// the connection writes everything out and goes idle without telling us
+		sink.written.clear();
+		queue.submit( update(3,1.0,"c") );
+		Assert.assertEquals( sink.written.size(), 2 );
+		Assert.assertEquals( inflate(sink.written.get(0)).getObjectId(), 2 );
+		Assert.assertEquals( inflate(sink.written.get(1)).getObjectId(), 3 );
+		Assert.assertFalse( queue.isLagging() );
+
+		// and after a normal drain, a single update goes straight out
+		sink.written.clear();
+		queue.drained();
+		queue.submit( update(4,1.0,"d") );
+		Assert.assertEquals( sink.written.size(), 1 );
+		Assert.assertEquals( inflate(sink.written.get(0)).getObjectId(), 4 );
+	}
+
+	/**
+	 * Updates for the same object from different federates must not be merged, otherwise the
+	 * earlier values would go out as if the later federate sent them.
+	 */
+	@Test
+	public void testConflateKeepsSourcesSeparate() throws Exception
+	{
+		Sink sink = new Sink();
+		Metrics metrics = new Metrics();
+		OutboundQueue queue = newQueue( sink, metrics, 1, SlowConsumerPolicy.Conflate );
+
+		queue.submit( update(1,1.0,"a") );
+		queue.submit( updateFrom(1,1,1.0,"b") );
+		queue.submit( updateFrom(2,1,2.0,"c") );
+		queue.submit( updateFrom(1,1,1.0,"d") );
+		Assert.assertEquals( metrics.messagesConflated, 1 );
+
+		sink.written.clear();
+		queue.drained();
+		Assert.assertEquals( sink.written.size(), 2 );
+
+		UpdateAttributes first = inflate( sink.written.get(0) );
+		Assert.assertEquals( new Message(sink.written.get(0)).getHeader().getSourceFederate(), 1 );
+		Assert.assertEquals( new String(first.getAttributes().get(1)), "d" );
+		Assert.assertFalse( first.getAttributes().containsKey(2) );
+
+		UpdateAttributes second = inflate( sink.written.get(1) );
+		Assert.assertEquals( new Message(sink.written.get(1)).getHeader().getSourceFederate(), 2 );
+		Assert.assertEquals( new String(second.getAttributes().get(2)), "c" );
+	}
+
+	/**
+	 * Interactions can't be merged, so under conflate they should be dropped once the connection
+	 * is full. Anything that can't be dropped or held back should still get through until the
+	 * connection reaches twice its limit, at which point it should be disconnected.
+	 */
+	@Test
+	public void testConflateDisconnectsPastLimit() throws Exception
+	{
+		Sink sink = new Sink();
+		Metrics metrics = new Metrics();
+		OutboundQueue queue = newQueue( sink, metrics, 2, SlowConsumerPolicy.Conflate );
+
+		queue.submit( update(1,1.0,"a") );
+		queue.submit( update(1,1.0,"b") );
+
+		// full now, the interaction should go
+		queue.submit( interaction() );
+		Assert.assertEquals( sink.written.size(), 2 );
+		Assert.assertEquals( metrics.messagesDropped, 1 );
+
+		// these can't be dropped, so they get through up to twice the limit
+		queue.submit( timestampedUpdate(1,10.0) );
+		queue.submit( control() );
+		Assert.assertEquals( sink.written.size(), 4 );
+		Assert.assertFalse( sink.disconnected );
+
+		// one more and we should give up on the connection
+		queue.submit( control() );
+		Assert.assertEquals( sink.written.size(), 4 );
+		Assert.assertTrue( sink.disconnected );
+
+		// and nothing more should be passed on while it goes down
+		queue.submit( control() );
+		Assert.assertEquals( sink.written.size(), 4 );
+	}
+
+	private OutboundQueue newQueue( Sink sink, Metrics metrics, int max, SlowConsumerPolicy policy )
+	{
+		OutboundQueue queue = new OutboundQueue( LogManager.getFormatterLogger("portico.test"), sink, metrics );
+		queue.setMaxQueued( max );
+		queue.setPolicy( policy );
+		return queue;
+	}
+
+	/** Receive order update with alternating handle/value pairs (handle as a double, for brevity) */
+	private byte[] update( int objectId, Object... values )
+	{
+		return updateFrom( 1, objectId, values );
+	}
+
+	private byte[] updateFrom( int source, int objectId, Object... values )
+	{
+		HashMap<Integer,byte[]> attributes = new HashMap<>();
+		for( int i = 0; i < values.length; i += 2 )
+			attributes.put( ((Double)values[i]).intValue(), ((String)values[i+1]).getBytes() );
+
+		UpdateAttributes update = new UpdateAttributes( objectId, "tag".getBytes(), attributes );
+		update.setObjectClass( 99 );
+		update.setSourceFederate( source );
+		return new Message( update, CallType.DataMessage, 0 ).getBuffer();
+	}
+
+	private byte[] timestampedUpdate( int objectId, double time )
+	{
+		HashMap<Integer,byte[]> attributes = new HashMap<>();
+		attributes.put( 1, "tso".getBytes() );
+		UpdateAttributes update = new UpdateAttributes( objectId, "tag".getBytes(), attributes, time );
+		update.setSourceFederate( 1 );
+		return new Message( update, CallType.DataMessage, 0 ).getBuffer();
+	}
+
+	private byte[] interaction()
+	{
+		HashMap<Integer,byte[]> parameters = new HashMap<>();
+		parameters.put( 1, "ro".getBytes() );
+		SendInteraction interaction = new SendInteraction( 1, "tag".getBytes(), parameters );
+		interaction.setSourceFederate( 1 );
+		return new Message( interaction, CallType.DataMessage, 0 ).getBuffer();
+	}
+
+	private byte[] control()
+	{
+		return new Message( new DestroyFederation("federation"), CallType.ControlRequest, 0 ).getBuffer();
+	}
+
+	private UpdateAttributes inflate( byte[] buffer )
+	{
+		return new Message( buffer ).inflateAsPorticoMessage( UpdateAttributes.class );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+	/** Keeps everything it is given. Everything kept counts as queued until cleared. */
+	private class Sink implements OutboundQueue.Sink
+	{
+		private List<byte[]> written = new ArrayList<>();
+		private boolean disconnected = false;
+
+		public void write( byte[] message ) { written.add( message ); }
+		public int getQueuedCount()         { return written.size(); }
+		public boolean isOpen()             { return disconnected == false; }
+		public boolean canBlock()           { return false; }
+		public void disconnect()            { disconnected = true; }
+	}
+}
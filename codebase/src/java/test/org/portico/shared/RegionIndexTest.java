@@ -0,0 +1,125 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.portico.lrc.model.Dimension;
+import org.portico.lrc.model.RegionInstance;
+import org.portico.lrc.model.Space;
+import org.portico2.common.services.ddm.data.RegionStore;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"RegionIndexTest","shared"})
+public class RegionIndexTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * The indexed lookup must find exactly the regions a full scan with
+	 * {@link RegionInstance#overlapsWith(RegionInstance)} finds, including after regions are
+	 * removed and modified.
+	 */
+	@Test
+	public void testOverlapsMatchFullScan()
+	{
+		Space space = new Space( "TestSpace", 1 );
+		space.addDimension( new Dimension("x",2) );
+		space.addDimension( new Dimension("y",3) );
+		Space other = new Space( "OtherSpace", 4 );
+		other.addDimension( new Dimension("x",2) );
+		
+		Random random = new Random( 42 );
+		RegionStore store = new RegionStore();
+		List<RegionInstance> regions = new ArrayList<>();
+		for( int token = 1; token <= 500; token++ )
+		{
+			RegionInstance region = newRegion( token, token%10 == 0 ? other : space, random );
+			regions.add( region );
+			store.addRegion( region );
+		}
+		
+		compare( store, regions, space, random );
+		
+		// remove some, move some others around
+		for( int i = 0; i < 100; i++ )
+			store.removeRegion( regions.remove(random.nextInt(regions.size())) );
+		
+		for( int i = 0; i < 50; i++ )
+		{
+			RegionInstance region = regions.get( random.nextInt(regions.size()) );
+			region.setRangeLowerBound( 0, 2, 5000 );
+			region.setRangeUpperBound( 0, 2, 5000+random.nextInt(500) );
+			store.regionModified( region );
+		}
+		
+		compare( store, regions, space, random );
+	}
+
+	private void compare( RegionStore store, List<RegionInstance> regions, Space space, Random random )
+	{
+		for( int i = 0; i < 200; i++ )
+		{
+			RegionInstance query = newRegion( 10000+i, space, random );
+			Set<RegionInstance> expected = new HashSet<>();
+			for( RegionInstance region : regions )
+			{
+				if( region.overlapsWith(query) )
+					expected.add( region );
+			}
+			
+			Assert.assertEquals( store.getOverlappingRegions(query), expected );
+		}
+	}
+
+	private RegionInstance newRegion( int token, Space space, Random random )
+	{
+		int extents = 1 + random.nextInt( 3 );
+		RegionInstance region = new RegionInstance( 1, token, space, extents );
+		for( int i = 0; i < extents; i++ )
+		{
+			for( Dimension dimension : space.getDimensions() )
+			{
+				long lower = random.nextInt( 10000 );
+				region.setRangeLowerBound( i, dimension.getHandle(), lower );
+				region.setRangeUpperBound( i, dimension.getHandle(), lower+random.nextInt(800) );
+			}
+		}
+		
+		return region;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -0,0 +1,98 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.Set;
+
+import org.portico.impl.HLAVersion;
+import org.portico.lrc.model.OCMetadata;
+import org.portico.lrc.model.ObjectModel;
+import org.portico2.common.services.ddm.data.RegionStore;
+import org.portico2.rti.services.object.data.ROCInstance;
+import org.portico2.rti.services.object.data.Repository;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"RepositoryTest","shared"})
+public class RepositoryTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Instances can be found by their exact class, or by any class they are assignable to, and
+	 * drop out of both lookups once deleted.
+	 */
+	@Test
+	public void testClassIndex()
+	{
+		ObjectModel model = new ObjectModel( HLAVersion.IEEE1516e );
+		OCMetadata root = model.newObject( "HLAobjectRoot" );
+		model.setObjectRoot( root );
+		OCMetadata vehicle = model.newObject( "Vehicle" );
+		OCMetadata car = model.newObject( "Car" );
+		OCMetadata building = model.newObject( "Building" );
+		vehicle.setParent( root );
+		car.setParent( vehicle );
+		building.setParent( root );
+		
+		Repository repository = new Repository( new RegionStore() );
+		ROCInstance truck = add( repository, vehicle, "truck" );
+		ROCInstance sedan = add( repository, car, "sedan" );
+		ROCInstance house = add( repository, building, "house" );
+		
+		Assert.assertEquals( repository.getAllInstances(vehicle.getHandle()).size(), 1 );
+		Assert.assertTrue( repository.getAllInstances(vehicle.getHandle()).contains(truck) );
+		Assert.assertTrue( repository.getAllInstances(root.getHandle()).isEmpty() );
+		
+		Set<ROCInstance> vehicles = repository.getAllInstancesAssignableFrom( vehicle );
+		Assert.assertEquals( vehicles.size(), 2 );
+		Assert.assertTrue( vehicles.contains(truck) && vehicles.contains(sedan) );
+		Assert.assertEquals( repository.getAllInstancesAssignableFrom(root).size(), 3 );
+		
+		// returned sets are copies
+		vehicles.clear();
+		Assert.assertEquals( repository.getAllInstancesAssignableFrom(vehicle).size(), 2 );
+		
+		repository.deleteObject( sedan.getHandle() );
+		repository.deleteObject( house.getHandle() );
+		Assert.assertTrue( repository.getAllInstances(car.getHandle()).isEmpty() );
+		Assert.assertEquals( repository.getAllInstancesAssignableFrom(root).size(), 1 );
+		Assert.assertTrue( repository.getAllInstancesAssignableFrom(building).isEmpty() );
+	}
+
+	private ROCInstance add( Repository repository, OCMetadata type, String name )
+	{
+		ROCInstance instance = repository.createObject( type, name, 1, null );
+		repository.addObject( instance );
+		return instance;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
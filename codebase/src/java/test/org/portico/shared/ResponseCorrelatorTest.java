@@ -0,0 +1,131 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.portico.lrc.utils.MessageHelpers;
+import org.portico2.common.messaging.ResponseMessage;
+import org.portico2.common.network.CallType;
+import org.portico2.common.network.Header;
+import org.portico2.common.network.Message;
+import org.portico2.common.network.ResponseCorrelator;
+import org.portico2.common.network.ResponseCorrelator.Pending;
+import org.portico2.common.services.sync.msg.SyncPointAchieved;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"ResponseCorrelatorTest","shared"})
+public class ResponseCorrelatorTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Many requests in flight at once should each get their own response, no matter the order
+	 * the responses come back in.
+	 */
+	@Test
+	public void testOutOfOrderResponses() throws Exception
+	{
+		ResponseCorrelator<String> correlator = new ResponseCorrelator<>();
+		@SuppressWarnings("unchecked")
+		List<Pending<String>> requests = new ArrayList<>();
+		for( int i = 0; i < 100; i++ )
+			requests.add( correlator.registerAsync() );
+
+		Assert.assertEquals( correlator.getOutstandingCount(), 100 );
+		for( int i = requests.size()-1; i >= 0; i-- )
+			correlator.offer( requests.get(i).getId(), "response-"+i );
+
+		for( int i = 0; i < requests.size(); i++ )
+			Assert.assertEquals( requests.get(i).get(1,TimeUnit.SECONDS), "response-"+i );
+
+		Assert.assertEquals( correlator.getOutstandingCount(), 0 );
+	}
+
+	/**
+	 * Async requests that nobody answers must fail once their deadline passes and give their
+	 * id back. Blocking waits must return null. Late responses must be ignored.
+	 */
+	@Test
+	public void testDeadlines() throws Exception
+	{
+		ResponseCorrelator<String> correlator = new ResponseCorrelator<>();
+		Pending<String> async = correlator.registerAsync( 50 );
+		Pending<String> blocking = correlator.register( 50 );
+
+		Assert.assertNull( correlator.waitFor(blocking) );
+		try
+		{
+			async.get( 2, TimeUnit.SECONDS );
+			Assert.fail( "Expected async request to time out" );
+		}
+		catch( ExecutionException ee )
+		{
+			Assert.assertTrue( ee.getCause() instanceof TimeoutException );
+		}
+
+		correlator.offer( async.getId(), "late" );
+		Assert.assertFalse( correlator.isRegistered(async.getId()) );
+		Assert.assertEquals( correlator.getOutstandingCount(), 0 );
+	}
+
+	/**
+	 * Request ids too big for the fixed header must go into the header extension and come back
+	 * out again, for both the request and the response, without disturbing the payload.
+	 */
+	@Test
+	public void testExtendedRequestId()
+	{
+		int requestId = 0x7654321;
+		SyncPointAchieved request = new SyncPointAchieved( "label" );
+		Message outgoing = new Message( request, CallType.ControlRequest, requestId );
+		Assert.assertTrue( outgoing.getHeader().isExtended() );
+		Assert.assertEquals( outgoing.getHeader().getHeaderLength(),
+		                     Header.HEADER_LENGTH+Header.EXTENSION_LENGTH );
+
+		Message incoming = new Message( outgoing.getBuffer() );
+		Assert.assertEquals( incoming.getRequestId(), requestId );
+		Assert.assertEquals( incoming.inflateAsPorticoMessage(SyncPointAchieved.class).getLabel(), "label" );
+
+		byte[] response = MessageHelpers.deflate2( new ResponseMessage(), requestId, request );
+		Assert.assertEquals( new Header(response,0).getRequestId(), requestId );
+		Assert.assertTrue( new Message(response).inflateAsResponse().isSuccess() );
+
+		// small ids should still fit in the fixed header
+		Assert.assertFalse( new Message(request,CallType.ControlRequest,42).getHeader().isExtended() );
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
@@ -0,0 +1,137 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.Random;
+
+import org.portico.lrc.PorticoConstants;
+import org.portico2.common.services.time.data.TimeStatus;
+import org.portico2.rti.services.time.data.TimeManager;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"TimeManagerTest","shared"})
+public class TimeManagerTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+	private static final int FEDERATES = 50;
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Push a bunch of random changes through the manager and after each one make sure the
+	 * federation LBTS and each federate's GALT match what we get by scanning everyone.
+	 */
+	@Test
+	public void testLbtsAndGaltMatchFullScan()
+	{
+		TimeManager manager = new TimeManager();
+		for( int i = 1; i <= FEDERATES; i++ )
+			manager.joinedFederation( i, null );
+
+		Random random = new Random( 42 );
+		for( int step = 0; step < 2000; step++ )
+		{
+			int federate = random.nextInt( FEDERATES ) + 1;
+			switch( random.nextInt(5) )
+			{
+				case 0:
+					manager.enableRegulating( federate, random.nextInt(100), 1+random.nextInt(5) );
+					break;
+				case 1:
+					manager.disableRegulating( federate );
+					break;
+				case 2:
+					manager.setLookahead( federate, 1+random.nextInt(5) );
+					break;
+				case 3:
+					manager.setCurrentTime( federate, random.nextInt(100) );
+					break;
+				default:
+					manager.timeAdvanceRequested( federate, random.nextInt(100) );
+					break;
+			}
+
+			Assert.assertEquals( manager.getLBTS(), scanForLbts(manager,PorticoConstants.NULL_HANDLE) );
+			for( int i = 1; i <= FEDERATES; i++ )
+				Assert.assertEquals( manager.getGALT(i), scanForLbts(manager,i) );
+		}
+	}
+
+	/**
+	 * Make sure that waiting constrained federates are handed out in order of requested time,
+	 * and only while they are below the federation LBTS.
+	 */
+	@Test
+	public void testAdvanceableFederatesInRequestOrder()
+	{
+		TimeManager manager = new TimeManager();
+		for( int i = 1; i <= 4; i++ )
+			manager.joinedFederation( i, null );
+
+		// federate 1 regulates with an lbts of 10, the rest are constrained and waiting
+		manager.enableRegulating( 1, 5.0, 5.0 );
+		manager.enableConstrained( 2 );
+		manager.enableConstrained( 3 );
+		manager.enableConstrained( 4 );
+		manager.timeAdvanceRequested( 2, 8.0 );
+		manager.timeAdvanceRequested( 3, 4.0 );
+		manager.timeAdvanceRequested( 4, 12.0 );
+
+		Assert.assertEquals( manager.getNextAdvanceableFederate(), 3 );
+		manager.advanceFederate( 3 );
+		Assert.assertEquals( manager.getNextAdvanceableFederate(), 2 );
+		manager.advanceFederate( 2 );
+		Assert.assertEquals( manager.getNextAdvanceableFederate(), PorticoConstants.NULL_HANDLE );
+
+		// move the regulating federate on and federate 4 can go
+		manager.timeAdvanceRequested( 1, 10.0 );
+		Assert.assertEquals( manager.getLBTS(), 15.0 );
+		Assert.assertEquals( manager.getNextAdvanceableFederate(), 4 );
+
+		// a resigned federate must no longer be handed out
+		manager.resignedFederation( 4 );
+		Assert.assertEquals( manager.getNextAdvanceableFederate(), PorticoConstants.NULL_HANDLE );
+	}
+
+	/** Find the lowest LBTS of all regulating federates other than the given one */
+	private double scanForLbts( TimeManager manager, int excluding )
+	{
+		double lowest = Double.MAX_VALUE;
+		for( Integer handle : manager.getRegulatingFederates() )
+		{
+			TimeStatus status = manager.getTimeStatus( handle );
+			if( handle != excluding && status.lbts < lowest )
+				lowest = status.lbts;
+		}
+
+		return lowest;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}
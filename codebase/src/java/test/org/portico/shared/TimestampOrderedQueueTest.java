@@ -0,0 +1,111 @@
+/*
+ *   Copyright 2018 The Portico Project
+ *
+ *   This file is part of portico.
+ *
+ *   portico is free software; you can redistribute it and/or modify
+ *   it under the terms of the Common Developer and Distribution License (CDDL) 
+ *   as published by Sun Microsystems. For more information see the LICENSE file.
+ *   
+ *   Use of this software is strictly AT YOUR OWN RISK!!!
+ *   If something bad happens you do not have permission to come crying to me.
+ *   (that goes for your lawyer as well)
+ *
+ */
+package org.portico.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.portico.utils.messaging.PorticoMessage;
+import org.portico2.common.services.object.msg.SendInteraction;
+import org.portico2.common.services.time.msg.TimeAdvanceGrant;
+import org.portico2.lrc.TimestampOrderedQueue;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+@Test(groups={"TimestampOrderedQueueTest","shared"})
+public class TimestampOrderedQueueTest
+{
+	//----------------------------------------------------------
+	//                    STATIC VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                   INSTANCE VARIABLES
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                      CONSTRUCTORS
+	//----------------------------------------------------------
+
+	//----------------------------------------------------------
+	//                    INSTANCE METHODS
+	//----------------------------------------------------------
+	/**
+	 * Messages come out lowest time first, in arrival order for the same time, with any time
+	 * advance grant for a time coming out after everything else at that time.
+	 */
+	@Test
+	public void testOrdering()
+	{
+		TimestampOrderedQueue queue = new TimestampOrderedQueue();
+		PorticoMessage a = interaction( 1, 5.0 );
+		PorticoMessage b = interaction( 2, 3.0 );
+		PorticoMessage grant = new TimeAdvanceGrant( 5.0 );
+		PorticoMessage c = interaction( 3, 5.0 );
+		PorticoMessage d = interaction( 4, 3.0 );
+		queue.offer( a );
+		queue.offer( b );
+		queue.offer( grant );
+		queue.offer( c );
+		queue.offer( d );
+
+		Assert.assertEquals( queue.size(), 5 );
+		Assert.assertSame( queue.peek(), b );
+		Assert.assertSame( queue.poll(), b );
+		Assert.assertSame( queue.poll(), d );
+		Assert.assertSame( queue.poll(), a );
+
+		// a new message at an existing time still goes ahead of the grant
+		PorticoMessage e = interaction( 5, 5.0 );
+		queue.offer( e );
+		Assert.assertSame( queue.poll(), c );
+		Assert.assertSame( queue.poll(), e );
+		Assert.assertSame( queue.poll(), grant );
+		Assert.assertNull( queue.poll() );
+		Assert.assertTrue( queue.isEmpty() );
+	}
+
+	/**
+	 * Draining up to a time should take everything at or below it, and only that.
+	 */
+	@Test
+	public void testDrainToTime()
+	{
+		TimestampOrderedQueue queue = new TimestampOrderedQueue();
+		for( int i = 0; i < 10; i++ )
+			queue.offer( interaction(i,i) );
+
+		List<PorticoMessage> drained = new ArrayList<>();
+		queue.drainTo( drained, 4.0 );
+		Assert.assertEquals( drained.size(), 5 );
+		for( int i = 0; i < drained.size(); i++ )
+			Assert.assertEquals( drained.get(i).getTimestamp(), (double)i );
+
+		Assert.assertEquals( queue.size(), 5 );
+		Assert.assertEquals( queue.peek().getTimestamp(), 5.0 );
+	}
+
+	private PorticoMessage interaction( int id, double time )
+	{
+		SendInteraction message = new SendInteraction();
+		message.setInteractionId( id );
+		message.setTimestamp( time );
+		return message;
+	}
+
+	//----------------------------------------------------------
+	//                     STATIC METHODS
+	//----------------------------------------------------------
+}